@@ -16,16 +16,16 @@
 
 package io.novaordis.databot;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.Timer;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -33,9 +33,32 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.novaordis.databot.bus.EventBus;
+import io.novaordis.databot.bus.EventPublisher;
+import io.novaordis.databot.bus.OverflowPolicy;
+import io.novaordis.databot.bus.EventCursor;
+import io.novaordis.databot.bus.spill.SpillQueue;
 import io.novaordis.databot.configuration.Configuration;
+import io.novaordis.databot.derivation.DerivationStage;
 import io.novaordis.databot.failure.DataBotException;
-import io.novaordis.events.api.event.Event;
+import io.novaordis.databot.os.LocalOSEngine;
+import io.novaordis.databot.os.linux.CgroupMetricSourceFactory;
+import io.novaordis.databot.os.linux.CgroupReader;
+import io.novaordis.databot.os.linux.CpuCoresMetricSourceFactory;
+import io.novaordis.databot.os.linux.DisksMetricSourceFactory;
+import io.novaordis.databot.os.linux.JvmMetricSourceFactory;
+import io.novaordis.databot.os.linux.JvmReader;
+import io.novaordis.databot.os.linux.LinuxProcMetricSourceFactory;
+import io.novaordis.databot.os.linux.LinuxProcReader;
+import io.novaordis.databot.os.linux.NetworkMetricSourceFactory;
+import io.novaordis.databot.os.linux.PressureMetricSourceFactory;
+import io.novaordis.databot.os.linux.ProcessMetricSourceFactory;
+import io.novaordis.databot.os.linux.TcpConnectionsMetricSourceFactory;
+import io.novaordis.databot.os.linux.VmstatStreamMetricSourceFactory;
+import io.novaordis.databot.scheduler.AlignedScheduler;
+import io.novaordis.databot.scheduler.CollectionSchedule;
+import io.novaordis.databot.task.SourceExecutor;
+import io.novaordis.databot.task.SourceExecutorType;
 import io.novaordis.events.api.event.ShutdownEvent;
 import io.novaordis.events.api.metric.MetricSource;
 import io.novaordis.events.api.metric.MetricSourceDefinition;
@@ -44,14 +67,16 @@ import io.novaordis.events.api.metric.MetricSourceFactory;
 import io.novaordis.events.api.metric.MetricSourceFactoryImpl;
 import io.novaordis.events.api.metric.MetricSourceRepository;
 import io.novaordis.events.api.metric.MetricSourceRepositoryImpl;
+import io.novaordis.utilities.UserErrorException;
 import io.novaordis.utilities.address.Address;
+import io.novaordis.utilities.address.LocalOSAddress;
 
 /**
  * The central instance of a data collector node (DataBot). This instance:
  *
- * 1) Manages the in-memory event queue. The data collection threads will independently read and convert the readings
- *    into events, which will be placed into the queue. The consumers, either local file writers or network forwarders,
- *    will pick up events from the queue and process/forward them.
+ * 1) Manages the in-memory event bus. The data collection threads will independently read and convert the readings
+ *    into events, which will be published on the bus. The consumers, either local file writers or network forwarders,
+ *    read all events through their own cursors and process/forward them.
  *
  * 2) Maintains the source state between readings. Long lived metric sources, for which creating a connection is
  *    expensive, are stored in a "started" state.
@@ -67,7 +92,11 @@ public class DataBot {
     private static final Logger log = LoggerFactory.getLogger(DataBot.class);
 
     @SuppressWarnings("WeakerAccess")
-    public static final String TIMER_THREAD_NAME = "DataBot Timer Thread";
+    public static final String SCHEDULER_THREAD_NAME = "DataBot Scheduler Thread";
+
+    public static final String DEADLINE_TIMER_THREAD_NAME = "DataBot Source Deadline Timer Thread";
+
+    public static final String PUBLISHER_THREAD_NAME = "DataBot Event Publisher Thread";
 
     //
     // The source executor cannot be configured with zero initial threads, so we need a non-zero positive minimum value
@@ -76,6 +105,8 @@ public class DataBot {
     //
     public static final int DEFAULT_SOURCE_EXECUTOR_CORE_POOL_SIZE = 5;
 
+    public static final String SOURCE_THREAD_NAME = "DataBot Metric Source Handler Thread";
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
@@ -89,12 +120,25 @@ public class DataBot {
     private final List<DataConsumer> consumers;
 
     //
-    // the in-memory event queue. The data collection threads will independently read and convert the readings into
-    // events, which will be placed into the queue. The consumers, either local file writers or network forwarders,
-    // will pick up events from the queue and process/forward them.
+    // the in-memory event bus. The data collection threads will independently read and convert the readings into
+    // events, which will be published on the bus. Each consumer, either local file writer or network forwarder, reads
+    // every event through its own cursor and processes/forwards it.
     //
     private final int eventQueueSize;
-    private final BlockingQueue<Event> eventQueue;
+    private final EventBus eventBus;
+
+    //
+    // the producer side of the bus, applies the configured overflow policy
+    //
+    private final EventPublisher eventPublisher;
+
+    //
+    // the thread the completed events are handed to when the overflow policy may block (BLOCK), so the scheduling,
+    // deadline timer and source-handling threads, which complete the runs, never wait for bus capacity. Its queue holds
+    // as many events as the bus, the events that do not fit are dropped. Null for the other policies, which do not
+    // wait, and publish on the thread that completes the run
+    //
+    private final ThreadPoolExecutor publisherExecutor;
 
     private final MetricSourceFactory sourceFactory;
 
@@ -103,13 +147,33 @@ public class DataBot {
     //
     // manages the threads that will be used to query sources
     //
-    private final ThreadPoolExecutor sourceExecutor;
+    private final SourceExecutor sourceExecutor;
 
     private final ThreadFactory sourceThreadFactory;
 
-    private final Timer timer;
+    //
+    // completes the collection runs whose sources miss their deadlines, so the scheduling thread never has to wait
+    //
+    private final ScheduledThreadPoolExecutor deadlineTimer;
+
+    //
+    // created on start(), when the sampling interval is known
+    //
+    private AlignedScheduler scheduler;
+
+    private final DataCollectionTask dataCollectionTask;
+
+    //
+    // decides which sources and metrics are due on each scheduler tick, when they are sampled at different rates, and
+    // holds the precompiled collection plans
+    //
+    private final CollectionSchedule collectionSchedule;
 
-    private final DataCollectionTask dataCollectionTimerTask;
+    //
+    // turns the readings of the counters declared with a derivation into deltas or rates before the events are
+    // published. Null if no metric is derived
+    //
+    private final DerivationStage derivationStage;
 
     //
     // the external exit latch that is being waited on by the upper layer. When the exit latch is counted down by
@@ -122,7 +186,10 @@ public class DataBot {
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
-    DataBot(Configuration configuration) throws DataBotException {
+    /**
+     * @exception UserErrorException if the configuration, although valid on its own, cannot be scheduled.
+     */
+    DataBot(Configuration configuration) throws DataBotException, UserErrorException {
 
         if (configuration == null) {
 
@@ -135,31 +202,154 @@ public class DataBot {
 
         this.eventQueueSize = configuration.getEventQueueSize();
 
-        this.eventQueue = new ArrayBlockingQueue<>(eventQueueSize);
+        this.eventBus = configuration.getEventQueueType().
+                newInstance(eventQueueSize, configuration.getEventQueueWaitStrategy());
+
+        log.debug(eventBus + " created");
+
+        OverflowPolicy overflowPolicy = configuration.getEventQueueOverflowPolicy();
+
+        SpillQueue spillQueue = null;
+
+        if (OverflowPolicy.SPILL.equals(overflowPolicy)) {
+
+            spillQueue = new SpillQueue(
+                    configuration.getEventQueueSpillDirectory(),
+                    configuration.getEventQueueSpillSegmentSize(),
+                    configuration.getEventQueueSpillMaxSegments());
+
+            log.debug(spillQueue + " created");
+        }
+
+        this.eventPublisher = new EventPublisher(
+                eventBus, overflowPolicy, configuration.getEventQueueBlockTimeoutMs(),
+                spillQueue, configuration.getEventQueueHighWaterMark());
+
+        if (OverflowPolicy.BLOCK.equals(overflowPolicy)) {
+
+            this.publisherExecutor = new ThreadPoolExecutor(
+                    1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(eventQueueSize),
+                    new MetricSourceThreadFactory(PUBLISHER_THREAD_NAME));
+        }
+        else {
+
+            this.publisherExecutor = null;
+        }
+
+        MetricSourceFactory sf = configuration.getMetricSourceFactory();
+
+        if (sf == null) {
+
+            sf = new MetricSourceFactoryImpl();
+
+            LocalOSEngine localOSEngine = configuration.getLocalOSEngine();
+
+            //
+            // the command-based local OS source becomes the fallback of the /proc or vmstat stream source
+            //
+
+            if (LocalOSEngine.PROC.equals(localOSEngine)) {
+
+                sf = new LinuxProcMetricSourceFactory(sf, new File(LinuxProcReader.DEFAULT_PROC_ROOT));
+            }
+            else if (LocalOSEngine.STREAM.equals(localOSEngine)) {
+
+                sf = new VmstatStreamMetricSourceFactory(
+                        sf, configuration.getSamplingIntervalMs(new LocalOSAddress()));
+            }
+
+            //
+            // process addresses ("process:pid:...") are served from /proc/[pid], whatever the local OS engine
+            //
+
+            sf = new ProcessMetricSourceFactory(sf, new File(LinuxProcReader.DEFAULT_PROC_ROOT));
+
+            //
+            // the per-CPU address ("cores") is served from /proc/stat, whatever the local OS engine
+            //
+
+            sf = new CpuCoresMetricSourceFactory(sf, new File(LinuxProcReader.DEFAULT_PROC_ROOT));
+
+            //
+            // the block device addresses ("disks", "disks:...") are served from /proc/diskstats
+            //
+
+            sf = new DisksMetricSourceFactory(sf, new File(LinuxProcReader.DEFAULT_PROC_ROOT));
+
+            //
+            // the network addresses ("net", "net:...") are served from /proc/net
+            //
+
+            sf = new NetworkMetricSourceFactory(sf, new File(LinuxProcReader.DEFAULT_PROC_ROOT));
+
+            //
+            // the TCP connection addresses ("tcp", "tcp:...") are served from /proc/net/tcp and /proc/net/tcp6
+            //
+
+            sf = new TcpConnectionsMetricSourceFactory(sf, new File(LinuxProcReader.DEFAULT_PROC_ROOT));
+
+            //
+            // the container addresses ("cgroup", "cgroup:...") are served from the cgroup v1 or v2 hierarchy
+            //
+
+            sf = new CgroupMetricSourceFactory(sf, new File(CgroupReader.DEFAULT_CGROUP_ROOT));
 
-        log.debug(Util.queueLogLabel(eventQueue) + " created");
+            //
+            // the pressure stall addresses ("pressure", "pressure:...") are served from /proc/pressure, or from the
+            // cgroup v2 hierarchy
+            //
+
+            sf = new PressureMetricSourceFactory(
+                    sf, new File(LinuxProcReader.DEFAULT_PROC_ROOT), new File(CgroupReader.DEFAULT_CGROUP_ROOT));
+
+            //
+            // the local JVM addresses ("jvm:main:...", "jvm:pid:...", etc.) are served from the memory-mapped
+            // hsperfdata files
+            //
 
-        this.sourceFactory =
-                configuration.getMetricSourceFactory() != null ?
-                        configuration.getMetricSourceFactory() :
-                        new MetricSourceFactoryImpl();
+            sf = new JvmMetricSourceFactory(
+                    sf, new File(LinuxProcReader.DEFAULT_PROC_ROOT), new File(JvmReader.DEFAULT_TMP_ROOT));
+        }
+
+        this.sourceFactory = sf;
 
         this.sources = new MetricSourceRepositoryImpl();
 
-        this.sourceThreadFactory = new MetricSourceThreadFactory("DataBot Metric Source Handler Thread");
+        this.sourceThreadFactory = new MetricSourceThreadFactory(SOURCE_THREAD_NAME);
 
-        int sourceExecutorCorePoolSize = configuration.getMetricSourceCount();
-        sourceExecutorCorePoolSize =
-                sourceExecutorCorePoolSize != 0 ? sourceExecutorCorePoolSize : DEFAULT_SOURCE_EXECUTOR_CORE_POOL_SIZE;
+        SourceExecutorType sourceExecutorType = configuration.getSourceExecutorType();
 
-        this.sourceExecutor = (ThreadPoolExecutor)Executors.
-                newFixedThreadPool(sourceExecutorCorePoolSize, sourceThreadFactory);
+        int sourceExecutorThreads;
 
-        this.consumers = new ArrayList<>();
+        if (SourceExecutorType.FIXED.equals(sourceExecutorType)) {
+
+            sourceExecutorThreads = configuration.getMetricSourceCount();
+            sourceExecutorThreads =
+                    sourceExecutorThreads != 0 ? sourceExecutorThreads : DEFAULT_SOURCE_EXECUTOR_CORE_POOL_SIZE;
+        }
+        else {
 
-        this.timer = new Timer(TIMER_THREAD_NAME);
+            sourceExecutorThreads = configuration.getSourceExecutorMaxThreads();
+        }
+
+        this.sourceExecutor = new SourceExecutor(
+                sourceExecutorType, sourceExecutorThreads, configuration.getSourceExecutorPerHostLimit(),
+                sourceThreadFactory, SOURCE_THREAD_NAME);
+
+        log.debug(sourceExecutor + " created");
+
+        this.deadlineTimer =
+                new ScheduledThreadPoolExecutor(1, new MetricSourceThreadFactory(DEADLINE_TIMER_THREAD_NAME));
+
+        //
+        // most runs complete before their deadline, do not let the cancelled deadlines accumulate in the queue
+        //
+        deadlineTimer.setRemoveOnCancelPolicy(true);
+        deadlineTimer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        this.consumers = new ArrayList<>();
 
-        this.dataCollectionTimerTask = new DataCollectionTask(this);
+        this.dataCollectionTask = new DataCollectionTask(this);
 
         this.started = false;
 
@@ -175,6 +365,16 @@ public class DataBot {
 
             throw new DataBotException(e);
         }
+
+        //
+        // the collection plans are built once, after the sources, so the collection runs do no planning work
+        //
+
+        this.collectionSchedule = new CollectionSchedule(configuration, this::getMetricSource);
+
+        log.debug(collectionSchedule + " created");
+
+        this.derivationStage = DerivationStage.build(configuration);
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
@@ -231,9 +431,10 @@ public class DataBot {
     // Lifecycle -------------------------------------------------------------------------------------------------------
 
     /**
-     * Starts all its consumers and schedules the periodic read timer.
+     * Starts all its consumers and schedules the periodic data collection. The collections are aligned on wall-clock
+     * multiples of the sampling interval.
      *
-     * Note that the source start is not attempted here. Source start attempt will be initiated on the first timer
+     * Note that the source start is not attempted here. Source start attempt will be initiated on the first scheduled
      * read, and then subsequently on all next time reads. This is to deal with sources that "die" between readings
      * but then can be resuscitated.
      *
@@ -255,28 +456,33 @@ public class DataBot {
         // case run once and exit
         //
 
-        long samplingIntervalMSecs =  1000L * configuration.getSamplingIntervalSec();
+        //
+        // the scheduler ticks at the greatest common divisor of all sampling intervals; on each tick, only the sources
+        // and metrics that are due are collected
+        //
 
-        if (samplingIntervalMSecs == 0) {
+        long samplingIntervalMSecs = collectionSchedule.getBaseIntervalMs();
 
-            log.info("scheduling just one metric collection run, the agent will exit when the task is completed");
-            dataCollectionTaskMaxExecutions = 1L;
+        if (samplingIntervalMSecs == 0) {
 
             //
-            // we need to set this to something that is non-zero, otherwise the timer will complain. It does
-            // not matter anyway, because the task will exit after the first execution.
+            // the scheduler runs the task once, immediately
             //
 
-            samplingIntervalMSecs = 1000L * Configuration.DEFAULT_SAMPLING_INTERVAL_SEC;
+            log.info("scheduling just one metric collection run, the agent will exit when the task is completed");
+            dataCollectionTaskMaxExecutions = 1L;
         }
         else {
 
-            log.debug("scheduling metric collection tasks with a periodicity of " + samplingIntervalMSecs + " ms ");
+            log.debug("scheduling metric collection tasks with a periodicity of " + samplingIntervalMSecs + " ms, " +
+                    collectionSchedule);
         }
 
-        dataCollectionTimerTask.setMaxExecutions(dataCollectionTaskMaxExecutions);
+        dataCollectionTask.setMaxExecutions(dataCollectionTaskMaxExecutions);
+
+        scheduler = new AlignedScheduler(SCHEDULER_THREAD_NAME, samplingIntervalMSecs, dataCollectionTask::run);
 
-        timer.scheduleAtFixedRate(dataCollectionTimerTask, 0, samplingIntervalMSecs);
+        scheduler.start();
 
         started = true;
 
@@ -301,19 +507,45 @@ public class DataBot {
         boolean clean = true;
 
         //
-        // stop the timer
+        // stop the scheduler
         //
 
-        log.debug("stopping the timer " + timer + " ...");
+        if (scheduler != null) {
 
-        timer.purge();
-        timer.cancel();
+            log.debug("stopping " + scheduler + " ...");
+
+            scheduler.stop();
+
+            if (scheduler.getMissedTickCount() > 0) {
+
+                log.info(scheduler + " missed " + scheduler.getMissedTickCount() + " tick(s), the maximum tick " +
+                        "lateness was " + scheduler.getMaxTickLatenessMs() + " ms");
+            }
+        }
+
+        if (dataCollectionTask.getTimeoutCount() > 0) {
+
+            log.info(dataCollectionTask.getTimeoutCount() + " source reading(s) missed their deadline, " +
+                    dataCollectionTask.getLateReadingAttachedCount() +
+                    " late reading(s) were attached to later events");
+        }
 
         //
-        // stop the source executor service
+        // stop the source executor service and the deadline timer. stop() may be invoked on one of their threads, by
+        // the last collection run, so we do not wait for them
         //
 
         sourceExecutor.shutdown();
+        deadlineTimer.shutdown();
+
+        //
+        // the events handed to the publisher thread go out before the shutdown event
+        //
+
+        if (!drainPublisherExecutor()) {
+
+            clean = false;
+        }
 
         //
         // stop metric sources
@@ -338,20 +570,40 @@ public class DataBot {
         }
 
         //
-        // send a shutdown event on the queue
+        // publish whatever the overflow policy held aside, then a shutdown event, all consumers will see it
         //
 
+        if (!eventPublisher.flush()) {
+
+            log.warn("failed to publish the events held aside by the overflow policy, " + eventBus + " is full");
+        }
+
+        int discarded = eventPublisher.close();
+
+        if (discarded > 0) {
+
+            log.warn("discarded " + discarded + " spilled event(s) that could not be replayed");
+        }
+
+        if (eventPublisher.getDroppedCount() > 0 || eventPublisher.getCoalescedCount() > 0 ||
+                eventPublisher.getSpilledCount() > 0) {
+
+            log.info(eventPublisher + " dropped " + eventPublisher.getDroppedCount() + ", coalesced " +
+                    eventPublisher.getCoalescedCount() + " and spilled " + eventPublisher.getSpilledCount() +
+                    " event(s) during the lifetime of " + this);
+        }
+
         try {
 
             int offerTimeoutSecs = 5;
 
-            boolean shutdownSent = eventQueue.offer(new ShutdownEvent(), offerTimeoutSecs, TimeUnit.SECONDS);
+            boolean shutdownSent = eventBus.publish(new ShutdownEvent(), offerTimeoutSecs, TimeUnit.SECONDS);
 
             if (!shutdownSent) {
 
                 clean = false;
 
-                log.error("failed to place a shutdown event on the event queue, timed out after " +
+                log.error("failed to publish a shutdown event on the event bus, timed out after " +
                         offerTimeoutSecs + "seconds");
             }
         }
@@ -359,7 +611,7 @@ public class DataBot {
 
             clean = false;
 
-            log.debug("interrupted while attempting to place a shutdown event on the event queue");
+            log.debug("interrupted while attempting to publish a shutdown event on the event bus");
         }
 
         //
@@ -370,6 +622,14 @@ public class DataBot {
 
             try {
 
+                EventCursor cursor = c.getEventCursor();
+
+                if (cursor != null) {
+
+                    log.debug(c + " read " + cursor.getReadCount() + " event(s), current lag " + cursor.getLag() +
+                            ", maximum lag " + cursor.getMaxLag());
+                }
+
                 log.debug("stopping " + c  + " ...");
 
                 c.stop();
@@ -405,15 +665,15 @@ public class DataBot {
     }
 
     /**
-     * Report the number of events in the queue at the time of the reading.
+     * Report the number of events not yet read by the slowest consumer at the time of the reading.
      */
     int getEventCount() {
 
-        return eventQueue.size();
+        return eventBus.size();
     }
 
     /**
-     * Report the maximum number of events that can be accommodated by the event queue, before starting to block.
+     * Report the maximum number of events the slowest consumer can lag behind, before the bus stops accepting events.
      */
     int getEventQueueSize() {
 
@@ -421,28 +681,63 @@ public class DataBot {
     }
 
     /**
-     * @return the actual storage, so handle with care.
+     * @return the actual event bus, so handle with care.
      */
-    BlockingQueue<Event> getEventQueue() {
+    EventBus getEventBus() {
+
+        return eventBus;
+    }
 
-        return eventQueue;
+    EventPublisher getEventPublisher() {
+
+        return eventPublisher;
     }
 
-    long getTimerTaskExecutionCount() {
+    DataCollectionTask getDataCollectionTask() {
 
-        return dataCollectionTimerTask.getExecutionCount();
+        return dataCollectionTask;
     }
 
-    DataCollectionTask getDataCollectionTimerTask() {
+    CollectionSchedule getCollectionSchedule() {
 
-        return dataCollectionTimerTask;
+        return collectionSchedule;
     }
 
-    ExecutorService getSourceExecutor() {
+    /**
+     * May return null if no metric is derived.
+     */
+    DerivationStage getDerivationStage() {
+
+        return derivationStage;
+    }
+
+    /**
+     * @return the scheduler, or null if the instance was not started yet.
+     */
+    AlignedScheduler getScheduler() {
+
+        return scheduler;
+    }
+
+    SourceExecutor getSourceExecutor() {
 
         return sourceExecutor;
     }
 
+    ScheduledExecutorService getDeadlineTimer() {
+
+        return deadlineTimer;
+    }
+
+    /**
+     * @return the executor that publishes the completed events, or null if they are published by the threads that
+     * complete the runs.
+     */
+    Executor getPublisherExecutor() {
+
+        return publisherExecutor;
+    }
+
     ThreadFactory getSourceThreadFactory() {
 
         return sourceThreadFactory;
@@ -490,7 +785,11 @@ public class DataBot {
 
         for(DataConsumer c: configuration.getDataConsumers()) {
 
-            c.setEventQueue(eventQueue);
+            //
+            // each consumer gets its own cursor, so all consumers see all events
+            //
+
+            c.setEventCursor(eventBus.subscribe(c.toString()));
 
             consumers.add(c);
 
@@ -532,7 +831,7 @@ public class DataBot {
      */
     long getExecutionCount() {
 
-        return dataCollectionTimerTask.getExecutionCount();
+        return dataCollectionTask.getExecutionCount();
     }
 
     /**
@@ -542,11 +841,64 @@ public class DataBot {
      */
     long getSuccessfulExecutionCount() {
 
-        return dataCollectionTimerTask.getSuccessfulExecutionCount();
+        return dataCollectionTask.getSuccessfulExecutionCount();
     }
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * Shuts down the publisher thread, after it publishes the events it was handed. If invoked on the publisher thread
+     * itself, by the last run, the events that are still queued are published inline.
+     *
+     * @return false if the publisher thread did not finish in time.
+     */
+    private boolean drainPublisherExecutor() {
+
+        if (publisherExecutor == null) {
+
+            return true;
+        }
+
+        publisherExecutor.shutdown();
+
+        if (Thread.currentThread().getName().startsWith(PUBLISHER_THREAD_NAME)) {
+
+            List<Runnable> queued = new ArrayList<>();
+
+            publisherExecutor.getQueue().drainTo(queued);
+
+            for(Runnable r: queued) {
+
+                r.run();
+            }
+
+            return true;
+        }
+
+        //
+        // each queued event may wait up to the block timeout
+        //
+
+        long timeoutMs = (publisherExecutor.getQueue().size() + 1) * eventPublisher.getBlockTimeoutMs() + 1000L;
+
+        try {
+
+            if (publisherExecutor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+
+                return true;
+            }
+
+            log.error("the publisher thread did not publish its events in " + timeoutMs + " ms");
+        }
+        catch(InterruptedException e) {
+
+            log.debug("interrupted while waiting for the publisher thread");
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
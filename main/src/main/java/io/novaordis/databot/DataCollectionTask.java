@@ -17,41 +17,56 @@
 package io.novaordis.databot;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.TimerTask;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import io.novaordis.databot.configuration.Configuration;
+import io.novaordis.databot.bus.EventPublisher;
+import io.novaordis.databot.derivation.DerivationStage;
 import io.novaordis.databot.event.MultiSourceReadingEvent;
-import io.novaordis.databot.failure.DataBotException;
-import io.novaordis.databot.failure.EventQueueFullException;
-import io.novaordis.databot.task.SourceQueryTask;
-import io.novaordis.events.api.event.Event;
+import io.novaordis.databot.scheduler.CollectionPlan;
+import io.novaordis.databot.scheduler.CollectionSchedule;
+import io.novaordis.databot.task.SourceExecutor;
 import io.novaordis.events.api.event.Property;
 import io.novaordis.events.api.event.TimedEvent;
-import io.novaordis.events.api.metric.MetricDefinition;
-import io.novaordis.events.api.metric.MetricSource;
-import io.novaordis.events.api.metric.MetricSourceDefinition;
 import io.novaordis.utilities.address.Address;
 
 /**
- * A timer task that insure the sources are started, starts them if they're not, collects the required metrics, wraps
- * them into a TimedEvent instance and puts the event in the event queue.
+ * A periodic task that insure the sources are started, starts them if they're not, collects the required metrics,
+ * wraps them into a TimedEvent instance and publishes the event on the event bus.
+ *
+ * It is driven by an AlignedScheduler, which passes the scheduled tick time to run(long). The tick time becomes the
+ * event timestamp.
+ *
+ * The scheduling thread never waits for the sources: it dispatches the source queries and returns. Each source
+ * completion records its reading in the run, and the run is completed, and its event published, by the thread that
+ * resolves the last source: the source-handling thread that delivers the last reading, or the deadline timer thread,
+ * when a source misses its deadline. A slow source cannot delay the next tick. When the overflow policy may wait for
+ * bus capacity (BLOCK), the completed events are handed to the DataBot publisher thread instead, so a stalled consumer
+ * cannot delay the ticks, the deadlines or the source queries either.
+ *
+ * @see io.novaordis.databot.scheduler.AlignedScheduler
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 7/29/16
  */
-public class DataCollectionTask extends TimerTask {
+public class DataCollectionTask implements Runnable {
 
     // Constants -------------------------------------------------------------------------------------------------------
 
@@ -59,13 +74,23 @@ public class DataCollectionTask extends TimerTask {
     private static final boolean debug = log.isDebugEnabled();
 
     //
-    // counts how many executions were triggered since this task was created
+    // the states a source slot can be resolved to, other than an actual reading; compared by identity
+    //
+    private static final List<Property> MISSING = Collections.unmodifiableList(new ArrayList<>(0));
+    private static final List<Property> BUSY = Collections.unmodifiableList(new ArrayList<>(0));
+    private static final List<Property> FAILED = Collections.unmodifiableList(new ArrayList<>(0));
+
+    //
+    // counts how many executions were triggered since this task was created. The executions are triggered by the
+    // scheduling thread, but they complete on source-handling threads.
     //
     private volatile long executionCount;
-    private volatile long successfulExecutionCount;
+    private final AtomicLong successfulExecutionCount;
+    private final AtomicLong completedExecutionCount;
 
     //
-    // the number of executions after which this timer task exits. null means unlimited number of executions.
+    // the number of executions after which this task exits. null means unlimited number of executions. The task exits
+    // when all of them completed, not when the last one was triggered, as the runs may complete out of order.
     //
     private volatile Long maxExecutions;
 
@@ -74,6 +99,19 @@ public class DataCollectionTask extends TimerTask {
     //
     private volatile Throwable causeOfLastFailure;
 
+    //
+    // source readings that did not arrive by the source deadline, in total and per source ordinal. Created lazily,
+    // when the collection schedule is available
+    //
+    private final AtomicLong timeoutCount;
+    private volatile AtomicLongArray timeoutCounts;
+
+    //
+    // late readings that were attached to a later event, or dropped
+    //
+    private final AtomicLong lateReadingAttachedCount;
+    private final AtomicLong lateReadingDroppedCount;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     public static String toLogMessage(Throwable t) {
@@ -98,65 +136,56 @@ public class DataCollectionTask extends TimerTask {
 
     private DataBot dataBot;
 
+    //
+    // the sources with a query in progress. A source that is still being queried, possibly by a run that already
+    // completed without it, is not queried again until the query completes, so a hung source does not accumulate
+    // queries.
+    //
+    private final Set<Address> busySources;
+
+    //
+    // late readings waiting to be attached to the next event, only used by the "attach-to-next" policy
+    //
+    private final ConcurrentMap<Address, List<Property>> lateReadings;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public DataCollectionTask(DataBot dataBot) {
 
         setDataBot(dataBot);
+
+        this.successfulExecutionCount = new AtomicLong();
+        this.completedExecutionCount = new AtomicLong();
+        this.timeoutCount = new AtomicLong();
+        this.lateReadingAttachedCount = new AtomicLong();
+        this.lateReadingDroppedCount = new AtomicLong();
+        this.busySources = ConcurrentHashMap.newKeySet();
+        this.lateReadings = new ConcurrentHashMap<>();
     }
 
-    // TimerTask overrides ---------------------------------------------------------------------------------------------
+    // Runnable implementation -----------------------------------------------------------------------------------------
 
+    /**
+     * Executes an unscheduled data collection run: the event timestamp is derived from the collection time.
+     */
     @Override
     public void run() {
 
-        executionCount ++;
-
-        long t0 = System.currentTimeMillis();
-
-        try {
-
-            log.info(this + " executing data collection run");
-
-            dataCollectionRun();
-
-            //
-            // the completion of the data collection run is logged by the underlying layers, where we have un-cached
-            // information about the metric sources that were queried
-            //
-
-            successfulExecutionCount ++;
-
-        }
-        catch (Throwable t) {
-
-            long t1 = System.currentTimeMillis();
-
-            causeOfLastFailure = t;
-
-            //
-            // no matter of what happens during a data collection run, do not exit - keep going until explicitely
-            // stopped; report the errors, though. The exceptions must not bubble up because an unchecked exception
-            // cancels the timer.
-            //
-
-            log.error("data collection run (" + (t1 - t0) + " ms) failed: " + toLogMessage(t), t);
-        }
-
-        if (maxExecutions != null && executionCount == maxExecutions) {
+        execute(null);
+    }
 
-            //
-            // we're done, notify the DataBot instance that we won't run anymore
-            //
+    // Public ----------------------------------------------------------------------------------------------------------
 
-            log.debug(this + " completed " + executionCount + " executions, exiting ...");
+    /**
+     * Starts a data collection run on behalf of the scheduler, and returns without waiting for the sources.
+     *
+     * @param scheduledTime the scheduler tick that triggered the run. It will be used as the event timestamp.
+     */
+    public void run(long scheduledTime) {
 
-            dataBot.collectionTaskDone();
-        }
+        execute(scheduledTime);
     }
 
-    // Public ----------------------------------------------------------------------------------------------------------
-
     public DataBot getDataBot() {
 
         return dataBot;
@@ -177,7 +206,7 @@ public class DataCollectionTask extends TimerTask {
     }
 
     /**
-     * @return the number of executions after which this timer task exits. May return null, which means the task will
+     * @return the number of executions after which this task exits. May return null, which means the task will
      * be executed an unlimited number of times.
      */
     public Long getMaxExecutions() {
@@ -195,35 +224,42 @@ public class DataCollectionTask extends TimerTask {
     // Package protected -----------------------------------------------------------------------------------------------
 
     /**
-     * The method collects all declared metrics, consolidates them in a TimeEvent and places the event on the internal
-     * event queue. Even if the method throws unchecked exceptions, the calling layer will correctly handle those.
-     *
-     * @exception DataBotException exceptional conditions during the data collection run. The upper layer will
-     *  handle appropriately.
+     * @see DataCollectionTask#dataCollectionRun(Long)
      */
-    void dataCollectionRun() throws DataBotException {
+    CompletableFuture<Void> dataCollectionRun() {
 
-        TimedEvent event = collectMetrics();
+        return dataCollectionRun(null);
+    }
 
-        BlockingQueue<Event> eventQueue = dataBot.getEventQueue();
+    /**
+     * Starts a run that collects the due metrics, consolidates them in a TimedEvent and publishes the event on the
+     * internal event bus. The method does not wait for the sources, the event is published by the thread that completes
+     * the run. Even if the method throws unchecked exceptions, the calling layer will correctly handle those.
+     *
+     * @param scheduledTime the scheduler tick that triggered the run, used as event timestamp. May be null.
+     *
+     * @return a future that completes when the event is published, or null if nothing is due on the tick.
+     */
+    CompletableFuture<Void> dataCollectionRun(Long scheduledTime) {
 
-        log.debug("placing event '" + event + "' in " + Util.queueLogLabel(eventQueue));
+        CompletableFuture<MultiSourceReadingEvent> run = collect(scheduledTime);
 
-        boolean sent = eventQueue.offer(event);
+        if (run == null) {
 
-        if (!sent) {
+            return null;
+        }
 
-            //
-            // we will just drop the event and notify the upper layer
-            //
+        if (dataBot.getPublisherExecutor() == null) {
 
-            throw new EventQueueFullException();
+            return run.thenAccept(this::publish);
         }
+
+        return run.thenCompose(this::handOff);
     }
 
     /**
-     * Must strive to handle all exceptions internally and not attempt to bubble them up. If exceptions occur, they
-     * should be properly logged as ERROR, at this level. The calling layer will handle runaway exceptions, though.
+     * Collects all declared metrics and waits for the result. Only used for unscheduled collections and tests, the
+     * scheduled path does not block.
      *
      * @return a timed event where readings for each metric source are encapsulated in EventProperties, one
      * EventProperty for each metric source. The EventProperty instances are added to the top-level event in the order
@@ -231,133 +267,343 @@ public class DataCollectionTask extends TimerTask {
      */
     TimedEvent collectMetrics() {
 
+        return collectMetrics(null);
+    }
+
+    /**
+     * Blocking version of collect(Long).
+     *
+     * @return null if sources are configured, but nothing is due on the given tick.
+     *
+     * @see DataCollectionTask#collect(Long)
+     */
+    TimedEvent collectMetrics(Long scheduledTime) {
+
+        CompletableFuture<MultiSourceReadingEvent> run = collect(scheduledTime);
+
+        return run == null ? null : run.join();
+    }
+
+    /**
+     * Starts a collection run and returns without waiting for the sources. Must strive to handle all exceptions
+     * internally: source failures are logged as ERROR at this level and result in empty readings, and sources that miss
+     * their deadline result in missing readings.
+     *
+     * @param scheduledTime the scheduler tick that triggered the collection. If not null, it becomes the event
+     *                      timestamp, and only the sources and metrics that are due on the tick are collected. If null,
+     *                      all sources and metrics are collected.
+     *
+     * @return a future that completes with the event when all sources are resolved, or null if sources are configured,
+     * but nothing is due on the given tick.
+     */
+    CompletableFuture<MultiSourceReadingEvent> collect(Long scheduledTime) {
+
         if (log.isTraceEnabled()) {
 
             log.trace(this + " collecting metrics ...");
         }
 
-        Configuration configuration = dataBot.getConfiguration();
+        //
+        // on scheduled runs, only the sources and metrics that are due on this tick are collected
+        //
 
-        Map<Address, Future<List<Property>>> addressToFuture = new HashMap<>();
-        List<Address> orderedListOfSources = new ArrayList<>();
+        CollectionSchedule schedule = dataBot.getCollectionSchedule();
 
-        //noinspection Convert2streamapi
-        for(MetricSourceDefinition sd: configuration.getMetricSourceDefinitions()) {
+        CollectionPlan due = scheduledTime == null ? schedule.getAll() : schedule.getDue(scheduledTime);
+
+        if (due.isEmpty() && !schedule.getAll().isEmpty()) {
+
+            //
+            // a base interval tick on which none of the sampling intervals is due
+            //
 
-            Address sourceAddress = sd.getAddress();
-            addressToFuture.put(sourceAddress, null);
-            orderedListOfSources.add(sourceAddress);
+            if (log.isTraceEnabled()) {
+
+                log.trace(this + " has nothing due on " + scheduledTime);
+            }
+
+            return null;
         }
 
-        MultiSourceReadingEvent msre = new MultiSourceReadingEvent();
+        CollectionRun run = new CollectionRun(scheduledTime, due);
 
-        long t0 = System.currentTimeMillis();
+        run.start();
+
+        return run.event;
+    }
 
-        for(Address a: addressToFuture.keySet()) {
+    /**
+     * @return the number of times the data collection run was executed since this instance was created. Not all
+     *  runs are necessarily successful, or completed. To get the number of successful runs, use
+     *  getSuccessfulExecutionCount()
+     *
+     *  @see DataCollectionTask#getSuccessfulExecutionCount()
+     */
+    long getExecutionCount() {
+
+        return executionCount;
+    }
+
+    /**
+     * @return the number of successfully completed data collection runs since this instance was created.
+     *
+     *  @see DataCollectionTask#getExecutionCount()
+     */
+    long getSuccessfulExecutionCount() {
+
+        return successfulExecutionCount.get();
+    }
+
+    void setDataBot(DataBot dataBot) {
+
+        this.dataBot = dataBot;
+    }
+
+    /**
+     * @return the number of source readings that did not arrive by their source deadline, since this instance was
+     * created. Includes the runs on which a source was not queried because its previous query was still outstanding.
+     */
+    long getTimeoutCount() {
+
+        return timeoutCount.get();
+    }
+
+    long getTimeoutCount(Address source) {
+
+        int ordinal = dataBot.getCollectionSchedule().getOrdinal(source);
+
+        AtomicLongArray counts = timeoutCounts;
+
+        return ordinal == -1 || counts == null ? 0L : counts.get(ordinal);
+    }
+
+    /**
+     * @return the number of late readings that were attached to a later event.
+     */
+    long getLateReadingAttachedCount() {
+
+        return lateReadingAttachedCount.get();
+    }
+
+    /**
+     * @return the number of late readings that were discarded, either because of the policy, or because they were
+     * superseded by a fresh reading.
+     */
+    long getLateReadingDroppedCount() {
+
+        return lateReadingDroppedCount.get();
+    }
+
+    /**
+     * @return the number of source queries that did not complete yet.
+     */
+    int getOutstandingQueryCount() {
+
+        return busySources.size();
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param scheduledTime null for unscheduled runs.
+     */
+    private void execute(Long scheduledTime) {
+
+        Long max = maxExecutions;
+
+        if (max != null && executionCount >= max) {
 
             //
-            // dispatch an internal thread per source to collect metrics
+            // the last execution was already triggered, we exit when the outstanding ones complete
             //
 
-            MetricSource ms = dataBot.getMetricSource(a);
+            return;
+        }
 
-            List<MetricDefinition> metricsForSource = configuration.getMetricDefinitions(a);
+        //noinspection NonAtomicOperationOnVolatileField
+        long execution = ++ executionCount;
 
-            SourceQueryTask q = new SourceQueryTask(ms, metricsForSource);
+        long t0 = System.currentTimeMillis();
 
-            log.debug(this + " submitting data collection task for " + a + " to a source-handling thread");
+        CompletableFuture<Void> run;
 
-            Future<List<Property>> future = dataBot.getSourceExecutor().submit(q);
+        try {
+
+            if (debug) {
+
+                log.debug(this + " executing data collection run");
+            }
+
+            run = dataCollectionRun(scheduledTime);
+        }
+        catch (Throwable t) {
 
-            addressToFuture.put(a, future);
+            executionComplete(execution, t0, t);
+            return;
+        }
+
+        if (run == null) {
+
+            executionComplete(execution, t0, null);
+            return;
         }
 
         //
-        // wait for metric values or metric source failure
+        // the completion of the data collection run is logged by the underlying layers, where we have un-cached
+        // information about the metric sources that were queried
         //
 
-        int countOfSourcesThatFailed = 0;
+        run.whenComplete((v, t) -> executionComplete(execution, t0, t));
+    }
+
+    /**
+     * Invoked on the thread that completes the run.
+     *
+     * @param t the cause of the failure, null if the run was successful.
+     */
+    private void executionComplete(long execution, long t0, Throwable t) {
 
-        for(Address a: orderedListOfSources) {
+        if (t == null) {
 
-            List<Property> properties = null;
-            Future<List<Property>> future = addressToFuture.get(a);
+            successfulExecutionCount.incrementAndGet();
+        }
+        else {
 
-            try {
+            long t1 = System.currentTimeMillis();
 
-                properties = future.get();
-            }
-            catch (InterruptedException e) {
+            if (t instanceof CompletionException && t.getCause() != null) {
 
-                log.warn(Thread.currentThread().getName() + " interrupted while waiting for metric collection results");
+                t = t.getCause();
             }
-            catch (ExecutionException e) {
 
-                countOfSourcesThatFailed++;
-                Throwable cause = e.getCause();
-                log.error("source " + a + " collection failed: ", cause);
-            }
-            finally {
+            causeOfLastFailure = t;
 
-                //
-                // add the properties, even if it is an empty list, on failure, to update the source list and
-                // collection timestamps
-                //
-                properties = properties == null ? Collections.emptyList() : properties;
-                msre.addSourceReading(a, properties);
-            }
+            //
+            // no matter of what happens during a data collection run, do not exit - keep going until explicitely
+            // stopped; report the errors, though. The exceptions must not bubble up, the scheduler would only log
+            // them, without the run context.
+            //
+
+            log.error("data collection run (" + (t1 - t0) + " ms) failed: " + toLogMessage(t), t);
         }
 
-        if (debug) {
+        Long max = maxExecutions;
+
+        //
+        // the runs complete out of order, so the last one to complete, not the last one triggered, stops the instance:
+        // the events of the earlier runs must be published before the shutdown event
+        //
+
+        if (max != null && completedExecutionCount.incrementAndGet() == max) {
+
+            //
+            // we're done, notify the DataBot instance that we won't run anymore
+            //
 
-            log.debug("collection for " + addressToFuture.size() + " source(s) completed in " +
-                    (msre.getCollectionEndTimestamp() - t0) + " ms" +
-                    (countOfSourcesThatFailed == 0 ?
-                            "" : ", " + countOfSourcesThatFailed + " source(s) failed during collection") +
-                    ", " + msre.getAllPropertiesCount() + " properties collected");
+            log.debug(this + " completed " + max + " executions, execution " + execution + " completed last, " +
+                    "exiting ...");
+
+            dataBot.collectionTaskDone();
+        }
+    }
+
+    private void publish(MultiSourceReadingEvent event) {
+
+        DerivationStage derivationStage = dataBot.getDerivationStage();
+
+        if (derivationStage != null) {
+
+            derivationStage.apply(event);
         }
 
-        if (log.isTraceEnabled() && msre.getAllPropertiesCount() > 0) {
+        EventPublisher eventPublisher = dataBot.getEventPublisher();
+
+        if (debug) {
 
-            log.trace("collected properties:\n" + displayProperties(msre));
+            log.debug("publishing event '" + event + "' on " + eventPublisher.getEventBus());
         }
 
-        log.info(this + " completed data collection from " +
-                displayMetricSourceAddressesInOrder(addressToFuture.keySet()) + " in " +
-                (System.currentTimeMillis() - t0) + " ms");
+        //
+        // if the bus is full, the publisher applies the configured overflow policy and keeps count of what was dropped
+        // or coalesced; this is not a data collection failure. The publisher is thread safe, runs that complete on
+        // different threads may publish concurrently, except for BLOCK, where only the publisher thread publishes.
+        //
 
-        return msre;
+        eventPublisher.publish(event);
     }
 
     /**
-     * @return the number of times the data collection run was executed since this instance was created. Not all
-     *  runs are necessarily successful. To get the number of successful runs, use getSuccessfulExecutionCount()
+     * Hands the event to the publisher thread, or drops it, if the publisher thread is too far behind.
      *
-     *  @see DataCollectionTask#getSuccessfulExecutionCount()
+     * @return a future that completes when the event is published or dropped.
      */
-    long getExecutionCount() {
+    private CompletableFuture<Void> handOff(MultiSourceReadingEvent event) {
 
-        return executionCount;
+        try {
+
+            return CompletableFuture.runAsync(() -> publish(event), dataBot.getPublisherExecutor());
+        }
+        catch(RejectedExecutionException e) {
+
+            //
+            // the publisher thread's queue is full, or it is shutting down
+            //
+
+            dataBot.getEventPublisher().discard(event);
+            return CompletableFuture.completedFuture(null);
+        }
     }
 
     /**
-     * @return the number of successful data collection runs since this instance was created.
-     *
-     *  @see DataCollectionTask#getExecutionCount()
+     * A reading that arrived after its run was completed without it.
      */
-    long getSuccessfulExecutionCount() {
+    private void lateReadingArrived(Address a, List<Property> reading) {
 
-        return successfulExecutionCount;
-    }
+        if (debug) {
 
-    void setDataBot(DataBot dataBot) {
+            log.debug("late reading from " + a + ", " + dataBot.getConfiguration().getLateReadingPolicy());
+        }
 
-        this.dataBot = dataBot;
+        if (!LateReadingPolicy.ATTACH_TO_NEXT.equals(dataBot.getConfiguration().getLateReadingPolicy())) {
+
+            lateReadingDroppedCount.incrementAndGet();
+            return;
+        }
+
+        if (lateReadings.put(a, reading) != null) {
+
+            //
+            // superseded by a newer late reading
+            //
+
+            lateReadingDroppedCount.incrementAndGet();
+        }
     }
 
-    // Protected -------------------------------------------------------------------------------------------------------
+    private void countTimeout(int ordinal) {
 
-    // Private ---------------------------------------------------------------------------------------------------------
+        timeoutCount.incrementAndGet();
+
+        AtomicLongArray counts = timeoutCounts;
+
+        if (counts == null) {
+
+            synchronized (this) {
+
+                counts = timeoutCounts;
+
+                if (counts == null) {
+
+                    counts = new AtomicLongArray(dataBot.getCollectionSchedule().getSourceCount());
+                    timeoutCounts = counts;
+                }
+            }
+        }
+
+        counts.incrementAndGet(ordinal);
+    }
 
     private String displayProperties(MultiSourceReadingEvent msre) {
 
@@ -396,7 +642,7 @@ public class DataCollectionTask extends TimerTask {
         return s;
     }
 
-    private String displayMetricSourceAddressesInOrder(Set<Address> addresses) {
+    private String displayMetricSourceAddressesInOrder(Collection<Address> addresses) {
 
         String s = "";
 
@@ -429,4 +675,363 @@ public class DataCollectionTask extends TimerTask {
 
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    /**
+     * The state of one collection run. Each due source has a slot, which is resolved exactly once, to a reading, or
+     * to one of the MISSING, BUSY or FAILED markers, by whichever comes first: the source query completion or the
+     * source deadline. The thread that resolves the last slot assembles the event and completes the run.
+     */
+    private class CollectionRun {
+
+        private final long t0;
+
+        private final CollectionPlan plan;
+
+        //
+        // absolute source deadlines, Long.MAX_VALUE for sources without deadline
+        //
+        private final long[] deadlines;
+
+        private final AtomicReferenceArray<List<Property>> readings;
+
+        private final AtomicInteger unresolved;
+
+        private final CompletableFuture<MultiSourceReadingEvent> event;
+
+        private final MultiSourceReadingEvent msre;
+
+        private volatile ScheduledFuture<?> deadlineTimer;
+
+        CollectionRun(Long scheduledTime, CollectionPlan plan) {
+
+            int sourceCount = plan.size();
+
+            this.t0 = System.currentTimeMillis();
+            this.plan = plan;
+            this.deadlines = new long[sourceCount];
+            this.readings = new AtomicReferenceArray<>(sourceCount);
+            this.unresolved = new AtomicInteger(sourceCount);
+            this.event = new CompletableFuture<>();
+
+            //
+            // created early, so its collection start timestamp is the start of the run
+            //
+            this.msre = new MultiSourceReadingEvent();
+            msre.setScheduledTimestamp(scheduledTime);
+        }
+
+        /**
+         * Dispatches the source queries and returns without waiting for them. Invoked on the scheduling thread.
+         */
+        void start() {
+
+            //
+            // this is the per-tick path, it must be cheap enough to sustain sub-second sampling intervals: the plan
+            // carries the query tasks and the deadlines, so there is no planning work and no per-tick collections
+            // other than the run state and the event itself, and no log message building unless the level is enabled
+            //
+
+            SourceExecutor sourceExecutor = dataBot.getSourceExecutor();
+
+            long nextDeadline = Long.MAX_VALUE;
+
+            int sourceCount = plan.size();
+
+            for(int i = 0; i < sourceCount; i ++) {
+
+                int slot = i;
+
+                Address a = plan.getSource(slot);
+
+                long deadline = plan.getDeadlineMs(slot);
+                deadlines[slot] = deadline == 0 ? Long.MAX_VALUE : t0 + deadline;
+
+                if (!busySources.add(a)) {
+
+                    //
+                    // the previous query did not complete yet, the source is busy
+                    //
+
+                    resolve(slot, BUSY);
+                    continue;
+                }
+
+                if (debug) {
+
+                    log.debug(this + " submitting data collection task for " + a + " to a source-handling thread");
+                }
+
+                try {
+
+                    sourceExecutor.execute(a, () -> query(slot));
+                }
+                catch(RejectedExecutionException ex) {
+
+                    //
+                    // the executor is shutting down
+                    //
+
+                    busySources.remove(a);
+                    log.warn("failed to submit the data collection task for " + a + ": " + toLogMessage(ex));
+                    resolve(slot, FAILED);
+                    continue;
+                }
+
+                nextDeadline = Math.min(nextDeadline, deadlines[slot]);
+            }
+
+            if (sourceCount == 0) {
+
+                complete();
+            }
+            else if (nextDeadline != Long.MAX_VALUE && unresolved.get() > 0) {
+
+                scheduleDeadline(nextDeadline);
+            }
+        }
+
+        @Override
+        public String toString() {
+
+            return DataCollectionTask.this.toString();
+        }
+
+        /**
+         * Invoked on a source-handling thread.
+         */
+        private void query(int slot) {
+
+            Address a = plan.getSource(slot);
+
+            List<Property> reading;
+            Throwable failure = null;
+
+            try {
+
+                reading = plan.getQuery(slot).call();
+            }
+            catch(Throwable t) {
+
+                failure = t;
+                reading = FAILED;
+            }
+
+            //
+            // the source is available before the run completes, so a caller that waits for the run finds it idle
+            //
+
+            busySources.remove(a);
+
+            boolean late = !resolve(slot, reading);
+
+            if (failure != null) {
+
+                if (late) {
+
+                    //
+                    // the missing reading was already accounted for
+                    //
+
+                    log.debug("late query of source " + a + " failed: " + toLogMessage(failure));
+                }
+                else {
+
+                    log.error("source " + a + " collection failed: ", failure);
+                }
+            }
+            else if (late) {
+
+                lateReadingArrived(a, reading);
+            }
+        }
+
+        /**
+         * @return false if the slot was already resolved.
+         */
+        private boolean resolve(int slot, List<Property> reading) {
+
+            if (!readings.compareAndSet(slot, null, reading)) {
+
+                return false;
+            }
+
+            if (unresolved.decrementAndGet() == 0) {
+
+                complete();
+            }
+
+            return true;
+        }
+
+        private void scheduleDeadline(long deadline) {
+
+            long delay = deadline - System.currentTimeMillis();
+
+            try {
+
+                deadlineTimer = dataBot.getDeadlineTimer().
+                        schedule(this::deadlineExpired, delay < 0 ? 0 : delay, TimeUnit.MILLISECONDS);
+            }
+            catch(RejectedExecutionException e) {
+
+                //
+                // the timer is shutting down, the run completes when the sources do
+                //
+
+                log.debug(this + " failed to schedule the source deadline: " + toLogMessage(e));
+            }
+        }
+
+        /**
+         * Invoked on the deadline timer thread.
+         */
+        private void deadlineExpired() {
+
+            long now = System.currentTimeMillis();
+            long next = Long.MAX_VALUE;
+
+            for(int i = 0; i < deadlines.length; i ++) {
+
+                if (readings.get(i) != null) {
+
+                    continue;
+                }
+
+                if (deadlines[i] <= now) {
+
+                    resolve(i, MISSING);
+                }
+                else {
+
+                    next = Math.min(next, deadlines[i]);
+                }
+            }
+
+            if (next != Long.MAX_VALUE && unresolved.get() > 0) {
+
+                scheduleDeadline(next);
+            }
+        }
+
+        /**
+         * Assembles the event, in due order. Invoked exactly once, on the thread that resolved the last slot.
+         */
+        private void complete() {
+
+            try {
+
+                ScheduledFuture<?> timer = deadlineTimer;
+
+                if (timer != null) {
+
+                    timer.cancel(false);
+                }
+
+                int countOfSourcesThatFailed = 0;
+
+                for(int i = 0; i < plan.size(); i ++) {
+
+                    Address a = plan.getSource(i);
+                    List<Property> reading = readings.get(i);
+                    List<Property> late = lateReadings.isEmpty() ? null : lateReadings.remove(a);
+
+                    if (reading == MISSING || reading == BUSY) {
+
+                        countTimeout(plan.getOrdinal(i));
+
+                        if (reading == MISSING) {
+
+                            log.warn("source " + a + " did not deliver its reading within the deadline, emitting " +
+                                    "without it");
+                        }
+                        else if (debug) {
+
+                            log.debug(this + " did not query " + a + ", its previous query is still outstanding");
+                        }
+
+                        if (late != null) {
+
+                            lateReadingAttachedCount.incrementAndGet();
+                            msre.addSourceReading(a, late);
+                        }
+                        else {
+
+                            msre.addMissingSourceReading(a);
+                        }
+
+                        continue;
+                    }
+
+                    if (late != null) {
+
+                        //
+                        // superseded by the fresh reading
+                        //
+
+                        lateReadingDroppedCount.incrementAndGet();
+                    }
+
+                    if (reading == FAILED) {
+
+                        //
+                        // add an empty list on failure, to update the source list and collection timestamps
+                        //
+
+                        countOfSourcesThatFailed ++;
+                        reading = Collections.emptyList();
+                    }
+
+                    msre.addSourceReading(a, reading);
+                }
+
+                if (!lateReadings.isEmpty()) {
+
+                    //
+                    // late readings of sources that were not due on this run
+                    //
+
+                    for(Address a: lateReadings.keySet()) {
+
+                        if (msre.getPropertiesForSource(a) != null) {
+
+                            //
+                            // arrived while we were assembling the event, leave it for the next one
+                            //
+
+                            continue;
+                        }
+
+                        List<Property> late = lateReadings.remove(a);
+
+                        if (late != null) {
+
+                            lateReadingAttachedCount.incrementAndGet();
+                            msre.addSourceReading(a, late);
+                        }
+                    }
+                }
+
+                if (debug) {
+
+                    log.debug(this + " completed data collection from " +
+                            displayMetricSourceAddressesInOrder(plan.getSources()) + " in " +
+                            (System.currentTimeMillis() - t0) + " ms" +
+                            (countOfSourcesThatFailed == 0 ?
+                                    "" : ", " + countOfSourcesThatFailed + " source(s) failed during collection") +
+                            ", " + msre.getAllPropertiesCount() + " properties collected");
+                }
+
+                if (log.isTraceEnabled() && msre.getAllPropertiesCount() > 0) {
+
+                    log.trace("collected properties:\n" + displayProperties(msre));
+                }
+
+                event.complete(msre);
+            }
+            catch(Throwable t) {
+
+                event.completeExceptionally(t);
+            }
+        }
+    }
+
 }
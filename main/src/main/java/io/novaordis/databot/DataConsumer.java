@@ -16,9 +16,7 @@
 
 package io.novaordis.databot;
 
-import io.novaordis.events.api.event.Event;
-
-import java.util.concurrent.BlockingQueue;
+import io.novaordis.databot.bus.EventCursor;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -33,14 +31,15 @@ public interface DataConsumer {
     // Public ----------------------------------------------------------------------------------------------------------
 
     /**
-     * The queue to consume events from.
+     * The cursor to consume events through. Each consumer gets its own cursor, so all consumers attached to the same
+     * event bus see all events.
      */
-    void setEventQueue(BlockingQueue<Event> q);
+    void setEventCursor(EventCursor c);
 
     /**
-     * The queue to consume events from.
+     * The cursor to consume events through.
      */
-    BlockingQueue<Event> getEventQueue();
+    EventCursor getEventCursor();
 
     //
     // lifecycle methods -----------------------------------------------------------------------------------------------
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot;
+
+/**
+ * What the data collection task does with a source reading that arrives after the source deadline, when the event
+ * it was meant for was already emitted with the reading marked as missing.
+ *
+ * @see DataCollectionTask
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public enum LateReadingPolicy {
+
+    /**
+     * The late reading is discarded.
+     */
+    DROP("drop"),
+
+    /**
+     * The late reading is attached to the next event, unless the next event gets a fresh reading from the same source
+     * in time.
+     */
+    ATTACH_TO_NEXT("attach-to-next");
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the policy corresponding to the given configuration label, or null if there is no such policy.
+     */
+    public static LateReadingPolicy fromLabel(String label) {
+
+        for(LateReadingPolicy p: values()) {
+
+            if (p.label.equals(label)) {
+
+                return p;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String label;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    LateReadingPolicy(String label) {
+
+        this.label = label;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the label used in configuration.
+     */
+    public String getLabel() {
+
+        return label;
+    }
+
+    @Override
+    public String toString() {
+
+        return label;
+    }
+
+}
@@ -0,0 +1,589 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.ShutdownEvent;
+
+/**
+ * An EventBus backed by a preallocated array of slots, indexed by monotonically increasing sequence numbers. The
+ * producer and the cursors coordinate on a single lock, in the same way ArrayBlockingQueue does, but unlike a queue,
+ * reading an event does not remove it: a slot is released only after the slowest cursor moved past it.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/12/18
+ */
+public class BroadcastEventBus implements EventBus {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(BroadcastEventBus.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Event[] slots;
+
+    private final ReentrantLock lock;
+
+    //
+    // signalled when events are published or cursors are closed
+    //
+    private final Condition notEmpty;
+
+    //
+    // signalled when the slowest cursor advances, releasing slots
+    //
+    private final Condition notFull;
+
+    //
+    // the sequence number the next published event will get; guarded by lock
+    //
+    private long head;
+
+    //
+    // guarded by lock
+    //
+    private final List<Cursor> cursors;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public BroadcastEventBus(int capacity) {
+
+        if (capacity <= 0) {
+
+            throw new IllegalArgumentException("invalid event bus capacity " + capacity);
+        }
+
+        this.slots = new Event[capacity];
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+        this.cursors = new ArrayList<>();
+    }
+
+    // EventBus implementation -----------------------------------------------------------------------------------------
+
+    @Override
+    public int getCapacity() {
+
+        return slots.length;
+    }
+
+    @Override
+    public int size() {
+
+        lock.lock();
+
+        try {
+
+            return (int)(head - tail());
+        }
+        finally {
+
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getPublishedCount() {
+
+        lock.lock();
+
+        try {
+
+            return head;
+        }
+        finally {
+
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean publish(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        lock.lock();
+
+        try {
+
+            if (isFull()) {
+
+                return false;
+            }
+
+            enqueue(e);
+            return true;
+        }
+        finally {
+
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean publish(Event e, long timeout, TimeUnit unit) throws InterruptedException {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        long nanos = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+
+        try {
+
+            while(isFull()) {
+
+                if (nanos <= 0) {
+
+                    return false;
+                }
+
+                nanos = notFull.awaitNanos(nanos);
+            }
+
+            enqueue(e);
+            return true;
+        }
+        finally {
+
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public EventCursor subscribe(String name) {
+
+        lock.lock();
+
+        try {
+
+            Cursor c = new Cursor(name, head);
+            cursors.add(c);
+
+            log.debug(c + " subscribed to " + this);
+
+            return c;
+        }
+        finally {
+
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void unsubscribe(EventCursor c) {
+
+        lock.lock();
+
+        try {
+
+            //noinspection SuspiciousMethodCalls
+            if (cursors.contains(c)) {
+
+                detach((Cursor)c);
+            }
+        }
+        finally {
+
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<EventCursor> getCursors() {
+
+        lock.lock();
+
+        try {
+
+            return new ArrayList<>(cursors);
+        }
+        finally {
+
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean evictOldest() {
+
+        lock.lock();
+
+        try {
+
+            long oldTail = tail();
+
+            if (oldTail == head) {
+
+                return false;
+            }
+
+            for(Cursor c: cursors) {
+
+                if (c.sequence == oldTail) {
+
+                    c.sequence ++;
+                }
+            }
+
+            release(oldTail);
+
+            return true;
+        }
+        finally {
+
+            lock.unlock();
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return "event bus [" + Integer.toHexString(System.identityHashCode(this)) + "](" + size() + ")";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the sequence of the oldest event still needed by a cursor. Must be invoked under lock.
+     */
+    private long tail() {
+
+        long tail = head;
+
+        for(Cursor c: cursors) {
+
+            if (c.sequence < tail) {
+
+                tail = c.sequence;
+            }
+        }
+
+        return tail;
+    }
+
+    /**
+     * Must be invoked under lock.
+     */
+    private boolean isFull() {
+
+        return head - tail() >= slots.length;
+    }
+
+    /**
+     * Must be invoked under lock, after the capacity was checked.
+     */
+    private void enqueue(Event e) {
+
+        //
+        // if there are no cursors, nobody will ever read the event, so we do not hold on to it
+        //
+
+        if (!cursors.isEmpty()) {
+
+            slots[(int)(head % slots.length)] = e;
+        }
+
+        head ++;
+
+        for(Cursor c: cursors) {
+
+            long lag = head - c.sequence;
+
+            if (lag > c.maxLag) {
+
+                c.maxLag = lag;
+            }
+        }
+
+        notEmpty.signalAll();
+    }
+
+    /**
+     * Clears the slots between the old tail and the current tail, so the events can be garbage collected, and wakes up
+     * a producer waiting for space. Must be invoked under lock.
+     */
+    private void release(long oldTail) {
+
+        long newTail = tail();
+
+        if (newTail == oldTail) {
+
+            return;
+        }
+
+        for(long s = oldTail; s < newTail; s ++) {
+
+            slots[(int)(s % slots.length)] = null;
+        }
+
+        notFull.signalAll();
+    }
+
+    /**
+     * Must be invoked under lock.
+     */
+    private void detach(Cursor c) {
+
+        long oldTail = tail();
+
+        cursors.remove(c);
+
+        log.debug(c + " detached from " + this);
+
+        release(oldTail);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private class Cursor implements EventCursor {
+
+        private final String name;
+
+        //
+        // the sequence of the next event to read; guarded by the bus lock
+        //
+        private long sequence;
+
+        //
+        // the sequence at which the cursor stops delivering bus events and delivers a ShutdownEvent instead. Negative
+        // if the cursor was not closed. Guarded by the bus lock.
+        //
+        private long closeSequence;
+
+        private long maxLag;
+
+        private long readCount;
+
+        private Cursor(String name, long sequence) {
+
+            this.name = name;
+            this.sequence = sequence;
+            this.closeSequence = -1;
+        }
+
+        @Override
+        public String getName() {
+
+            return name;
+        }
+
+        @Override
+        public Event take() throws InterruptedException {
+
+            lock.lockInterruptibly();
+
+            try {
+
+                while(!hasNext()) {
+
+                    notEmpty.await();
+                }
+
+                return next();
+            }
+            finally {
+
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+            long nanos = unit.toNanos(timeout);
+
+            lock.lockInterruptibly();
+
+            try {
+
+                while(!hasNext()) {
+
+                    if (nanos <= 0) {
+
+                        return null;
+                    }
+
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+
+                return next();
+            }
+            finally {
+
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Event poll() {
+
+            lock.lock();
+
+            try {
+
+                return hasNext() ? next() : null;
+            }
+            finally {
+
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public long getLag() {
+
+            lock.lock();
+
+            try {
+
+                return cursors.contains(this) ? head - sequence : 0L;
+            }
+            finally {
+
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public long getMaxLag() {
+
+            lock.lock();
+
+            try {
+
+                return maxLag;
+            }
+            finally {
+
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public long getReadCount() {
+
+            lock.lock();
+
+            try {
+
+                return readCount;
+            }
+            finally {
+
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+
+            lock.lock();
+
+            try {
+
+                if (closeSequence < 0) {
+
+                    closeSequence = head;
+                    notEmpty.signalAll();
+                }
+            }
+            finally {
+
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isClosed() {
+
+            lock.lock();
+
+            try {
+
+                return closeSequence >= 0;
+            }
+            finally {
+
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+
+            return name + " cursor";
+        }
+
+        /**
+         * Must be invoked under lock.
+         */
+        private boolean hasNext() {
+
+            return closeSequence >= 0 || sequence < head;
+        }
+
+        /**
+         * Must be invoked under lock, after hasNext() returned true.
+         */
+        private Event next() {
+
+            if (closeSequence >= 0 && sequence >= closeSequence) {
+
+                detach(this);
+                return new ShutdownEvent();
+            }
+
+            long oldTail = tail();
+
+            Event e = slots[(int)(sequence % slots.length)];
+
+            sequence ++;
+            readCount ++;
+
+            release(oldTail);
+
+            return e;
+        }
+    }
+
+}
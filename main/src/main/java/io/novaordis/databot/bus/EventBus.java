@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.novaordis.events.api.event.Event;
+
+/**
+ * A bounded, single-producer, multiple-consumer broadcast structure that replaces the shared in-memory event queue.
+ *
+ * The data collection task is the only producer. Each data consumer reads through its own EventCursor, so every
+ * consumer sees every event, in the order in which the events were published. Published events are held in a shared
+ * buffer and are not copied per consumer; a buffer slot becomes available for reuse only after all cursors moved past
+ * it. Consequently, the bus is full when the slowest cursor lags getCapacity() events behind the producer.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/12/18
+ */
+public interface EventBus {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the maximum number of events a cursor can lag behind the producer before the bus stops accepting events.
+     */
+    int getCapacity();
+
+    /**
+     * @return the number of events not yet read by the slowest cursor. Zero if there are no cursors.
+     */
+    int size();
+
+    /**
+     * @return the total number of events accepted by the bus since it was created.
+     */
+    long getPublishedCount();
+
+    /**
+     * Non-blocking publish.
+     *
+     * @return true if the event was accepted, false if the bus is full.
+     *
+     * @exception IllegalArgumentException on null event.
+     */
+    boolean publish(Event e);
+
+    /**
+     * Publish, waiting up to the specified time for space to become available.
+     *
+     * @return true if the event was accepted, false if the bus was still full when the timeout expired.
+     *
+     * @exception IllegalArgumentException on null event.
+     */
+    boolean publish(Event e, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Creates a new read cursor. The cursor will see all events published after this call, but none of the events
+     * published before.
+     *
+     * @param name a human readable name, used in logs. Usually the name of the consumer that owns the cursor.
+     */
+    EventCursor subscribe(String name);
+
+    /**
+     * Detaches the cursor from the bus. A detached cursor does not prevent the producer from reusing buffer slots. The
+     * method is a noop if the cursor is not attached to this bus.
+     */
+    void unsubscribe(EventCursor c);
+
+    /**
+     * @return a copy of the list of currently attached cursors, in subscription order.
+     */
+    List<EventCursor> getCursors();
+
+    /**
+     * Discards the oldest event still held by the bus: the cursors that did not read it yet skip it. Used by the
+     * producer to make room for a newer event.
+     *
+     * @return true if an event was discarded, false if the bus was empty.
+     */
+    boolean evictOldest();
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+/**
+ * The event bus implementations that can be selected in configuration.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/13/18
+ */
+public enum EventBusType {
+
+    /**
+     * Lock-based, producer and consumers block on conditions.
+     *
+     * @see BroadcastEventBus
+     */
+    BLOCKING("blocking"),
+
+    /**
+     * Lock-free, producer and consumers wait according to a WaitStrategy.
+     *
+     * @see RingBufferEventBus
+     */
+    RING_BUFFER("ring-buffer");
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the type corresponding to the given configuration label, or null if there is no such type.
+     */
+    public static EventBusType fromLabel(String label) {
+
+        for(EventBusType t: values()) {
+
+            if (t.label.equals(label)) {
+
+                return t;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String label;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    EventBusType(String label) {
+
+        this.label = label;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param waitStrategy ignored by the implementations that block on conditions.
+     */
+    public EventBus newInstance(int capacity, WaitStrategy waitStrategy) {
+
+        if (this == RING_BUFFER) {
+
+            return new RingBufferEventBus(capacity, waitStrategy);
+        }
+
+        return new BroadcastEventBus(capacity);
+    }
+
+    /**
+     * @return the label used in configuration.
+     */
+    public String getLabel() {
+
+        return label;
+    }
+
+    @Override
+    public String toString() {
+
+        return label;
+    }
+
+}
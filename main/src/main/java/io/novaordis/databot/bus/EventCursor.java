@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+import java.util.concurrent.TimeUnit;
+
+import io.novaordis.events.api.event.Event;
+
+/**
+ * A consumer's read position on an EventBus. A cursor is meant to be read from a single thread.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/12/18
+ */
+public interface EventCursor {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    String getName();
+
+    /**
+     * Blocks until the next event becomes available.
+     */
+    Event take() throws InterruptedException;
+
+    /**
+     * @return the next event, or null if no event became available within the timeout.
+     */
+    Event poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * @return the next event, or null if no event is available. Never blocks.
+     */
+    Event poll();
+
+    /**
+     * @return the number of events published on the bus, but not yet read through this cursor.
+     */
+    long getLag();
+
+    /**
+     * @return the largest lag observed since the cursor was created.
+     */
+    long getMaxLag();
+
+    /**
+     * @return the number of events read through this cursor.
+     */
+    long getReadCount();
+
+    /**
+     * Initiates the shutdown of the cursor: the events already published will still be delivered, after which the
+     * cursor delivers a ShutdownEvent and detaches from the bus. Idempotent.
+     */
+    void close();
+
+    /**
+     * @return true after close() was invoked.
+     */
+    boolean isClosed();
+
+}
@@ -0,0 +1,562 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.databot.bus.spill.SpillQueue;
+import io.novaordis.databot.event.MultiSourceReadingEvent;
+import io.novaordis.events.api.event.Event;
+
+/**
+ * The producer side of the event bus: publishes events and applies the configured OverflowPolicy when the bus is full.
+ *
+ * An overflow episode is logged once, as a warning, when it starts, and once more when it ends, with the number of
+ * events that were dropped, coalesced or spilled in the mean time. The individual events are only logged at DEBUG, so a
+ * stalled consumer does not produce an error log storm.
+ *
+ * The publisher is thread safe, but the event bus is optimized for a single producer, so the events should be published
+ * by one thread at a time. The BLOCK policy waits for capacity without holding the publisher's monitor, so a publisher
+ * blocked on a full bus does not stall flush(), hasPending() or the statistics. It still stalls the publishing thread,
+ * up to the block timeout, so the thread that calls publish() must be one that can afford to wait: never a scheduling
+ * or a timer thread.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/14/18
+ */
+public class EventPublisher {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(EventPublisher.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final EventBus eventBus;
+
+    private final OverflowPolicy policy;
+
+    private final long blockTimeoutMs;
+
+    //
+    // only used by the SPILL policy
+    //
+    private final SpillQueue spillQueue;
+    private final int highWaterMark;
+
+    private volatile long publishedCount;
+    private volatile long droppedCount;
+    private volatile long coalescedCount;
+
+    //
+    // the event held aside by the COALESCE policy while the bus is full
+    //
+    private Event pending;
+
+    private boolean overflowing;
+    private long droppedAtOverflowStart;
+    private long coalescedAtOverflowStart;
+    private long spilledAtOverflowStart;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param blockTimeoutMs only relevant for the BLOCK policy.
+     */
+    public EventPublisher(EventBus eventBus, OverflowPolicy policy, long blockTimeoutMs) {
+
+        this(eventBus, policy, blockTimeoutMs, null, 0);
+    }
+
+    /**
+     * @param spillQueue required by the SPILL policy, ignored otherwise.
+     * @param highWaterMark only relevant for the SPILL policy: the number of events in the bus past which new events
+     *                      are spilled to disk. Must be between 1 and the bus capacity.
+     */
+    public EventPublisher(EventBus eventBus, OverflowPolicy policy, long blockTimeoutMs,
+                          SpillQueue spillQueue, int highWaterMark) {
+
+        if (eventBus == null) {
+
+            throw new IllegalArgumentException("null event bus");
+        }
+
+        if (policy == null) {
+
+            throw new IllegalArgumentException("null overflow policy");
+        }
+
+        if (blockTimeoutMs < 0) {
+
+            throw new IllegalArgumentException("invalid block timeout " + blockTimeoutMs);
+        }
+
+        if (OverflowPolicy.SPILL.equals(policy)) {
+
+            if (spillQueue == null) {
+
+                throw new IllegalArgumentException("null spill queue");
+            }
+
+            if (highWaterMark <= 0 || highWaterMark > eventBus.getCapacity()) {
+
+                throw new IllegalArgumentException(
+                        "invalid high-water mark " + highWaterMark + ", must be between 1 and " +
+                                eventBus.getCapacity());
+            }
+        }
+
+        this.eventBus = eventBus;
+        this.policy = policy;
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.spillQueue = OverflowPolicy.SPILL.equals(policy) ? spillQueue : null;
+        this.highWaterMark = highWaterMark;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Publishes the event on the bus, applying the overflow policy if the bus is full. Never throws on overflow.
+     *
+     * @return true if the event was published, or it is held aside to be published later in a coalesced form. False
+     * if the event was discarded.
+     */
+    public boolean publish(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        if (OverflowPolicy.BLOCK.equals(policy)) {
+
+            //
+            // waits outside the monitor
+            //
+
+            return publishBlocking(e);
+        }
+
+        synchronized (this) {
+
+            switch (policy) {
+
+                case DROP_OLDEST:
+
+                    return publishDroppingOldest(e);
+
+                case COALESCE:
+
+                    return publishCoalescing(e);
+
+                case SPILL:
+
+                    return publishSpilling(e);
+
+                default:
+
+                    return publishDroppingNewest(e);
+            }
+        }
+    }
+
+    /**
+     * Accounts for an event that was dropped before it reached the publisher, because the publishing thread was not
+     * keeping up. It is counted, and logged, as any other event dropped on overflow.
+     */
+    public synchronized void discard(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        dropped(e);
+    }
+
+    /**
+     * Attempts to publish the event held aside by the COALESCE policy, or the events spilled to disk by the SPILL
+     * policy, without waiting.
+     *
+     * @return true if there is no event left aside.
+     */
+    public synchronized boolean flush() {
+
+        if (spillQueue != null) {
+
+            replay(eventBus.getCapacity());
+            return spillQueue.isEmpty();
+        }
+
+        if (pending == null) {
+
+            return true;
+        }
+
+        if (eventBus.publish(pending)) {
+
+            pending = null;
+            published();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Releases the resources held by the publisher: the spill segment files are deleted, and the events still in them
+     * are discarded. Call flush() first.
+     *
+     * @return the number of discarded events.
+     */
+    public synchronized int close() {
+
+        if (spillQueue == null) {
+
+            return 0;
+        }
+
+        int discarded = spillQueue.close();
+
+        //noinspection NonAtomicOperationOnVolatileField
+        droppedCount += discarded;
+
+        return discarded;
+    }
+
+    public EventBus getEventBus() {
+
+        return eventBus;
+    }
+
+    public OverflowPolicy getPolicy() {
+
+        return policy;
+    }
+
+    public long getBlockTimeoutMs() {
+
+        return blockTimeoutMs;
+    }
+
+    /**
+     * @return the spill queue, or null if the policy is not SPILL.
+     */
+    public SpillQueue getSpillQueue() {
+
+        return spillQueue;
+    }
+
+    public int getHighWaterMark() {
+
+        return highWaterMark;
+    }
+
+    /**
+     * @return the number of events that made it on the bus through this publisher, including coalesced events.
+     */
+    public long getPublishedCount() {
+
+        return publishedCount;
+    }
+
+    /**
+     * @return the number of events discarded on overflow: the new events for DROP_NEWEST and BLOCK, the oldest events
+     * in the bus for DROP_OLDEST, and the events passed to discard().
+     */
+    public long getDroppedCount() {
+
+        return droppedCount;
+    }
+
+    /**
+     * @return the number of events that were merged into a newer event by the COALESCE policy.
+     */
+    public long getCoalescedCount() {
+
+        return coalescedCount;
+    }
+
+    /**
+     * @return the total number of events spilled to disk by the SPILL policy.
+     */
+    public long getSpilledCount() {
+
+        return spillQueue == null ? 0L : spillQueue.getSpilledCount();
+    }
+
+    /**
+     * @return true if an event is currently held aside by the COALESCE policy, or spilled to disk by the SPILL policy.
+     */
+    public synchronized boolean hasPending() {
+
+        return pending != null || (spillQueue != null && !spillQueue.isEmpty());
+    }
+
+    @Override
+    public String toString() {
+
+        return policy + " publisher for " + eventBus;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private boolean publishDroppingNewest(Event e) {
+
+        if (eventBus.publish(e)) {
+
+            published();
+            return true;
+        }
+
+        dropped(e);
+        return false;
+    }
+
+    private boolean publishDroppingOldest(Event e) {
+
+        if (eventBus.publish(e)) {
+
+            published();
+            return true;
+        }
+
+        do {
+
+            //
+            // if there's nothing to evict, the bus is full because of a concurrent publisher, give up
+            //
+
+            if (!eventBus.evictOldest()) {
+
+                dropped(e);
+                return false;
+            }
+
+            dropped(null);
+        }
+        while(!eventBus.publish(e));
+
+        //
+        // we're still overflowing, do not log the end of the episode
+        //
+
+        //noinspection NonAtomicOperationOnVolatileField
+        publishedCount ++;
+        return true;
+    }
+
+    /**
+     * Not invoked under the monitor, only the bookkeeping is.
+     */
+    private boolean publishBlocking(Event e) {
+
+        boolean published = false;
+
+        try {
+
+            published = eventBus.publish(e, blockTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        catch(InterruptedException ie) {
+
+            log.warn(Thread.currentThread().getName() + " interrupted while waiting to publish on " + eventBus);
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+
+            if (published) {
+
+                published();
+            }
+            else {
+
+                dropped(e);
+            }
+        }
+
+        return published;
+    }
+
+    private boolean publishCoalescing(Event e) {
+
+        //
+        // publish the older event first, to preserve order
+        //
+
+        if (pending != null) {
+
+            if (eventBus.publish(pending)) {
+
+                pending = null;
+                published();
+            }
+            else {
+
+                coalesce(e);
+                return true;
+            }
+        }
+
+        if (eventBus.publish(e)) {
+
+            published();
+            return true;
+        }
+
+        pending = e;
+        overflowStarted();
+
+        if (log.isDebugEnabled()) {
+
+            log.debug(eventBus + " full, holding " + e + " aside");
+        }
+
+        return true;
+    }
+
+    private boolean publishSpilling(Event e) {
+
+        //
+        // replay first, to preserve order. The replay runs on the producer thread, between samples, and it stops at
+        // the high-water mark, so the consumers are not flooded and there is room left for the new readings
+        //
+
+        replay(highWaterMark);
+
+        if (spillQueue.isEmpty() && eventBus.size() < highWaterMark && eventBus.publish(e)) {
+
+            published();
+            return true;
+        }
+
+        overflowStarted();
+
+        if (spillQueue.offer(e)) {
+
+            if (log.isDebugEnabled()) {
+
+                log.debug(eventBus + " past its high-water mark, spilled " + e + " to " + spillQueue);
+            }
+
+            return true;
+        }
+
+        dropped(e);
+        return false;
+    }
+
+    /**
+     * Moves events from the spill queue to the bus, oldest first, while the bus holds less than the given number of
+     * events.
+     */
+    private void replay(int limit) {
+
+        while(!spillQueue.isEmpty() && eventBus.size() < limit) {
+
+            if (!eventBus.publish(spillQueue.peek())) {
+
+                return;
+            }
+
+            spillQueue.remove();
+            published();
+        }
+    }
+
+    /**
+     * Replaces the pending event with the new one, preserving the readings of the sources that are not present in the
+     * new event.
+     */
+    private void coalesce(Event e) {
+
+        if (e instanceof MultiSourceReadingEvent && pending instanceof MultiSourceReadingEvent) {
+
+            ((MultiSourceReadingEvent)e).mergeMissingReadings((MultiSourceReadingEvent)pending);
+        }
+
+        if (log.isDebugEnabled()) {
+
+            log.debug(eventBus + " full, coalescing " + pending + " into " + e);
+        }
+
+        pending = e;
+
+        //noinspection NonAtomicOperationOnVolatileField
+        coalescedCount ++;
+    }
+
+    /**
+     * @param e the discarded event, or null if an event already in the bus was discarded.
+     */
+    private void dropped(Event e) {
+
+        overflowStarted();
+
+        //noinspection NonAtomicOperationOnVolatileField
+        droppedCount ++;
+
+        if (log.isDebugEnabled()) {
+
+            log.debug(eventBus + " full, " + (e == null ? "dropped the oldest event" : "dropped " + e));
+        }
+    }
+
+    private void published() {
+
+        //noinspection NonAtomicOperationOnVolatileField
+        publishedCount ++;
+
+        if (overflowing && !hasPending()) {
+
+            overflowing = false;
+
+            log.info(eventBus + " accepts events again, " +
+                    (droppedCount - droppedAtOverflowStart) + " event(s) dropped, " +
+                    (coalescedCount - coalescedAtOverflowStart) + " event(s) coalesced and " +
+                    (getSpilledCount() - spilledAtOverflowStart) + " event(s) spilled while it was full");
+        }
+    }
+
+    private void overflowStarted() {
+
+        if (overflowing) {
+
+            return;
+        }
+
+        overflowing = true;
+        droppedAtOverflowStart = droppedCount;
+        coalescedAtOverflowStart = coalescedCount;
+        spilledAtOverflowStart = getSpilledCount();
+
+        log.warn(eventBus + (spillQueue == null ? " is full" : " is past its high-water mark") + ", applying the " +
+                policy + " overflow policy until it drains");
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+/**
+ * What the producer does with a new event when the event bus is full, because at least one consumer fell behind.
+ *
+ * @see EventPublisher
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/14/18
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The new event is discarded. Keeps the data already in the bus complete, the most recent samples are lost.
+     */
+    DROP_NEWEST("drop-newest"),
+
+    /**
+     * The oldest event in the bus is discarded to make room for the new one. Keeps the data fresh.
+     */
+    DROP_OLDEST("drop-oldest"),
+
+    /**
+     * The producer waits for the slowest consumer up to a deadline, then discards the new event. Delays sampling.
+     */
+    BLOCK("block"),
+
+    /**
+     * The new event is held aside and merged with the events that arrive while the bus is full, keeping only the
+     * latest reading per source. The merged event is published as soon as space becomes available.
+     */
+    COALESCE("coalesce"),
+
+    /**
+     * Once the bus is filled past a high-water mark, the new events are written to memory-mapped segment files on local
+     * disk. They are replayed, in order, as the consumers catch up. Events are only dropped when the spill segments
+     * are exhausted.
+     *
+     * @see io.novaordis.databot.bus.spill.SpillQueue
+     */
+    SPILL("spill");
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the policy corresponding to the given configuration label, or null if there is no such policy.
+     */
+    public static OverflowPolicy fromLabel(String label) {
+
+        for(OverflowPolicy p: values()) {
+
+            if (p.label.equals(label)) {
+
+                return p;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String label;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    OverflowPolicy(String label) {
+
+        this.label = label;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the label used in configuration.
+     */
+    public String getLabel() {
+
+        return label;
+    }
+
+    @Override
+    public String toString() {
+
+        return label;
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.ShutdownEvent;
+
+/**
+ * An EventCursor over a plain BlockingQueue, for the consumers that are still constructed with the event queue they
+ * used before the event bus. The queue is not shared with other consumers: the cursor reads whatever is offered to
+ * it. Closing the cursor offers a ShutdownEvent to the queue, which is what stopping a consumer used to do.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/12/18
+ */
+@Deprecated
+public class QueueEventCursor implements EventCursor {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final BlockingQueue<Event> queue;
+
+    private final AtomicLong readCount;
+
+    private volatile long maxLag;
+
+    private volatile boolean closed;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public QueueEventCursor(BlockingQueue<Event> queue) {
+
+        if (queue == null) {
+
+            throw new IllegalArgumentException("null queue");
+        }
+
+        this.queue = queue;
+        this.readCount = new AtomicLong();
+    }
+
+    // EventCursor implementation --------------------------------------------------------------------------------------
+
+    @Override
+    public String getName() {
+
+        return "queue";
+    }
+
+    @Override
+    public Event take() throws InterruptedException {
+
+        return read(queue.take());
+    }
+
+    @Override
+    public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+        return read(queue.poll(timeout, unit));
+    }
+
+    @Override
+    public Event poll() {
+
+        return read(queue.poll());
+    }
+
+    @Override
+    public long getLag() {
+
+        return queue.size();
+    }
+
+    @Override
+    public long getMaxLag() {
+
+        return maxLag;
+    }
+
+    @Override
+    public long getReadCount() {
+
+        return readCount.get();
+    }
+
+    /**
+     * @exception IllegalStateException if the queue has no room left for the ShutdownEvent.
+     */
+    @Override
+    public synchronized void close() {
+
+        if (closed) {
+
+            return;
+        }
+
+        if (!queue.offer(new ShutdownEvent())) {
+
+            throw new IllegalStateException("the queue has no room for the ShutdownEvent");
+        }
+
+        closed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+
+        return closed;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public BlockingQueue<Event> getQueue() {
+
+        return queue;
+    }
+
+    @Override
+    public String toString() {
+
+        return "queue cursor";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private Event read(Event e) {
+
+        if (e != null) {
+
+            readCount.incrementAndGet();
+
+            //
+            // the event just read was part of the backlog
+            //
+
+            long lag = queue.size() + 1;
+
+            if (lag > maxLag) {
+
+                maxLag = lag;
+            }
+        }
+
+        return e;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
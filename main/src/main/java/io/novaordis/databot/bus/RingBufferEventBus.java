@@ -0,0 +1,573 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.ShutdownEvent;
+
+/**
+ * A lock-free EventBus backed by a preallocated ring of slots and sequence counters. Publishing and reading do not
+ * acquire locks and do not allocate: the producer claims a sequence number, stores the event in the corresponding
+ * slot and then marks the slot as published with that sequence number. Each cursor owns a sequence counter that the
+ * producer reads to find out how far it can go before it would overwrite an event that was not yet read by everybody.
+ *
+ * The bus is optimized for a single producer (the data collection task), but claiming is done with a CAS so an
+ * occasional second publisher, such as the thread that publishes the ShutdownEvent, is safe.
+ *
+ * Each cursor must be read by a single thread. Threads that wait, either for an event or for a slot, do so according
+ * to the configured WaitStrategy. With a signaled strategy (PARK), the waiting threads register themselves, and are
+ * unparked by the publisher (consumers) or by the reading threads (a producer that waits for a slot).
+ *
+ * The events stay referenced from their slots until the slots are reused by the producer, so up to "capacity" already
+ * consumed events may be retained in memory.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/13/18
+ */
+public class RingBufferEventBus implements EventBus {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(RingBufferEventBus.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final int capacity;
+
+    private final Event[] slots;
+
+    //
+    // the sequence number the next published event will get
+    //
+    private final AtomicLong claimed;
+
+    //
+    // the sequence number of the event currently stored in the corresponding slot, or -1 if the slot was never used.
+    // The producer writes it after the slot, so a cursor that reads the expected sequence is guaranteed to see the
+    // event
+    //
+    private final AtomicLongArray published;
+
+    private final WaitStrategy waitStrategy;
+
+    private final boolean signaled;
+
+    //
+    // the producer parked waiting for a slot, if any; only maintained for signaled wait strategies
+    //
+    private volatile Thread waitingProducer;
+
+    //
+    // copy-on-write array, so the producer can iterate without allocating. Replaced under the instance lock
+    //
+    private volatile Cursor[] cursors;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public RingBufferEventBus(int capacity, WaitStrategy waitStrategy) {
+
+        if (capacity <= 0) {
+
+            throw new IllegalArgumentException("invalid event bus capacity " + capacity);
+        }
+
+        if (waitStrategy == null) {
+
+            throw new IllegalArgumentException("null wait strategy");
+        }
+
+        this.capacity = capacity;
+        this.slots = new Event[capacity];
+        this.published = new AtomicLongArray(capacity);
+
+        for(int i = 0; i < capacity; i ++) {
+
+            published.set(i, -1L);
+        }
+
+        this.claimed = new AtomicLong(0L);
+        this.waitStrategy = waitStrategy;
+        this.signaled = waitStrategy.isSignaled();
+        this.cursors = new Cursor[0];
+    }
+
+    // EventBus implementation -----------------------------------------------------------------------------------------
+
+    @Override
+    public int getCapacity() {
+
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+
+        long head = claimed.get();
+
+        return (int)(head - minimumSequence(head));
+    }
+
+    @Override
+    public long getPublishedCount() {
+
+        return claimed.get();
+    }
+
+    @Override
+    public boolean publish(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        return tryPublish(e);
+    }
+
+    @Override
+    public boolean publish(Event e, long timeout, TimeUnit unit) throws InterruptedException {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        if (signaled) {
+
+            //
+            // registered before the first attempt, so a cursor that advances after the attempt sees it
+            //
+
+            waitingProducer = Thread.currentThread();
+        }
+
+        try {
+
+            for(int attempt = 1; ; attempt ++) {
+
+                if (tryPublish(e)) {
+
+                    return true;
+                }
+
+                if (Thread.interrupted()) {
+
+                    throw new InterruptedException();
+                }
+
+                if (System.nanoTime() - deadline >= 0) {
+
+                    return false;
+                }
+
+                waitStrategy.idle(attempt);
+            }
+        }
+        finally {
+
+            if (signaled) {
+
+                waitingProducer = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized EventCursor subscribe(String name) {
+
+        Cursor c = new Cursor(name, claimed.get());
+
+        Cursor[] a = Arrays.copyOf(cursors, cursors.length + 1);
+        a[a.length - 1] = c;
+        cursors = a;
+
+        log.debug(c + " subscribed to " + this);
+
+        return c;
+    }
+
+    @Override
+    public synchronized void unsubscribe(EventCursor c) {
+
+        int i = indexOf(c);
+
+        if (i < 0) {
+
+            return;
+        }
+
+        Cursor[] a = new Cursor[cursors.length - 1];
+        System.arraycopy(cursors, 0, a, 0, i);
+        System.arraycopy(cursors, i + 1, a, i, a.length - i);
+        cursors = a;
+
+        log.debug(c + " detached from " + this);
+    }
+
+    @Override
+    public List<EventCursor> getCursors() {
+
+        return new ArrayList<>(Arrays.asList(cursors));
+    }
+
+    @Override
+    public boolean evictOldest() {
+
+        long head = claimed.get();
+        long tail = minimumSequence(head);
+
+        if (tail == head) {
+
+            return false;
+        }
+
+        //
+        // a cursor that reads concurrently either wins and gets the event, or loses and retries from the new sequence
+        //
+
+        for(Cursor c: cursors) {
+
+            c.sequence.compareAndSet(tail, tail + 1);
+        }
+
+        return true;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public WaitStrategy getWaitStrategy() {
+
+        return waitStrategy;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ring buffer event bus [" + Integer.toHexString(System.identityHashCode(this)) + "](" + size() + ")";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private boolean tryPublish(Event e) {
+
+        for(;;) {
+
+            long sequence = claimed.get();
+
+            if (sequence - minimumSequence(sequence) >= capacity) {
+
+                return false;
+            }
+
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+
+                int index = index(sequence);
+                slots[index] = e;
+
+                if (!signaled) {
+
+                    published.lazySet(index, sequence);
+                    return true;
+                }
+
+                //
+                // a full volatile write, so it is ordered before the reads of the waiting threads below: a consumer
+                // that registered after we read its waiting thread is guaranteed to see the event
+                //
+
+                published.set(index, sequence);
+
+                for(Cursor c: cursors) {
+
+                    Thread t = c.waitingThread;
+
+                    if (t != null) {
+
+                        LockSupport.unpark(t);
+                    }
+                }
+
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the sequence of the oldest event still needed by a cursor, or the given default if there are no cursors.
+     */
+    private long minimumSequence(long defaultValue) {
+
+        long minimum = defaultValue;
+
+        for(Cursor c: cursors) {
+
+            long s = c.sequence.get();
+
+            if (s < minimum) {
+
+                minimum = s;
+            }
+        }
+
+        return minimum;
+    }
+
+    private int indexOf(EventCursor c) {
+
+        Cursor[] a = cursors;
+
+        for(int i = 0; i < a.length; i ++) {
+
+            if (a[i] == c) {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int index(long sequence) {
+
+        return (int)(sequence % capacity);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private class Cursor implements EventCursor {
+
+        private final String name;
+
+        //
+        // the sequence of the next event to read. Advanced by the reading thread, and by the producer when it evicts
+        // the oldest event
+        //
+        private final AtomicLong sequence;
+
+        //
+        // the sequence at which the cursor stops delivering bus events and delivers a ShutdownEvent instead. Negative
+        // if the cursor was not closed
+        //
+        private volatile long closeSequence;
+
+        //
+        // only written by the reading thread
+        //
+        private volatile long maxLag;
+        private volatile long readCount;
+
+        //
+        // the reading thread, while it waits; only maintained for signaled wait strategies
+        //
+        private volatile Thread waitingThread;
+
+        private Cursor(String name, long sequence) {
+
+            this.name = name;
+            this.sequence = new AtomicLong(sequence);
+            this.closeSequence = -1L;
+        }
+
+        @Override
+        public String getName() {
+
+            return name;
+        }
+
+        @Override
+        public Event take() throws InterruptedException {
+
+            return poll(-1L);
+        }
+
+        @Override
+        public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+            return poll(System.nanoTime() + unit.toNanos(timeout));
+        }
+
+        @Override
+        public Event poll() {
+
+            for(;;) {
+
+                long s = sequence.get();
+                long cs = closeSequence;
+
+                if (cs >= 0 && s >= cs) {
+
+                    unsubscribe(this);
+                    return new ShutdownEvent();
+                }
+
+                int index = index(s);
+
+                if (published.get(index) != s) {
+
+                    return null;
+                }
+
+                Event e = slots[index];
+
+                //
+                // the CAS makes sure the slot was read before the producer is allowed to reuse it. If it fails, the
+                // producer evicted the event in the mean time, and the slot content cannot be trusted anymore
+                //
+
+                if (!sequence.compareAndSet(s, s + 1)) {
+
+                    continue;
+                }
+
+                long lag = claimed.get() - s;
+
+                if (lag > maxLag) {
+
+                    maxLag = lag;
+                }
+
+                //noinspection NonAtomicOperationOnVolatileField
+                readCount ++;
+
+                if (signaled) {
+
+                    Thread t = waitingProducer;
+
+                    if (t != null) {
+
+                        LockSupport.unpark(t);
+                    }
+                }
+
+                return e;
+            }
+        }
+
+        @Override
+        public long getLag() {
+
+            return indexOf(this) >= 0 ? claimed.get() - sequence.get() : 0L;
+        }
+
+        @Override
+        public long getMaxLag() {
+
+            return Math.max(maxLag, getLag());
+        }
+
+        @Override
+        public long getReadCount() {
+
+            return readCount;
+        }
+
+        @Override
+        public synchronized void close() {
+
+            if (closeSequence < 0) {
+
+                closeSequence = claimed.get();
+
+                Thread t = waitingThread;
+
+                if (t != null) {
+
+                    LockSupport.unpark(t);
+                }
+            }
+        }
+
+        @Override
+        public boolean isClosed() {
+
+            return closeSequence >= 0;
+        }
+
+        @Override
+        public String toString() {
+
+            return name + " cursor";
+        }
+
+        /**
+         * @param deadline the System.nanoTime() value after which to give up, or -1 to wait indefinitely.
+         */
+        private Event poll(long deadline) throws InterruptedException {
+
+            if (signaled) {
+
+                //
+                // registered before the first attempt, so a publisher that publishes after the attempt sees it
+                //
+
+                waitingThread = Thread.currentThread();
+            }
+
+            try {
+
+                for(int attempt = 1; ; attempt ++) {
+
+                    Event e = poll();
+
+                    if (e != null) {
+
+                        return e;
+                    }
+
+                    if (Thread.interrupted()) {
+
+                        throw new InterruptedException();
+                    }
+
+                    if (deadline != -1L && System.nanoTime() - deadline >= 0) {
+
+                        return null;
+                    }
+
+                    waitStrategy.idle(attempt);
+                }
+            }
+            finally {
+
+                if (signaled) {
+
+                    waitingThread = null;
+                }
+            }
+        }
+    }
+
+}
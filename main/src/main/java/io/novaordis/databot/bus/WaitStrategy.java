@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The way a thread waits on a lock-free event bus for an event to become available (consumers) or for a slot to be
+ * released (producer). The strategies trade CPU usage for latency: BUSY_SPIN never gives up the CPU, YIELD gives it
+ * up to other runnable threads, PARK parks the thread until the bus unparks it, and is the only one suitable for
+ * sampling intervals measured in seconds. BUSY_SPIN and YIELD only make sense when the waiting threads have dedicated
+ * cores.
+ *
+ * A parked thread is unparked by the thread that satisfies its condition: publishing unparks the waiting consumers,
+ * reading unparks a producer that waits for a slot. The park is nevertheless bounded, backing off exponentially up to
+ * MAX_PARK_NANOS, so the waiting thread re-checks its condition (and its interrupt status) even if no signal comes.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/13/18
+ */
+public enum WaitStrategy {
+
+    BUSY_SPIN("busy-spin") {
+
+        @Override
+        public void idle(int attempt) {
+
+            //
+            // noop, the caller re-checks the condition right away
+            //
+        }
+    },
+
+    YIELD("yield") {
+
+        @Override
+        public void idle(int attempt) {
+
+            if (attempt > SPIN_ATTEMPTS) {
+
+                Thread.yield();
+            }
+        }
+    },
+
+    PARK("park") {
+
+        @Override
+        public void idle(int attempt) {
+
+            int parks = attempt - SPIN_ATTEMPTS - YIELD_ATTEMPTS;
+
+            if (parks > 0) {
+
+                LockSupport.parkNanos(parks > BACKOFF_STEPS ? MAX_PARK_NANOS : MIN_PARK_NANOS << (parks - 1));
+            }
+            else if (attempt > SPIN_ATTEMPTS) {
+
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public boolean isSignaled() {
+
+            return true;
+        }
+    };
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int SPIN_ATTEMPTS = 100;
+
+    private static final int YIELD_ATTEMPTS = 100;
+
+    //
+    // the first park is MIN_PARK_NANOS long, each following one twice as long as the previous, up to MAX_PARK_NANOS
+    //
+    private static final long MIN_PARK_NANOS = 50000L;
+
+    private static final long MAX_PARK_NANOS = 10000000L;
+
+    private static final int BACKOFF_STEPS = 8;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the strategy corresponding to the given configuration label, or null if there is no such strategy.
+     */
+    public static WaitStrategy fromLabel(String label) {
+
+        for(WaitStrategy s: values()) {
+
+            if (s.label.equals(label)) {
+
+                return s;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String label;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    WaitStrategy(String label) {
+
+        this.label = label;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Invoked by a waiting thread each time it finds the condition it waits on unsatisfied.
+     *
+     * @param attempt the number of times the condition was checked so far, during the current wait. Starts at 1.
+     */
+    public abstract void idle(int attempt);
+
+    /**
+     * @return true if the threads idling with this strategy must be unparked when the condition they wait on becomes
+     * satisfied.
+     */
+    public boolean isSignaled() {
+
+        return false;
+    }
+
+    /**
+     * @return the label used in configuration.
+     */
+    public String getLabel() {
+
+        return label;
+    }
+
+    @Override
+    public String toString() {
+
+        return label;
+    }
+
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus.spill;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.novaordis.databot.event.MultiSourceReadingEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.event.TimestampProperty;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * Binary encoding of the events that go through the spill queue.
+ *
+ * The spill files do not outlive the process, so instead of externalizing Address, MeasureUnit and property type
+ * instances, the codec keeps them in in-process dictionaries and only writes their dictionary index. The
+ * dictionaries grow with the number of distinct sources, measure units and property types, which is small and
+ * bounded by the configuration.
+ *
+ * MultiSourceReadingEvents and GenericTimedEvents are supported. Property values other than numbers, booleans and
+ * strings are written as their toString() representation.
+ *
+ * Not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/15/18
+ */
+public class EventCodec {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final byte MULTI_SOURCE_READING_EVENT = 1;
+    private static final byte GENERIC_TIMED_EVENT = 2;
+
+    private static final byte NULL_VALUE = 0;
+    private static final byte INTEGER_VALUE = 1;
+    private static final byte LONG_VALUE = 2;
+    private static final byte DOUBLE_VALUE = 3;
+    private static final byte FLOAT_VALUE = 4;
+    private static final byte BOOLEAN_VALUE = 5;
+    private static final byte STRING_VALUE = 6;
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final PropertyFactory propertyFactory;
+
+    private final List<Object> dictionary;
+    private final Map<Object, Integer> dictionaryIndex;
+
+    //
+    // reused across encode() calls, grows as needed
+    //
+    private ByteBuffer buffer;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public EventCodec() {
+
+        this.propertyFactory = new PropertyFactory();
+        this.dictionary = new ArrayList<>();
+        this.dictionaryIndex = new HashMap<>();
+        this.buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the codec knows how to encode the event.
+     */
+    public boolean canEncode(Event e) {
+
+        return e instanceof MultiSourceReadingEvent || e instanceof GenericTimedEvent;
+    }
+
+    /**
+     * @return a buffer that contains the encoded event between position zero and its limit. The buffer is owned by the
+     * codec and will be overwritten by the next encode() call.
+     *
+     * @exception IllegalArgumentException if the event type is not supported.
+     */
+    public ByteBuffer encode(Event e) {
+
+        if (!canEncode(e)) {
+
+            throw new IllegalArgumentException("cannot encode " + (e == null ? null : e.getClass().getName()));
+        }
+
+        for(;;) {
+
+            buffer.clear();
+
+            try {
+
+                if (e instanceof MultiSourceReadingEvent) {
+
+                    encodeMultiSourceReadingEvent((MultiSourceReadingEvent)e);
+                }
+                else {
+
+                    encodeGenericTimedEvent((GenericTimedEvent)e);
+                }
+
+                buffer.flip();
+                return buffer;
+            }
+            catch(BufferOverflowException boe) {
+
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Decodes an event encoded by this codec instance. Reads the buffer from its position up to its limit.
+     */
+    public Event decode(ByteBuffer b) {
+
+        byte kind = b.get();
+
+        if (kind == MULTI_SOURCE_READING_EVENT) {
+
+            long start = b.getLong();
+            long end = b.getLong();
+            Long scheduled = b.get() == 0 ? null : b.getLong();
+            int sourceCount = b.getInt();
+
+            List<Address> addresses = new ArrayList<>(sourceCount);
+            List<List<Property>> readings = new ArrayList<>(sourceCount);
+            List<Address> missing = null;
+
+            for(int i = 0; i < sourceCount; i ++) {
+
+                Address a = (Address)dictionary.get(b.getInt());
+                addresses.add(a);
+
+                if (b.get() != 0) {
+
+                    if (missing == null) {
+
+                        missing = new ArrayList<>();
+                    }
+
+                    missing.add(a);
+                }
+
+                readings.add(decodeProperties(b));
+            }
+
+            MultiSourceReadingEvent e = new MultiSourceReadingEvent(start, end, addresses, readings);
+            e.setScheduledTimestamp(scheduled);
+
+            if (missing != null) {
+
+                for(Address a: missing) {
+
+                    e.markMissing(a);
+                }
+            }
+
+            return e;
+        }
+        else if (kind == GENERIC_TIMED_EVENT) {
+
+            long time = b.getLong();
+
+            GenericTimedEvent e = new GenericTimedEvent(time);
+
+            for(Property p: decodeProperties(b)) {
+
+                e.setProperty(p);
+            }
+
+            return e;
+        }
+
+        throw new IllegalStateException("unknown encoded event kind " + kind);
+    }
+
+    /**
+     * @return the number of distinct objects (addresses, measure units, property types) seen so far.
+     */
+    public int getDictionarySize() {
+
+        return dictionary.size();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void encodeMultiSourceReadingEvent(MultiSourceReadingEvent e) {
+
+        List<Address> addresses = e.getSourceAddresses();
+
+        buffer.put(MULTI_SOURCE_READING_EVENT);
+        buffer.putLong(e.getCollectionStartTimestamp());
+        buffer.putLong(e.getCollectionEndTimestamp());
+
+        Long scheduled = e.getScheduledTimestamp();
+
+        if (scheduled == null) {
+
+            buffer.put((byte)0);
+        }
+        else {
+
+            buffer.put((byte)1);
+            buffer.putLong(scheduled);
+        }
+
+        buffer.putInt(addresses.size());
+
+        for(Address a: addresses) {
+
+            buffer.putInt(indexOf(a));
+            buffer.put((byte)(e.isMissing(a) ? 1 : 0));
+            encodeProperties(e.getPropertiesForSource(a));
+        }
+    }
+
+    private void encodeGenericTimedEvent(GenericTimedEvent e) {
+
+        Long time = e.getTime();
+
+        buffer.put(GENERIC_TIMED_EVENT);
+        buffer.putLong(time == null ? 0L : time);
+
+        //
+        // getProperties() includes the synthetic timestamp property, which is restored by the constructor
+        //
+
+        List<Property> properties = new ArrayList<>();
+
+        for(Property p: e.getProperties()) {
+
+            if (!(p instanceof TimestampProperty)) {
+
+                properties.add(p);
+            }
+        }
+
+        encodeProperties(properties);
+    }
+
+    private void encodeProperties(List<Property> properties) {
+
+        buffer.putInt(properties.size());
+
+        for(Property p: properties) {
+
+            putString(p.getName());
+            buffer.putInt(indexOf(p.getType()));
+
+            MeasureUnit mu = p.getMeasureUnit();
+            buffer.putInt(mu == null ? -1 : indexOf(mu));
+
+            Object v = p.getValue();
+
+            if (v == null) {
+
+                buffer.put(NULL_VALUE);
+            }
+            else if (v instanceof Integer) {
+
+                buffer.put(INTEGER_VALUE);
+                buffer.putInt((Integer)v);
+            }
+            else if (v instanceof Long) {
+
+                buffer.put(LONG_VALUE);
+                buffer.putLong((Long)v);
+            }
+            else if (v instanceof Double) {
+
+                buffer.put(DOUBLE_VALUE);
+                buffer.putDouble((Double)v);
+            }
+            else if (v instanceof Float) {
+
+                buffer.put(FLOAT_VALUE);
+                buffer.putFloat((Float)v);
+            }
+            else if (v instanceof Boolean) {
+
+                buffer.put(BOOLEAN_VALUE);
+                buffer.put((byte)((Boolean)v ? 1 : 0));
+            }
+            else {
+
+                buffer.put(STRING_VALUE);
+                putString(v.toString());
+            }
+        }
+    }
+
+    private List<Property> decodeProperties(ByteBuffer b) {
+
+        int count = b.getInt();
+
+        List<Property> properties = new ArrayList<>(count);
+
+        for(int i = 0; i < count; i ++) {
+
+            String name = getString(b);
+            Class type = (Class)dictionary.get(b.getInt());
+            int muIndex = b.getInt();
+            MeasureUnit mu = muIndex < 0 ? null : (MeasureUnit)dictionary.get(muIndex);
+
+            Object value;
+            byte tag = b.get();
+
+            switch (tag) {
+
+                case NULL_VALUE:
+                    value = null;
+                    break;
+                case INTEGER_VALUE:
+                    value = b.getInt();
+                    break;
+                case LONG_VALUE:
+                    value = b.getLong();
+                    break;
+                case DOUBLE_VALUE:
+                    value = b.getDouble();
+                    break;
+                case FLOAT_VALUE:
+                    value = b.getFloat();
+                    break;
+                case BOOLEAN_VALUE:
+                    value = b.get() != 0;
+                    break;
+                default:
+                    value = getString(b);
+            }
+
+            properties.add(propertyFactory.createInstance(name, type, value, null, mu));
+        }
+
+        return properties;
+    }
+
+    private int indexOf(Object o) {
+
+        Integer i = dictionaryIndex.get(o);
+
+        if (i == null) {
+
+            i = dictionary.size();
+            dictionary.add(o);
+            dictionaryIndex.put(o, i);
+        }
+
+        return i;
+    }
+
+    private void putString(String s) {
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer b) {
+
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
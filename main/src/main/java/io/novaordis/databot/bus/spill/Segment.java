@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus.spill;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fixed size, memory-mapped spill file. Records are appended as [length][bytes] and read back in the same order.
+ *
+ * A drained segment is reset and reused by the SpillQueue, so the files are created once and never truncated.
+ *
+ * Not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/15/18
+ */
+class Segment {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(Segment.class);
+
+    static final int RECORD_HEADER_SIZE = 4;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File file;
+
+    private final MappedByteBuffer buffer;
+
+    private int readPosition;
+    private int writePosition;
+    private int recordCount;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    Segment(File file, int size) throws IOException {
+
+        this.file = file;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+
+            //
+            // the mapping stays valid after the channel is closed
+            //
+
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return false if there is not enough room left in the segment for the record.
+     */
+    boolean append(ByteBuffer record) {
+
+        int length = record.remaining();
+
+        if (buffer.capacity() - writePosition < RECORD_HEADER_SIZE + length) {
+
+            return false;
+        }
+
+        buffer.putInt(writePosition, length);
+
+        ByteBuffer target = buffer.duplicate();
+        target.position(writePosition + RECORD_HEADER_SIZE);
+        target.put(record);
+
+        writePosition += RECORD_HEADER_SIZE + length;
+        recordCount ++;
+        return true;
+    }
+
+    /**
+     * @return a read-only view of the oldest unread record, or null if the segment is drained. The read position does
+     * not change.
+     */
+    ByteBuffer peek() {
+
+        if (isDrained()) {
+
+            return null;
+        }
+
+        int length = buffer.getInt(readPosition);
+
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.position(readPosition + RECORD_HEADER_SIZE);
+        view.limit(readPosition + RECORD_HEADER_SIZE + length);
+        return view;
+    }
+
+    /**
+     * Moves past the oldest unread record.
+     */
+    void advance() {
+
+        if (isDrained()) {
+
+            throw new IllegalStateException(this + " is drained");
+        }
+
+        readPosition += RECORD_HEADER_SIZE + buffer.getInt(readPosition);
+        recordCount --;
+    }
+
+    boolean isDrained() {
+
+        return readPosition == writePosition;
+    }
+
+    /**
+     * @return the number of unread records.
+     */
+    int getRecordCount() {
+
+        return recordCount;
+    }
+
+    int getSize() {
+
+        return buffer.capacity();
+    }
+
+    File getFile() {
+
+        return file;
+    }
+
+    /**
+     * Discards the content, so the segment can be written from the beginning.
+     */
+    void recycle() {
+
+        readPosition = 0;
+        writePosition = 0;
+        recordCount = 0;
+    }
+
+    /**
+     * Discards the content and deletes the file.
+     */
+    void close() {
+
+        recycle();
+
+        if (!file.delete()) {
+
+            log.warn("failed to delete spill segment " + file);
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return "spill segment " + file.getName() + "(" + recordCount + ")";
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus.spill;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.event.Event;
+
+/**
+ * A FIFO queue of events backed by a bounded set of memory-mapped segment files, used as overflow tier when the
+ * in-memory event bus is full. Only the segment files hold the events, so the heap footprint does not depend on the
+ * number of spilled events.
+ *
+ * Segments are created on demand, up to the configured maximum, and they are reused once drained. The files do not
+ * survive the process: close() deletes the files it created, and stale files left behind by a dead process are deleted
+ * on startup.
+ *
+ * The configured spill directory may be shared by several queues, in the same or in different processes (the default
+ * directory is shared by all agents on the host). Each queue claims its own "queue-<n>" subdirectory by holding an
+ * exclusive lock on the subdirectory's lock file, and only touches segment files in the subdirectory it holds the lock
+ * for. A subdirectory whose lock can be acquired belongs to nobody, so its segment files are stale. The lock file is
+ * never deleted, deleting it would allow a second owner to lock a new file under the same name.
+ *
+ * Not thread safe, the EventPublisher serializes access.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/15/18
+ */
+public class SpillQueue {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(SpillQueue.class);
+
+    public static final String SEGMENT_FILE_PREFIX = "spill-";
+    public static final String SEGMENT_FILE_SUFFIX = ".seg";
+
+    public static final String QUEUE_DIRECTORY_PREFIX = "queue-";
+    public static final String LOCK_FILE_NAME = "lock";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File directory;
+
+    //
+    // the subdirectory of the spill directory claimed by this queue, null if none could be claimed
+    //
+    private File segmentDirectory;
+
+    //
+    // held for the life of the queue, on the lock file of segmentDirectory
+    //
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final EventCodec codec;
+
+    //
+    // the segments that hold events, oldest first. Events are appended to the last segment and read from the first
+    //
+    private final Deque<Segment> segments;
+
+    //
+    // drained segments, ready to be reused
+    //
+    private final Deque<Segment> free;
+
+    private int segmentCount;
+
+    private int size;
+
+    //
+    // the decoded head, cached so repeated peek() calls do not decode again
+    //
+    private Event head;
+
+    private volatile long spilledCount;
+    private volatile long replayedCount;
+
+    private boolean closed;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param segmentSize the size of a segment file, in bytes.
+     * @param maxSegments the maximum number of segment files, which caps the disk usage at maxSegments * segmentSize.
+     */
+    public SpillQueue(File directory, int segmentSize, int maxSegments) {
+
+        if (directory == null) {
+
+            throw new IllegalArgumentException("null spill directory");
+        }
+
+        if (segmentSize <= Segment.RECORD_HEADER_SIZE) {
+
+            throw new IllegalArgumentException("invalid spill segment size " + segmentSize);
+        }
+
+        if (maxSegments <= 0) {
+
+            throw new IllegalArgumentException("invalid maximum number of spill segments " + maxSegments);
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.codec = new EventCodec();
+        this.segments = new ArrayDeque<>();
+        this.free = new ArrayDeque<>();
+
+        claimSegmentDirectory();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the event at the tail of the queue.
+     *
+     * @return false if the event could not be spilled: the maximum number of segments is in use, the event is too
+     * large for a segment, its type is not supported by the codec, or the segment file could not be created (which
+     * includes the case when no segment directory could be claimed).
+     */
+    public boolean offer(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        if (closed || !codec.canEncode(e)) {
+
+            return false;
+        }
+
+        ByteBuffer record = codec.encode(e);
+
+        Segment tail = segments.peekLast();
+
+        if (tail == null || !tail.append(record)) {
+
+            tail = nextSegment();
+
+            if (tail == null) {
+
+                return false;
+            }
+
+            if (!tail.append(record)) {
+
+                //
+                // the event does not fit in an empty segment
+                //
+
+                free.addFirst(tail);
+                return false;
+            }
+
+            segments.addLast(tail);
+        }
+
+        size ++;
+
+        //noinspection NonAtomicOperationOnVolatileField
+        spilledCount ++;
+
+        return true;
+    }
+
+    /**
+     * @return the oldest event in the queue, without removing it, or null if the queue is empty.
+     */
+    public Event peek() {
+
+        if (head == null && size > 0) {
+
+            head = codec.decode(segments.getFirst().peek());
+        }
+
+        return head;
+    }
+
+    /**
+     * Removes and returns the oldest event in the queue. The segment is recycled if this was its last event.
+     *
+     * @return null if the queue is empty.
+     */
+    public Event remove() {
+
+        Event e = peek();
+
+        if (e == null) {
+
+            return null;
+        }
+
+        Segment first = segments.getFirst();
+
+        first.advance();
+
+        head = null;
+        size --;
+
+        //noinspection NonAtomicOperationOnVolatileField
+        replayedCount ++;
+
+        if (first.isDrained()) {
+
+            segments.removeFirst();
+            first.recycle();
+            free.addLast(first);
+
+            if (log.isDebugEnabled()) {
+
+                log.debug(first + " drained, recycled");
+            }
+        }
+
+        return e;
+    }
+
+    public boolean isEmpty() {
+
+        return size == 0;
+    }
+
+    /**
+     * @return the number of events currently in the queue.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * @return the total number of events spilled since the queue was created.
+     */
+    public long getSpilledCount() {
+
+        return spilledCount;
+    }
+
+    /**
+     * @return the total number of events removed from the queue since it was created.
+     */
+    public long getReplayedCount() {
+
+        return replayedCount;
+    }
+
+    /**
+     * @return the configured spill directory, possibly shared with other queues.
+     */
+    public File getDirectory() {
+
+        return directory;
+    }
+
+    /**
+     * @return the subdirectory of the spill directory that holds this queue's segment files, or null if no
+     * subdirectory could be claimed, in which case the queue does not accept events.
+     */
+    public File getSegmentDirectory() {
+
+        return segmentDirectory;
+    }
+
+    public int getSegmentSize() {
+
+        return segmentSize;
+    }
+
+    public int getMaxSegments() {
+
+        return maxSegments;
+    }
+
+    /**
+     * Discards the events still in the queue, deletes the segment files and releases the segment directory.
+     * Idempotent.
+     *
+     * @return the number of discarded events.
+     */
+    public int close() {
+
+        if (closed) {
+
+            return 0;
+        }
+
+        closed = true;
+
+        int discarded = size;
+
+        for(Segment s: segments) {
+
+            s.close();
+        }
+
+        for(Segment s: free) {
+
+            s.close();
+        }
+
+        segments.clear();
+        free.clear();
+        head = null;
+        size = 0;
+
+        releaseSegmentDirectory();
+
+        return discarded;
+    }
+
+    @Override
+    public String toString() {
+
+        return "spill queue " + (segmentDirectory == null ? directory : segmentDirectory) + "(" + size + ")";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the number of segment files created so far, including the free ones.
+     */
+    int getSegmentCount() {
+
+        return segmentCount;
+    }
+
+    int getFreeSegmentCount() {
+
+        return free.size();
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return a free segment, a newly created segment, or null if the maximum number of segments is in use.
+     */
+    private Segment nextSegment() {
+
+        Segment s = free.pollFirst();
+
+        if (s != null) {
+
+            return s;
+        }
+
+        if (segmentCount >= maxSegments || segmentDirectory == null) {
+
+            return null;
+        }
+
+        File f = new File(segmentDirectory, SEGMENT_FILE_PREFIX + segmentCount + SEGMENT_FILE_SUFFIX);
+
+        try {
+
+            s = new Segment(f, segmentSize);
+        }
+        catch(IOException e) {
+
+            log.warn("failed to create spill segment " + f + ": " + e.getMessage());
+            return null;
+        }
+
+        segmentCount ++;
+
+        log.debug(s + " created");
+
+        return s;
+    }
+
+    /**
+     * Locks the first "queue-<n>" subdirectory not locked by somebody else, and deletes the stale segment files found
+     * in it. Failure to claim a subdirectory is not fatal, the queue simply does not accept events.
+     */
+    private void claimSegmentDirectory() {
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+
+            log.warn("failed to create spill directory " + directory);
+            return;
+        }
+
+        for(int n = 0; ; n ++) {
+
+            File d = new File(directory, QUEUE_DIRECTORY_PREFIX + n);
+
+            //
+            // another queue may be creating the same subdirectory concurrently
+            //
+            if (!d.mkdirs() && !d.isDirectory()) {
+
+                log.warn("failed to create spill directory " + d);
+                return;
+            }
+
+            FileChannel channel = null;
+            FileLock l = null;
+
+            try {
+
+                channel = FileChannel.open(
+                        new File(d, LOCK_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+                //
+                // null if another process holds the lock
+                //
+                l = channel.tryLock();
+            }
+            catch(OverlappingFileLockException e) {
+
+                //
+                // another queue in this JVM holds the lock
+                //
+            }
+            catch(IOException e) {
+
+                log.warn("failed to lock spill directory " + d + ": " + e.getMessage());
+                closeQuietly(channel);
+                return;
+            }
+
+            if (l == null) {
+
+                closeQuietly(channel);
+                continue;
+            }
+
+            this.segmentDirectory = d;
+            this.lockChannel = channel;
+            this.lock = l;
+
+            log.debug("claimed spill directory " + d);
+
+            deleteStaleSegments();
+            return;
+        }
+    }
+
+    private void releaseSegmentDirectory() {
+
+        if (lock == null) {
+
+            return;
+        }
+
+        try {
+
+            lock.release();
+        }
+        catch(IOException e) {
+
+            log.warn("failed to release the lock on spill directory " + segmentDirectory + ": " + e.getMessage());
+        }
+
+        closeQuietly(lockChannel);
+
+        lock = null;
+        lockChannel = null;
+    }
+
+    private void deleteStaleSegments() {
+
+        File[] stale = segmentDirectory.listFiles(
+                (d, name) -> name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX));
+
+        if (stale == null) {
+
+            return;
+        }
+
+        for(File f: stale) {
+
+            if (f.delete()) {
+
+                log.debug("deleted stale spill segment " + f);
+            }
+            else {
+
+                log.warn("failed to delete stale spill segment " + f);
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+
+        if (channel == null) {
+
+            return;
+        }
+
+        try {
+
+            channel.close();
+        }
+        catch(IOException e) {
+
+            log.debug("failed to close " + channel, e);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
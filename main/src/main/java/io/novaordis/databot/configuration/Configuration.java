@@ -16,9 +16,17 @@
 
 package io.novaordis.databot.configuration;
 
+import java.io.File;
 import java.util.List;
 
 import io.novaordis.databot.DataConsumer;
+import io.novaordis.databot.LateReadingPolicy;
+import io.novaordis.databot.bus.EventBusType;
+import io.novaordis.databot.bus.OverflowPolicy;
+import io.novaordis.databot.bus.WaitStrategy;
+import io.novaordis.databot.derivation.Derivation;
+import io.novaordis.databot.os.LocalOSEngine;
+import io.novaordis.databot.task.SourceExecutorType;
 import io.novaordis.events.api.metric.MetricDefinition;
 import io.novaordis.events.api.metric.MetricSourceDefinition;
 import io.novaordis.events.api.metric.MetricSourceFactory;
@@ -37,8 +45,50 @@ public interface Configuration extends LoggingConfiguration {
 
     int DEFAULT_SAMPLING_INTERVAL_SEC = 10;
 
+    long DEFAULT_SAMPLING_INTERVAL_MS = 1000L * DEFAULT_SAMPLING_INTERVAL_SEC;
+
+    /**
+     * The shortest sampling interval the collection path is designed to sustain.
+     */
+    long MINIMUM_SAMPLING_INTERVAL_MS = 10L;
+
+    LateReadingPolicy DEFAULT_LATE_READING_POLICY = LateReadingPolicy.DROP;
+
     int DEFAULT_EVENT_QUEUE_SIZE = 1000;
 
+    EventBusType DEFAULT_EVENT_QUEUE_TYPE = EventBusType.BLOCKING;
+
+    WaitStrategy DEFAULT_EVENT_QUEUE_WAIT_STRATEGY = WaitStrategy.PARK;
+
+    OverflowPolicy DEFAULT_EVENT_QUEUE_OVERFLOW_POLICY = OverflowPolicy.DROP_NEWEST;
+
+    long DEFAULT_EVENT_QUEUE_BLOCK_TIMEOUT_MS = 5000L;
+
+    int DEFAULT_EVENT_QUEUE_HIGH_WATER_MARK_PERCENT = 80;
+
+    File DEFAULT_EVENT_QUEUE_SPILL_DIRECTORY = new File(System.getProperty("java.io.tmpdir"), "databot-spill");
+
+    int DEFAULT_EVENT_QUEUE_SPILL_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    int DEFAULT_EVENT_QUEUE_SPILL_MAX_SEGMENTS = 64;
+
+    SourceExecutorType DEFAULT_SOURCE_EXECUTOR_TYPE = SourceExecutorType.FIXED;
+
+    int DEFAULT_SOURCE_EXECUTOR_MAX_THREADS = 64;
+
+    /**
+     * No limit.
+     */
+    int DEFAULT_SOURCE_EXECUTOR_PER_HOST_LIMIT = 0;
+
+    /**
+     * The engine the local OS metrics were always read with. The faster engines are opt-in, so an existing
+     * configuration keeps producing the same values, from the same tools.
+     */
+    LocalOSEngine DEFAULT_LOCAL_OS_ENGINE = LocalOSEngine.COMMAND;
+
+    int DEFAULT_COUNTER_WIDTH = 64;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Public ----------------------------------------------------------------------------------------------------------
@@ -53,9 +103,49 @@ public interface Configuration extends LoggingConfiguration {
     boolean isForeground();
 
     /**
-     * @return the sampling interval, in seconds. If not specified, the default is 10 seconds.
+     * @return the sampling interval, in milliseconds. If not specified, the default is 10 seconds. This is the default
+     * for all sources and metrics that do not declare their own sampling interval. Zero means a single collection run.
+     */
+    long getSamplingIntervalMs();
+
+    /**
+     * @return the sampling interval, in milliseconds, for the metrics of the given source that do not declare their
+     * own sampling interval. If the source does not declare a sampling interval, the global sampling interval is
+     * returned.
+     */
+    long getSamplingIntervalMs(Address source);
+
+    /**
+     * @return the sampling interval, in milliseconds, of the given metric. If the metric does not declare a sampling
+     * interval, its source's sampling interval is returned.
+     */
+    long getSamplingIntervalMs(MetricDefinition md);
+
+    /**
+     * @return how the readings of the given metric, a monotonic counter, are turned into the values handed over to the
+     * data consumers. Null means the raw readings are handed over.
+     */
+    Derivation getDerivation(MetricDefinition md);
+
+    /**
+     * @return the width, in bits, of the given counter metric, used to tell a wraparound from a reset. If not
+     * specified, the default is 64, meaning the counter does not wrap around.
+     */
+    int getCounterWidth(MetricDefinition md);
+
+    /**
+     * @return how long, in milliseconds, a data collection run waits for the given source's reading, measured from the
+     * beginning of the run. A reading that does not arrive by the deadline is recorded as missing, and the event is
+     * emitted without it. If no deadline is configured for the source or globally, the deadline is the source's
+     * sampling interval. Zero means no deadline.
+     */
+    long getSourceDeadlineMs(Address source);
+
+    /**
+     * @return what happens to the readings that arrive after their source's deadline. If not specified, the default is
+     * to drop them.
      */
-    int getSamplingIntervalSec();
+    LateReadingPolicy getLateReadingPolicy();
 
     /**
      * The maximum number of events that can be maintained at one time in the in-memory blocking queue, after which
@@ -65,6 +155,78 @@ public interface Configuration extends LoggingConfiguration {
      */
     int getEventQueueSize();
 
+    /**
+     * @return the implementation of the in-memory event queue. If not specified, the default is the lock-based
+     * blocking implementation.
+     */
+    EventBusType getEventQueueType();
+
+    /**
+     * @return the way consumers (and the producer, when the queue is full) wait on a lock-free event queue. Ignored
+     * by the blocking implementation.
+     */
+    WaitStrategy getEventQueueWaitStrategy();
+
+    /**
+     * @return what happens to a new event when the event queue is full. If not specified, the default is to drop the
+     * new event.
+     */
+    OverflowPolicy getEventQueueOverflowPolicy();
+
+    /**
+     * @return how long the producer waits for space in the event queue before dropping the new event. Only relevant
+     * for the "block" overflow policy.
+     */
+    long getEventQueueBlockTimeoutMs();
+
+    /**
+     * @return the number of events in the event queue past which new events are spilled to disk. Only relevant for
+     * the "spill" overflow policy. If not specified, the default is 80% of the event queue size.
+     */
+    int getEventQueueHighWaterMark();
+
+    /**
+     * @return the directory that holds the spill segment files. Only relevant for the "spill" overflow policy. The
+     * directory may be shared by several agents, each spill queue claims its own locked subdirectory.
+     */
+    File getEventQueueSpillDirectory();
+
+    /**
+     * @return the size of a spill segment file, in bytes. Only relevant for the "spill" overflow policy.
+     */
+    int getEventQueueSpillSegmentSize();
+
+    /**
+     * @return the maximum number of spill segment files. Together with the segment size, it caps the disk space used
+     * by the spilled events. Only relevant for the "spill" overflow policy.
+     */
+    int getEventQueueSpillMaxSegments();
+
+    /**
+     * @return the kind of threads the source queries are executed on. If not specified, the default is a platform
+     * thread per metric source.
+     */
+    SourceExecutorType getSourceExecutorType();
+
+    /**
+     * @return the maximum number of threads of an elastic source executor. Also used when the virtual thread executor
+     * is not supported by the runtime, and falls back to an elastic executor.
+     */
+    int getSourceExecutorMaxThreads();
+
+    /**
+     * @return the maximum number of concurrent queries against sources on the same host. Zero means no limit.
+     */
+    int getSourceExecutorPerHostLimit();
+
+    /**
+     * @return how the local OS metrics are read. The default runs commands (vmstat, top, etc.) on every reading. The
+     * "proc" engine reads /proc directly when available, and falls back to the command-based source for the metrics
+     * that cannot be read from /proc, and on systems without /proc. The "stream" engine tails a single long-running
+     * vmstat instead.
+     */
+    LocalOSEngine getLocalOSEngine();
+
 
     // Metric Sources --------------------------------------------------------------------------------------------------
 
@@ -17,7 +17,14 @@
 package io.novaordis.databot.configuration;
 
 import io.novaordis.databot.DataConsumer;
+import io.novaordis.databot.LateReadingPolicy;
+import io.novaordis.databot.bus.EventBusType;
+import io.novaordis.databot.bus.OverflowPolicy;
+import io.novaordis.databot.bus.WaitStrategy;
 import io.novaordis.databot.consumer.AsynchronousCsvLineWriter;
+import io.novaordis.databot.derivation.Derivation;
+import io.novaordis.databot.os.LocalOSEngine;
+import io.novaordis.databot.task.SourceExecutorType;
 import io.novaordis.events.api.event.PropertyFactory;
 import io.novaordis.events.api.metric.MetricDefinition;
 import io.novaordis.events.api.metric.MetricSourceDefinition;
@@ -34,11 +41,15 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -60,7 +71,29 @@ public abstract class ConfigurationBase implements Configuration {
 
     private boolean foreground;
 
-    private int samplingInterval;
+    private long samplingIntervalMs;
+
+    private Map<Address, Long> sourceSamplingIntervals;
+
+    //
+    // keyed by identity, we don't rely on MetricDefinition equality semantics
+    //
+    private Map<MetricDefinition, Long> metricSamplingIntervals;
+
+    //
+    // keyed by identity, only the derived metrics have entries
+    //
+    private Map<MetricDefinition, Derivation> derivations;
+    private Map<MetricDefinition, Integer> counterWidths;
+
+    //
+    // null means the deadline defaults to the source sampling interval
+    //
+    private Long sourceDeadlineMs;
+
+    private Map<Address, Long> sourceDeadlines;
+
+    private LateReadingPolicy lateReadingPolicy;
 
     private List<MetricSourceDefinition> sourceDefinitions;
 
@@ -70,6 +103,33 @@ public abstract class ConfigurationBase implements Configuration {
 
     private int eventQueueSize;
 
+    private EventBusType eventQueueType;
+
+    private WaitStrategy eventQueueWaitStrategy;
+
+    private OverflowPolicy eventQueueOverflowPolicy;
+
+    private long eventQueueBlockTimeoutMs;
+
+    //
+    // zero means "derived from the event queue size"
+    //
+    private int eventQueueHighWaterMark;
+
+    private File eventQueueSpillDirectory;
+
+    private int eventQueueSpillSegmentSize;
+
+    private int eventQueueSpillMaxSegments;
+
+    private SourceExecutorType sourceExecutorType;
+
+    private int sourceExecutorMaxThreads;
+
+    private int sourceExecutorPerHostLimit;
+
+    private LocalOSEngine localOSEngine;
+
     private MetricSourceFactory sourceFactory;
 
     private PropertyFactory propertyFactory;
@@ -91,9 +151,26 @@ public abstract class ConfigurationBase implements Configuration {
 
         this.fileName = fileName;
 
-        this.samplingInterval = DEFAULT_SAMPLING_INTERVAL_SEC;
+        this.samplingIntervalMs = DEFAULT_SAMPLING_INTERVAL_MS;
+        this.sourceSamplingIntervals = new HashMap<>();
+        this.metricSamplingIntervals = new IdentityHashMap<>();
+        this.derivations = new IdentityHashMap<>();
+        this.counterWidths = new IdentityHashMap<>();
+        this.sourceDeadlines = new HashMap<>();
+        this.lateReadingPolicy = DEFAULT_LATE_READING_POLICY;
 
         setEventQueueSize(DEFAULT_EVENT_QUEUE_SIZE);
+        setEventQueueType(DEFAULT_EVENT_QUEUE_TYPE);
+        setEventQueueWaitStrategy(DEFAULT_EVENT_QUEUE_WAIT_STRATEGY);
+        setEventQueueOverflowPolicy(DEFAULT_EVENT_QUEUE_OVERFLOW_POLICY);
+        setEventQueueBlockTimeoutMs(DEFAULT_EVENT_QUEUE_BLOCK_TIMEOUT_MS);
+        setEventQueueSpillDirectory(DEFAULT_EVENT_QUEUE_SPILL_DIRECTORY);
+        setEventQueueSpillSegmentSize(DEFAULT_EVENT_QUEUE_SPILL_SEGMENT_SIZE);
+        setEventQueueSpillMaxSegments(DEFAULT_EVENT_QUEUE_SPILL_MAX_SEGMENTS);
+        setSourceExecutorType(DEFAULT_SOURCE_EXECUTOR_TYPE);
+        setSourceExecutorMaxThreads(DEFAULT_SOURCE_EXECUTOR_MAX_THREADS);
+        setSourceExecutorPerHostLimit(DEFAULT_SOURCE_EXECUTOR_PER_HOST_LIMIT);
+        setLocalOSEngine(DEFAULT_LOCAL_OS_ENGINE);
 
         this.sourceDefinitions = new ArrayList<>();
         this.metricDefinitions = new ArrayList<>();
@@ -162,9 +239,58 @@ public abstract class ConfigurationBase implements Configuration {
     }
 
     @Override
-    public int getSamplingIntervalSec() {
+    public long getSamplingIntervalMs() {
+
+        return samplingIntervalMs;
+    }
+
+    @Override
+    public long getSamplingIntervalMs(Address source) {
+
+        Long l = sourceSamplingIntervals.get(source);
+
+        return l == null ? samplingIntervalMs : l;
+    }
+
+    @Override
+    public long getSamplingIntervalMs(MetricDefinition md) {
+
+        Long l = metricSamplingIntervals.get(md);
+
+        return l == null ? getSamplingIntervalMs(md.getMetricSourceAddress()) : l;
+    }
+
+    @Override
+    public Derivation getDerivation(MetricDefinition md) {
+
+        return derivations.get(md);
+    }
+
+    @Override
+    public int getCounterWidth(MetricDefinition md) {
+
+        Integer w = counterWidths.get(md);
+
+        return w == null ? DEFAULT_COUNTER_WIDTH : w;
+    }
+
+    @Override
+    public long getSourceDeadlineMs(Address source) {
+
+        Long l = sourceDeadlines.get(source);
+
+        if (l != null) {
+
+            return l;
+        }
+
+        return sourceDeadlineMs != null ? sourceDeadlineMs : getSamplingIntervalMs(source);
+    }
+
+    @Override
+    public LateReadingPolicy getLateReadingPolicy() {
 
-        return samplingInterval;
+        return lateReadingPolicy;
     }
 
     @Override
@@ -173,6 +299,83 @@ public abstract class ConfigurationBase implements Configuration {
         return eventQueueSize;
     }
 
+    @Override
+    public EventBusType getEventQueueType() {
+
+        return eventQueueType;
+    }
+
+    @Override
+    public WaitStrategy getEventQueueWaitStrategy() {
+
+        return eventQueueWaitStrategy;
+    }
+
+    @Override
+    public OverflowPolicy getEventQueueOverflowPolicy() {
+
+        return eventQueueOverflowPolicy;
+    }
+
+    @Override
+    public long getEventQueueBlockTimeoutMs() {
+
+        return eventQueueBlockTimeoutMs;
+    }
+
+    @Override
+    public int getEventQueueHighWaterMark() {
+
+        if (eventQueueHighWaterMark > 0) {
+
+            return eventQueueHighWaterMark;
+        }
+
+        return Math.max(1, (int)((long)eventQueueSize * DEFAULT_EVENT_QUEUE_HIGH_WATER_MARK_PERCENT / 100));
+    }
+
+    @Override
+    public File getEventQueueSpillDirectory() {
+
+        return eventQueueSpillDirectory;
+    }
+
+    @Override
+    public int getEventQueueSpillSegmentSize() {
+
+        return eventQueueSpillSegmentSize;
+    }
+
+    @Override
+    public int getEventQueueSpillMaxSegments() {
+
+        return eventQueueSpillMaxSegments;
+    }
+
+    @Override
+    public SourceExecutorType getSourceExecutorType() {
+
+        return sourceExecutorType;
+    }
+
+    @Override
+    public int getSourceExecutorMaxThreads() {
+
+        return sourceExecutorMaxThreads;
+    }
+
+    @Override
+    public int getSourceExecutorPerHostLimit() {
+
+        return sourceExecutorPerHostLimit;
+    }
+
+    @Override
+    public LocalOSEngine getLocalOSEngine() {
+
+        return localOSEngine;
+    }
+
     @Override
     public List<MetricDefinition> getMetricDefinitions() {
 
@@ -261,9 +464,47 @@ public abstract class ConfigurationBase implements Configuration {
 
     protected abstract void load(InputStream is) throws UserErrorException;
 
-    protected void setSamplingIntervalSec(int i) {
+    protected void setSamplingIntervalMs(long ms) {
+
+        this.samplingIntervalMs = ms;
+    }
+
+    protected void setSamplingIntervalMs(Address source, long ms) {
+
+        sourceSamplingIntervals.put(source, ms);
+    }
+
+    protected void setSamplingIntervalMs(MetricDefinition md, long ms) {
+
+        metricSamplingIntervals.put(md, ms);
+    }
+
+    protected void setDerivation(MetricDefinition md, Derivation d) {
+
+        derivations.put(md, d);
+    }
+
+    protected void setCounterWidth(MetricDefinition md, int bits) {
+
+        counterWidths.put(md, bits);
+    }
+
+    /**
+     * Sets the deadline for all sources that do not declare their own.
+     */
+    protected void setSourceDeadlineMs(long ms) {
+
+        this.sourceDeadlineMs = ms;
+    }
+
+    protected void setSourceDeadlineMs(Address source, long ms) {
+
+        sourceDeadlines.put(source, ms);
+    }
+
+    protected void setLateReadingPolicy(LateReadingPolicy p) {
 
-        this.samplingInterval = i;
+        this.lateReadingPolicy = p;
     }
 
     protected void addMetricDefinition(MetricDefinition md) {
@@ -316,6 +557,69 @@ public abstract class ConfigurationBase implements Configuration {
         this.eventQueueSize = i;
     }
 
+    protected void setEventQueueType(EventBusType t) {
+
+        this.eventQueueType = t;
+    }
+
+    protected void setEventQueueWaitStrategy(WaitStrategy s) {
+
+        this.eventQueueWaitStrategy = s;
+    }
+
+    protected void setEventQueueOverflowPolicy(OverflowPolicy p) {
+
+        this.eventQueueOverflowPolicy = p;
+    }
+
+    protected void setEventQueueBlockTimeoutMs(long ms) {
+
+        this.eventQueueBlockTimeoutMs = ms;
+    }
+
+    /**
+     * @param i zero reverts to the default, derived from the event queue size.
+     */
+    protected void setEventQueueHighWaterMark(int i) {
+
+        this.eventQueueHighWaterMark = i;
+    }
+
+    protected void setEventQueueSpillDirectory(File d) {
+
+        this.eventQueueSpillDirectory = d;
+    }
+
+    protected void setEventQueueSpillSegmentSize(int bytes) {
+
+        this.eventQueueSpillSegmentSize = bytes;
+    }
+
+    protected void setEventQueueSpillMaxSegments(int i) {
+
+        this.eventQueueSpillMaxSegments = i;
+    }
+
+    protected void setSourceExecutorType(SourceExecutorType t) {
+
+        this.sourceExecutorType = t;
+    }
+
+    protected void setSourceExecutorMaxThreads(int i) {
+
+        this.sourceExecutorMaxThreads = i;
+    }
+
+    protected void setSourceExecutorPerHostLimit(int i) {
+
+        this.sourceExecutorPerHostLimit = i;
+    }
+
+    protected void setLocalOSEngine(LocalOSEngine e) {
+
+        this.localOSEngine = e;
+    }
+
     /**
      * This is a method to be invoked by subclasses after at the end of the load() method after both the data consumers
      * and the metrics have been parsed, and it is intended to capture the metric order, to be later reflected in
@@ -362,15 +666,32 @@ public abstract class ConfigurationBase implements Configuration {
 
         String s =
                 "\n\nconfiguration:\n\n" +
-                        " sampling interval:     " + getSamplingIntervalSec() + " seconds\n" +
+                        " sampling interval:     " + getSamplingIntervalMs() + " ms\n" +
                         " event queue size:      " + getEventQueueSize() + "\n" +
+                        " event queue type:      " + getEventQueueType() + "\n" +
+                        " event queue wait:      " + getEventQueueWaitStrategy() + "\n" +
+                        " event queue overflow:  " + getEventQueueOverflowPolicy() +
+                        (OverflowPolicy.BLOCK.equals(getEventQueueOverflowPolicy()) ?
+                                " (" + getEventQueueBlockTimeoutMs() + " ms)" : "") +
+                        (OverflowPolicy.SPILL.equals(getEventQueueOverflowPolicy()) ?
+                                " (past " + getEventQueueHighWaterMark() + " events, to " +
+                                        getEventQueueSpillDirectory() + ", " + getEventQueueSpillMaxSegments() +
+                                        " x " + getEventQueueSpillSegmentSize() + " bytes)" : "") + "\n" +
+                        " late readings:         " + getLateReadingPolicy() + "\n" +
+                        " source executor:       " + getSourceExecutorType() +
+                        (SourceExecutorType.FIXED.equals(getSourceExecutorType()) ?
+                                "" : " (max " + getSourceExecutorMaxThreads() + " threads)") +
+                        (getSourceExecutorPerHostLimit() == 0 ?
+                                "" : ", " + getSourceExecutorPerHostLimit() + " queries per host") + "\n" +
+                        " local OS engine:       " + getLocalOSEngine() + "\n" +
                         " metric sources:\n";
 
         List<MetricSourceDefinition> sds = getMetricSourceDefinitions();
 
         for(MetricSourceDefinition d : sds) {
 
-            s += "    - " + d.getAddress() + "\n";
+            s += "    - " + d.getAddress() + samplingIntervalIfOverridden(getSamplingIntervalMs(d.getAddress())) +
+                    ", deadline " + getSourceDeadlineMs(d.getAddress()) + " ms\n";
         }
 
         s += " metrics:\n";
@@ -379,7 +700,9 @@ public abstract class ConfigurationBase implements Configuration {
 
         for(MetricDefinition md: mds) {
 
-            s += "    - " + md.getMetricSourceAddress() + "/" + md.getId() + "\n";
+            s += "    - " + md.getMetricSourceAddress() + "/" + md.getId() +
+                    samplingIntervalIfOverridden(getSamplingIntervalMs(md)) +
+                    (getDerivation(md) == null ? "" : ", " + getDerivation(md)) + "\n";
         }
 
         s += " data consumers:\n";
@@ -394,6 +717,11 @@ public abstract class ConfigurationBase implements Configuration {
         log.debug(s);
     }
 
+    private String samplingIntervalIfOverridden(long ms) {
+
+        return ms == getSamplingIntervalMs() ? "" : " (every " + ms + " ms)";
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
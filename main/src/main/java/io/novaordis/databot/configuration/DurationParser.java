@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.configuration;
+
+/**
+ * Converts configuration duration values to milliseconds. A duration is either a number, or a string made of a
+ * number optionally followed by a unit: "ms", "s", "m" or "h" (for example "50ms", "2s", "5 m"). Numbers and strings
+ * without a unit are interpreted in the unit specified by the caller, which allows the configuration keys that
+ * historically accepted an integer number of seconds to keep doing so.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class DurationParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param defaultUnitMs the number of milliseconds of the unit used for values that do not specify one, for
+     *                      example 1000 for seconds.
+     *
+     * @exception IllegalArgumentException if the value is not a valid duration, or it is negative.
+     */
+    public static long toMilliseconds(Object o, long defaultUnitMs) {
+
+        if (o instanceof Integer || o instanceof Long) {
+
+            long l = ((Number)o).longValue();
+
+            if (l < 0) {
+
+                throw new IllegalArgumentException("negative duration: " + o);
+            }
+
+            return l * defaultUnitMs;
+        }
+
+        if (!(o instanceof String)) {
+
+            throw new IllegalArgumentException("invalid duration: " + o);
+        }
+
+        String s = ((String)o).trim();
+
+        int i = 0;
+
+        while(i < s.length() && Character.isDigit(s.charAt(i))) {
+
+            i ++;
+        }
+
+        if (i == 0) {
+
+            throw new IllegalArgumentException("invalid duration: " + o);
+        }
+
+        long value;
+
+        try {
+
+            value = Long.parseLong(s.substring(0, i));
+        }
+        catch(NumberFormatException e) {
+
+            throw new IllegalArgumentException("invalid duration: " + o, e);
+        }
+
+        String unit = s.substring(i).trim();
+
+        long unitMs;
+
+        switch(unit) {
+
+            case "":
+                unitMs = defaultUnitMs;
+                break;
+            case "ms":
+                unitMs = 1L;
+                break;
+            case "s":
+                unitMs = 1000L;
+                break;
+            case "m":
+                unitMs = 60 * 1000L;
+                break;
+            case "h":
+                unitMs = 60 * 60 * 1000L;
+                break;
+            default:
+                throw new IllegalArgumentException("invalid duration unit '" + unit + "' in " + o);
+        }
+
+        return value * unitMs;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private DurationParser() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
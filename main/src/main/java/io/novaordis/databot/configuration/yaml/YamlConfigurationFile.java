@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,8 +30,25 @@ import org.yaml.snakeyaml.Yaml;
 
 import io.novaordis.databot.DataConsumer;
 import io.novaordis.databot.DataConsumerException;
+import io.novaordis.databot.LateReadingPolicy;
+import io.novaordis.databot.bus.EventBusType;
+import io.novaordis.databot.bus.OverflowPolicy;
+import io.novaordis.databot.bus.WaitStrategy;
+import io.novaordis.databot.configuration.Configuration;
 import io.novaordis.databot.configuration.ConfigurationBase;
+import io.novaordis.databot.configuration.DurationParser;
 import io.novaordis.databot.consumer.AsynchronousCsvLineWriter;
+import io.novaordis.databot.derivation.Derivation;
+import io.novaordis.databot.os.LocalOSEngine;
+import io.novaordis.databot.os.linux.CgroupMetricDefinition;
+import io.novaordis.databot.os.linux.CpuCoreMetricDefinition;
+import io.novaordis.databot.os.linux.DiskMetricDefinition;
+import io.novaordis.databot.os.linux.JvmMetricDefinition;
+import io.novaordis.databot.os.linux.NetworkMetricDefinition;
+import io.novaordis.databot.os.linux.PressureMetricDefinition;
+import io.novaordis.databot.os.linux.ProcessMetricDefinition;
+import io.novaordis.databot.os.linux.TcpConnectionMetricDefinition;
+import io.novaordis.databot.task.SourceExecutorType;
 import io.novaordis.events.api.event.PropertyFactory;
 import io.novaordis.events.api.metric.MetricDefinition;
 import io.novaordis.events.api.metric.MetricDefinitionParser;
@@ -58,6 +76,44 @@ public class YamlConfigurationFile extends ConfigurationBase {
     @SuppressWarnings("WeakerAccess")
     public static final String SAMPLING_INTERVAL_KEY = "sampling.interval";
 
+    public static final String SOURCE_DEADLINE_KEY = "source.deadline";
+
+    public static final String LATE_READING_POLICY_KEY = "late.reading.policy";
+
+    public static final String DEADLINE_KEY = "deadline";
+
+    public static final String EVENT_QUEUE_KEY = "event.queue";
+
+    public static final String EVENT_QUEUE_SIZE_KEY = "size";
+
+    public static final String EVENT_QUEUE_TYPE_KEY = "type";
+
+    public static final String EVENT_QUEUE_WAIT_STRATEGY_KEY = "wait.strategy";
+
+    public static final String EVENT_QUEUE_OVERFLOW_POLICY_KEY = "overflow.policy";
+
+    public static final String EVENT_QUEUE_BLOCK_TIMEOUT_KEY = "block.timeout";
+
+    public static final String EVENT_QUEUE_HIGH_WATER_MARK_KEY = "high.water.mark";
+
+    public static final String EVENT_QUEUE_SPILL_KEY = "spill";
+
+    public static final String EVENT_QUEUE_SPILL_DIRECTORY_KEY = "directory";
+
+    public static final String EVENT_QUEUE_SPILL_SEGMENT_SIZE_KEY = "segment.size";
+
+    public static final String EVENT_QUEUE_SPILL_MAX_SEGMENTS_KEY = "max.segments";
+
+    public static final String SOURCE_EXECUTOR_KEY = "source.executor";
+
+    public static final String SOURCE_EXECUTOR_TYPE_KEY = "type";
+
+    public static final String SOURCE_EXECUTOR_MAX_THREADS_KEY = "max.threads";
+
+    public static final String SOURCE_EXECUTOR_PER_HOST_LIMIT_KEY = "per.host.limit";
+
+    public static final String LOCAL_OS_ENGINE_KEY = "local.os.engine";
+
     public static final String SOURCES_KEY = "sources";
 
     public static final String OUTPUT_KEY = "output";
@@ -74,6 +130,12 @@ public class YamlConfigurationFile extends ConfigurationBase {
 
     public static final String METRICS_KEY = "metrics";
 
+    public static final String METRIC_KEY = "metric";
+
+    public static final String DERIVE_KEY = "derive";
+
+    public static final String COUNTER_WIDTH_KEY = "counter.width";
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     public static Object fromYaml(InputStream is) {
@@ -148,6 +210,31 @@ public class YamlConfigurationFile extends ConfigurationBase {
 
         processSamplingInterval(topLevelMap.get(SAMPLING_INTERVAL_KEY));
 
+        //
+        // 'source.deadline', 'late.reading.policy'
+        //
+
+        processSourceDeadline(topLevelMap.get(SOURCE_DEADLINE_KEY));
+        processLateReadingPolicy(topLevelMap.get(LATE_READING_POLICY_KEY));
+
+        //
+        // 'event.queue'
+        //
+
+        processEventQueue(topLevelMap.get(EVENT_QUEUE_KEY));
+
+        //
+        // 'source.executor'
+        //
+
+        processSourceExecutor(topLevelMap.get(SOURCE_EXECUTOR_KEY));
+
+        //
+        // 'local.os.engine'
+        //
+
+        processLocalOSEngine(topLevelMap.get(LOCAL_OS_ENGINE_KEY));
+
         //
         // 'sources'
         //
@@ -188,6 +275,32 @@ public class YamlConfigurationFile extends ConfigurationBase {
         List<MetricSourceDefinition> definitions = parseSources(o);
         setMetricSourceVariables(definitions, rootScope);
         setMetricSourceDefinitions(definitions);
+
+        //
+        // per-source sampling intervals and deadlines. parseSources() already validated the map structure
+        //
+
+        Map sources = (Map)o;
+
+        for(MetricSourceDefinition d: definitions) {
+
+            Map sm = (Map)sources.get(d.getName());
+
+            Object si = sm.get(SAMPLING_INTERVAL_KEY);
+
+            if (si != null) {
+
+                long ms = toSamplingIntervalMs("'" + d.getName() + "' sampling interval", si, false);
+                setSamplingIntervalMs(d.getAddress(), ms);
+            }
+
+            Object deadline = sm.get(DEADLINE_KEY);
+
+            if (deadline != null) {
+
+                setSourceDeadlineMs(d.getAddress(), toDeadlineMs("'" + d.getName() + "' deadline", deadline));
+            }
+        }
     }
 
     /**
@@ -399,8 +512,89 @@ public class YamlConfigurationFile extends ConfigurationBase {
 
         for(Object le: list) {
 
+            //
+            // a metric is declared either as a plain definition string, or as a map that carries the definition, the
+            // metric's own sampling interval and, for monotonic counters, how the readings are derived:
+            //
+            //   - metric: PhysicalMemoryTotal
+            //     sampling.interval: 60
+            //
+            //   - metric: jmx://localhost:9999/java.lang:type=Threading/TotalStartedThreadCount
+            //     derive: rate      # delta|rate
+            //     counter.width: 32 # bits, optional
+            //
+
+            Long samplingIntervalMs = null;
+            Derivation derivation = null;
+            Integer counterWidth = null;
+
+            if (le instanceof Map) {
+
+                Map m = (Map)le;
+
+                le = m.get(METRIC_KEY);
+
+                if (le == null) {
+
+                    throw new UserErrorException("metric declaration " + m + " has no '" + METRIC_KEY + "' key");
+                }
+
+                Object si = m.get(SAMPLING_INTERVAL_KEY);
+
+                if (si != null) {
+
+                    samplingIntervalMs = toSamplingIntervalMs("'" + le + "' sampling interval", si, false);
+                }
+
+                Object d = m.get(DERIVE_KEY);
+
+                if (d != null) {
+
+                    derivation = Derivation.fromLabel(d.toString());
+
+                    if (derivation == null) {
+
+                        throw new UserErrorException("invalid '" + le + "' derivation: \"" + d + "\"");
+                    }
+                }
+
+                Object w = m.get(COUNTER_WIDTH_KEY);
+
+                if (w != null) {
+
+                    if (derivation == null) {
+
+                        throw new UserErrorException(
+                                "'" + le + "' declares a counter width, but it is not derived");
+                    }
+
+                    if (!(w instanceof Integer) || (Integer)w < 1 || (Integer)w > 64) {
+
+                        throw new UserErrorException(
+                                "invalid '" + le + "' counter width: \"" + w + "\", must be between 1 and 64 bits");
+                    }
+
+                    counterWidth = (Integer)w;
+                }
+            }
+
             MetricDefinition md = toMetricDefinition(getPropertyFactory(), rootScope, le);
             addMetricDefinition(md);
+
+            if (samplingIntervalMs != null) {
+
+                setSamplingIntervalMs(md, samplingIntervalMs);
+            }
+
+            if (derivation != null) {
+
+                setDerivation(md, derivation);
+            }
+
+            if (counterWidth != null) {
+
+                setCounterWidth(md, counterWidth);
+            }
         }
 
         //
@@ -440,7 +634,42 @@ public class YamlConfigurationFile extends ConfigurationBase {
 
         try {
 
-            md = MetricDefinitionParser.parse(pf, declarationWithVariablesResolved);
+            if (ProcessMetricDefinition.isProcessMetricDeclaration(declarationWithVariablesResolved)) {
+
+                md = ProcessMetricDefinition.parse(pf, declarationWithVariablesResolved);
+            }
+            else if (CpuCoreMetricDefinition.isCpuCoreMetricDeclaration(declarationWithVariablesResolved)) {
+
+                md = CpuCoreMetricDefinition.parse(pf, declarationWithVariablesResolved);
+            }
+            else if (DiskMetricDefinition.isDiskMetricDeclaration(declarationWithVariablesResolved)) {
+
+                md = DiskMetricDefinition.parse(pf, declarationWithVariablesResolved);
+            }
+            else if (NetworkMetricDefinition.isNetworkMetricDeclaration(declarationWithVariablesResolved)) {
+
+                md = NetworkMetricDefinition.parse(pf, declarationWithVariablesResolved);
+            }
+            else if (TcpConnectionMetricDefinition.isTcpConnectionMetricDeclaration(declarationWithVariablesResolved)) {
+
+                md = TcpConnectionMetricDefinition.parse(pf, declarationWithVariablesResolved);
+            }
+            else if (CgroupMetricDefinition.isCgroupMetricDeclaration(declarationWithVariablesResolved)) {
+
+                md = CgroupMetricDefinition.parse(pf, declarationWithVariablesResolved);
+            }
+            else if (PressureMetricDefinition.isPressureMetricDeclaration(declarationWithVariablesResolved)) {
+
+                md = PressureMetricDefinition.parse(pf, declarationWithVariablesResolved);
+            }
+            else if (JvmMetricDefinition.isJvmMetricDeclaration(declarationWithVariablesResolved)) {
+
+                md = JvmMetricDefinition.parse(pf, declarationWithVariablesResolved);
+            }
+            else {
+
+                md = MetricDefinitionParser.parse(pf, declarationWithVariablesResolved);
+            }
         }
         catch (Exception e) {
 
@@ -492,11 +721,23 @@ public class YamlConfigurationFile extends ConfigurationBase {
                 throw new UserErrorException("invalid metric source declaration: '" + sn + "' not a map but a(n) " + o.getClass().getSimpleName());
             }
 
+            if (((Map)o).containsKey(SAMPLING_INTERVAL_KEY) || ((Map)o).containsKey(DEADLINE_KEY)) {
+
+                //
+                // the sampling interval and the deadline are ours, not the metric source definition's, and they are
+                // handled by processSources()
+                //
+
+                Map m = new LinkedHashMap((Map)o);
+                m.remove(SAMPLING_INTERVAL_KEY);
+                m.remove(DEADLINE_KEY);
+                o = m;
+            }
+
             try {
 
                 MetricSourceDefinitionImpl sd = new MetricSourceDefinitionImpl(sn, o);
 
-
                 //
                 // detect duplicate source names
                 //
@@ -588,15 +829,333 @@ public class YamlConfigurationFile extends ConfigurationBase {
         }
 
         //
-        // if null, we rely on the built-in values, set in the constructor
+        // if null, we rely on the built-in values, set in the constructor. Zero means a single collection run
         //
 
-        if (!(o instanceof Integer)) {
+        setSamplingIntervalMs(toSamplingIntervalMs("sampling interval", o, true));
+    }
+
+    private void processSourceDeadline(Object o) throws UserErrorException {
+
+        if (o == null) {
+
+            return;
+        }
+
+        setSourceDeadlineMs(toDeadlineMs("source deadline", o));
+    }
+
+    private void processLateReadingPolicy(Object o) throws UserErrorException {
+
+        if (o == null) {
+
+            return;
+        }
+
+        LateReadingPolicy p = LateReadingPolicy.fromLabel(o.toString());
+
+        if (p == null) {
+
+            throw new UserErrorException("invalid late reading policy: \"" + o + "\"");
+        }
+
+        setLateReadingPolicy(p);
+    }
+
+    /**
+     * A deadline is either an integer number of milliseconds, or a duration string such as "500ms" or "2s". Zero
+     * means no deadline.
+     *
+     * @param what the human readable name of the value, used in the error message.
+     */
+    private static long toDeadlineMs(String what, Object o) throws UserErrorException {
+
+        try {
+
+            return DurationParser.toMilliseconds(o, 1L);
+        }
+        catch(IllegalArgumentException e) {
+
+            throw new UserErrorException("invalid " + what + " value: \"" + o + "\"");
+        }
+    }
+
+    /**
+     * A sampling interval is either an integer number of seconds, or a duration string such as "50ms" or "2s".
+     *
+     * @param what the human readable name of the value, used in the error message.
+     * @param zeroAllowed whether zero (a single collection run) is a valid value.
+     */
+    private static long toSamplingIntervalMs(String what, Object o, boolean zeroAllowed) throws UserErrorException {
+
+        long ms;
+
+        try {
+
+            ms = DurationParser.toMilliseconds(o, 1000L);
+        }
+        catch(IllegalArgumentException e) {
+
+            throw new UserErrorException("invalid " + what + " value: \"" + o + "\"");
+        }
+
+        if (ms == 0 && zeroAllowed) {
+
+            return 0L;
+        }
+
+        if (ms < Configuration.MINIMUM_SAMPLING_INTERVAL_MS) {
+
+            throw new UserErrorException(
+                    "invalid " + what + " value: \"" + o + "\", the minimum sampling interval is " +
+                            Configuration.MINIMUM_SAMPLING_INTERVAL_MS + " ms");
+        }
+
+        return ms;
+    }
+
+    /**
+     * event.queue:
+     *   size: 1000
+     *   type: blocking|ring-buffer
+     *   wait.strategy: busy-spin|yield|park
+     *   overflow.policy: drop-newest|drop-oldest|block|coalesce|spill
+     *   block.timeout: 5000 # milliseconds
+     *   high.water.mark: 800 # events
+     *   spill:
+     *     directory: /var/tmp/databot-spill
+     *     segment.size: 16777216 # bytes
+     *     max.segments: 64
+     */
+    private void processEventQueue(Object o) throws UserErrorException {
+
+        if (o == null) {
+
+            return;
+        }
+
+        if (!(o instanceof Map)) {
+
+            throw new UserErrorException(
+                    "'" + EVENT_QUEUE_KEY + "' must contain a Map, but it contains " + o.getClass().getSimpleName());
+        }
+
+        Map m = (Map)o;
+
+        Object size = m.get(EVENT_QUEUE_SIZE_KEY);
+
+        if (size != null) {
+
+            if (!(size instanceof Integer) || (Integer)size <= 0) {
+
+                throw new UserErrorException("invalid event queue size: \"" + size + "\"");
+            }
+
+            setEventQueueSize((Integer)size);
+        }
+
+        Object type = m.get(EVENT_QUEUE_TYPE_KEY);
+
+        if (type != null) {
+
+            EventBusType t = EventBusType.fromLabel(type.toString());
+
+            if (t == null) {
+
+                throw new UserErrorException("unknown event queue type: \"" + type + "\"");
+            }
+
+            setEventQueueType(t);
+        }
+
+        Object waitStrategy = m.get(EVENT_QUEUE_WAIT_STRATEGY_KEY);
+
+        if (waitStrategy != null) {
+
+            WaitStrategy s = WaitStrategy.fromLabel(waitStrategy.toString());
+
+            if (s == null) {
+
+                throw new UserErrorException("unknown event queue wait strategy: \"" + waitStrategy + "\"");
+            }
+
+            setEventQueueWaitStrategy(s);
+        }
+
+        Object overflowPolicy = m.get(EVENT_QUEUE_OVERFLOW_POLICY_KEY);
+
+        if (overflowPolicy != null) {
+
+            OverflowPolicy p = OverflowPolicy.fromLabel(overflowPolicy.toString());
+
+            if (p == null) {
+
+                throw new UserErrorException("unknown event queue overflow policy: \"" + overflowPolicy + "\"");
+            }
+
+            setEventQueueOverflowPolicy(p);
+        }
+
+        Object blockTimeout = m.get(EVENT_QUEUE_BLOCK_TIMEOUT_KEY);
+
+        if (blockTimeout != null) {
+
+            if (!(blockTimeout instanceof Integer) || (Integer)blockTimeout < 0) {
+
+                throw new UserErrorException("invalid event queue block timeout: \"" + blockTimeout + "\"");
+            }
+
+            setEventQueueBlockTimeoutMs((Integer)blockTimeout);
+        }
+
+        Object highWaterMark = m.get(EVENT_QUEUE_HIGH_WATER_MARK_KEY);
+
+        if (highWaterMark != null) {
+
+            if (!(highWaterMark instanceof Integer) ||
+                    (Integer)highWaterMark <= 0 || (Integer)highWaterMark > getEventQueueSize()) {
+
+                throw new UserErrorException(
+                        "invalid event queue high-water mark: \"" + highWaterMark +
+                                "\", must be between 1 and the event queue size (" + getEventQueueSize() + ")");
+            }
+
+            setEventQueueHighWaterMark((Integer)highWaterMark);
+        }
+
+        processSpill(m.get(EVENT_QUEUE_SPILL_KEY));
+    }
+
+    private void processSpill(Object o) throws UserErrorException {
+
+        if (o == null) {
+
+            return;
+        }
+
+        if (!(o instanceof Map)) {
+
+            throw new UserErrorException(
+                    "'" + EVENT_QUEUE_KEY + "." + EVENT_QUEUE_SPILL_KEY + "' must contain a Map, but it contains " +
+                            o.getClass().getSimpleName());
+        }
+
+        Map m = (Map)o;
+
+        Object directory = m.get(EVENT_QUEUE_SPILL_DIRECTORY_KEY);
+
+        if (directory != null) {
+
+            setEventQueueSpillDirectory(new File(directory.toString()));
+        }
+
+        Object segmentSize = m.get(EVENT_QUEUE_SPILL_SEGMENT_SIZE_KEY);
+
+        if (segmentSize != null) {
+
+            if (!(segmentSize instanceof Integer) || (Integer)segmentSize <= 0) {
+
+                throw new UserErrorException("invalid spill segment size: \"" + segmentSize + "\"");
+            }
+
+            setEventQueueSpillSegmentSize((Integer)segmentSize);
+        }
+
+        Object maxSegments = m.get(EVENT_QUEUE_SPILL_MAX_SEGMENTS_KEY);
+
+        if (maxSegments != null) {
+
+            if (!(maxSegments instanceof Integer) || (Integer)maxSegments <= 0) {
+
+                throw new UserErrorException("invalid maximum number of spill segments: \"" + maxSegments + "\"");
+            }
+
+            setEventQueueSpillMaxSegments((Integer)maxSegments);
+        }
+    }
+
+    /**
+     * source.executor:
+     *   type: elastic
+     *   max.threads: 256
+     *   per.host.limit: 4
+     */
+    private void processSourceExecutor(Object o) throws UserErrorException {
+
+        if (o == null) {
+
+            return;
+        }
+
+        if (!(o instanceof Map)) {
+
+            throw new UserErrorException(
+                    "'" + SOURCE_EXECUTOR_KEY + "' must contain a Map, but it contains " +
+                            o.getClass().getSimpleName());
+        }
+
+        Map m = (Map)o;
+
+        Object type = m.get(SOURCE_EXECUTOR_TYPE_KEY);
+
+        if (type != null) {
+
+            SourceExecutorType t = SourceExecutorType.fromLabel(type.toString());
+
+            if (t == null) {
+
+                throw new UserErrorException("unknown source executor type: \"" + type + "\"");
+            }
+
+            setSourceExecutorType(t);
+        }
+
+        Object maxThreads = m.get(SOURCE_EXECUTOR_MAX_THREADS_KEY);
+
+        if (maxThreads != null) {
+
+            if (!(maxThreads instanceof Integer) || (Integer)maxThreads <= 0) {
+
+                throw new UserErrorException("invalid source executor maximum number of threads: \"" +
+                        maxThreads + "\"");
+            }
+
+            setSourceExecutorMaxThreads((Integer)maxThreads);
+        }
+
+        Object perHostLimit = m.get(SOURCE_EXECUTOR_PER_HOST_LIMIT_KEY);
+
+        if (perHostLimit != null) {
+
+            if (!(perHostLimit instanceof Integer) || (Integer)perHostLimit < 0) {
+
+                throw new UserErrorException("invalid source executor per-host limit: \"" + perHostLimit + "\"");
+            }
+
+            setSourceExecutorPerHostLimit((Integer)perHostLimit);
+        }
+    }
+
+    /**
+     * local.os.engine: proc|stream|command
+     *
+     * The default is "command".
+     */
+    private void processLocalOSEngine(Object o) throws UserErrorException {
+
+        if (o == null) {
+
+            return;
+        }
+
+        LocalOSEngine e = LocalOSEngine.fromLabel(o.toString());
+
+        if (e == null) {
 
-            throw new UserErrorException("invalid sampling interval value: \"" + o + "\"");
+            throw new UserErrorException("invalid local OS engine: \"" + o + "\"");
         }
 
-        setSamplingIntervalSec((Integer) o);
+        setLocalOSEngine(e);
     }
 
     // Inner classes ---------------------------------------------------------------------------------------------------
@@ -17,6 +17,7 @@
 package io.novaordis.databot.consumer;
 
 import io.novaordis.databot.DataConsumerException;
+import io.novaordis.databot.bus.EventCursor;
 import io.novaordis.events.api.event.Event;
 import io.novaordis.events.api.event.ShutdownEvent;
 import org.slf4j.Logger;
@@ -27,7 +28,7 @@ import java.util.concurrent.BlockingQueue;
 /**
  * An abstract base class embedding its own thread.
  *
- * The active consumer will shut down upon receiving a ShutdownEvent on the queue.
+ * The active consumer will shut down upon receiving a ShutdownEvent through its cursor.
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 6/13/17
@@ -48,6 +49,16 @@ public abstract class ActiveDataConsumerBase extends DataConsumerBase implements
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
+    protected ActiveDataConsumerBase(EventCursor eventCursor) {
+
+        super(eventCursor);
+    }
+
+    /**
+     * @deprecated use the EventCursor constructor. Stopping the consumer offers a ShutdownEvent to the queue, as it did
+     * before the event bus.
+     */
+    @Deprecated
     protected ActiveDataConsumerBase(BlockingQueue<Event> eventQueue) {
 
         super(eventQueue);
@@ -72,8 +83,13 @@ public abstract class ActiveDataConsumerBase extends DataConsumerBase implements
         }
 
         thread = new Thread(this, getName() + " Thread");
-        thread.start();
+
+        //
+        // the flag must be set before the thread starts, otherwise the run() loop may observe it false and exit
+        //
+
         started = true;
+        thread.start();
 
         log.debug(this + " was started");
     }
@@ -94,23 +110,12 @@ public abstract class ActiveDataConsumerBase extends DataConsumerBase implements
         }
 
         //
-        // send a ShutdownEvent down the queue
+        // close the cursor, a ShutdownEvent will be delivered after the events that were already published
         //
 
-        BlockingQueue<Event> eventQueue = getEventQueue();
-
-        boolean sent = eventQueue.offer(new ShutdownEvent());
-
-        //
-        // event was not accepted
-        //
-
-        if (!sent) {
-
-            throw new RuntimeException("NOT YET IMPLEMENTED: ShutdownEvent on accepted on the queue");
-        }
+        getEventCursor().close();
 
-        log.debug(this + " stop was initiated, will fully shutdown after the ShutdownEvent propagates through the queue ...");
+        log.debug(this + " stop was initiated, will fully shutdown after the ShutdownEvent propagates through the cursor ...");
     }
 
     // Runnable implementation -----------------------------------------------------------------------------------------
@@ -122,11 +127,11 @@ public abstract class ActiveDataConsumerBase extends DataConsumerBase implements
 
             try {
 
-                log.debug(this + " blocking to take an event from the event queue");
+                log.debug(this + " blocking to take an event from the event bus");
 
-                BlockingQueue<Event> eventQueue = getEventQueue();
+                EventCursor eventCursor = getEventCursor();
 
-                Event e = eventQueue.take();
+                Event e = eventCursor.take();
 
                 if (e instanceof ShutdownEvent) {
 
@@ -155,7 +160,7 @@ public abstract class ActiveDataConsumerBase extends DataConsumerBase implements
                 // warn and go back
                 //
 
-                log.warn(thread + " interrupted while attempting to take events from the event queue");
+                log.warn(thread + " interrupted while attempting to take events from the event bus");
             }
             catch(Throwable t) {
 
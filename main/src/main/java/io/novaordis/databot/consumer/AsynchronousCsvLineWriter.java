@@ -17,6 +17,7 @@
 package io.novaordis.databot.consumer;
 
 import io.novaordis.databot.DataConsumerException;
+import io.novaordis.databot.bus.EventCursor;
 import io.novaordis.events.api.event.Event;
 import io.novaordis.events.api.event.ShutdownEvent;
 import io.novaordis.events.api.event.TimedEvent;
@@ -29,11 +30,10 @@ import org.slf4j.LoggerFactory;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 
 /**
- * An instance that takes events from an in-memory blocking queue and writes them asynchronously on its own thread,
- * as CSV lines to an output stream.
+ * An instance that reads events from the in-memory event bus and writes them asynchronously on its own thread, as CSV
+ * lines to an output stream.
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 7/29/16
@@ -138,7 +138,7 @@ public class AsynchronousCsvLineWriter extends DataConsumerBase implements Runna
     }
 
     /**
-     * @return true if there is a running thread actively processing queue events, of false if the instance was not
+     * @return true if there is a running thread actively processing events, of false if the instance was not
      * started or it was shut down
      */
     @Override
@@ -156,21 +156,10 @@ public class AsynchronousCsvLineWriter extends DataConsumerBase implements Runna
         }
 
         //
-        // put a ShutdownEvent in the queue
+        // close the cursor, the writer thread will get a ShutdownEvent after the events already published
         //
 
-        BlockingQueue<Event> eventQueue = getEventQueue();
-
-        ShutdownEvent se = new ShutdownEvent();
-
-        try {
-
-            eventQueue.put(se);
-        }
-        catch(InterruptedException e) {
-
-            throw new IllegalStateException(e);
-        }
+        getEventCursor().close();
 
         log.debug(this + " stop initiated");
     }
@@ -178,7 +167,7 @@ public class AsynchronousCsvLineWriter extends DataConsumerBase implements Runna
     // Runnable implementation -----------------------------------------------------------------------------------------
 
     /**
-     * Loops continuously, pulling events from the queue and turning them into CSV lines, until explicitly stopped.
+     * Loops continuously, pulling events from the event bus and turning them into CSV lines, until explicitly stopped.
      */
     @Override
     public void run() {
@@ -189,18 +178,18 @@ public class AsynchronousCsvLineWriter extends DataConsumerBase implements Runna
 
             Event event;
 
-            BlockingQueue<Event> eventQueue = getEventQueue();
+            EventCursor eventCursor = getEventCursor();
 
             try {
 
-                event = eventQueue.take();
+                event = eventCursor.take();
             }
             catch(InterruptedException e) {
 
                 //
                 // log but otherwise ignore
                 //
-                log.debug("interrupted while waiting on queue");
+                log.debug("interrupted while waiting on event bus");
                 continue;
             }
 
@@ -23,7 +23,8 @@ import org.slf4j.LoggerFactory;
 
 import io.novaordis.databot.DataConsumer;
 import io.novaordis.databot.DataConsumerException;
-import io.novaordis.databot.Util;
+import io.novaordis.databot.bus.EventCursor;
+import io.novaordis.databot.bus.QueueEventCursor;
 import io.novaordis.events.api.event.Event;
 
 /**
@@ -40,57 +41,76 @@ public abstract class DataConsumerBase implements DataConsumer {
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
-    private BlockingQueue<Event> eventQueue;
+    private EventCursor eventCursor;
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
     protected DataConsumerBase() {
 
-        this(null);
+        this((EventCursor)null);
     }
 
+    protected DataConsumerBase(EventCursor eventCursor) {
+
+        setEventCursor(eventCursor);
+    }
+
+    /**
+     * @deprecated consumers read through an EventCursor. The queue is wrapped in a QueueEventCursor, so the consumer
+     * only sees the events offered to this queue, and not the ones published on the event bus.
+     */
+    @Deprecated
     protected DataConsumerBase(BlockingQueue<Event> eventQueue) {
 
-        setEventQueue(eventQueue);
+        this(eventQueue == null ? null : new QueueEventCursor(eventQueue));
     }
 
     // DataConsumer implementation -------------------------------------------------------------------------------------
 
     @Override
-    public final void setEventQueue(BlockingQueue<Event> q) {
+    public final void setEventCursor(EventCursor c) {
 
-        if (q == null) {
+        if (c == null) {
 
-            if (this.eventQueue != null) {
+            if (this.eventCursor != null) {
 
-                log.debug(this + " disconnected from " + Util.queueLogLabel(eventQueue));
+                log.debug(this + " disconnected from " + eventCursor);
             }
         }
         else {
 
-            log.debug(this + " connected to " + Util.queueLogLabel(q));
+            log.debug(this + " connected to " + c);
         }
 
-        this.eventQueue = q;
+        this.eventCursor = c;
     }
 
     @Override
-    public final BlockingQueue<Event> getEventQueue() {
+    public final EventCursor getEventCursor() {
 
-        return eventQueue;
+        return eventCursor;
     }
 
     @Override
     public synchronized void start() throws DataConsumerException {
 
-        if (eventQueue == null) {
+        if (eventCursor == null) {
 
-            throw new DataConsumerException("null event queue, " + this + " was not properly configured before starting");
+            throw new DataConsumerException("null event cursor, " + this + " was not properly configured before starting");
         }
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * @deprecated use setEventCursor(). The queue is wrapped in a QueueEventCursor.
+     */
+    @Deprecated
+    public final void setEventQueue(BlockingQueue<Event> q) {
+
+        setEventCursor(q == null ? null : new QueueEventCursor(q));
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
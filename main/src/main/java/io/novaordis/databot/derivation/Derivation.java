@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.derivation;
+
+/**
+ * How the successive readings of a monotonic counter are turned into the values handed over to the data consumers.
+ *
+ * @see DerivationStage
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public enum Derivation {
+
+    /**
+     * The difference between the current and the previous reading.
+     */
+    DELTA("delta"),
+
+    /**
+     * The difference between the current and the previous reading, divided by the time elapsed between the two
+     * collections, in seconds.
+     */
+    RATE("rate");
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the derivation corresponding to the given configuration label, or null if there is no such derivation.
+     */
+    public static Derivation fromLabel(String label) {
+
+        for(Derivation d: values()) {
+
+            if (d.label.equals(label)) {
+
+                return d;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String label;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    Derivation(String label) {
+
+        this.label = label;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the label used in configuration.
+     */
+    public String getLabel() {
+
+        return label;
+    }
+
+    @Override
+    public String toString() {
+
+        return label;
+    }
+
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.derivation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.databot.configuration.Configuration;
+import io.novaordis.databot.event.MultiSourceReadingEvent;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The pipeline stage between collection and consumers that replaces the raw readings of the monotonic counters
+ * declared with a derivation with their deltas, or per-second rates, since the previous collection.
+ *
+ * The previous reading of each counter is kept in primitive arrays, indexed by a slot assigned to the property on its
+ * first occurrence. A metric whose source expands it into several properties ("CpuTime[0]", "CpuTime[1]", ...) gets a
+ * slot per property. The time between readings is measured between the real collection times of the events, not
+ * between the scheduler ticks.
+ *
+ * A counter that decreases was either reset, in which case it restarted from zero and the delta is its current value,
+ * or it wrapped around, in which case the delta spans the end of its range. The two cannot be told apart with
+ * certainty: a counter narrower than 64 bits whose previous reading was in the upper half of its range, and whose
+ * wrapped delta is less than half its range, is considered to have wrapped around.
+ *
+ * The first reading of a counter, and the readings of events that were collected before the previous one, do not
+ * produce a value: the property is removed from the reading.
+ *
+ * @see Derivation
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DerivationStage {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(DerivationStage.class);
+
+    private static final int INITIAL_SLOT_CAPACITY = 8;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the stage for the derivations declared in the configuration, or null if no metric is derived.
+     */
+    public static DerivationStage build(Configuration configuration) {
+
+        DerivationStage stage = null;
+
+        for(MetricDefinition md: configuration.getMetricDefinitions()) {
+
+            Derivation d = configuration.getDerivation(md);
+
+            if (d == null) {
+
+                continue;
+            }
+
+            if (stage == null) {
+
+                stage = new DerivationStage(new PropertyFactory());
+            }
+
+            stage.add(md, d, configuration.getCounterWidth(md));
+        }
+
+        if (stage != null) {
+
+            log.debug(stage + " created");
+        }
+
+        return stage;
+    }
+
+    /**
+     * @return the difference between two successive readings of a counter of the given width, in bits, accounting for
+     * resets and wraparounds.
+     */
+    static long counterDelta(long previous, long current, int width) {
+
+        long delta = current - previous;
+
+        if (delta >= 0) {
+
+            return delta;
+        }
+
+        if (width < 64) {
+
+            long range = 1L << width;
+
+            long wrapped = delta + range;
+
+            if (previous >= range / 2 && previous < range && wrapped < range / 2) {
+
+                return wrapped;
+            }
+        }
+
+        //
+        // reset, the counter restarted from zero
+        //
+
+        return current;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final PropertyFactory propertyFactory;
+
+    private final Map<Address, SourceState> sources;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public DerivationStage(PropertyFactory propertyFactory) {
+
+        if (propertyFactory == null) {
+
+            throw new IllegalArgumentException("null property factory");
+        }
+
+        this.propertyFactory = propertyFactory;
+        this.sources = new HashMap<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Declares a derived counter.
+     *
+     * @param counterWidth the width of the counter, in bits, between 1 and 64.
+     */
+    public synchronized void add(MetricDefinition md, Derivation derivation, int counterWidth) {
+
+        if (derivation == null) {
+
+            throw new IllegalArgumentException("null derivation");
+        }
+
+        if (counterWidth < 1 || counterWidth > 64) {
+
+            throw new IllegalArgumentException("invalid counter width " + counterWidth);
+        }
+
+        sources.computeIfAbsent(md.getMetricSourceAddress(), a -> new SourceState()).
+                add(md.getId(), derivation, counterWidth);
+    }
+
+    /**
+     * Replaces the readings of the derived counters in the event with the derived values. Events may be published
+     * concurrently by runs that complete on different threads, so the invocations are serialized.
+     */
+    public synchronized void apply(MultiSourceReadingEvent event) {
+
+        long start = event.getCollectionStartTimestamp();
+        long end = event.getCollectionEndTimestamp();
+
+        long collectionTime = start + (end - start) / 2;
+
+        for(Address a: event.getSourceAddresses()) {
+
+            SourceState s = sources.get(a);
+
+            if (s == null || event.isMissing(a)) {
+
+                continue;
+            }
+
+            List<Property> reading = event.getPropertiesForSource(a);
+
+            if (reading.isEmpty()) {
+
+                continue;
+            }
+
+            event.replaceSourceReading(a, s.derive(reading, collectionTime));
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return "DerivationStage(" + sources.keySet() + ")";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * The derived counters of one source.
+     */
+    private class SourceState {
+
+        //
+        // the declared metrics
+        //
+        private final List<String> metricIds;
+        private final List<Derivation> derivations;
+        private final List<Integer> widths;
+
+        //
+        // property name -> slot, -1 for the properties that are passed through
+        //
+        private final Map<String, Integer> slots;
+
+        private int slotCount;
+
+        //
+        // by slot: the index of the declared metric, the previous collection time (0 if there is no previous reading),
+        // and the previous reading
+        //
+        private int[] metrics;
+        private long[] previousTimes;
+        private long[] previousLongs;
+        private double[] previousDoubles;
+
+        SourceState() {
+
+            this.metricIds = new ArrayList<>();
+            this.derivations = new ArrayList<>();
+            this.widths = new ArrayList<>();
+            this.slots = new HashMap<>();
+            this.metrics = new int[INITIAL_SLOT_CAPACITY];
+            this.previousTimes = new long[INITIAL_SLOT_CAPACITY];
+            this.previousLongs = new long[INITIAL_SLOT_CAPACITY];
+            this.previousDoubles = new double[INITIAL_SLOT_CAPACITY];
+        }
+
+        void add(String metricId, Derivation derivation, int width) {
+
+            metricIds.add(metricId);
+            derivations.add(derivation);
+            widths.add(width);
+        }
+
+        List<Property> derive(List<Property> reading, long collectionTime) {
+
+            List<Property> result = new ArrayList<>(reading.size());
+
+            for(Property p: reading) {
+
+                int slot = slotOf(p.getName());
+
+                if (slot == -1 || !(p.getValue() instanceof Number)) {
+
+                    result.add(p);
+                    continue;
+                }
+
+                Property derived = derive(slot, p, collectionTime);
+
+                if (derived != null) {
+
+                    result.add(derived);
+                }
+            }
+
+            return result;
+        }
+
+        private Property derive(int slot, Property p, long collectionTime) {
+
+            Number value = (Number)p.getValue();
+
+            boolean integral = !(value instanceof Double) && !(value instanceof Float);
+
+            long previousTime = previousTimes[slot];
+
+            if (previousTime != 0 && collectionTime <= previousTime) {
+
+                //
+                // collected before the previous reading, by a run that completed late
+                //
+
+                return null;
+            }
+
+            long previousLong = previousLongs[slot];
+            double previousDouble = previousDoubles[slot];
+
+            previousTimes[slot] = collectionTime;
+            previousLongs[slot] = value.longValue();
+            previousDoubles[slot] = value.doubleValue();
+
+            if (previousTime == 0) {
+
+                return null;
+            }
+
+            int m = metrics[slot];
+
+            double delta;
+            Object derived;
+            Class type;
+
+            if (integral) {
+
+                long d = counterDelta(previousLong, value.longValue(), widths.get(m));
+                delta = d;
+                derived = d;
+                type = Long.class;
+            }
+            else {
+
+                delta = value.doubleValue() - previousDouble;
+                delta = delta < 0 ? value.doubleValue() : delta;
+                derived = delta;
+                type = Double.class;
+            }
+
+            if (Derivation.DELTA.equals(derivations.get(m))) {
+
+                return propertyFactory.createInstance(p.getName(), type, derived, null, p.getMeasureUnit());
+            }
+
+            double rate = delta * 1000d / (collectionTime - previousTime);
+
+            return propertyFactory.createInstance(p.getName(), Double.class, rate, null, null);
+        }
+
+        /**
+         * @return the slot of the property, or -1 if the property is not a derived counter. A property belongs to a
+         * declared metric if it is named after the metric, or after the metric followed by an index in square brackets.
+         */
+        private int slotOf(String name) {
+
+            Integer slot = slots.get(name);
+
+            if (slot != null) {
+
+                return slot;
+            }
+
+            int m = -1;
+
+            for(int i = 0; i < metricIds.size(); i ++) {
+
+                String id = metricIds.get(i);
+
+                if (name.equals(id) ||
+                        (name.length() > id.length() + 1 && name.startsWith(id) &&
+                                name.charAt(id.length()) == '[' && name.charAt(name.length() - 1) == ']')) {
+
+                    m = i;
+                    break;
+                }
+            }
+
+            int s = -1;
+
+            if (m != -1) {
+
+                s = slotCount ++;
+
+                if (s == metrics.length) {
+
+                    int capacity = metrics.length * 2;
+
+                    metrics = Arrays.copyOf(metrics, capacity);
+                    previousTimes = Arrays.copyOf(previousTimes, capacity);
+                    previousLongs = Arrays.copyOf(previousLongs, capacity);
+                    previousDoubles = Arrays.copyOf(previousDoubles, capacity);
+                }
+
+                metrics[s] = m;
+            }
+
+            slots.put(name, s);
+
+            return s;
+        }
+    }
+
+}
@@ -58,6 +58,11 @@ public class MultiSourceReadingEvent extends GenericTimedEvent {
 
     private long collectionEndTimestamp;
 
+    //
+    // the scheduler tick that triggered the collection, if any. Null for events not produced by a scheduled collection
+    //
+    private Long scheduledTimestamp;
+
     //
     // even if internally we key the events generated by collections by the address' literal, we still preserve
     // the Address original instances, to return them when needed. The addresses are preserved in the order in
@@ -66,6 +71,12 @@ public class MultiSourceReadingEvent extends GenericTimedEvent {
 
     private List<Address> addresses;
 
+    //
+    // the sources whose readings did not arrive by the collection deadline. Allocated on first use, most events have
+    // none
+    //
+    private List<Address> missing;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public MultiSourceReadingEvent() {
@@ -78,6 +89,33 @@ public class MultiSourceReadingEvent extends GenericTimedEvent {
         this.addresses = new ArrayList<>();
     }
 
+    /**
+     * Restores an event from its externalized state, preserving the original collection timestamps. Used when events
+     * are read back from an overflow store.
+     *
+     * @param readings the source readings, in the same order as the addresses.
+     */
+    public MultiSourceReadingEvent(long collectionStartTimestamp, long collectionEndTimestamp,
+                                   List<Address> addresses, List<List<Property>> readings) {
+
+        if (addresses.size() != readings.size()) {
+
+            throw new IllegalArgumentException(
+                    addresses.size() + " source address(es) but " + readings.size() + " reading(s)");
+        }
+
+        this.collectionStartTimestamp = collectionStartTimestamp;
+        this.collectionEndTimestamp = collectionEndTimestamp;
+        this.addresses = new ArrayList<>();
+
+        for(int i = 0; i < addresses.size(); i ++) {
+
+            Address a = addresses.get(i);
+            setEventProperty(a.getLiteral(), new GenericEvent(readings.get(i)));
+            this.addresses.add(a);
+        }
+    }
+
     // Overrides -------------------------------------------------------------------------------------------------------
 
     @Override
@@ -89,6 +127,15 @@ public class MultiSourceReadingEvent extends GenericTimedEvent {
     @Override
     public Long getTime() {
 
+        //
+        // the scheduled tick, so events produced by different agents for the same tick carry the same timestamp
+        //
+
+        if (scheduledTimestamp != null) {
+
+            return scheduledTimestamp;
+        }
+
         //
         // an average between the first collection and last collection
         //
@@ -126,6 +173,23 @@ public class MultiSourceReadingEvent extends GenericTimedEvent {
         return collectionEndTimestamp;
     }
 
+    /**
+     * @return the time of the scheduler tick that triggered the collection. May return null if the event was not
+     * produced by a scheduled collection.
+     */
+    public Long getScheduledTimestamp() {
+
+        return scheduledTimestamp;
+    }
+
+    /**
+     * If set, the scheduled timestamp becomes the event time, instead of the collection midpoint.
+     */
+    public void setScheduledTimestamp(Long scheduledTimestamp) {
+
+        this.scheduledTimestamp = scheduledTimestamp;
+    }
+
     /**
      * Specialized mutator that converts a metric source reading into an event property.
      *
@@ -174,6 +238,139 @@ public class MultiSourceReadingEvent extends GenericTimedEvent {
         addresses.add(sourceAddress);
     }
 
+    /**
+     * Replaces the reading of a source already present in the event, without changing the collection timestamps. Used
+     * by the stages that transform the readings before the event is published.
+     *
+     * @exception IllegalArgumentException if the source is not present in the event.
+     */
+    public void replaceSourceReading(Address sourceAddress, List<Property> readings) {
+
+        if (readings == null) {
+
+            throw new IllegalArgumentException("null readings list");
+        }
+
+        if (!addresses.contains(sourceAddress)) {
+
+            throw new IllegalArgumentException("no such metric source: " + sourceAddress);
+        }
+
+        setEventProperty(sourceAddress.getLiteral(), new GenericEvent(readings));
+    }
+
+    /**
+     * Records a source whose reading did not arrive by the collection deadline. The source is added with an empty
+     * reading, so the source list reflects everything that was queried, and it is reported by isMissing().
+     */
+    public void addMissingSourceReading(Address sourceAddress) {
+
+        addSourceReading(sourceAddress, Collections.emptyList());
+        markMissing(sourceAddress);
+    }
+
+    /**
+     * Marks a source already present in the event as missing. Used when the event is restored from its externalized
+     * state.
+     *
+     * @exception IllegalArgumentException if the source is not present in the event.
+     */
+    public void markMissing(Address sourceAddress) {
+
+        if (!addresses.contains(sourceAddress)) {
+
+            throw new IllegalArgumentException("no such metric source: " + sourceAddress);
+        }
+
+        if (missing == null) {
+
+            missing = new ArrayList<>(1);
+        }
+
+        if (!missing.contains(sourceAddress)) {
+
+            missing.add(sourceAddress);
+        }
+    }
+
+    /**
+     * @return true if the reading of the given source did not arrive by the collection deadline.
+     */
+    public boolean isMissing(Address sourceAddress) {
+
+        return missing != null && missing.contains(sourceAddress);
+    }
+
+    /**
+     * @return the sources whose readings did not arrive by the collection deadline, in the order in which they were
+     * added. May return an empty list, but never null.
+     */
+    public List<Address> getMissingSourceAddresses() {
+
+        if (missing == null) {
+
+            return Collections.emptyList();
+        }
+
+        return new ArrayList<>(missing);
+    }
+
+    /**
+     * Copies the readings of the sources that are present in the given event, but not in this one. The timestamps of
+     * this event are not changed. Used to coalesce an older event into a newer one, keeping the latest reading per
+     * source. A source that is missing from this event, but was read in the older one, gets the older reading.
+     *
+     * @return the number of source readings copied.
+     */
+    public int mergeMissingReadings(MultiSourceReadingEvent older) {
+
+        if (older == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        int count = 0;
+
+        for(Address a: older.addresses) {
+
+            String addressLiteral = a.getLiteral();
+
+            boolean present = getEventProperty(addressLiteral) != null;
+
+            if (present && (!isMissing(a) || older.isMissing(a))) {
+
+                continue;
+            }
+
+            EventProperty ep = older.getEventProperty(addressLiteral);
+
+            if (ep == null) {
+
+                continue;
+            }
+
+            setEventProperty(addressLiteral, ep.getEvent());
+
+            if (present) {
+
+                missing.remove(a);
+            }
+            else {
+
+                addresses.add(a);
+
+                if (older.isMissing(a)) {
+
+                    markMissing(a);
+                }
+            }
+
+            count ++;
+        }
+
+        return count;
+    }
+
     /**
      * @return the total count of second-level properties added so far, across all sources. It only counts the
      * second-level properties, not the top level event properties.
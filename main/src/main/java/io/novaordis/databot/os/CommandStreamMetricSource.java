@@ -0,0 +1,516 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * A metric source that runs a command in interval mode (such as "vmstat -n 1" or "iostat -x 1") once, and tails its
+ * output on a dedicated reader thread, instead of forking the command on every collection. The reader parses the
+ * output with a CommandStreamParser and publishes the latest complete reading, which collectMetrics() returns without
+ * blocking. The parser is reset before each run of the command, so it can discard the first sample, which usually
+ * reports averages since boot.
+ *
+ * If the command exits, or cannot be started, it is restarted after a delay that doubles with every consecutive
+ * failure, up to a maximum, and resets once the command produces a reading.
+ *
+ * The metric sets the parser does not support are delegated, as a whole, to the fallback source, if any.
+ *
+ * @see CommandStreamParser
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CommandStreamMetricSource implements MetricSource {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(CommandStreamMetricSource.class);
+
+    public static final String READER_THREAD_NAME = "DataBot Command Stream Reader";
+
+    public static final long DEFAULT_INITIAL_RESTART_DELAY_MS = 1000L;
+
+    public static final long DEFAULT_MAX_RESTART_DELAY_MS = 60000L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Address address;
+
+    private final List<String> command;
+
+    private final CommandStreamParser parser;
+
+    //
+    // may be null
+    //
+    private final MetricSource fallback;
+
+    private final PropertyFactory propertyFactory;
+
+    //
+    // a reading older than this is not served; 0 means readings never go stale
+    //
+    private final long maxReadingAgeMs;
+
+    private final long initialRestartDelayMs;
+
+    private final long maxRestartDelayMs;
+
+    private final AtomicLong readingCount;
+
+    private final AtomicLong restartCount;
+
+    private volatile Reading latest;
+
+    private volatile boolean started;
+
+    private Thread reader;
+
+    private Process process;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param fallback the source to delegate to for the metrics the parser does not support. May be null.
+     * @param maxReadingAgeMs the age past which a reading is considered stale and is not served anymore. 0 means
+     *                        readings never go stale.
+     */
+    public CommandStreamMetricSource(Address address, List<String> command, CommandStreamParser parser,
+                                     MetricSource fallback, PropertyFactory propertyFactory, long maxReadingAgeMs) {
+
+        this(address, command, parser, fallback, propertyFactory, maxReadingAgeMs,
+                DEFAULT_INITIAL_RESTART_DELAY_MS, DEFAULT_MAX_RESTART_DELAY_MS);
+    }
+
+    CommandStreamMetricSource(Address address, List<String> command, CommandStreamParser parser,
+                              MetricSource fallback, PropertyFactory propertyFactory, long maxReadingAgeMs,
+                              long initialRestartDelayMs, long maxRestartDelayMs) {
+
+        if (address == null) {
+
+            throw new IllegalArgumentException("null address");
+        }
+
+        if (command == null || command.isEmpty()) {
+
+            throw new IllegalArgumentException("null or empty command");
+        }
+
+        if (parser == null) {
+
+            throw new IllegalArgumentException("null parser");
+        }
+
+        if (maxReadingAgeMs < 0) {
+
+            throw new IllegalArgumentException("invalid maximum reading age " + maxReadingAgeMs);
+        }
+
+        this.address = address;
+        this.command = command;
+        this.parser = parser;
+        this.fallback = fallback;
+        this.propertyFactory = propertyFactory;
+        this.maxReadingAgeMs = maxReadingAgeMs;
+        this.initialRestartDelayMs = initialRestartDelayMs;
+        this.maxRestartDelayMs = maxRestartDelayMs;
+        this.readingCount = new AtomicLong(0L);
+        this.restartCount = new AtomicLong(0L);
+    }
+
+    // MetricSource implementation -------------------------------------------------------------------------------------
+
+    @Override
+    public Address getAddress() {
+
+        return address;
+    }
+
+    @Override
+    public boolean hasAddress(Address a) {
+
+        return address.equals(a);
+    }
+
+    @Override
+    public List<Property> collectMetrics(List<MetricDefinition> metricDefinitions) throws MetricSourceException {
+
+        boolean supported = true;
+
+        for(MetricDefinition md: metricDefinitions) {
+
+            if (!parser.supports(md)) {
+
+                supported = false;
+                break;
+            }
+        }
+
+        if (!supported) {
+
+            if (fallback == null) {
+
+                throw new MetricSourceException(
+                        "not all metrics of " + metricDefinitions + " can be read from the output of " + command);
+            }
+
+            synchronized (fallback) {
+
+                if (!fallback.isStarted()) {
+
+                    fallback.start();
+                }
+            }
+
+            return fallback.collectMetrics(metricDefinitions);
+        }
+
+        Reading r = latest;
+
+        if (r == null) {
+
+            throw new MetricSourceException("no reading available yet from " + command);
+        }
+
+        if (maxReadingAgeMs > 0) {
+
+            long age = System.currentTimeMillis() - r.timestampMs;
+
+            if (age > maxReadingAgeMs) {
+
+                throw new MetricSourceException("the latest reading from " + command + " is stale (" + age + " ms)");
+            }
+        }
+
+        List<Property> result = new ArrayList<>(metricDefinitions.size());
+
+        for(MetricDefinition md: metricDefinitions) {
+
+            result.add(parser.toProperty(propertyFactory, md, r.values));
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized void start() throws MetricSourceException {
+
+        if (started) {
+
+            return;
+        }
+
+        started = true;
+
+        reader = new Thread(this::tail, READER_THREAD_NAME + " " + command.get(0));
+        reader.setDaemon(true);
+        reader.start();
+
+        log.debug(this + " started");
+    }
+
+    @Override
+    public boolean isStarted() {
+
+        return started;
+    }
+
+    @Override
+    public void stop() {
+
+        Thread t;
+
+        synchronized (this) {
+
+            if (!started) {
+
+                return;
+            }
+
+            started = false;
+
+            t = reader;
+            reader = null;
+
+            if (process != null) {
+
+                process.destroy();
+            }
+        }
+
+        t.interrupt();
+
+        try {
+
+            t.join(1000L);
+        }
+        catch(InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        if (fallback != null && fallback.isStarted()) {
+
+            fallback.stop();
+        }
+
+        log.debug(this + " stopped");
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public List<String> getCommand() {
+
+        return command;
+    }
+
+    public CommandStreamParser getParser() {
+
+        return parser;
+    }
+
+    public MetricSource getFallback() {
+
+        return fallback;
+    }
+
+    /**
+     * @return the number of complete readings since the source was created.
+     */
+    public long getReadingCount() {
+
+        return readingCount.get();
+    }
+
+    /**
+     * @return the number of times the command was restarted after exiting, or failing to start.
+     */
+    public long getRestartCount() {
+
+        return restartCount.get();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o instanceof CommandStreamMetricSource && address.equals(((CommandStreamMetricSource) o).address);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return address.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return address + " (" + command + ")";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * The reader thread loop: (re)starts the command and tails its output until the source is stopped.
+     */
+    private void tail() {
+
+        long delayMs = initialRestartDelayMs;
+
+        StringBuilder line = new StringBuilder(256);
+        char[] buffer = new char[4096];
+
+        while(started) {
+
+            long readingsBefore = readingCount.get();
+
+            try {
+
+                Process p = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+                synchronized (this) {
+
+                    if (!started) {
+
+                        p.destroy();
+                        return;
+                    }
+
+                    process = p;
+                }
+
+                log.debug(this + " running");
+
+                parser.reset();
+
+                read(new InputStreamReader(p.getInputStream(), StandardCharsets.US_ASCII), buffer, line);
+
+                int exitCode = p.waitFor();
+
+                if (started) {
+
+                    log.warn(command + " exited with " + exitCode);
+                }
+            }
+            catch(IOException e) {
+
+                if (started) {
+
+                    log.warn("failed to run " + command + ": " + e.getMessage());
+                }
+            }
+            catch(InterruptedException e) {
+
+                //
+                // stopped
+                //
+                break;
+            }
+            finally {
+
+                synchronized (this) {
+
+                    if (process != null) {
+
+                        process.destroy();
+                        process = null;
+                    }
+                }
+            }
+
+            if (!started) {
+
+                break;
+            }
+
+            if (readingCount.get() > readingsBefore) {
+
+                delayMs = initialRestartDelayMs;
+            }
+
+            log.info("restarting " + command + " in " + delayMs + " ms");
+
+            try {
+
+                Thread.sleep(delayMs);
+            }
+            catch(InterruptedException e) {
+
+                break;
+            }
+
+            delayMs = Math.min(delayMs * 2, maxRestartDelayMs);
+
+            restartCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reads the output into the reusable line buffer, and parses it line by line, until the end of the stream.
+     */
+    private void read(Reader r, char[] buffer, StringBuilder line) throws IOException {
+
+        line.setLength(0);
+
+        int n;
+
+        while((n = r.read(buffer)) != -1) {
+
+            for(int i = 0; i < n; i ++) {
+
+                char c = buffer[i];
+
+                if (c != '\n') {
+
+                    line.append(c);
+                    continue;
+                }
+
+                parse(line);
+                line.setLength(0);
+            }
+        }
+
+        //
+        // an incomplete last line is dropped, the command did not finish writing it
+        //
+    }
+
+    private void parse(CharSequence line) {
+
+        try {
+
+            if (!parser.parseLine(line)) {
+
+                return;
+            }
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            log.warn("failed to parse the output of " + command + ": " + e.getMessage());
+            return;
+        }
+
+        long[] values = new long[parser.getValueCount()];
+        parser.copyValues(values);
+
+        latest = new Reading(System.currentTimeMillis(), values);
+
+        readingCount.incrementAndGet();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Immutable once published.
+     */
+    private static class Reading {
+
+        private final long timestampMs;
+        private final long[] values;
+
+        private Reading(long timestampMs, long[] values) {
+
+            this.timestampMs = timestampMs;
+            this.values = values;
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os;
+
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+
+/**
+ * Parses the output of a long-running command, one line at the time, into primitive value slots. The lines are
+ * delivered by a CommandStreamMetricSource reader thread, the values are copied out as an immutable reading after each
+ * complete sample.
+ *
+ * Implementations need not be thread safe: a parser is only used by the reader thread, except for the stateless
+ * supports() and toProperty() methods.
+ *
+ * @see CommandStreamMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public interface CommandStreamParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Invoked before the output of a new run of the command is parsed: after the command is first started, and after
+     * every restart. Commands in interval mode usually report averages since boot, not over an interval, in their
+     * first sample, and the parser must not report it as a sample.
+     */
+    void reset();
+
+    /**
+     * @param line the line, which may or may not include the line terminator. The instance is reused by the caller, so
+     *             it must not be retained.
+     *
+     * @return true if the line completed a sample that describes the last interval, and the values can be copied out.
+     */
+    boolean parseLine(CharSequence line) throws InvalidExecutionOutputException;
+
+    /**
+     * @return the number of value slots.
+     */
+    int getValueCount();
+
+    /**
+     * Copies the values of the last complete sample.
+     */
+    void copyValues(long[] destination);
+
+    /**
+     * @return true if the metric can be served from this parser's values.
+     */
+    boolean supports(MetricDefinition md);
+
+    /**
+     * @param values a reading, as copied out by copyValues().
+     */
+    Property toProperty(PropertyFactory propertyFactory, MetricDefinition md, long[] values);
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os;
+
+/**
+ * How the local OS metrics are obtained.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public enum LocalOSEngine {
+
+    /**
+     * Read directly from /proc, when available (Linux). The metrics that cannot be served from /proc, and all metrics
+     * on systems without /proc, are obtained by running commands.
+     */
+    PROC("proc"),
+
+    /**
+     * Run a single, long-running "vmstat" in interval mode and tail its output. The metrics vmstat does not report are
+     * obtained by running commands.
+     */
+    STREAM("stream"),
+
+    /**
+     * Always run commands (vmstat, top, etc.) and parse their output. The default.
+     */
+    COMMAND("command");
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the engine corresponding to the given configuration label, or null if there is no such engine.
+     */
+    public static LocalOSEngine fromLabel(String label) {
+
+        for(LocalOSEngine e: values()) {
+
+            if (e.label.equals(label)) {
+
+                return e;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String label;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    LocalOSEngine(String label) {
+
+        this.label = label;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the label used in configuration.
+     */
+    public String getLabel() {
+
+        return label;
+    }
+
+    @Override
+    public String toString() {
+
+        return label;
+    }
+
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * A cursor over the ASCII content of a buffer, which parses tokens and numbers in place, without creating Strings or
+ * any other object. Meant to be reset and reused for every read of a /proc file.
+ *
+ * Not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ByteCursor {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Converts a constant token (a /proc key, for example) to the byte form the cursor compares against. Meant for
+     * static initializers, not for the per-sample path.
+     */
+    public static byte[] bytes(String s) {
+
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static boolean isSpace(byte b) {
+
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b) {
+
+        return b >= '0' && b <= '9';
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private ByteBuffer buffer;
+
+    private int position;
+
+    private int limit;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Positions the cursor at the beginning of the buffer's content (between position and limit). The buffer itself is
+     * not modified.
+     */
+    public ByteCursor reset(ByteBuffer b) {
+
+        this.buffer = b;
+        this.position = b.position();
+        this.limit = b.limit();
+        return this;
+    }
+
+    public boolean hasRemaining() {
+
+        return position < limit;
+    }
+
+    public int position() {
+
+        return position;
+    }
+
+    /**
+     * @return the byte at the current position, without advancing, or -1 if there are no more bytes.
+     */
+    public int peek() {
+
+        return position < limit ? buffer.get(position) : -1;
+    }
+
+    /**
+     * Skips spaces and tabs, but not new lines.
+     */
+    public void skipSpaces() {
+
+        while(position < limit && isSpace(buffer.get(position))) {
+
+            position ++;
+        }
+    }
+
+    public void skip(int n) {
+
+        position = Math.min(position + n, limit);
+    }
+
+    /**
+     * Skips the spaces and then the next token: a sequence of characters that are not spaces or new lines.
+     */
+    public void skipToken() {
+
+        skipSpaces();
+
+        while(position < limit) {
+
+            byte b = buffer.get(position);
+
+            if (isSpace(b) || b == '\n') {
+
+                break;
+            }
+
+            position ++;
+        }
+    }
+
+    public boolean atEndOfLine() {
+
+        return position >= limit || buffer.get(position) == '\n';
+    }
+
+    /**
+     * Advances to the beginning of the next line.
+     *
+     * @return false if there are no more lines.
+     */
+    public boolean nextLine() {
+
+        while(position < limit) {
+
+            if (buffer.get(position ++) == '\n') {
+
+                break;
+            }
+        }
+
+        return position < limit;
+    }
+
+    /**
+     * @return true if the content at the current position starts with the given bytes. Does not advance.
+     */
+    public boolean startsWith(byte[] prefix) {
+
+        if (limit - position < prefix.length) {
+
+            return false;
+        }
+
+        for(int i = 0; i < prefix.length; i ++) {
+
+            if (buffer.get(position + i) != prefix[i]) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * If the content at the current position starts with the given token, followed by a space, a tab, a new line or the
+     * end of the content, advances past the token and returns true. Otherwise returns false and does not advance. The
+     * token may include its own terminator, such as the colon of "MemTotal:".
+     */
+    public boolean consumeToken(byte[] token) {
+
+        if (!startsWith(token)) {
+
+            return false;
+        }
+
+        int end = position + token.length;
+
+        if (end < limit) {
+
+            byte b = buffer.get(end);
+
+            if (!isSpace(b) && b != '\n') {
+
+                return false;
+            }
+        }
+
+        position = end;
+        return true;
+    }
+
+    /**
+     * If the content at the current position is the given byte, advances past it and returns true.
+     */
+    public boolean consume(char c) {
+
+        if (position < limit && buffer.get(position) == c) {
+
+            position ++;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Advances past the last occurrence of the given byte in the remaining content. Meant for fields that may contain
+     * arbitrary characters, such as the parenthesized command name in /proc/[pid]/stat.
+     *
+     * @return false if the byte does not occur, in which case the cursor is not moved.
+     */
+    public boolean skipPastLast(char c) {
+
+        for(int i = limit - 1; i >= position; i --) {
+
+            if (buffer.get(i) == c) {
+
+                position = i + 1;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Skips the spaces and parses a decimal integer, optionally negative.
+     *
+     * @exception InvalidExecutionOutputException if there is no number at the current position.
+     */
+    public long nextLong() throws InvalidExecutionOutputException {
+
+        skipSpaces();
+
+        boolean negative = consume('-');
+
+        int start = position;
+        long value = 0;
+
+        while(position < limit) {
+
+            byte b = buffer.get(position);
+
+            if (!isDigit(b)) {
+
+                break;
+            }
+
+            value = value * 10 + (b - '0');
+            position ++;
+        }
+
+        if (position == start) {
+
+            throw new InvalidExecutionOutputException("expecting a number at offset " + position);
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Skips the spaces and parses a decimal number such as "0.52", "12" or "-3.5".
+     *
+     * @exception InvalidExecutionOutputException if there is no number at the current position.
+     */
+    public double nextDouble() throws InvalidExecutionOutputException {
+
+        skipSpaces();
+
+        boolean negative = consume('-');
+
+        int start = position;
+        long mantissa = 0;
+        long scale = 1;
+        boolean fraction = false;
+
+        while(position < limit) {
+
+            byte b = buffer.get(position);
+
+            if (isDigit(b)) {
+
+                mantissa = mantissa * 10 + (b - '0');
+
+                if (fraction) {
+
+                    scale *= 10;
+                }
+            }
+            else if (b == '.' && !fraction) {
+
+                fraction = true;
+            }
+            else {
+
+                break;
+            }
+
+            position ++;
+        }
+
+        if (position == start) {
+
+            throw new InvalidExecutionOutputException("expecting a number at offset " + position);
+        }
+
+        double d = (double)mantissa / scale;
+
+        return negative ? -d : d;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ByteCursor[" + position + "/" + limit + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The address of the local container (cgroup) source: "cgroup", optionally followed by a colon and a comma-separated
+ * list of cgroup path globs, relative to the cgroup hierarchy root. "*" and "?" match within a path segment. A glob
+ * prefixed with "!" excludes the cgroups it matches:
+ *
+ * <pre>
+ * cgroup
+ * cgroup:docker/*
+ * cgroup:system.slice/docker-*.scope
+ * cgroup:kubepods.slice/*&#47;*,!kubepods.slice/*&#47;*-besteffort*
+ * cgroup:/
+ * </pre>
+ *
+ * "/" selects the hierarchy root itself, which is the container's own cgroup when databot runs inside a container
+ * with a cgroup namespace. With no include globs, the top level cgroups ("*") are reported. Two addresses are equal
+ * if they have the same globs, in the same order.
+ *
+ * Immutable and thread safe.
+ *
+ * @see CgroupMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class CgroupAddress implements Address {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PROTOCOL = "cgroup";
+
+    public static final String DEFAULT_GLOB = "*";
+
+    //
+    // the glob, and the path, of the hierarchy root itself, which is the container's own cgroup when running inside
+    // a container with a cgroup namespace
+    //
+    public static final String ROOT = "/";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param globs the comma-separated glob list that follows "cgroup:", or null for the top level cgroups.
+     *
+     * @exception IllegalArgumentException on empty globs or empty path segments.
+     */
+    public static CgroupAddress parse(String globs) {
+
+        List<String> result = new ArrayList<>();
+
+        if (globs != null) {
+
+            for(String g: globs.split(",")) {
+
+                g = g.trim();
+
+                String path = g.startsWith("!") ? g.substring(1) : g;
+
+                if (!ROOT.equals(path) &&
+                        (path.isEmpty() || path.startsWith("/") || path.endsWith("/") || path.contains("//"))) {
+
+                    throw new IllegalArgumentException("invalid cgroup glob \"" + g + "\" in \"" + globs + "\"");
+                }
+
+                result.add(g);
+            }
+        }
+
+        return new CgroupAddress(result);
+    }
+
+    /**
+     * @return one pattern per path segment.
+     */
+    static Pattern[] toPatterns(String glob) {
+
+        String[] segments = ROOT.equals(glob) ? new String[0] : glob.split("/");
+
+        Pattern[] result = new Pattern[segments.length];
+
+        for(int i = 0; i < segments.length; i ++) {
+
+            result[i] = NetworkAddress.toPattern(segments[i]);
+        }
+
+        return result;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final List<String> globs;
+
+    private final List<Pattern[]> includes;
+
+    private final List<Pattern[]> excludes;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CgroupAddress() {
+
+        this(Collections.emptyList());
+    }
+
+    public CgroupAddress(List<String> globs) {
+
+        this.globs = Collections.unmodifiableList(new ArrayList<>(globs));
+        this.includes = new ArrayList<>();
+        this.excludes = new ArrayList<>();
+
+        for(String g: globs) {
+
+            if (g.startsWith("!")) {
+
+                excludes.add(toPatterns(g.substring(1)));
+            }
+            else {
+
+                includes.add(toPatterns(g));
+            }
+        }
+
+        if (includes.isEmpty()) {
+
+            includes.add(toPatterns(DEFAULT_GLOB));
+        }
+    }
+
+    // Address implementation ------------------------------------------------------------------------------------------
+
+    @Override
+    public String getLiteral() {
+
+        return globs.isEmpty() ? PROTOCOL : PROTOCOL + ":" + String.join(",", globs);
+    }
+
+    @Override
+    public String getProtocol() {
+
+        return PROTOCOL;
+    }
+
+    /**
+     * @return null, the cgroups are always local.
+     */
+    @Override
+    public String getHost() {
+
+        return null;
+    }
+
+    @Override
+    public Integer getPort() {
+
+        return null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public List<String> getGlobs() {
+
+        return globs;
+    }
+
+    /**
+     * @param path a cgroup path relative to the hierarchy root, such as "system.slice/docker-1a2b.scope".
+     *
+     * @return true if the path is matched by an exclude glob.
+     */
+    public boolean excludes(String path) {
+
+        if (excludes.isEmpty()) {
+
+            return false;
+        }
+
+        String[] segments = ROOT.equals(path) ? new String[0] : path.split("/");
+
+        for(Pattern[] p: excludes) {
+
+            if (matches(p, segments)) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o instanceof CgroupAddress && globs.equals(((CgroupAddress)o).globs);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return PROTOCOL.hashCode() + 17 * globs.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return getLiteral();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the include globs, one pattern per path segment. Never empty.
+     */
+    List<Pattern[]> getIncludes() {
+
+        return includes;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static boolean matches(Pattern[] patterns, String[] segments) {
+
+        if (patterns.length != segments.length) {
+
+            return false;
+        }
+
+        for(int i = 0; i < patterns.length; i ++) {
+
+            if (!patterns[i].matcher(segments[i]).matches()) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
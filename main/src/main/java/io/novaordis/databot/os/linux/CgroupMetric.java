@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+
+/**
+ * The metrics a CgroupMetricSource serves, by metric definition ID.
+ *
+ * Each metric produces one property per cgroup ("ThrottledPeriodsPercentage[system.slice/docker-1a2b.scope]"). Rates
+ * are per second, computed from the counter deltas between the last two readings. The CPU percentages are relative to
+ * one CPU, so they exceed 100 for a container that uses more than one.
+ *
+ * @see CgroupMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public enum CgroupMetric {
+
+    CPU_USAGE_PERCENTAGE(
+            "CpuUsagePercentage", "Container CPU Usage Percentage", Kind.RATE,
+            CgroupSnapshot.CPU_USAGE_USEC, CgroupReader.CPU, 100d / 1000000d),
+    THROTTLED_PERIODS_PERCENTAGE(
+            "ThrottledPeriodsPercentage", "Container Throttled CPU Periods Percentage", Kind.RATIO,
+            CgroupSnapshot.NR_THROTTLED, CgroupReader.CPU, 100d),
+    THROTTLED_TIME_PERCENTAGE(
+            "ThrottledTimePercentage", "Container Throttled CPU Time Percentage", Kind.RATE,
+            CgroupSnapshot.THROTTLED_USEC, CgroupReader.CPU, 100d / 1000000d),
+    MEMORY_USED(
+            "MemoryUsed", "Container Memory Used", Kind.GAUGE,
+            CgroupSnapshot.MEMORY_USED, CgroupReader.MEMORY, 1d),
+    MEMORY_LIMIT(
+            "MemoryLimit", "Container Memory Limit", Kind.GAUGE,
+            CgroupSnapshot.MEMORY_LIMIT, CgroupReader.MEMORY, 1d),
+    MEMORY_USED_PERCENTAGE(
+            "MemoryUsedPercentage", "Container Memory Used Percentage of Limit", Kind.RATIO_OF_LIMIT,
+            CgroupSnapshot.MEMORY_USED, CgroupReader.MEMORY, 100d),
+    MEMORY_ANON(
+            "MemoryAnon", "Container Anonymous Memory", Kind.GAUGE,
+            CgroupSnapshot.MEMORY_ANON, CgroupReader.MEMORY_STAT, 1d),
+    MEMORY_FILE(
+            "MemoryFile", "Container Page Cache", Kind.GAUGE,
+            CgroupSnapshot.MEMORY_FILE, CgroupReader.MEMORY_STAT, 1d),
+    MAJOR_PAGE_FAULTS_PER_SECOND(
+            "MajorPageFaultsPerSecond", "Container Major Page Faults per Second", Kind.RATE,
+            CgroupSnapshot.PGMAJFAULT, CgroupReader.MEMORY_STAT, 1d),
+    OOM_KILLS(
+            "OomKills", "Container OOM Kills", Kind.GAUGE,
+            CgroupSnapshot.OOM_KILLS, CgroupReader.MEMORY_EVENTS, 1d),
+    IO_READ_BYTES_PER_SECOND(
+            "IoReadBytesPerSecond", "Container Bytes Read per Second", Kind.RATE,
+            CgroupSnapshot.IO_READ_BYTES, CgroupReader.IO, 1d),
+    IO_WRITE_BYTES_PER_SECOND(
+            "IoWriteBytesPerSecond", "Container Bytes Written per Second", Kind.RATE,
+            CgroupSnapshot.IO_WRITE_BYTES, CgroupReader.IO, 1d),
+    IO_READS_PER_SECOND(
+            "IoReadsPerSecond", "Container Read Operations per Second", Kind.RATE,
+            CgroupSnapshot.IO_READS, CgroupReader.IO, 1d),
+    IO_WRITES_PER_SECOND(
+            "IoWritesPerSecond", "Container Write Operations per Second", Kind.RATE,
+            CgroupSnapshot.IO_WRITES, CgroupReader.IO, 1d),
+    PIDS(
+            "Pids", "Container Processes and Threads", Kind.GAUGE,
+            CgroupSnapshot.PIDS, CgroupReader.PIDS, 1d);
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the cgroup metric with the given ID, or null.
+     */
+    public static CgroupMetric fromId(String id) {
+
+        for(CgroupMetric m: values()) {
+
+            if (m.id.equals(id)) {
+
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String id;
+
+    private final String label;
+
+    private final Kind kind;
+
+    //
+    // the CgroupSnapshot field
+    //
+    private final int field;
+
+    //
+    // the CgroupReader flag of the files the value comes from
+    //
+    private final int group;
+
+    //
+    // the factor that converts the per second rate, or the ratio, to the reported value
+    //
+    private final double scale;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    CgroupMetric(String id, String label, Kind kind, int field, int group, double scale) {
+
+        this.id = id;
+        this.label = label;
+        this.kind = kind;
+        this.field = field;
+        this.group = group;
+        this.scale = scale;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getId() {
+
+        return id;
+    }
+
+    public String getLabel() {
+
+        return label;
+    }
+
+    public Kind getKind() {
+
+        return kind;
+    }
+
+    public int getField() {
+
+        return field;
+    }
+
+    /**
+     * @return the CgroupReader flag of the files the value is read from.
+     */
+    public int getGroup() {
+
+        return group;
+    }
+
+    public double getScale() {
+
+        return scale;
+    }
+
+    public Class getType() {
+
+        return Kind.GAUGE.equals(kind) ? Long.class : Double.class;
+    }
+
+    /**
+     * @return the unit of the value, or null for dimensionless values.
+     */
+    public MeasureUnit getBaseUnit() {
+
+        return isMemory() ? MemoryMeasureUnit.BYTE : null;
+    }
+
+    @Override
+    public String toString() {
+
+        return id;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private boolean isMemory() {
+
+        return this == MEMORY_USED || this == MEMORY_LIMIT || this == MEMORY_ANON || this == MEMORY_FILE;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public enum Kind {
+
+        /**
+         * A per second rate of a counter, scaled.
+         */
+        RATE,
+
+        /**
+         * The ratio of the NR_THROTTLED and NR_PERIODS deltas over the interval, scaled.
+         */
+        RATIO,
+
+        /**
+         * The memory used as a percentage of the limit. Not reported if there is no limit.
+         */
+        RATIO_OF_LIMIT,
+
+        /**
+         * A current value.
+         */
+        GAUGE
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionBase;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+/**
+ * The definition of a container (cgroup) metric, declared as:
+ *
+ * <pre>
+ * cgroup/<i>metric</i>
+ * cgroup:<i>globs</i>/<i>metric</i>
+ * </pre>
+ *
+ * for example "cgroup:system.slice/docker-*.scope/ThrottledPeriodsPercentage", which reports the percentage of CPU
+ * periods in which each Docker container was throttled. The globs may contain "/", the metric follows the last one,
+ * so "cgroup://Pids" reports the hierarchy root.
+ *
+ * @see CgroupAddress
+ * @see CgroupMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class CgroupMetricDefinition extends MetricDefinitionBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the declaration is a cgroup metric declaration, which may still be invalid.
+     */
+    public static boolean isCgroupMetricDeclaration(String declaration) {
+
+        return declaration != null &&
+                (declaration.startsWith(CgroupAddress.PROTOCOL + "/") ||
+                        declaration.startsWith(CgroupAddress.PROTOCOL + ":"));
+    }
+
+    public static CgroupMetricDefinition parse(PropertyFactory pf, String declaration)
+            throws MetricDefinitionException {
+
+        if (!isCgroupMetricDeclaration(declaration)) {
+
+            throw new MetricDefinitionException("not a cgroup metric declaration: \"" + declaration + "\"");
+        }
+
+        int i = declaration.lastIndexOf('/');
+
+        if (i == -1) {
+
+            throw new MetricDefinitionException("missing cgroup metric: \"" + declaration + "\"");
+        }
+
+        String id = declaration.substring(i + 1);
+
+        CgroupMetric metric = CgroupMetric.fromId(id);
+
+        if (metric == null) {
+
+            throw new MetricDefinitionException("unknown cgroup metric \"" + id + "\"");
+        }
+
+        String globs = i == CgroupAddress.PROTOCOL.length() ?
+                null : declaration.substring(CgroupAddress.PROTOCOL.length() + 1, i);
+
+        CgroupAddress address;
+
+        try {
+
+            address = CgroupAddress.parse(globs);
+        }
+        catch(IllegalArgumentException e) {
+
+            throw new MetricDefinitionException(e.getMessage());
+        }
+
+        return new CgroupMetricDefinition(pf, address, metric);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final CgroupMetric metric;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CgroupMetricDefinition(PropertyFactory pf, CgroupAddress address, CgroupMetric metric) {
+
+        super(pf, address);
+
+        if (metric == null) {
+
+            throw new IllegalArgumentException("null metric");
+        }
+
+        this.metric = metric;
+    }
+
+    // MetricDefinition implementation ---------------------------------------------------------------------------------
+
+    @Override
+    public String getId() {
+
+        return metric.getId();
+    }
+
+    @Override
+    public String getSimpleLabel() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public MeasureUnit getBaseUnit() {
+
+        return metric.getBaseUnit();
+    }
+
+    @Override
+    public String getDescription() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public Class getType() {
+
+        return metric.getType();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public CgroupMetric getMetric() {
+
+        return metric;
+    }
+
+    @Override
+    public String toString() {
+
+        return getMetricSourceAddress() + "/" + metric.getId();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
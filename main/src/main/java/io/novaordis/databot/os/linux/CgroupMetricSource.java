@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.databot.task.PreparedQuery;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * Per-container CPU, throttling, memory, I/O and pids metrics, read from the cgroup v1 or v2 controller files of the
+ * cgroups the address selects. Only the files the requested metrics need are read. A metric produces one property per
+ * cgroup, named after the cgroup path ("MemoryUsedPercentage[docker/1a2b3c]").
+ *
+ * The CPU and I/O rates are per second: each cgroup keeps its previous counters, so the first reading of a newly
+ * discovered cgroup produces no rates. Values a cgroup does not expose, such as the memory
+ * metrics of a cgroup without the memory controller, are not reported.
+ *
+ * @see CgroupReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class CgroupMetricSource extends LinuxMetricSourceBase<CgroupAddress, CgroupMetric> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int F = CgroupSnapshot.FIELD_COUNT;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final CgroupReader reader;
+
+    private final CgroupSnapshot current;
+
+    //
+    // by registry index
+    //
+    private final SampleHistory previous;
+
+    private final IndexedPropertyNames names;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CgroupMetricSource(CgroupAddress address, CgroupReader reader, PropertyFactory propertyFactory) {
+
+        super(address, reader, propertyFactory, CgroupMetric::fromId, CgroupMetric[]::new, "cgroup");
+
+        this.reader = reader;
+        this.current = new CgroupSnapshot();
+        this.previous = new SampleHistory(F, CgroupSnapshot.INITIAL_CGROUP_CAPACITY);
+        this.names = new IndexedPropertyNames(CgroupMetric.values().length);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected PreparedQuery prepare(List<MetricDefinition> metricDefinitions, CgroupMetric[] metrics) {
+
+        int groups = groups(metrics);
+
+        return () -> collect(metricDefinitions, metrics, groups);
+    }
+
+    @Override
+    protected List<Property> collect(List<MetricDefinition> metricDefinitions, CgroupMetric[] metrics)
+            throws MetricSourceException {
+
+        return collect(metricDefinitions, metrics, groups(metrics));
+    }
+
+    @Override
+    protected void reset() {
+
+        previous.clear();
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static int groups(CgroupMetric[] metrics) {
+
+        int groups = 0;
+
+        for(CgroupMetric m: metrics) {
+
+            groups |= m.getGroup();
+        }
+
+        return groups;
+    }
+
+    private synchronized List<Property> collect(
+            List<MetricDefinition> metricDefinitions, CgroupMetric[] metrics, int groups)
+            throws MetricSourceException {
+
+        try {
+
+            reader.read(current, groups);
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            throw new MetricSourceException("failed to read cgroups under " + reader.getCgroupRoot(), e);
+        }
+
+        previous.ensureCapacity(reader.getRegistrySize());
+
+        List<Property> result = new ArrayList<>();
+
+        int cgroups = current.cgroupCount;
+
+        for(int i = 0; i < metrics.length; i ++) {
+
+            MetricDefinition md = metricDefinitions.get(i);
+            CgroupMetric m = metrics[i];
+
+            Class type = md.getType();
+
+            type = type == null ? m.getType() : type;
+
+            MeasureUnit unit = md.getBaseUnit();
+
+            unit = unit == null ? m.getBaseUnit() : unit;
+
+            int field = m.getField();
+
+            for(int p = 0; p < cgroups; p ++) {
+
+                int index = current.cgroups[p];
+                int offset = p * F;
+                long v = current.values[offset + field];
+
+                if (v < 0) {
+
+                    continue;
+                }
+
+                double value;
+
+                if (CgroupMetric.Kind.GAUGE.equals(m.getKind())) {
+
+                    value = toUnit(v, m.getBaseUnit() == null ? null : unit);
+                }
+                else if (CgroupMetric.Kind.RATIO_OF_LIMIT.equals(m.getKind())) {
+
+                    long limit = current.values[offset + CgroupSnapshot.MEMORY_LIMIT];
+
+                    if (limit <= 0) {
+
+                        continue;
+                    }
+
+                    value = m.getScale() * v / limit;
+                }
+                else {
+
+                    long previousNanos = current.added[p] ? 0L : previous.getNanos(index);
+                    long previousValue = previous.get(index, field);
+
+                    if (previousNanos == 0 || previousValue < 0) {
+
+                        continue;
+                    }
+
+                    if (CgroupMetric.Kind.RATIO.equals(m.getKind())) {
+
+                        long throttled = v - previousValue;
+                        long periods = current.values[offset + CgroupSnapshot.NR_PERIODS] -
+                                previous.get(index, CgroupSnapshot.NR_PERIODS);
+
+                        value = periods <= 0 || throttled < 0 ? 0d : m.getScale() * throttled / periods;
+                    }
+                    else {
+
+                        double seconds = Rates.seconds(previousNanos, current.timestampNanos);
+
+                        value = m.getScale() * Rates.perSecond(v, previousValue, seconds);
+                    }
+                }
+
+                String name = names.get(m.ordinal(), md.getId(), index, reader.getCgroupPath(index));
+
+                result.add(getPropertyFactory().createInstance(
+                        name, type, toType(value, type), null, m.getBaseUnit() == null ? null : unit));
+            }
+        }
+
+        for(int p = 0; p < cgroups; p ++) {
+
+            previous.record(current.cgroups[p], current.values, p * F, current.timestampNanos);
+        }
+
+        return result;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * Claims the "cgroup" addresses. The hierarchy root is only checked for existence here; whether it is v1 or v2, and
+ * where the address' groups live in it, is worked out by the reader.
+ *
+ * @see CgroupMetricSource
+ * @see CgroupAddress
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class CgroupMetricSourceFactory extends DelegatingMetricSourceFactory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(CgroupMetricSourceFactory.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File cgroupRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CgroupMetricSourceFactory(MetricSourceFactory delegate, File cgroupRoot) {
+
+        super(delegate);
+
+        this.cgroupRoot = cgroupRoot;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public File getCgroupRoot() {
+
+        return cgroupRoot;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected boolean accepts(Address a) {
+
+        return a instanceof CgroupAddress;
+    }
+
+    @Override
+    protected MetricSource build(Address a) throws MetricSourceException {
+
+        if (!CgroupReader.isAvailable(cgroupRoot)) {
+
+            throw new MetricSourceException("cannot read cgroup metrics, " + cgroupRoot + " not available");
+        }
+
+        CgroupAddress ca = (CgroupAddress)a;
+
+        MetricSource s = new CgroupMetricSource(ca, new CgroupReader(cgroupRoot, ca), getPropertyFactory());
+
+        log.debug("reading cgroup metrics from " + cgroupRoot + " for " + a);
+
+        return s;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
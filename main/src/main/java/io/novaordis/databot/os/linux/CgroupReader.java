@@ -0,0 +1,793 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Reads the CPU, memory, I/O and pids controller files of the cgroups selected by a CgroupAddress into a
+ * CgroupSnapshot. Both hierarchies are supported: the unified cgroup v2 hierarchy, detected by the presence of
+ * cgroup.controllers at the root, and the per-controller cgroup v1 hierarchies (cpu, cpuacct, memory, blkio, pids).
+ * The pressure stall files (cpu.pressure, memory.pressure, io.pressure) only exist in the v2 hierarchy.
+ *
+ * The cgroups are discovered by walking the hierarchy with the address globs, which only happens every discovery
+ * interval, not on every reading. In between, a cgroup that disappears is noticed when its files fail, and dropped
+ * right away; new cgroups are picked up by the next discovery. The files of a cgroup are kept open between readings
+ * and read into the reader's own reused direct buffer. A file that does not exist, because its controller is not enabled
+ * for the cgroup, is not tried again until the next discovery.
+ *
+ * The discovery state and the buffers are not guarded: the owning source serializes reads.
+ *
+ * @see CgroupSnapshot
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class CgroupReader implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(CgroupReader.class);
+
+    public static final String DEFAULT_CGROUP_ROOT = "/sys/fs/cgroup";
+
+    public static final long DEFAULT_DISCOVERY_INTERVAL_MS = 30000L;
+
+    //
+    // bit flags for the groups of files to read
+    //
+    public static final int CPU = 1;
+    public static final int MEMORY = 2;
+    public static final int MEMORY_STAT = 4;
+    public static final int MEMORY_EVENTS = 8;
+    public static final int IO = 16;
+    public static final int PIDS = 32;
+    public static final int PRESSURE = 64;
+
+    //
+    // the files, by index
+    //
+    private static final int CPU_STAT_FILE = 0;
+    private static final int CPUACCT_USAGE_FILE = 1;
+    private static final int MEMORY_USED_FILE = 2;
+    private static final int MEMORY_LIMIT_FILE = 3;
+    private static final int MEMORY_STAT_FILE = 4;
+    private static final int MEMORY_EVENTS_FILE = 5;
+    private static final int IO_BYTES_FILE = 6;
+    private static final int IO_OPS_FILE = 7;
+    private static final int PIDS_FILE = 8;
+    private static final int CPU_PRESSURE_FILE = 9;
+    private static final int MEMORY_PRESSURE_FILE = 10;
+    private static final int IO_PRESSURE_FILE = 11;
+    private static final int FILE_COUNT = 12;
+
+    //
+    // by file: the group, and the name relative to the cgroup directory, null if the hierarchy does not have it
+    //
+
+    private static final int[] GROUP = {
+            CPU, CPU, MEMORY, MEMORY, MEMORY_STAT, MEMORY_EVENTS, IO, IO, PIDS, PRESSURE, PRESSURE, PRESSURE
+    };
+
+    private static final String[] V2_FILES = {
+            "cpu.stat", null, "memory.current", "memory.max", "memory.stat", "memory.events", "io.stat", null,
+            "pids.current", "cpu.pressure", "memory.pressure", "io.pressure"
+    };
+
+    private static final String[] V1_CONTROLLERS = {
+            "cpu", "cpuacct", "memory", "memory", "memory", "memory", "blkio", "blkio", "pids", null, null, null
+    };
+
+    private static final String[] V1_FILES = {
+            "cpu.stat", "cpuacct.usage", "memory.usage_in_bytes", "memory.limit_in_bytes", "memory.stat",
+            "memory.oom_control", "blkio.throttle.io_service_bytes_recursive", "blkio.throttle.io_serviced_recursive",
+            "pids.current", null, null, null
+    };
+
+    //
+    // the keys of the "key value" files, with the field they go to, and the divisor that normalizes the value
+    //
+
+    private static final Keys V2_CPU_STAT = new Keys().
+            key("usage_usec", CgroupSnapshot.CPU_USAGE_USEC, 1).
+            key("nr_periods", CgroupSnapshot.NR_PERIODS, 1).
+            key("nr_throttled", CgroupSnapshot.NR_THROTTLED, 1).
+            key("throttled_usec", CgroupSnapshot.THROTTLED_USEC, 1);
+
+    private static final Keys V1_CPU_STAT = new Keys().
+            key("nr_periods", CgroupSnapshot.NR_PERIODS, 1).
+            key("nr_throttled", CgroupSnapshot.NR_THROTTLED, 1).
+            key("throttled_time", CgroupSnapshot.THROTTLED_USEC, 1000);
+
+    private static final Keys V2_MEMORY_STAT = new Keys().
+            key("anon", CgroupSnapshot.MEMORY_ANON, 1).
+            key("file", CgroupSnapshot.MEMORY_FILE, 1).
+            key("pgmajfault", CgroupSnapshot.PGMAJFAULT, 1);
+
+    private static final Keys V1_MEMORY_STAT = new Keys().
+            key("total_rss", CgroupSnapshot.MEMORY_ANON, 1).
+            key("total_cache", CgroupSnapshot.MEMORY_FILE, 1).
+            key("total_pgmajfault", CgroupSnapshot.PGMAJFAULT, 1);
+
+    private static final Keys MEMORY_EVENTS_KEYS = new Keys().
+            key("oom_kill", CgroupSnapshot.OOM_KILLS, 1);
+
+    //
+    // io.stat: "8:0 rbytes=1 wbytes=2 rios=3 wios=4 dbytes=0 dios=0"
+    //
+    private static final byte[][] IO_STAT_KEYS = {
+            ByteCursor.bytes("rbytes="), ByteCursor.bytes("wbytes="), ByteCursor.bytes("rios="),
+            ByteCursor.bytes("wios=")
+    };
+
+    private static final int[] IO_STAT_FIELDS = {
+            CgroupSnapshot.IO_READ_BYTES, CgroupSnapshot.IO_WRITE_BYTES, CgroupSnapshot.IO_READS,
+            CgroupSnapshot.IO_WRITES
+    };
+
+    private static final byte[] MAX = ByteCursor.bytes("max");
+    private static final byte[] READ = ByteCursor.bytes("Read");
+    private static final byte[] WRITE = ByteCursor.bytes("Write");
+    private static final byte[] TOTAL = ByteCursor.bytes("Total");
+
+    //
+    // cgroup v1 reports "no limit" as the largest page-aligned long
+    //
+    private static final long V1_NO_LIMIT = 1L << 62;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the cgroup hierarchy root exists and is readable.
+     */
+    public static boolean isAvailable(File cgroupRoot) {
+
+        return cgroupRoot.isDirectory() && cgroupRoot.canRead();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File cgroupRoot;
+
+    private final CgroupAddress address;
+
+    private final long discoveryIntervalNanos;
+
+    private final boolean v2;
+
+    //
+    // the directory whose sub-directories are the cgroups: the root for v2, a controller hierarchy for v1
+    //
+    private final File hierarchy;
+
+    //
+    // shared by the files of all cgroups, each is parsed before the next is read; replaced by a larger one if a file
+    // outgrows it
+    //
+    private ByteBuffer buffer;
+
+    private final ByteCursor cursor;
+
+    //
+    // the discovered cgroups, in discovery order, and by path
+    //
+    private final List<Cgroup> cgroups;
+    private final Map<String, Cgroup> byPath;
+
+    //
+    // the registry: the path by index, null for free indexes
+    //
+    private String[] paths;
+    private int registrySize;
+
+    private long lastDiscoveryNanos;
+
+    private boolean discovered;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CgroupReader(File cgroupRoot, CgroupAddress address) {
+
+        this(cgroupRoot, address, DEFAULT_DISCOVERY_INTERVAL_MS);
+    }
+
+    public CgroupReader(File cgroupRoot, CgroupAddress address, long discoveryIntervalMs) {
+
+        if (cgroupRoot == null) {
+
+            throw new IllegalArgumentException("null cgroup root");
+        }
+
+        if (address == null) {
+
+            throw new IllegalArgumentException("null address");
+        }
+
+        this.cgroupRoot = cgroupRoot;
+        this.address = address;
+        this.discoveryIntervalNanos = discoveryIntervalMs * 1000000L;
+        this.v2 = new File(cgroupRoot, "cgroup.controllers").isFile();
+
+        if (v2) {
+
+            this.hierarchy = cgroupRoot;
+        }
+        else {
+
+            File cpu = new File(cgroupRoot, "cpu");
+            this.hierarchy = cpu.isDirectory() ? cpu : new File(cgroupRoot, "memory");
+        }
+
+        this.buffer = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+        this.cursor = new ByteCursor();
+        this.cgroups = new ArrayList<>();
+        this.byPath = new HashMap<>();
+        this.paths = new String[CgroupSnapshot.INITIAL_CGROUP_CAPACITY];
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    /**
+     * Closes the files and forgets the cgroups. The next read discovers them again.
+     */
+    @Override
+    public void close() {
+
+        for(Cgroup g: cgroups) {
+
+            g.close();
+        }
+
+        cgroups.clear();
+        byPath.clear();
+        Arrays.fill(paths, null);
+        registrySize = 0;
+        discovered = false;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Overwrites the given snapshot with fresh readings of the given groups of files, discovering the cgroups first if
+     * the discovery interval elapsed.
+     *
+     * @param groups a combination of the CPU, MEMORY, MEMORY_STAT, MEMORY_EVENTS, IO, PIDS and PRESSURE flags.
+     *
+     * @exception InvalidExecutionOutputException if a file cannot be parsed.
+     */
+    public void read(CgroupSnapshot s, int groups) throws InvalidExecutionOutputException {
+
+        long now = System.nanoTime();
+
+        if (!discovered || now - lastDiscoveryNanos >= discoveryIntervalNanos) {
+
+            discover();
+            lastDiscoveryNanos = now;
+            discovered = true;
+        }
+
+        s.clear();
+        s.timestampNanos = now;
+
+        for(Iterator<Cgroup> i = cgroups.iterator(); i.hasNext(); ) {
+
+            Cgroup g = i.next();
+
+            int offset = s.add(g.index, g.added);
+
+            if (!read(g, groups, s.values, offset)) {
+
+                //
+                // the cgroup is gone
+                //
+
+                s.cgroupCount --;
+
+                i.remove();
+                remove(g);
+                continue;
+            }
+
+            g.added = false;
+        }
+    }
+
+    /**
+     * @param index the registry index, as returned by CgroupSnapshot.getCgroup().
+     *
+     * @return the cgroup path, relative to the hierarchy root.
+     */
+    public String getCgroupPath(int index) {
+
+        return paths[index];
+    }
+
+    /**
+     * @return the number of registry indexes in use or freed, the upper bound of any index.
+     */
+    public int getRegistrySize() {
+
+        return registrySize;
+    }
+
+    public boolean isV2() {
+
+        return v2;
+    }
+
+    public File getCgroupRoot() {
+
+        return cgroupRoot;
+    }
+
+    @Override
+    public String toString() {
+
+        return "cgroup " + (v2 ? "v2" : "v1") + " reader[" + cgroupRoot + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Walks the hierarchy with the address globs: keeps the cgroups that still exist, with their open files, adds the
+     * new ones and drops the ones that disappeared.
+     */
+    void discover() {
+
+        Set<String> found = new LinkedHashSet<>();
+
+        for(Pattern[] glob: address.getIncludes()) {
+
+            walk(hierarchy, null, glob, 0, found);
+        }
+
+        for(Cgroup g: cgroups) {
+
+            if (!found.contains(g.path)) {
+
+                remove(g);
+            }
+        }
+
+        cgroups.clear();
+
+        for(String path: found) {
+
+            Cgroup g = byPath.get(path);
+
+            if (g == null) {
+
+                g = new Cgroup(path, register(path));
+                byPath.put(path, g);
+
+                log.debug("new cgroup " + path);
+            }
+            else {
+
+                //
+                // try the files that did not exist again, a controller may have been enabled since
+                //
+
+                g.reopenAbsent();
+            }
+
+            cgroups.add(g);
+        }
+    }
+
+    /**
+     * Parses the content of a file into the values of a cgroup.
+     */
+    void parse(int file, ByteBuffer b, long[] values, int offset) throws InvalidExecutionOutputException {
+
+        ByteCursor c = cursor.reset(b);
+
+        switch(file) {
+
+            case CPU_STAT_FILE:
+                parseKeys(c, v2 ? V2_CPU_STAT : V1_CPU_STAT, values, offset);
+                break;
+
+            case CPUACCT_USAGE_FILE:
+                values[offset + CgroupSnapshot.CPU_USAGE_USEC] = c.nextLong() / 1000;
+                break;
+
+            case MEMORY_USED_FILE:
+                values[offset + CgroupSnapshot.MEMORY_USED] = c.nextLong();
+                break;
+
+            case MEMORY_LIMIT_FILE:
+
+                if (c.consumeToken(MAX)) {
+
+                    break;
+                }
+
+                long limit = c.nextLong();
+                values[offset + CgroupSnapshot.MEMORY_LIMIT] = limit >= V1_NO_LIMIT ? -1L : limit;
+                break;
+
+            case MEMORY_STAT_FILE:
+                parseKeys(c, v2 ? V2_MEMORY_STAT : V1_MEMORY_STAT, values, offset);
+                break;
+
+            case MEMORY_EVENTS_FILE:
+                parseKeys(c, MEMORY_EVENTS_KEYS, values, offset);
+                break;
+
+            case IO_BYTES_FILE:
+
+                if (v2) {
+
+                    parseIoStat(c, values, offset);
+                }
+                else {
+
+                    parseBlkio(
+                            c, values, offset + CgroupSnapshot.IO_READ_BYTES, offset + CgroupSnapshot.IO_WRITE_BYTES);
+                }
+
+                break;
+
+            case IO_OPS_FILE:
+                parseBlkio(c, values, offset + CgroupSnapshot.IO_READS, offset + CgroupSnapshot.IO_WRITES);
+                break;
+
+            case CPU_PRESSURE_FILE:
+            case MEMORY_PRESSURE_FILE:
+            case IO_PRESSURE_FILE:
+                int resource = PressureReader.RESOURCES[file - CPU_PRESSURE_FILE];
+                PressureReader.parse(c, values, offset + CgroupSnapshot.PRESSURE + resource);
+                break;
+
+            default:
+                values[offset + CgroupSnapshot.PIDS] = c.nextLong();
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return false if the cgroup is gone.
+     */
+    private boolean read(Cgroup g, int groups, long[] values, int offset) throws InvalidExecutionOutputException {
+
+        for(int f = 0; f < FILE_COUNT; f ++) {
+
+            if ((GROUP[f] & groups) == 0 || g.files[f] == null) {
+
+                continue;
+            }
+
+            ByteBuffer b;
+
+            try {
+
+                buffer = g.files[f].read(buffer);
+                b = buffer;
+            }
+            catch(IOException e) {
+
+                //
+                // the files of a removed cgroup fail with ENODEV, or are gone
+                //
+
+                if (!g.directory.isDirectory()) {
+
+                    return false;
+                }
+
+                log.debug("failed to read " + g.files[f] + ", not trying again until the next discovery: " + e);
+
+                g.files[f].close();
+                g.files[f] = null;
+                continue;
+            }
+
+            parse(f, b, values, offset);
+        }
+
+        return true;
+    }
+
+    /**
+     * "key value" lines. Keys that are not of interest are skipped.
+     */
+    private static void parseKeys(ByteCursor c, Keys keys, long[] values, int offset)
+            throws InvalidExecutionOutputException {
+
+        while(c.hasRemaining()) {
+
+            for(int i = 0; i < keys.count; i ++) {
+
+                if (c.consumeToken(keys.names[i])) {
+
+                    values[offset + keys.fields[i]] = c.nextLong() / keys.divisors[i];
+                    break;
+                }
+            }
+
+            if (!c.nextLine()) {
+
+                break;
+            }
+        }
+    }
+
+    /**
+     * One "8:0 rbytes=1 wbytes=2 rios=3 wios=4 dbytes=0 dios=0" line per device, summed.
+     */
+    private static void parseIoStat(ByteCursor c, long[] values, int offset) throws InvalidExecutionOutputException {
+
+        for(int field: IO_STAT_FIELDS) {
+
+            values[offset + field] = 0L;
+        }
+
+        while(c.hasRemaining()) {
+
+            c.skipToken();
+
+            while(true) {
+
+                c.skipSpaces();
+
+                if (c.atEndOfLine()) {
+
+                    break;
+                }
+
+                boolean matched = false;
+
+                for(int i = 0; i < IO_STAT_KEYS.length; i ++) {
+
+                    if (c.startsWith(IO_STAT_KEYS[i])) {
+
+                        c.skip(IO_STAT_KEYS[i].length);
+                        values[offset + IO_STAT_FIELDS[i]] += c.nextLong();
+                        matched = true;
+                        break;
+                    }
+                }
+
+                if (!matched) {
+
+                    c.skipToken();
+                }
+            }
+
+            if (!c.nextLine()) {
+
+                break;
+            }
+        }
+    }
+
+    /**
+     * The cgroup v1 "8:0 Read 1024" lines, summed over devices. The "Total" lines are skipped.
+     */
+    private static void parseBlkio(ByteCursor c, long[] values, int read, int write)
+            throws InvalidExecutionOutputException {
+
+        values[read] = 0L;
+        values[write] = 0L;
+
+        while(c.hasRemaining()) {
+
+            if (!c.consumeToken(TOTAL)) {
+
+                c.skipToken();
+                c.skipSpaces();
+
+                if (c.consumeToken(READ)) {
+
+                    values[read] += c.nextLong();
+                }
+                else if (c.consumeToken(WRITE)) {
+
+                    values[write] += c.nextLong();
+                }
+            }
+
+            if (!c.nextLine()) {
+
+                break;
+            }
+        }
+    }
+
+    private void walk(File dir, String path, Pattern[] glob, int depth, Set<String> found) {
+
+        if (depth == glob.length) {
+
+            path = path == null ? CgroupAddress.ROOT : path;
+
+            if (!address.excludes(path)) {
+
+                found.add(path);
+            }
+
+            return;
+        }
+
+        String[] names = dir.list();
+
+        if (names == null) {
+
+            return;
+        }
+
+        Arrays.sort(names);
+
+        for(String name: names) {
+
+            if (!glob[depth].matcher(name).matches()) {
+
+                continue;
+            }
+
+            File child = new File(dir, name);
+
+            if (child.isDirectory()) {
+
+                walk(child, path == null ? name : path + "/" + name, glob, depth + 1, found);
+            }
+        }
+    }
+
+    /**
+     * @return the registry index: the first free one, or a new one.
+     */
+    private int register(String path) {
+
+        for(int i = 0; i < registrySize; i ++) {
+
+            if (paths[i] == null) {
+
+                paths[i] = path;
+                return i;
+            }
+        }
+
+        if (registrySize == paths.length) {
+
+            paths = Arrays.copyOf(paths, paths.length * 2);
+        }
+
+        paths[registrySize] = path;
+
+        return registrySize ++;
+    }
+
+    /**
+     * Closes the files of a cgroup that is gone, and frees its registry index.
+     */
+    private void remove(Cgroup g) {
+
+        g.close();
+        byPath.remove(g.path);
+        paths[g.index] = null;
+
+        log.debug("cgroup " + g.path + " is gone");
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private final class Cgroup {
+
+        private final String path;
+
+        private final int index;
+
+        //
+        // the directory whose disappearance means the cgroup is gone
+        //
+        private final File directory;
+
+        //
+        // by file index, null if the hierarchy does not have the file, or if it could not be read
+        //
+        private final ProcFile[] files;
+
+        private boolean added;
+
+        Cgroup(String path, int index) {
+
+            this.path = path;
+            this.index = index;
+            this.directory = new File(hierarchy, path);
+            this.files = new ProcFile[FILE_COUNT];
+            this.added = true;
+
+            reopenAbsent();
+        }
+
+        void reopenAbsent() {
+
+            for(int f = 0; f < FILE_COUNT; f ++) {
+
+                if (files[f] != null) {
+
+                    continue;
+                }
+
+                if (v2) {
+
+                    files[f] = V2_FILES[f] == null ? null : new ProcFile(new File(directory, V2_FILES[f]));
+                }
+                else if (V1_FILES[f] != null) {
+
+                    File controller = new File(new File(cgroupRoot, V1_CONTROLLERS[f]), path);
+                    files[f] = new ProcFile(new File(controller, V1_FILES[f]));
+                }
+            }
+        }
+
+        void close() {
+
+            for(ProcFile f: files) {
+
+                if (f != null) {
+
+                    f.close();
+                }
+            }
+        }
+    }
+
+    private static final class Keys {
+
+        private byte[][] names = new byte[0][];
+        private int[] fields = new int[0];
+        private long[] divisors = new long[0];
+        private int count;
+
+        Keys key(String name, int field, long divisor) {
+
+            names = Arrays.copyOf(names, count + 1);
+            fields = Arrays.copyOf(fields, count + 1);
+            divisors = Arrays.copyOf(divisors, count + 1);
+
+            names[count] = ByteCursor.bytes(name);
+            fields[count] = field;
+            divisors[count] = divisor;
+            count ++;
+
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.Arrays;
+
+/**
+ * The CPU, memory, I/O, pids and pressure stall counters of a set of cgroups, held in primitive arrays and overwritten
+ * in place by CgroupReader. The values are normalized across cgroup v1 and v2: times in microseconds, sizes in bytes.
+ *
+ * A cgroup is identified by its index in the reader's cgroup registry. An index is reused after its cgroup disappears,
+ * in which case the first snapshot that contains the new cgroup marks it as added. The values of the cgroup at
+ * position i are at i * FIELD_COUNT, indexed by the field constants below; a value that was not read, or that the
+ * cgroup does not expose (a controller that is not enabled, for example), is -1.
+ *
+ * Not thread safe.
+ *
+ * @see CgroupReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class CgroupSnapshot {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int INITIAL_CGROUP_CAPACITY = 32;
+
+    //
+    // cpu.stat, cpuacct.usage (v1)
+    //
+    public static final int CPU_USAGE_USEC = 0;
+    public static final int NR_PERIODS = 1;
+    public static final int NR_THROTTLED = 2;
+    public static final int THROTTLED_USEC = 3;
+
+    //
+    // memory.current, memory.max, memory.stat, memory.events
+    //
+    public static final int MEMORY_USED = 4;
+    public static final int MEMORY_LIMIT = 5;
+    public static final int MEMORY_ANON = 6;
+    public static final int MEMORY_FILE = 7;
+    public static final int PGMAJFAULT = 8;
+    public static final int OOM_KILLS = 9;
+
+    //
+    // io.stat, summed over devices
+    //
+    public static final int IO_READ_BYTES = 10;
+    public static final int IO_WRITE_BYTES = 11;
+    public static final int IO_READS = 12;
+    public static final int IO_WRITES = 13;
+
+    //
+    // pids.current
+    //
+    public static final int PIDS = 14;
+
+    //
+    // cpu.pressure, memory.pressure, io.pressure (v2 only), laid out as in PressureSnapshot, from this offset
+    //
+    public static final int PRESSURE = 15;
+
+    public static final int FIELD_COUNT = PRESSURE + PressureSnapshot.FIELD_COUNT;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    long timestampNanos;
+
+    int cgroupCount;
+
+    //
+    // the registry index, by position
+    //
+    int[] cgroups;
+
+    //
+    // true if the cgroup was registered since the previous reading
+    //
+    boolean[] added;
+
+    long[] values;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CgroupSnapshot() {
+
+        this.cgroups = new int[INITIAL_CGROUP_CAPACITY];
+        this.added = new boolean[INITIAL_CGROUP_CAPACITY];
+        this.values = new long[INITIAL_CGROUP_CAPACITY * FIELD_COUNT];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getTimestampNanos() {
+
+        return timestampNanos;
+    }
+
+    public int getCgroupCount() {
+
+        return cgroupCount;
+    }
+
+    /**
+     * @param position the position of the cgroup in the snapshot, between 0 and getCgroupCount() - 1.
+     *
+     * @return the index of the cgroup in the reader's registry.
+     */
+    public int getCgroup(int position) {
+
+        return cgroups[position];
+    }
+
+    /**
+     * @return true if the registry index of the cgroup was not in use at the previous reading.
+     */
+    public boolean isAdded(int position) {
+
+        return added[position];
+    }
+
+    /**
+     * @param field one of the field constants.
+     *
+     * @return the value, or -1 if not available.
+     */
+    public long getValue(int position, int field) {
+
+        return values[position * FIELD_COUNT + field];
+    }
+
+    public void clear() {
+
+        this.timestampNanos = 0L;
+        this.cgroupCount = 0;
+    }
+
+    @Override
+    public String toString() {
+
+        return "cgroup snapshot[" + cgroupCount + " cgroup(s)]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Appends a cgroup with all values not available.
+     *
+     * @return the offset of its values.
+     */
+    int add(int index, boolean isAdded) {
+
+        ensureCapacity(cgroupCount + 1);
+
+        cgroups[cgroupCount] = index;
+        added[cgroupCount] = isAdded;
+
+        int offset = cgroupCount * FIELD_COUNT;
+
+        Arrays.fill(values, offset, offset + FIELD_COUNT, -1L);
+
+        cgroupCount ++;
+
+        return offset;
+    }
+
+    /**
+     * Makes room for the given number of cgroups, keeping the content.
+     */
+    void ensureCapacity(int count) {
+
+        if (count <= cgroups.length) {
+
+            return;
+        }
+
+        int capacity = Math.max(count, cgroups.length * 2);
+
+        int[] c = new int[capacity];
+        System.arraycopy(cgroups, 0, c, 0, cgroupCount);
+        cgroups = c;
+
+        boolean[] a = new boolean[capacity];
+        System.arraycopy(added, 0, a, 0, cgroupCount);
+        added = a;
+
+        long[] v = new long[capacity * FIELD_COUNT];
+        System.arraycopy(values, 0, v, 0, cgroupCount * FIELD_COUNT);
+        values = v;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The metrics a CpuCoresMetricSource serves, by metric definition ID.
+ *
+ * PER_CORE metrics produce one property per core. SUMMARY metrics produce a single property computed across all cores
+ * from their CPU time (everything but idle and I/O wait), so a saturated core can be spotted without a column per core.
+ *
+ * @see CpuCoresMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public enum CpuCoreMetric {
+
+    CPU_TIME("CpuTime", "Core CPU Time Percentage", Kind.PER_CORE, -1),
+    CPU_USER_TIME("CpuUserTime", "Core CPU User Time Percentage", Kind.PER_CORE, LocalOSSnapshot.CPU_USER),
+    CPU_NICE_TIME("CpuNiceTime", "Core CPU Nice Time Percentage", Kind.PER_CORE, LocalOSSnapshot.CPU_NICE),
+    CPU_KERNEL_TIME("CpuKernelTime", "Core CPU Kernel Time Percentage", Kind.PER_CORE, LocalOSSnapshot.CPU_SYSTEM),
+    CPU_IDLE_TIME("CpuIdleTime", "Core CPU Idle Time Percentage", Kind.PER_CORE, LocalOSSnapshot.CPU_IDLE),
+    CPU_IO_WAIT_TIME("CpuIoWaitTime", "Core CPU I/O Wait Time Percentage", Kind.PER_CORE, LocalOSSnapshot.CPU_IOWAIT),
+    CPU_HARDWARE_INTERRUPT_TIME(
+            "CpuHardwareInterruptTime", "Core CPU Hardware Interrupt Time Percentage", Kind.PER_CORE,
+            LocalOSSnapshot.CPU_IRQ),
+    CPU_SOFTWARE_INTERRUPT_TIME(
+            "CpuSoftwareInterruptTime", "Core CPU Software Interrupt Time Percentage", Kind.PER_CORE,
+            LocalOSSnapshot.CPU_SOFTIRQ),
+    CPU_STOLEN_TIME("CpuStolenTime", "Core CPU Stolen Time Percentage", Kind.PER_CORE, LocalOSSnapshot.CPU_STEAL),
+
+    MAX_CORE_CPU_TIME("MaxCoreCpuTime", "Busiest Core CPU Time Percentage", Kind.SUMMARY, -1),
+    MIN_CORE_CPU_TIME("MinCoreCpuTime", "Least Busy Core CPU Time Percentage", Kind.SUMMARY, -1),
+    CORE_CPU_TIME_SPREAD("CoreCpuTimeSpread", "Core CPU Time Percentage Spread", Kind.SUMMARY, -1),
+    BUSIEST_CORE("BusiestCore", "Busiest Core", Kind.SUMMARY, -1),
+    CORE_COUNT("CoreCount", "Online Core Count", Kind.SUMMARY, -1);
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return null if the ID does not designate a per-CPU metric.
+     */
+    public static CpuCoreMetric fromId(String id) {
+
+        for(CpuCoreMetric m: values()) {
+
+            if (m.id.equals(id)) {
+
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String id;
+
+    private final String label;
+
+    private final Kind kind;
+
+    //
+    // the LocalOSSnapshot CPU_* slot of per-core metrics, -1 for computed values
+    //
+    private final int field;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    CpuCoreMetric(String id, String label, Kind kind, int field) {
+
+        this.id = id;
+        this.label = label;
+        this.kind = kind;
+        this.field = field;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getId() {
+
+        return id;
+    }
+
+    public String getLabel() {
+
+        return label;
+    }
+
+    public Kind getKind() {
+
+        return kind;
+    }
+
+    /**
+     * @return the LocalOSSnapshot CPU_* slot, or -1 for the core CPU time and for summary metrics.
+     */
+    public int getField() {
+
+        return field;
+    }
+
+    public Class getType() {
+
+        return this == BUSIEST_CORE || this == CORE_COUNT ? Long.class : Double.class;
+    }
+
+    @Override
+    public String toString() {
+
+        return id;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public enum Kind {
+
+        /**
+         * A percentage of the core's time, one value per core.
+         */
+        PER_CORE,
+
+        /**
+         * One value across all cores.
+         */
+        SUMMARY
+    }
+
+}
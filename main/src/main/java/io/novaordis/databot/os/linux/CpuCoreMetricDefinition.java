@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionBase;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+/**
+ * The definition of a per-CPU metric, declared as:
+ *
+ * <pre>
+ * cores/<i>metric</i>
+ * </pre>
+ *
+ * for example "cores/CpuIoWaitTime", which reports the I/O wait percentage of every core, or "cores/MaxCoreCpuTime",
+ * which reports the CPU time percentage of the busiest core.
+ *
+ * @see CpuCoreMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CpuCoreMetricDefinition extends MetricDefinitionBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PREFIX = CpuCoresAddress.PROTOCOL + "/";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the declaration is a per-CPU metric declaration, which may still be invalid.
+     */
+    public static boolean isCpuCoreMetricDeclaration(String declaration) {
+
+        return declaration != null && declaration.startsWith(PREFIX);
+    }
+
+    public static CpuCoreMetricDefinition parse(PropertyFactory pf, String declaration)
+            throws MetricDefinitionException {
+
+        if (!isCpuCoreMetricDeclaration(declaration)) {
+
+            throw new MetricDefinitionException("not a per-CPU metric declaration: \"" + declaration + "\"");
+        }
+
+        String id = declaration.substring(PREFIX.length());
+
+        CpuCoreMetric metric = CpuCoreMetric.fromId(id);
+
+        if (metric == null) {
+
+            throw new MetricDefinitionException("unknown per-CPU metric \"" + id + "\"");
+        }
+
+        return new CpuCoreMetricDefinition(pf, new CpuCoresAddress(), metric);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final CpuCoreMetric metric;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CpuCoreMetricDefinition(PropertyFactory pf, CpuCoresAddress address, CpuCoreMetric metric) {
+
+        super(pf, address);
+
+        if (metric == null) {
+
+            throw new IllegalArgumentException("null metric");
+        }
+
+        this.metric = metric;
+    }
+
+    // MetricDefinition implementation ---------------------------------------------------------------------------------
+
+    @Override
+    public String getId() {
+
+        return metric.getId();
+    }
+
+    @Override
+    public String getSimpleLabel() {
+
+        return metric.getLabel();
+    }
+
+    /**
+     * @return null, all values are percentages or counts.
+     */
+    @Override
+    public MeasureUnit getBaseUnit() {
+
+        return null;
+    }
+
+    @Override
+    public String getDescription() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public Class getType() {
+
+        return metric.getType();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public CpuCoreMetric getMetric() {
+
+        return metric;
+    }
+
+    @Override
+    public String toString() {
+
+        return PREFIX + metric.getId();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
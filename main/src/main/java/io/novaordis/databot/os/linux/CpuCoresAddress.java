@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The address of the local per-CPU metric source: "cores". All instances are equal, so all the per-core metrics are
+ * collected by the same source, with one read of /proc/stat.
+ *
+ * @see CpuCoresMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CpuCoresAddress implements Address {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PROTOCOL = "cores";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Address implementation ------------------------------------------------------------------------------------------
+
+    @Override
+    public String getLiteral() {
+
+        return PROTOCOL;
+    }
+
+    @Override
+    public String getProtocol() {
+
+        return PROTOCOL;
+    }
+
+    /**
+     * @return null, the cores are always local.
+     */
+    @Override
+    public String getHost() {
+
+        return null;
+    }
+
+    @Override
+    public Integer getPort() {
+
+        return null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o instanceof CpuCoresAddress;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return PROTOCOL.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return getLiteral();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
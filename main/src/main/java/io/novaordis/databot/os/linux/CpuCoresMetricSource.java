@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * A metric source that serves per-CPU utilization from the "cpuN" lines of /proc/stat, so one saturated core is not
+ * averaged away by the host-wide figures.
+ *
+ * Percentages are computed per core from the difference between the current and the previous snapshot. A core whose
+ * tick counters did not advance since the previous snapshot, which happens when sampling faster than USER_HZ, reports
+ * its last known values and keeps its previous snapshot, so the next computation covers the whole interval. The first
+ * reading, and the first reading after a core went online or offline, report the averages since boot.
+ *
+ * A per-core metric produces one property per core, named after the core: "CpuIoWaitTime[0]", "CpuIoWaitTime[1]", ...
+ * A summary metric produces one property, named after the metric.
+ *
+ * @see CpuCoresReader
+ * @see CpuCoreMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CpuCoresMetricSource extends LinuxMetricSourceBase<CpuCoresAddress, CpuCoreMetric> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int F = LocalOSSnapshot.CPU_FIELD_COUNT;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the name of the property that carries the value of a per-core metric for the given core.
+     */
+    public static String getPropertyName(String metricId, int coreId) {
+
+        return getPropertyName(metricId, Integer.toString(coreId));
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final CpuCoresReader reader;
+
+    private final CpuCoresSnapshot current;
+    private final CpuCoresSnapshot previous;
+
+    //
+    // by core position: the percentages at position * F, indexed by the LocalOSSnapshot CPU_* constants, and the CPU
+    // time percentage (everything but idle and I/O wait)
+    //
+    private double[] percentages;
+    private double[] cpuTime;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CpuCoresMetricSource(CpuCoresAddress address, CpuCoresReader reader, PropertyFactory propertyFactory) {
+
+        super(address, reader, propertyFactory, CpuCoreMetric::fromId, CpuCoreMetric[]::new, "per-CPU");
+
+        this.reader = reader;
+        this.current = new CpuCoresSnapshot();
+        this.previous = new CpuCoresSnapshot();
+        this.percentages = new double[CpuCoresSnapshot.INITIAL_CORE_CAPACITY * F];
+        this.cpuTime = new double[CpuCoresSnapshot.INITIAL_CORE_CAPACITY];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected synchronized List<Property> collect(List<MetricDefinition> metricDefinitions, CpuCoreMetric[] metrics)
+            throws MetricSourceException {
+
+        try {
+
+            reader.read(current);
+        }
+        catch(IOException | InvalidExecutionOutputException e) {
+
+            throw new MetricSourceException("failed to read " + reader.getProcRoot(), e);
+        }
+
+        computePercentages();
+
+        int cores = current.coreCount;
+
+        int max = 0;
+        int min = 0;
+
+        for(int p = 1; p < cores; p ++) {
+
+            if (cpuTime[p] > cpuTime[max]) {
+
+                max = p;
+            }
+
+            if (cpuTime[p] < cpuTime[min]) {
+
+                min = p;
+            }
+        }
+
+        List<Property> result = new ArrayList<>(metrics.length);
+
+        for(int i = 0; i < metrics.length; i ++) {
+
+            MetricDefinition md = metricDefinitions.get(i);
+            CpuCoreMetric m = metrics[i];
+
+            Class type = md.getType();
+
+            type = type == null ? m.getType() : type;
+
+            if (CpuCoreMetric.Kind.PER_CORE.equals(m.getKind())) {
+
+                int field = m.getField();
+
+                for(int p = 0; p < cores; p ++) {
+
+                    double value = field == -1 ? cpuTime[p] : percentages[p * F + field];
+
+                    result.add(getPropertyFactory().createInstance(
+                            getPropertyName(md.getId(), current.coreIds[p]), type,
+                            toType(value, type), null, null));
+                }
+
+                continue;
+            }
+
+            double value;
+
+            switch(m) {
+
+                case MAX_CORE_CPU_TIME:
+                    value = cpuTime[max];
+                    break;
+
+                case MIN_CORE_CPU_TIME:
+                    value = cpuTime[min];
+                    break;
+
+                case CORE_CPU_TIME_SPREAD:
+                    value = cpuTime[max] - cpuTime[min];
+                    break;
+
+                case BUSIEST_CORE:
+                    value = current.coreIds[max];
+                    break;
+
+                default:
+                    value = cores;
+            }
+
+            result.add(getPropertyFactory().createInstance(
+                    md.getId(), type, toType(value, type), null, null));
+        }
+
+        return result;
+    }
+
+    @Override
+    protected void reset() {
+
+        previous.clear();
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void computePercentages() {
+
+        int cores = current.coreCount;
+
+        if (cpuTime.length < cores) {
+
+            percentages = new double[cores * F];
+            cpuTime = new double[cores];
+        }
+
+        //
+        // if the set of cores changed, the percentages are computed against zero: the averages since boot
+        //
+
+        boolean sameCores = previous.hasSameCores(current);
+
+        for(int p = 0; p < cores; p ++) {
+
+            int offset = p * F;
+
+            long total = current.getTotalTicks(p) - (sameCores ? previous.getTotalTicks(p) : 0L);
+
+            if (total <= 0) {
+
+                //
+                // report the last known values
+                //
+
+                continue;
+            }
+
+            for(int i = 0; i < F; i ++) {
+
+                long ticks = current.ticks[offset + i] - (sameCores ? previous.ticks[offset + i] : 0L);
+
+                percentages[offset + i] = 100d * ticks / total;
+            }
+
+            cpuTime[p] = 100d - percentages[offset + LocalOSSnapshot.CPU_IDLE] -
+                    percentages[offset + LocalOSSnapshot.CPU_IOWAIT];
+
+            if (sameCores) {
+
+                System.arraycopy(current.ticks, offset, previous.ticks, offset, F);
+            }
+        }
+
+        if (!sameCores) {
+
+            previous.copyFrom(current);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
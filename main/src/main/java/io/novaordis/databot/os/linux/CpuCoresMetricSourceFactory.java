@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * Claims the "cores" address. All cores addresses read the same /proc/stat, each source with its own reader, so two
+ * sources sampled at different intervals compute their utilization over their own intervals.
+ *
+ * @see CpuCoresMetricSource
+ * @see CpuCoresAddress
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CpuCoresMetricSourceFactory extends DelegatingMetricSourceFactory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(CpuCoresMetricSourceFactory.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CpuCoresMetricSourceFactory(MetricSourceFactory delegate, File procRoot) {
+
+        super(delegate);
+
+        this.procRoot = procRoot;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected boolean accepts(Address a) {
+
+        return a instanceof CpuCoresAddress;
+    }
+
+    @Override
+    protected MetricSource build(Address a) throws MetricSourceException {
+
+        if (!CpuCoresReader.isAvailable(procRoot)) {
+
+            throw new MetricSourceException("cannot read per-CPU metrics, " + procRoot + "/stat not available");
+        }
+
+        MetricSource s = new CpuCoresMetricSource((CpuCoresAddress)a, new CpuCoresReader(procRoot),
+                getPropertyFactory());
+
+        log.debug("reading per-CPU metrics from " + procRoot + "/stat for " + a);
+
+        return s;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
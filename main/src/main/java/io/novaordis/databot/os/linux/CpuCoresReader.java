@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Reads the per-CPU "cpuN" lines of /proc/stat into a CpuCoresSnapshot. The file is kept open between reads and is
+ * parsed in place from the reader's own buffer, so a read allocates nothing once the snapshot is large
+ * enough for all cores.
+ *
+ * The CPU lines come first in /proc/stat, so parsing stops at the first line that follows them, and the interrupt
+ * line, which is very long on hosts with many cores, is never scanned.
+ *
+ * Thread safe: reads are serialized.
+ *
+ * @see CpuCoresSnapshot
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CpuCoresReader implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final byte[] CPU = ByteCursor.bytes("cpu");
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if /proc/stat exists and is readable under the given root.
+     */
+    public static boolean isAvailable(File procRoot) {
+
+        return new File(procRoot, "stat").canRead();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    private final ProcFile stat;
+
+    //
+    // replaced by a larger one if /proc/stat outgrows it
+    //
+    private ByteBuffer buffer;
+
+    private final ByteCursor cursor;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CpuCoresReader(File procRoot) {
+
+        if (procRoot == null) {
+
+            throw new IllegalArgumentException("null /proc root");
+        }
+
+        this.procRoot = procRoot;
+        this.stat = new ProcFile(new File(procRoot, "stat"));
+        this.buffer = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+        this.cursor = new ByteCursor();
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public void close() {
+
+        stat.close();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the per-CPU lines of /proc/stat into the snapshot, growing it if more cores came online.
+     *
+     * @exception IOException if /proc/stat cannot be read.
+     * @exception InvalidExecutionOutputException if /proc/stat contains no per-CPU line.
+     */
+    public synchronized void read(CpuCoresSnapshot s) throws IOException, InvalidExecutionOutputException {
+
+        s.timestampNanos = System.nanoTime();
+
+        buffer = stat.read(buffer);
+
+        parseStat(cursor.reset(buffer), s);
+    }
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    @Override
+    public String toString() {
+
+        return "/proc/stat per-CPU reader[" + procRoot + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    static void parseStat(ByteCursor c, CpuCoresSnapshot s) throws InvalidExecutionOutputException {
+
+        int n = 0;
+
+        do {
+
+            if (!c.startsWith(CPU)) {
+
+                //
+                // past the CPU lines
+                //
+
+                break;
+            }
+
+            c.skip(CPU.length);
+
+            int digit = c.peek();
+
+            if (digit < '0' || digit > '9') {
+
+                //
+                // the aggregate "cpu" line
+                //
+
+                continue;
+            }
+
+            s.ensureCapacity(n + 1);
+
+            s.coreIds[n] = (int)c.nextLong();
+
+            int offset = n * LocalOSSnapshot.CPU_FIELD_COUNT;
+
+            //
+            // older kernels expose fewer fields
+            //
+
+            for(int i = 0; i < LocalOSSnapshot.CPU_FIELD_COUNT; i ++) {
+
+                s.ticks[offset + i] = c.atEndOfLine() ? 0L : c.nextLong();
+            }
+
+            n ++;
+        }
+        while(c.nextLine());
+
+        if (n == 0) {
+
+            throw new InvalidExecutionOutputException("no per-CPU lines in /proc/stat");
+        }
+
+        s.coreCount = n;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The per-CPU "cpuN" lines of /proc/stat, in USER_HZ ticks, held in one primitive array and overwritten in place by
+ * CpuCoresReader. The ticks of the core at position i are at i * CPU_FIELD_COUNT, indexed by the LocalOSSnapshot CPU_*
+ * constants. Cores appear in /proc/stat order; offline cores are not listed, so the core IDs are kept separately.
+ *
+ * The arrays only grow when a snapshot has more cores than any previous one.
+ *
+ * Not thread safe.
+ *
+ * @see CpuCoresReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CpuCoresSnapshot {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int INITIAL_CORE_CAPACITY = 64;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    long timestampNanos;
+
+    int coreCount;
+
+    //
+    // the N in "cpuN", by position
+    //
+    int[] coreIds;
+
+    long[] ticks;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CpuCoresSnapshot() {
+
+        this.coreIds = new int[INITIAL_CORE_CAPACITY];
+        this.ticks = new long[INITIAL_CORE_CAPACITY * LocalOSSnapshot.CPU_FIELD_COUNT];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getTimestampNanos() {
+
+        return timestampNanos;
+    }
+
+    public int getCoreCount() {
+
+        return coreCount;
+    }
+
+    /**
+     * @param position the position of the core in the snapshot, between 0 and getCoreCount() - 1.
+     */
+    public int getCoreId(int position) {
+
+        return coreIds[position];
+    }
+
+    /**
+     * @param field one of the LocalOSSnapshot CPU_* constants.
+     */
+    public long getTicks(int position, int field) {
+
+        return ticks[position * LocalOSSnapshot.CPU_FIELD_COUNT + field];
+    }
+
+    /**
+     * @return the sum of the ticks that make up the total CPU time of the core. Guest time is already included in user
+     * time.
+     */
+    public long getTotalTicks(int position) {
+
+        int offset = position * LocalOSSnapshot.CPU_FIELD_COUNT;
+
+        long total = 0;
+
+        for(int i = LocalOSSnapshot.CPU_USER; i <= LocalOSSnapshot.CPU_STEAL; i ++) {
+
+            total += ticks[offset + i];
+        }
+
+        return total;
+    }
+
+    /**
+     * @return true if both snapshots list the same cores, in the same order.
+     */
+    public boolean hasSameCores(CpuCoresSnapshot s) {
+
+        if (coreCount != s.coreCount) {
+
+            return false;
+        }
+
+        for(int i = 0; i < coreCount; i ++) {
+
+            if (coreIds[i] != s.coreIds[i]) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies the content of the given snapshot into this one, without allocating unless the given snapshot has more
+     * cores than this one can hold.
+     */
+    public void copyFrom(CpuCoresSnapshot s) {
+
+        ensureCapacity(s.coreCount);
+
+        this.timestampNanos = s.timestampNanos;
+        this.coreCount = s.coreCount;
+        System.arraycopy(s.coreIds, 0, coreIds, 0, s.coreCount);
+        System.arraycopy(s.ticks, 0, ticks, 0, s.coreCount * LocalOSSnapshot.CPU_FIELD_COUNT);
+    }
+
+    public void clear() {
+
+        this.timestampNanos = 0L;
+        this.coreCount = 0;
+    }
+
+    @Override
+    public String toString() {
+
+        return "CPU cores snapshot[" + coreCount + " core(s)]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Makes room for the given number of cores, keeping the content.
+     */
+    void ensureCapacity(int cores) {
+
+        if (cores <= coreIds.length) {
+
+            return;
+        }
+
+        int capacity = Math.max(cores, coreIds.length * 2);
+
+        int[] ids = new int[capacity];
+        System.arraycopy(coreIds, 0, ids, 0, coreIds.length);
+        coreIds = ids;
+
+        long[] t = new long[capacity * LocalOSSnapshot.CPU_FIELD_COUNT];
+        System.arraycopy(ticks, 0, t, 0, ticks.length);
+        ticks = t;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
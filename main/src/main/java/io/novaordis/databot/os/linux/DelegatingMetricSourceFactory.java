@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The factories of the Linux sources are stacked on top of the generic factory, each one claiming its own address
+ * type. This class implements the stacking: buildMetricSource() builds the source when the subclass accepts the
+ * address, and passes the address down to the wrapped factory otherwise.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public abstract class DelegatingMetricSourceFactory implements MetricSourceFactory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(DelegatingMetricSourceFactory.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final MetricSourceFactory delegate;
+
+    private final PropertyFactory propertyFactory;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    protected DelegatingMetricSourceFactory(MetricSourceFactory delegate) {
+
+        if (delegate == null) {
+
+            throw new IllegalArgumentException("null delegate factory");
+        }
+
+        this.delegate = delegate;
+        this.propertyFactory = new PropertyFactory();
+    }
+
+    // MetricSourceFactory implementation ------------------------------------------------------------------------------
+
+    @Override
+    public MetricSource buildMetricSource(Address a) throws MetricSourceException {
+
+        if (!accepts(a)) {
+
+            return delegate.buildMetricSource(a);
+        }
+
+        return build(a);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public MetricSourceFactory getDelegate() {
+
+        return delegate;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if this factory builds the source for the given address, false if the address goes to the wrapped
+     * factory.
+     */
+    protected abstract boolean accepts(Address a);
+
+    /**
+     * Only invoked for accepted addresses.
+     *
+     * @exception MetricSourceException if the source cannot be built on this host, for example because the files it
+     * reads are not available.
+     */
+    protected abstract MetricSource build(Address a) throws MetricSourceException;
+
+    /**
+     * The property factory shared by all sources built by this factory.
+     */
+    protected PropertyFactory getPropertyFactory() {
+
+        return propertyFactory;
+    }
+
+    /**
+     * @return the source the wrapped factory builds for the address, to be used as fallback for the metrics the Linux
+     * source cannot read, or null if the wrapped factory cannot build one.
+     */
+    protected MetricSource buildFallback(Address a) {
+
+        try {
+
+            return delegate.buildMetricSource(a);
+        }
+        catch(MetricSourceException e) {
+
+            log.debug("no fallback source for " + a + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
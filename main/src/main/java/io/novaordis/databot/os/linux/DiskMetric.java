@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+
+/**
+ * The metrics a DisksMetricSource serves, by metric definition ID.
+ *
+ * DEVICE metrics produce one property per block device, computed from the /proc/diskstats counter deltas between the
+ * last two samples. MOUNT metrics produce one property per mounted file system, read from the file system itself.
+ *
+ * @see DisksMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public enum DiskMetric {
+
+    READS_PER_SECOND("ReadsPerSecond", "Device Reads per Second", Kind.DEVICE),
+    WRITES_PER_SECOND("WritesPerSecond", "Device Writes per Second", Kind.DEVICE),
+    READ_BYTES_PER_SECOND("ReadBytesPerSecond", "Device Bytes Read per Second", Kind.DEVICE),
+    WRITE_BYTES_PER_SECOND("WriteBytesPerSecond", "Device Bytes Written per Second", Kind.DEVICE),
+    READ_AWAIT("ReadAwait", "Device Average Read Time (ms)", Kind.DEVICE),
+    WRITE_AWAIT("WriteAwait", "Device Average Write Time (ms)", Kind.DEVICE),
+    AWAIT("Await", "Device Average I/O Time (ms)", Kind.DEVICE),
+    QUEUE_DEPTH("QueueDepth", "Device Average Queue Depth", Kind.DEVICE),
+    UTILIZATION("Utilization", "Device Utilization Percentage", Kind.DEVICE),
+    IN_FLIGHT("InFlight", "Device I/O Requests in Flight", Kind.DEVICE),
+
+    MOUNT_TOTAL_SPACE("MountTotalSpace", "File System Size", Kind.MOUNT),
+    MOUNT_USED_SPACE("MountUsedSpace", "File System Used Space", Kind.MOUNT),
+    MOUNT_AVAILABLE_SPACE("MountAvailableSpace", "File System Available Space", Kind.MOUNT),
+    MOUNT_USED_PERCENTAGE("MountUsedPercentage", "File System Used Percentage", Kind.MOUNT);
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static DiskMetric fromId(String id) {
+
+        for(DiskMetric m: values()) {
+
+            if (m.id.equals(id)) {
+
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String id;
+
+    private final String label;
+
+    private final Kind kind;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    DiskMetric(String id, String label, Kind kind) {
+
+        this.id = id;
+        this.label = label;
+        this.kind = kind;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getId() {
+
+        return id;
+    }
+
+    public String getLabel() {
+
+        return label;
+    }
+
+    public Kind getKind() {
+
+        return kind;
+    }
+
+    public Class getType() {
+
+        return this == IN_FLIGHT || isSpace() ? Long.class : Double.class;
+    }
+
+    /**
+     * @return the unit of the value, or null for dimensionless values.
+     */
+    public MeasureUnit getBaseUnit() {
+
+        return isSpace() ? MemoryMeasureUnit.BYTE : null;
+    }
+
+    @Override
+    public String toString() {
+
+        return id;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private boolean isSpace() {
+
+        return this == MOUNT_TOTAL_SPACE || this == MOUNT_USED_SPACE || this == MOUNT_AVAILABLE_SPACE;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public enum Kind {
+
+        /**
+         * One value per block device.
+         */
+        DEVICE,
+
+        /**
+         * One value per mounted file system.
+         */
+        MOUNT
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionBase;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+/**
+ * The definition of a block device or mounted file system metric, declared as:
+ *
+ * <pre>
+ * disks/<i>metric</i>
+ * disks:<i>filters</i>/<i>metric</i>
+ * </pre>
+ *
+ * for example "disks/Await", which reports the average I/O time of every block device, or
+ * "disks:no-partitions,no-loop/Utilization", which only reports the whole disks that are not loop devices.
+ *
+ * @see DisksAddress
+ * @see DiskMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DiskMetricDefinition extends MetricDefinitionBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the declaration is a block device metric declaration, which may still be invalid.
+     */
+    public static boolean isDiskMetricDeclaration(String declaration) {
+
+        return declaration != null &&
+                (declaration.startsWith(DisksAddress.PROTOCOL + "/") ||
+                        declaration.startsWith(DisksAddress.PROTOCOL + ":"));
+    }
+
+    public static DiskMetricDefinition parse(PropertyFactory pf, String declaration)
+            throws MetricDefinitionException {
+
+        if (!isDiskMetricDeclaration(declaration)) {
+
+            throw new MetricDefinitionException("not a block device metric declaration: \"" + declaration + "\"");
+        }
+
+        int i = declaration.indexOf('/');
+
+        if (i == -1) {
+
+            throw new MetricDefinitionException("missing block device metric: \"" + declaration + "\"");
+        }
+
+        String id = declaration.substring(i + 1);
+
+        DiskMetric metric = DiskMetric.fromId(id);
+
+        if (metric == null) {
+
+            throw new MetricDefinitionException("unknown block device metric \"" + id + "\"");
+        }
+
+        String filters = i == DisksAddress.PROTOCOL.length() ?
+                null : declaration.substring(DisksAddress.PROTOCOL.length() + 1, i);
+
+        DisksAddress address;
+
+        try {
+
+            address = DisksAddress.parse(filters);
+        }
+        catch(IllegalArgumentException e) {
+
+            throw new MetricDefinitionException(e.getMessage());
+        }
+
+        return new DiskMetricDefinition(pf, address, metric);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final DiskMetric metric;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public DiskMetricDefinition(PropertyFactory pf, DisksAddress address, DiskMetric metric) {
+
+        super(pf, address);
+
+        if (metric == null) {
+
+            throw new IllegalArgumentException("null metric");
+        }
+
+        this.metric = metric;
+    }
+
+    // MetricDefinition implementation ---------------------------------------------------------------------------------
+
+    @Override
+    public String getId() {
+
+        return metric.getId();
+    }
+
+    @Override
+    public String getSimpleLabel() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public MeasureUnit getBaseUnit() {
+
+        return metric.getBaseUnit();
+    }
+
+    @Override
+    public String getDescription() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public Class getType() {
+
+        return metric.getType();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public DiskMetric getMetric() {
+
+        return metric;
+    }
+
+    @Override
+    public String toString() {
+
+        return getMetricSourceAddress() + "/" + metric.getId();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
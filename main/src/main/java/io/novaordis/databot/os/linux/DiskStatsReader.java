@@ -0,0 +1,591 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Reads /proc/diskstats, and the space of the file systems listed in /proc/mounts, into a DiskStatsSnapshot.
+ *
+ * Both files are kept open and read into the reader's own reused direct buffer. Device names are matched against a
+ * registry of the devices seen so far directly in the buffer, so a String is only created when a new device appears,
+ * and the filters are only evaluated then. /proc/mounts is only parsed again when its content changes. The space of a
+ * file system is read with the statvfs() equivalent java.nio FileStore queries, and the FileStore instances are
+ * cached with the mount table.
+ *
+ * @see DiskStatsSnapshot
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DiskStatsReader implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(DiskStatsReader.class);
+
+    public static final String DEFAULT_SYS_BLOCK = "/sys/block";
+
+    private static final int INITIAL_REGISTRY_CAPACITY = 64;
+
+    private static final byte[] DEV = ByteCursor.bytes("/dev/");
+
+    private static final byte[] DEV_LOOP = ByteCursor.bytes("/dev/loop");
+
+    private static final String LOOP = "loop";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if /proc/diskstats exists and is readable under the given root.
+     */
+    public static boolean isAvailable(File procRoot) {
+
+        return new File(procRoot, "diskstats").canRead();
+    }
+
+    /**
+     * Decodes the octal escapes /proc/mounts uses for spaces, tabs, new lines and backslashes in mount points.
+     */
+    static String decodeMountPoint(String s) {
+
+        if (s.indexOf('\\') == -1) {
+
+            return s;
+        }
+
+        StringBuilder sb = new StringBuilder(s.length());
+
+        for(int i = 0; i < s.length(); i ++) {
+
+            char c = s.charAt(i);
+
+            if (c == '\\' && i + 3 < s.length() && isOctal(s, i + 1)) {
+
+                sb.append((char)Integer.parseInt(s.substring(i + 1, i + 4), 8));
+                i += 3;
+                continue;
+            }
+
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
+
+    private static boolean isOctal(String s, int from) {
+
+        for(int i = from; i < from + 3; i ++) {
+
+            char c = s.charAt(i);
+
+            if (c < '0' || c > '7') {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    private final File sysBlock;
+
+    private final boolean noPartitions;
+
+    private final boolean noLoop;
+
+    private final ProcFile diskstats;
+
+    private final ProcFile mounts;
+
+    //
+    // shared by the two files, each is parsed before the next is read; replaced by a larger one if a file outgrows it
+    //
+    private ByteBuffer buffer;
+
+    private final ByteCursor cursor;
+
+    //
+    // the device registry, only grows
+    //
+    private int deviceCount;
+    private String[] deviceNames;
+    private byte[][] deviceNameBytes;
+    private boolean[] excluded;
+
+    //
+    // the mount table, rebuilt when /proc/mounts changes
+    //
+    private int mountCount;
+    private String[] mountPoints;
+    private FileStore[] fileStores;
+    private int mountGeneration;
+    private int mountsHash;
+    private int mountsLength;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param sysBlock the /sys/block directory, used to tell partitions from whole disks when partitions are
+     *                 excluded. If it does not exist, all devices are considered whole disks.
+     */
+    public DiskStatsReader(File procRoot, File sysBlock, boolean noPartitions, boolean noLoop) {
+
+        if (procRoot == null) {
+
+            throw new IllegalArgumentException("null /proc root");
+        }
+
+        if (sysBlock == null) {
+
+            throw new IllegalArgumentException("null /sys/block directory");
+        }
+
+        this.procRoot = procRoot;
+        this.sysBlock = sysBlock;
+        this.noPartitions = noPartitions;
+        this.noLoop = noLoop;
+        this.diskstats = new ProcFile(new File(procRoot, "diskstats"));
+        this.mounts = new ProcFile(new File(procRoot, "mounts"));
+        this.buffer = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+        this.cursor = new ByteCursor();
+        this.deviceNames = new String[INITIAL_REGISTRY_CAPACITY];
+        this.deviceNameBytes = new byte[INITIAL_REGISTRY_CAPACITY][];
+        this.excluded = new boolean[INITIAL_REGISTRY_CAPACITY];
+        this.mountPoints = new String[0];
+        this.fileStores = new FileStore[0];
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public void close() {
+
+        diskstats.close();
+        mounts.close();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces the snapshot device counters, and its mounts if /proc/mounts changed since the last read.
+     *
+     * @exception IOException if /proc/diskstats cannot be read. An unreadable /proc/mounts only leaves the snapshot
+     * without mounts.
+     * @exception InvalidExecutionOutputException if /proc/diskstats cannot be parsed.
+     */
+    public synchronized void read(DiskStatsSnapshot s) throws IOException, InvalidExecutionOutputException {
+
+        s.timestampNanos = System.nanoTime();
+
+        buffer = diskstats.read(buffer);
+        parseDiskStats(buffer, s);
+
+        try {
+
+            buffer = mounts.read(buffer);
+            readMounts(buffer, s);
+        }
+        catch(IOException e) {
+
+            log.debug("failed to read " + mounts + ": " + e);
+
+            s.mountCount = 0;
+        }
+    }
+
+    /**
+     * @param index the registry index, as returned by DiskStatsSnapshot.getDevice().
+     */
+    public synchronized String getDeviceName(int index) {
+
+        return deviceNames[index];
+    }
+
+    /**
+     * @param index the mount table index, as returned by DiskStatsSnapshot.getMount(), valid for the snapshot's mount
+     *              generation.
+     */
+    public synchronized String getMountPoint(int index) {
+
+        return mountPoints[index];
+    }
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    public File getSysBlock() {
+
+        return sysBlock;
+    }
+
+    @Override
+    public String toString() {
+
+        return "/proc/diskstats reader[" + procRoot + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * " 8  0 sda 4217 1011 389354 2112 10372 7861 483218 12830 0 7248 14943 ..."
+     */
+    void parseDiskStats(ByteBuffer b, DiskStatsSnapshot s) throws InvalidExecutionOutputException {
+
+        ByteCursor c = cursor.reset(b);
+
+        int n = 0;
+
+        int hint = 0;
+
+        while(c.hasRemaining()) {
+
+            c.skipSpaces();
+
+            if (c.atEndOfLine()) {
+
+                c.nextLine();
+                continue;
+            }
+
+            //
+            // major, minor
+            //
+
+            c.nextLong();
+            c.nextLong();
+
+            c.skipSpaces();
+            int start = c.position();
+            c.skipToken();
+            int end = c.position();
+
+            if (end == start) {
+
+                throw new InvalidExecutionOutputException("missing device name at offset " + start);
+            }
+
+            int device = lookup(b, start, end, hint);
+
+            hint = device + 1;
+
+            if (excluded[device]) {
+
+                c.nextLine();
+                continue;
+            }
+
+            s.ensureDeviceCapacity(n + 1);
+
+            s.devices[n] = device;
+
+            int offset = n * DiskStatsSnapshot.FIELD_COUNT;
+
+            //
+            // older kernels expose fewer fields, newer ones more (discards, flushes), which are ignored
+            //
+
+            for(int i = 0; i < DiskStatsSnapshot.FIELD_COUNT; i ++) {
+
+                s.counters[offset + i] = c.atEndOfLine() ? 0L : c.nextLong();
+            }
+
+            n ++;
+
+            c.nextLine();
+        }
+
+        s.deviceCount = n;
+    }
+
+    /**
+     * "/dev/sda1 / ext4 rw,relatime 0 0"
+     */
+    void readMounts(ByteBuffer b, DiskStatsSnapshot s) {
+
+        int length = b.remaining();
+        int hash = 1;
+
+        for(int i = b.position(); i < b.limit(); i ++) {
+
+            hash = 31 * hash + b.get(i);
+        }
+
+        if (hash != mountsHash || length != mountsLength || mountGeneration == 0) {
+
+            parseMounts(b);
+
+            mountsHash = hash;
+            mountsLength = length;
+            mountGeneration ++;
+        }
+
+        s.mountGeneration = mountGeneration;
+        s.ensureMountCapacity(mountCount);
+
+        int n = 0;
+
+        for(int i = 0; i < mountCount; i ++) {
+
+            FileStore fs = fileStores[i];
+
+            try {
+
+                long total = fs.getTotalSpace();
+                long free = fs.getUnallocatedSpace();
+                long available = fs.getUsableSpace();
+
+                int offset = n * DiskStatsSnapshot.SPACE_FIELD_COUNT;
+
+                s.mounts[n] = i;
+                s.space[offset + DiskStatsSnapshot.TOTAL_SPACE] = total;
+                s.space[offset + DiskStatsSnapshot.USED_SPACE] = total - free;
+                s.space[offset + DiskStatsSnapshot.AVAILABLE_SPACE] = available;
+
+                n ++;
+            }
+            catch(IOException e) {
+
+                //
+                // unmounted since the table was built, it will be gone next time /proc/mounts changes
+                //
+
+                log.debug("failed to read the space of " + mountPoints[i] + ": " + e);
+            }
+        }
+
+        s.mountCount = n;
+    }
+
+    synchronized int getDeviceRegistrySize() {
+
+        return deviceCount;
+    }
+
+    synchronized int getMountTableSize() {
+
+        return mountCount;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the registry index of the device whose name is in the buffer between start and end, registering it if
+     * seen for the first time. The devices are usually listed in the same order every time, so the hint (the entry
+     * following the previous match) is tried first.
+     */
+    private int lookup(ByteBuffer b, int start, int end, int hint) {
+
+        if (hint < deviceCount && matches(deviceNameBytes[hint], b, start, end)) {
+
+            return hint;
+        }
+
+        for(int i = 0; i < deviceCount; i ++) {
+
+            if (matches(deviceNameBytes[i], b, start, end)) {
+
+                return i;
+            }
+        }
+
+        byte[] name = new byte[end - start];
+
+        for(int i = 0; i < name.length; i ++) {
+
+            name[i] = b.get(start + i);
+        }
+
+        return register(name);
+    }
+
+    private static boolean matches(byte[] name, ByteBuffer b, int start, int end) {
+
+        if (name.length != end - start) {
+
+            return false;
+        }
+
+        for(int i = 0; i < name.length; i ++) {
+
+            if (name[i] != b.get(start + i)) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private synchronized int register(byte[] nameBytes) {
+
+        if (deviceCount == deviceNames.length) {
+
+            int capacity = deviceCount * 2;
+
+            String[] names = new String[capacity];
+            System.arraycopy(deviceNames, 0, names, 0, deviceCount);
+            deviceNames = names;
+
+            byte[][] bytes = new byte[capacity][];
+            System.arraycopy(deviceNameBytes, 0, bytes, 0, deviceCount);
+            deviceNameBytes = bytes;
+
+            boolean[] e = new boolean[capacity];
+            System.arraycopy(excluded, 0, e, 0, deviceCount);
+            excluded = e;
+        }
+
+        String name = new String(nameBytes);
+
+        deviceNames[deviceCount] = name;
+        deviceNameBytes[deviceCount] = nameBytes;
+        excluded[deviceCount] = (noLoop && name.startsWith(LOOP)) || (noPartitions && isPartition(name));
+
+        log.debug("new block device " + name + (excluded[deviceCount] ? ", filtered out" : ""));
+
+        return deviceCount ++;
+    }
+
+    /**
+     * Whole disks have an entry in /sys/block, partitions don't. A "/" in the device name becomes a "!" in /sys.
+     */
+    private boolean isPartition(String name) {
+
+        return sysBlock.isDirectory() && !new File(sysBlock, name.replace('/', '!')).exists();
+    }
+
+    private void parseMounts(ByteBuffer b) {
+
+        ByteCursor c = cursor.reset(b);
+
+        String[] points = new String[16];
+        FileStore[] stores = new FileStore[16];
+        int n = 0;
+
+        while(c.hasRemaining()) {
+
+            c.skipSpaces();
+
+            //
+            // only block device backed file systems
+            //
+
+            if (!c.startsWith(DEV) || (noLoop && c.startsWith(DEV_LOOP))) {
+
+                c.nextLine();
+                continue;
+            }
+
+            c.skipToken();
+            c.skipSpaces();
+
+            int start = c.position();
+            c.skipToken();
+            int end = c.position();
+
+            c.nextLine();
+
+            if (end == start) {
+
+                continue;
+            }
+
+            byte[] bytes = new byte[end - start];
+
+            for(int i = 0; i < bytes.length; i ++) {
+
+                bytes[i] = b.get(start + i);
+            }
+
+            String mountPoint = decodeMountPoint(new String(bytes));
+
+            FileStore fs;
+
+            try {
+
+                fs = Files.getFileStore(Paths.get(mountPoint));
+            }
+            catch(Exception e) {
+
+                log.debug("cannot access the file system mounted on " + mountPoint + ": " + e);
+                continue;
+            }
+
+            //
+            // a file system mounted over another on the same mount point hides it
+            //
+
+            int i = 0;
+
+            while(i < n && !points[i].equals(mountPoint)) {
+
+                i ++;
+            }
+
+            if (i == n) {
+
+                if (n == points.length) {
+
+                    String[] p = new String[n * 2];
+                    System.arraycopy(points, 0, p, 0, n);
+                    points = p;
+
+                    FileStore[] f = new FileStore[n * 2];
+                    System.arraycopy(stores, 0, f, 0, n);
+                    stores = f;
+                }
+
+                n ++;
+            }
+
+            points[i] = mountPoint;
+            stores[i] = fs;
+        }
+
+        synchronized (this) {
+
+            mountPoints = points;
+            fileStores = stores;
+            mountCount = n;
+        }
+
+        log.debug(n + " block device file system(s) mounted");
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The /proc/diskstats counters of the devices that pass the reader's filters, and the space of the mounted file
+ * systems, held in primitive arrays and overwritten in place by DiskStatsReader.
+ *
+ * A device is identified by its index in the reader's device registry, which does not change for the lifetime of the
+ * reader, so counters can be matched across snapshots even if devices come and go. The counters of the device at
+ * position i are at i * FIELD_COUNT, indexed by the field constants below. Older kernels expose fewer fields; the
+ * missing ones are zero.
+ *
+ * Mounted file systems are identified the same way, by their index in the reader's mount table, which is rebuilt
+ * when /proc/mounts changes; the mount generation tells when that happened.
+ *
+ * The arrays only grow when a snapshot has more devices or mounts than any previous one.
+ *
+ * Not thread safe.
+ *
+ * @see DiskStatsReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DiskStatsSnapshot {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int INITIAL_DEVICE_CAPACITY = 64;
+
+    public static final int INITIAL_MOUNT_CAPACITY = 32;
+
+    //
+    // the /proc/diskstats fields that follow the major and minor numbers and the device name
+    //
+    public static final int READS = 0;
+    public static final int READS_MERGED = 1;
+    public static final int SECTORS_READ = 2;
+    public static final int READ_MS = 3;
+    public static final int WRITES = 4;
+    public static final int WRITES_MERGED = 5;
+    public static final int SECTORS_WRITTEN = 6;
+    public static final int WRITE_MS = 7;
+    public static final int IN_FLIGHT = 8;
+    public static final int IO_MS = 9;
+    public static final int WEIGHTED_IO_MS = 10;
+
+    public static final int FIELD_COUNT = 11;
+
+    //
+    // the space fields, in bytes
+    //
+    public static final int TOTAL_SPACE = 0;
+    public static final int USED_SPACE = 1;
+    public static final int AVAILABLE_SPACE = 2;
+
+    public static final int SPACE_FIELD_COUNT = 3;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    long timestampNanos;
+
+    int deviceCount;
+
+    //
+    // the registry index, by position
+    //
+    int[] devices;
+
+    long[] counters;
+
+    int mountCount;
+
+    //
+    // the index in the reader's mount table, by position
+    //
+    int[] mounts;
+
+    //
+    // incremented by the reader every time the mount table changes
+    //
+    int mountGeneration;
+
+    long[] space;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public DiskStatsSnapshot() {
+
+        this.devices = new int[INITIAL_DEVICE_CAPACITY];
+        this.counters = new long[INITIAL_DEVICE_CAPACITY * FIELD_COUNT];
+        this.mounts = new int[INITIAL_MOUNT_CAPACITY];
+        this.space = new long[INITIAL_MOUNT_CAPACITY * SPACE_FIELD_COUNT];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getTimestampNanos() {
+
+        return timestampNanos;
+    }
+
+    public int getDeviceCount() {
+
+        return deviceCount;
+    }
+
+    /**
+     * @param position the position of the device in the snapshot, between 0 and getDeviceCount() - 1.
+     *
+     * @return the index of the device in the reader's registry.
+     */
+    public int getDevice(int position) {
+
+        return devices[position];
+    }
+
+    /**
+     * @param field one of the field constants.
+     */
+    public long getCounter(int position, int field) {
+
+        return counters[position * FIELD_COUNT + field];
+    }
+
+    public int getMountCount() {
+
+        return mountCount;
+    }
+
+    /**
+     * @return the index of the mounted file system in the reader's mount table.
+     */
+    public int getMount(int position) {
+
+        return mounts[position];
+    }
+
+    public int getMountGeneration() {
+
+        return mountGeneration;
+    }
+
+    /**
+     * @param field one of TOTAL_SPACE, USED_SPACE or AVAILABLE_SPACE.
+     */
+    public long getSpace(int position, int field) {
+
+        return space[position * SPACE_FIELD_COUNT + field];
+    }
+
+    public void clear() {
+
+        this.timestampNanos = 0L;
+        this.deviceCount = 0;
+        this.mountCount = 0;
+    }
+
+    @Override
+    public String toString() {
+
+        return "disk stats snapshot[" + deviceCount + " device(s), " + mountCount + " mount(s)]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Makes room for the given number of devices, keeping the content.
+     */
+    void ensureDeviceCapacity(int count) {
+
+        if (count <= devices.length) {
+
+            return;
+        }
+
+        int capacity = Math.max(count, devices.length * 2);
+
+        int[] d = new int[capacity];
+        System.arraycopy(devices, 0, d, 0, deviceCount);
+        devices = d;
+
+        long[] c = new long[capacity * FIELD_COUNT];
+        System.arraycopy(counters, 0, c, 0, deviceCount * FIELD_COUNT);
+        counters = c;
+    }
+
+    /**
+     * Makes room for the given number of mounts. The content is not kept, the space is always read in full.
+     */
+    void ensureMountCapacity(int count) {
+
+        if (count <= mounts.length) {
+
+            return;
+        }
+
+        int capacity = Math.max(count, mounts.length * 2);
+
+        mounts = new int[capacity];
+        space = new long[capacity * SPACE_FIELD_COUNT];
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
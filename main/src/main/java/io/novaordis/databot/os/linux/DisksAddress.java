@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The address of the local block device source: "disks", optionally followed by a colon and a comma-separated list of
+ * device filters:
+ *
+ * <pre>
+ * disks
+ * disks:no-partitions
+ * disks:no-partitions,no-loop
+ * </pre>
+ *
+ * "no-partitions" skips the partitions, so only whole disks are reported, and "no-loop" skips the loop devices, and
+ * the file systems mounted from them. Two addresses are equal if they have the same filters, so all the metrics
+ * declared with the same filters are collected by the same source, with one read of /proc/diskstats.
+ *
+ * Immutable and thread safe.
+ *
+ * @see DisksMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DisksAddress implements Address {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PROTOCOL = "disks";
+
+    public static final String NO_PARTITIONS = "no-partitions";
+
+    public static final String NO_LOOP = "no-loop";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param filters the comma-separated filter list that follows "disks:", or null for no filters.
+     *
+     * @exception IllegalArgumentException on unknown filters.
+     */
+    public static DisksAddress parse(String filters) {
+
+        if (filters == null) {
+
+            return new DisksAddress(false, false);
+        }
+
+        boolean noPartitions = false;
+        boolean noLoop = false;
+
+        for(String f: filters.split(",")) {
+
+            f = f.trim();
+
+            if (NO_PARTITIONS.equals(f)) {
+
+                noPartitions = true;
+            }
+            else if (NO_LOOP.equals(f)) {
+
+                noLoop = true;
+            }
+            else {
+
+                throw new IllegalArgumentException(
+                        "unknown device filter \"" + f + "\", expecting " + NO_PARTITIONS + " or " + NO_LOOP);
+            }
+        }
+
+        return new DisksAddress(noPartitions, noLoop);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final boolean noPartitions;
+
+    private final boolean noLoop;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public DisksAddress() {
+
+        this(false, false);
+    }
+
+    public DisksAddress(boolean noPartitions, boolean noLoop) {
+
+        this.noPartitions = noPartitions;
+        this.noLoop = noLoop;
+    }
+
+    // Address implementation ------------------------------------------------------------------------------------------
+
+    @Override
+    public String getLiteral() {
+
+        if (!noPartitions && !noLoop) {
+
+            return PROTOCOL;
+        }
+
+        return PROTOCOL + ":" +
+                (noPartitions ? NO_PARTITIONS : "") + (noPartitions && noLoop ? "," : "") + (noLoop ? NO_LOOP : "");
+    }
+
+    @Override
+    public String getProtocol() {
+
+        return PROTOCOL;
+    }
+
+    /**
+     * @return null, the devices are always local.
+     */
+    @Override
+    public String getHost() {
+
+        return null;
+    }
+
+    @Override
+    public Integer getPort() {
+
+        return null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public boolean isNoPartitions() {
+
+        return noPartitions;
+    }
+
+    public boolean isNoLoop() {
+
+        return noLoop;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (!(o instanceof DisksAddress)) {
+
+            return false;
+        }
+
+        DisksAddress that = (DisksAddress)o;
+
+        return noPartitions == that.noPartitions && noLoop == that.noLoop;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return PROTOCOL.hashCode() + (noPartitions ? 1 : 0) + (noLoop ? 2 : 0);
+    }
+
+    @Override
+    public String toString() {
+
+        return getLiteral();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
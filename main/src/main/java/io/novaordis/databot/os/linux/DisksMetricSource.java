@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * Block device I/O and mounted file system space, read from /proc/diskstats and the file systems listed in
+ * /proc/mounts. A metric produces one property per device ("Await[sda]") or per mount point ("MountUsedSpace[/var]").
+ *
+ * Rates, average service times ("await"), queue depth and utilization are computed from the counter deltas between
+ * the last two readings of the same device, over the time elapsed between them, the same way iostat does. A device
+ * read for the first time does not produce interval-based values, only its in-flight request count.
+ *
+ * @see DiskStatsReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DisksMetricSource extends LinuxMetricSourceBase<DisksAddress, DiskMetric> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int F = DiskStatsSnapshot.FIELD_COUNT;
+
+    public static final int SECTOR_SIZE = 512;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the value of an interval-based device metric, given the counter deltas of the device at the given offset
+     * and the length of the interval.
+     */
+    static double intervalValue(DiskMetric m, long[] deltas, int offset, double seconds) {
+
+        switch(m) {
+
+            case READS_PER_SECOND:
+                return deltas[offset + DiskStatsSnapshot.READS] / seconds;
+
+            case WRITES_PER_SECOND:
+                return deltas[offset + DiskStatsSnapshot.WRITES] / seconds;
+
+            case READ_BYTES_PER_SECOND:
+                return (double)deltas[offset + DiskStatsSnapshot.SECTORS_READ] * SECTOR_SIZE / seconds;
+
+            case WRITE_BYTES_PER_SECOND:
+                return (double)deltas[offset + DiskStatsSnapshot.SECTORS_WRITTEN] * SECTOR_SIZE / seconds;
+
+            case READ_AWAIT:
+                return average(deltas[offset + DiskStatsSnapshot.READ_MS], deltas[offset + DiskStatsSnapshot.READS]);
+
+            case WRITE_AWAIT:
+                return average(deltas[offset + DiskStatsSnapshot.WRITE_MS], deltas[offset + DiskStatsSnapshot.WRITES]);
+
+            case AWAIT:
+                return average(
+                        deltas[offset + DiskStatsSnapshot.READ_MS] + deltas[offset + DiskStatsSnapshot.WRITE_MS],
+                        deltas[offset + DiskStatsSnapshot.READS] + deltas[offset + DiskStatsSnapshot.WRITES]);
+
+            case QUEUE_DEPTH:
+                return deltas[offset + DiskStatsSnapshot.WEIGHTED_IO_MS] / (seconds * 1000d);
+
+            case UTILIZATION:
+                return Math.min(100d, 100d * deltas[offset + DiskStatsSnapshot.IO_MS] / (seconds * 1000d));
+
+            default:
+                throw new IllegalArgumentException(m + " is not an interval-based metric");
+        }
+    }
+
+    private static double average(long totalMs, long count) {
+
+        return count == 0 ? 0d : (double)totalMs / count;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final DiskStatsReader reader;
+
+    private final DiskStatsSnapshot current;
+
+    //
+    // by registry index
+    //
+    private final SampleHistory previous;
+
+    //
+    // by position in the current snapshot: the counter deltas, at position * F, and the interval in seconds, 0 if there
+    // is no previous reading
+    //
+    private long[] deltas;
+    private double[] intervals;
+
+    //
+    // by registry index, and by mount table index
+    //
+    private final IndexedPropertyNames deviceNames;
+    private final IndexedPropertyNames mountNames;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public DisksMetricSource(DisksAddress address, DiskStatsReader reader, PropertyFactory propertyFactory) {
+
+        super(address, reader, propertyFactory, DiskMetric::fromId, DiskMetric[]::new, "block device");
+
+        this.reader = reader;
+        this.current = new DiskStatsSnapshot();
+        this.previous = new SampleHistory(F, DiskStatsSnapshot.INITIAL_DEVICE_CAPACITY);
+        this.deltas = new long[DiskStatsSnapshot.INITIAL_DEVICE_CAPACITY * F];
+        this.intervals = new double[DiskStatsSnapshot.INITIAL_DEVICE_CAPACITY];
+        this.deviceNames = new IndexedPropertyNames(DiskMetric.values().length);
+        this.mountNames = new IndexedPropertyNames(DiskMetric.values().length);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected synchronized List<Property> collect(List<MetricDefinition> metricDefinitions, DiskMetric[] metrics)
+            throws MetricSourceException {
+
+        try {
+
+            reader.read(current);
+        }
+        catch(IOException | InvalidExecutionOutputException e) {
+
+            throw new MetricSourceException("failed to read " + reader.getProcRoot() + "/diskstats", e);
+        }
+
+        computeDeltas();
+
+        List<Property> result = new ArrayList<>();
+
+        for(int i = 0; i < metrics.length; i ++) {
+
+            MetricDefinition md = metricDefinitions.get(i);
+            DiskMetric m = metrics[i];
+
+            Class type = md.getType();
+
+            type = type == null ? m.getType() : type;
+
+            if (DiskMetric.Kind.DEVICE.equals(m.getKind())) {
+
+                for(int p = 0; p < current.deviceCount; p ++) {
+
+                    double value;
+
+                    if (DiskMetric.IN_FLIGHT.equals(m)) {
+
+                        value = current.counters[p * F + DiskStatsSnapshot.IN_FLIGHT];
+                    }
+                    else if (intervals[p] > 0) {
+
+                        value = intervalValue(m, deltas, p * F, intervals[p]);
+                    }
+                    else {
+
+                        continue;
+                    }
+
+                    int device = current.devices[p];
+
+                    String name = deviceNames.get(m.ordinal(), md.getId(), device, reader.getDeviceName(device));
+
+                    result.add(getPropertyFactory().createInstance(name, type, toType(value, type), null, null));
+                }
+
+                continue;
+            }
+
+            MeasureUnit unit = md.getBaseUnit();
+
+            unit = unit == null ? m.getBaseUnit() : unit;
+
+            for(int p = 0; p < current.mountCount; p ++) {
+
+                int offset = p * DiskStatsSnapshot.SPACE_FIELD_COUNT;
+
+                long used = current.space[offset + DiskStatsSnapshot.USED_SPACE];
+                long available = current.space[offset + DiskStatsSnapshot.AVAILABLE_SPACE];
+
+                double value;
+
+                switch(m) {
+
+                    case MOUNT_TOTAL_SPACE:
+                        value = toUnit(
+                                current.space[offset + DiskStatsSnapshot.TOTAL_SPACE], unit);
+                        break;
+
+                    case MOUNT_USED_SPACE:
+                        value = toUnit(used, unit);
+                        break;
+
+                    case MOUNT_AVAILABLE_SPACE:
+                        value = toUnit(available, unit);
+                        break;
+
+                    default:
+
+                        //
+                        // the space reserved for root is neither used nor available, like df reports it
+                        //
+
+                        value = used + available == 0 ? 0d : 100d * used / (used + available);
+                }
+
+                int mount = current.mounts[p];
+
+                String name = mountNames.get(m.ordinal(), md.getId(), mount, reader.getMountPoint(mount));
+
+                result.add(getPropertyFactory().createInstance(
+                        name, type, toType(value, type), null, m.getBaseUnit() == null ? null : unit));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    protected void reset() {
+
+        previous.clear();
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Computes the counter deltas of the devices in the current snapshot against their previous readings, then makes
+     * the current readings the previous ones.
+     */
+    private void computeDeltas() {
+
+        int devices = current.deviceCount;
+
+        if (intervals.length < devices) {
+
+            deltas = new long[devices * F];
+            intervals = new double[devices];
+        }
+
+        previous.ensureCapacity(reader.getDeviceRegistrySize());
+
+        for(int p = 0; p < devices; p ++) {
+
+            int device = current.devices[p];
+            int offset = p * F;
+
+            long previousNanos = previous.getNanos(device);
+
+            intervals[p] = previousNanos == 0 ? 0d : Rates.seconds(previousNanos, current.timestampNanos);
+
+            for(int i = 0; i < F; i ++) {
+
+                //
+                // a counter that went back (a device that was removed and re-added, or a 32-bit counter that wrapped)
+                // does not produce negative rates
+                //
+
+                deltas[offset + i] = Math.max(0L, current.counters[offset + i] - previous.get(device, i));
+            }
+
+            previous.record(device, current.counters, offset, current.timestampNanos);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * Claims the "disks" addresses. Besides /proc/diskstats, the reader consults /sys/block to tell partitions from whole
+ * disks when the address excludes partitions; the directory can be relocated for tests.
+ *
+ * @see DisksMetricSource
+ * @see DisksAddress
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DisksMetricSourceFactory extends DelegatingMetricSourceFactory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(DisksMetricSourceFactory.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    private final File sysBlock;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public DisksMetricSourceFactory(MetricSourceFactory delegate, File procRoot) {
+
+        this(delegate, procRoot, new File(DiskStatsReader.DEFAULT_SYS_BLOCK));
+    }
+
+    public DisksMetricSourceFactory(MetricSourceFactory delegate, File procRoot, File sysBlock) {
+
+        super(delegate);
+
+        this.procRoot = procRoot;
+        this.sysBlock = sysBlock;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    public File getSysBlock() {
+
+        return sysBlock;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected boolean accepts(Address a) {
+
+        return a instanceof DisksAddress;
+    }
+
+    @Override
+    protected MetricSource build(Address a) throws MetricSourceException {
+
+        if (!DiskStatsReader.isAvailable(procRoot)) {
+
+            throw new MetricSourceException(
+                    "cannot read block device metrics, " + procRoot + "/diskstats not available");
+        }
+
+        DisksAddress da = (DisksAddress)a;
+
+        DiskStatsReader reader = new DiskStatsReader(procRoot, sysBlock, da.isNoPartitions(), da.isNoLoop());
+
+        MetricSource s = new DisksMetricSource(da, reader, getPropertyFactory());
+
+        log.debug("reading block device metrics from " + procRoot + "/diskstats for " + a);
+
+        return s;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.Arrays;
+
+/**
+ * Caches the "metricId[qualifier]" property names a source reports per registry index, so the names are not
+ * concatenated on every reading. The qualifier - an interface name, a device, a mount point, a cgroup path - is
+ * passed on every lookup and compared with the one the cached name was built for, because registries reuse the
+ * indexes of entities that went away.
+ *
+ * Not thread safe, the owning source serializes access.
+ *
+ * @see LinuxMetricSourceBase#getPropertyName(String, String)
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class IndexedPropertyNames {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // by metric ordinal, then by index: the name, and the qualifier it was built for
+    //
+    private final String[][] names;
+    private final String[][] qualifiers;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param metricCount the number of constants of the source's metric enum.
+     */
+    public IndexedPropertyNames(int metricCount) {
+
+        this.names = new String[metricCount][0];
+        this.qualifiers = new String[metricCount][0];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param metric the metric ordinal.
+     */
+    public String get(int metric, String metricId, int index, String qualifier) {
+
+        String[] n = names[metric];
+        String[] q = qualifiers[metric];
+
+        if (n.length <= index) {
+
+            int capacity = Math.max(index + 1, n.length * 2);
+
+            names[metric] = n = Arrays.copyOf(n, capacity);
+            qualifiers[metric] = q = Arrays.copyOf(q, capacity);
+        }
+
+        if (n[index] == null || !qualifier.equals(q[index])) {
+
+            n[index] = LinuxMetricSourceBase.getPropertyName(metricId, qualifier);
+            q[index] = qualifier;
+        }
+
+        return n[index];
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
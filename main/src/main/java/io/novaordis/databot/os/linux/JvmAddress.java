@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The address of a local JVM metric source: "jvm:" followed by the JVM target literal, for example
+ * "jvm:main:org.jboss.modules.Main" or "jvm:pidfile:/var/run/jboss.pid". Two addresses are equal if their targets are
+ * equal, so all the metrics declared for the same target are collected by the same source.
+ *
+ * @see JvmTarget
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmAddress implements Address {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PROTOCOL = "jvm";
+
+    public static final String PREFIX = PROTOCOL + ":";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final JvmTarget target;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public JvmAddress(JvmTarget target) {
+
+        if (target == null) {
+
+            throw new IllegalArgumentException("null JVM target");
+        }
+
+        this.target = target;
+    }
+
+    // Address implementation ------------------------------------------------------------------------------------------
+
+    @Override
+    public String getLiteral() {
+
+        return PREFIX + target.getLiteral();
+    }
+
+    @Override
+    public String getProtocol() {
+
+        return PROTOCOL;
+    }
+
+    /**
+     * @return null, the JVM is always local.
+     */
+    @Override
+    public String getHost() {
+
+        return null;
+    }
+
+    @Override
+    public Integer getPort() {
+
+        return null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public JvmTarget getTarget() {
+
+        return target;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o instanceof JvmAddress && target.equals(((JvmAddress) o).target);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return target.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return getLiteral();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
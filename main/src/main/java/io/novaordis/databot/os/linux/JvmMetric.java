@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+
+/**
+ * The JVM metrics a JvmMetricSource serves, by metric definition ID, and the JvmSnapshot fields they come from.
+ *
+ * GC, class and safepoint counts are cumulative since the JVM started, and so are the GC and safepoint times, which
+ * are reported in milliseconds. The time percentages are the fraction of the wall clock time spent in GC or at
+ * safepoints between the last two readings; the first reading of a JVM reports the fraction since the JVM started.
+ *
+ * @see JvmMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public enum JvmMetric {
+
+    YOUNG_GC_COUNT("YoungGcCount", "JVM Young GC Count", Kind.COUNT, JvmSnapshot.YOUNG_GC_COUNT),
+    YOUNG_GC_TIME("YoungGcTime", "JVM Young GC Time (ms)", Kind.TIME, JvmSnapshot.YOUNG_GC_TICKS),
+    YOUNG_GC_TIME_PERCENTAGE(
+            "YoungGcTimePercentage", "JVM Young GC Time Percentage", Kind.TIME_PERCENTAGE,
+            JvmSnapshot.YOUNG_GC_TICKS),
+    OLD_GC_COUNT("OldGcCount", "JVM Old GC Count", Kind.COUNT, JvmSnapshot.OLD_GC_COUNT),
+    OLD_GC_TIME("OldGcTime", "JVM Old GC Time (ms)", Kind.TIME, JvmSnapshot.OLD_GC_TICKS),
+    OLD_GC_TIME_PERCENTAGE(
+            "OldGcTimePercentage", "JVM Old GC Time Percentage", Kind.TIME_PERCENTAGE, JvmSnapshot.OLD_GC_TICKS),
+
+    HEAP_USED("HeapUsed", "JVM Heap Used", Kind.MEMORY, JvmSnapshot.HEAP_USED),
+    HEAP_COMMITTED("HeapCommitted", "JVM Heap Committed", Kind.MEMORY, JvmSnapshot.HEAP_COMMITTED),
+    HEAP_MAX("HeapMax", "JVM Maximum Heap", Kind.MEMORY, JvmSnapshot.HEAP_MAX),
+    HEAP_USED_PERCENTAGE(
+            "HeapUsedPercentage", "JVM Heap Used Percentage of Maximum", Kind.PERCENTAGE_OF_MAX,
+            JvmSnapshot.HEAP_USED),
+    EDEN_USED("EdenUsed", "JVM Eden Used", Kind.MEMORY, JvmSnapshot.EDEN_USED),
+    SURVIVOR_USED("SurvivorUsed", "JVM Survivor Spaces Used", Kind.MEMORY, JvmSnapshot.SURVIVOR_USED),
+    OLD_USED("OldUsed", "JVM Old Generation Used", Kind.MEMORY, JvmSnapshot.OLD_USED),
+    METASPACE_USED("MetaspaceUsed", "JVM Metaspace Used", Kind.MEMORY, JvmSnapshot.METASPACE_USED),
+
+    LOADED_CLASSES("LoadedClasses", "JVM Loaded Classes", Kind.COUNT, JvmSnapshot.LOADED_CLASSES),
+    UNLOADED_CLASSES("UnloadedClasses", "JVM Unloaded Classes", Kind.COUNT, JvmSnapshot.UNLOADED_CLASSES),
+
+    SAFEPOINTS("Safepoints", "JVM Safepoint Count", Kind.COUNT, JvmSnapshot.SAFEPOINTS),
+    SAFEPOINT_TIME("SafepointTime", "JVM Safepoint Time (ms)", Kind.TIME, JvmSnapshot.SAFEPOINT_TICKS),
+    SAFEPOINT_TIME_PERCENTAGE(
+            "SafepointTimePercentage", "JVM Safepoint Time Percentage", Kind.TIME_PERCENTAGE,
+            JvmSnapshot.SAFEPOINT_TICKS),
+    SAFEPOINT_SYNC_TIME(
+            "SafepointSyncTime", "JVM Safepoint Synchronization Time (ms)", Kind.TIME,
+            JvmSnapshot.SAFEPOINT_SYNC_TICKS),
+
+    LIVE_THREADS("LiveThreads", "JVM Live Threads", Kind.COUNT, JvmSnapshot.LIVE_THREADS),
+    DAEMON_THREADS("DaemonThreads", "JVM Daemon Threads", Kind.COUNT, JvmSnapshot.DAEMON_THREADS);
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the metric corresponding to the given metric definition ID, or null if there is no such JVM metric.
+     */
+    public static JvmMetric fromId(String id) {
+
+        for(JvmMetric m: values()) {
+
+            if (m.id.equals(id)) {
+
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String id;
+
+    private final String label;
+
+    private final Kind kind;
+
+    //
+    // the JvmSnapshot field
+    //
+    private final int field;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    JvmMetric(String id, String label, Kind kind, int field) {
+
+        this.id = id;
+        this.label = label;
+        this.kind = kind;
+        this.field = field;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getId() {
+
+        return id;
+    }
+
+    public String getLabel() {
+
+        return label;
+    }
+
+    public Kind getKind() {
+
+        return kind;
+    }
+
+    public int getField() {
+
+        return field;
+    }
+
+    public Class getType() {
+
+        return Kind.COUNT.equals(kind) || Kind.MEMORY.equals(kind) ? Long.class : Double.class;
+    }
+
+    /**
+     * @return the unit of the value returned by value(), or null for dimensionless values.
+     */
+    public MeasureUnit getBaseUnit() {
+
+        return Kind.MEMORY.equals(kind) ? MemoryMeasureUnit.BYTE : null;
+    }
+
+    /**
+     * @param previous the previous snapshot of the same JVM instance, or null if the current snapshot is the first.
+     *
+     * @return the value: a count, a number of bytes, a number of milliseconds or a percentage, depending on kind, or a
+     * negative value if the JVM does not publish the counters the value is computed from.
+     */
+    public double value(JvmSnapshot current, JvmSnapshot previous) {
+
+        long v = current.values[field];
+
+        if (v < 0) {
+
+            return -1d;
+        }
+
+        switch(kind) {
+
+            case TIME:
+
+                return current.frequency <= 0 ? -1d : v * 1000d / current.frequency;
+
+            case TIME_PERCENTAGE:
+
+                long ticks = current.values[JvmSnapshot.TICKS];
+
+                if (previous != null) {
+
+                    v -= previous.values[field];
+                    ticks -= previous.values[JvmSnapshot.TICKS];
+                }
+
+                return ticks <= 0 || v < 0 ? -1d : 100d * v / ticks;
+
+            case PERCENTAGE_OF_MAX:
+
+                long max = current.values[JvmSnapshot.HEAP_MAX];
+
+                return max <= 0 ? -1d : 100d * v / max;
+
+            default:
+
+                return v;
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return id;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public enum Kind {
+
+        COUNT,
+
+        /**
+         * In bytes.
+         */
+        MEMORY,
+
+        /**
+         * Cumulative, in milliseconds.
+         */
+        TIME,
+
+        /**
+         * Percentage of the wall clock time, computed from cumulative times.
+         */
+        TIME_PERCENTAGE,
+
+        /**
+         * Percentage of the maximum heap.
+         */
+        PERCENTAGE_OF_MAX
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionBase;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+/**
+ * The definition of a local JVM metric, declared as:
+ *
+ * <pre>
+ * jvm:<i>target</i>/<i>metric</i>
+ * </pre>
+ *
+ * for example "jvm:main:org.jboss.modules.Main/OldGcTimePercentage" or "jvm:pidfile:/var/run/jboss.pid/HeapUsed". The
+ * metric ID follows the last slash, so the target may contain slashes.
+ *
+ * @see JvmTarget
+ * @see JvmMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmMetricDefinition extends MetricDefinitionBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the declaration is a JVM metric declaration, which may still be invalid.
+     */
+    public static boolean isJvmMetricDeclaration(String declaration) {
+
+        return declaration != null && declaration.startsWith(JvmAddress.PREFIX);
+    }
+
+    public static JvmMetricDefinition parse(PropertyFactory pf, String declaration) throws MetricDefinitionException {
+
+        if (!isJvmMetricDeclaration(declaration)) {
+
+            throw new MetricDefinitionException("not a JVM metric declaration: \"" + declaration + "\"");
+        }
+
+        int i = declaration.lastIndexOf('/');
+
+        if (i == -1) {
+
+            throw new MetricDefinitionException("missing JVM metric: \"" + declaration + "\"");
+        }
+
+        String targetLiteral = declaration.substring(JvmAddress.PREFIX.length(), i);
+        String id = declaration.substring(i + 1);
+
+        JvmMetric metric = JvmMetric.fromId(id);
+
+        if (metric == null) {
+
+            throw new MetricDefinitionException("unknown JVM metric \"" + id + "\"");
+        }
+
+        JvmTarget target;
+
+        try {
+
+            target = JvmTarget.parse(targetLiteral);
+        }
+        catch(IllegalArgumentException e) {
+
+            throw new MetricDefinitionException(e.getMessage());
+        }
+
+        if (target == null) {
+
+            throw new MetricDefinitionException(
+                    "invalid JVM target \"" + targetLiteral + "\", expecting " + JvmTarget.MAIN_CLASS_PREFIX + ", " +
+                            ProcessTarget.PID_PREFIX + ", " + ProcessTarget.PID_FILE_PREFIX + " or " +
+                            ProcessTarget.COMMAND_LINE_PREFIX);
+        }
+
+        return new JvmMetricDefinition(pf, new JvmAddress(target), metric);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final JvmMetric metric;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public JvmMetricDefinition(PropertyFactory pf, JvmAddress address, JvmMetric metric) {
+
+        super(pf, address);
+
+        if (metric == null) {
+
+            throw new IllegalArgumentException("null metric");
+        }
+
+        this.metric = metric;
+    }
+
+    // MetricDefinition implementation ---------------------------------------------------------------------------------
+
+    @Override
+    public String getId() {
+
+        return metric.getId();
+    }
+
+    @Override
+    public String getSimpleLabel() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public MeasureUnit getBaseUnit() {
+
+        return metric.getBaseUnit();
+    }
+
+    @Override
+    public String getDescription() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public Class getType() {
+
+        return metric.getType();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public JvmMetric getMetric() {
+
+        return metric;
+    }
+
+    @Override
+    public String toString() {
+
+        return getMetricSourceAddress() + "/" + metric.getId();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * A metric source that serves the JvmMetric metrics of one local JVM - GC counts and times, heap and metaspace usage,
+ * class loading, safepoints and threads - from the performance data the JVM publishes in a memory-mapped file. Unlike
+ * JMX, this needs no connector, and costs the target JVM nothing, so local JVMs can be sampled at high frequency.
+ *
+ * The JVM is identified by a JvmTarget, which is only resolved when the source has no live JVM: on the first
+ * collection, and after the JVM exits, so a restarted JVM is found and mapped again. The pid and the JVM start time
+ * identify a JVM instance; the time percentages are computed from the difference between the current and the previous
+ * snapshot of the same instance.
+ *
+ * The metrics the JVM does not publish - not all garbage collectors maintain all the counters - are not reported.
+ *
+ * @see JvmTarget
+ * @see JvmReader
+ * @see JvmMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmMetricSource extends LinuxMetricSourceBase<JvmAddress, JvmMetric> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(JvmMetricSource.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final JvmReader reader;
+
+    //
+    // never selected by a main class or a command line pattern
+    //
+    private final int selfPid;
+
+    private final JvmSnapshot current;
+    private final JvmSnapshot previous;
+
+    private long resolutionCount;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public JvmMetricSource(JvmAddress address, JvmReader reader, PropertyFactory propertyFactory) {
+
+        super(address, reader, propertyFactory, JvmMetric::fromId, JvmMetric[]::new, "JVM");
+
+        this.reader = reader;
+        this.selfPid = ProcessMetricSource.getSelfPid(reader.getProcRoot());
+        this.current = new JvmSnapshot();
+        this.previous = new JvmSnapshot();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public JvmTarget getTarget() {
+
+        return getAddress().getTarget();
+    }
+
+    /**
+     * @return the pid of the JVM currently read, or -1 if the target was not resolved yet, or the JVM is gone.
+     */
+    public synchronized int getPid() {
+
+        return reader.getPid();
+    }
+
+    /**
+     * @return the number of times the target was resolved, successfully or not.
+     */
+    public synchronized long getResolutionCount() {
+
+        return resolutionCount;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected synchronized List<Property> collect(List<MetricDefinition> metricDefinitions, JvmMetric[] metrics)
+            throws MetricSourceException {
+
+        read();
+
+        JvmSnapshot p = previous.isSameJvm(current) ? previous : null;
+
+        List<Property> result = new ArrayList<>(metrics.length);
+
+        for(int i = 0; i < metrics.length; i ++) {
+
+            MetricDefinition md = metricDefinitions.get(i);
+            JvmMetric m = metrics[i];
+
+            double value = m.value(current, p);
+
+            if (value < 0) {
+
+                continue;
+            }
+
+            MeasureUnit unit = md.getBaseUnit();
+
+            unit = unit == null ? m.getBaseUnit() : unit;
+
+            if (JvmMetric.Kind.MEMORY.equals(m.getKind())) {
+
+                value = toUnit(value, unit);
+            }
+
+            Class type = md.getType();
+
+            type = type == null ? m.getType() : type;
+
+            result.add(getPropertyFactory().createInstance(
+                    md.getId(), type, toType(value, type), null, unit));
+        }
+
+        previous.copyFrom(current);
+
+        return result;
+    }
+
+    @Override
+    protected void reset() {
+
+        previous.clear();
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the current JVM into the current snapshot, resolving the target first if there is no live JVM.
+     */
+    private void read() throws MetricSourceException {
+
+        if (reader.getPid() == -1) {
+
+            open();
+        }
+
+        try {
+
+            try {
+
+                reader.read(current);
+            }
+            catch(IOException e) {
+
+                if (reader.getPid() != -1) {
+
+                    //
+                    // the process is alive, but it does not publish performance data, or not yet
+                    //
+
+                    throw e;
+                }
+
+                log.debug(getAddress() + " JVM is gone: " + e.getMessage());
+
+                previous.clear();
+
+                invalidatePreparedQueries();
+
+                open();
+
+                reader.read(current);
+            }
+        }
+        catch(IOException | InvalidExecutionOutputException e) {
+
+            throw new MetricSourceException("failed to read " + reader, e);
+        }
+    }
+
+    private void open() throws MetricSourceException {
+
+        resolutionCount ++;
+
+        int pid = getAddress().getTarget().resolve(reader.getProcRoot(), reader.getTmpRoot(), selfPid);
+
+        if (pid == -1) {
+
+            throw new MetricSourceException("no JVM found for " + getAddress().getTarget());
+        }
+
+        reader.open(pid);
+
+        log.debug(getAddress() + " resolved to pid " + pid);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * Claims the "jvm" addresses. Both roots are needed: /proc to check that the target process is alive, the temporary
+ * directory to find its hsperfdata file. The target itself is not looked up here, a JVM that is not running yet is
+ * picked up by the source's first successful reading.
+ *
+ * @see JvmMetricSource
+ * @see JvmAddress
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmMetricSourceFactory extends DelegatingMetricSourceFactory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(JvmMetricSourceFactory.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    private final File tmpRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public JvmMetricSourceFactory(MetricSourceFactory delegate, File procRoot, File tmpRoot) {
+
+        super(delegate);
+
+        this.procRoot = procRoot;
+        this.tmpRoot = tmpRoot;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    public File getTmpRoot() {
+
+        return tmpRoot;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected boolean accepts(Address a) {
+
+        return a instanceof JvmAddress;
+    }
+
+    @Override
+    protected MetricSource build(Address a) throws MetricSourceException {
+
+        if (!procRoot.isDirectory()) {
+
+            throw new MetricSourceException("cannot read JVM metrics, " + procRoot + " not available");
+        }
+
+        if (!tmpRoot.isDirectory()) {
+
+            throw new MetricSourceException("cannot read JVM metrics, " + tmpRoot + " not available");
+        }
+
+        MetricSource s = new JvmMetricSource((JvmAddress)a, new JvmReader(procRoot, tmpRoot), getPropertyFactory());
+
+        log.debug("reading JVM metrics from " + tmpRoot + " for " + a);
+
+        return s;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Reads one local JVM from its memory-mapped performance data file (/tmp/hsperfdata_[user]/[pid]) into a JvmSnapshot.
+ * The counters are located once, when the file is mapped, and re-located only if the JVM adds counters, so a read
+ * amounts to a couple of file status checks and a few memory loads. The target JVM does no work at all.
+ *
+ * A JVM that exits deletes its file, and a JVM that is killed leaves it behind. On every read the reader checks that
+ * the process is still there and that the file is still the one that is mapped; if the process is gone, the reader is
+ * closed and the read fails, which is how the owner learns it must resolve its target again. If the pid was re-used by
+ * a new JVM, the new file is mapped in place.
+ *
+ * Not thread safe.
+ *
+ * @see PerfDataFile
+ * @see JvmSnapshot
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmReader implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String DEFAULT_TMP_ROOT = "/tmp";
+
+    public static final String FREQUENCY = "sun.os.hrt.frequency";
+
+    public static final String START_TIME = "sun.rt.createVmBeginTime";
+
+    public static final String GC_POLICY = "sun.gc.policy.name";
+
+    public static final String G1_GC_POLICY = "GarbageFirst";
+
+    //
+    // G1 reports the whole heap as the maximum capacity of each generation
+    //
+    static final String[] G1_HEAP_MAX = new String[] { "sun.gc.generation.1.maxCapacity" };
+
+    //
+    // the counters each JvmSnapshot field is the sum of, indexed by the field constants. Collector 0 is the young
+    // generation collector and collector 1 the old generation (full) collector for all generational collectors;
+    // generation 0 space 0 is eden, spaces 1 and 2 are the survivor spaces. The classes loaded from the shared archive
+    // are counted separately
+    //
+    static final String[][] COUNTERS = new String[JvmSnapshot.FIELD_COUNT][];
+
+    static {
+
+        COUNTERS[JvmSnapshot.TICKS] = new String[] { "sun.os.hrt.ticks" };
+        COUNTERS[JvmSnapshot.YOUNG_GC_COUNT] = new String[] { "sun.gc.collector.0.invocations" };
+        COUNTERS[JvmSnapshot.YOUNG_GC_TICKS] = new String[] { "sun.gc.collector.0.time" };
+        COUNTERS[JvmSnapshot.OLD_GC_COUNT] = new String[] { "sun.gc.collector.1.invocations" };
+        COUNTERS[JvmSnapshot.OLD_GC_TICKS] = new String[] { "sun.gc.collector.1.time" };
+        COUNTERS[JvmSnapshot.HEAP_USED] = new String[] {
+                "sun.gc.generation.0.space.0.used", "sun.gc.generation.0.space.1.used",
+                "sun.gc.generation.0.space.2.used", "sun.gc.generation.1.space.0.used" };
+        COUNTERS[JvmSnapshot.HEAP_COMMITTED] = new String[] {
+                "sun.gc.generation.0.capacity", "sun.gc.generation.1.capacity" };
+        COUNTERS[JvmSnapshot.HEAP_MAX] = new String[] {
+                "sun.gc.generation.0.maxCapacity", "sun.gc.generation.1.maxCapacity" };
+        COUNTERS[JvmSnapshot.EDEN_USED] = new String[] { "sun.gc.generation.0.space.0.used" };
+        COUNTERS[JvmSnapshot.SURVIVOR_USED] = new String[] {
+                "sun.gc.generation.0.space.1.used", "sun.gc.generation.0.space.2.used" };
+        COUNTERS[JvmSnapshot.OLD_USED] = new String[] { "sun.gc.generation.1.space.0.used" };
+        COUNTERS[JvmSnapshot.METASPACE_USED] = new String[] { "sun.gc.metaspace.used" };
+        COUNTERS[JvmSnapshot.LOADED_CLASSES] = new String[] {
+                "java.cls.loadedClasses", "java.cls.sharedLoadedClasses" };
+        COUNTERS[JvmSnapshot.UNLOADED_CLASSES] = new String[] {
+                "java.cls.unloadedClasses", "java.cls.sharedUnloadedClasses" };
+        COUNTERS[JvmSnapshot.SAFEPOINTS] = new String[] { "sun.rt.safepoints" };
+        COUNTERS[JvmSnapshot.SAFEPOINT_TICKS] = new String[] { "sun.rt.safepointTime" };
+        COUNTERS[JvmSnapshot.SAFEPOINT_SYNC_TICKS] = new String[] { "sun.rt.safepointSyncTime" };
+        COUNTERS[JvmSnapshot.LIVE_THREADS] = new String[] { "java.threads.live" };
+        COUNTERS[JvmSnapshot.DAEMON_THREADS] = new String[] { "java.threads.daemon" };
+    }
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the identity of the file (device and inode on Linux), which changes if the file is re-created.
+     *
+     * @exception IOException if the file does not exist.
+     */
+    private static Object getFileKey(File f) throws IOException {
+
+        return Files.readAttributes(f.toPath(), BasicFileAttributes.class).fileKey();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    private final File tmpRoot;
+
+    //
+    // -1 if no JVM is open
+    //
+    private int pid;
+
+    //
+    // null until the first read, and after the JVM deleted its file
+    //
+    private PerfDataFile perfData;
+
+    private Object fileKey;
+
+    //
+    // the offsets of the counters of each field, indexed by the field constants; null for the fields the JVM does not
+    // publish all counters for
+    //
+    private final int[][] offsets;
+
+    private int frequencyOffset;
+
+    private int startTimeOffset;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public JvmReader(File procRoot, File tmpRoot) {
+
+        if (procRoot == null) {
+
+            throw new IllegalArgumentException("null /proc root");
+        }
+
+        if (tmpRoot == null) {
+
+            throw new IllegalArgumentException("null temporary directory");
+        }
+
+        this.procRoot = procRoot;
+        this.tmpRoot = tmpRoot;
+        this.offsets = new int[JvmSnapshot.FIELD_COUNT][];
+        this.pid = -1;
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    /**
+     * Drops the current JVM, if any. The mapping is released when it is garbage collected. The reader can be re-opened
+     * for another JVM.
+     */
+    @Override
+    public void close() {
+
+        perfData = null;
+        fileKey = null;
+        pid = -1;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Switches the reader to the given JVM. The performance data file is mapped lazily, by the first read.
+     */
+    public void open(int pid) {
+
+        if (pid <= 0) {
+
+            throw new IllegalArgumentException("invalid pid " + pid);
+        }
+
+        close();
+
+        this.pid = pid;
+    }
+
+    /**
+     * Copies the current values of the performance counters into the snapshot.
+     *
+     * @exception IOException if the process is gone, in which case the reader is closed, or if the process does not
+     * publish performance data (yet), in which case the reader stays open and the next read tries again.
+     * @exception InvalidExecutionOutputException if the performance data file cannot be decoded.
+     * @exception IllegalStateException if no JVM is open.
+     */
+    public void read(JvmSnapshot s) throws IOException, InvalidExecutionOutputException {
+
+        if (pid == -1) {
+
+            throw new IllegalStateException(this + " not open");
+        }
+
+        if (!new File(procRoot, Integer.toString(pid)).isDirectory()) {
+
+            int gone = pid;
+            close();
+            throw new IOException("process " + gone + " is gone");
+        }
+
+        if (perfData == null) {
+
+            map();
+        }
+        else {
+
+            Object key;
+
+            try {
+
+                key = getFileKey(perfData.getFile());
+            }
+            catch(IOException e) {
+
+                //
+                // the JVM deleted its file, it is exiting
+                //
+
+                close();
+                throw e;
+            }
+
+            if (!Objects.equals(key, fileKey)) {
+
+                //
+                // the pid was re-used by another JVM
+                //
+
+                map();
+            }
+            else if (perfData.reindexIfNeeded()) {
+
+                locateCounters();
+            }
+        }
+
+        s.timestampNanos = System.nanoTime();
+        s.pid = pid;
+        s.frequency = frequencyOffset == -1 ? -1L : perfData.getLong(frequencyOffset);
+        s.startTime = startTimeOffset == -1 ? -1L : perfData.getLong(startTimeOffset);
+
+        for(int i = 0; i < JvmSnapshot.FIELD_COUNT; i ++) {
+
+            int[] o = offsets[i];
+
+            if (o == null) {
+
+                s.values[i] = -1L;
+                continue;
+            }
+
+            long v = 0L;
+
+            for(int offset: o) {
+
+                v += perfData.getLong(offset);
+            }
+
+            s.values[i] = v;
+        }
+    }
+
+    /**
+     * @return the pid of the JVM the reader is open for, or -1.
+     */
+    public int getPid() {
+
+        return pid;
+    }
+
+    /**
+     * @return the performance data file currently mapped, or null.
+     */
+    public File getPerfDataFile() {
+
+        return perfData == null ? null : perfData.getFile();
+    }
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    public File getTmpRoot() {
+
+        return tmpRoot;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JVM reader[" + tmpRoot + "/" + JvmTarget.PERF_DATA_DIRECTORY_PREFIX + "*/" +
+                (pid == -1 ? "?" : pid) + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void map() throws IOException, InvalidExecutionOutputException {
+
+        perfData = null;
+
+        File f = JvmTarget.findPerfDataFile(tmpRoot, pid);
+
+        if (f == null) {
+
+            throw new IOException("process " + pid + " does not publish performance data");
+        }
+
+        fileKey = getFileKey(f);
+
+        PerfDataFile pd = PerfDataFile.map(f);
+
+        if (!pd.isAccessible()) {
+
+            throw new IOException(f + " not accessible yet");
+        }
+
+        perfData = pd;
+
+        locateCounters();
+    }
+
+    private void locateCounters() {
+
+        frequencyOffset = perfData.getLongOffset(FREQUENCY);
+        startTimeOffset = perfData.getLongOffset(START_TIME);
+
+        boolean g1 = G1_GC_POLICY.equals(perfData.getString(GC_POLICY));
+
+        for(int i = 0; i < JvmSnapshot.FIELD_COUNT; i ++) {
+
+            String[] names = g1 && i == JvmSnapshot.HEAP_MAX ? G1_HEAP_MAX : COUNTERS[i];
+            int[] o = new int[names.length];
+
+            for(int j = 0; j < names.length; j ++) {
+
+                o[j] = perfData.getLongOffset(names[j]);
+
+                if (o[j] == -1) {
+
+                    o = null;
+                    break;
+                }
+            }
+
+            offsets[i] = o;
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The readings of one JVM, from its performance data, held in primitive slots and overwritten in place by JvmReader.
+ * GC counts, class counts, safepoint counts and all the tick counts are cumulative; the tick counts are in
+ * high-resolution timer ticks, of which there are getFrequency() per second. TICKS is the number of ticks since the
+ * JVM started, so the time fractions are computed by comparing the tick counts of two snapshots of the same JVM
+ * instance (same pid and start time).
+ *
+ * A value is -1 if the JVM does not publish the counters it comes from: not all garbage collectors maintain all of
+ * them.
+ *
+ * Not thread safe.
+ *
+ * @see JvmReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmSnapshot {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int TICKS = 0;
+    public static final int YOUNG_GC_COUNT = 1;
+    public static final int YOUNG_GC_TICKS = 2;
+    public static final int OLD_GC_COUNT = 3;
+    public static final int OLD_GC_TICKS = 4;
+    public static final int HEAP_USED = 5;
+    public static final int HEAP_COMMITTED = 6;
+    public static final int HEAP_MAX = 7;
+    public static final int EDEN_USED = 8;
+    public static final int SURVIVOR_USED = 9;
+    public static final int OLD_USED = 10;
+    public static final int METASPACE_USED = 11;
+    public static final int LOADED_CLASSES = 12;
+    public static final int UNLOADED_CLASSES = 13;
+    public static final int SAFEPOINTS = 14;
+    public static final int SAFEPOINT_TICKS = 15;
+    public static final int SAFEPOINT_SYNC_TICKS = 16;
+    public static final int LIVE_THREADS = 17;
+    public static final int DAEMON_THREADS = 18;
+    public static final int FIELD_COUNT = 19;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    long timestampNanos;
+
+    //
+    // -1 if the snapshot does not hold a reading
+    //
+    int pid;
+
+    //
+    // the JVM start time, in milliseconds since the epoch; together with the pid, identifies the JVM instance
+    //
+    long startTime;
+
+    //
+    // high-resolution timer ticks per second
+    //
+    long frequency;
+
+    final long[] values;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public JvmSnapshot() {
+
+        this.pid = -1;
+        this.values = new long[FIELD_COUNT];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getTimestampNanos() {
+
+        return timestampNanos;
+    }
+
+    public int getPid() {
+
+        return pid;
+    }
+
+    public long getStartTime() {
+
+        return startTime;
+    }
+
+    public long getFrequency() {
+
+        return frequency;
+    }
+
+    /**
+     * @param field one of the field constants. Memory is in bytes.
+     *
+     * @return the value, or -1 if the JVM does not publish it.
+     */
+    public long getValue(int field) {
+
+        return values[field];
+    }
+
+    /**
+     * @return true if both snapshots hold readings of the same JVM instance, so the cumulative values can be compared.
+     */
+    public boolean isSameJvm(JvmSnapshot s) {
+
+        return pid != -1 && pid == s.pid && startTime == s.startTime;
+    }
+
+    public void copyFrom(JvmSnapshot s) {
+
+        timestampNanos = s.timestampNanos;
+        pid = s.pid;
+        startTime = s.startTime;
+        frequency = s.frequency;
+        System.arraycopy(s.values, 0, values, 0, FIELD_COUNT);
+    }
+
+    public void clear() {
+
+        pid = -1;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JvmSnapshot[" + (pid == -1 ? "empty" : pid) + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Identifies the JVM a JvmMetricSource reads: by main class, or by any of the process targets (pid, pid file, command
+ * line pattern). The literal forms are:
+ *
+ * <pre>
+ * main:org.jboss.modules.Main
+ * main:app.jar
+ * pid:1234
+ * pidfile:/var/run/jboss.pid
+ * cmdline:jboss-modules\.jar.*standalone
+ * </pre>
+ *
+ * A main class target matches a JVM whose command (the main class, or the jar, followed by the arguments, as published
+ * in its performance data) starts with the given name, either fully qualified or simple, or with a path that ends with
+ * it. The candidates are the JVMs that publish performance data under the hsperfdata_[user] directories of the
+ * temporary directory, so a main class target only finds JVMs that run with -XX:+UsePerfData, the default.
+ *
+ * As for process targets, resolution is only performed when the source has no live JVM.
+ *
+ * Immutable and thread safe.
+ *
+ * @see JvmMetricSource
+ * @see ProcessTarget
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmTarget {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String MAIN_CLASS_PREFIX = "main:";
+
+    public static final String PERF_DATA_DIRECTORY_PREFIX = "hsperfdata_";
+
+    public static final String JAVA_COMMAND = "sun.rt.javaCommand";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the target, or null if the literal does not start with a known prefix.
+     *
+     * @exception IllegalArgumentException if the literal starts with a known prefix, but it is otherwise invalid, or
+     * if it is a top process target, which does not identify one JVM.
+     */
+    public static JvmTarget parse(String literal) {
+
+        if (literal == null) {
+
+            throw new IllegalArgumentException("null JVM target");
+        }
+
+        if (literal.startsWith(MAIN_CLASS_PREFIX)) {
+
+            String s = literal.substring(MAIN_CLASS_PREFIX.length());
+
+            if (s.isEmpty() || s.contains(" ")) {
+
+                throw new IllegalArgumentException("invalid main class \"" + s + "\"");
+            }
+
+            return new JvmTarget(literal, s, null);
+        }
+
+        ProcessTarget target = ProcessTarget.parse(literal);
+
+        if (target == null) {
+
+            return null;
+        }
+
+        if (target.isTop()) {
+
+            throw new IllegalArgumentException("\"" + literal + "\" does not identify one JVM");
+        }
+
+        return new JvmTarget(literal, null, target);
+    }
+
+    /**
+     * @return the performance data file of the given JVM, or null if the JVM does not publish one.
+     */
+    public static File findPerfDataFile(File tmpRoot, int pid) {
+
+        File[] directories = perfDataDirectories(tmpRoot);
+
+        String name = Integer.toString(pid);
+
+        for(File d: directories) {
+
+            File f = new File(d, name);
+
+            if (f.isFile()) {
+
+                return f;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return true if the command published by a JVM, the main class or the jar followed by the arguments, starts with
+     * the given main class.
+     */
+    static boolean matches(String javaCommand, String mainClass) {
+
+        if (javaCommand == null) {
+
+            return false;
+        }
+
+        int end = javaCommand.indexOf(' ');
+
+        String main = end == -1 ? javaCommand : javaCommand.substring(0, end);
+
+        if (main.equals(mainClass)) {
+
+            return true;
+        }
+
+        if (!main.endsWith(mainClass)) {
+
+            return false;
+        }
+
+        char c = main.charAt(main.length() - mainClass.length() - 1);
+
+        return c == '.' || c == '/';
+    }
+
+    private static File[] perfDataDirectories(File tmpRoot) {
+
+        File[] directories = tmpRoot.listFiles(
+                (dir, name) -> name.startsWith(PERF_DATA_DIRECTORY_PREFIX) && new File(dir, name).isDirectory());
+
+        return directories == null ? new File[0] : directories;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String literal;
+
+    //
+    // exactly one of these is set
+    //
+    private final String mainClass;
+    private final ProcessTarget processTarget;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private JvmTarget(String literal, String mainClass, ProcessTarget processTarget) {
+
+        this.literal = literal;
+        this.mainClass = mainClass;
+        this.processTarget = processTarget;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Finds the current pid of the target. When several JVMs match the main class, the one with the lowest pid is
+     * selected, so the selection is stable across scans.
+     *
+     * @param excludedPid a pid that must not be returned, usually our own. Use -1 to not exclude anything.
+     *
+     * @return the pid, or -1 if no JVM can be found.
+     */
+    public int resolve(File procRoot, File tmpRoot, int excludedPid) {
+
+        if (processTarget != null) {
+
+            return processTarget.resolve(procRoot, excludedPid);
+        }
+
+        int result = -1;
+
+        for(File d: perfDataDirectories(tmpRoot)) {
+
+            String[] names = d.list();
+
+            if (names == null) {
+
+                continue;
+            }
+
+            Arrays.sort(names);
+
+            for(String name: names) {
+
+                int candidate = ProcessTarget.toPid(name);
+
+                if (candidate <= 0 || candidate == excludedPid || (result != -1 && candidate > result)) {
+
+                    continue;
+                }
+
+                //
+                // the files of the JVMs that were killed are left behind
+                //
+
+                if (!new File(procRoot, name).isDirectory()) {
+
+                    continue;
+                }
+
+                try {
+
+                    //
+                    // most candidates are not the target, so only the command is read, the file is not mapped
+                    //
+
+                    if (matches(PerfDataFile.readString(new File(d, name), JAVA_COMMAND), mainClass)) {
+
+                        result = candidate;
+                    }
+                }
+                catch(IOException | InvalidExecutionOutputException e) {
+
+                    //
+                    // not readable by us, or not a JVM we can read, skip it
+                    //
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the main class, if the target was specified by main class, or null.
+     */
+    public String getMainClass() {
+
+        return mainClass;
+    }
+
+    /**
+     * @return the process target, if the target was specified by pid, pid file or command line pattern, or null.
+     */
+    public ProcessTarget getProcessTarget() {
+
+        return processTarget;
+    }
+
+    public String getLiteral() {
+
+        return literal;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o instanceof JvmTarget && literal.equals(((JvmTarget) o).literal);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return literal.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return literal;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
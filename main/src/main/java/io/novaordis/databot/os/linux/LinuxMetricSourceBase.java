@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.databot.task.PreparableMetricSource;
+import io.novaordis.databot.task.PreparedQuery;
+import io.novaordis.databot.task.StalePreparedQueryException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The part the /proc, /sys and hsperfdata sources have in common: an address, a reader that keeps its files open
+ * between readings, and a metric enum the metric definitions are resolved against. A metric set is resolved once, when
+ * it is prepared, and the prepared query goes straight to collect(); collectMetrics() resolves on every call.
+ *
+ * Subclasses implement collect(), synchronized, and reset() if they keep state between readings. Stopping closes the
+ * reader; the reader re-opens its files on the next reading, so a stopped source can be started again.
+ *
+ * @param <A> the address type.
+ * @param <M> the metric enum.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public abstract class LinuxMetricSourceBase<A extends Address, M> implements PreparableMetricSource {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(LinuxMetricSourceBase.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the name of the property that carries the value of a metric for one of several entities of the same
+     * kind: "RxBytesPerSecond[eth0]", "Await[sda]".
+     */
+    public static String getPropertyName(String metricId, String qualifier) {
+
+        return metricId + "[" + qualifier + "]";
+    }
+
+    /**
+     * Converts a number of bytes to the given memory unit. Units other than memory units are ignored.
+     */
+    static double toUnit(double bytes, MeasureUnit unit) {
+
+        if (MemoryMeasureUnit.KILOBYTE.equals(unit)) {
+
+            return bytes / 1024d;
+        }
+
+        if (MemoryMeasureUnit.MEGABYTE.equals(unit)) {
+
+            return bytes / (1024d * 1024d);
+        }
+
+        if (MemoryMeasureUnit.GIGABYTE.equals(unit)) {
+
+            return bytes / (1024d * 1024d * 1024d);
+        }
+
+        return bytes;
+    }
+
+    static Object toType(double value, Class type) {
+
+        if (Long.class.equals(type)) {
+
+            return Math.round(value);
+        }
+
+        if (Integer.class.equals(type)) {
+
+            return (int)Math.round(value);
+        }
+
+        if (Float.class.equals(type)) {
+
+            return (float)value;
+        }
+
+        return value;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final A address;
+
+    private final Closeable reader;
+
+    private final PropertyFactory propertyFactory;
+
+    private final Function<String, M> lookup;
+
+    private final IntFunction<M[]> arrays;
+
+    //
+    // as in "not all metrics of ... are <metricKind> metrics"
+    //
+    private final String metricKind;
+
+    private volatile boolean started;
+
+    //
+    // the queries prepared in an earlier generation throw StalePreparedQueryException
+    //
+    private volatile int generation;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param lookup the metric enum's fromId().
+     * @param arrays the metric enum's array constructor.
+     * @param metricKind how the metrics are called in error messages: "network", "block device".
+     */
+    protected LinuxMetricSourceBase(A address, Closeable reader, PropertyFactory propertyFactory,
+                                    Function<String, M> lookup, IntFunction<M[]> arrays, String metricKind) {
+
+        if (address == null) {
+
+            throw new IllegalArgumentException("null address");
+        }
+
+        if (reader == null) {
+
+            throw new IllegalArgumentException("null reader");
+        }
+
+        this.address = address;
+        this.reader = reader;
+        this.propertyFactory = propertyFactory;
+        this.lookup = lookup;
+        this.arrays = arrays;
+        this.metricKind = metricKind;
+    }
+
+    // PreparableMetricSource implementation ---------------------------------------------------------------------------
+
+    /**
+     * @return null if the metric set cannot be served by this source.
+     */
+    @Override
+    public PreparedQuery prepare(List<MetricDefinition> metricDefinitions) throws MetricSourceException {
+
+        M[] metrics = resolve(metricDefinitions);
+
+        if (metrics == null) {
+
+            return null;
+        }
+
+        int g = generation;
+
+        PreparedQuery q = prepare(metricDefinitions, metrics);
+
+        return () -> {
+
+            if (generation != g) {
+
+                throw new StalePreparedQueryException(
+                        this + " was stopped or rediscovered its target since the query was prepared");
+            }
+
+            return q.execute();
+        };
+    }
+
+    // MetricSource implementation -------------------------------------------------------------------------------------
+
+    @Override
+    public A getAddress() {
+
+        return address;
+    }
+
+    @Override
+    public boolean hasAddress(Address a) {
+
+        return address.equals(a);
+    }
+
+    @Override
+    public List<Property> collectMetrics(List<MetricDefinition> metricDefinitions) throws MetricSourceException {
+
+        M[] metrics = resolve(metricDefinitions);
+
+        if (metrics == null) {
+
+            return unresolved(metricDefinitions);
+        }
+
+        return collect(metricDefinitions, metrics);
+    }
+
+    @Override
+    public void start() throws MetricSourceException {
+
+        started = true;
+
+        log.debug(this + " started");
+    }
+
+    @Override
+    public boolean isStarted() {
+
+        return started;
+    }
+
+    @Override
+    public synchronized void stop() {
+
+        started = false;
+
+        try {
+
+            reader.close();
+        }
+        catch(IOException e) {
+
+            log.warn("failed to close " + reader, e);
+        }
+
+        reset();
+
+        invalidatePreparedQueries();
+
+        log.debug(this + " stopped");
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o != null && getClass().equals(o.getClass()) &&
+                address.equals(((LinuxMetricSourceBase<?, ?>) o).address);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return address.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return address + " (" + reader + ")";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads and produces the properties of the given metrics, in the order of the definitions.
+     *
+     * @param metrics the metrics the definitions resolved to, same order.
+     */
+    protected abstract List<Property> collect(List<MetricDefinition> metricDefinitions, M[] metrics)
+            throws MetricSourceException;
+
+    /**
+     * Makes the queries prepared so far throw StalePreparedQueryException, so their owners prepare them again. Invoked
+     * on stop(), and by the sources that replace the target the queries were prepared against.
+     */
+    protected synchronized void invalidatePreparedQueries() {
+
+        generation ++;
+    }
+
+    /**
+     * Override to work out, once per metric set, what the readings of the set need.
+     */
+    protected PreparedQuery prepare(List<MetricDefinition> metricDefinitions, M[] metrics) {
+
+        return () -> collect(metricDefinitions, metrics);
+    }
+
+    /**
+     * @return the metrics corresponding to the definitions, in order, or null if at least one of them cannot be served
+     * by this source.
+     */
+    protected M[] resolve(List<MetricDefinition> metricDefinitions) {
+
+        M[] result = arrays.apply(metricDefinitions.size());
+
+        for(int i = 0; i < result.length; i ++) {
+
+            result[i] = lookup.apply(metricDefinitions.get(i).getId());
+
+            if (result[i] == null) {
+
+                return null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Invoked by collectMetrics() with a metric set that does not resolve.
+     *
+     * @exception MetricSourceException unless overridden.
+     */
+    protected List<Property> unresolved(List<MetricDefinition> metricDefinitions) throws MetricSourceException {
+
+        throw new MetricSourceException("not all metrics of " + metricDefinitions + " are " + metricKind + " metrics");
+    }
+
+    /**
+     * Invoked by stop(), after the reader was closed, to forget the readings rates are computed against. Does nothing
+     * unless overridden.
+     */
+    protected void reset() {
+    }
+
+    protected PropertyFactory getPropertyFactory() {
+
+        return propertyFactory;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * A local OS metric source that serves the metrics listed in ProcMetric from /proc, with a LinuxProcReader, without
+ * forking any process.
+ *
+ * A metric set that contains metrics /proc cannot serve is delegated, as a whole, to the fallback source, usually the
+ * command-based local OS source, which is only started if needed.
+ *
+ * CPU percentages are computed from the difference between the current and the previous snapshot; the first reading
+ * reports the averages since boot.
+ *
+ * @see LinuxProcReader
+ * @see ProcMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class LinuxProcMetricSource extends LinuxMetricSourceBase<Address, ProcMetric> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final LinuxProcReader reader;
+
+    //
+    // may be null
+    //
+    private final MetricSource fallback;
+
+    private final LocalOSSnapshot current;
+    private final LocalOSSnapshot previous;
+
+    //
+    // recomputed only when the CPU tick counters advance, so samples taken closer than a tick apart report the last
+    // known values instead of zero
+    //
+    private final double[] cpuPercentages;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param fallback the source to delegate to for the metrics that cannot be served from /proc. May be null.
+     */
+    public LinuxProcMetricSource(Address address, LinuxProcReader reader, MetricSource fallback,
+                                 PropertyFactory propertyFactory) {
+
+        super(address, reader, propertyFactory, ProcMetric::fromId, ProcMetric[]::new, "/proc");
+
+        this.reader = reader;
+        this.fallback = fallback;
+        this.current = new LocalOSSnapshot();
+        this.previous = new LocalOSSnapshot();
+        this.cpuPercentages = new double[LocalOSSnapshot.CPU_FIELD_COUNT];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public MetricSource getFallback() {
+
+        return fallback;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected synchronized List<Property> collect(List<MetricDefinition> metricDefinitions, ProcMetric[] metrics)
+            throws MetricSourceException {
+
+        try {
+
+            reader.read(current);
+        }
+        catch(IOException | InvalidExecutionOutputException e) {
+
+            throw new MetricSourceException("failed to read " + reader.getProcRoot(), e);
+        }
+
+        long totalTicks = current.getCpuTotalTicks() - previous.getCpuTotalTicks();
+
+        if (totalTicks > 0) {
+
+            for(int i = 0; i < cpuPercentages.length; i ++) {
+
+                cpuPercentages[i] = 100d * (current.cpu[i] - previous.cpu[i]) / totalTicks;
+            }
+
+            previous.copyFrom(current);
+        }
+
+        List<Property> result = new ArrayList<>(metrics.length);
+
+        for(int i = 0; i < metrics.length; i ++) {
+
+            MetricDefinition md = metricDefinitions.get(i);
+            ProcMetric m = metrics[i];
+
+            double value = m.value(current, cpuPercentages);
+
+            MeasureUnit unit = md.getBaseUnit();
+
+            Class type = md.getType();
+
+            if (ProcMetric.Kind.MEMORY.equals(m.getKind())) {
+
+                value = toUnit(value, unit);
+                type = type == null ? Long.class : type;
+            }
+            else {
+
+                type = type == null ? Double.class : type;
+            }
+
+            result.add(getPropertyFactory().createInstance(md.getId(), type, toType(value, type), null, unit));
+        }
+
+        return result;
+    }
+
+    /**
+     * Delegates the whole metric set to the fallback source, started on first use.
+     */
+    @Override
+    protected List<Property> unresolved(List<MetricDefinition> metricDefinitions) throws MetricSourceException {
+
+        if (fallback == null) {
+
+            throw new MetricSourceException("not all metrics of " + metricDefinitions + " can be read from /proc");
+        }
+
+        synchronized (fallback) {
+
+            if (!fallback.isStarted()) {
+
+                fallback.start();
+            }
+        }
+
+        return fallback.collectMetrics(metricDefinitions);
+    }
+
+    @Override
+    protected void reset() {
+
+        if (fallback != null && fallback.isStarted()) {
+
+            fallback.stop();
+        }
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.address.Address;
+import io.novaordis.utilities.address.LocalOSAddress;
+
+/**
+ * Claims the local OS address, but only on hosts where /proc carries the files the reader needs; everywhere else the
+ * address goes to the wrapped factory untouched. The source the wrapped factory builds for the same address serves
+ * the metrics /proc cannot.
+ *
+ * @see LinuxProcMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class LinuxProcMetricSourceFactory extends DelegatingMetricSourceFactory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(LinuxProcMetricSourceFactory.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public LinuxProcMetricSourceFactory(MetricSourceFactory delegate, File procRoot) {
+
+        super(delegate);
+
+        this.procRoot = procRoot;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected boolean accepts(Address a) {
+
+        return a instanceof LocalOSAddress && LinuxProcReader.isAvailable(procRoot);
+    }
+
+    @Override
+    protected MetricSource build(Address a) {
+
+        MetricSource s = new LinuxProcMetricSource(
+                a, new LinuxProcReader(procRoot), buildFallback(a), getPropertyFactory());
+
+        log.debug("reading local OS metrics from " + procRoot + " for " + a);
+
+        return s;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
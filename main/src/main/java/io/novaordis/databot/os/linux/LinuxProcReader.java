@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Reads the local OS metrics directly from /proc/stat, /proc/meminfo, /proc/vmstat and /proc/loadavg, instead of
+ * forking vmstat, top or free and parsing their output. The files are kept open between reads, are read one after
+ * the other into the reader's own reusable buffer, and are parsed in place into a LocalOSSnapshot, so a full snapshot costs a few
+ * system calls and no process creation, and allocates nothing once warmed up.
+ *
+ * The /proc root is configurable, so the reader can be pointed to a directory of captured files.
+ *
+ * Thread safe: reads are serialized.
+ *
+ * @see LocalOSSnapshot
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class LinuxProcReader implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String DEFAULT_PROC_ROOT = "/proc";
+
+    private static final byte[] CPU = ByteCursor.bytes("cpu");
+    private static final byte[] CTXT = ByteCursor.bytes("ctxt");
+    private static final byte[] INTR = ByteCursor.bytes("intr");
+    private static final byte[] BTIME = ByteCursor.bytes("btime");
+    private static final byte[] PROCESSES = ByteCursor.bytes("processes");
+    private static final byte[] PROCS_RUNNING = ByteCursor.bytes("procs_running");
+    private static final byte[] PROCS_BLOCKED = ByteCursor.bytes("procs_blocked");
+
+    private static final byte[] KB = ByteCursor.bytes("kB");
+
+    //
+    // indexed by the LocalOSSnapshot MEM_* and VM_* constants
+    //
+
+    private static final byte[][] MEMINFO_KEYS = {
+
+            ByteCursor.bytes("MemTotal:"),
+            ByteCursor.bytes("MemFree:"),
+            ByteCursor.bytes("MemAvailable:"),
+            ByteCursor.bytes("Buffers:"),
+            ByteCursor.bytes("Cached:"),
+            ByteCursor.bytes("SReclaimable:"),
+            ByteCursor.bytes("Shmem:"),
+            ByteCursor.bytes("SwapTotal:"),
+            ByteCursor.bytes("SwapFree:"),
+    };
+
+    private static final byte[][] VMSTAT_KEYS = {
+
+            ByteCursor.bytes("pgpgin"),
+            ByteCursor.bytes("pgpgout"),
+            ByteCursor.bytes("pswpin"),
+            ByteCursor.bytes("pswpout"),
+            ByteCursor.bytes("pgfault"),
+            ByteCursor.bytes("pgmajfault"),
+    };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the files this reader needs exist and are readable under the given root.
+     */
+    public static boolean isAvailable(File procRoot) {
+
+        return new File(procRoot, "stat").canRead() &&
+                new File(procRoot, "meminfo").canRead() &&
+                new File(procRoot, "vmstat").canRead() &&
+                new File(procRoot, "loadavg").canRead();
+    }
+
+    /**
+     * Matches the key at the cursor position against a key table.
+     *
+     * @return the index of the key, with the cursor positioned after it, or -1, with the cursor not moved.
+     */
+    static int matchKey(ByteCursor c, byte[][] keys) {
+
+        int first = c.peek();
+
+        for(int i = 0; i < keys.length; i ++) {
+
+            if (keys[i][0] == first && c.consumeToken(keys[i])) {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    private final ProcFile stat;
+    private final ProcFile meminfo;
+    private final ProcFile vmstat;
+    private final ProcFile loadavg;
+
+    //
+    // shared by the four files, each is parsed before the next is read; replaced by a larger one if a file outgrows it
+    //
+    private ByteBuffer buffer;
+
+    private final ByteCursor cursor;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public LinuxProcReader() {
+
+        this(new File(DEFAULT_PROC_ROOT));
+    }
+
+    public LinuxProcReader(File procRoot) {
+
+        if (procRoot == null) {
+
+            throw new IllegalArgumentException("null /proc root");
+        }
+
+        this.procRoot = procRoot;
+        this.stat = new ProcFile(new File(procRoot, "stat"));
+        this.meminfo = new ProcFile(new File(procRoot, "meminfo"));
+        this.vmstat = new ProcFile(new File(procRoot, "vmstat"));
+        this.loadavg = new ProcFile(new File(procRoot, "loadavg"));
+        this.buffer = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+        this.cursor = new ByteCursor();
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public void close() {
+
+        stat.close();
+        meminfo.close();
+        vmstat.close();
+        loadavg.close();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Fills the snapshot from /proc/stat, /proc/meminfo, /proc/vmstat and /proc/loadavg.
+     *
+     * @exception IOException if a file cannot be read.
+     * @exception InvalidExecutionOutputException if a file content cannot be parsed.
+     */
+    public synchronized void read(LocalOSSnapshot s) throws IOException, InvalidExecutionOutputException {
+
+        s.timestampMs = System.currentTimeMillis();
+        s.timestampNanos = System.nanoTime();
+
+        buffer = stat.read(buffer);
+        parseStat(cursor.reset(buffer), s);
+
+        buffer = meminfo.read(buffer);
+        parseMeminfo(cursor.reset(buffer), s);
+
+        buffer = vmstat.read(buffer);
+        parseVmstat(cursor.reset(buffer), s);
+
+        buffer = loadavg.read(buffer);
+        parseLoadavg(cursor.reset(buffer), s);
+    }
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    @Override
+    public String toString() {
+
+        return "/proc reader[" + procRoot + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    static void parseStat(ByteCursor c, LocalOSSnapshot s) throws InvalidExecutionOutputException {
+
+        boolean cpuFound = false;
+
+        do {
+
+            if (c.consumeToken(CPU)) {
+
+                //
+                // the aggregate line; the per-CPU lines ("cpu0", ...) do not match the token. Older kernels expose
+                // fewer fields
+                //
+
+                for(int i = 0; i < LocalOSSnapshot.CPU_FIELD_COUNT; i ++) {
+
+                    s.cpu[i] = c.atEndOfLine() ? 0L : c.nextLong();
+                }
+
+                cpuFound = true;
+            }
+            else if (c.consumeToken(CTXT)) {
+
+                s.contextSwitches = c.nextLong();
+            }
+            else if (c.consumeToken(INTR)) {
+
+                //
+                // the first value is the total, the rest are per interrupt
+                //
+
+                s.interrupts = c.nextLong();
+            }
+            else if (c.consumeToken(BTIME)) {
+
+                s.bootTimeSec = c.nextLong();
+            }
+            else if (c.consumeToken(PROCESSES)) {
+
+                s.processesCreated = c.nextLong();
+            }
+            else if (c.consumeToken(PROCS_RUNNING)) {
+
+                s.processesRunning = c.nextLong();
+            }
+            else if (c.consumeToken(PROCS_BLOCKED)) {
+
+                s.processesBlocked = c.nextLong();
+            }
+        }
+        while(c.nextLine());
+
+        if (!cpuFound) {
+
+            throw new InvalidExecutionOutputException("no aggregate cpu line in /proc/stat");
+        }
+    }
+
+    static void parseMeminfo(ByteCursor c, LocalOSSnapshot s) throws InvalidExecutionOutputException {
+
+        do {
+
+            int i = matchKey(c, MEMINFO_KEYS);
+
+            if (i == -1) {
+
+                continue;
+            }
+
+            long value = c.nextLong();
+
+            c.skipSpaces();
+
+            s.memory[i] = c.startsWith(KB) ? value * 1024L : value;
+        }
+        while(c.nextLine());
+    }
+
+    static void parseVmstat(ByteCursor c, LocalOSSnapshot s) throws InvalidExecutionOutputException {
+
+        do {
+
+            int i = matchKey(c, VMSTAT_KEYS);
+
+            if (i != -1) {
+
+                s.vm[i] = c.nextLong();
+            }
+        }
+        while(c.nextLine());
+    }
+
+    /**
+     * "0.52 0.58 0.59 1/1234 56789"
+     */
+    static void parseLoadavg(ByteCursor c, LocalOSSnapshot s) throws InvalidExecutionOutputException {
+
+        s.loadAverageOneMinute = c.nextDouble();
+        s.loadAverageFiveMinutes = c.nextDouble();
+        s.loadAverageFifteenMinutes = c.nextDouble();
+        s.schedulingEntitiesRunnable = c.nextLong();
+
+        if (!c.consume('/')) {
+
+            throw new InvalidExecutionOutputException("unexpected /proc/loadavg format at offset " + c.position());
+        }
+
+        s.schedulingEntitiesTotal = c.nextLong();
+        s.lastPid = c.nextLong();
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The raw local OS readings from /proc/stat, /proc/meminfo, /proc/vmstat and /proc/loadavg, held in primitive slots
+ * and overwritten in place by LinuxProcReader. Counters are cumulative, as exposed by the kernel, rates and percentages
+ * are computed by comparing two snapshots.
+ *
+ * Not thread safe.
+ *
+ * @see LinuxProcReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class LocalOSSnapshot {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // /proc/stat aggregate "cpu" line, in USER_HZ ticks
+    //
+    public static final int CPU_USER = 0;
+    public static final int CPU_NICE = 1;
+    public static final int CPU_SYSTEM = 2;
+    public static final int CPU_IDLE = 3;
+    public static final int CPU_IOWAIT = 4;
+    public static final int CPU_IRQ = 5;
+    public static final int CPU_SOFTIRQ = 6;
+    public static final int CPU_STEAL = 7;
+    public static final int CPU_GUEST = 8;
+    public static final int CPU_GUEST_NICE = 9;
+    public static final int CPU_FIELD_COUNT = 10;
+
+    //
+    // /proc/meminfo, in bytes
+    //
+    public static final int MEM_TOTAL = 0;
+    public static final int MEM_FREE = 1;
+    public static final int MEM_AVAILABLE = 2;
+    public static final int MEM_BUFFERS = 3;
+    public static final int MEM_CACHED = 4;
+    public static final int MEM_SRECLAIMABLE = 5;
+    public static final int MEM_SHMEM = 6;
+    public static final int MEM_SWAP_TOTAL = 7;
+    public static final int MEM_SWAP_FREE = 8;
+    public static final int MEM_FIELD_COUNT = 9;
+
+    //
+    // /proc/vmstat, cumulative counts
+    //
+    public static final int VM_PGPGIN = 0;
+    public static final int VM_PGPGOUT = 1;
+    public static final int VM_PSWPIN = 2;
+    public static final int VM_PSWPOUT = 3;
+    public static final int VM_PGFAULT = 4;
+    public static final int VM_PGMAJFAULT = 5;
+    public static final int VM_FIELD_COUNT = 6;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // System.currentTimeMillis() and System.nanoTime() at the time of the read
+    //
+    long timestampMs;
+    long timestampNanos;
+
+    final long[] cpu;
+    final long[] memory;
+    final long[] vm;
+
+    long contextSwitches;
+    long interrupts;
+    long bootTimeSec;
+    long processesCreated;
+    long processesRunning;
+    long processesBlocked;
+
+    double loadAverageOneMinute;
+    double loadAverageFiveMinutes;
+    double loadAverageFifteenMinutes;
+    long schedulingEntitiesRunnable;
+    long schedulingEntitiesTotal;
+    long lastPid;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public LocalOSSnapshot() {
+
+        this.cpu = new long[CPU_FIELD_COUNT];
+        this.memory = new long[MEM_FIELD_COUNT];
+        this.vm = new long[VM_FIELD_COUNT];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getTimestampMs() {
+
+        return timestampMs;
+    }
+
+    public long getTimestampNanos() {
+
+        return timestampNanos;
+    }
+
+    /**
+     * @param field one of the CPU_* constants.
+     */
+    public long getCpuTicks(int field) {
+
+        return cpu[field];
+    }
+
+    /**
+     * @return the sum of the ticks that make up the total CPU time. Guest time is already included in user time.
+     */
+    public long getCpuTotalTicks() {
+
+        long total = 0;
+
+        for(int i = CPU_USER; i <= CPU_STEAL; i ++) {
+
+            total += cpu[i];
+        }
+
+        return total;
+    }
+
+    /**
+     * @param field one of the MEM_* constants.
+     *
+     * @return the value in bytes.
+     */
+    public long getMemory(int field) {
+
+        return memory[field];
+    }
+
+    /**
+     * @param field one of the VM_* constants.
+     */
+    public long getVm(int field) {
+
+        return vm[field];
+    }
+
+    public long getContextSwitches() {
+
+        return contextSwitches;
+    }
+
+    public long getInterrupts() {
+
+        return interrupts;
+    }
+
+    public long getBootTimeSec() {
+
+        return bootTimeSec;
+    }
+
+    public long getProcessesCreated() {
+
+        return processesCreated;
+    }
+
+    public long getProcessesRunning() {
+
+        return processesRunning;
+    }
+
+    public long getProcessesBlocked() {
+
+        return processesBlocked;
+    }
+
+    public double getLoadAverageOneMinute() {
+
+        return loadAverageOneMinute;
+    }
+
+    public double getLoadAverageFiveMinutes() {
+
+        return loadAverageFiveMinutes;
+    }
+
+    public double getLoadAverageFifteenMinutes() {
+
+        return loadAverageFifteenMinutes;
+    }
+
+    public long getSchedulingEntitiesRunnable() {
+
+        return schedulingEntitiesRunnable;
+    }
+
+    public long getSchedulingEntitiesTotal() {
+
+        return schedulingEntitiesTotal;
+    }
+
+    public long getLastPid() {
+
+        return lastPid;
+    }
+
+    /**
+     * Copies the content of the given snapshot into this one, without allocating.
+     */
+    public void copyFrom(LocalOSSnapshot s) {
+
+        this.timestampMs = s.timestampMs;
+        this.timestampNanos = s.timestampNanos;
+        System.arraycopy(s.cpu, 0, cpu, 0, cpu.length);
+        System.arraycopy(s.memory, 0, memory, 0, memory.length);
+        System.arraycopy(s.vm, 0, vm, 0, vm.length);
+        this.contextSwitches = s.contextSwitches;
+        this.interrupts = s.interrupts;
+        this.bootTimeSec = s.bootTimeSec;
+        this.processesCreated = s.processesCreated;
+        this.processesRunning = s.processesRunning;
+        this.processesBlocked = s.processesBlocked;
+        this.loadAverageOneMinute = s.loadAverageOneMinute;
+        this.loadAverageFiveMinutes = s.loadAverageFiveMinutes;
+        this.loadAverageFifteenMinutes = s.loadAverageFifteenMinutes;
+        this.schedulingEntitiesRunnable = s.schedulingEntitiesRunnable;
+        this.schedulingEntitiesTotal = s.schedulingEntitiesTotal;
+        this.lastPid = s.lastPid;
+    }
+
+    @Override
+    public String toString() {
+
+        return "local OS snapshot[" + timestampMs + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
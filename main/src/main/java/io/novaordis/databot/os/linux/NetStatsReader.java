@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Reads /proc/net/dev, /proc/net/snmp and /proc/net/netstat into a NetStatsSnapshot.
+ *
+ * The files are kept open and read into the reader's own reused direct buffer, and parsed without allocating: interface
+ * names are matched against a registry of the interfaces seen so far directly in the buffer, so a String is only
+ * created, and the address globs only evaluated, when a new interface appears. The snmp and netstat counters are
+ * located by name in the header line that precedes each line of values, so the parser does not depend on the column
+ * layout of a particular kernel.
+ *
+ * Not thread safe, the interface registry is updated while parsing.
+ *
+ * @see NetStatsSnapshot
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class NetStatsReader implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(NetStatsReader.class);
+
+    //
+    // bit flags for the files to read
+    //
+    public static final int DEV = 1;
+    public static final int SNMP = 2;
+    public static final int NETSTAT = 4;
+
+    private static final int INITIAL_REGISTRY_CAPACITY = 32;
+
+    //
+    // the /proc/net/dev columns: 8 receive counters followed by 8 transmit counters, of which the first four of each
+    // are kept
+    //
+    private static final int DEV_COLUMNS = 12;
+
+    private static final byte[][] GROUPS = {
+            ByteCursor.bytes("Ip:"), ByteCursor.bytes("Tcp:"), ByteCursor.bytes("Udp:"), ByteCursor.bytes("TcpExt:")
+    };
+
+    private static final int IP = 0;
+    private static final int TCP = 1;
+    private static final int UDP = 2;
+    private static final int TCP_EXT = 3;
+
+    //
+    // by NetStatsSnapshot protocol counter: the group, the name in the header line and the file
+    //
+
+    private static final int[] GROUP = new int[NetStatsSnapshot.PROTOCOL_COUNTER_COUNT];
+
+    private static final byte[][] NAME = new byte[NetStatsSnapshot.PROTOCOL_COUNTER_COUNT][];
+
+    private static final int[] FILE = new int[NetStatsSnapshot.PROTOCOL_COUNTER_COUNT];
+
+    static {
+
+        counter(NetStatsSnapshot.IP_IN_RECEIVES, IP, "InReceives", SNMP);
+        counter(NetStatsSnapshot.IP_IN_HDR_ERRORS, IP, "InHdrErrors", SNMP);
+        counter(NetStatsSnapshot.IP_IN_DISCARDS, IP, "InDiscards", SNMP);
+        counter(NetStatsSnapshot.IP_OUT_REQUESTS, IP, "OutRequests", SNMP);
+        counter(NetStatsSnapshot.TCP_ACTIVE_OPENS, TCP, "ActiveOpens", SNMP);
+        counter(NetStatsSnapshot.TCP_PASSIVE_OPENS, TCP, "PassiveOpens", SNMP);
+        counter(NetStatsSnapshot.TCP_ATTEMPT_FAILS, TCP, "AttemptFails", SNMP);
+        counter(NetStatsSnapshot.TCP_ESTAB_RESETS, TCP, "EstabResets", SNMP);
+        counter(NetStatsSnapshot.TCP_CURR_ESTAB, TCP, "CurrEstab", SNMP);
+        counter(NetStatsSnapshot.TCP_IN_SEGS, TCP, "InSegs", SNMP);
+        counter(NetStatsSnapshot.TCP_OUT_SEGS, TCP, "OutSegs", SNMP);
+        counter(NetStatsSnapshot.TCP_RETRANS_SEGS, TCP, "RetransSegs", SNMP);
+        counter(NetStatsSnapshot.TCP_IN_ERRS, TCP, "InErrs", SNMP);
+        counter(NetStatsSnapshot.TCP_OUT_RSTS, TCP, "OutRsts", SNMP);
+        counter(NetStatsSnapshot.UDP_IN_DATAGRAMS, UDP, "InDatagrams", SNMP);
+        counter(NetStatsSnapshot.UDP_NO_PORTS, UDP, "NoPorts", SNMP);
+        counter(NetStatsSnapshot.UDP_IN_ERRORS, UDP, "InErrors", SNMP);
+        counter(NetStatsSnapshot.UDP_OUT_DATAGRAMS, UDP, "OutDatagrams", SNMP);
+        counter(NetStatsSnapshot.UDP_RCVBUF_ERRORS, UDP, "RcvbufErrors", SNMP);
+        counter(NetStatsSnapshot.UDP_SNDBUF_ERRORS, UDP, "SndbufErrors", SNMP);
+        counter(NetStatsSnapshot.TCP_LISTEN_OVERFLOWS, TCP_EXT, "ListenOverflows", NETSTAT);
+        counter(NetStatsSnapshot.TCP_LISTEN_DROPS, TCP_EXT, "ListenDrops", NETSTAT);
+        counter(NetStatsSnapshot.TCP_TIMEOUTS, TCP_EXT, "TCPTimeouts", NETSTAT);
+        counter(NetStatsSnapshot.TCP_SYN_RETRANS, TCP_EXT, "TCPSynRetrans", NETSTAT);
+    }
+
+    private static void counter(int counter, int group, String name, int file) {
+
+        GROUP[counter] = group;
+        NAME[counter] = ByteCursor.bytes(name);
+        FILE[counter] = file;
+    }
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if /proc/net/dev exists and is readable under the given root.
+     */
+    public static boolean isAvailable(File procRoot) {
+
+        return new File(procRoot, "net/dev").canRead();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    private final NetworkAddress address;
+
+    private final ProcFile dev;
+
+    private final ProcFile snmp;
+
+    private final ProcFile netstat;
+
+    //
+    // shared by the three files, each is parsed before the next is read; replaced by a larger one if a file outgrows
+    // it
+    //
+    private ByteBuffer buffer;
+
+    private final ByteCursor cursor;
+
+    //
+    // the interface registry, only grows
+    //
+    private int interfaceCount;
+    private String[] interfaceNames;
+    private byte[][] interfaceNameBytes;
+    private boolean[] excluded;
+
+    //
+    // the protocol counter at each column of the current header line, -1 for columns that are not kept
+    //
+    private int[] columns;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param address the address whose globs select the interfaces.
+     */
+    public NetStatsReader(File procRoot, NetworkAddress address) {
+
+        if (procRoot == null) {
+
+            throw new IllegalArgumentException("null /proc root");
+        }
+
+        if (address == null) {
+
+            throw new IllegalArgumentException("null address");
+        }
+
+        this.procRoot = procRoot;
+        this.address = address;
+        this.dev = new ProcFile(new File(procRoot, "net/dev"));
+        this.snmp = new ProcFile(new File(procRoot, "net/snmp"));
+        this.netstat = new ProcFile(new File(procRoot, "net/netstat"));
+        this.buffer = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+        this.cursor = new ByteCursor();
+        this.interfaceNames = new String[INITIAL_REGISTRY_CAPACITY];
+        this.interfaceNameBytes = new byte[INITIAL_REGISTRY_CAPACITY][];
+        this.excluded = new boolean[INITIAL_REGISTRY_CAPACITY];
+        this.columns = new int[256];
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public void close() {
+
+        dev.close();
+        snmp.close();
+        netstat.close();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Overwrites the given snapshot with fresh readings from the given files. The protocol counters of a file that
+     * cannot be read are not present.
+     *
+     * @param files a combination of the DEV, SNMP and NETSTAT flags.
+     *
+     * @exception IOException if /proc/net/dev cannot be read.
+     * @exception InvalidExecutionOutputException if a file cannot be parsed.
+     */
+    public void read(NetStatsSnapshot s, int files) throws IOException, InvalidExecutionOutputException {
+
+        s.timestampNanos = System.nanoTime();
+
+        if ((files & DEV) != 0) {
+
+            buffer = dev.read(buffer);
+            parseDev(buffer, s);
+        }
+
+        readProtocol(snmp, SNMP, files, s);
+        readProtocol(netstat, NETSTAT, files, s);
+    }
+
+    /**
+     * @param index the registry index, as returned by NetStatsSnapshot.getInterface().
+     */
+    public String getInterfaceName(int index) {
+
+        return interfaceNames[index];
+    }
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    @Override
+    public String toString() {
+
+        return "/proc/net reader[" + procRoot + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * "  eth0: 1024 12 0 0 0 0 0 0 2048 24 0 0 0 0 0 0". The two header lines have no colon. Older kernels do not
+     * leave a space after the colon.
+     */
+    void parseDev(ByteBuffer b, NetStatsSnapshot s) throws InvalidExecutionOutputException {
+
+        ByteCursor c = cursor.reset(b);
+
+        int n = 0;
+
+        int hint = 0;
+
+        while(c.hasRemaining()) {
+
+            c.skipSpaces();
+
+            int start = c.position();
+            int colon = start;
+
+            while(colon < b.limit() && b.get(colon) != ':' && b.get(colon) != '\n') {
+
+                colon ++;
+            }
+
+            if (colon == b.limit() || b.get(colon) != ':') {
+
+                c.nextLine();
+                continue;
+            }
+
+            int i = lookup(b, start, colon, hint);
+
+            hint = i + 1;
+
+            if (excluded[i]) {
+
+                c.nextLine();
+                continue;
+            }
+
+            c.skip(colon + 1 - start);
+
+            s.ensureCapacity(n + 1);
+
+            s.interfaces[n] = i;
+
+            int offset = n * NetStatsSnapshot.INTERFACE_FIELD_COUNT;
+
+            for(int column = 0; column < DEV_COLUMNS; column ++) {
+
+                long value = c.nextLong();
+
+                if (column < 4) {
+
+                    s.counters[offset + column] = value;
+                }
+                else if (column >= 8) {
+
+                    s.counters[offset + NetStatsSnapshot.TX_BYTES + column - 8] = value;
+                }
+            }
+
+            n ++;
+
+            c.nextLine();
+        }
+
+        s.interfaceCount = n;
+    }
+
+    /**
+     * Pairs of lines, a header line naming the counters and a line of values, each starting with the group:
+     *
+     * <pre>
+     * Tcp: RtoAlgorithm RtoMin RtoMax MaxConn ActiveOpens ...
+     * Tcp: 1 200 120000 -1 1452 ...
+     * </pre>
+     *
+     * @param file the flag of the file being parsed, SNMP or NETSTAT: its counters are not present unless found.
+     */
+    void parseProtocol(ByteBuffer b, int file, NetStatsSnapshot s) throws InvalidExecutionOutputException {
+
+        clearProtocol(file, s);
+
+        ByteCursor c = cursor.reset(b);
+
+        while(c.hasRemaining()) {
+
+            int group = -1;
+
+            for(int g = 0; g < GROUPS.length; g ++) {
+
+                if (c.consumeToken(GROUPS[g])) {
+
+                    group = g;
+                    break;
+                }
+            }
+
+            if (group == -1) {
+
+                c.nextLine();
+                continue;
+            }
+
+            int count = 0;
+
+            while(true) {
+
+                c.skipSpaces();
+
+                if (c.atEndOfLine()) {
+
+                    break;
+                }
+
+                int counter = -1;
+
+                for(int i = 0; i < NetStatsSnapshot.PROTOCOL_COUNTER_COUNT; i ++) {
+
+                    if (GROUP[i] == group && c.consumeToken(NAME[i])) {
+
+                        counter = i;
+                        break;
+                    }
+                }
+
+                if (counter == -1) {
+
+                    c.skipToken();
+                }
+
+                if (count == columns.length) {
+
+                    int[] a = new int[count * 2];
+                    System.arraycopy(columns, 0, a, 0, count);
+                    columns = a;
+                }
+
+                columns[count ++] = counter;
+            }
+
+            if (!c.nextLine()) {
+
+                break;
+            }
+
+            if (!c.consumeToken(GROUPS[group])) {
+
+                //
+                // not a line of values, look at it again as a header
+                //
+
+                continue;
+            }
+
+            for(int column = 0; column < count && !c.atEndOfLine(); column ++) {
+
+                long value = c.nextLong();
+
+                int counter = columns[column];
+
+                if (counter != -1) {
+
+                    s.protocol[counter] = value;
+                    s.present[counter] = true;
+                }
+            }
+
+            c.nextLine();
+        }
+    }
+
+    int getInterfaceRegistrySize() {
+
+        return interfaceCount;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void readProtocol(ProcFile f, int file, int files, NetStatsSnapshot s)
+            throws InvalidExecutionOutputException {
+
+        if ((files & file) == 0) {
+
+            clearProtocol(file, s);
+            return;
+        }
+
+        try {
+
+            buffer = f.read(buffer);
+            parseProtocol(buffer, file, s);
+        }
+        catch(IOException e) {
+
+            log.debug("failed to read " + f + ": " + e);
+
+            clearProtocol(file, s);
+        }
+    }
+
+    private static void clearProtocol(int file, NetStatsSnapshot s) {
+
+        for(int i = 0; i < NetStatsSnapshot.PROTOCOL_COUNTER_COUNT; i ++) {
+
+            if (FILE[i] == file) {
+
+                s.present[i] = false;
+            }
+        }
+    }
+
+    /**
+     * @return the registry index of the interface whose name is in the buffer between start and end, registering it
+     * if seen for the first time. The hint (the entry following the previous match) is tried first.
+     */
+    private int lookup(ByteBuffer b, int start, int end, int hint) {
+
+        if (hint < interfaceCount && matches(interfaceNameBytes[hint], b, start, end)) {
+
+            return hint;
+        }
+
+        for(int i = 0; i < interfaceCount; i ++) {
+
+            if (matches(interfaceNameBytes[i], b, start, end)) {
+
+                return i;
+            }
+        }
+
+        byte[] name = new byte[end - start];
+
+        for(int i = 0; i < name.length; i ++) {
+
+            name[i] = b.get(start + i);
+        }
+
+        return register(name);
+    }
+
+    private static boolean matches(byte[] name, ByteBuffer b, int start, int end) {
+
+        if (name.length != end - start) {
+
+            return false;
+        }
+
+        for(int i = 0; i < name.length; i ++) {
+
+            if (name[i] != b.get(start + i)) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int register(byte[] nameBytes) {
+
+        if (interfaceCount == interfaceNames.length) {
+
+            int capacity = interfaceCount * 2;
+
+            String[] names = new String[capacity];
+            System.arraycopy(interfaceNames, 0, names, 0, interfaceCount);
+            interfaceNames = names;
+
+            byte[][] bytes = new byte[capacity][];
+            System.arraycopy(interfaceNameBytes, 0, bytes, 0, interfaceCount);
+            interfaceNameBytes = bytes;
+
+            boolean[] e = new boolean[capacity];
+            System.arraycopy(excluded, 0, e, 0, interfaceCount);
+            excluded = e;
+        }
+
+        String name = new String(nameBytes);
+
+        interfaceNames[interfaceCount] = name;
+        interfaceNameBytes[interfaceCount] = nameBytes;
+        excluded[interfaceCount] = !address.accepts(name);
+
+        log.debug("new network interface " + name + (excluded[interfaceCount] ? ", filtered out" : ""));
+
+        return interfaceCount ++;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The per-interface counters of /proc/net/dev and the protocol counters of /proc/net/snmp and /proc/net/netstat, held
+ * in primitive arrays and overwritten in place by NetStatsReader.
+ *
+ * An interface is identified by its index in the reader's interface registry, which does not change for the lifetime
+ * of the reader. The counters of the interface at position i are at i * INTERFACE_FIELD_COUNT, indexed by the
+ * interface field constants below. The protocol counters are indexed by the protocol counter constants; a counter the
+ * kernel does not expose, or that was not read, is not present.
+ *
+ * Not thread safe.
+ *
+ * @see NetStatsReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class NetStatsSnapshot {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int INITIAL_INTERFACE_CAPACITY = 32;
+
+    //
+    // /proc/net/dev
+    //
+    public static final int RX_BYTES = 0;
+    public static final int RX_PACKETS = 1;
+    public static final int RX_ERRORS = 2;
+    public static final int RX_DROPPED = 3;
+    public static final int TX_BYTES = 4;
+    public static final int TX_PACKETS = 5;
+    public static final int TX_ERRORS = 6;
+    public static final int TX_DROPPED = 7;
+    public static final int INTERFACE_FIELD_COUNT = 8;
+
+    //
+    // /proc/net/snmp
+    //
+    public static final int IP_IN_RECEIVES = 0;
+    public static final int IP_IN_HDR_ERRORS = 1;
+    public static final int IP_IN_DISCARDS = 2;
+    public static final int IP_OUT_REQUESTS = 3;
+    public static final int TCP_ACTIVE_OPENS = 4;
+    public static final int TCP_PASSIVE_OPENS = 5;
+    public static final int TCP_ATTEMPT_FAILS = 6;
+    public static final int TCP_ESTAB_RESETS = 7;
+    public static final int TCP_CURR_ESTAB = 8;
+    public static final int TCP_IN_SEGS = 9;
+    public static final int TCP_OUT_SEGS = 10;
+    public static final int TCP_RETRANS_SEGS = 11;
+    public static final int TCP_IN_ERRS = 12;
+    public static final int TCP_OUT_RSTS = 13;
+    public static final int UDP_IN_DATAGRAMS = 14;
+    public static final int UDP_NO_PORTS = 15;
+    public static final int UDP_IN_ERRORS = 16;
+    public static final int UDP_OUT_DATAGRAMS = 17;
+    public static final int UDP_RCVBUF_ERRORS = 18;
+    public static final int UDP_SNDBUF_ERRORS = 19;
+
+    //
+    // /proc/net/netstat
+    //
+    public static final int TCP_LISTEN_OVERFLOWS = 20;
+    public static final int TCP_LISTEN_DROPS = 21;
+    public static final int TCP_TIMEOUTS = 22;
+    public static final int TCP_SYN_RETRANS = 23;
+
+    public static final int PROTOCOL_COUNTER_COUNT = 24;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    long timestampNanos;
+
+    int interfaceCount;
+
+    //
+    // the registry index, by position
+    //
+    int[] interfaces;
+
+    long[] counters;
+
+    long[] protocol;
+
+    boolean[] present;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public NetStatsSnapshot() {
+
+        this.interfaces = new int[INITIAL_INTERFACE_CAPACITY];
+        this.counters = new long[INITIAL_INTERFACE_CAPACITY * INTERFACE_FIELD_COUNT];
+        this.protocol = new long[PROTOCOL_COUNTER_COUNT];
+        this.present = new boolean[PROTOCOL_COUNTER_COUNT];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getTimestampNanos() {
+
+        return timestampNanos;
+    }
+
+    public int getInterfaceCount() {
+
+        return interfaceCount;
+    }
+
+    /**
+     * @param position the position of the interface in the snapshot, between 0 and getInterfaceCount() - 1.
+     *
+     * @return the index of the interface in the reader's registry.
+     */
+    public int getInterface(int position) {
+
+        return interfaces[position];
+    }
+
+    /**
+     * @param field one of the interface field constants.
+     */
+    public long getCounter(int position, int field) {
+
+        return counters[position * INTERFACE_FIELD_COUNT + field];
+    }
+
+    /**
+     * @param counter one of the protocol counter constants.
+     */
+    public boolean isPresent(int counter) {
+
+        return present[counter];
+    }
+
+    /**
+     * @param counter one of the protocol counter constants.
+     */
+    public long getProtocolCounter(int counter) {
+
+        return protocol[counter];
+    }
+
+    public void clear() {
+
+        this.timestampNanos = 0L;
+        this.interfaceCount = 0;
+
+        for(int i = 0; i < PROTOCOL_COUNTER_COUNT; i ++) {
+
+            present[i] = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return "network snapshot[" + interfaceCount + " interface(s)]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Makes room for the given number of interfaces, keeping the content.
+     */
+    void ensureCapacity(int count) {
+
+        if (count <= interfaces.length) {
+
+            return;
+        }
+
+        int capacity = Math.max(count, interfaces.length * 2);
+
+        int[] ifs = new int[capacity];
+        System.arraycopy(interfaces, 0, ifs, 0, interfaceCount);
+        interfaces = ifs;
+
+        long[] c = new long[capacity * INTERFACE_FIELD_COUNT];
+        System.arraycopy(counters, 0, c, 0, interfaceCount * INTERFACE_FIELD_COUNT);
+        counters = c;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The address of the local network source: "net", optionally followed by a colon and a comma-separated list of
+ * interface name globs. A glob prefixed with "!" excludes the interfaces it matches:
+ *
+ * <pre>
+ * net
+ * net:eth*,bond?
+ * net:!lo,!veth*
+ * </pre>
+ *
+ * With no include globs, all interfaces that are not explicitly excluded are reported. The protocol counters are
+ * system-wide and not affected by the globs. Two addresses are equal if they have the same globs, in the same order.
+ *
+ * Immutable and thread safe.
+ *
+ * @see NetworkMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class NetworkAddress implements Address {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PROTOCOL = "net";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param globs the comma-separated glob list that follows "net:", or null for all interfaces.
+     *
+     * @exception IllegalArgumentException on empty globs.
+     */
+    public static NetworkAddress parse(String globs) {
+
+        List<String> result = new ArrayList<>();
+
+        if (globs != null) {
+
+            for(String g: globs.split(",")) {
+
+                g = g.trim();
+
+                if (g.isEmpty() || "!".equals(g)) {
+
+                    throw new IllegalArgumentException("empty interface glob in \"" + globs + "\"");
+                }
+
+                result.add(g);
+            }
+        }
+
+        return new NetworkAddress(result);
+    }
+
+    /**
+     * Converts a glob, where "*" matches any sequence of characters and "?" any single character, to a pattern.
+     */
+    static Pattern toPattern(String glob) {
+
+        StringBuilder sb = new StringBuilder();
+
+        int literal = 0;
+
+        for(int i = 0; i < glob.length(); i ++) {
+
+            char c = glob.charAt(i);
+
+            if (c == '*' || c == '?') {
+
+                if (i > literal) {
+
+                    sb.append(Pattern.quote(glob.substring(literal, i)));
+                }
+
+                sb.append(c == '*' ? ".*" : ".");
+                literal = i + 1;
+            }
+        }
+
+        if (literal < glob.length()) {
+
+            sb.append(Pattern.quote(glob.substring(literal)));
+        }
+
+        return Pattern.compile(sb.toString());
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final List<String> globs;
+
+    private final List<Pattern> includes;
+
+    private final List<Pattern> excludes;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public NetworkAddress() {
+
+        this(Collections.emptyList());
+    }
+
+    public NetworkAddress(List<String> globs) {
+
+        this.globs = Collections.unmodifiableList(new ArrayList<>(globs));
+        this.includes = new ArrayList<>();
+        this.excludes = new ArrayList<>();
+
+        for(String g: globs) {
+
+            if (g.startsWith("!")) {
+
+                excludes.add(toPattern(g.substring(1)));
+            }
+            else {
+
+                includes.add(toPattern(g));
+            }
+        }
+    }
+
+    // Address implementation ------------------------------------------------------------------------------------------
+
+    @Override
+    public String getLiteral() {
+
+        return globs.isEmpty() ? PROTOCOL : PROTOCOL + ":" + String.join(",", globs);
+    }
+
+    @Override
+    public String getProtocol() {
+
+        return PROTOCOL;
+    }
+
+    /**
+     * @return null, the interfaces are always local.
+     */
+    @Override
+    public String getHost() {
+
+        return null;
+    }
+
+    @Override
+    public Integer getPort() {
+
+        return null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public List<String> getGlobs() {
+
+        return globs;
+    }
+
+    /**
+     * @return true if the interface passes the globs. Evaluated once per interface, when it is first seen.
+     */
+    public boolean accepts(String interfaceName) {
+
+        for(Pattern p: excludes) {
+
+            if (p.matcher(interfaceName).matches()) {
+
+                return false;
+            }
+        }
+
+        if (includes.isEmpty()) {
+
+            return true;
+        }
+
+        for(Pattern p: includes) {
+
+            if (p.matcher(interfaceName).matches()) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o instanceof NetworkAddress && globs.equals(((NetworkAddress)o).globs);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return PROTOCOL.hashCode() + 17 * globs.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return getLiteral();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The metrics a NetworkMetricSource serves, by metric definition ID.
+ *
+ * INTERFACE metrics produce one property per network interface ("RxBytesPerSecond[eth0]"), the others one
+ * system-wide property. Rates are per second, computed from the counter deltas between the last two readings.
+ *
+ * @see NetworkMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public enum NetworkMetric {
+
+    RX_BYTES_PER_SECOND(
+            "RxBytesPerSecond", "Interface Bytes Received per Second", Kind.INTERFACE,
+            NetStatsSnapshot.RX_BYTES, NetStatsReader.DEV),
+    TX_BYTES_PER_SECOND(
+            "TxBytesPerSecond", "Interface Bytes Sent per Second", Kind.INTERFACE,
+            NetStatsSnapshot.TX_BYTES, NetStatsReader.DEV),
+    RX_PACKETS_PER_SECOND(
+            "RxPacketsPerSecond", "Interface Packets Received per Second", Kind.INTERFACE,
+            NetStatsSnapshot.RX_PACKETS, NetStatsReader.DEV),
+    TX_PACKETS_PER_SECOND(
+            "TxPacketsPerSecond", "Interface Packets Sent per Second", Kind.INTERFACE,
+            NetStatsSnapshot.TX_PACKETS, NetStatsReader.DEV),
+    RX_ERRORS_PER_SECOND(
+            "RxErrorsPerSecond", "Interface Receive Errors per Second", Kind.INTERFACE,
+            NetStatsSnapshot.RX_ERRORS, NetStatsReader.DEV),
+    TX_ERRORS_PER_SECOND(
+            "TxErrorsPerSecond", "Interface Transmit Errors per Second", Kind.INTERFACE,
+            NetStatsSnapshot.TX_ERRORS, NetStatsReader.DEV),
+    RX_DROPPED_PER_SECOND(
+            "RxDroppedPerSecond", "Interface Received Packets Dropped per Second", Kind.INTERFACE,
+            NetStatsSnapshot.RX_DROPPED, NetStatsReader.DEV),
+    TX_DROPPED_PER_SECOND(
+            "TxDroppedPerSecond", "Interface Sent Packets Dropped per Second", Kind.INTERFACE,
+            NetStatsSnapshot.TX_DROPPED, NetStatsReader.DEV),
+
+    IP_IN_RECEIVES_PER_SECOND(
+            "IpInReceivesPerSecond", "IP Datagrams Received per Second", Kind.RATE,
+            NetStatsSnapshot.IP_IN_RECEIVES, NetStatsReader.SNMP),
+    IP_IN_HDR_ERRORS_PER_SECOND(
+            "IpInHdrErrorsPerSecond", "IP Header Errors per Second", Kind.RATE,
+            NetStatsSnapshot.IP_IN_HDR_ERRORS, NetStatsReader.SNMP),
+    IP_IN_DISCARDS_PER_SECOND(
+            "IpInDiscardsPerSecond", "IP Input Datagrams Discarded per Second", Kind.RATE,
+            NetStatsSnapshot.IP_IN_DISCARDS, NetStatsReader.SNMP),
+    IP_OUT_REQUESTS_PER_SECOND(
+            "IpOutRequestsPerSecond", "IP Datagrams Sent per Second", Kind.RATE,
+            NetStatsSnapshot.IP_OUT_REQUESTS, NetStatsReader.SNMP),
+    TCP_ACTIVE_OPENS_PER_SECOND(
+            "TcpActiveOpensPerSecond", "TCP Active Opens per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_ACTIVE_OPENS, NetStatsReader.SNMP),
+    TCP_PASSIVE_OPENS_PER_SECOND(
+            "TcpPassiveOpensPerSecond", "TCP Passive Opens per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_PASSIVE_OPENS, NetStatsReader.SNMP),
+    TCP_ATTEMPT_FAILS_PER_SECOND(
+            "TcpAttemptFailsPerSecond", "TCP Failed Connection Attempts per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_ATTEMPT_FAILS, NetStatsReader.SNMP),
+    TCP_ESTAB_RESETS_PER_SECOND(
+            "TcpEstabResetsPerSecond", "TCP Established Connections Reset per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_ESTAB_RESETS, NetStatsReader.SNMP),
+    TCP_CURR_ESTAB(
+            "TcpCurrEstab", "TCP Established Connections", Kind.GAUGE,
+            NetStatsSnapshot.TCP_CURR_ESTAB, NetStatsReader.SNMP),
+    TCP_IN_SEGS_PER_SECOND(
+            "TcpInSegsPerSecond", "TCP Segments Received per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_IN_SEGS, NetStatsReader.SNMP),
+    TCP_OUT_SEGS_PER_SECOND(
+            "TcpOutSegsPerSecond", "TCP Segments Sent per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_OUT_SEGS, NetStatsReader.SNMP),
+    TCP_RETRANS_SEGS_PER_SECOND(
+            "TcpRetransSegsPerSecond", "TCP Segments Retransmitted per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_RETRANS_SEGS, NetStatsReader.SNMP),
+    TCP_RETRANS_PERCENTAGE(
+            "TcpRetransPercentage", "TCP Retransmitted Segments Percentage", Kind.RATIO,
+            NetStatsSnapshot.TCP_RETRANS_SEGS, NetStatsReader.SNMP),
+    TCP_IN_ERRS_PER_SECOND(
+            "TcpInErrsPerSecond", "TCP Receive Errors per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_IN_ERRS, NetStatsReader.SNMP),
+    TCP_OUT_RSTS_PER_SECOND(
+            "TcpOutRstsPerSecond", "TCP Resets Sent per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_OUT_RSTS, NetStatsReader.SNMP),
+    UDP_IN_DATAGRAMS_PER_SECOND(
+            "UdpInDatagramsPerSecond", "UDP Datagrams Received per Second", Kind.RATE,
+            NetStatsSnapshot.UDP_IN_DATAGRAMS, NetStatsReader.SNMP),
+    UDP_NO_PORTS_PER_SECOND(
+            "UdpNoPortsPerSecond", "UDP Datagrams to Unknown Ports per Second", Kind.RATE,
+            NetStatsSnapshot.UDP_NO_PORTS, NetStatsReader.SNMP),
+    UDP_IN_ERRORS_PER_SECOND(
+            "UdpInErrorsPerSecond", "UDP Receive Errors per Second", Kind.RATE,
+            NetStatsSnapshot.UDP_IN_ERRORS, NetStatsReader.SNMP),
+    UDP_OUT_DATAGRAMS_PER_SECOND(
+            "UdpOutDatagramsPerSecond", "UDP Datagrams Sent per Second", Kind.RATE,
+            NetStatsSnapshot.UDP_OUT_DATAGRAMS, NetStatsReader.SNMP),
+    UDP_RCVBUF_ERRORS_PER_SECOND(
+            "UdpRcvbufErrorsPerSecond", "UDP Receive Buffer Errors per Second", Kind.RATE,
+            NetStatsSnapshot.UDP_RCVBUF_ERRORS, NetStatsReader.SNMP),
+    UDP_SNDBUF_ERRORS_PER_SECOND(
+            "UdpSndbufErrorsPerSecond", "UDP Send Buffer Errors per Second", Kind.RATE,
+            NetStatsSnapshot.UDP_SNDBUF_ERRORS, NetStatsReader.SNMP),
+    TCP_LISTEN_OVERFLOWS_PER_SECOND(
+            "TcpListenOverflowsPerSecond", "TCP Listen Queue Overflows per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_LISTEN_OVERFLOWS, NetStatsReader.NETSTAT),
+    TCP_LISTEN_DROPS_PER_SECOND(
+            "TcpListenDropsPerSecond", "TCP Listen Drops per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_LISTEN_DROPS, NetStatsReader.NETSTAT),
+    TCP_TIMEOUTS_PER_SECOND(
+            "TcpTimeoutsPerSecond", "TCP Retransmission Timeouts per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_TIMEOUTS, NetStatsReader.NETSTAT),
+    TCP_SYN_RETRANS_PER_SECOND(
+            "TcpSynRetransPerSecond", "TCP SYN Retransmissions per Second", Kind.RATE,
+            NetStatsSnapshot.TCP_SYN_RETRANS, NetStatsReader.NETSTAT);
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the metric whose definition ID is the given one, or null if it is not a network metric.
+     */
+    public static NetworkMetric fromId(String id) {
+
+        for(NetworkMetric m: values()) {
+
+            if (m.id.equals(id)) {
+
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String id;
+
+    private final String label;
+
+    private final Kind kind;
+
+    //
+    // the NetStatsSnapshot interface field for INTERFACE metrics, the protocol counter otherwise
+    //
+    private final int slot;
+
+    //
+    // the NetStatsReader flag of the file the value comes from
+    //
+    private final int file;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    NetworkMetric(String id, String label, Kind kind, int slot, int file) {
+
+        this.id = id;
+        this.label = label;
+        this.kind = kind;
+        this.slot = slot;
+        this.file = file;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getId() {
+
+        return id;
+    }
+
+    public String getLabel() {
+
+        return label;
+    }
+
+    public Kind getKind() {
+
+        return kind;
+    }
+
+    public int getSlot() {
+
+        return slot;
+    }
+
+    /**
+     * @return the NetStatsReader flag of the file the value is read from.
+     */
+    public int getFile() {
+
+        return file;
+    }
+
+    public Class getType() {
+
+        return Kind.GAUGE.equals(kind) ? Long.class : Double.class;
+    }
+
+    @Override
+    public String toString() {
+
+        return id;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public enum Kind {
+
+        /**
+         * A per second rate, one value per network interface.
+         */
+        INTERFACE,
+
+        /**
+         * A system-wide per second rate.
+         */
+        RATE,
+
+        /**
+         * A system-wide current value.
+         */
+        GAUGE,
+
+        /**
+         * The percentage of TCP segments sent during the interval that were retransmissions.
+         */
+        RATIO
+    }
+
+}
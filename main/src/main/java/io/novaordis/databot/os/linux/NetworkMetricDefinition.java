@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionBase;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+/**
+ * The definition of a network interface or protocol metric, declared as:
+ *
+ * <pre>
+ * net/<i>metric</i>
+ * net:<i>globs</i>/<i>metric</i>
+ * </pre>
+ *
+ * for example "net/TcpRetransSegsPerSecond", or "net:eth*,!eth9/RxBytesPerSecond", which reports the bytes received
+ * per second by the interfaces whose names start with "eth", except eth9.
+ *
+ * @see NetworkAddress
+ * @see NetworkMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class NetworkMetricDefinition extends MetricDefinitionBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the declaration is a network metric declaration, which may still be invalid.
+     */
+    public static boolean isNetworkMetricDeclaration(String declaration) {
+
+        return declaration != null &&
+                (declaration.startsWith(NetworkAddress.PROTOCOL + "/") ||
+                        declaration.startsWith(NetworkAddress.PROTOCOL + ":"));
+    }
+
+    public static NetworkMetricDefinition parse(PropertyFactory pf, String declaration)
+            throws MetricDefinitionException {
+
+        if (!isNetworkMetricDeclaration(declaration)) {
+
+            throw new MetricDefinitionException("not a network metric declaration: \"" + declaration + "\"");
+        }
+
+        int i = declaration.indexOf('/');
+
+        if (i == -1) {
+
+            throw new MetricDefinitionException("missing network metric: \"" + declaration + "\"");
+        }
+
+        String id = declaration.substring(i + 1);
+
+        NetworkMetric metric = NetworkMetric.fromId(id);
+
+        if (metric == null) {
+
+            throw new MetricDefinitionException("unknown network metric \"" + id + "\"");
+        }
+
+        String globs = i == NetworkAddress.PROTOCOL.length() ?
+                null : declaration.substring(NetworkAddress.PROTOCOL.length() + 1, i);
+
+        NetworkAddress address;
+
+        try {
+
+            address = NetworkAddress.parse(globs);
+        }
+        catch(IllegalArgumentException e) {
+
+            throw new MetricDefinitionException(e.getMessage());
+        }
+
+        return new NetworkMetricDefinition(pf, address, metric);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final NetworkMetric metric;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public NetworkMetricDefinition(PropertyFactory pf, NetworkAddress address, NetworkMetric metric) {
+
+        super(pf, address);
+
+        if (metric == null) {
+
+            throw new IllegalArgumentException("null metric");
+        }
+
+        this.metric = metric;
+    }
+
+    // MetricDefinition implementation ---------------------------------------------------------------------------------
+
+    @Override
+    public String getId() {
+
+        return metric.getId();
+    }
+
+    @Override
+    public String getSimpleLabel() {
+
+        return metric.getLabel();
+    }
+
+    /**
+     * @return null, rates and counts are dimensionless.
+     */
+    @Override
+    public MeasureUnit getBaseUnit() {
+
+        return null;
+    }
+
+    @Override
+    public String getDescription() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public Class getType() {
+
+        return metric.getType();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public NetworkMetric getMetric() {
+
+        return metric;
+    }
+
+    @Override
+    public String toString() {
+
+        return getMetricSourceAddress() + "/" + metric.getId();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
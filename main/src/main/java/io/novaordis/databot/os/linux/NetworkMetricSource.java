@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.databot.task.PreparedQuery;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * Network interface and protocol metrics, read from /proc/net/dev, /proc/net/snmp and /proc/net/netstat. Only the
+ * files the requested metrics need are read. An interface metric produces one property per interface
+ * ("RxBytesPerSecond[eth0]"), the protocol metrics one property each.
+ *
+ * Interface and protocol counters are sampled independently, since an interface may come and go and a protocol counter
+ * may be missing from a kernel's /proc/net/netstat: a counter without a previous sample produces no rate.
+ *
+ * @see NetStatsReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class NetworkMetricSource extends LinuxMetricSourceBase<NetworkAddress, NetworkMetric> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int F = NetStatsSnapshot.INTERFACE_FIELD_COUNT;
+
+    private static final int P = NetStatsSnapshot.PROTOCOL_COUNTER_COUNT;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final NetStatsReader reader;
+
+    private final NetStatsSnapshot current;
+
+    //
+    // the interfaces by registry index, the protocol counters by their NetStatsSnapshot index: a protocol counter may
+    // be missing from a reading, so each has its own reading time
+    //
+    private final SampleHistory previousInterfaces;
+    private final SampleHistory previousProtocol;
+
+    //
+    // by protocol counter: the rate over the last interval, valid if the interval is positive
+    //
+    private final double[] protocolRates;
+    private final double[] protocolIntervals;
+
+    private final IndexedPropertyNames interfaceNames;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public NetworkMetricSource(NetworkAddress address, NetStatsReader reader, PropertyFactory propertyFactory) {
+
+        super(address, reader, propertyFactory, NetworkMetric::fromId, NetworkMetric[]::new, "network");
+
+        this.reader = reader;
+        this.current = new NetStatsSnapshot();
+        this.previousInterfaces = new SampleHistory(F, NetStatsSnapshot.INITIAL_INTERFACE_CAPACITY);
+        this.previousProtocol = new SampleHistory(1, P);
+        this.protocolRates = new double[P];
+        this.protocolIntervals = new double[P];
+        this.interfaceNames = new IndexedPropertyNames(NetworkMetric.values().length);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected PreparedQuery prepare(List<MetricDefinition> metricDefinitions, NetworkMetric[] metrics) {
+
+        int files = files(metrics);
+
+        return () -> collect(metricDefinitions, metrics, files);
+    }
+
+    @Override
+    protected List<Property> collect(List<MetricDefinition> metricDefinitions, NetworkMetric[] metrics)
+            throws MetricSourceException {
+
+        return collect(metricDefinitions, metrics, files(metrics));
+    }
+
+    @Override
+    protected void reset() {
+
+        previousInterfaces.clear();
+        previousProtocol.clear();
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static int files(NetworkMetric[] metrics) {
+
+        int files = 0;
+
+        for(NetworkMetric m: metrics) {
+
+            files |= m.getFile();
+        }
+
+        return files;
+    }
+
+    private synchronized List<Property> collect(
+            List<MetricDefinition> metricDefinitions, NetworkMetric[] metrics, int files)
+            throws MetricSourceException {
+
+        try {
+
+            reader.read(current, files);
+        }
+        catch(IOException | InvalidExecutionOutputException e) {
+
+            throw new MetricSourceException("failed to read " + reader.getProcRoot() + "/net", e);
+        }
+
+        previousInterfaces.ensureCapacity(reader.getInterfaceRegistrySize());
+
+        computeProtocolRates();
+
+        List<Property> result = new ArrayList<>();
+
+        int interfaces = current.interfaceCount;
+
+        for(int i = 0; i < metrics.length; i ++) {
+
+            MetricDefinition md = metricDefinitions.get(i);
+            NetworkMetric m = metrics[i];
+
+            Class type = md.getType();
+
+            type = type == null ? m.getType() : type;
+
+            int slot = m.getSlot();
+
+            double value;
+
+            switch(m.getKind()) {
+
+                case INTERFACE:
+
+                    for(int p = 0; p < interfaces; p ++) {
+
+                        int index = current.interfaces[p];
+                        long previous = previousInterfaces.getNanos(index);
+
+                        if (previous == 0) {
+
+                            continue;
+                        }
+
+                        value = Rates.perSecond(current.counters[p * F + slot], previousInterfaces.get(index, slot),
+                                Rates.seconds(previous, current.timestampNanos));
+
+                        String name = interfaceNames.get(
+                                m.ordinal(), md.getId(), index, reader.getInterfaceName(index));
+
+                        result.add(getPropertyFactory().createInstance(
+                                name, type, toType(value, type), null, null));
+                    }
+
+                    continue;
+
+                case GAUGE:
+
+                    if (!current.present[slot]) {
+
+                        continue;
+                    }
+
+                    value = current.protocol[slot];
+                    break;
+
+                case RATIO:
+
+                    if (protocolIntervals[slot] <= 0 || protocolIntervals[NetStatsSnapshot.TCP_OUT_SEGS] <= 0) {
+
+                        continue;
+                    }
+
+                    double sent = protocolRates[NetStatsSnapshot.TCP_OUT_SEGS];
+
+                    value = sent == 0 ? 0d : 100d * protocolRates[slot] / sent;
+                    break;
+
+                default:
+
+                    if (protocolIntervals[slot] <= 0) {
+
+                        continue;
+                    }
+
+                    value = protocolRates[slot];
+            }
+
+            result.add(getPropertyFactory().createInstance(
+                    md.getId(), type, toType(value, type), null, null));
+        }
+
+        for(int p = 0; p < interfaces; p ++) {
+
+            previousInterfaces.record(current.interfaces[p], current.counters, p * F, current.timestampNanos);
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the rates of the protocol counters present in the current snapshot, then makes them the previous ones.
+     */
+    private void computeProtocolRates() {
+
+        for(int i = 0; i < P; i ++) {
+
+            if (!current.present[i]) {
+
+                protocolIntervals[i] = 0d;
+                continue;
+            }
+
+            long previous = previousProtocol.getNanos(i);
+
+            if (previous == 0) {
+
+                protocolIntervals[i] = 0d;
+            }
+            else {
+
+                double seconds = Rates.seconds(previous, current.timestampNanos);
+
+                protocolIntervals[i] = seconds;
+                protocolRates[i] = Rates.perSecond(current.protocol[i], previousProtocol.get(i, 0), seconds);
+            }
+
+            previousProtocol.record(i, current.protocol, i, current.timestampNanos);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * Claims the "net" addresses. Only /proc/net/dev is checked when the source is built, /proc/net/snmp and
+ * /proc/net/netstat are opened by the first reading that needs protocol counters.
+ *
+ * @see NetworkMetricSource
+ * @see NetworkAddress
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class NetworkMetricSourceFactory extends DelegatingMetricSourceFactory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(NetworkMetricSourceFactory.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public NetworkMetricSourceFactory(MetricSourceFactory delegate, File procRoot) {
+
+        super(delegate);
+
+        this.procRoot = procRoot;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected boolean accepts(Address a) {
+
+        return a instanceof NetworkAddress;
+    }
+
+    @Override
+    protected MetricSource build(Address a) throws MetricSourceException {
+
+        if (!NetStatsReader.isAvailable(procRoot)) {
+
+            throw new MetricSourceException("cannot read network metrics, " + procRoot + "/net/dev not available");
+        }
+
+        NetworkAddress na = (NetworkAddress)a;
+
+        MetricSource s = new NetworkMetricSource(na, new NetStatsReader(procRoot, na), getPropertyFactory());
+
+        log.debug("reading network metrics from " + procRoot + "/net for " + a);
+
+        return s;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * A HotSpot performance data file (hsperfdata), memory-mapped read-only. The JVM publishes its instrumentation
+ * counters - GC, heap, class loading, safepoints, threads - in this file and updates them in place, so once the file
+ * is mapped and indexed, reading a counter is a single memory load: no system call, no JMX connector, and no work done
+ * in the target JVM.
+ *
+ * The file starts with a 32 byte prologue, followed by the entries:
+ *
+ * <pre>
+ * prologue: magic (0xcafec0c0), byte order (0 big endian, 1 little endian), major version (2), minor version,
+ *           accessible, used (int), overflow (int), modification time stamp (long), entry offset (int),
+ *           entry count (int)
+ * entry:    entry length (int), name offset (int), vector length (int), data type (byte, 'J' for long, 'B' for
+ *           byte array), flags, data units, data variability (bytes), data offset (int), then the NUL-terminated
+ *           name and the data
+ * </pre>
+ *
+ * The entries are indexed by name when the file is mapped. The JVM appends entries after its start, so the index is
+ * rebuilt when the entry count changes: see reindexIfNeeded().
+ *
+ * The mapping is released when the instance is garbage collected; the JVM that owns the file keeps writing to it, and
+ * deletes it on exit. Not thread safe.
+ *
+ * A single string can be read without mapping the file, see readString(): the mapping of a 32 KB file is wasted on a
+ * JVM that is only looked at to decide whether it is the one to read.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PerfDataFile {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int MAGIC = 0xcafec0c0;
+
+    public static final int SUPPORTED_MAJOR_VERSION = 2;
+
+    public static final int PROLOGUE_SIZE = 32;
+
+    public static final byte TYPE_LONG = 'J';
+
+    public static final byte TYPE_BYTE_ARRAY = 'B';
+
+    private static final int BYTE_ORDER_OFFSET = 4;
+    private static final int MAJOR_VERSION_OFFSET = 5;
+    private static final int ACCESSIBLE_OFFSET = 7;
+    private static final int USED_OFFSET = 8;
+    private static final int ENTRY_OFFSET_OFFSET = 24;
+    private static final int ENTRY_COUNT_OFFSET = 28;
+
+    private static final int ENTRY_HEADER_SIZE = 20;
+
+    //
+    // the entries are walked in reads of this size, the usual file is 32 KB and the early entries are the constants
+    //
+    static final int READ_SIZE = 4096;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Maps the file. The channel is closed right away, the mapping does not need it.
+     *
+     * @exception IOException if the file cannot be opened or mapped.
+     * @exception InvalidExecutionOutputException if the file is not a HotSpot performance data file of a supported
+     * version.
+     */
+    public static PerfDataFile map(File file) throws IOException, InvalidExecutionOutputException {
+
+        MappedByteBuffer buffer;
+
+        try (FileChannel c = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            long size = c.size();
+
+            if (size < PROLOGUE_SIZE) {
+
+                throw new InvalidExecutionOutputException(file + " is not a performance data file, size " + size);
+            }
+
+            buffer = c.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        return new PerfDataFile(file, buffer);
+    }
+
+    /**
+     * Reads one string (a NUL-terminated byte array) with positional reads, walking the entries only as far as the
+     * string. The file is not mapped and no other entry name is decoded.
+     *
+     * @return the string, or null if there is no such string.
+     *
+     * @exception IOException if the file cannot be opened or read.
+     * @exception InvalidExecutionOutputException if the file is not a HotSpot performance data file of a supported
+     * version.
+     */
+    public static String readString(File file, String name) throws IOException, InvalidExecutionOutputException {
+
+        return readString(file, name, READ_SIZE);
+    }
+
+    /**
+     * @param readSize the initial read size, the buffer grows if an entry does not fit.
+     */
+    static String readString(File file, String name, int readSize)
+            throws IOException, InvalidExecutionOutputException {
+
+        byte[] target = name.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer b = ByteBuffer.allocate(Math.max(readSize, PROLOGUE_SIZE));
+
+        try (FileChannel c = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            long size = c.size();
+
+            if (size < PROLOGUE_SIZE) {
+
+                throw new InvalidExecutionOutputException(file + " is not a performance data file, size " + size);
+            }
+
+            //
+            // the file offset of the first byte in the buffer
+            //
+            long base = 0;
+
+            read(c, b, base);
+
+            prologue(file, b);
+
+            int count = b.getInt(ENTRY_COUNT_OFFSET);
+            long used = Math.min(b.getInt(USED_OFFSET), size);
+            long offset = b.getInt(ENTRY_OFFSET_OFFSET);
+
+            for(int i = 0; i < count; i ++) {
+
+                if (offset < PROLOGUE_SIZE || offset + ENTRY_HEADER_SIZE > used) {
+
+                    throw new InvalidExecutionOutputException(file + ": entry " + i + " at invalid offset " + offset);
+                }
+
+                if (offset + ENTRY_HEADER_SIZE > base + b.limit()) {
+
+                    base = offset;
+                    read(c, b, base);
+                }
+
+                int p = (int)(offset - base);
+
+                int length = b.getInt(p);
+                int nameOffset = b.getInt(p + 4);
+                int vectorLength = b.getInt(p + 8);
+                byte type = b.get(p + 12);
+                int dataOffset = b.getInt(p + 16);
+
+                if (length <= 0 || offset + length > used || nameOffset >= length || dataOffset >= length) {
+
+                    throw new InvalidExecutionOutputException(file + ": invalid entry " + i + " at offset " + offset);
+                }
+
+                if (offset + length > base + b.limit()) {
+
+                    if (length > b.capacity()) {
+
+                        b = ByteBuffer.allocate(length).order(b.order());
+                    }
+
+                    base = offset;
+                    read(c, b, base);
+                    p = 0;
+                }
+
+                if (!nameEquals(b, p + nameOffset, p + length, target)) {
+
+                    offset += length;
+                    continue;
+                }
+
+                if (type != TYPE_BYTE_ARRAY) {
+
+                    return null;
+                }
+
+                int start = p + dataOffset;
+                int limit = Math.min(start + vectorLength, p + length);
+                int end = start;
+
+                while(end < limit && b.get(end) != 0) {
+
+                    end ++;
+                }
+
+                return new String(b.array(), start, end - start, StandardCharsets.UTF_8);
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File file;
+
+    private final ByteBuffer buffer;
+
+    //
+    // entry name -> the absolute offset of the data, the data type in the top byte, the vector length in the following
+    // three bytes
+    //
+    private final Map<String, Long> index;
+
+    private int indexedEntryCount;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    PerfDataFile(File file, ByteBuffer buffer) throws InvalidExecutionOutputException {
+
+        this.file = file;
+        this.buffer = buffer;
+
+        prologue(file, buffer);
+
+        this.index = new HashMap<>();
+
+        reindex();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return false while the JVM is still initializing the file.
+     */
+    public boolean isAccessible() {
+
+        return buffer.get(ACCESSIBLE_OFFSET) != 0;
+    }
+
+    public int getEntryCount() {
+
+        return buffer.getInt(ENTRY_COUNT_OFFSET);
+    }
+
+    /**
+     * Rebuilds the index if the JVM added entries since the file was indexed.
+     *
+     * @return true if the index was rebuilt, in which case the offsets returned by getLongOffset() must be looked up
+     * again.
+     */
+    public boolean reindexIfNeeded() throws InvalidExecutionOutputException {
+
+        if (getEntryCount() == indexedEntryCount) {
+
+            return false;
+        }
+
+        reindex();
+
+        return true;
+    }
+
+    /**
+     * @return the offset of the value of a long counter, to be passed to getLong(), or -1 if there is no such counter.
+     */
+    public int getLongOffset(String name) {
+
+        Long e = index.get(name);
+
+        if (e == null || (byte)(e >>> 56) != TYPE_LONG) {
+
+            return -1;
+        }
+
+        return (int)(e & 0xffffffffL);
+    }
+
+    /**
+     * @param offset an offset returned by getLongOffset().
+     */
+    public long getLong(int offset) {
+
+        return buffer.getLong(offset);
+    }
+
+    /**
+     * @return the value of a long counter, or -1 if there is no such counter.
+     */
+    public long getLong(String name) {
+
+        int offset = getLongOffset(name);
+
+        return offset == -1 ? -1L : buffer.getLong(offset);
+    }
+
+    /**
+     * @return the value of a string (a NUL-terminated byte array), or null if there is no such string.
+     */
+    public String getString(String name) {
+
+        Long e = index.get(name);
+
+        if (e == null || (byte)(e >>> 56) != TYPE_BYTE_ARRAY) {
+
+            return null;
+        }
+
+        int offset = (int)(e & 0xffffffffL);
+        int length = (int)((e >>> 32) & 0xffffff);
+
+        int end = offset;
+
+        while(end < offset + length && buffer.get(end) != 0) {
+
+            end ++;
+        }
+
+        byte[] bytes = new byte[end - offset];
+
+        for(int i = 0; i < bytes.length; i ++) {
+
+            bytes[i] = buffer.get(offset + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public File getFile() {
+
+        return file;
+    }
+
+    @Override
+    public String toString() {
+
+        return "perf data file[" + file + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Validates the prologue and sets the byte order of the buffer to the one the file was written in.
+     */
+    private static void prologue(File file, ByteBuffer buffer) throws InvalidExecutionOutputException {
+
+        //
+        // the magic is always written big endian
+        //
+
+        int magic = buffer.order(ByteOrder.BIG_ENDIAN).getInt(0);
+
+        if (magic != MAGIC) {
+
+            throw new InvalidExecutionOutputException(
+                    file + " is not a performance data file, magic 0x" + Integer.toHexString(magic));
+        }
+
+        int major = buffer.get(MAJOR_VERSION_OFFSET);
+
+        if (major != SUPPORTED_MAJOR_VERSION) {
+
+            throw new InvalidExecutionOutputException(file + " has unsupported performance data version " + major);
+        }
+
+        buffer.order(buffer.get(BYTE_ORDER_OFFSET) == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Fills the buffer from the given file offset, or with what is left of the file.
+     */
+    private static void read(FileChannel c, ByteBuffer b, long position) throws IOException {
+
+        b.clear();
+
+        int n;
+
+        while(b.hasRemaining() && (n = c.read(b, position)) > 0) {
+
+            position += n;
+        }
+
+        b.flip();
+    }
+
+    /**
+     * @return true if the NUL-terminated name that starts at the given buffer index, and ends before the limit, is
+     * the target.
+     */
+    private static boolean nameEquals(ByteBuffer b, int index, int limit, byte[] target) {
+
+        if (index + target.length >= limit) {
+
+            return false;
+        }
+
+        for(int i = 0; i < target.length; i ++) {
+
+            if (b.get(index + i) != target[i]) {
+
+                return false;
+            }
+        }
+
+        return b.get(index + target.length) == 0;
+    }
+
+    private void reindex() throws InvalidExecutionOutputException {
+
+        index.clear();
+
+        int count = getEntryCount();
+        int used = Math.min(buffer.getInt(USED_OFFSET), buffer.capacity());
+        int offset = buffer.getInt(ENTRY_OFFSET_OFFSET);
+
+        StringBuilder name = new StringBuilder();
+
+        for(int i = 0; i < count; i ++) {
+
+            if (offset < PROLOGUE_SIZE || offset + ENTRY_HEADER_SIZE > used) {
+
+                throw new InvalidExecutionOutputException(file + ": entry " + i + " at invalid offset " + offset);
+            }
+
+            int length = buffer.getInt(offset);
+            int nameOffset = buffer.getInt(offset + 4);
+            int vectorLength = buffer.getInt(offset + 8);
+            byte type = buffer.get(offset + 12);
+            int dataOffset = buffer.getInt(offset + 16);
+
+            if (length <= 0 || offset + length > used || nameOffset >= length || dataOffset >= length) {
+
+                throw new InvalidExecutionOutputException(file + ": invalid entry " + i + " at offset " + offset);
+            }
+
+            name.setLength(0);
+
+            for(int j = offset + nameOffset; j < offset + length && buffer.get(j) != 0; j ++) {
+
+                name.append((char)buffer.get(j));
+            }
+
+            long e = ((long)type << 56) | ((long)(vectorLength & 0xffffff) << 32) | (offset + dataOffset);
+
+            index.put(name.toString(), e);
+
+            offset += length;
+        }
+
+        indexedEntryCount = count;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
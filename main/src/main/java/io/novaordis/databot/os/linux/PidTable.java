@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * An open-addressed, linear-probing hash table keyed by pid, which keeps the per-process state of a scan in parallel
+ * primitive arrays: no entry objects and no boxing. A slot index returned by find() or insert() stays valid until the
+ * next clear() or insert() that grows the table.
+ *
+ * There is no removal: the scanner fills a cleared table on every scan, and swaps it with the one filled by the
+ * previous scan, so the processes that exited simply do not make it into the next table.
+ *
+ * Not thread safe.
+ *
+ * @see TopProcessScanner
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class PidTable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    //
+    // /proc/[pid]/stat truncates the command name to 15 characters (TASK_COMM_LEN - 1)
+    //
+    public static final int COMMAND_LENGTH = 15;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static int hash(int pid) {
+
+        int h = pid * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // 0 marks an empty slot, pid 0 is never listed in /proc
+    //
+    int[] pids;
+
+    //
+    // utime + stime, in clock ticks
+    //
+    long[] ticks;
+
+    //
+    // the process start time, in clock ticks since boot; together with the pid, identifies the process instance
+    //
+    long[] startTimes;
+
+    //
+    // /proc/[pid]/stat, kept open and carried from table to table, so it is opened once per process; null if the
+    // scanner did not keep it. The scanner owns the channels: clear() forgets them, closeStatChannels() closes them.
+    //
+    FileChannel[] statChannels;
+
+    byte[] commands;
+    byte[] commandLengths;
+
+    private int mask;
+
+    private int size;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public PidTable() {
+
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the initial number of slots, rounded up to a power of two. The table grows when it is half full.
+     */
+    public PidTable(int capacity) {
+
+        if (capacity <= 0) {
+
+            throw new IllegalArgumentException("invalid capacity " + capacity);
+        }
+
+        int c = 1;
+
+        while(c < capacity) {
+
+            c <<= 1;
+        }
+
+        allocate(c);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the slot of the pid, or -1 if the pid is not in the table.
+     */
+    public int find(int pid) {
+
+        for(int i = hash(pid) & mask; ; i = (i + 1) & mask) {
+
+            int p = pids[i];
+
+            if (p == pid) {
+
+                return i;
+            }
+
+            if (p == 0) {
+
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Inserts a pid that is not in the table. The state of the new slot is undefined until the caller sets it.
+     *
+     * @return the slot.
+     */
+    public int insert(int pid) {
+
+        if (pid <= 0) {
+
+            throw new IllegalArgumentException("invalid pid " + pid);
+        }
+
+        if ((size + 1) * 2 > pids.length) {
+
+            grow();
+        }
+
+        int i = hash(pid) & mask;
+
+        while(pids[i] != 0) {
+
+            i = (i + 1) & mask;
+        }
+
+        pids[i] = pid;
+        size ++;
+        return i;
+    }
+
+    /**
+     * Empties the table, keeping its capacity.
+     */
+    public void clear() {
+
+        Arrays.fill(pids, 0);
+        Arrays.fill(statChannels, null);
+        size = 0;
+    }
+
+    /**
+     * Makes room for the given number of pids, so they can be inserted without the table growing, which would move the
+     * slots. Must be called on an empty table.
+     */
+    public void ensureCapacity(int pidCount) {
+
+        if (size != 0) {
+
+            throw new IllegalStateException(this + " not empty");
+        }
+
+        if (pidCount * 2 > pids.length) {
+
+            allocate(Integer.highestOneBit(pidCount * 2) << 1);
+        }
+    }
+
+    /**
+     * Closes the stat channels still in the table.
+     *
+     * @return the number of channels closed.
+     */
+    public int closeStatChannels() {
+
+        int closed = 0;
+
+        for(int i = 0; i < statChannels.length; i ++) {
+
+            FileChannel c = statChannels[i];
+
+            if (c == null) {
+
+                continue;
+            }
+
+            statChannels[i] = null;
+            closed ++;
+
+            try {
+
+                c.close();
+            }
+            catch(IOException e) {
+
+                //
+                // nothing to do about it, the file was only read
+                //
+            }
+        }
+
+        return closed;
+    }
+
+    public int size() {
+
+        return size;
+    }
+
+    public int capacity() {
+
+        return pids.length;
+    }
+
+    public int getPid(int slot) {
+
+        return pids[slot];
+    }
+
+    public long getTicks(int slot) {
+
+        return ticks[slot];
+    }
+
+    public long getStartTime(int slot) {
+
+        return startTimes[slot];
+    }
+
+    /**
+     * Creates a String, so it is meant for the few processes that are reported, not for the scan.
+     */
+    public String getCommand(int slot) {
+
+        return new String(commands, slot * COMMAND_LENGTH, commandLengths[slot], StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+
+        return "PidTable[" + size + "/" + pids.length + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void allocate(int capacity) {
+
+        pids = new int[capacity];
+        ticks = new long[capacity];
+        startTimes = new long[capacity];
+        statChannels = new FileChannel[capacity];
+        commands = new byte[capacity * COMMAND_LENGTH];
+        commandLengths = new byte[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void grow() {
+
+        int[] oldPids = pids;
+        long[] oldTicks = ticks;
+        long[] oldStartTimes = startTimes;
+        FileChannel[] oldStatChannels = statChannels;
+        byte[] oldCommands = commands;
+        byte[] oldCommandLengths = commandLengths;
+
+        allocate(oldPids.length * 2);
+
+        for(int i = 0; i < oldPids.length; i ++) {
+
+            if (oldPids[i] == 0) {
+
+                continue;
+            }
+
+            int j = insert(oldPids[i]);
+
+            ticks[j] = oldTicks[i];
+            startTimes[j] = oldStartTimes[i];
+            statChannels[j] = oldStatChannels[i];
+            commandLengths[j] = oldCommandLengths[i];
+            System.arraycopy(oldCommands, i * COMMAND_LENGTH, commands, j * COMMAND_LENGTH, COMMAND_LENGTH);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The address of the Pressure Stall Information source: "pressure" for the system-wide pressure, from /proc/pressure,
+ * or "pressure:" followed by the cgroup globs of a CgroupAddress, for the pressure of each matching cgroup, which is
+ * only available in the cgroup v2 hierarchy:
+ *
+ * <pre>
+ * pressure
+ * pressure:system.slice/docker-*.scope
+ * pressure:/
+ * </pre>
+ *
+ * Two addresses are equal if they are both system-wide, or if they have the same globs, in the same order.
+ *
+ * Immutable and thread safe.
+ *
+ * @see PressureMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PressureAddress implements Address {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PROTOCOL = "pressure";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param globs the comma-separated cgroup glob list that follows "pressure:", or null for the system-wide pressure.
+     *
+     * @exception IllegalArgumentException on invalid globs.
+     */
+    public static PressureAddress parse(String globs) {
+
+        return globs == null ? new PressureAddress() : new PressureAddress(CgroupAddress.parse(globs));
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // null for the system-wide pressure
+    //
+    private final CgroupAddress cgroups;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * The system-wide pressure.
+     */
+    public PressureAddress() {
+
+        this(null);
+    }
+
+    /**
+     * @param cgroups the cgroups whose pressure to report, or null for the system-wide pressure.
+     */
+    public PressureAddress(CgroupAddress cgroups) {
+
+        this.cgroups = cgroups;
+    }
+
+    // Address implementation ------------------------------------------------------------------------------------------
+
+    @Override
+    public String getLiteral() {
+
+        if (cgroups == null) {
+
+            return PROTOCOL;
+        }
+
+        return PROTOCOL + ":" +
+                (cgroups.getGlobs().isEmpty() ? CgroupAddress.DEFAULT_GLOB : String.join(",", cgroups.getGlobs()));
+    }
+
+    @Override
+    public String getProtocol() {
+
+        return PROTOCOL;
+    }
+
+    /**
+     * @return null, the pressure is always local.
+     */
+    @Override
+    public String getHost() {
+
+        return null;
+    }
+
+    @Override
+    public Integer getPort() {
+
+        return null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public boolean isSystem() {
+
+        return cgroups == null;
+    }
+
+    /**
+     * @return the cgroups whose pressure to report, or null for the system-wide pressure.
+     */
+    public CgroupAddress getCgroups() {
+
+        return cgroups;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (!(o instanceof PressureAddress)) {
+
+            return false;
+        }
+
+        CgroupAddress other = ((PressureAddress)o).cgroups;
+
+        return cgroups == null ? other == null : cgroups.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return PROTOCOL.hashCode() + (cgroups == null ? 0 : 17 * cgroups.getGlobs().hashCode());
+    }
+
+    @Override
+    public String toString() {
+
+        return getLiteral();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The metrics a PressureMetricSource serves, by metric definition ID: for each resource and line, the 10 and 60 second
+ * averages computed by the kernel, and the stall time percentage over the sampling interval, computed from the delta
+ * of the total stall time between the last two readings. All values are percentages.
+ *
+ * The system-wide metrics produce a property named after the metric ("MemoryFullAvg10"); the cgroup metrics produce
+ * one property per cgroup ("MemoryFullAvg10[system.slice/docker-1a2b.scope]").
+ *
+ * @see PressureMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public enum PressureMetric {
+
+    CPU_SOME_AVG10(
+            "CpuSomeAvg10", "CPU Pressure, Some, 10 Second Average", Kind.AVERAGE,
+            PressureSnapshot.CPU + PressureSnapshot.SOME_AVG10),
+    CPU_SOME_AVG60(
+            "CpuSomeAvg60", "CPU Pressure, Some, 60 Second Average", Kind.AVERAGE,
+            PressureSnapshot.CPU + PressureSnapshot.SOME_AVG60),
+    CPU_SOME_STALL_PERCENTAGE(
+            "CpuSomeStallPercentage", "CPU Pressure, Some, Stall Time Percentage", Kind.STALL,
+            PressureSnapshot.CPU + PressureSnapshot.SOME_TOTAL_USEC),
+    CPU_FULL_AVG10(
+            "CpuFullAvg10", "CPU Pressure, Full, 10 Second Average", Kind.AVERAGE,
+            PressureSnapshot.CPU + PressureSnapshot.FULL_AVG10),
+    CPU_FULL_AVG60(
+            "CpuFullAvg60", "CPU Pressure, Full, 60 Second Average", Kind.AVERAGE,
+            PressureSnapshot.CPU + PressureSnapshot.FULL_AVG60),
+    CPU_FULL_STALL_PERCENTAGE(
+            "CpuFullStallPercentage", "CPU Pressure, Full, Stall Time Percentage", Kind.STALL,
+            PressureSnapshot.CPU + PressureSnapshot.FULL_TOTAL_USEC),
+    MEMORY_SOME_AVG10(
+            "MemorySomeAvg10", "Memory Pressure, Some, 10 Second Average", Kind.AVERAGE,
+            PressureSnapshot.MEMORY + PressureSnapshot.SOME_AVG10),
+    MEMORY_SOME_AVG60(
+            "MemorySomeAvg60", "Memory Pressure, Some, 60 Second Average", Kind.AVERAGE,
+            PressureSnapshot.MEMORY + PressureSnapshot.SOME_AVG60),
+    MEMORY_SOME_STALL_PERCENTAGE(
+            "MemorySomeStallPercentage", "Memory Pressure, Some, Stall Time Percentage", Kind.STALL,
+            PressureSnapshot.MEMORY + PressureSnapshot.SOME_TOTAL_USEC),
+    MEMORY_FULL_AVG10(
+            "MemoryFullAvg10", "Memory Pressure, Full, 10 Second Average", Kind.AVERAGE,
+            PressureSnapshot.MEMORY + PressureSnapshot.FULL_AVG10),
+    MEMORY_FULL_AVG60(
+            "MemoryFullAvg60", "Memory Pressure, Full, 60 Second Average", Kind.AVERAGE,
+            PressureSnapshot.MEMORY + PressureSnapshot.FULL_AVG60),
+    MEMORY_FULL_STALL_PERCENTAGE(
+            "MemoryFullStallPercentage", "Memory Pressure, Full, Stall Time Percentage", Kind.STALL,
+            PressureSnapshot.MEMORY + PressureSnapshot.FULL_TOTAL_USEC),
+    IO_SOME_AVG10(
+            "IoSomeAvg10", "I/O Pressure, Some, 10 Second Average", Kind.AVERAGE,
+            PressureSnapshot.IO + PressureSnapshot.SOME_AVG10),
+    IO_SOME_AVG60(
+            "IoSomeAvg60", "I/O Pressure, Some, 60 Second Average", Kind.AVERAGE,
+            PressureSnapshot.IO + PressureSnapshot.SOME_AVG60),
+    IO_SOME_STALL_PERCENTAGE(
+            "IoSomeStallPercentage", "I/O Pressure, Some, Stall Time Percentage", Kind.STALL,
+            PressureSnapshot.IO + PressureSnapshot.SOME_TOTAL_USEC),
+    IO_FULL_AVG10(
+            "IoFullAvg10", "I/O Pressure, Full, 10 Second Average", Kind.AVERAGE,
+            PressureSnapshot.IO + PressureSnapshot.FULL_AVG10),
+    IO_FULL_AVG60(
+            "IoFullAvg60", "I/O Pressure, Full, 60 Second Average", Kind.AVERAGE,
+            PressureSnapshot.IO + PressureSnapshot.FULL_AVG60),
+    IO_FULL_STALL_PERCENTAGE(
+            "IoFullStallPercentage", "I/O Pressure, Full, Stall Time Percentage", Kind.STALL,
+            PressureSnapshot.IO + PressureSnapshot.FULL_TOTAL_USEC);
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Looks the metric up by ID. Returns null for an unknown ID.
+     */
+    public static PressureMetric fromId(String id) {
+
+        for(PressureMetric m: values()) {
+
+            if (m.id.equals(id)) {
+
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String id;
+
+    private final String label;
+
+    private final Kind kind;
+
+    //
+    // the PressureSnapshot field
+    //
+    private final int field;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    PressureMetric(String id, String label, Kind kind, int field) {
+
+        this.id = id;
+        this.label = label;
+        this.kind = kind;
+        this.field = field;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getId() {
+
+        return id;
+    }
+
+    public String getLabel() {
+
+        return label;
+    }
+
+    public Kind getKind() {
+
+        return kind;
+    }
+
+    /**
+     * @return the PressureSnapshot field: a resource offset plus a line field.
+     */
+    public int getField() {
+
+        return field;
+    }
+
+    public Class getType() {
+
+        return Double.class;
+    }
+
+    @Override
+    public String toString() {
+
+        return id;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public enum Kind {
+
+        /**
+         * An average computed by the kernel, read in hundredths of a percent.
+         */
+        AVERAGE,
+
+        /**
+         * The delta of the total stall time, in microseconds, as a percentage of the interval between readings.
+         */
+        STALL
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionBase;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+/**
+ * The definition of a Pressure Stall Information metric, declared as:
+ *
+ * <pre>
+ * pressure/<i>metric</i>
+ * pressure:<i>cgroup globs</i>/<i>metric</i>
+ * </pre>
+ *
+ * for example "pressure/MemoryFullStallPercentage", which reports the percentage of time in which all non-idle tasks
+ * of the system were stalled on memory, or "pressure:system.slice/docker-*.scope/CpuSomeAvg10", which reports the CPU
+ * pressure of each Docker container. The globs may contain "/", the metric follows the last one, so
+ * "pressure://CpuSomeAvg10" reports the cgroup hierarchy root.
+ *
+ * @see PressureAddress
+ * @see PressureMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PressureMetricDefinition extends MetricDefinitionBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the declaration is a pressure metric declaration, which may still be invalid.
+     */
+    public static boolean isPressureMetricDeclaration(String declaration) {
+
+        return declaration != null &&
+                (declaration.startsWith(PressureAddress.PROTOCOL + "/") ||
+                        declaration.startsWith(PressureAddress.PROTOCOL + ":"));
+    }
+
+    public static PressureMetricDefinition parse(PropertyFactory pf, String declaration)
+            throws MetricDefinitionException {
+
+        if (!isPressureMetricDeclaration(declaration)) {
+
+            throw new MetricDefinitionException("not a pressure metric declaration: \"" + declaration + "\"");
+        }
+
+        int i = declaration.lastIndexOf('/');
+
+        if (i == -1) {
+
+            throw new MetricDefinitionException("missing pressure metric: \"" + declaration + "\"");
+        }
+
+        String id = declaration.substring(i + 1);
+
+        PressureMetric metric = PressureMetric.fromId(id);
+
+        if (metric == null) {
+
+            throw new MetricDefinitionException("unknown pressure metric \"" + id + "\"");
+        }
+
+        String globs = i == PressureAddress.PROTOCOL.length() ?
+                null : declaration.substring(PressureAddress.PROTOCOL.length() + 1, i);
+
+        PressureAddress address;
+
+        try {
+
+            address = PressureAddress.parse(globs);
+        }
+        catch(IllegalArgumentException e) {
+
+            throw new MetricDefinitionException(e.getMessage());
+        }
+
+        return new PressureMetricDefinition(pf, address, metric);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final PressureMetric metric;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public PressureMetricDefinition(PropertyFactory pf, PressureAddress address, PressureMetric metric) {
+
+        super(pf, address);
+
+        if (metric == null) {
+
+            throw new IllegalArgumentException("null metric");
+        }
+
+        this.metric = metric;
+    }
+
+    // MetricDefinition implementation ---------------------------------------------------------------------------------
+
+    @Override
+    public String getId() {
+
+        return metric.getId();
+    }
+
+    @Override
+    public String getSimpleLabel() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public MeasureUnit getBaseUnit() {
+
+        return null;
+    }
+
+    @Override
+    public String getDescription() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public Class getType() {
+
+        return metric.getType();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public PressureMetric getMetric() {
+
+        return metric;
+    }
+
+    @Override
+    public String toString() {
+
+        return getMetricSourceAddress() + "/" + metric.getId();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
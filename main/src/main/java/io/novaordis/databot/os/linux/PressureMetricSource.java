@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * The Pressure Stall Information source: the system-wide pressure, read from /proc/pressure by a PressureReader, or
+ * the pressure of each cgroup selected by the address, read by a CgroupReader. The averages are reported as read; the
+ * stall time percentages are computed from the total stall time deltas between consecutive readings, so the first
+ * reading of the system, or of a cgroup, only reports averages.
+ *
+ * The files are small and kept open, so the source is cheap enough to be sampled every second.
+ *
+ * @see PressureMetric
+ * @see PressureAddress
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PressureMetricSource extends LinuxMetricSourceBase<PressureAddress, PressureMetric> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int F = PressureSnapshot.FIELD_COUNT;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // exactly one of the readers, and its snapshot, is not null
+    //
+    private final PressureReader systemReader;
+    private final PressureSnapshot system;
+    private final CgroupReader cgroupReader;
+    private final CgroupSnapshot cgroups;
+
+    //
+    // by registry index, always 0 for the system
+    //
+    private final SampleHistory previous;
+
+    private final IndexedPropertyNames cgroupNames;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * The system-wide pressure source.
+     */
+    public PressureMetricSource(PressureAddress address, PressureReader reader, PropertyFactory propertyFactory) {
+
+        this(address, reader, null, propertyFactory);
+    }
+
+    /**
+     * The cgroup pressure source.
+     */
+    public PressureMetricSource(PressureAddress address, CgroupReader reader, PropertyFactory propertyFactory) {
+
+        this(address, null, reader, propertyFactory);
+    }
+
+    private PressureMetricSource(PressureAddress address, PressureReader systemReader, CgroupReader cgroupReader,
+                                 PropertyFactory propertyFactory) {
+
+        super(address, systemReader != null ? systemReader : cgroupReader, propertyFactory,
+                PressureMetric::fromId, PressureMetric[]::new, "pressure");
+
+        this.systemReader = systemReader;
+        this.system = systemReader == null ? null : new PressureSnapshot();
+        this.cgroupReader = cgroupReader;
+        this.cgroups = cgroupReader == null ? null : new CgroupSnapshot();
+        this.previous = new SampleHistory(F, cgroupReader == null ? 1 : CgroupSnapshot.INITIAL_CGROUP_CAPACITY);
+        this.cgroupNames = new IndexedPropertyNames(PressureMetric.values().length);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected synchronized List<Property> collect(List<MetricDefinition> metricDefinitions, PressureMetric[] metrics)
+            throws MetricSourceException {
+
+        //
+        // the system is read as a single target, at index 0, whose values are laid out as a cgroup's pressure values
+        //
+
+        int count;
+        long[] values;
+        int stride;
+        int base;
+        long timestampNanos;
+
+        try {
+
+            if (systemReader != null) {
+
+                systemReader.read(system);
+
+                count = 1;
+                values = system.values;
+                stride = F;
+                base = 0;
+                timestampNanos = system.timestampNanos;
+            }
+            else {
+
+                cgroupReader.read(cgroups, CgroupReader.PRESSURE);
+
+                previous.ensureCapacity(cgroupReader.getRegistrySize());
+
+                count = cgroups.cgroupCount;
+                values = cgroups.values;
+                stride = CgroupSnapshot.FIELD_COUNT;
+                base = CgroupSnapshot.PRESSURE;
+                timestampNanos = cgroups.timestampNanos;
+            }
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            throw new MetricSourceException("failed to read the pressure stall information", e);
+        }
+
+        List<Property> result = new ArrayList<>();
+
+        for(int i = 0; i < metrics.length; i ++) {
+
+            MetricDefinition md = metricDefinitions.get(i);
+            PressureMetric m = metrics[i];
+
+            Class type = md.getType();
+
+            type = type == null ? m.getType() : type;
+
+            int field = m.getField();
+
+            for(int p = 0; p < count; p ++) {
+
+                int index = systemReader != null ? 0 : cgroups.cgroups[p];
+                long v = values[p * stride + base + field];
+
+                if (v < 0) {
+
+                    continue;
+                }
+
+                double value;
+
+                if (PressureMetric.Kind.AVERAGE.equals(m.getKind())) {
+
+                    value = v / 100d;
+                }
+                else {
+
+                    boolean added = systemReader == null && cgroups.added[p];
+                    long previousNanos = added ? 0L : previous.getNanos(index);
+                    long previousValue = previous.get(index, field);
+
+                    if (previousNanos == 0 || previousValue < 0) {
+
+                        continue;
+                    }
+
+                    //
+                    // microseconds stalled per second, as a percentage
+                    //
+
+                    value = Rates.perSecond(v, previousValue, Rates.seconds(previousNanos, timestampNanos)) / 10000d;
+                }
+
+                String name = systemReader != null ?
+                        md.getId() : cgroupNames.get(m.ordinal(), md.getId(), index, cgroupReader.getCgroupPath(index));
+
+                result.add(getPropertyFactory().createInstance(
+                        name, type, toType(value, type), null, null));
+            }
+        }
+
+        //
+        // the values of the current reading become the previous ones
+        //
+
+        for(int p = 0; p < count; p ++) {
+
+            int index = systemReader != null ? 0 : cgroups.cgroups[p];
+
+            previous.record(index, values, p * stride + base, timestampNanos);
+        }
+
+        return result;
+    }
+
+    @Override
+    protected void reset() {
+
+        previous.clear();
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
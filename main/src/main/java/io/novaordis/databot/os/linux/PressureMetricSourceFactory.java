@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * Claims the "pressure" addresses. The system-wide address reads /proc/pressure, the per-cgroup addresses read the
+ * groups' *.pressure files, which only cgroup v2 has: a v1 hierarchy is reported as an error when the source is
+ * built, rather than as missing readings later.
+ *
+ * @see PressureMetricSource
+ * @see PressureAddress
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PressureMetricSourceFactory extends DelegatingMetricSourceFactory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(PressureMetricSourceFactory.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    private final File cgroupRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public PressureMetricSourceFactory(MetricSourceFactory delegate, File procRoot, File cgroupRoot) {
+
+        super(delegate);
+
+        this.procRoot = procRoot;
+        this.cgroupRoot = cgroupRoot;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    public File getCgroupRoot() {
+
+        return cgroupRoot;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected boolean accepts(Address a) {
+
+        return a instanceof PressureAddress;
+    }
+
+    @Override
+    protected MetricSource build(Address a) throws MetricSourceException {
+
+        PressureAddress pa = (PressureAddress)a;
+
+        if (pa.isSystem()) {
+
+            if (!PressureReader.isAvailable(procRoot)) {
+
+                throw new MetricSourceException(
+                        "cannot read pressure metrics, " + new File(procRoot, "pressure") + " not available");
+            }
+
+            log.debug("reading pressure metrics from " + procRoot);
+
+            return new PressureMetricSource(pa, new PressureReader(procRoot), getPropertyFactory());
+        }
+
+        if (!CgroupReader.isAvailable(cgroupRoot)) {
+
+            throw new MetricSourceException("cannot read cgroup pressure metrics, " + cgroupRoot + " not available");
+        }
+
+        CgroupReader reader = new CgroupReader(cgroupRoot, pa.getCgroups());
+
+        if (!reader.isV2()) {
+
+            throw new MetricSourceException(
+                    "cannot read cgroup pressure metrics, " + cgroupRoot + " is not a cgroup v2 hierarchy");
+        }
+
+        log.debug("reading cgroup pressure metrics from " + cgroupRoot + " for " + a);
+
+        return new PressureMetricSource(pa, reader, getPropertyFactory());
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
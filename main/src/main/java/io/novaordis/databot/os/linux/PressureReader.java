@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Reads the system-wide Pressure Stall Information, /proc/pressure/cpu, /proc/pressure/memory and /proc/pressure/io,
+ * into a PressureSnapshot. The files are kept open and read into the reader's own reused direct buffer. A file that
+ * cannot be read (PSI disabled with psi=0, for example, which makes reads fail with EOPNOTSUPP) is not tried again.
+ *
+ * The parser is shared with CgroupReader, which reads the cgroup v2 cpu.pressure, memory.pressure and io.pressure
+ * files, which have the same format:
+ *
+ * <pre>
+ * some avg10=31.40 avg60=21.86 avg300=10.75 total=131636571
+ * full avg10=0.00 avg60=0.00 avg300=0.00 total=0
+ * </pre>
+ *
+ * Reads share one buffer, so concurrent reads must be serialized by the caller.
+ *
+ * @see PressureSnapshot
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PressureReader implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(PressureReader.class);
+
+    //
+    // the resource offsets, and the files under /proc/pressure, in the same order
+    //
+    static final int[] RESOURCES = { PressureSnapshot.CPU, PressureSnapshot.MEMORY, PressureSnapshot.IO };
+
+    private static final String[] FILES = { "cpu", "memory", "io" };
+
+    private static final byte[] SOME = ByteCursor.bytes("some");
+    private static final byte[] FULL = ByteCursor.bytes("full");
+    private static final byte[] AVG10 = ByteCursor.bytes("avg10=");
+    private static final byte[] AVG60 = ByteCursor.bytes("avg60=");
+    private static final byte[] TOTAL = ByteCursor.bytes("total=");
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if /proc/pressure exists and is readable under the given root.
+     */
+    public static boolean isAvailable(File procRoot) {
+
+        File pressure = new File(procRoot, "pressure");
+
+        return pressure.isDirectory() && pressure.canRead();
+    }
+
+    /**
+     * Parses the "some" and "full" lines of a pressure file. The averages are converted to hundredths of a percent,
+     * the totals are in microseconds. Lines and keys that are not of interest are skipped.
+     *
+     * @param offset the offset of the resource: the position of its SOME_AVG10 value.
+     */
+    static void parse(ByteCursor c, long[] values, int offset) throws InvalidExecutionOutputException {
+
+        while(c.hasRemaining()) {
+
+            int line = c.consumeToken(SOME) ? PressureSnapshot.SOME_AVG10 :
+                    c.consumeToken(FULL) ? PressureSnapshot.FULL_AVG10 : -1;
+
+            if (line != -1) {
+
+                while(true) {
+
+                    c.skipSpaces();
+
+                    if (c.atEndOfLine()) {
+
+                        break;
+                    }
+
+                    if (c.startsWith(AVG10)) {
+
+                        c.skip(AVG10.length);
+                        values[offset + line] = Math.round(c.nextDouble() * 100);
+                    }
+                    else if (c.startsWith(AVG60)) {
+
+                        c.skip(AVG60.length);
+                        values[offset + line + 1] = Math.round(c.nextDouble() * 100);
+                    }
+                    else if (c.startsWith(TOTAL)) {
+
+                        c.skip(TOTAL.length);
+                        values[offset + line + 2] = c.nextLong();
+                    }
+                    else {
+
+                        c.skipToken();
+                    }
+                }
+            }
+
+            if (!c.nextLine()) {
+
+                break;
+            }
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    //
+    // shared by the files, each is parsed before the next is read; replaced by a larger one if a file outgrows it
+    //
+    private ByteBuffer buffer;
+
+    private final ByteCursor cursor;
+
+    //
+    // by resource, null once a file failed
+    //
+    private final ProcFile[] files;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public PressureReader(File procRoot) {
+
+        if (procRoot == null) {
+
+            throw new IllegalArgumentException("null proc root");
+        }
+
+        this.procRoot = procRoot;
+        this.buffer = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+        this.cursor = new ByteCursor();
+        this.files = new ProcFile[FILES.length];
+
+        for(int i = 0; i < FILES.length; i ++) {
+
+            files[i] = new ProcFile(new File(procRoot, "pressure/" + FILES[i]));
+        }
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public void close() {
+
+        for(ProcFile f: files) {
+
+            if (f != null) {
+
+                f.close();
+            }
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Clears the snapshot, then reads the pressure files that exist into it.
+     *
+     * @exception InvalidExecutionOutputException if a file cannot be parsed.
+     */
+    public void read(PressureSnapshot s) throws InvalidExecutionOutputException {
+
+        s.clear();
+        s.timestampNanos = System.nanoTime();
+
+        for(int i = 0; i < files.length; i ++) {
+
+            if (files[i] == null) {
+
+                continue;
+            }
+
+            ByteBuffer b;
+
+            try {
+
+                buffer = files[i].read(buffer);
+                b = buffer;
+            }
+            catch(IOException e) {
+
+                log.debug("failed to read " + files[i] + ", not trying again: " + e);
+
+                files[i].close();
+                files[i] = null;
+                continue;
+            }
+
+            parse(cursor.reset(b), s.values, RESOURCES[i]);
+        }
+    }
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    @Override
+    public String toString() {
+
+        return "pressure reader[" + procRoot + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.Arrays;
+
+/**
+ * The Pressure Stall Information of the system, or of a cgroup: for each resource (CPU, memory, I/O), the "some" line
+ * (the share of time in which at least one task was stalled on the resource) and the "full" line (the share of time
+ * in which all non-idle tasks were stalled at once), each with its 10 and 60 second averages and its total stall time.
+ *
+ * The values are indexed by the resource offset plus the line field; the averages are held in hundredths of a
+ * percent, the totals in microseconds. A value that was not read is -1: the "full" line of the CPU is missing on
+ * kernels older than 5.13, and none is available if the kernel was booted with psi=0. CgroupSnapshot holds the same
+ * layout, per cgroup, starting at CgroupSnapshot.PRESSURE.
+ *
+ * Not thread safe.
+ *
+ * @see PressureReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PressureSnapshot {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // resource offsets
+    //
+    public static final int CPU = 0;
+    public static final int MEMORY = 6;
+    public static final int IO = 12;
+
+    //
+    // line fields, relative to the resource offset
+    //
+    public static final int SOME_AVG10 = 0;
+    public static final int SOME_AVG60 = 1;
+    public static final int SOME_TOTAL_USEC = 2;
+    public static final int FULL_AVG10 = 3;
+    public static final int FULL_AVG60 = 4;
+    public static final int FULL_TOTAL_USEC = 5;
+
+    public static final int FIELD_COUNT = 18;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    long timestampNanos;
+
+    final long[] values;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public PressureSnapshot() {
+
+        this.values = new long[FIELD_COUNT];
+
+        clear();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getTimestampNanos() {
+
+        return timestampNanos;
+    }
+
+    /**
+     * @param field a resource offset plus a line field, for example MEMORY + FULL_AVG10.
+     *
+     * @return the value, or -1 if not available.
+     */
+    public long getValue(int field) {
+
+        return values[field];
+    }
+
+    public void clear() {
+
+        this.timestampNanos = 0L;
+
+        Arrays.fill(values, -1L);
+    }
+
+    @Override
+    public String toString() {
+
+        return "pressure snapshot";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A /proc (or /sys) file that is kept open between reads. Each read() re-reads the whole file from offset zero with a
+ * positional read, which makes the kernel regenerate the content, into a buffer owned by the caller: a direct buffer
+ * of INITIAL_BUFFER_SIZE allocated once by the reader that owns the ProcFile. No file is opened, and no memory is
+ * allocated, on the per-sample path, once the reader's buffer is large enough.
+ *
+ * The buffer is not cached per thread: with an elastic or virtual-thread source executor, every new thread would
+ * allocate a fresh direct buffer. Thread safe, as long as concurrent callers use different buffers.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcFile implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File file;
+
+    private FileChannel channel;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ProcFile(File file) {
+
+        if (file == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        this.file = file;
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public synchronized void close() {
+
+        if (channel == null) {
+
+            return;
+        }
+
+        try {
+
+            channel.close();
+        }
+        catch(IOException e) {
+
+            // nothing to do, the file is read-only
+        }
+
+        channel = null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the whole file into the caller's buffer.
+     *
+     * @param b the caller's buffer. Its content is overwritten.
+     *
+     * @return the caller's buffer, flipped, positioned at the beginning of the content or, if the file does not fit, a
+     * new buffer twice as large, holding the content. The caller should keep the returned buffer for the next read, so
+     * it only grows once.
+     *
+     * @exception IOException if the file cannot be opened or read. The file is re-opened by the next read, so a file
+     * that disappears and re-appears (for example a cgroup, or a restarted process) can still be read.
+     */
+    public ByteBuffer read(ByteBuffer b) throws IOException {
+
+        if (b == null) {
+
+            throw new IllegalArgumentException("null buffer");
+        }
+
+        FileChannel c = channel();
+
+        try {
+
+            while(true) {
+
+                b.clear();
+
+                long position = 0;
+                boolean eof = false;
+
+                while(b.hasRemaining()) {
+
+                    int n = c.read(b, position);
+
+                    if (n <= 0) {
+
+                        eof = true;
+                        break;
+                    }
+
+                    position += n;
+                }
+
+                if (eof) {
+
+                    b.flip();
+                    return b;
+                }
+
+                //
+                // the file does not fit, grow the buffer and read again
+                //
+
+                b = ByteBuffer.allocateDirect(b.capacity() * 2);
+            }
+        }
+        catch(IOException e) {
+
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next chunk of a file that is too large to be read whole, into a buffer owned by the caller. The file
+     * is regenerated when read from offset zero; the following chunks must be read at consecutive positions.
+     *
+     * @param b the caller's buffer, read into from its position to its limit.
+     * @param position the offset in the file, 0 for the first chunk.
+     *
+     * @return the number of bytes read, -1 at the end of the file.
+     *
+     * @exception IOException if the file cannot be opened or read. The file is re-opened by the next read.
+     */
+    public int read(ByteBuffer b, long position) throws IOException {
+
+        FileChannel c = channel();
+
+        try {
+
+            return c.read(b, position);
+        }
+        catch(IOException e) {
+
+            close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+
+        return file;
+    }
+
+    public synchronized boolean isOpen() {
+
+        return channel != null;
+    }
+
+    @Override
+    public String toString() {
+
+        return file.getPath();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private synchronized FileChannel channel() throws IOException {
+
+        if (channel == null) {
+
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        return channel;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The local OS metrics that can be served from /proc, by metric definition ID, and where their values come from.
+ *
+ * @see LinuxProcMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public enum ProcMetric {
+
+    CPU_USER_TIME("CpuUserTime", Kind.CPU_PERCENTAGE, LocalOSSnapshot.CPU_USER),
+    CPU_NICE_TIME("CpuNiceTime", Kind.CPU_PERCENTAGE, LocalOSSnapshot.CPU_NICE),
+    CPU_KERNEL_TIME("CpuKernelTime", Kind.CPU_PERCENTAGE, LocalOSSnapshot.CPU_SYSTEM),
+    CPU_IDLE_TIME("CpuIdleTime", Kind.CPU_PERCENTAGE, LocalOSSnapshot.CPU_IDLE),
+    CPU_IO_WAIT_TIME("CpuIoWaitTime", Kind.CPU_PERCENTAGE, LocalOSSnapshot.CPU_IOWAIT),
+    CPU_HARDWARE_INTERRUPT_TIME("CpuHardwareInterruptTime", Kind.CPU_PERCENTAGE, LocalOSSnapshot.CPU_IRQ),
+    CPU_SOFTWARE_INTERRUPT_TIME("CpuSoftwareInterruptTime", Kind.CPU_PERCENTAGE, LocalOSSnapshot.CPU_SOFTIRQ),
+    CPU_STOLEN_TIME("CpuStolenTime", Kind.CPU_PERCENTAGE, LocalOSSnapshot.CPU_STEAL),
+
+    LOAD_AVERAGE_LAST_MINUTE("LoadAverageLastMinute", Kind.LOAD_AVERAGE, 1),
+    LOAD_AVERAGE_LAST_FIVE_MINUTES("LoadAverageLastFiveMinutes", Kind.LOAD_AVERAGE, 5),
+    LOAD_AVERAGE_LAST_FIFTEEN_MINUTES("LoadAverageLastFifteenMinutes", Kind.LOAD_AVERAGE, 15),
+
+    PHYSICAL_MEMORY_TOTAL("PhysicalMemoryTotal", Kind.MEMORY, LocalOSSnapshot.MEM_TOTAL),
+    PHYSICAL_MEMORY_FREE("PhysicalMemoryFree", Kind.MEMORY, LocalOSSnapshot.MEM_FREE),
+    PHYSICAL_MEMORY_USED("PhysicalMemoryUsed", Kind.MEMORY, -1),
+    SWAP_TOTAL("SwapTotal", Kind.MEMORY, LocalOSSnapshot.MEM_SWAP_TOTAL),
+    SWAP_FREE("SwapFree", Kind.MEMORY, LocalOSSnapshot.MEM_SWAP_FREE),
+    SWAP_USED("SwapUsed", Kind.MEMORY, -1);
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the metric corresponding to the given metric definition ID, or null if the metric cannot be served from
+     * /proc.
+     */
+    public static ProcMetric fromId(String id) {
+
+        for(ProcMetric m: values()) {
+
+            if (m.id.equals(id)) {
+
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String id;
+
+    private final Kind kind;
+
+    //
+    // the LocalOSSnapshot slot, or the load average period, depending on kind; -1 for computed values
+    //
+    private final int field;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    ProcMetric(String id, Kind kind, int field) {
+
+        this.id = id;
+        this.kind = kind;
+        this.field = field;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getId() {
+
+        return id;
+    }
+
+    public Kind getKind() {
+
+        return kind;
+    }
+
+    /**
+     * @param cpuPercentages the CPU percentages computed from the last two snapshots, indexed by the CPU_* snapshot
+     *                       constants.
+     *
+     * @return the value: a percentage, a load average or a number of bytes, depending on kind.
+     */
+    public double value(LocalOSSnapshot s, double[] cpuPercentages) {
+
+        switch(kind) {
+
+            case CPU_PERCENTAGE:
+
+                return cpuPercentages[field];
+
+            case LOAD_AVERAGE:
+
+                return field == 1 ? s.loadAverageOneMinute :
+                        field == 5 ? s.loadAverageFiveMinutes : s.loadAverageFifteenMinutes;
+
+            default:
+
+                if (this == PHYSICAL_MEMORY_USED) {
+
+                    //
+                    // same as free(1): what is neither free, nor buffers or reclaimable cache
+                    //
+
+                    return s.memory[LocalOSSnapshot.MEM_TOTAL] - s.memory[LocalOSSnapshot.MEM_FREE] -
+                            s.memory[LocalOSSnapshot.MEM_BUFFERS] - s.memory[LocalOSSnapshot.MEM_CACHED] -
+                            s.memory[LocalOSSnapshot.MEM_SRECLAIMABLE];
+                }
+
+                if (this == SWAP_USED) {
+
+                    return s.memory[LocalOSSnapshot.MEM_SWAP_TOTAL] - s.memory[LocalOSSnapshot.MEM_SWAP_FREE];
+                }
+
+                return s.memory[field];
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return id;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public enum Kind {
+
+        CPU_PERCENTAGE,
+        LOAD_AVERAGE,
+
+        /**
+         * In bytes.
+         */
+        MEMORY
+    }
+
+}
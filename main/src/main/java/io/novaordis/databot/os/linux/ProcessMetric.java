@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+
+/**
+ * The per-process metrics a ProcessMetricSource serves, by metric definition ID, and where their values come from.
+ *
+ * @see ProcessMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public enum ProcessMetric {
+
+    CPU_TIME("CpuTime", "Process CPU Time Percentage", Kind.CPU_PERCENTAGE, -1, ProcessReader.STAT),
+    CPU_USER_TIME(
+            "CpuUserTime", "Process CPU User Time Percentage", Kind.CPU_PERCENTAGE,
+            ProcessSnapshot.UTIME, ProcessReader.STAT),
+    CPU_KERNEL_TIME(
+            "CpuKernelTime", "Process CPU Kernel Time Percentage", Kind.CPU_PERCENTAGE,
+            ProcessSnapshot.STIME, ProcessReader.STAT),
+
+    RESIDENT_MEMORY(
+            "ResidentMemory", "Process Resident Memory", Kind.MEMORY,
+            ProcessSnapshot.RESIDENT_MEMORY, ProcessReader.STATUS),
+    VIRTUAL_MEMORY(
+            "VirtualMemory", "Process Virtual Memory", Kind.MEMORY,
+            ProcessSnapshot.VIRTUAL_MEMORY, ProcessReader.STAT),
+    THREAD_COUNT(
+            "ThreadCount", "Process Thread Count", Kind.COUNT,
+            ProcessSnapshot.THREADS, ProcessReader.STAT),
+    FILE_DESCRIPTOR_COUNT(
+            "FileDescriptorCount", "Process File Descriptor Count", Kind.COUNT,
+            ProcessSnapshot.FILE_DESCRIPTORS, ProcessReader.FD),
+
+    MINOR_FAULT_RATE(
+            "MinorFaultsPerSecond", "Process Minor Page Faults per Second", Kind.RATE,
+            ProcessSnapshot.MINOR_FAULTS, ProcessReader.STAT),
+    MAJOR_FAULT_RATE(
+            "MajorFaultsPerSecond", "Process Major Page Faults per Second", Kind.RATE,
+            ProcessSnapshot.MAJOR_FAULTS, ProcessReader.STAT),
+    VOLUNTARY_CONTEXT_SWITCH_RATE(
+            "VoluntaryContextSwitchesPerSecond", "Process Voluntary Context Switches per Second", Kind.RATE,
+            ProcessSnapshot.VOLUNTARY_CONTEXT_SWITCHES, ProcessReader.STATUS),
+    NONVOLUNTARY_CONTEXT_SWITCH_RATE(
+            "NonvoluntaryContextSwitchesPerSecond", "Process Nonvoluntary Context Switches per Second", Kind.RATE,
+            ProcessSnapshot.NONVOLUNTARY_CONTEXT_SWITCHES, ProcessReader.STATUS),
+    READ_BYTE_RATE(
+            "ReadBytesPerSecond", "Process Storage Bytes Read per Second", Kind.RATE,
+            ProcessSnapshot.READ_BYTES, ProcessReader.IO),
+    WRITE_BYTE_RATE(
+            "WriteBytesPerSecond", "Process Storage Bytes Written per Second", Kind.RATE,
+            ProcessSnapshot.WRITE_BYTES, ProcessReader.IO);
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // the unit of the CPU time counters in /proc/[pid]/stat; fixed at 100 by the kernel ABI on all architectures we
+    // run on, regardless of the kernel's internal HZ
+    //
+    public static final int USER_HZ = 100;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the metric corresponding to the given metric definition ID, or null if there is no such process metric.
+     */
+    public static ProcessMetric fromId(String id) {
+
+        for(ProcessMetric m: values()) {
+
+            if (m.id.equals(id)) {
+
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String id;
+
+    private final String label;
+
+    private final Kind kind;
+
+    //
+    // the ProcessSnapshot counter slot for CPU percentages and rates, the gauge slot otherwise; -1 for computed values
+    //
+    private final int slot;
+
+    //
+    // the ProcessReader flag of the file the value comes from
+    //
+    private final int file;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    ProcessMetric(String id, String label, Kind kind, int slot, int file) {
+
+        this.id = id;
+        this.label = label;
+        this.kind = kind;
+        this.slot = slot;
+        this.file = file;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getId() {
+
+        return id;
+    }
+
+    public String getLabel() {
+
+        return label;
+    }
+
+    public Kind getKind() {
+
+        return kind;
+    }
+
+    /**
+     * @return the ProcessReader flag of the file the value is read from.
+     */
+    public int getFile() {
+
+        return file;
+    }
+
+    public Class getType() {
+
+        return Kind.CPU_PERCENTAGE.equals(kind) || Kind.RATE.equals(kind) ? Double.class : Long.class;
+    }
+
+    /**
+     * @return the unit of the value returned by value(), or null for dimensionless values.
+     */
+    public MeasureUnit getBaseUnit() {
+
+        return Kind.MEMORY.equals(kind) ? MemoryMeasureUnit.BYTE : null;
+    }
+
+    /**
+     * @param rates the per second rates of the counters, computed from the last two snapshots, indexed by the
+     *              ProcessSnapshot counter constants.
+     *
+     * @return the value: a percentage of one CPU (so it may exceed 100 for multi-threaded processes), a rate per
+     * second, a number of bytes or a count, depending on kind.
+     */
+    public double value(ProcessSnapshot s, double[] rates) {
+
+        switch(kind) {
+
+            case CPU_PERCENTAGE:
+
+                double ticksPerSecond = slot == -1 ?
+                        rates[ProcessSnapshot.UTIME] + rates[ProcessSnapshot.STIME] : rates[slot];
+
+                return 100d * ticksPerSecond / USER_HZ;
+
+            case RATE:
+
+                return rates[slot];
+
+            default:
+
+                return s.gauges[slot];
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        return id;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    public enum Kind {
+
+        /**
+         * Percentage of one CPU.
+         */
+        CPU_PERCENTAGE,
+
+        /**
+         * Per second, computed from cumulative counters.
+         */
+        RATE,
+
+        /**
+         * In bytes.
+         */
+        MEMORY,
+
+        COUNT
+    }
+
+}
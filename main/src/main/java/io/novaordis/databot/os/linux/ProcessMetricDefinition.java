@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionBase;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+/**
+ * The definition of a per-process metric, declared as:
+ *
+ * <pre>
+ * process:<i>target</i>/<i>metric</i>
+ * </pre>
+ *
+ * for example "process:pidfile:/var/run/jboss.pid/ResidentMemory" or "process:cmdline:jboss-modules\.jar/CpuTime". The
+ * metric ID follows the last slash, so the target may contain slashes.
+ *
+ * "process:top:5/CpuTime" declares the five processes that used the most CPU since the previous sample. Only the
+ * metrics processes can be ranked by are available for top targets.
+ *
+ * @see ProcessTarget
+ * @see ProcessMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcessMetricDefinition extends MetricDefinitionBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the declaration is a per-process metric declaration, which may still be invalid.
+     */
+    public static boolean isProcessMetricDeclaration(String declaration) {
+
+        return declaration != null && declaration.startsWith(ProcessAddress.PREFIX);
+    }
+
+    public static ProcessMetricDefinition parse(PropertyFactory pf, String declaration)
+            throws MetricDefinitionException {
+
+        if (!isProcessMetricDeclaration(declaration)) {
+
+            throw new MetricDefinitionException("not a process metric declaration: \"" + declaration + "\"");
+        }
+
+        int i = declaration.lastIndexOf('/');
+
+        if (i == -1) {
+
+            throw new MetricDefinitionException("missing process metric: \"" + declaration + "\"");
+        }
+
+        String targetLiteral = declaration.substring(ProcessAddress.PREFIX.length(), i);
+        String id = declaration.substring(i + 1);
+
+        ProcessMetric metric = ProcessMetric.fromId(id);
+
+        if (metric == null) {
+
+            throw new MetricDefinitionException("unknown process metric \"" + id + "\"");
+        }
+
+        ProcessTarget target;
+
+        try {
+
+            target = ProcessTarget.parse(targetLiteral);
+        }
+        catch(IllegalArgumentException e) {
+
+            throw new MetricDefinitionException(e.getMessage());
+        }
+
+        if (target == null) {
+
+            throw new MetricDefinitionException(
+                    "invalid process target \"" + targetLiteral + "\", expecting " + ProcessTarget.PID_PREFIX +
+                            ", " + ProcessTarget.PID_FILE_PREFIX + ", " + ProcessTarget.COMMAND_LINE_PREFIX +
+                            " or " + ProcessTarget.TOP_PREFIX);
+        }
+
+        if (target.isTop() && !TopProcessesMetricSource.isRanked(metric)) {
+
+            throw new MetricDefinitionException("processes cannot be ranked by " + id + ", expecting " +
+                    ProcessMetric.CPU_TIME.getId() + " or " + ProcessMetric.RESIDENT_MEMORY.getId());
+        }
+
+        return new ProcessMetricDefinition(pf, new ProcessAddress(target), metric);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final ProcessMetric metric;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ProcessMetricDefinition(PropertyFactory pf, ProcessAddress address, ProcessMetric metric) {
+
+        super(pf, address);
+
+        if (metric == null) {
+
+            throw new IllegalArgumentException("null metric");
+        }
+
+        this.metric = metric;
+    }
+
+    // MetricDefinition implementation ---------------------------------------------------------------------------------
+
+    @Override
+    public String getId() {
+
+        return metric.getId();
+    }
+
+    @Override
+    public String getSimpleLabel() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public MeasureUnit getBaseUnit() {
+
+        return metric.getBaseUnit();
+    }
+
+    @Override
+    public String getDescription() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public Class getType() {
+
+        return metric.getType();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public ProcessMetric getMetric() {
+
+        return metric;
+    }
+
+    @Override
+    public String toString() {
+
+        return getMetricSourceAddress() + "/" + metric.getId();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
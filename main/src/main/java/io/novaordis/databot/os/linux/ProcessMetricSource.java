@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * A metric source that serves the ProcessMetric metrics of one local process - CPU, memory, threads, file descriptors,
+ * page faults, context switches and storage I/O - from /proc/[pid], without JMX and without forking any process.
+ *
+ * The process is identified by a ProcessTarget, which is only resolved when the source has no live process: on the
+ * first collection, and after the process exits. The pid and the process start time identify a process instance;
+ * rates are computed from the difference between the current and the previous snapshot of the same instance. The
+ * first reading of an instance reports the averages since the process started.
+ *
+ * Only the files the requested metrics need are read.
+ *
+ * @see ProcessTarget
+ * @see ProcessReader
+ * @see ProcessMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcessMetricSource extends LinuxMetricSourceBase<ProcessAddress, ProcessMetric> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessMetricSource.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the pid the /proc/self link points to, or -1 if it cannot be established.
+     */
+    static int getSelfPid(File procRoot) {
+
+        try {
+
+            return Integer.parseInt(new File(procRoot, "self").getCanonicalFile().getName());
+        }
+        catch(IOException | NumberFormatException e) {
+
+            return -1;
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final ProcessReader reader;
+
+    //
+    // never selected by a command line pattern
+    //
+    private final int selfPid;
+
+    private final ProcessSnapshot current;
+    private final ProcessSnapshot previous;
+
+    //
+    // per second, indexed by the ProcessSnapshot counter constants
+    //
+    private final double[] rates;
+
+    //
+    // the union of the files needed by the metric sets collected so far; all are read on every collection, so all
+    // counters in a snapshot are sampled at the same time
+    //
+    private int files;
+
+    private long resolutionCount;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ProcessMetricSource(ProcessAddress address, ProcessReader reader, PropertyFactory propertyFactory) {
+
+        super(address, reader, propertyFactory, ProcessMetric::fromId, ProcessMetric[]::new, "process");
+
+        this.reader = reader;
+        this.selfPid = getSelfPid(reader.getProcRoot());
+        this.current = new ProcessSnapshot();
+        this.previous = new ProcessSnapshot();
+        this.rates = new double[ProcessSnapshot.COUNTER_COUNT];
+        this.files = ProcessReader.STAT;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public ProcessTarget getTarget() {
+
+        return getAddress().getTarget();
+    }
+
+    /**
+     * @return the pid of the process currently read, or -1 if the target was not resolved yet, or the process is gone.
+     */
+    public synchronized int getPid() {
+
+        return reader.getPid();
+    }
+
+    /**
+     * @return the number of times the target was resolved, successfully or not.
+     */
+    public synchronized long getResolutionCount() {
+
+        return resolutionCount;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected synchronized List<Property> collect(List<MetricDefinition> metricDefinitions, ProcessMetric[] metrics)
+            throws MetricSourceException {
+
+        for(ProcessMetric m: metrics) {
+
+            files |= m.getFile();
+        }
+
+        read();
+
+        computeRates();
+
+        List<Property> result = new ArrayList<>(metrics.length);
+
+        for(int i = 0; i < metrics.length; i ++) {
+
+            MetricDefinition md = metricDefinitions.get(i);
+            ProcessMetric m = metrics[i];
+
+            double value = m.value(current, rates);
+
+            MeasureUnit unit = md.getBaseUnit();
+
+            unit = unit == null ? m.getBaseUnit() : unit;
+
+            Class type = md.getType();
+
+            if (ProcessMetric.Kind.MEMORY.equals(m.getKind())) {
+
+                value = toUnit(value, unit);
+            }
+
+            type = type == null ? m.getType() : type;
+
+            result.add(getPropertyFactory().createInstance(
+                    md.getId(), type, toType(value, type), null, unit));
+        }
+
+        return result;
+    }
+
+    @Override
+    protected void reset() {
+
+        previous.clear();
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the current process into the current snapshot, resolving the target first if there is no live process.
+     */
+    private void read() throws MetricSourceException {
+
+        if (reader.getPid() == -1) {
+
+            open();
+        }
+
+        try {
+
+            try {
+
+                reader.read(current, files);
+            }
+            catch(IOException e) {
+
+                if (reader.getPid() != -1) {
+
+                    //
+                    // the process is alive, but one of its files is not readable
+                    //
+
+                    throw e;
+                }
+
+                log.debug(getAddress() + " process is gone: " + e.getMessage());
+
+                previous.clear();
+
+                invalidatePreparedQueries();
+
+                open();
+
+                reader.read(current, files);
+            }
+        }
+        catch(IOException | InvalidExecutionOutputException e) {
+
+            throw new MetricSourceException("failed to read " + reader, e);
+        }
+    }
+
+    private void open() throws MetricSourceException {
+
+        resolutionCount ++;
+
+        int pid = getAddress().getTarget().resolve(reader.getProcRoot(), selfPid);
+
+        if (pid == -1) {
+
+            throw new MetricSourceException("no process found for " + getAddress().getTarget());
+        }
+
+        reader.open(pid);
+
+        log.debug(getAddress() + " resolved to pid " + pid);
+    }
+
+    private void computeRates() throws MetricSourceException {
+
+        if (previous.isSameProcess(current)) {
+
+            double elapsedSec = Rates.seconds(previous.timestampNanos, current.timestampNanos);
+
+            if (elapsedSec <= 0) {
+
+                //
+                // report the last known rates
+                //
+
+                return;
+            }
+
+            for(int i = 0; i < rates.length; i ++) {
+
+                rates[i] = (current.counters[i] - previous.counters[i]) / elapsedSec;
+            }
+        }
+        else {
+
+            //
+            // the first reading of this process instance: the averages since the process started
+            //
+
+            double elapsedSec;
+
+            try {
+
+                elapsedSec = reader.readUptimeSeconds() - (double)current.startTime / ProcessMetric.USER_HZ;
+            }
+            catch(IOException | InvalidExecutionOutputException e) {
+
+                throw new MetricSourceException("failed to read the system uptime", e);
+            }
+
+            for(int i = 0; i < rates.length; i ++) {
+
+                rates[i] = elapsedSec <= 0 ? 0d : current.counters[i] / elapsedSec;
+            }
+        }
+
+        previous.copyFrom(current);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
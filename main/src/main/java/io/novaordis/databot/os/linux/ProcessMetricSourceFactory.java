@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * Claims the "process" addresses. A "process:top:K" address gets a source that scans and ranks every process on each
+ * reading; any other target gets a source that follows a single process, re-resolving it when it goes away.
+ *
+ * @see ProcessMetricSource
+ * @see TopProcessesMetricSource
+ * @see ProcessAddress
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcessMetricSourceFactory extends DelegatingMetricSourceFactory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessMetricSourceFactory.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ProcessMetricSourceFactory(MetricSourceFactory delegate, File procRoot) {
+
+        super(delegate);
+
+        this.procRoot = procRoot;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected boolean accepts(Address a) {
+
+        return a instanceof ProcessAddress;
+    }
+
+    @Override
+    protected MetricSource build(Address a) throws MetricSourceException {
+
+        if (!procRoot.isDirectory()) {
+
+            throw new MetricSourceException("cannot read process metrics, " + procRoot + " not available");
+        }
+
+        ProcessAddress pa = (ProcessAddress)a;
+
+        MetricSource s;
+
+        if (pa.getTarget().isTop()) {
+
+            s = new TopProcessesMetricSource(
+                    pa, new TopProcessScanner(procRoot, TopProcessScanner.DEFAULT_PAGE_SIZE), getPropertyFactory());
+        }
+        else {
+
+            s = new ProcessMetricSource(pa, new ProcessReader(procRoot), getPropertyFactory());
+        }
+
+        log.debug("reading process metrics from " + procRoot + " for " + a);
+
+        return s;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Reads one process from /proc/[pid]/stat, status, io and fd into a ProcessSnapshot. The files of the current process
+ * are kept open between reads and are parsed in place from the reader's own reusable buffer, so once the process
+ * is opened, a reading costs a few positional reads and allocates nothing.
+ *
+ * An open /proc/[pid] file keeps referring to the process it was opened for: once the process exits, reads fail,
+ * even if the pid is reused, which is how the owner learns it must resolve its target again.
+ *
+ * A reader belongs to one ProcessMetricSource, which never calls it concurrently.
+ *
+ * @see ProcessSnapshot
+ * @see ProcessMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcessReader implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // bit flags for the files to read; stat is always read, it identifies the process instance
+    //
+    public static final int STAT = 1;
+    public static final int STATUS = 2;
+    public static final int IO = 4;
+    public static final int FD = 8;
+
+    private static final byte[] VM_RSS = ByteCursor.bytes("VmRSS:");
+    private static final byte[] VOLUNTARY_CTXT_SWITCHES = ByteCursor.bytes("voluntary_ctxt_switches:");
+    private static final byte[] NONVOLUNTARY_CTXT_SWITCHES = ByteCursor.bytes("nonvoluntary_ctxt_switches:");
+
+    private static final byte[] READ_BYTES = ByteCursor.bytes("read_bytes:");
+    private static final byte[] WRITE_BYTES = ByteCursor.bytes("write_bytes:");
+
+    private static final byte[] KB = ByteCursor.bytes("kB");
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the fields that follow the parenthesized command name, which may itself contain spaces and parentheses:
+     * "1234 (java) S 1 1234 ... minflt cminflt majflt cmajflt utime stime ... num_threads itrealvalue starttime vsize".
+     */
+    static void parseStat(ByteCursor c, ProcessSnapshot s) throws InvalidExecutionOutputException {
+
+        if (!c.skipPastLast(')')) {
+
+            throw new InvalidExecutionOutputException("no command name in /proc/[pid]/stat");
+        }
+
+        //
+        // state (3), ppid (4), pgrp (5), session (6), tty_nr (7), tpgid (8), flags (9)
+        //
+
+        for(int i = 3; i <= 9; i ++) {
+
+            c.skipToken();
+        }
+
+        s.counters[ProcessSnapshot.MINOR_FAULTS] = c.nextLong();
+        c.skipToken();
+        s.counters[ProcessSnapshot.MAJOR_FAULTS] = c.nextLong();
+        c.skipToken();
+        s.counters[ProcessSnapshot.UTIME] = c.nextLong();
+        s.counters[ProcessSnapshot.STIME] = c.nextLong();
+
+        //
+        // cutime (16), cstime (17), priority (18), nice (19)
+        //
+
+        for(int i = 16; i <= 19; i ++) {
+
+            c.skipToken();
+        }
+
+        s.gauges[ProcessSnapshot.THREADS] = c.nextLong();
+        c.skipToken();
+        s.startTime = c.nextLong();
+        s.gauges[ProcessSnapshot.VIRTUAL_MEMORY] = c.nextLong();
+    }
+
+    static void parseStatus(ByteCursor c, ProcessSnapshot s) throws InvalidExecutionOutputException {
+
+        do {
+
+            if (c.consumeToken(VM_RSS)) {
+
+                s.gauges[ProcessSnapshot.RESIDENT_MEMORY] = kilobytes(c);
+            }
+            else if (c.consumeToken(VOLUNTARY_CTXT_SWITCHES)) {
+
+                s.counters[ProcessSnapshot.VOLUNTARY_CONTEXT_SWITCHES] = c.nextLong();
+            }
+            else if (c.consumeToken(NONVOLUNTARY_CTXT_SWITCHES)) {
+
+                s.counters[ProcessSnapshot.NONVOLUNTARY_CONTEXT_SWITCHES] = c.nextLong();
+            }
+        }
+        while(c.nextLine());
+    }
+
+    static void parseIo(ByteCursor c, ProcessSnapshot s) throws InvalidExecutionOutputException {
+
+        do {
+
+            if (c.consumeToken(READ_BYTES)) {
+
+                s.counters[ProcessSnapshot.READ_BYTES] = c.nextLong();
+            }
+            else if (c.consumeToken(WRITE_BYTES)) {
+
+                s.counters[ProcessSnapshot.WRITE_BYTES] = c.nextLong();
+            }
+        }
+        while(c.nextLine());
+    }
+
+    private static long kilobytes(ByteCursor c) throws InvalidExecutionOutputException {
+
+        long value = c.nextLong();
+
+        c.skipSpaces();
+
+        return c.startsWith(KB) ? value * 1024L : value;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    //
+    // shared by all files, each is parsed before the next is read; replaced by a larger one if a file outgrows it
+    //
+    private ByteBuffer buffer;
+
+    private final ByteCursor cursor;
+
+    private final ProcFile uptime;
+
+    //
+    // -1 if no process is open
+    //
+    private int pid;
+
+    private ProcFile stat;
+    private ProcFile status;
+    private ProcFile io;
+    private File fd;
+
+    //
+    // whether the size of /proc/[pid]/fd is the number of open descriptors (Linux 6.2 and newer); null until the
+    // first descriptor count
+    //
+    private Boolean fdSizeIsCount;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ProcessReader(File procRoot) {
+
+        if (procRoot == null) {
+
+            throw new IllegalArgumentException("null /proc root");
+        }
+
+        this.procRoot = procRoot;
+        this.buffer = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+        this.cursor = new ByteCursor();
+        this.uptime = new ProcFile(new File(procRoot, "uptime"));
+        this.pid = -1;
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    /**
+     * Closes the files of the current process, if any. The reader can be re-opened for another process.
+     */
+    @Override
+    public void close() {
+
+        uptime.close();
+
+        if (pid == -1) {
+
+            return;
+        }
+
+        stat.close();
+        status.close();
+        io.close();
+
+        stat = null;
+        status = null;
+        io = null;
+        fd = null;
+
+        pid = -1;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Switches the reader to the given process. The files are opened lazily, by the first read.
+     */
+    public void open(int pid) {
+
+        if (pid <= 0) {
+
+            throw new IllegalArgumentException("invalid pid " + pid);
+        }
+
+        close();
+
+        File d = new File(procRoot, Integer.toString(pid));
+
+        this.stat = new ProcFile(new File(d, "stat"));
+        this.status = new ProcFile(new File(d, "status"));
+        this.io = new ProcFile(new File(d, "io"));
+        this.fd = new File(d, "fd");
+        this.pid = pid;
+    }
+
+    /**
+     * Overwrites the given snapshot with fresh readings from the files selected by the flags. The slots that belong to
+     * the files that are not read are left unchanged.
+     *
+     * @param files a combination of the STAT, STATUS, IO and FD flags. stat is always read.
+     *
+     * @exception IOException if a file cannot be read. If stat cannot be read, the process is gone and the reader is
+     * closed. The io and fd entries of the processes owned by other users are usually not readable.
+     * @exception IllegalStateException if no process is open.
+     */
+    public void read(ProcessSnapshot s, int files) throws IOException, InvalidExecutionOutputException {
+
+        if (pid == -1) {
+
+            throw new IllegalStateException(this + " not open");
+        }
+
+        s.timestampNanos = System.nanoTime();
+
+        try {
+
+            buffer = stat.read(buffer);
+        }
+        catch(IOException e) {
+
+            //
+            // the process is gone
+            //
+
+            close();
+            throw e;
+        }
+
+        parseStat(cursor.reset(buffer), s);
+
+        s.pid = pid;
+
+        if ((files & STATUS) != 0) {
+
+            buffer = status.read(buffer);
+            parseStatus(cursor.reset(buffer), s);
+        }
+
+        if ((files & IO) != 0) {
+
+            buffer = io.read(buffer);
+            parseIo(cursor.reset(buffer), s);
+        }
+
+        if ((files & FD) != 0) {
+
+            s.gauges[ProcessSnapshot.FILE_DESCRIPTORS] = countFileDescriptors();
+        }
+    }
+
+    /**
+     * @return the system uptime from /proc/uptime, in seconds. Used to compute the averages since the process started,
+     * when there is no previous snapshot to compare with.
+     */
+    public double readUptimeSeconds() throws IOException, InvalidExecutionOutputException {
+
+        buffer = uptime.read(buffer);
+
+        return cursor.reset(buffer).nextDouble();
+    }
+
+    /**
+     * @return the pid of the process the reader is open for, or -1.
+     */
+    public int getPid() {
+
+        return pid;
+    }
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    @Override
+    public String toString() {
+
+        return "process reader[" + procRoot + "/" + (pid == -1 ? "?" : pid) + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    Boolean isFdSizeCount() {
+
+        return fdSizeIsCount;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Since Linux 6.2 the size of /proc/[pid]/fd is the number of open descriptors, which costs a stat() call instead
+     * of a directory listing. Whether that is the case is established by the first count, by comparing the size with
+     * the listing, which also covers /proc roots that are not procfs.
+     */
+    private long countFileDescriptors() throws IOException {
+
+        if (Boolean.TRUE.equals(fdSizeIsCount)) {
+
+            long size = fd.length();
+
+            if (size == 0 && !fd.isDirectory()) {
+
+                throw new IOException("cannot read " + fd);
+            }
+
+            return size;
+        }
+
+        String[] names = fd.list();
+
+        if (names == null) {
+
+            throw new IOException("cannot list " + fd);
+        }
+
+        if (fdSizeIsCount == null) {
+
+            fdSizeIsCount = names.length > 0 && fd.length() == names.length;
+        }
+
+        return names.length;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The raw readings of one process, from /proc/[pid]/stat, status, io and fd, held in primitive slots and overwritten
+ * in place by ProcessReader. Counters are cumulative, as exposed by the kernel; rates are computed by comparing two
+ * snapshots of the same process instance (same pid and start time).
+ *
+ * Not thread safe.
+ *
+ * @see ProcessReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcessSnapshot {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // cumulative counters: CPU time in USER_HZ ticks, faults, context switches and storage I/O bytes
+    //
+    public static final int UTIME = 0;
+    public static final int STIME = 1;
+    public static final int MINOR_FAULTS = 2;
+    public static final int MAJOR_FAULTS = 3;
+    public static final int VOLUNTARY_CONTEXT_SWITCHES = 4;
+    public static final int NONVOLUNTARY_CONTEXT_SWITCHES = 5;
+    public static final int READ_BYTES = 6;
+    public static final int WRITE_BYTES = 7;
+    public static final int COUNTER_COUNT = 8;
+
+    //
+    // gauges
+    //
+    public static final int THREADS = 0;
+    public static final int RESIDENT_MEMORY = 1;
+    public static final int VIRTUAL_MEMORY = 2;
+    public static final int FILE_DESCRIPTORS = 3;
+    public static final int GAUGE_COUNT = 4;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    long timestampNanos;
+
+    //
+    // -1 if the snapshot does not hold a reading
+    //
+    int pid;
+
+    //
+    // the process start time, in clock ticks since boot; together with the pid, identifies the process instance
+    //
+    long startTime;
+
+    final long[] counters;
+
+    final long[] gauges;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ProcessSnapshot() {
+
+        this.pid = -1;
+        this.counters = new long[COUNTER_COUNT];
+        this.gauges = new long[GAUGE_COUNT];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getTimestampNanos() {
+
+        return timestampNanos;
+    }
+
+    public int getPid() {
+
+        return pid;
+    }
+
+    public long getStartTime() {
+
+        return startTime;
+    }
+
+    /**
+     * @param counter one of the counter constants.
+     */
+    public long getCounter(int counter) {
+
+        return counters[counter];
+    }
+
+    /**
+     * @param gauge one of the gauge constants. Memory is in bytes.
+     */
+    public long getGauge(int gauge) {
+
+        return gauges[gauge];
+    }
+
+    /**
+     * @return true if both snapshots hold readings of the same process instance, so the counters can be compared.
+     */
+    public boolean isSameProcess(ProcessSnapshot s) {
+
+        return pid != -1 && pid == s.pid && startTime == s.startTime;
+    }
+
+    public void copyFrom(ProcessSnapshot s) {
+
+        timestampNanos = s.timestampNanos;
+        pid = s.pid;
+        startTime = s.startTime;
+        System.arraycopy(s.counters, 0, counters, 0, COUNTER_COUNT);
+        System.arraycopy(s.gauges, 0, gauges, 0, GAUGE_COUNT);
+    }
+
+    public void clear() {
+
+        pid = -1;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ProcessSnapshot[" + (pid == -1 ? "empty" : pid) + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Identifies the process a ProcessMetricSource reads: by pid, by pid file or by a regular expression matched against
+ * the process command lines. The literal forms are:
+ *
+ * <pre>
+ * pid:1234
+ * pidfile:/var/run/jboss.pid
+ * cmdline:jboss-modules\.jar.*standalone
+ * </pre>
+ *
+ * Resolution is only performed when the source has no live process, so its cost - reading the pid file, or scanning
+ * the command lines of all processes - is paid once per process restart, not once per sample.
+ *
+ * "top:<i>K</i>" does not identify one process, but the K processes that rank highest by a metric on every sample,
+ * which are served by a TopProcessesMetricSource. It is never resolved.
+ *
+ * Immutable and thread safe.
+ *
+ * @see ProcessMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcessTarget {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PID_PREFIX = "pid:";
+
+    public static final String PID_FILE_PREFIX = "pidfile:";
+
+    public static final String COMMAND_LINE_PREFIX = "cmdline:";
+
+    public static final String TOP_PREFIX = "top:";
+
+    public static final int MAX_TOP_COUNT = 1000;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the target, or null if the literal does not start with a known prefix.
+     *
+     * @exception IllegalArgumentException if the literal starts with a known prefix, but it is otherwise invalid.
+     */
+    public static ProcessTarget parse(String literal) {
+
+        if (literal == null) {
+
+            throw new IllegalArgumentException("null process target");
+        }
+
+        if (literal.startsWith(PID_PREFIX)) {
+
+            String s = literal.substring(PID_PREFIX.length());
+
+            int pid;
+
+            try {
+
+                pid = Integer.parseInt(s);
+            }
+            catch(NumberFormatException e) {
+
+                throw new IllegalArgumentException("invalid pid \"" + s + "\"");
+            }
+
+            if (pid <= 0) {
+
+                throw new IllegalArgumentException("invalid pid " + pid);
+            }
+
+            return new ProcessTarget(literal, pid, null, null, 0);
+        }
+
+        if (literal.startsWith(PID_FILE_PREFIX)) {
+
+            String s = literal.substring(PID_FILE_PREFIX.length());
+
+            if (s.isEmpty()) {
+
+                throw new IllegalArgumentException("missing pid file");
+            }
+
+            return new ProcessTarget(literal, -1, new File(s), null, 0);
+        }
+
+        if (literal.startsWith(COMMAND_LINE_PREFIX)) {
+
+            String s = literal.substring(COMMAND_LINE_PREFIX.length());
+
+            if (s.isEmpty()) {
+
+                throw new IllegalArgumentException("missing command line pattern");
+            }
+
+            try {
+
+                return new ProcessTarget(literal, -1, null, Pattern.compile(s), 0);
+            }
+            catch(PatternSyntaxException e) {
+
+                throw new IllegalArgumentException("invalid command line pattern \"" + s + "\"");
+            }
+        }
+
+        if (literal.startsWith(TOP_PREFIX)) {
+
+            String s = literal.substring(TOP_PREFIX.length());
+
+            int count;
+
+            try {
+
+                count = Integer.parseInt(s);
+            }
+            catch(NumberFormatException e) {
+
+                throw new IllegalArgumentException("invalid process count \"" + s + "\"");
+            }
+
+            if (count <= 0 || count > MAX_TOP_COUNT) {
+
+                throw new IllegalArgumentException(
+                        "invalid process count " + count + ", expecting a value between 1 and " + MAX_TOP_COUNT);
+            }
+
+            return new ProcessTarget(literal, -1, null, null, count);
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses the leading decimal digits of the buffer content, such as the content of a pid file.
+     *
+     * @return the number, or -1 if the content does not start with a positive number.
+     */
+    static int parsePid(ByteBuffer b) {
+
+        int i = b.position();
+
+        while(i < b.limit() && (b.get(i) == ' ' || b.get(i) == '\t')) {
+
+            i ++;
+        }
+
+        int start = i;
+        long value = 0;
+
+        while(i < b.limit() && b.get(i) >= '0' && b.get(i) <= '9' && value <= Integer.MAX_VALUE) {
+
+            value = value * 10 + (b.get(i ++) - '0');
+        }
+
+        return i == start || value == 0 || value > Integer.MAX_VALUE ? -1 : (int)value;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String literal;
+
+    //
+    // exactly one of these is set
+    //
+    private final int pid;
+    private final File pidFile;
+    private final Pattern commandLinePattern;
+    private final int topCount;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private ProcessTarget(String literal, int pid, File pidFile, Pattern commandLinePattern, int topCount) {
+
+        this.literal = literal;
+        this.pid = pid;
+        this.pidFile = pidFile;
+        this.commandLinePattern = commandLinePattern;
+        this.topCount = topCount;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Finds the current pid of the target. When several processes match the command line pattern, the one with the
+     * lowest pid is selected, so the selection is stable across scans.
+     *
+     * @param excludedPid a pid that must not be returned, usually our own, so a pattern that happens to match the
+     *                    databot command line does not select databot. Use -1 to not exclude anything.
+     *
+     * @return the pid, or -1 if no process can be found. Always -1 for a top target.
+     */
+    public int resolve(File procRoot, int excludedPid) {
+
+        if (topCount > 0) {
+
+            return -1;
+        }
+
+        if (pid > 0) {
+
+            return pid;
+        }
+
+        if (pidFile != null) {
+
+            ProcFile f = new ProcFile(pidFile);
+
+            try {
+
+                return parsePid(f.read(ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE)));
+            }
+            catch(IOException e) {
+
+                return -1;
+            }
+            finally {
+
+                f.close();
+            }
+        }
+
+        String[] names = procRoot.list();
+
+        if (names == null) {
+
+            return -1;
+        }
+
+        int result = -1;
+
+        //
+        // one buffer for the whole scan, replaced by a larger one if a command line outgrows it
+        //
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+
+        StringBuilder commandLine = new StringBuilder(256);
+        Matcher m = commandLinePattern.matcher(commandLine);
+
+        for(String name: names) {
+
+            int candidate = toPid(name);
+
+            if (candidate == -1 || candidate == excludedPid || (result != -1 && candidate > result)) {
+
+                continue;
+            }
+
+            ProcFile f = new ProcFile(new File(new File(procRoot, name), "cmdline"));
+
+            try {
+
+                buffer = f.read(buffer);
+            }
+            catch(IOException e) {
+
+                //
+                // the process is gone
+                //
+
+                continue;
+            }
+            finally {
+
+                f.close();
+            }
+
+            if (!toCommandLine(buffer, commandLine)) {
+
+                continue;
+            }
+
+            if (m.reset(commandLine).find()) {
+
+                result = candidate;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the pid, if the target was specified by pid, or -1.
+     */
+    public int getPid() {
+
+        return pid;
+    }
+
+    /**
+     * @return the pid file, if the target was specified by pid file, or null.
+     */
+    public File getPidFile() {
+
+        return pidFile;
+    }
+
+    /**
+     * @return the command line pattern, if the target was specified by pattern, or null.
+     */
+    public Pattern getCommandLinePattern() {
+
+        return commandLinePattern;
+    }
+
+    /**
+     * @return the number of processes, if the target is a top target, or 0.
+     */
+    public int getTopCount() {
+
+        return topCount;
+    }
+
+    public boolean isTop() {
+
+        return topCount > 0;
+    }
+
+    public String getLiteral() {
+
+        return literal;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o instanceof ProcessTarget && literal.equals(((ProcessTarget) o).literal);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return literal.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return literal;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the decimal digits of a /proc entry name.
+     *
+     * @return the pid, or -1 if the name is not a pid ("self", "meminfo", ...).
+     */
+    static int toPid(String name) {
+
+        int length = name.length();
+
+        if (length == 0 || length > 9) {
+
+            return -1;
+        }
+
+        int value = 0;
+
+        for(int i = 0; i < length; i ++) {
+
+            char c = name.charAt(i);
+
+            if (c < '0' || c > '9') {
+
+                return -1;
+            }
+
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    /**
+     * Copies the NUL-separated arguments of a /proc/[pid]/cmdline content into the builder, separated by spaces.
+     *
+     * @return false if the command line is empty (a kernel thread).
+     */
+    private static boolean toCommandLine(ByteBuffer b, StringBuilder sb) {
+
+        sb.setLength(0);
+
+        int end = b.limit();
+
+        while(end > b.position() && b.get(end - 1) == 0) {
+
+            end --;
+        }
+
+        for(int i = b.position(); i < end; i ++) {
+
+            byte c = b.get(i);
+            sb.append(c == 0 ? ' ' : (char)(c & 0xff));
+        }
+
+        return sb.length() > 0;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
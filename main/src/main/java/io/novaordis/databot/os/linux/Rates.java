@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * Per second rates of the monotonic kernel counters (bytes, operations, stall microseconds, CPU ticks) that the /proc
+ * and cgroup sources turn into rates, from two consecutive readings and the monotonic clock values they were taken at.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class Rates {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final double NANOS_PER_SECOND = 1000000000d;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the per second rate of a counter, 0 if the counter went back (an interface or a cgroup that was
+     * re-created, or counters that were reset).
+     */
+    public static double perSecond(long current, long previous, double seconds) {
+
+        return current < previous ? 0d : (current - previous) / seconds;
+    }
+
+    /**
+     * @return the seconds elapsed between two System.nanoTime() values.
+     */
+    public static double seconds(long fromNanos, long toNanos) {
+
+        return (toNanos - fromNanos) / NANOS_PER_SECOND;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private Rates() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
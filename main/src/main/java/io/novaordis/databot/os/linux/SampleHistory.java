@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.Arrays;
+
+/**
+ * The previous reading of each entity a source tracks by registry index - a network interface, a block device, a
+ * cgroup - as a fixed number of long values and the System.nanoTime() the reading was taken at. The rates and deltas
+ * of the next reading are computed against it. Grows with the registry, never shrinks.
+ *
+ * Not thread safe, the owning source serializes access.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class SampleHistory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final int width;
+
+    //
+    // the values of index i at i * width
+    //
+    private long[] values;
+
+    //
+    // 0 if the index was never recorded
+    //
+    private long[] nanos;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param width the number of values recorded per index.
+     */
+    public SampleHistory(int width, int initialCapacity) {
+
+        if (width <= 0) {
+
+            throw new IllegalArgumentException("invalid width " + width);
+        }
+
+        this.width = width;
+        this.values = new long[Math.max(1, initialCapacity) * width];
+        this.nanos = new long[Math.max(1, initialCapacity)];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public int getWidth() {
+
+        return width;
+    }
+
+    public int getCapacity() {
+
+        return nanos.length;
+    }
+
+    /**
+     * Makes room for indexes up to size - 1, keeping what was recorded. The capacity at least doubles, so a registry
+     * that grows one entry at a time does not copy on every reading.
+     */
+    public void ensureCapacity(int size) {
+
+        if (nanos.length >= size) {
+
+            return;
+        }
+
+        int capacity = Math.max(size, nanos.length * 2);
+
+        values = Arrays.copyOf(values, capacity * width);
+        nanos = Arrays.copyOf(nanos, capacity);
+    }
+
+    /**
+     * @return the time of the previous reading of the index, or 0 if the index was never recorded, or was cleared.
+     */
+    public long getNanos(int index) {
+
+        return nanos[index];
+    }
+
+    public long get(int index, int field) {
+
+        return values[index * width + field];
+    }
+
+    /**
+     * Records width values, copied from src starting at offset, as the latest reading of the index.
+     */
+    public void record(int index, long[] src, int offset, long timestampNanos) {
+
+        System.arraycopy(src, offset, values, index * width, width);
+        nanos[index] = timestampNanos;
+    }
+
+    /**
+     * Forgets all readings; the next reading of every index is a first reading.
+     */
+    public void clear() {
+
+        Arrays.fill(nanos, 0L);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
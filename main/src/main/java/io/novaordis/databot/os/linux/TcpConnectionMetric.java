@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+/**
+ * The metrics a TcpConnectionsMetricSource serves, by metric definition ID.
+ *
+ * Each metric produces one property per tracked local port ("CloseWait[8080]"), and one for the sockets on untracked
+ * ports ("CloseWait[other]"), if there are any. The values are socket counts, IPv4 and IPv6 together.
+ *
+ * @see TcpConnectionsMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public enum TcpConnectionMetric {
+
+    ESTABLISHED("Established", "Established TCP Connections", TcpTableSnapshot.ESTABLISHED),
+    SYN_SENT("SynSent", "TCP Connections in SYN_SENT", TcpTableSnapshot.SYN_SENT),
+    SYN_RECV("SynRecv", "TCP Connections in SYN_RECV", TcpTableSnapshot.SYN_RECV),
+    FIN_WAIT1("FinWait1", "TCP Connections in FIN_WAIT1", TcpTableSnapshot.FIN_WAIT1),
+    FIN_WAIT2("FinWait2", "TCP Connections in FIN_WAIT2", TcpTableSnapshot.FIN_WAIT2),
+    TIME_WAIT("TimeWait", "TCP Connections in TIME_WAIT", TcpTableSnapshot.TIME_WAIT),
+    CLOSE("Close", "TCP Sockets in CLOSE", TcpTableSnapshot.CLOSE),
+    CLOSE_WAIT("CloseWait", "TCP Connections in CLOSE_WAIT", TcpTableSnapshot.CLOSE_WAIT),
+    LAST_ACK("LastAck", "TCP Connections in LAST_ACK", TcpTableSnapshot.LAST_ACK),
+    LISTEN("Listen", "Listening TCP Sockets", TcpTableSnapshot.LISTEN),
+    CLOSING("Closing", "TCP Connections in CLOSING", TcpTableSnapshot.CLOSING),
+
+    //
+    // all states but LISTEN
+    //
+    CONNECTIONS("Connections", "TCP Connections", -1);
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static TcpConnectionMetric fromId(String id) {
+
+        for(TcpConnectionMetric m: values()) {
+
+            if (m.id.equals(id)) {
+
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String id;
+
+    private final String label;
+
+    //
+    // one of the TcpTableSnapshot state constants, -1 for all states but LISTEN
+    //
+    private final int state;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    TcpConnectionMetric(String id, String label, int state) {
+
+        this.id = id;
+        this.label = label;
+        this.state = state;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public String getId() {
+
+        return id;
+    }
+
+    public String getLabel() {
+
+        return label;
+    }
+
+    /**
+     * @return one of the TcpTableSnapshot state constants, -1 for all states but LISTEN.
+     */
+    public int getState() {
+
+        return state;
+    }
+
+    public Class getType() {
+
+        return Long.class;
+    }
+
+    @Override
+    public String toString() {
+
+        return id;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionBase;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+/**
+ * The definition of a TCP connection count metric, declared as:
+ *
+ * <pre>
+ * tcp/<i>metric</i>
+ * tcp:<i>ports</i>/<i>metric</i>
+ * tcp:max-ports=<i>n</i>/<i>metric</i>
+ * </pre>
+ *
+ * for example "tcp/CloseWait", or "tcp:8080,8443/Established", which reports the established connections on the local
+ * ports 8080 and 8443.
+ *
+ * @see TcpConnectionsAddress
+ * @see TcpConnectionMetric
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class TcpConnectionMetricDefinition extends MetricDefinitionBase {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the declaration is a TCP connection metric declaration, which may still be invalid.
+     */
+    public static boolean isTcpConnectionMetricDeclaration(String declaration) {
+
+        return declaration != null &&
+                (declaration.startsWith(TcpConnectionsAddress.PROTOCOL + "/") ||
+                        declaration.startsWith(TcpConnectionsAddress.PROTOCOL + ":"));
+    }
+
+    public static TcpConnectionMetricDefinition parse(PropertyFactory pf, String declaration)
+            throws MetricDefinitionException {
+
+        if (!isTcpConnectionMetricDeclaration(declaration)) {
+
+            throw new MetricDefinitionException("not a TCP connection metric declaration: \"" + declaration + "\"");
+        }
+
+        int i = declaration.indexOf('/');
+
+        if (i == -1) {
+
+            throw new MetricDefinitionException("missing TCP connection metric: \"" + declaration + "\"");
+        }
+
+        String id = declaration.substring(i + 1);
+
+        TcpConnectionMetric metric = TcpConnectionMetric.fromId(id);
+
+        if (metric == null) {
+
+            throw new MetricDefinitionException("unknown TCP connection metric \"" + id + "\"");
+        }
+
+        String options = i == TcpConnectionsAddress.PROTOCOL.length() ?
+                null : declaration.substring(TcpConnectionsAddress.PROTOCOL.length() + 1, i);
+
+        TcpConnectionsAddress address;
+
+        try {
+
+            address = TcpConnectionsAddress.parse(options);
+        }
+        catch(IllegalArgumentException e) {
+
+            throw new MetricDefinitionException(e.getMessage());
+        }
+
+        return new TcpConnectionMetricDefinition(pf, address, metric);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final TcpConnectionMetric metric;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public TcpConnectionMetricDefinition(
+            PropertyFactory pf, TcpConnectionsAddress address, TcpConnectionMetric metric) {
+
+        super(pf, address);
+
+        if (metric == null) {
+
+            throw new IllegalArgumentException("null metric");
+        }
+
+        this.metric = metric;
+    }
+
+    // MetricDefinition implementation ---------------------------------------------------------------------------------
+
+    @Override
+    public String getId() {
+
+        return metric.getId();
+    }
+
+    @Override
+    public String getSimpleLabel() {
+
+        return metric.getLabel();
+    }
+
+    /**
+     * @return null, counts are dimensionless.
+     */
+    @Override
+    public MeasureUnit getBaseUnit() {
+
+        return null;
+    }
+
+    @Override
+    public String getDescription() {
+
+        return metric.getLabel();
+    }
+
+    @Override
+    public Class getType() {
+
+        return metric.getType();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public TcpConnectionMetric getMetric() {
+
+        return metric;
+    }
+
+    @Override
+    public String toString() {
+
+        return getMetricSourceAddress() + "/" + metric.getId();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The address of the local TCP connection table source: "tcp", optionally followed by a colon and either a
+ * comma-separated list of local ports, or the maximum number of ports to track:
+ *
+ * <pre>
+ * tcp
+ * tcp:8080,8443
+ * tcp:max-ports=256
+ * </pre>
+ *
+ * With an explicit port list, only those ports are tracked. Otherwise the first ports found in the table are tracked,
+ * up to the maximum (DEFAULT_MAX_PORTS if not specified). The listening sockets come first in /proc/net/tcp, so the
+ * listening ports are tracked before the ephemeral ports of outgoing connections. Sockets on untracked ports are
+ * counted together, as "other".
+ *
+ * Immutable and thread safe.
+ *
+ * @see TcpConnectionsMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class TcpConnectionsAddress implements Address {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PROTOCOL = "tcp";
+
+    public static final int DEFAULT_MAX_PORTS = 64;
+
+    public static final String MAX_PORTS = "max-ports=";
+
+    private static final int MAX_PORT = 65535;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param options the port list or the maximum number of ports that follows "tcp:", or null.
+     *
+     * @exception IllegalArgumentException on invalid options.
+     */
+    public static TcpConnectionsAddress parse(String options) {
+
+        if (options == null) {
+
+            return new TcpConnectionsAddress(DEFAULT_MAX_PORTS);
+        }
+
+        options = options.trim();
+
+        if (options.startsWith(MAX_PORTS)) {
+
+            String s = options.substring(MAX_PORTS.length());
+
+            int maxPorts;
+
+            try {
+
+                maxPorts = Integer.parseInt(s);
+            }
+            catch(NumberFormatException e) {
+
+                maxPorts = -1;
+            }
+
+            if (maxPorts < 1 || maxPorts > MAX_PORT + 1) {
+
+                throw new IllegalArgumentException("invalid maximum number of ports \"" + s + "\"");
+            }
+
+            return new TcpConnectionsAddress(maxPorts);
+        }
+
+        List<Integer> ports = new ArrayList<>();
+
+        for(String p: options.split(",")) {
+
+            p = p.trim();
+
+            int port;
+
+            try {
+
+                port = Integer.parseInt(p);
+            }
+            catch(NumberFormatException e) {
+
+                port = -1;
+            }
+
+            if (port < 0 || port > MAX_PORT) {
+
+                throw new IllegalArgumentException("invalid port \"" + p + "\"");
+            }
+
+            if (!ports.contains(port)) {
+
+                ports.add(port);
+            }
+        }
+
+        int[] a = new int[ports.size()];
+
+        for(int i = 0; i < a.length; i ++) {
+
+            a[i] = ports.get(i);
+        }
+
+        return new TcpConnectionsAddress(a);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // null if the ports are discovered
+    //
+    private final int[] ports;
+
+    private final int maxPorts;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public TcpConnectionsAddress() {
+
+        this(DEFAULT_MAX_PORTS);
+    }
+
+    /**
+     * Tracks the first maxPorts ports found in the table.
+     */
+    public TcpConnectionsAddress(int maxPorts) {
+
+        this.ports = null;
+        this.maxPorts = maxPorts;
+    }
+
+    /**
+     * Tracks the given ports only.
+     */
+    public TcpConnectionsAddress(int[] ports) {
+
+        this.ports = ports.clone();
+        this.maxPorts = ports.length;
+    }
+
+    // Address implementation ------------------------------------------------------------------------------------------
+
+    @Override
+    public String getLiteral() {
+
+        if (ports != null) {
+
+            StringBuilder sb = new StringBuilder(PROTOCOL).append(':');
+
+            for(int i = 0; i < ports.length; i ++) {
+
+                sb.append(i == 0 ? "" : ",").append(ports[i]);
+            }
+
+            return sb.toString();
+        }
+
+        return maxPorts == DEFAULT_MAX_PORTS ? PROTOCOL : PROTOCOL + ":" + MAX_PORTS + maxPorts;
+    }
+
+    @Override
+    public String getProtocol() {
+
+        return PROTOCOL;
+    }
+
+    /**
+     * @return null, the connection table is always local.
+     */
+    @Override
+    public String getHost() {
+
+        return null;
+    }
+
+    @Override
+    public Integer getPort() {
+
+        return null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the explicitly tracked ports, or null if the ports are discovered.
+     */
+    public int[] getPorts() {
+
+        return ports == null ? null : ports.clone();
+    }
+
+    public int getMaxPorts() {
+
+        return maxPorts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (!(o instanceof TcpConnectionsAddress)) {
+
+            return false;
+        }
+
+        TcpConnectionsAddress that = (TcpConnectionsAddress)o;
+
+        return maxPorts == that.maxPorts && Arrays.equals(ports, that.ports);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return PROTOCOL.hashCode() + 17 * maxPorts + Arrays.hashCode(ports);
+    }
+
+    @Override
+    public String toString() {
+
+        return getLiteral();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
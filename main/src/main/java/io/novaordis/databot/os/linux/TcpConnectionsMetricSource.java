@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * TCP socket counts by local port and state, read from /proc/net/tcp and /proc/net/tcp6 without forking ss or netstat.
+ * A metric produces one property per tracked port ("CloseWait[8080]"), and one for all untracked ports together
+ * ("CloseWait[other]") when sockets on untracked ports exist. A steadily growing CLOSE_WAIT count on a port is the
+ * usual sign of an application that does not close its connections.
+ *
+ * @see TcpTableReader
+ * @see TcpConnectionsAddress
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class TcpConnectionsMetricSource extends LinuxMetricSourceBase<TcpConnectionsAddress, TcpConnectionMetric> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String OTHER = "other";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param counts the per-state counts, starting at offset.
+     */
+    static long count(TcpConnectionMetric m, int[] counts, int offset) {
+
+        int state = m.getState();
+
+        if (state != -1) {
+
+            return counts[offset + state];
+        }
+
+        long sum = 0;
+
+        for(int i = 0; i < TcpTableSnapshot.STATE_COUNT; i ++) {
+
+            sum += i == TcpTableSnapshot.LISTEN ? 0 : counts[offset + i];
+        }
+
+        return sum;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final TcpTableReader reader;
+
+    private final TcpTableSnapshot current;
+
+    //
+    // port property names, by metric ordinal, then by slot, and the port each name was built for
+    //
+    private final String[][] portNames;
+    private final int[][] namedPorts;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public TcpConnectionsMetricSource(
+            TcpConnectionsAddress address, TcpTableReader reader, PropertyFactory propertyFactory) {
+
+        super(address, reader, propertyFactory, TcpConnectionMetric::fromId, TcpConnectionMetric[]::new,
+                "TCP connection");
+
+        this.reader = reader;
+
+        int[] ports = address.getPorts();
+
+        this.current = ports == null ? new TcpTableSnapshot(address.getMaxPorts()) : new TcpTableSnapshot(ports);
+
+        int metrics = TcpConnectionMetric.values().length;
+
+        this.portNames = new String[metrics][address.getMaxPorts() + 1];
+        this.namedPorts = new int[metrics][address.getMaxPorts() + 1];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected synchronized List<Property> collect(
+            List<MetricDefinition> metricDefinitions, TcpConnectionMetric[] metrics) throws MetricSourceException {
+
+        try {
+
+            reader.read(current);
+        }
+        catch(IOException | InvalidExecutionOutputException e) {
+
+            throw new MetricSourceException("failed to read " + reader.getProcRoot() + "/net/tcp", e);
+        }
+
+        List<Property> result = new ArrayList<>();
+
+        int ports = current.portCount;
+
+        for(int i = 0; i < metrics.length; i ++) {
+
+            MetricDefinition md = metricDefinitions.get(i);
+            TcpConnectionMetric m = metrics[i];
+
+            Class type = md.getType();
+
+            type = type == null ? m.getType() : type;
+
+            for(int slot = 0; slot < ports; slot ++) {
+
+                long value = count(m, current.counts, slot * TcpTableSnapshot.STATE_COUNT);
+
+                result.add(getPropertyFactory().createInstance(
+                        portName(m, md, slot), type, toType(value, type), null, null));
+            }
+
+            if (current.otherSocketCount > 0) {
+
+                long value = count(m, current.other, 0);
+
+                result.add(getPropertyFactory().createInstance(
+                        portName(m, md, -1), type, toType(value, type), null, null));
+            }
+        }
+
+        return result;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param slot -1 for the untracked ports.
+     */
+    private String portName(TcpConnectionMetric m, MetricDefinition md, int slot) {
+
+        String[] names = portNames[m.ordinal()];
+        int[] ports = namedPorts[m.ordinal()];
+
+        //
+        // the untracked ports use the last position
+        //
+
+        int index = slot == -1 ? names.length - 1 : slot;
+        int port = slot == -1 ? -1 : current.ports[slot];
+
+        String name = names[index];
+
+        if (name == null || ports[index] != port) {
+
+            names[index] = name = getPropertyName(md.getId(), slot == -1 ? OTHER : Integer.toString(port));
+            ports[index] = port;
+        }
+
+        return name;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
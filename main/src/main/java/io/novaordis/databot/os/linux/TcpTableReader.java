@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Aggregates /proc/net/tcp and /proc/net/tcp6 into a TcpTableSnapshot, by local port and state.
+ *
+ * On busy hosts the tables hold hundreds of thousands of lines, so they are not read whole: each file, kept open, is
+ * streamed in chunks through a direct buffer owned by the reader, and every complete line in the buffer is parsed in
+ * place, before the partial last line is moved to the front and the next chunk read after it. Only the local port and
+ * the state are decoded from their hexadecimal fields, the rest of the line is skipped. No memory is allocated on the
+ * per-sample path. /proc/net/tcp6 is optional, it does not exist if IPv6 is disabled.
+ *
+ * Not thread safe.
+ *
+ * @see TcpTableSnapshot
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class TcpTableReader implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if /proc/net/tcp exists and is readable under the given root.
+     */
+    public static boolean isAvailable(File procRoot) {
+
+        return new File(procRoot, "net/tcp").canRead();
+    }
+
+    /**
+     * @return the value of the hexadecimal digit, or -1 if the byte is not a hexadecimal digit.
+     */
+    static int hex(byte c) {
+
+        if (c >= '0' && c <= '9') {
+
+            return c - '0';
+        }
+
+        if (c >= 'A' && c <= 'F') {
+
+            return c - 'A' + 10;
+        }
+
+        if (c >= 'a' && c <= 'f') {
+
+            return c - 'a' + 10;
+        }
+
+        return -1;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    private final ProcFile tcp;
+
+    private final ProcFile tcp6;
+
+    private final ByteBuffer buffer;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public TcpTableReader(File procRoot) {
+
+        this(procRoot, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize must be larger than the longest line.
+     */
+    TcpTableReader(File procRoot, int bufferSize) {
+
+        if (procRoot == null) {
+
+            throw new IllegalArgumentException("null /proc root");
+        }
+
+        this.procRoot = procRoot;
+        this.tcp = new ProcFile(new File(procRoot, "net/tcp"));
+        this.tcp6 = new ProcFile(new File(procRoot, "net/tcp6"));
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public void close() {
+
+        tcp.close();
+        tcp6.close();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Overwrites the given snapshot with fresh counts.
+     *
+     * @exception IOException if /proc/net/tcp cannot be read.
+     * @exception InvalidExecutionOutputException if a line cannot be parsed.
+     */
+    public void read(TcpTableSnapshot s) throws IOException, InvalidExecutionOutputException {
+
+        s.clear();
+        s.timestampNanos = System.nanoTime();
+
+        stream(tcp, s);
+
+        try {
+
+            stream(tcp6, s);
+        }
+        catch(NoSuchFileException e) {
+
+            // IPv6 disabled
+        }
+    }
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    @Override
+    public String toString() {
+
+        return "/proc/net/tcp reader[" + procRoot + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the complete lines between the buffer's position and its limit, and leaves the buffer positioned at the
+     * beginning of the partial last line, if any.
+     */
+    void parseLines(ByteBuffer b, TcpTableSnapshot s) throws InvalidExecutionOutputException {
+
+        int start = b.position();
+        int limit = b.limit();
+
+        for(int i = start; i < limit; i ++) {
+
+            if (b.get(i) == '\n') {
+
+                parseLine(b, start, i, s);
+                start = i + 1;
+            }
+        }
+
+        b.position(start);
+    }
+
+    /**
+     * "   2: 0100007F:BC8F 0100007F:EB5A 01 00000000:00000000 00:00000000 00000000  1000  0 19331 1 ...". The IPv6
+     * addresses have 32 hexadecimal digits. The header line, which does not start with a number, is skipped.
+     *
+     * @param end the offset of the line terminator, or the limit.
+     */
+    void parseLine(ByteBuffer b, int start, int end, TcpTableSnapshot s) throws InvalidExecutionOutputException {
+
+        int i = skipSpaces(b, start, end);
+
+        if (i == end || b.get(i) < '0' || b.get(i) > '9') {
+
+            return;
+        }
+
+        //
+        // "sl:" then the local address
+        //
+
+        i = skipSpaces(b, skipPast(b, i, end, ':', start), end);
+        i = skipPast(b, i, end, ':', start);
+
+        int port = 0;
+        int digits = 0;
+
+        for(int d; i < end && (d = hex(b.get(i))) != -1; i ++) {
+
+            port = (port << 4) | d;
+            digits ++;
+        }
+
+        if (digits == 0 || digits > 4) {
+
+            throw new InvalidExecutionOutputException("invalid local port in line at offset " + start);
+        }
+
+        //
+        // the remote address, then the state
+        //
+
+        i = skipSpaces(b, i, end);
+
+        while(i < end && b.get(i) != ' ') {
+
+            i ++;
+        }
+
+        i = skipSpaces(b, i, end);
+
+        int state = i + 1 < end ? (hex(b.get(i)) << 4) | hex(b.get(i + 1)) : -1;
+
+        if (state < 0) {
+
+            throw new InvalidExecutionOutputException("invalid state in line at offset " + start);
+        }
+
+        s.add(port, state);
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void stream(ProcFile f, TcpTableSnapshot s) throws IOException, InvalidExecutionOutputException {
+
+        ByteBuffer b = buffer;
+
+        b.clear();
+
+        long position = 0;
+
+        while(true) {
+
+            int n = f.read(b, position);
+
+            if (n <= 0) {
+
+                break;
+            }
+
+            position += n;
+
+            b.flip();
+
+            parseLines(b, s);
+
+            if (b.position() == 0 && b.limit() == b.capacity()) {
+
+                throw new InvalidExecutionOutputException(
+                        f + " line at offset " + (position - b.limit()) + " longer than " + b.capacity() + " bytes");
+            }
+
+            b.compact();
+        }
+
+        //
+        // a last line without terminator
+        //
+
+        b.flip();
+
+        if (b.hasRemaining()) {
+
+            parseLine(b, b.position(), b.limit(), s);
+        }
+    }
+
+    private static int skipSpaces(ByteBuffer b, int i, int end) {
+
+        while(i < end && b.get(i) == ' ') {
+
+            i ++;
+        }
+
+        return i;
+    }
+
+    /**
+     * @return the offset that follows the first occurrence of the character.
+     */
+    private static int skipPast(ByteBuffer b, int i, int end, char c, int lineStart)
+            throws InvalidExecutionOutputException {
+
+        while(i < end) {
+
+            if (b.get(i ++) == c) {
+
+                return i;
+            }
+        }
+
+        throw new InvalidExecutionOutputException("missing '" + c + "' in line at offset " + lineStart);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.Arrays;
+
+/**
+ * Socket counts by local port and TCP state, aggregated from /proc/net/tcp and /proc/net/tcp6 by TcpTableReader, held
+ * in primitive arrays that are overwritten in place.
+ *
+ * A port is counted in its own slot if it is tracked, and together with all other untracked ports otherwise. The
+ * tracked ports are either fixed, or assigned to slots in the order they are first seen during a reading, until the
+ * maximum number of ports is reached. The counts of the port in slot i are at i * STATE_COUNT, indexed by the kernel
+ * state constants below.
+ *
+ * Not thread safe.
+ *
+ * @see TcpTableReader
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class TcpTableSnapshot {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // the kernel's TCP states (include/net/tcp_states.h), as they appear, in hexadecimal, in the "st" column
+    //
+    public static final int ESTABLISHED = 1;
+    public static final int SYN_SENT = 2;
+    public static final int SYN_RECV = 3;
+    public static final int FIN_WAIT1 = 4;
+    public static final int FIN_WAIT2 = 5;
+    public static final int TIME_WAIT = 6;
+    public static final int CLOSE = 7;
+    public static final int CLOSE_WAIT = 8;
+    public static final int LAST_ACK = 9;
+    public static final int LISTEN = 10;
+    public static final int CLOSING = 11;
+    public static final int NEW_SYN_RECV = 12;
+
+    public static final int STATE_COUNT = 13;
+
+    private static final int PORT_COUNT = 65536;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    long timestampNanos;
+
+    int socketCount;
+
+    int otherSocketCount;
+
+    int portCount;
+
+    //
+    // the port, by slot
+    //
+    final int[] ports;
+
+    //
+    // by slot, then state
+    //
+    final int[] counts;
+
+    //
+    // the counts of the untracked ports, by state
+    //
+    final int[] other;
+
+    //
+    // the slot, by port, -1 if the port is not tracked
+    //
+    private final int[] slots;
+
+    private final boolean fixed;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * Tracks the first maxPorts ports seen during each reading.
+     */
+    public TcpTableSnapshot(int maxPorts) {
+
+        this(new int[maxPorts], false);
+    }
+
+    /**
+     * Tracks the given ports only.
+     */
+    public TcpTableSnapshot(int[] ports) {
+
+        this(ports.clone(), true);
+    }
+
+    private TcpTableSnapshot(int[] ports, boolean fixed) {
+
+        if (ports.length == 0) {
+
+            throw new IllegalArgumentException("no ports to track");
+        }
+
+        this.ports = ports;
+        this.fixed = fixed;
+        this.counts = new int[ports.length * STATE_COUNT];
+        this.other = new int[STATE_COUNT];
+        this.slots = new int[PORT_COUNT];
+
+        Arrays.fill(slots, -1);
+
+        if (fixed) {
+
+            for(int i = 0; i < ports.length; i ++) {
+
+                slots[ports[i]] = i;
+            }
+
+            this.portCount = ports.length;
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public long getTimestampNanos() {
+
+        return timestampNanos;
+    }
+
+    /**
+     * @return the number of sockets in the tables, in any state, on any port.
+     */
+    public int getSocketCount() {
+
+        return socketCount;
+    }
+
+    /**
+     * @return the number of sockets on untracked ports.
+     */
+    public int getOtherSocketCount() {
+
+        return otherSocketCount;
+    }
+
+    public int getPortCount() {
+
+        return portCount;
+    }
+
+    /**
+     * @param slot between 0 and getPortCount() - 1.
+     */
+    public int getPort(int slot) {
+
+        return ports[slot];
+    }
+
+    /**
+     * @return the slot of the port, or -1 if the port is not tracked.
+     */
+    public int getSlot(int port) {
+
+        return slots[port];
+    }
+
+    /**
+     * @param state one of the state constants.
+     */
+    public int getCount(int slot, int state) {
+
+        return counts[slot * STATE_COUNT + state];
+    }
+
+    /**
+     * @param state one of the state constants.
+     *
+     * @return the count of the sockets in the given state on the untracked ports.
+     */
+    public int getOtherCount(int state) {
+
+        return other[state];
+    }
+
+    public void clear() {
+
+        timestampNanos = 0L;
+        socketCount = 0;
+        otherSocketCount = 0;
+
+        if (!fixed) {
+
+            for(int i = 0; i < portCount; i ++) {
+
+                slots[ports[i]] = -1;
+            }
+
+            portCount = 0;
+        }
+
+        Arrays.fill(counts, 0);
+        Arrays.fill(other, 0);
+    }
+
+    @Override
+    public String toString() {
+
+        return "tcp snapshot[" + socketCount + " socket(s), " + portCount + " port(s)]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * Counts a socket. States the kernel may add in the future are counted as sockets, but not by state.
+     */
+    void add(int port, int state) {
+
+        socketCount ++;
+
+        int slot = slots[port];
+
+        if (slot == -1 && !fixed && portCount < ports.length) {
+
+            slot = portCount ++;
+            ports[slot] = port;
+            slots[port] = slot;
+        }
+
+        boolean known = state > 0 && state < STATE_COUNT;
+
+        if (slot == -1) {
+
+            otherSocketCount ++;
+
+            if (known) {
+
+                other[state] ++;
+            }
+        }
+        else if (known) {
+
+            counts[slot * STATE_COUNT + state] ++;
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,869 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+/**
+ * Scans /proc/[pid]/stat for all processes and ranks them by CPU usage since the previous scan and by resident memory.
+ *
+ * The cost of a scan is dominated by opening and reading one stat file per process, so everything else is kept off
+ * the per-process path:
+ *
+ * - Listing /proc creates a String per entry, so it is avoided. The pids allocated by the kernel since the previous
+ * scan are the ones between the last pid allocated then and now (the last field of /proc/loadavg). If there are only a
+ * few, they are checked one by one instead: thread ids are allocated from the same range, and /proc/[tid] exists
+ * even though it is not listed, so a pid is only added if it is its own thread group id. /proc is listed on the first
+ * scan, when many pids were allocated, and when the pids wrapped around. Processes that exit are dropped from the pid
+ * list when their stat file cannot be read anymore.
+ *
+ * - The stat files are kept open between scans and re-read with positional reads, which make the kernel regenerate
+ * the content. An open stat file keeps referring to the process it was opened for, so if it cannot be read anymore,
+ * it is opened again by pid, in case the pid was reused. Each open file holds a file descriptor, so their number is
+ * capped, and the stat files past the cap are opened and closed on every scan.
+ *
+ * - The per-process state (CPU ticks, start time, command name and open stat file) is kept in two PidTables: the one
+ * filled by the previous scan, which is looked up, and the one being filled. They are swapped after every scan.
+ *
+ * - The top K are selected with a bounded min-heap over the scan results, in O(n log K), and command name Strings are
+ * only created for the processes that are reported.
+ *
+ * Once the tables are large enough, a scan during which no process was created and whose stat files are all kept
+ * open does not allocate.
+ *
+ * Not thread safe: meant to be owned by a single source, which serializes scans.
+ *
+ * @see PidTable
+ * @see TopProcessesMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class TopProcessScanner implements Closeable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final long DEFAULT_PAGE_SIZE = 4096L;
+
+    //
+    // a quarter of the 4096 descriptors hard limit still common on servers
+    //
+    public static final int DEFAULT_MAX_OPEN_STAT_FILES = 1024;
+
+    //
+    // beyond this many pids allocated since the previous scan, listing /proc is cheaper than checking each
+    //
+    public static final int MAX_PROBED_PIDS = 64;
+
+    private static final byte[] TGID = ByteCursor.bytes("Tgid:");
+
+    //
+    // a stat line is around 300 bytes
+    //
+    private static final int STAT_BUFFER_SIZE = 4096;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final File procRoot;
+
+    private final long pageSize;
+
+    private final int maxOpenStatFiles;
+
+    private final Path procPath;
+
+    private final ProcFile uptime;
+
+    private final ProcFile loadavg;
+
+    private final ByteCursor cursor;
+
+    //
+    // for /proc/uptime and /proc/loadavg, the per-process stat files have their own
+    //
+    private ByteBuffer buffer;
+
+    private final ByteBuffer statBuffer;
+
+    //
+    // the pids from the last listing, minus the ones that exited since
+    //
+    private int[] pids;
+    private int pidCount;
+
+    //
+    // the last pid from /proc/loadavg at the time of the last listing or probe, -1 if it is not known
+    //
+    private long listedLastPid;
+
+    private long listingCount;
+
+    private long probeCount;
+
+    private int openStatFiles;
+
+    private PidTable previous;
+    private PidTable current;
+
+    //
+    // the results of the last scan, in scan order: the slot in the current table, the CPU percentage since the
+    // previous scan and the resident memory in bytes
+    //
+    private int[] slots;
+    private double[] cpu;
+    private long[] residentMemory;
+    private int processCount;
+
+    private long previousScanNanos;
+
+    private int[] heap;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param pageSize the memory page size in bytes, /proc/[pid]/stat reports the resident set size in pages.
+     */
+    public TopProcessScanner(File procRoot, long pageSize) {
+
+        this(procRoot, pageSize, DEFAULT_MAX_OPEN_STAT_FILES);
+    }
+
+    /**
+     * @param maxOpenStatFiles the number of stat files kept open between scans. 0 opens every stat file on every scan.
+     */
+    public TopProcessScanner(File procRoot, long pageSize, int maxOpenStatFiles) {
+
+        if (procRoot == null) {
+
+            throw new IllegalArgumentException("null /proc root");
+        }
+
+        if (pageSize <= 0) {
+
+            throw new IllegalArgumentException("invalid page size " + pageSize);
+        }
+
+        if (maxOpenStatFiles < 0) {
+
+            throw new IllegalArgumentException("invalid maximum number of open stat files " + maxOpenStatFiles);
+        }
+
+        this.procRoot = procRoot;
+        this.pageSize = pageSize;
+        this.maxOpenStatFiles = maxOpenStatFiles;
+        this.procPath = procRoot.toPath();
+        this.uptime = new ProcFile(new File(procRoot, "uptime"));
+        this.loadavg = new ProcFile(new File(procRoot, "loadavg"));
+        this.cursor = new ByteCursor();
+        this.buffer = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+        this.statBuffer = ByteBuffer.allocateDirect(STAT_BUFFER_SIZE);
+        this.pids = new int[PidTable.DEFAULT_CAPACITY / 2];
+        this.listedLastPid = -1;
+        this.previous = new PidTable();
+        this.current = new PidTable();
+        this.slots = new int[pids.length];
+        this.cpu = new double[pids.length];
+        this.residentMemory = new long[pids.length];
+        this.previousScanNanos = -1L;
+        this.heap = new int[0];
+    }
+
+    // Closeable implementation ----------------------------------------------------------------------------------------
+
+    /**
+     * Closes /proc/uptime, /proc/loadavg and the stat files, and forgets the previous scan. The scanner can still be
+     * used.
+     */
+    @Override
+    public void close() {
+
+        uptime.close();
+        loadavg.close();
+
+        previous.closeStatChannels();
+        current.closeStatChannels();
+        openStatFiles = 0;
+
+        previous.clear();
+        current.clear();
+        pidCount = 0;
+        listedLastPid = -1;
+        processCount = 0;
+        previousScanNanos = -1L;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the stat file of every process.
+     *
+     * @return the number of processes scanned.
+     *
+     * @exception IOException if /proc cannot be listed or /proc/uptime cannot be read.
+     */
+    public int scan() throws IOException, InvalidExecutionOutputException {
+
+        long nanos = System.nanoTime();
+
+        buffer = uptime.read(buffer);
+
+        double uptimeSec = cursor.reset(buffer).nextDouble();
+
+        long lastPid = readLastPid();
+
+        if (lastPid == -1 || listedLastPid == -1 || lastPid < listedLastPid ||
+                lastPid - listedLastPid > MAX_PROBED_PIDS) {
+
+            list();
+        }
+        else if (lastPid != listedLastPid) {
+
+            probe((int)listedLastPid + 1, (int)lastPid);
+        }
+
+        listedLastPid = lastPid;
+
+        PidTable t = previous;
+        previous = current;
+        current = t;
+
+        current.clear();
+        current.ensureCapacity(pidCount);
+
+        if (slots.length < pidCount) {
+
+            slots = new int[pids.length];
+            cpu = new double[pids.length];
+            residentMemory = new long[pids.length];
+        }
+
+        double elapsedSec = previousScanNanos == -1L ? -1d : Rates.seconds(previousScanNanos, nanos);
+
+        int live = 0;
+        int n = 0;
+        int open = 0;
+
+        for(int i = 0; i < pidCount; i ++) {
+
+            int pid = pids[i];
+
+            int previousSlot = previous.find(pid);
+
+            FileChannel c = null;
+
+            if (previousSlot != -1) {
+
+                c = previous.statChannels[previousSlot];
+                previous.statChannels[previousSlot] = null;
+            }
+
+            boolean read = c != null && readStat(c);
+
+            if (!read) {
+
+                //
+                // the process the file was opened for exited, but the pid may have been reused since
+                //
+
+                close(c);
+
+                c = open(pid);
+
+                read = c != null && readStat(c);
+            }
+
+            if (!read) {
+
+                //
+                // the process is gone, drop it from the pid list
+                //
+
+                close(c);
+                continue;
+            }
+
+            pids[live ++] = pid;
+
+            int slot = current.insert(pid);
+
+            if (open < maxOpenStatFiles) {
+
+                current.statChannels[slot] = c;
+                open ++;
+            }
+            else {
+
+                close(c);
+            }
+
+            long rssPages;
+
+            try {
+
+                rssPages = parseStat(slot);
+            }
+            catch(InvalidExecutionOutputException e) {
+
+                throw new InvalidExecutionOutputException("invalid " + procRoot + "/" + pid + "/stat content", e);
+            }
+
+            long ticks = current.ticks[slot];
+
+            double ticksPerSec;
+
+            if (previousSlot != -1 && previous.startTimes[previousSlot] == current.startTimes[slot] &&
+                    elapsedSec > 0) {
+
+                ticksPerSec = (ticks - previous.ticks[previousSlot]) / elapsedSec;
+            }
+            else {
+
+                //
+                // a process we did not see before: all its CPU time was used since it started, which was after the
+                // previous scan, unless this is the first scan
+                //
+
+                double ageSec = uptimeSec - (double)current.startTimes[slot] / ProcessMetric.USER_HZ;
+
+                double windowSec = elapsedSec > 0 ? Math.min(ageSec, elapsedSec) : ageSec;
+
+                ticksPerSec = windowSec > 0 ? ticks / windowSec : 0d;
+            }
+
+            slots[n] = slot;
+            cpu[n] = 100d * ticksPerSec / ProcessMetric.USER_HZ;
+            residentMemory[n] = rssPages * pageSize;
+            n ++;
+        }
+
+        //
+        // the stat files of the processes that are not in the pid list anymore
+        //
+
+        previous.closeStatChannels();
+
+        pidCount = live;
+        processCount = n;
+        openStatFiles = open;
+        previousScanNanos = nanos;
+
+        return n;
+    }
+
+    /**
+     * Selects the processes that used the most CPU since the previous scan, from the results of the last scan.
+     *
+     * @param result receives the indexes of the selected processes, highest CPU usage first. Must have room for k.
+     *
+     * @return the number of processes selected: k, or fewer if there are not enough processes.
+     */
+    public int selectByCpu(int k, int[] result) {
+
+        return select(k, result, true);
+    }
+
+    /**
+     * Selects the processes with the largest resident set, from the results of the last scan.
+     *
+     * @see TopProcessScanner#selectByCpu(int, int[])
+     */
+    public int selectByResidentMemory(int k, int[] result) {
+
+        return select(k, result, false);
+    }
+
+    /**
+     * @param index the index of a process in the last scan, as returned by the select methods.
+     */
+    public int getPid(int index) {
+
+        return current.getPid(slots[index]);
+    }
+
+    /**
+     * @see TopProcessScanner#getPid(int)
+     */
+    public String getCommand(int index) {
+
+        return current.getCommand(slots[index]);
+    }
+
+    /**
+     * @return the CPU time used since the previous scan, as a percentage of one CPU, so a multi-threaded process may
+     * exceed 100. For the first scan, and for the processes started since the previous scan, the average since the
+     * process started.
+     *
+     * @see TopProcessScanner#getPid(int)
+     */
+    public double getCpuPercentage(int index) {
+
+        return cpu[index];
+    }
+
+    /**
+     * @return the resident memory, in bytes.
+     *
+     * @see TopProcessScanner#getPid(int)
+     */
+    public long getResidentMemory(int index) {
+
+        return residentMemory[index];
+    }
+
+    /**
+     * @return the number of processes in the last scan.
+     */
+    public int getProcessCount() {
+
+        return processCount;
+    }
+
+    /**
+     * @return the number of times /proc was listed.
+     */
+    public long getListingCount() {
+
+        return listingCount;
+    }
+
+    /**
+     * @return the number of times the pids allocated since the previous scan were checked one by one, instead of
+     * listing /proc.
+     */
+    public long getProbeCount() {
+
+        return probeCount;
+    }
+
+    /**
+     * @return the number of stat files kept open after the last scan.
+     */
+    public int getOpenStatFileCount() {
+
+        return openStatFiles;
+    }
+
+    public int getMaxOpenStatFiles() {
+
+        return maxOpenStatFiles;
+    }
+
+    public File getProcRoot() {
+
+        return procRoot;
+    }
+
+    public long getPageSize() {
+
+        return pageSize;
+    }
+
+    @Override
+    public String toString() {
+
+        return "top process scanner[" + procRoot + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the last pid allocated by the kernel, or -1 if /proc/loadavg cannot be read, in which case /proc is
+     * listed on every scan.
+     */
+    private long readLastPid() {
+
+        try {
+
+            buffer = loadavg.read(buffer);
+            cursor.reset(buffer);
+
+            //
+            // "0.20 0.18 0.12 1/80 11206"
+            //
+
+            for(int i = 0; i < 4; i ++) {
+
+                cursor.skipToken();
+            }
+
+            return cursor.nextLong();
+        }
+        catch(IOException | InvalidExecutionOutputException e) {
+
+            return -1;
+        }
+    }
+
+    private void list() throws IOException {
+
+        String[] names = procRoot.list();
+
+        if (names == null) {
+
+            throw new IOException("cannot list " + procRoot);
+        }
+
+        listingCount ++;
+
+        if (pids.length < names.length) {
+
+            pids = new int[names.length];
+        }
+
+        pidCount = 0;
+
+        for(String name: names) {
+
+            int pid = ProcessTarget.toPid(name);
+
+            if (pid != -1) {
+
+                pids[pidCount ++] = pid;
+            }
+        }
+    }
+
+    /**
+     * Appends to the pid list the processes among the given pids, which were allocated since the previous scan.
+     */
+    private void probe(int from, int to) {
+
+        probeCount ++;
+
+        for(int pid = from; pid <= to; pid ++) {
+
+            if (current.find(pid) != -1 || !isProcess(pid)) {
+
+                continue;
+            }
+
+            if (pidCount == pids.length) {
+
+                pids = Arrays.copyOf(pids, pids.length * 2);
+            }
+
+            pids[pidCount ++] = pid;
+        }
+    }
+
+    /**
+     * @return true if the pid is a live process, false if it is a thread of another process, or nothing.
+     */
+    private boolean isProcess(int pid) {
+
+        statBuffer.clear();
+
+        try(FileChannel c = FileChannel.open(
+                procPath.resolve(Integer.toString(pid)).resolve("status"), StandardOpenOption.READ)) {
+
+            //noinspection StatementWithEmptyBody
+            while(statBuffer.hasRemaining() && c.read(statBuffer) > 0);
+        }
+        catch(IOException e) {
+
+            return false;
+        }
+
+        statBuffer.flip();
+
+        cursor.reset(statBuffer);
+
+        try {
+
+            do {
+
+                if (cursor.consumeToken(TGID)) {
+
+                    return cursor.nextLong() == pid;
+                }
+            }
+            while(cursor.nextLine());
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            return false;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return null if the file cannot be opened, the process is gone.
+     */
+    private FileChannel open(int pid) {
+
+        try {
+
+            return FileChannel.open(procPath.resolve(Integer.toString(pid)).resolve("stat"), StandardOpenOption.READ);
+        }
+        catch(IOException e) {
+
+            return null;
+        }
+    }
+
+    /**
+     * Reads the whole file from offset zero into the stat buffer.
+     *
+     * @return false if the file cannot be read, the process is gone.
+     */
+    private boolean readStat(FileChannel c) {
+
+        statBuffer.clear();
+
+        try {
+
+            long position = 0;
+            int n;
+
+            while(statBuffer.hasRemaining() && (n = c.read(statBuffer, position)) > 0) {
+
+                position += n;
+            }
+        }
+        catch(IOException e) {
+
+            return false;
+        }
+
+        statBuffer.flip();
+
+        return statBuffer.hasRemaining();
+    }
+
+    private static void close(FileChannel c) {
+
+        if (c == null) {
+
+            return;
+        }
+
+        try {
+
+            c.close();
+        }
+        catch(IOException e) {
+
+            //
+            // nothing to do about it, the file was only read
+            //
+        }
+    }
+
+    /**
+     * Parses the stat buffer into the given slot of the current table: "1234 (java) S ... utime stime cutime cstime
+     * priority nice num_threads itrealvalue starttime vsize rss ..."
+     *
+     * @return the resident set size, in pages.
+     */
+    private long parseStat(int slot) throws InvalidExecutionOutputException {
+
+        ByteBuffer b = statBuffer;
+
+        int open = -1;
+
+        for(int i = b.position(); i < b.limit(); i ++) {
+
+            if (b.get(i) == '(') {
+
+                open = i;
+                break;
+            }
+        }
+
+        cursor.reset(b);
+
+        if (open == -1 || !cursor.skipPastLast(')')) {
+
+            throw new InvalidExecutionOutputException("no command name");
+        }
+
+        int length = Math.min(cursor.position() - 1 - (open + 1), PidTable.COMMAND_LENGTH);
+
+        for(int i = 0; i < length; i ++) {
+
+            current.commands[slot * PidTable.COMMAND_LENGTH + i] = b.get(open + 1 + i);
+        }
+
+        current.commandLengths[slot] = (byte)Math.max(length, 0);
+
+        //
+        // state (3) to cmajflt (13)
+        //
+
+        for(int i = 3; i <= 13; i ++) {
+
+            cursor.skipToken();
+        }
+
+        current.ticks[slot] = cursor.nextLong() + cursor.nextLong();
+
+        //
+        // cutime (16) to itrealvalue (21)
+        //
+
+        for(int i = 16; i <= 21; i ++) {
+
+            cursor.skipToken();
+        }
+
+        current.startTimes[slot] = cursor.nextLong();
+
+        cursor.skipToken();
+
+        return cursor.nextLong();
+    }
+
+    private int select(int k, int[] result, boolean byCpu) {
+
+        if (k <= 0) {
+
+            throw new IllegalArgumentException("invalid number of processes " + k);
+        }
+
+        if (heap.length < k) {
+
+            heap = new int[k];
+        }
+
+        //
+        // a min-heap of the k largest seen so far, the smallest of them at the root
+        //
+
+        int size = 0;
+
+        for(int i = 0; i < processCount; i ++) {
+
+            if (size < k) {
+
+                heap[size] = i;
+                siftUp(size ++, byCpu);
+            }
+            else if (less(heap[0], i, byCpu)) {
+
+                heap[0] = i;
+                siftDown(size, byCpu);
+            }
+        }
+
+        int count = size;
+
+        while(size > 0) {
+
+            result[size - 1] = heap[0];
+            heap[0] = heap[-- size];
+            siftDown(size, byCpu);
+        }
+
+        return count;
+    }
+
+    /**
+     * @return true if the process at index i ranks below the one at index j. Ties are broken by pid, lowest pid first,
+     * so the ranking is stable.
+     */
+    private boolean less(int i, int j, boolean byCpu) {
+
+        if (byCpu) {
+
+            if (cpu[i] != cpu[j]) {
+
+                return cpu[i] < cpu[j];
+            }
+        }
+        else if (residentMemory[i] != residentMemory[j]) {
+
+            return residentMemory[i] < residentMemory[j];
+        }
+
+        return getPid(i) > getPid(j);
+    }
+
+    private void siftUp(int position, boolean byCpu) {
+
+        int e = heap[position];
+
+        while(position > 0) {
+
+            int parent = (position - 1) >>> 1;
+
+            if (!less(e, heap[parent], byCpu)) {
+
+                break;
+            }
+
+            heap[position] = heap[parent];
+            position = parent;
+        }
+
+        heap[position] = e;
+    }
+
+    private void siftDown(int size, boolean byCpu) {
+
+        if (size == 0) {
+
+            return;
+        }
+
+        int position = 0;
+        int e = heap[0];
+
+        while(true) {
+
+            int child = 2 * position + 1;
+
+            if (child >= size) {
+
+                break;
+            }
+
+            if (child + 1 < size && less(heap[child + 1], heap[child], byCpu)) {
+
+                child ++;
+            }
+
+            if (!less(heap[child], e, byCpu)) {
+
+                break;
+            }
+
+            heap[position] = heap[child];
+            position = child;
+        }
+
+        heap[position] = e;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
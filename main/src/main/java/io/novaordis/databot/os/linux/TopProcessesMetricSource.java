@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * A metric source that reports the K local processes that used the most CPU since the previous collection, or that
+ * have the largest resident set, without the processes being declared in advance. Served for "process:top:K"
+ * addresses.
+ *
+ * All processes are scanned once per collection, regardless of how many metrics are requested. For every requested
+ * metric, each ranked process contributes three indexed properties, rank 1 being the highest:
+ *
+ * CpuTime[1] - the value, with the type and unit of the metric definition
+ * CpuTime[1].pid
+ * CpuTime[1].command - the command name, as reported by /proc/[pid]/stat
+ *
+ * Fewer than K processes are reported if there are fewer than K processes.
+ *
+ * @see TopProcessScanner
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class TopProcessesMetricSource extends LinuxMetricSourceBase<ProcessAddress, ProcessMetric> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PID_SUFFIX = ".pid";
+
+    public static final String COMMAND_SUFFIX = ".command";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if processes can be ranked by the given metric.
+     */
+    public static boolean isRanked(ProcessMetric m) {
+
+        return ProcessMetric.CPU_TIME.equals(m) || ProcessMetric.RESIDENT_MEMORY.equals(m);
+    }
+
+    /**
+     * @param rank 1 based.
+     *
+     * @return the name of the property that carries the value of the metric for the process with the given rank.
+     */
+    public static String getPropertyName(String metricId, int rank) {
+
+        return getPropertyName(metricId, Integer.toString(rank));
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final TopProcessScanner scanner;
+
+    private final int count;
+
+    //
+    // the scan indexes of the selected processes, reused across collections
+    //
+    private final int[] selection;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public TopProcessesMetricSource(ProcessAddress address, TopProcessScanner scanner,
+                                    PropertyFactory propertyFactory) {
+
+        super(address, scanner, propertyFactory, ProcessMetric::fromId, ProcessMetric[]::new, "process");
+
+        if (!address.getTarget().isTop()) {
+
+            throw new IllegalArgumentException(address + " is not a top process address");
+        }
+
+        this.scanner = scanner;
+        this.count = address.getTarget().getTopCount();
+        this.selection = new int[count];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the number of processes reported per metric.
+     */
+    public int getCount() {
+
+        return count;
+    }
+
+    public TopProcessScanner getScanner() {
+
+        return scanner;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected synchronized List<Property> collect(List<MetricDefinition> metricDefinitions, ProcessMetric[] metrics)
+            throws MetricSourceException {
+
+        try {
+
+            scanner.scan();
+        }
+        catch(IOException | InvalidExecutionOutputException e) {
+
+            throw new MetricSourceException("failed to scan " + scanner.getProcRoot(), e);
+        }
+
+        List<Property> result = new ArrayList<>(metrics.length * count * 3);
+
+        for(int i = 0; i < metrics.length; i ++) {
+
+            MetricDefinition md = metricDefinitions.get(i);
+            ProcessMetric m = metrics[i];
+
+            boolean byCpu = ProcessMetric.CPU_TIME.equals(m);
+
+            int n = byCpu ? scanner.selectByCpu(count, selection) : scanner.selectByResidentMemory(count, selection);
+
+            MeasureUnit unit = md.getBaseUnit();
+
+            unit = unit == null ? m.getBaseUnit() : unit;
+
+            Class type = md.getType();
+
+            type = type == null ? m.getType() : type;
+
+            for(int rank = 1; rank <= n; rank ++) {
+
+                int index = selection[rank - 1];
+
+                double value;
+
+                if (byCpu) {
+
+                    value = scanner.getCpuPercentage(index);
+                }
+                else {
+
+                    value = toUnit(scanner.getResidentMemory(index), unit);
+                }
+
+                String name = getPropertyName(md.getId(), rank);
+
+                result.add(getPropertyFactory().createInstance(
+                        name, type, toType(value, type), null, unit));
+
+                result.add(getPropertyFactory().createInstance(
+                        name + PID_SUFFIX, Integer.class, scanner.getPid(index), null, null));
+
+                result.add(getPropertyFactory().createInstance(
+                        name + COMMAND_SUFFIX, String.class, scanner.getCommand(index), null, null));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return null if processes cannot be ranked by at least one of the metrics.
+     */
+    @Override
+    protected ProcessMetric[] resolve(List<MetricDefinition> metricDefinitions) {
+
+        ProcessMetric[] result = super.resolve(metricDefinitions);
+
+        if (result == null) {
+
+            return null;
+        }
+
+        for(ProcessMetric m: result) {
+
+            if (!isRanked(m)) {
+
+                return null;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    protected List<Property> unresolved(List<MetricDefinition> metricDefinitions) throws MetricSourceException {
+
+        throw new MetricSourceException(
+                "processes can only be ranked by " + ProcessMetric.CPU_TIME.getId() + " and " +
+                        ProcessMetric.RESIDENT_MEMORY.getId() + ", not by all of " + metricDefinitions);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
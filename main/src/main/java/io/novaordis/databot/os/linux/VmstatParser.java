@@ -0,0 +1,460 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.utilities.os.OS;
+
+/**
+ * A reusable vmstat output parser that covers all columns (procs, memory, swap, io, system and cpu) and parses the
+ * values directly from the output into primitive slots, without creating intermediate Strings.
+ *
+ * The header line is checked, and its columns are mapped to slots, on the first parse only. The memory multiplier is
+ * resolved once, when the parser is created.
+ *
+ * Not thread safe: an instance is meant to be owned by a single source.
+ *
+ * @see Vmstat
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class VmstatParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int R = 0;
+    public static final int B = 1;
+    public static final int SWPD = 2;
+    public static final int FREE = 3;
+    public static final int BUFF = 4;
+    public static final int CACHE = 5;
+    public static final int SI = 6;
+    public static final int SO = 7;
+    public static final int BI = 8;
+    public static final int BO = 9;
+    public static final int IN = 10;
+    public static final int CS = 11;
+    public static final int US = 12;
+    public static final int SY = 13;
+    public static final int ID = 14;
+    public static final int WA = 15;
+    public static final int ST = 16;
+    public static final int GU = 17;
+    public static final int COLUMN_COUNT = 18;
+
+    /**
+     * Indexed by the column constants. The "memory" columns are multiplied by the memory multiplier.
+     */
+    public static final Object[][] COLUMNS = new Object[][] {
+
+            // vmstat literal, property name, type, memory (multiplied), measure unit, required
+
+            {"r",     "Runnable Process Count",              Integer.class, false, null,                   true},
+            {"b",     "Uninterruptible Sleep Process Count", Integer.class, false, null,                   true},
+            {"swpd",  "Memory Swapped Out to Disk",          Long.class,    true,  MemoryMeasureUnit.BYTE, true},
+            {"free",  "Free Memory",                         Long.class,    true,  MemoryMeasureUnit.BYTE, true},
+            {"buff",  "Buffer Memory",                       Long.class,    true,  MemoryMeasureUnit.BYTE, false},
+            {"cache", "Cache Memory",                        Long.class,    true,  MemoryMeasureUnit.BYTE, false},
+            {"si",    "Memory Swapped In per Second",        Long.class,    true,  MemoryMeasureUnit.BYTE, true},
+            {"so",    "Memory Swapped Out per Second",       Long.class,    true,  MemoryMeasureUnit.BYTE, true},
+            {"bi",    "Blocks Received per Second",          Long.class,    false, null,                   true},
+            {"bo",    "Blocks Sent per Second",              Long.class,    false, null,                   true},
+            {"in",    "Interrupts per Second",               Long.class,    false, null,                   true},
+            {"cs",    "Context Switches per Second",         Long.class,    false, null,                   true},
+            {"us",    "CPU User Time Percentage",            Integer.class, false, null,                   true},
+            {"sy",    "CPU Kernel Time Percentage",          Integer.class, false, null,                   true},
+            {"id",    "CPU Idle Time Percentage",            Integer.class, false, null,                   true},
+            {"wa",    "CPU I/O Wait Time Percentage",        Integer.class, false, null,                   true},
+            {"st",    "CPU Stolen Time Percentage",          Integer.class, false, null,                   false},
+            {"gu",    "CPU Guest Time Percentage",           Integer.class, false, null,                   false},
+    };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return a parser whose memory multiplier is the local OS memory page size, consistent with Vmstat.
+     */
+    public static VmstatParser forLocalOS() throws InvalidExecutionOutputException {
+
+        int memoryPageSize;
+
+        try {
+
+            memoryPageSize = OS.getInstance().getConfiguration().getMemoryPageSize();
+        }
+        catch(Exception e) {
+
+            throw new InvalidExecutionOutputException("failed to get the OS configuration", e);
+        }
+
+        return new VmstatParser(memoryPageSize);
+    }
+
+    /**
+     * @return the column constant of the header between start (inclusive) and end (exclusive), or -1 if the header is
+     * not known.
+     */
+    static int column(CharSequence s, int start, int end) {
+
+        for(int i = 0; i < COLUMNS.length; i ++) {
+
+            String header = (String)COLUMNS[i][0];
+
+            if (header.length() != end - start) {
+
+                continue;
+            }
+
+            int j = 0;
+
+            while(j < header.length() && header.charAt(j) == s.charAt(start + j)) {
+
+                j ++;
+            }
+
+            if (j == header.length()) {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final long memoryMultiplier;
+
+    private final long[] values;
+
+    private final boolean[] present;
+
+    //
+    // the column constant for each header position, -1 for the headers we don't know; null until the first parse
+    //
+    private int[] layout;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param memoryMultiplier the value the memory columns are multiplied with to obtain bytes.
+     */
+    public VmstatParser(long memoryMultiplier) {
+
+        if (memoryMultiplier <= 0) {
+
+            throw new IllegalArgumentException("invalid memory multiplier " + memoryMultiplier);
+        }
+
+        this.memoryMultiplier = memoryMultiplier;
+        this.values = new long[COLUMN_COUNT];
+        this.present = new boolean[COLUMN_COUNT];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Parses the first sample line of a vmstat output into this parser's slots. The output may be a String, or a
+     * CharBuffer or StringBuilder reused between calls.
+     */
+    public void parse(CharSequence output) throws InvalidExecutionOutputException {
+
+        int length = output.length();
+
+        //
+        // skip the categories
+        //
+
+        int headersStart = nextLine(output, 0, length);
+
+        if (headersStart == -1) {
+
+            throw new InvalidExecutionOutputException("not a multi-line output");
+        }
+
+        int valuesStart = nextLine(output, headersStart, length);
+
+        if (valuesStart == -1) {
+
+            throw new InvalidExecutionOutputException("not a multi-line output");
+        }
+
+        if (layout == null) {
+
+            layout = mapHeaders(output, headersStart, valuesStart);
+        }
+
+        parseValues(output, valuesStart);
+    }
+
+    /**
+     * Parses one line of a vmstat output stream, as produced by "vmstat -n <interval>": the category line is ignored,
+     * the header line is mapped to slots the first time it is seen, and the value lines are parsed into the slots.
+     *
+     * @return true if the line was a value line, and the slots were updated.
+     */
+    public boolean parseLine(CharSequence line) throws InvalidExecutionOutputException {
+
+        int length = line.length();
+        int i = 0;
+
+        while(i < length && line.charAt(i) == ' ') {
+
+            i ++;
+        }
+
+        if (i == length || line.charAt(i) == '\n') {
+
+            return false;
+        }
+
+        char c = line.charAt(i);
+
+        if (c >= '0' && c <= '9') {
+
+            if (layout == null) {
+
+                throw new InvalidExecutionOutputException("vmstat values before headers");
+            }
+
+            parseValues(line, 0);
+            return true;
+        }
+
+        //
+        // the headers, if the line starts with a known header, otherwise the categories
+        //
+
+        if (layout == null && column(line, i, tokenEnd(line, i, length)) != -1) {
+
+            layout = mapHeaders(line, 0, length);
+        }
+
+        return false;
+    }
+
+    /**
+     * Copies the last parsed values, indexed by the column constants, without allocating.
+     */
+    public void copyValues(long[] destination) {
+
+        System.arraycopy(values, 0, destination, 0, COLUMN_COUNT);
+    }
+
+    /**
+     * @param column one of the column constants.
+     *
+     * @return the last parsed value. The memory columns are in bytes.
+     */
+    public long getValue(int column) {
+
+        return values[column];
+    }
+
+    /**
+     * @param column one of the column constants.
+     *
+     * @return whether the column is present in the vmstat output. Only known after the first parse.
+     */
+    public boolean isPresent(int column) {
+
+        return present[column];
+    }
+
+    public long getMemoryMultiplier() {
+
+        return memoryMultiplier;
+    }
+
+    /**
+     * @return the last parsed values of the columns present in the output, as properties, in column order.
+     */
+    public List<Property> toProperties(PropertyFactory propertyFactory) {
+
+        List<Property> properties = new ArrayList<>(COLUMN_COUNT);
+
+        for(int i = 0; i < COLUMN_COUNT; i ++) {
+
+            if (!present[i]) {
+
+                continue;
+            }
+
+            Class type = (Class)COLUMNS[i][2];
+            Object value = Integer.class.equals(type) ? (Object)(int)values[i] : (Object)values[i];
+
+            properties.add(propertyFactory.createInstance(
+                    (String)COLUMNS[i][1], type, value, null, (MeasureUnit)COLUMNS[i][4]));
+        }
+
+        return properties;
+    }
+
+    @Override
+    public String toString() {
+
+        return "VmstatParser[" + (layout == null ? "headers not mapped" : layout.length + " columns") + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the start of the next line, or -1 if there is no next line.
+     */
+    private static int nextLine(CharSequence s, int from, int length) {
+
+        for(int i = from; i < length; i ++) {
+
+            if (s.charAt(i) == '\n') {
+
+                return i + 1 < length ? i + 1 : -1;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int tokenEnd(CharSequence s, int from, int length) {
+
+        int i = from;
+
+        while(i < length && s.charAt(i) != ' ' && s.charAt(i) != '\n') {
+
+            i ++;
+        }
+
+        return i;
+    }
+
+    private void parseValues(CharSequence s, int from) throws InvalidExecutionOutputException {
+
+        int length = s.length();
+        int i = from;
+
+        for(int position = 0; position < layout.length; position ++) {
+
+            while(i < length && s.charAt(i) == ' ') {
+
+                i ++;
+            }
+
+            int start = i;
+            long value = 0;
+
+            while(i < length) {
+
+                char c = s.charAt(i);
+
+                if (c < '0' || c > '9') {
+
+                    break;
+                }
+
+                value = value * 10 + (c - '0');
+                i ++;
+            }
+
+            if (i == start) {
+
+                throw new InvalidExecutionOutputException(
+                        "expecting a number for vmstat column '" + header(position) + "' at offset " + i);
+            }
+
+            int column = layout[position];
+
+            if (column != -1) {
+
+                values[column] = (Boolean)COLUMNS[column][3] ? value * memoryMultiplier : value;
+            }
+        }
+    }
+
+    private int[] mapHeaders(CharSequence s, int start, int end) throws InvalidExecutionOutputException {
+
+        Arrays.fill(present, false);
+
+        int[] positions = new int[COLUMN_COUNT + 8];
+        int count = 0;
+
+        int i = start;
+
+        while(i < end) {
+
+            while(i < end && (s.charAt(i) == ' ' || s.charAt(i) == '\n')) {
+
+                i ++;
+            }
+
+            int headerStart = i;
+
+            i = tokenEnd(s, i, end);
+
+            if (i == headerStart) {
+
+                break;
+            }
+
+            if (count == positions.length) {
+
+                throw new InvalidExecutionOutputException("too many vmstat columns");
+            }
+
+            int column = column(s, headerStart, i);
+
+            if (column != -1) {
+
+                present[column] = true;
+            }
+
+            positions[count ++] = column;
+        }
+
+        for(int c = 0; c < COLUMN_COUNT; c ++) {
+
+            if ((Boolean)COLUMNS[c][5] && !present[c]) {
+
+                throw new InvalidExecutionOutputException("missing vmstat column '" + COLUMNS[c][0] + "'");
+            }
+        }
+
+        int[] result = new int[count];
+        System.arraycopy(positions, 0, result, 0, count);
+        return result;
+    }
+
+    private String header(int position) {
+
+        int column = layout[position];
+        return column == -1 ? "#" + position : (String)COLUMNS[column][0];
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
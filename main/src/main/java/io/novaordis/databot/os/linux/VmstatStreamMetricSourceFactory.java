@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import io.novaordis.databot.os.CommandStreamMetricSource;
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.address.Address;
+import io.novaordis.utilities.address.LocalOSAddress;
+
+/**
+ * Claims the local OS address and serves it from one long-running "vmstat" process, instead of forking a command per
+ * reading. A reading older than STALE_AFTER_INTERVALS intervals, for example because vmstat hung, is not served; the
+ * metrics vmstat does not report at all come from the source the wrapped factory builds for the same address.
+ *
+ * @see VmstatStreamParser
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class VmstatStreamMetricSourceFactory extends DelegatingMetricSourceFactory {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // the number of missed intervals after which the latest reading is not served anymore
+    //
+    public static final int STALE_AFTER_INTERVALS = 3;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final int intervalSec;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param samplingIntervalMs the local OS source sampling interval. vmstat reports with a one second granularity,
+     *                           so the interval is rounded to seconds, with a minimum of one second.
+     */
+    public VmstatStreamMetricSourceFactory(MetricSourceFactory delegate, long samplingIntervalMs) {
+
+        super(delegate);
+
+        this.intervalSec = (int)Math.max(1L, Math.round(samplingIntervalMs / 1000d));
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public int getIntervalSec() {
+
+        return intervalSec;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected boolean accepts(Address a) {
+
+        return a instanceof LocalOSAddress;
+    }
+
+    @Override
+    protected MetricSource build(Address a) {
+
+        return new CommandStreamMetricSource(
+                a, VmstatStreamParser.command(intervalSec), new VmstatStreamParser(), buildFallback(a),
+                getPropertyFactory(), STALE_AFTER_INTERVALS * intervalSec * 1000L);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
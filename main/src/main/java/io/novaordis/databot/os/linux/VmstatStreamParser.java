@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.novaordis.databot.os.CommandStreamParser;
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+
+/**
+ * Parses the output of "vmstat -n -S K <interval>" with a VmstatParser, and serves the local OS metrics that have a
+ * vmstat equivalent.
+ *
+ * The first value line of each vmstat run reports the averages since boot, so it is parsed, but not reported as a
+ * sample.
+ *
+ * @see VmstatParser
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class VmstatStreamParser implements CommandStreamParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // "-S K" makes the memory columns explicitly 1024-byte units
+    //
+    public static final long MEMORY_MULTIPLIER = 1024L;
+
+    //
+    // local OS metric ID, vmstat column
+    //
+    private static final Object[][] METRICS = new Object[][] {
+
+            {"CpuUserTime",        VmstatParser.US},
+            {"CpuKernelTime",      VmstatParser.SY},
+            {"CpuIdleTime",        VmstatParser.ID},
+            {"CpuIoWaitTime",      VmstatParser.WA},
+            {"CpuStolenTime",      VmstatParser.ST},
+            {"PhysicalMemoryFree", VmstatParser.FREE},
+    };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param intervalSec the reporting interval, in seconds.
+     */
+    public static List<String> command(int intervalSec) {
+
+        if (intervalSec <= 0) {
+
+            throw new IllegalArgumentException("invalid vmstat interval " + intervalSec);
+        }
+
+        return Collections.unmodifiableList(Arrays.asList("vmstat", "-n", "-S", "K", Integer.toString(intervalSec)));
+    }
+
+    /**
+     * @return the vmstat column constant, or -1 if the metric has no vmstat equivalent.
+     */
+    static int column(String metricId) {
+
+        for(Object[] m: METRICS) {
+
+            if (m[0].equals(metricId)) {
+
+                return (Integer)m[1];
+            }
+        }
+
+        return -1;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final VmstatParser parser;
+
+    //
+    // true until the first value line of the current run was parsed
+    //
+    private boolean sinceBoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public VmstatStreamParser() {
+
+        this.parser = new VmstatParser(MEMORY_MULTIPLIER);
+        this.sinceBoot = true;
+    }
+
+    // CommandStreamParser implementation ------------------------------------------------------------------------------
+
+    @Override
+    public void reset() {
+
+        sinceBoot = true;
+    }
+
+    @Override
+    public boolean parseLine(CharSequence line) throws InvalidExecutionOutputException {
+
+        if (!parser.parseLine(line)) {
+
+            return false;
+        }
+
+        if (sinceBoot) {
+
+            sinceBoot = false;
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int getValueCount() {
+
+        return VmstatParser.COLUMN_COUNT;
+    }
+
+    @Override
+    public void copyValues(long[] destination) {
+
+        parser.copyValues(destination);
+    }
+
+    @Override
+    public boolean supports(MetricDefinition md) {
+
+        return column(md.getId()) != -1;
+    }
+
+    @Override
+    public Property toProperty(PropertyFactory propertyFactory, MetricDefinition md, long[] values) {
+
+        int column = column(md.getId());
+
+        if (column == -1) {
+
+            throw new IllegalArgumentException(md + " has no vmstat equivalent");
+        }
+
+        MeasureUnit unit = md.getBaseUnit();
+
+        //
+        // vmstat reports integral CPU percentages; the memory is converted from bytes to the metric's unit
+        //
+
+        boolean memory = VmstatParser.FREE == column;
+
+        double value = memory ? LinuxMetricSourceBase.toUnit(values[column], unit) : values[column];
+
+        Class type = md.getType() != null ? md.getType() : memory ? Long.class : Double.class;
+
+        return propertyFactory.createInstance(md.getId(), type, LinuxMetricSourceBase.toType(value, type), null, unit);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return "vmstat stream parser";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
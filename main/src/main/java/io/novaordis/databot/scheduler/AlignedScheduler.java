@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.scheduler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a task periodically, on its own thread, at wall-clock multiples of the interval (a 10 second interval fires at
+ * :00, :10, :20 ...), so agents running on different hosts sample at the same moments. The task receives the
+ * scheduled tick time, which is a clean interval multiple, regardless of how late the thread actually woke up.
+ *
+ * The next tick is computed from the wall clock after each run, and the wait is measured with System.nanoTime(), so
+ * the schedule does not drift and is not affected by wait() granularity. Unlike java.util.Timer.scheduleAtFixedRate(),
+ * ticks that could not be honored because the previous run took too long, or because the process was paused (GC,
+ * VM steal, suspended host) are skipped and counted instead of being executed in a burst.
+ *
+ * A zero interval means "run once, immediately, then stop".
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/16/18
+ */
+public class AlignedScheduler {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(AlignedScheduler.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the first multiple of the interval that is strictly greater than the given time.
+     */
+    static long nextTick(long now, long intervalMs) {
+
+        return (Math.floorDiv(now, intervalMs) + 1) * intervalMs;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String threadName;
+
+    private final long intervalMs;
+
+    private final LongConsumer task;
+
+    private Thread thread;
+
+    private volatile boolean stopped;
+
+    private volatile long tickCount;
+    private volatile long missedTickCount;
+    private volatile long lastTickLatenessMs;
+    private volatile long maxTickLatenessMs;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param intervalMs zero means a single, immediate execution.
+     * @param task receives the scheduled tick time, in milliseconds since the epoch. Unchecked exceptions thrown by
+     *             the task are logged and do not stop the scheduler.
+     */
+    public AlignedScheduler(String threadName, long intervalMs, LongConsumer task) {
+
+        if (intervalMs < 0) {
+
+            throw new IllegalArgumentException("invalid interval " + intervalMs);
+        }
+
+        if (task == null) {
+
+            throw new IllegalArgumentException("null task");
+        }
+
+        this.threadName = threadName;
+        this.intervalMs = intervalMs;
+        this.task = task;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalStateException if the scheduler was already started. A stopped scheduler cannot be restarted.
+     */
+    public synchronized void start() {
+
+        if (thread != null) {
+
+            throw new IllegalStateException(this + " already started");
+        }
+
+        thread = new Thread(this::loop, threadName);
+        thread.start();
+
+        log.debug(this + " started");
+    }
+
+    /**
+     * Stops the scheduler. A run in progress is allowed to complete, the method does not wait for it. Can be safely
+     * called from the task itself. Idempotent.
+     */
+    public synchronized void stop() {
+
+        stopped = true;
+
+        if (thread != null) {
+
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public synchronized boolean isStarted() {
+
+        return thread != null && !stopped;
+    }
+
+    public long getIntervalMs() {
+
+        return intervalMs;
+    }
+
+    /**
+     * @return the number of times the task was executed.
+     */
+    public long getTickCount() {
+
+        return tickCount;
+    }
+
+    /**
+     * @return the number of ticks that were skipped because the previous run, or a process pause, extended past them.
+     */
+    public long getMissedTickCount() {
+
+        return missedTickCount;
+    }
+
+    /**
+     * @return how late, in milliseconds, the task was started relative to the scheduled tick time, on the last tick.
+     */
+    public long getLastTickLatenessMs() {
+
+        return lastTickLatenessMs;
+    }
+
+    /**
+     * @return the largest tick lateness, in milliseconds, observed since the scheduler was started.
+     */
+    public long getMaxTickLatenessMs() {
+
+        return maxTickLatenessMs;
+    }
+
+    @Override
+    public String toString() {
+
+        return "aligned scheduler[" + threadName + ", " + intervalMs + " ms]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void loop() {
+
+        if (intervalMs == 0) {
+
+            tick(System.currentTimeMillis(), 0L);
+            stopped = true;
+            return;
+        }
+
+        long lastTick = -1L;
+
+        while(!stopped) {
+
+            long now = System.currentTimeMillis();
+            long tick = nextTick(now, intervalMs);
+
+            if (lastTick >= 0) {
+
+                if (tick <= lastTick) {
+
+                    //
+                    // the wall clock was stepped back. Realign on it, rather than waiting for it to catch up
+                    //
+
+                    log.warn("wall clock moved back " + (lastTick - now) + " ms, " + this + " realigning");
+                }
+                else {
+
+                    long missed = (tick - lastTick) / intervalMs - 1;
+
+                    if (missed > 0) {
+
+                        //noinspection NonAtomicOperationOnVolatileField
+                        missedTickCount += missed;
+
+                        log.warn(this + " missed " + missed + " tick(s), " + (now - lastTick) +
+                                " ms elapsed since the previous tick");
+                    }
+                }
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tick - now);
+
+            if (!awaitDeadline(deadline)) {
+
+                break;
+            }
+
+            long latenessMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - deadline);
+
+            lastTick = tick;
+
+            tick(tick, latenessMs);
+        }
+
+        log.debug(this + " stopped");
+    }
+
+    /**
+     * @return false if the scheduler was stopped while waiting.
+     */
+    private boolean awaitDeadline(long deadline) {
+
+        for(;;) {
+
+            if (stopped) {
+
+                return false;
+            }
+
+            long remaining = deadline - System.nanoTime();
+
+            if (remaining <= 0) {
+
+                return true;
+            }
+
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private void tick(long tick, long latenessMs) {
+
+        //noinspection NonAtomicOperationOnVolatileField
+        tickCount ++;
+        lastTickLatenessMs = latenessMs;
+
+        if (latenessMs > maxTickLatenessMs) {
+
+            maxTickLatenessMs = latenessMs;
+        }
+
+        try {
+
+            task.accept(tick);
+        }
+        catch(Throwable t) {
+
+            log.error(this + " task failed", t);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.scheduler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.novaordis.databot.task.SourceQueryTask;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * The sources to query on a collection run, in output order, each with its ready-to-run query task, its ordinal (the
+ * position of the source in the configuration) and its deadline.
+ *
+ * Plans are built by the CollectionSchedule, once per combination of due sampling intervals, so a collection run does
+ * not do any planning work: it walks the plan's arrays. Immutable. The query tasks are stateless, so they can be
+ * executed concurrently by overlapping runs.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CollectionPlan {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Address[] sources;
+
+    private final int[] ordinals;
+
+    private final SourceQueryTask[] queries;
+
+    //
+    // relative to the start of the run, in milliseconds. 0 means no deadline
+    //
+    private final long[] deadlinesMs;
+
+    private final List<Address> sourceList;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * The arrays are parallel, and they are owned by the plan after the call.
+     */
+    CollectionPlan(Address[] sources, int[] ordinals, SourceQueryTask[] queries, long[] deadlinesMs) {
+
+        if (sources.length != ordinals.length || sources.length != queries.length ||
+                sources.length != deadlinesMs.length) {
+
+            throw new IllegalArgumentException("inconsistent collection plan");
+        }
+
+        this.sources = sources;
+        this.ordinals = ordinals;
+        this.queries = queries;
+        this.deadlinesMs = deadlinesMs;
+        this.sourceList = Collections.unmodifiableList(Arrays.asList(sources));
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the number of sources to query.
+     */
+    public int size() {
+
+        return sources.length;
+    }
+
+    public boolean isEmpty() {
+
+        return sources.length == 0;
+    }
+
+    /**
+     * @param i the position of the source in the plan, which is also its position in the event.
+     */
+    public Address getSource(int i) {
+
+        return sources[i];
+    }
+
+    /**
+     * @return the position of the source in the configuration, stable across plans.
+     */
+    public int getOrdinal(int i) {
+
+        return ordinals[i];
+    }
+
+    public SourceQueryTask getQuery(int i) {
+
+        return queries[i];
+    }
+
+    /**
+     * @return the source deadline, in milliseconds relative to the start of the run. 0 means no deadline.
+     */
+    public long getDeadlineMs(int i) {
+
+        return deadlinesMs[i];
+    }
+
+    /**
+     * @return the sources, in output order.
+     */
+    public List<Address> getSources() {
+
+        return sourceList;
+    }
+
+    /**
+     * Linear lookup, not meant for the per-tick path.
+     *
+     * @return the due metrics of the given source, or null if the source is not part of the plan.
+     */
+    public List<MetricDefinition> getMetricDefinitions(Address source) {
+
+        for(int i = 0; i < sources.length; i ++) {
+
+            if (sources[i].equals(source)) {
+
+                return queries[i].getMetricDefinitions();
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+
+        return "collection plan[" + sources.length + " source(s)]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
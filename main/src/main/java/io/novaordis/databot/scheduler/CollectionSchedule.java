@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import io.novaordis.databot.configuration.Configuration;
+import io.novaordis.databot.task.SourceQueryTask;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceDefinition;
+import io.novaordis.utilities.UserErrorException;
+import io.novaordis.utilities.address.Address;
+
+/**
+ * Decides which sources and metrics are due on a given scheduler tick, when sources and metrics are sampled at
+ * different rates.
+ *
+ * The schedule is built once from the configuration. Every metric is assigned to one of the few distinct sampling
+ * intervals present in the configuration, and the scheduler is driven at the greatest common divisor of those
+ * intervals (the base interval). Because the ticks are wall-clock aligned, a metric is due on a tick when the tick is a
+ * multiple of the metric's interval, so on each tick only the distinct intervals need to be checked, not each metric.
+ *
+ * A zero sampling interval means a single collection run, where everything is due. Intervals that are each valid may
+ * still have a base interval shorter than the minimum sampling interval (for example 15 ms and 20 ms make 5 ms), such
+ * configurations are rejected.
+ *
+ * What is due on a tick is described by an immutable CollectionPlan, which carries the source query tasks, the
+ * source ordinals and deadlines, and the output order. The plans are computed once for each combination of due
+ * intervals, so getDue() does no planning work and does not allocate on the per-tick path. Thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CollectionSchedule {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // the due plans depend only on which intervals are due, so up to this many distinct intervals, they are computed
+    // once per combination and reused
+    //
+    static final int MAX_CACHED_INTERVALS = 10;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    static long gcd(long a, long b) {
+
+        while(b != 0) {
+
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+
+        return a;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // the distinct sampling intervals, in milliseconds, in the order in which they were first encountered
+    //
+    private final long[] intervalsMs;
+
+    private final long baseIntervalMs;
+
+    //
+    // the sources, in configuration order; the position in the array is the source ordinal
+    //
+    private final Address[] sources;
+
+    private final Map<Address, Integer> ordinals;
+
+    //
+    // per source ordinal, the metrics in configuration order and, in parallel, the index of their interval in
+    // intervalsMs
+    //
+    private final List<List<MetricDefinition>> metrics;
+    private final int[][] metricIntervalIndices;
+
+    //
+    // per source ordinal, the index of the source interval, only used for sources that have no metrics
+    //
+    private final int[] sourceIntervalIndices;
+
+    //
+    // per source ordinal, the query of all the source's metrics, shared by all plans the source is fully due in
+    //
+    private final SourceQueryTask[] fullQueries;
+
+    //
+    // per source ordinal, the source deadline in milliseconds, 0 if none
+    //
+    private final long[] deadlinesMs;
+
+    private final CollectionPlan all;
+
+    //
+    // indexed by the bit mask of the due intervals. Null if there are too many intervals to cache all combinations
+    //
+    private final AtomicReferenceArray<CollectionPlan> dueCache;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param sources resolves the metric source instance for a configured address. The sources must exist, the query
+     *                tasks are built here.
+     *
+     * @exception UserErrorException if the greatest common divisor of the sampling intervals is shorter than the
+     * minimum sampling interval.
+     */
+    public CollectionSchedule(Configuration configuration, Function<Address, MetricSource> sources)
+            throws UserErrorException {
+
+        List<MetricSourceDefinition> sds = configuration.getMetricSourceDefinitions();
+
+        int sourceCount = sds.size();
+
+        this.sources = new Address[sourceCount];
+        this.ordinals = new HashMap<>();
+
+        for(int i = 0; i < sourceCount; i ++) {
+
+            this.sources[i] = sds.get(i).getAddress();
+            ordinals.put(this.sources[i], i);
+        }
+
+        //
+        // group the metrics by source in a single pass; looking them up per source would be O(sources x metrics)
+        //
+
+        Map<Address, List<MetricDefinition>> grouped = new LinkedHashMap<>();
+
+        for(MetricDefinition md: configuration.getMetricDefinitions()) {
+
+            grouped.computeIfAbsent(md.getMetricSourceAddress(), k -> new ArrayList<>()).add(md);
+        }
+
+        List<Long> intervals = new ArrayList<>();
+
+        this.metrics = new ArrayList<>(sourceCount);
+        this.metricIntervalIndices = new int[sourceCount][];
+        this.sourceIntervalIndices = new int[sourceCount];
+        this.fullQueries = new SourceQueryTask[sourceCount];
+        this.deadlinesMs = new long[sourceCount];
+
+        for(int s = 0; s < sourceCount; s ++) {
+
+            Address a = this.sources[s];
+
+            List<MetricDefinition> mds = grouped.get(a);
+
+            mds = mds == null ? Collections.<MetricDefinition>emptyList() : Collections.unmodifiableList(mds);
+
+            if (mds.isEmpty()) {
+
+                //
+                // the source interval only matters if the source has no metrics, otherwise it would needlessly lower
+                // the base interval
+                //
+
+                sourceIntervalIndices[s] = indexOf(intervals, configuration.getSamplingIntervalMs(a));
+            }
+            else {
+
+                sourceIntervalIndices[s] = -1;
+            }
+
+            int[] indices = new int[mds.size()];
+
+            for(int i = 0; i < indices.length; i ++) {
+
+                indices[i] = indexOf(intervals, configuration.getSamplingIntervalMs(mds.get(i)));
+            }
+
+            metrics.add(mds);
+            metricIntervalIndices[s] = indices;
+            fullQueries[s] = new SourceQueryTask(sources.apply(a), mds);
+            deadlinesMs[s] = configuration.getSourceDeadlineMs(a);
+        }
+
+        this.intervalsMs = new long[intervals.size()];
+
+        long base = 0L;
+        boolean oneShot = false;
+
+        for(int i = 0; i < intervalsMs.length; i ++) {
+
+            intervalsMs[i] = intervals.get(i);
+            oneShot = oneShot || intervalsMs[i] == 0;
+            base = gcd(base, intervalsMs[i]);
+        }
+
+        if (!oneShot && base != 0 && base < Configuration.MINIMUM_SAMPLING_INTERVAL_MS) {
+
+            throw new UserErrorException(
+                    "the sampling intervals " + offendingIntervals(intervalsMs) + " ms can only be scheduled every " +
+                            base + " ms, which is less than the minimum sampling interval of " +
+                            Configuration.MINIMUM_SAMPLING_INTERVAL_MS + " ms");
+        }
+
+        //
+        // with no sources, fall back to the global interval, so the scheduler still has a period to run on
+        //
+
+        this.baseIntervalMs = oneShot ? 0L : (base == 0 ? configuration.getSamplingIntervalMs() : base);
+
+        this.all = buildAll();
+
+        this.dueCache = intervalsMs.length <= MAX_CACHED_INTERVALS ?
+                new AtomicReferenceArray<>(1 << intervalsMs.length) : null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the interval the scheduler must be driven at: the greatest common divisor of all sampling intervals, in
+     * milliseconds. Zero means a single collection run.
+     */
+    public long getBaseIntervalMs() {
+
+        return baseIntervalMs;
+    }
+
+    /**
+     * @return the distinct sampling intervals, in milliseconds.
+     */
+    public long[] getIntervalsMs() {
+
+        return intervalsMs.clone();
+    }
+
+    /**
+     * @return the number of configured sources. The source ordinals range from 0 to getSourceCount() - 1.
+     */
+    public int getSourceCount() {
+
+        return sources.length;
+    }
+
+    /**
+     * @return the position of the source in the configuration, or -1 if the source is not configured.
+     */
+    public int getOrdinal(Address source) {
+
+        Integer i = ordinals.get(source);
+
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * @return the plan that collects the metrics of all sources, in configuration order, regardless of their sampling
+     * interval.
+     */
+    public CollectionPlan getAll() {
+
+        return all;
+    }
+
+    /**
+     * @param tick the scheduler tick, in milliseconds since the epoch.
+     *
+     * @return the plan that collects the sources that have at least one metric due on the given tick, in configuration
+     * order, each for the metrics that are due, in configuration order. A source with no metrics is due, with an empty
+     * metric list, on the multiples of its own sampling interval. May return an empty plan, never null.
+     */
+    public CollectionPlan getDue(long tick) {
+
+        if (baseIntervalMs == 0) {
+
+            return getAll();
+        }
+
+        if (dueCache == null) {
+
+            return computeDue(tick);
+        }
+
+        int mask = 0;
+
+        for(int i = 0; i < intervalsMs.length; i ++) {
+
+            if (tick % intervalsMs[i] == 0) {
+
+                mask |= 1 << i;
+            }
+        }
+
+        CollectionPlan result = dueCache.get(mask);
+
+        if (result == null) {
+
+            result = computeDue(tick);
+            dueCache.set(mask, result);
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder("collection schedule[base ").append(baseIntervalMs).append(" ms");
+
+        for(long i: intervalsMs) {
+
+            sb.append(", ").append(i);
+        }
+
+        return sb.append("]").toString();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private CollectionPlan buildAll() {
+
+        int[] all = new int[sources.length];
+
+        for(int s = 0; s < all.length; s ++) {
+
+            all[s] = s;
+        }
+
+        return buildPlan(all, all.length, new SourceQueryTask[sources.length]);
+    }
+
+    private CollectionPlan computeDue(long tick) {
+
+        boolean[] due = new boolean[intervalsMs.length];
+        boolean allDue = true;
+
+        for(int i = 0; i < intervalsMs.length; i ++) {
+
+            due[i] = tick % intervalsMs[i] == 0;
+            allDue = allDue && due[i];
+        }
+
+        if (allDue) {
+
+            return all;
+        }
+
+        int[] dueSources = new int[sources.length];
+        SourceQueryTask[] queries = new SourceQueryTask[sources.length];
+        int count = 0;
+
+        for(int s = 0; s < sources.length; s ++) {
+
+            List<MetricDefinition> mds = metrics.get(s);
+
+            if (mds.isEmpty()) {
+
+                if (due[sourceIntervalIndices[s]]) {
+
+                    dueSources[count ++] = s;
+                }
+
+                continue;
+            }
+
+            int[] indices = metricIntervalIndices[s];
+            List<MetricDefinition> dueMetrics = null;
+
+            for(int i = 0; i < indices.length; i ++) {
+
+                if (due[indices[i]]) {
+
+                    if (dueMetrics == null) {
+
+                        dueMetrics = new ArrayList<>();
+                    }
+
+                    dueMetrics.add(mds.get(i));
+                }
+            }
+
+            if (dueMetrics == null) {
+
+                continue;
+            }
+
+            if (dueMetrics.size() < mds.size()) {
+
+                //
+                // a subset of the source's metrics, it needs its own query
+                //
+
+                queries[count] =
+                        new SourceQueryTask(fullQueries[s].getSource(), Collections.unmodifiableList(dueMetrics));
+            }
+
+            dueSources[count ++] = s;
+        }
+
+        return buildPlan(dueSources, count, queries);
+    }
+
+    /**
+     * @param queries the queries of the due sources, in parallel with dueSources; null elements mean the full query.
+     */
+    private CollectionPlan buildPlan(int[] dueSources, int count, SourceQueryTask[] queries) {
+
+        Address[] planSources = new Address[count];
+        int[] planOrdinals = new int[count];
+        SourceQueryTask[] planQueries = new SourceQueryTask[count];
+        long[] planDeadlines = new long[count];
+
+        for(int i = 0; i < count; i ++) {
+
+            int s = dueSources[i];
+
+            planSources[i] = sources[s];
+            planOrdinals[i] = s;
+            planQueries[i] = queries[i] != null ? queries[i] : fullQueries[s];
+            planDeadlines[i] = deadlinesMs[s];
+        }
+
+        return new CollectionPlan(planSources, planOrdinals, planQueries, planDeadlines);
+    }
+
+    private static int indexOf(List<Long> intervals, long interval) {
+
+        int i = intervals.indexOf(interval);
+
+        if (i == -1) {
+
+            intervals.add(interval);
+            i = intervals.size() - 1;
+        }
+
+        return i;
+    }
+
+    /**
+     * @return a minimal set of intervals whose greatest common divisor is still shorter than the minimum sampling
+     * interval, so the error message only names the intervals that are actually incompatible.
+     */
+    private static String offendingIntervals(long[] intervals) {
+
+        List<Long> offending = new ArrayList<>();
+
+        for(long i: intervals) {
+
+            offending.add(i);
+        }
+
+        for(int i = offending.size() - 1; i >= 0; i --) {
+
+            long base = 0L;
+
+            for(int j = 0; j < offending.size(); j ++) {
+
+                if (j != i) {
+
+                    base = gcd(base, offending.get(j));
+                }
+            }
+
+            if (base != 0 && base < Configuration.MINIMUM_SAMPLING_INTERVAL_MS) {
+
+                //
+                // the others are incompatible without it
+                //
+
+                offending.remove(i);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < offending.size(); i ++) {
+
+            sb.append(i == 0 ? "" : (i == offending.size() - 1 ? " and " : ", ")).append(offending.get(i));
+        }
+
+        return sb.toString();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
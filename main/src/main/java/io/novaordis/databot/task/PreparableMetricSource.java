@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.task;
+
+import java.util.List;
+
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * A metric source that can resolve a metric set once, and then only execute the resolved query on each collection run.
+ *
+ * The DataBot prepares one query per source and metric set, when the collection plans are built, and executes it on
+ * every tick instead of calling collectMetrics(). A query the source reports stale is prepared again. The sources
+ * that do not implement this interface, or fail to prepare, are queried with collectMetrics() as before.
+ *
+ * @see PreparedQuery
+ * @see SourceQueryTask
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public interface PreparableMetricSource extends MetricSource {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Invoked once per metric set, possibly before the source is started, so it must not rely on a live connection.
+     *
+     * @param metricDefinitions all associated with this source. May be empty.
+     *
+     * @return the prepared query, or null if this particular metric set cannot be prepared, in which case the source
+     * will be queried with collectMetrics().
+     *
+     * @exception MetricSourceException if the preparation failed. The source will be queried with collectMetrics().
+     */
+    PreparedQuery prepare(List<MetricDefinition> metricDefinitions) throws MetricSourceException;
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.task;
+
+import java.util.List;
+
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+/**
+ * A query handle returned by a PreparableMetricSource for a fixed set of metrics, with the metric resolution work
+ * (attribute names, ObjectNames, parse templates, etc.) already done. It is executed on every collection run.
+ *
+ * Implementations must be thread safe: overlapping collection runs may execute the same handle concurrently.
+ *
+ * A handle does not outlive the source state it was prepared against: once the source is stopped, restarted, or
+ * rediscovers its target, execute() throws StalePreparedQueryException and the query must be prepared again.
+ *
+ * @see PreparableMetricSource
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public interface PreparedQuery {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Same semantics as MetricSource.collectMetrics(), for the metrics the query was prepared for.
+     *
+     * @see io.novaordis.events.api.metric.MetricSource#collectMetrics(List)
+     *
+     * @exception StalePreparedQueryException if the query must be prepared again. Nothing was collected.
+     */
+    List<Property> execute() throws MetricSourceException;
+
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.task;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.utilities.address.Address;
+
+/**
+ * Executes the source queries, on the threads selected by the SourceExecutorType, optionally limiting the number of
+ * concurrent queries per host.
+ *
+ * The per-host limit does not block any thread: the queries in excess wait in a per-host queue and are handed to the
+ * underlying executor as the queries in progress on the same host complete. This matters when many sources share a
+ * host, for example several JMX buses or JBoss controllers on the same machine, which should not be hit with all
+ * queries at the same time.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class SourceExecutor {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(SourceExecutor.class);
+
+    public static final long ELASTIC_THREAD_KEEP_ALIVE_SECS = 60L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return an executor that starts a new virtual thread for each task, or null if the runtime does not support
+     * virtual threads (JDK 20 and older). Reflection keeps Java 8 as the compilation baseline.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor(String threadBaseName) {
+
+        try {
+
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+            Method name = builderClass.getMethod("name", String.class, long.class);
+
+            builder = name.invoke(builder, threadBaseName + " #", 0L);
+
+            ThreadFactory factory = (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+
+            Method m = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+            return (ExecutorService)m.invoke(null, factory);
+        }
+        catch(ReflectiveOperationException e) {
+
+            log.debug("virtual threads not available: " + e);
+
+            return null;
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final SourceExecutorType type;
+
+    private final ExecutorService executorService;
+
+    //
+    // 0 means no limit
+    //
+    private final int perHostLimit;
+
+    //
+    // only used when there is a per-host limit
+    //
+    private final ConcurrentMap<String, HostQueue> hostQueues;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param threads the number of threads of a FIXED executor, or the maximum number of threads of an ELASTIC
+     *                executor. Ignored by the VIRTUAL executor.
+     * @param perHostLimit the maximum number of concurrent queries per host. 0 means no limit.
+     */
+    public SourceExecutor(SourceExecutorType type, int threads, int perHostLimit, ThreadFactory threadFactory,
+                          String threadBaseName) {
+
+        if (type == null) {
+
+            throw new IllegalArgumentException("null source executor type");
+        }
+
+        if (threads <= 0) {
+
+            throw new IllegalArgumentException("invalid thread count " + threads);
+        }
+
+        if (perHostLimit < 0) {
+
+            throw new IllegalArgumentException("invalid per-host limit " + perHostLimit);
+        }
+
+        ExecutorService es = null;
+
+        if (SourceExecutorType.VIRTUAL.equals(type)) {
+
+            es = newVirtualThreadPerTaskExecutor(threadBaseName);
+
+            if (es == null) {
+
+                log.warn("virtual threads are not supported by Java " + System.getProperty("java.version") +
+                        ", using an " + SourceExecutorType.ELASTIC + " source executor instead");
+
+                type = SourceExecutorType.ELASTIC;
+            }
+        }
+
+        if (SourceExecutorType.FIXED.equals(type)) {
+
+            es = Executors.newFixedThreadPool(threads, threadFactory);
+        }
+        else if (SourceExecutorType.ELASTIC.equals(type)) {
+
+            //
+            // core size equal to the maximum size, because a ThreadPoolExecutor only grows past the core size when the
+            // queue is full; the core threads time out, so the pool shrinks when idle
+            //
+
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(
+                    threads, threads, ELASTIC_THREAD_KEEP_ALIVE_SECS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    threadFactory);
+
+            tpe.allowCoreThreadTimeOut(true);
+
+            es = tpe;
+        }
+
+        this.type = type;
+        this.executorService = es;
+        this.perHostLimit = perHostLimit;
+        this.hostQueues = perHostLimit == 0 ? null : new ConcurrentHashMap<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Executes the task on behalf of the given source, subject to the per-host limit.
+     *
+     * @exception RejectedExecutionException if the executor was shut down.
+     */
+    public void execute(Address source, Runnable task) {
+
+        if (hostQueues == null) {
+
+            executorService.execute(task);
+            return;
+        }
+
+        HostQueue q = hostQueues.computeIfAbsent(hostOf(source), HostQueue::new);
+
+        q.execute(task);
+    }
+
+    /**
+     * The effective type, which may differ from the configured one if the runtime does not support it.
+     */
+    public SourceExecutorType getType() {
+
+        return type;
+    }
+
+    public int getPerHostLimit() {
+
+        return perHostLimit;
+    }
+
+    public ExecutorService getExecutorService() {
+
+        return executorService;
+    }
+
+    public void shutdown() {
+
+        executorService.shutdown();
+    }
+
+    public boolean isShutdown() {
+
+        return executorService.isShutdown();
+    }
+
+    public boolean isTerminated() {
+
+        return executorService.isTerminated();
+    }
+
+    @Override
+    public String toString() {
+
+        return type + " source executor" + (perHostLimit == 0 ? "" : ", " + perHostLimit + " queries per host");
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the number of tasks that wait for the per-host limit, for the given host.
+     */
+    int getWaitingCount(String host) {
+
+        HostQueue q = hostQueues == null ? null : hostQueues.get(host);
+
+        return q == null ? 0 : q.getWaitingCount();
+    }
+
+    static String hostOf(Address a) {
+
+        String host = a.getHost();
+
+        return host == null ? a.getLiteral() : host;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private class HostQueue {
+
+        private final String host;
+
+        private final Queue<Runnable> waiting;
+
+        private int running;
+
+        HostQueue(String host) {
+
+            this.host = host;
+            this.waiting = new ArrayDeque<>();
+        }
+
+        void execute(Runnable task) {
+
+            synchronized (this) {
+
+                if (running >= perHostLimit) {
+
+                    waiting.add(task);
+                    return;
+                }
+
+                running ++;
+            }
+
+            submit(task);
+        }
+
+        synchronized int getWaitingCount() {
+
+            return waiting.size();
+        }
+
+        private void submit(Runnable task) {
+
+            try {
+
+                executorService.execute(() -> {
+
+                    try {
+
+                        task.run();
+                    }
+                    finally {
+
+                        next();
+                    }
+                });
+            }
+            catch(RejectedExecutionException e) {
+
+                synchronized (this) {
+
+                    running --;
+                }
+
+                throw e;
+            }
+        }
+
+        private void next() {
+
+            Runnable task;
+
+            synchronized (this) {
+
+                task = waiting.poll();
+
+                if (task == null) {
+
+                    running --;
+                    return;
+                }
+            }
+
+            try {
+
+                submit(task);
+            }
+            catch(RejectedExecutionException e) {
+
+                //
+                // shutting down, the waiting queries will be accounted for as missing by their runs' deadlines
+                //
+
+                log.debug("query for " + host + " rejected: " + e);
+            }
+        }
+    }
+
+}
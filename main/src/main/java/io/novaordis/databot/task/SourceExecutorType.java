@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.task;
+
+/**
+ * The kind of threads the source queries are executed on.
+ *
+ * @see SourceExecutor
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public enum SourceExecutorType {
+
+    /**
+     * A platform thread per metric source. Simple and predictable for a small number of sources, but it does not
+     * scale to thousands of remote sources.
+     */
+    FIXED("fixed"),
+
+    /**
+     * A bounded pool of platform threads that grows on demand, up to a configured maximum, and shrinks when the
+     * threads are idle. The queries in excess wait for a thread.
+     */
+    ELASTIC("elastic"),
+
+    /**
+     * A virtual thread per query. Only available on JDK 21 and newer, on older runtimes the executor falls back to
+     * ELASTIC.
+     */
+    VIRTUAL("virtual");
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the type corresponding to the given configuration label, or null if there is no such type.
+     */
+    public static SourceExecutorType fromLabel(String label) {
+
+        for(SourceExecutorType t: values()) {
+
+            if (t.label.equals(label)) {
+
+                return t;
+            }
+        }
+
+        return null;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String label;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    SourceExecutorType(String label) {
+
+        this.label = label;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the label used in configuration.
+     */
+    public String getLabel() {
+
+        return label;
+    }
+
+    @Override
+    public String toString() {
+
+        return label;
+    }
+
+}
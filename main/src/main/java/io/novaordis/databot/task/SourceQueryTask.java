@@ -26,12 +26,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 
 /**
  * An executor task that queries a metric source for metrics and returns the metric values.
  *
+ * The same instance can be executed repeatedly, and concurrently, by the collection runs of a CollectionPlan. If the
+ * source is a PreparableMetricSource, the query is prepared when the task is built, and only the prepared query is
+ * executed afterwards. The query is prepared again if the source reports it stale, after a restart or a rediscovery.
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 6/14/17
  */
@@ -40,15 +45,21 @@ public class SourceQueryTask implements Callable<List<Property>> {
     // Constants -------------------------------------------------------------------------------------------------------
 
     private static final Logger log = LoggerFactory.getLogger(SourceQueryTask.class);
+    private static final boolean debug = log.isDebugEnabled();
     private static final boolean trace = log.isTraceEnabled();
 
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
-    private MetricSource source;
+    private final MetricSource source;
+
+    private final List<MetricDefinition> metricDefinitions;
 
-    private List<MetricDefinition> metricDefinitions;
+    //
+    // null if the source cannot prepare queries, or failed to prepare this one; replaced when it goes stale
+    //
+    private volatile PreparedQuery preparedQuery;
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
@@ -72,7 +83,7 @@ public class SourceQueryTask implements Callable<List<Property>> {
 
         this.source = s;
 
-        this.metricDefinitions = new ArrayList<>();
+        List<MetricDefinition> mds = new ArrayList<>();
 
         //
         // check to see if all metric definitions are associated with the source we want to query and throw
@@ -89,8 +100,12 @@ public class SourceQueryTask implements Callable<List<Property>> {
                 throw new IllegalArgumentException(d + " is not associated with source " + source);
             }
 
-            metricDefinitions.add(d);
+            mds.add(d);
         }
+
+        this.metricDefinitions = Collections.unmodifiableList(mds);
+
+        this.preparedQuery = s instanceof PreparableMetricSource ? prepare((PreparableMetricSource)s) : null;
     }
 
     // Callable implementation -----------------------------------------------------------------------------------------
@@ -107,9 +122,11 @@ public class SourceQueryTask implements Callable<List<Property>> {
 
         try {
 
-            List<Property> result = source.collectMetrics(metricDefinitions);
+            PreparedQuery q = preparedQuery;
+
+            List<Property> result = q != null ? execute(q) : source.collectMetrics(metricDefinitions);
 
-            log.debug(this + " completed source query");
+            if (debug) { log.debug(this + " completed source query"); }
 
             return result;
         }
@@ -125,6 +142,11 @@ public class SourceQueryTask implements Callable<List<Property>> {
 
     // Public ----------------------------------------------------------------------------------------------------------
 
+    public MetricSource getSource() {
+
+        return source;
+    }
+
     public Address getSourceAddress() {
 
         return source.getAddress();
@@ -135,6 +157,14 @@ public class SourceQueryTask implements Callable<List<Property>> {
         return metricDefinitions;
     }
 
+    /**
+     * @return true if the source executes a prepared query, false if it is queried with collectMetrics().
+     */
+    public boolean isPrepared() {
+
+        return preparedQuery != null;
+    }
+
     @Override
     public String toString() {
 
@@ -147,6 +177,53 @@ public class SourceQueryTask implements Callable<List<Property>> {
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    private List<Property> execute(PreparedQuery q) throws MetricException {
+
+        try {
+
+            return q.execute();
+        }
+        catch(StalePreparedQueryException e) {
+
+            if (debug) { log.debug(this + " preparing again: " + e.getMessage()); }
+
+            //
+            // overlapping runs may both prepare, the last one wins; either query is good
+            //
+
+            q = prepare((PreparableMetricSource)source);
+
+            preparedQuery = q;
+
+            return q != null ? q.execute() : source.collectMetrics(metricDefinitions);
+        }
+    }
+
+    private PreparedQuery prepare(PreparableMetricSource s) {
+
+        try {
+
+            PreparedQuery q = s.prepare(metricDefinitions);
+
+            if (q == null) {
+
+                log.debug(s + " cannot prepare a query for " + metricDefinitions + ", will use collectMetrics()");
+            }
+
+            return q;
+        }
+        catch(Exception e) {
+
+            //
+            // not fatal, the source can still be queried the regular way
+            //
+
+            log.warn(s + " failed to prepare a query, will use collectMetrics(): " + e.getMessage());
+
+            return null;
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -14,39 +14,31 @@
  * limitations under the License.
  */
 
-package io.novaordis.databot;
+package io.novaordis.databot.task;
 
-import java.util.Queue;
+import io.novaordis.events.api.metric.MetricSourceException;
 
 /**
+ * Thrown by PreparedQuery.execute() when the state the query was prepared against is gone: the source was stopped,
+ * restarted, or rediscovered its target. Nothing was collected; the caller is expected to prepare the query again.
+ *
+ * @see SourceQueryTask
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
- * @since 1/9/18
+ * @since 1/18/18
  */
-public class Util {
+public class StalePreparedQueryException extends MetricSourceException {
 
     // Constants -------------------------------------------------------------------------------------------------------
 
     // Static ----------------------------------------------------------------------------------------------------------
 
-    public static String queueLogLabel(Queue queue) {
-
-        if (queue == null) {
-
-            return null;
-        }
-
-        String s = "event queue [" + Integer.toHexString(System.identityHashCode(queue)) + "](";
-
-        s += queue.size() + ")";
-
-        return s;
-    }
-
     // Attributes ------------------------------------------------------------------------------------------------------
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
-    private Util() {
+    public StalePreparedQueryException(String message) {
+        super(message);
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
@@ -16,10 +16,25 @@
 
 package io.novaordis.databot;
 
+import io.novaordis.databot.bus.EventBus;
+import io.novaordis.databot.bus.EventBusType;
+import io.novaordis.databot.bus.EventPublisher;
+import io.novaordis.databot.bus.OverflowPolicy;
+import io.novaordis.databot.bus.RingBufferEventBus;
+import io.novaordis.databot.bus.WaitStrategy;
 import io.novaordis.databot.configuration.Configuration;
 import io.novaordis.databot.configuration.DefaultConfiguration;
 import io.novaordis.databot.configuration.MockConfiguration;
 import io.novaordis.databot.consumer.MockDataConsumer;
+import io.novaordis.databot.os.CommandStreamMetricSource;
+import io.novaordis.databot.os.LocalOSEngine;
+import io.novaordis.databot.os.linux.LinuxProcMetricSource;
+import io.novaordis.databot.os.linux.LinuxProcReader;
+import io.novaordis.databot.os.linux.ProcessAddress;
+import io.novaordis.databot.os.linux.ProcessMetricSource;
+import io.novaordis.databot.os.linux.ProcessTarget;
+import io.novaordis.databot.task.SourceExecutor;
+import io.novaordis.databot.task.SourceExecutorType;
 import io.novaordis.events.api.event.Event;
 import io.novaordis.events.api.event.PropertyFactory;
 import io.novaordis.events.api.metric.MetricSource;
@@ -30,20 +45,20 @@ import io.novaordis.events.api.metric.os.LocalOS;
 import io.novaordis.events.api.metric.os.RemoteOS;
 import io.novaordis.jboss.cli.model.JBossControllerAddress;
 import io.novaordis.jmx.JmxAddress;
+import io.novaordis.utilities.Files;
 import io.novaordis.utilities.address.Address;
 import io.novaordis.utilities.address.AddressImpl;
 import io.novaordis.utilities.address.LocalOSAddress;
 import io.novaordis.utilities.address.OSAddressImpl;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -110,20 +125,96 @@ public class DataBotTest {
         List<DataConsumer> consumers = d.getDataConsumers();
         assertTrue(consumers.isEmpty());
 
-        BlockingQueue<Event> eventQueue = d.getEventQueue();
-        assertEquals(c.getEventQueueSize(), eventQueue.remainingCapacity());
+        EventBus eventBus = d.getEventBus();
+        assertEquals(c.getEventQueueSize(), eventBus.getCapacity());
+        assertEquals(0, eventBus.size());
 
         ThreadFactory tf = d.getSourceThreadFactory();
         assertNotNull(tf);
 
-        ExecutorService se = d.getSourceExecutor();
+        SourceExecutor se = d.getSourceExecutor();
         assertFalse(se.isShutdown());
         assertFalse(se.isTerminated());
+        assertEquals(SourceExecutorType.FIXED, se.getType());
+        assertEquals(0, se.getPerHostLimit());
 
-        ThreadPoolExecutor sourceExecutor = (ThreadPoolExecutor)d.getSourceExecutor();
+        ThreadPoolExecutor sourceExecutor = (ThreadPoolExecutor)se.getExecutorService();
         assertEquals(DataBot.DEFAULT_SOURCE_EXECUTOR_CORE_POOL_SIZE, sourceExecutor.getCorePoolSize());
     }
 
+    @Test
+    public void constructorAndInitialization_ProcLocalOSEngine() throws Exception {
+
+        Set<Address> metricSourceAddresses = new HashSet<>();
+        metricSourceAddresses.add(new LocalOSAddress());
+
+        MockConfiguration mc = new MockConfiguration();
+        mc.setMetricSourceAddresses(metricSourceAddresses);
+        mc.setLocalOSEngine(LocalOSEngine.PROC);
+
+        DataBot d = new DataBot(mc);
+
+        Set<MetricSource> sources = d.getMetricSources();
+        assertEquals(1, sources.size());
+
+        MetricSource s = sources.iterator().next();
+
+        if (LinuxProcReader.isAvailable(new File(LinuxProcReader.DEFAULT_PROC_ROOT))) {
+
+            LinuxProcMetricSource ps = (LinuxProcMetricSource)s;
+            assertEquals(new LocalOSAddress(), ps.getAddress());
+            assertEquals(new LocalOS(), ps.getFallback());
+        }
+        else {
+
+            assertEquals(new LocalOS(), s);
+        }
+    }
+
+    @Test
+    public void constructorAndInitialization_StreamLocalOSEngine() throws Exception {
+
+        Set<Address> metricSourceAddresses = new HashSet<>();
+        metricSourceAddresses.add(new LocalOSAddress());
+
+        MockConfiguration mc = new MockConfiguration();
+        mc.setMetricSourceAddresses(metricSourceAddresses);
+        mc.setLocalOSEngine(LocalOSEngine.STREAM);
+
+        DataBot d = new DataBot(mc);
+
+        Set<MetricSource> sources = d.getMetricSources();
+        assertEquals(1, sources.size());
+
+        CommandStreamMetricSource s = (CommandStreamMetricSource)sources.iterator().next();
+        assertEquals(new LocalOSAddress(), s.getAddress());
+        assertEquals("vmstat", s.getCommand().get(0));
+        assertEquals(new LocalOS(), s.getFallback());
+        assertFalse(s.isStarted());
+    }
+
+    @Test
+    public void constructorAndInitialization_ProcessAddress() throws Exception {
+
+        ProcessAddress a = new ProcessAddress(ProcessTarget.parse("pidfile:/var/run/test.pid"));
+
+        Set<Address> metricSourceAddresses = new HashSet<>();
+        metricSourceAddresses.add(a);
+
+        MockConfiguration mc = new MockConfiguration();
+        mc.setMetricSourceAddresses(metricSourceAddresses);
+
+        DataBot d = new DataBot(mc);
+
+        Set<MetricSource> sources = d.getMetricSources();
+        assertEquals(1, sources.size());
+
+        ProcessMetricSource s = (ProcessMetricSource)sources.iterator().next();
+        assertEquals(a, s.getAddress());
+        assertEquals(a.getTarget(), s.getTarget());
+        assertFalse(s.isStarted());
+    }
+
     @Test
     public void constructorAndInitialization_ComplexSimulation() throws Exception {
 
@@ -147,6 +238,11 @@ public class DataBotTest {
         mc.setMetricSourceAddresses(metricSourceAddresses);
         mc.setDataConsumers(dataConsumers);
 
+        //
+        // the local OS source must be the command-based one, regardless of whether we're on Linux
+        //
+        mc.setLocalOSEngine(LocalOSEngine.COMMAND);
+
         //
         // construct and initialize
         //
@@ -185,10 +281,65 @@ public class DataBotTest {
         assertEquals(mdc2, consumers.get(1));
         assertFalse(mdc2.isStarted());
 
-        ThreadPoolExecutor sourceExecutor = (ThreadPoolExecutor)d.getSourceExecutor();
+        ThreadPoolExecutor sourceExecutor = (ThreadPoolExecutor)d.getSourceExecutor().getExecutorService();
         assertEquals(metricSourceAddresses.size(), sourceExecutor.getCorePoolSize());
     }
 
+    @Test
+    public void constructor_ElasticSourceExecutor() throws Exception {
+
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSourceExecutorType(SourceExecutorType.ELASTIC);
+        mc.setSourceExecutorMaxThreads(500);
+        mc.setSourceExecutorPerHostLimit(2);
+
+        DataBot d = new DataBot(mc);
+
+        SourceExecutor se = d.getSourceExecutor();
+        assertEquals(SourceExecutorType.ELASTIC, se.getType());
+        assertEquals(2, se.getPerHostLimit());
+
+        ThreadPoolExecutor tpe = (ThreadPoolExecutor)se.getExecutorService();
+        assertEquals(500, tpe.getMaximumPoolSize());
+        assertTrue(tpe.allowsCoreThreadTimeOut());
+    }
+
+    @Test
+    public void constructor_RingBufferEventQueue() throws Exception {
+
+        MockConfiguration mc = new MockConfiguration();
+        mc.setEventQueueSize(8);
+        mc.setEventQueueType(EventBusType.RING_BUFFER);
+        mc.setEventQueueWaitStrategy(WaitStrategy.YIELD);
+
+        DataBot d = new DataBot(mc);
+
+        RingBufferEventBus b = (RingBufferEventBus)d.getEventBus();
+        assertEquals(8, b.getCapacity());
+        assertEquals(WaitStrategy.YIELD, b.getWaitStrategy());
+    }
+
+    @Test
+    public void constructor_SpillOverflowPolicy() throws Exception {
+
+        File dir = new File(System.getProperty("basedir"), "target/test-scratch/spill");
+
+        MockConfiguration mc = new MockConfiguration();
+        mc.setEventQueueSize(10);
+        mc.setEventQueueOverflowPolicy(OverflowPolicy.SPILL);
+        mc.setEventQueueSpillDirectory(dir);
+
+        DataBot d = new DataBot(mc);
+
+        EventPublisher p = d.getEventPublisher();
+        assertEquals(OverflowPolicy.SPILL, p.getPolicy());
+        assertEquals(8, p.getHighWaterMark());
+        assertEquals(dir, p.getSpillQueue().getDirectory());
+        assertEquals(Configuration.DEFAULT_EVENT_QUEUE_SPILL_SEGMENT_SIZE, p.getSpillQueue().getSegmentSize());
+
+        assertTrue(Files.rmdir(dir, false));
+    }
+
     // lifecycle -------------------------------------------------------------------------------------------------------
 
     @Test
@@ -205,7 +356,7 @@ public class DataBotTest {
 
         mc.setMetricSourceAddresses(addresses);
         mc.setDataConsumers(Collections.singletonList(mdc));
-        mc.setSamplingIntervalSec(1);
+        mc.setSamplingIntervalMs(1000L);
 
         mc.setMetricSourceFactory(new MockMetricSourceFactory(new PropertyFactory()));
 
@@ -222,7 +373,7 @@ public class DataBotTest {
         assertEquals(1, consumers.size());
         assertEquals(mdc, consumers.get(0));
         assertFalse(consumers.get(0).isStarted());
-        assertEquals(0, d.getTimerTaskExecutionCount());
+        assertEquals(0, d.getExecutionCount());
 
         d.start();
 
@@ -231,7 +382,7 @@ public class DataBotTest {
         sources = d.getMetricSources();
 
         //
-        // sources are not started at this time, they will be started on the next timer run
+        // sources are not started at this time, they will be started on the next scheduled run
         //
 
         for(MetricSource s: sources) {
@@ -247,10 +398,11 @@ public class DataBotTest {
         }
 
         //
-        // wait twice the sampling interval to make sure that the timer task is scheduled as planned
+        // wait twice the sampling interval to make sure that the task is scheduled as planned: the first run happens on
+        // the next interval boundary
         //
 
-        long waitTimeMs = 1000L * mc.getSamplingIntervalSec();
+        long waitTimeMs = 2 * mc.getSamplingIntervalMs();
         long t0 = System.currentTimeMillis();
 
         while(System.currentTimeMillis() - t0 < waitTimeMs) {
@@ -258,8 +410,8 @@ public class DataBotTest {
             Thread.sleep(200L);
         }
 
-        long timerTaskExecutionCount = d.getTimerTaskExecutionCount();
-        assertTrue(timerTaskExecutionCount > 0);
+        long executionCount = d.getExecutionCount();
+        assertTrue(executionCount > 0);
 
         d.stop();
 
@@ -268,10 +420,10 @@ public class DataBotTest {
         //
 
         //
-        // wait twice the sampling interval to make sure that the timer task has time to shut down
+        // wait twice the sampling interval to make sure that the scheduler has time to shut down
         //
 
-        waitTimeMs = 1000L * mc.getSamplingIntervalSec();
+        waitTimeMs = mc.getSamplingIntervalMs();
         t0 = System.currentTimeMillis();
 
         while(System.currentTimeMillis() - t0 < waitTimeMs) {
@@ -279,7 +431,7 @@ public class DataBotTest {
             Thread.sleep(200L);
         }
 
-        ExecutorService sourceExecutor = d.getSourceExecutor();
+        SourceExecutor sourceExecutor = d.getSourceExecutor();
         assertTrue(sourceExecutor.isShutdown());
         assertTrue(sourceExecutor.isTerminated());
     }
@@ -294,7 +446,7 @@ public class DataBotTest {
         //
         // set the sampling interval to the smallest possible
         //
-        mc.setSamplingIntervalSec(1);
+        mc.setSamplingIntervalMs(1000L);
 
         CountDownLatch exitLatch = new CountDownLatch(1);
 
@@ -311,7 +463,8 @@ public class DataBotTest {
         d.start();
 
         //
-        // we should be waiting a little bit more than 2 seconds if everything goes well
+        // we should be waiting at most 3 seconds if everything goes well, the first run happens on the next second
+        // boundary
         //
         long timeoutSecs = 5;
 
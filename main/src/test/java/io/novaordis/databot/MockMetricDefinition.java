@@ -17,6 +17,7 @@
 package io.novaordis.databot;
 
 import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MeasureUnit;
 import io.novaordis.utilities.address.Address;
 
 /**
@@ -35,6 +36,10 @@ public class MockMetricDefinition extends MockMetricDefinitionBase {
 
     private String simpleLabel;
 
+    private Class type;
+
+    private MeasureUnit baseUnit;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     /**
@@ -68,6 +73,24 @@ public class MockMetricDefinition extends MockMetricDefinitionBase {
         return simpleLabel;
     }
 
+    /**
+     * May return null, if not explicitly set.
+     */
+    @Override
+    public Class getType() {
+
+        return type;
+    }
+
+    /**
+     * May return null, if not explicitly set.
+     */
+    @Override
+    public MeasureUnit getBaseUnit() {
+
+        return baseUnit;
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     public void setId(String s) {
@@ -79,6 +102,16 @@ public class MockMetricDefinition extends MockMetricDefinitionBase {
         this.simpleLabel = s;
     }
 
+    public void setType(Class c) {
+
+        this.type = c;
+    }
+
+    public void setBaseUnit(MeasureUnit u) {
+
+        this.baseUnit = u;
+    }
+
     @Override
     public String toString() {
 
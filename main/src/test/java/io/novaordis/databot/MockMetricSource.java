@@ -30,6 +30,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -57,6 +59,12 @@ public class MockMetricSource implements MetricSource {
 
     private PropertyFactory propertyFactory;
 
+    private volatile CountDownLatch collectionGate;
+
+    private volatile long collectionDelayMs;
+
+    private final AtomicInteger collectionCount;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public MockMetricSource(PropertyFactory propertyFactory) {
@@ -67,6 +75,7 @@ public class MockMetricSource implements MetricSource {
     public MockMetricSource(PropertyFactory propertyFactory, Address a) {
 
         readingsForMetrics = new HashMap<>();
+        this.collectionCount = new AtomicInteger();
         this.address = a;
         this.propertyFactory = propertyFactory;
     }
@@ -90,6 +99,36 @@ public class MockMetricSource implements MetricSource {
 
         log.info(this + " collecting " + metricDefinitions);
 
+        collectionCount.incrementAndGet();
+
+        long delay = collectionDelayMs;
+
+        if (delay > 0) {
+
+            try {
+
+                Thread.sleep(delay);
+            }
+            catch(InterruptedException e) {
+
+                throw new MetricSourceException(e);
+            }
+        }
+
+        CountDownLatch gate = collectionGate;
+
+        if (gate != null) {
+
+            try {
+
+                gate.await();
+            }
+            catch(InterruptedException e) {
+
+                throw new MetricSourceException(e);
+            }
+        }
+
         if (breakOnCollectWithUncheckedExceptionMessage != null) {
 
             throw new SyntheticUncheckedException(breakOnCollectWithUncheckedExceptionMessage);
@@ -160,6 +199,30 @@ public class MockMetricSource implements MetricSource {
         breakOnCollectWithUncheckedExceptionMessage = message;
     }
 
+    /**
+     * Subsequent collections block until the gate opens. Pass null to stop blocking.
+     */
+    public void blockCollectionUntil(CountDownLatch gate) {
+
+        this.collectionGate = gate;
+    }
+
+    /**
+     * Simulates a slow, blocking remote query.
+     */
+    public void setCollectionDelayMs(long ms) {
+
+        this.collectionDelayMs = ms;
+    }
+
+    /**
+     * @return the number of collectMetrics() invocations.
+     */
+    public int getCollectionCount() {
+
+        return collectionCount.get();
+    }
+
     @Override
     public String toString() {
 
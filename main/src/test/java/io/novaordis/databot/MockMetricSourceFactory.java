@@ -36,6 +36,8 @@ public class MockMetricSourceFactory implements MetricSourceFactory {
 
     private PropertyFactory propertyFactory;
 
+    private boolean preparable;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public MockMetricSourceFactory(PropertyFactory f) {
@@ -48,11 +50,24 @@ public class MockMetricSourceFactory implements MetricSourceFactory {
     @Override
     public MetricSource buildMetricSource(Address a) throws MetricSourceException {
 
+        if (preparable) {
+
+            return new MockPreparableMetricSource(propertyFactory, a);
+        }
+
         return new MockMetricSource(propertyFactory, a);
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * Build MockPreparableMetricSource instances.
+     */
+    public void setPreparable(boolean b) {
+
+        this.preparable = b;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
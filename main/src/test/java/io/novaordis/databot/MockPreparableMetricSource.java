@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot;
+
+import io.novaordis.databot.task.PreparableMetricSource;
+import io.novaordis.databot.task.PreparedQuery;
+import io.novaordis.databot.task.StalePreparedQueryException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.utilities.address.Address;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class MockPreparableMetricSource extends MockMetricSource implements PreparableMetricSource {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final AtomicInteger prepareCount;
+    private final AtomicInteger preparedExecutionCount;
+    private final AtomicInteger unpreparedCollectionCount;
+    private final AtomicInteger generation;
+
+    private boolean breakOnPrepare;
+    private boolean cannotPrepare;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public MockPreparableMetricSource(PropertyFactory propertyFactory, Address a) {
+
+        super(propertyFactory, a);
+
+        this.prepareCount = new AtomicInteger();
+        this.preparedExecutionCount = new AtomicInteger();
+        this.unpreparedCollectionCount = new AtomicInteger();
+        this.generation = new AtomicInteger();
+    }
+
+    // PreparableMetricSource implementation ---------------------------------------------------------------------------
+
+    @Override
+    public PreparedQuery prepare(List<MetricDefinition> metricDefinitions) throws MetricSourceException {
+
+        prepareCount.incrementAndGet();
+
+        if (breakOnPrepare) {
+
+            throw new MetricSourceException("SYNTHETIC PREPARE FAILURE");
+        }
+
+        if (cannotPrepare) {
+
+            return null;
+        }
+
+        List<MetricDefinition> resolved = new ArrayList<>(metricDefinitions);
+
+        int g = generation.get();
+
+        return () -> {
+
+            if (generation.get() != g) {
+
+                throw new StalePreparedQueryException("SYNTHETIC STALE QUERY");
+            }
+
+            preparedExecutionCount.incrementAndGet();
+
+            return MockPreparableMetricSource.super.collectMetrics(resolved);
+        };
+    }
+
+    // MetricSource overrides ------------------------------------------------------------------------------------------
+
+    @Override
+    public List<Property> collectMetrics(List<MetricDefinition> metricDefinitions) throws MetricSourceException {
+
+        unpreparedCollectionCount.incrementAndGet();
+
+        return super.collectMetrics(metricDefinitions);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public int getPrepareCount() {
+
+        return prepareCount.get();
+    }
+
+    public int getPreparedExecutionCount() {
+
+        return preparedExecutionCount.get();
+    }
+
+    public int getUnpreparedCollectionCount() {
+
+        return unpreparedCollectionCount.get();
+    }
+
+    public void breakOnPrepare() {
+
+        this.breakOnPrepare = true;
+    }
+
+    public void cannotPrepare() {
+
+        this.cannotPrepare = true;
+    }
+
+    /**
+     * The queries prepared so far throw StalePreparedQueryException.
+     */
+    public void invalidatePreparedQueries() {
+
+        generation.incrementAndGet();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+import io.novaordis.databot.MockEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.ShutdownEvent;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/12/18
+ */
+public abstract class EventBusTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void initialState() throws Exception {
+
+        EventBus b = getEventBusToTest(5);
+
+        assertEquals(5, b.getCapacity());
+        assertEquals(0, b.size());
+        assertEquals(0L, b.getPublishedCount());
+        assertTrue(b.getCursors().isEmpty());
+    }
+
+    @Test
+    public void publish_NullEvent() throws Exception {
+
+        EventBus b = getEventBusToTest(1);
+
+        try {
+
+            b.publish(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null event"));
+        }
+    }
+
+    @Test
+    public void publish_NoCursors_EventsAreNotRetained() throws Exception {
+
+        EventBus b = getEventBusToTest(1);
+
+        assertTrue(b.publish(new MockEvent()));
+        assertTrue(b.publish(new MockEvent()));
+
+        assertEquals(0, b.size());
+        assertEquals(2L, b.getPublishedCount());
+    }
+
+    @Test
+    public void publish_EachCursorSeesEveryEvent() throws Exception {
+
+        EventBus b = getEventBusToTest(3);
+
+        EventCursor c = b.subscribe("c");
+        EventCursor c2 = b.subscribe("c2");
+
+        assertEquals(2, b.getCursors().size());
+
+        MockEvent e = new MockEvent();
+        MockEvent e2 = new MockEvent();
+
+        assertTrue(b.publish(e));
+        assertTrue(b.publish(e2));
+
+        assertEquals(2, b.size());
+
+        assertSame(e, c.poll());
+        assertSame(e2, c.poll());
+        assertNull(c.poll());
+
+        //
+        // the slowest cursor still holds the events
+        //
+
+        assertEquals(2, b.size());
+        assertEquals(0L, c.getLag());
+        assertEquals(2L, c2.getLag());
+
+        assertSame(e, c2.poll());
+        assertSame(e2, c2.poll());
+        assertNull(c2.poll());
+
+        assertEquals(0, b.size());
+        assertEquals(2L, c.getReadCount());
+        assertEquals(2L, c2.getReadCount());
+    }
+
+    @Test
+    public void publish_SlowestCursorFillsTheBus() throws Exception {
+
+        EventBus b = getEventBusToTest(2);
+
+        EventCursor fast = b.subscribe("fast");
+        EventCursor slow = b.subscribe("slow");
+
+        assertTrue(b.publish(new MockEvent()));
+        assertTrue(b.publish(new MockEvent()));
+
+        assertNotNullEvent(fast.poll());
+        assertNotNullEvent(fast.poll());
+
+        //
+        // the slow cursor did not read anything, so the bus is full
+        //
+
+        assertFalse(b.publish(new MockEvent()));
+        assertFalse(b.publish(new MockEvent(), 10L, TimeUnit.MILLISECONDS));
+        assertEquals(2L, b.getPublishedCount());
+
+        assertNotNullEvent(slow.poll());
+
+        assertTrue(b.publish(new MockEvent()));
+
+        assertEquals(2L, slow.getMaxLag());
+        assertEquals(1L, fast.getLag());
+    }
+
+    @Test
+    public void publish_Timed_UnblockedByConsumer() throws Exception {
+
+        final EventBus b = getEventBusToTest(1);
+
+        final EventCursor c = b.subscribe("c");
+
+        assertTrue(b.publish(new MockEvent()));
+
+        Thread t = new Thread(() -> {
+
+            try {
+
+                Thread.sleep(100L);
+                c.take();
+            }
+            catch(InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        t.start();
+
+        assertTrue(b.publish(new MockEvent(), 5L, TimeUnit.SECONDS));
+
+        t.join();
+    }
+
+    @Test
+    public void take_BlocksUntilPublish() throws Exception {
+
+        final EventBus b = getEventBusToTest(1);
+
+        final EventCursor c = b.subscribe("c");
+
+        final AtomicReference<Event> received = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        Thread t = new Thread(() -> {
+
+            try {
+
+                received.set(c.take());
+                latch.countDown();
+            }
+            catch(InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        t.start();
+
+        MockEvent e = new MockEvent();
+
+        assertTrue(b.publish(e));
+
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        assertSame(e, received.get());
+    }
+
+    @Test
+    public void poll_Timeout() throws Exception {
+
+        EventBus b = getEventBusToTest(1);
+
+        EventCursor c = b.subscribe("c");
+
+        assertNull(c.poll(10L, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void subscribe_LateCursorDoesNotSeePastEvents() throws Exception {
+
+        EventBus b = getEventBusToTest(2);
+
+        EventCursor early = b.subscribe("early");
+
+        assertTrue(b.publish(new MockEvent()));
+
+        EventCursor late = b.subscribe("late");
+
+        assertNull(late.poll());
+        assertEquals(0L, late.getLag());
+        assertEquals(1L, early.getLag());
+    }
+
+    @Test
+    public void unsubscribe_ReleasesHeldEvents() throws Exception {
+
+        EventBus b = getEventBusToTest(1);
+
+        EventCursor c = b.subscribe("c");
+
+        assertTrue(b.publish(new MockEvent()));
+        assertFalse(b.publish(new MockEvent()));
+
+        b.unsubscribe(c);
+
+        assertTrue(b.getCursors().isEmpty());
+        assertEquals(0, b.size());
+        assertTrue(b.publish(new MockEvent()));
+    }
+
+    @Test
+    public void close_PendingEventsAreDeliveredBeforeShutdown() throws Exception {
+
+        EventBus b = getEventBusToTest(3);
+
+        EventCursor c = b.subscribe("c");
+
+        MockEvent e = new MockEvent();
+
+        assertTrue(b.publish(e));
+
+        assertFalse(c.isClosed());
+
+        c.close();
+
+        assertTrue(c.isClosed());
+
+        //
+        // events published after close are not seen by the closed cursor
+        //
+
+        assertTrue(b.publish(new MockEvent()));
+
+        assertSame(e, c.take());
+
+        Event e2 = c.take();
+        assertTrue(e2 instanceof ShutdownEvent);
+
+        //
+        // the cursor detached itself
+        //
+
+        List<EventCursor> cursors = b.getCursors();
+        assertTrue(cursors.isEmpty());
+        assertEquals(0, b.size());
+    }
+
+    @Test
+    public void close_UnblocksTake() throws Exception {
+
+        final EventBus b = getEventBusToTest(1);
+
+        final EventCursor c = b.subscribe("c");
+
+        final AtomicReference<Event> received = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        Thread t = new Thread(() -> {
+
+            try {
+
+                received.set(c.take());
+                latch.countDown();
+            }
+            catch(InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        t.start();
+
+        Thread.sleep(50L);
+
+        c.close();
+
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        assertTrue(received.get() instanceof ShutdownEvent);
+    }
+
+    @Test
+    public void evictOldest_Empty() throws Exception {
+
+        EventBus b = getEventBusToTest(1);
+
+        assertFalse(b.evictOldest());
+
+        b.subscribe("c");
+
+        assertFalse(b.evictOldest());
+    }
+
+    @Test
+    public void evictOldest() throws Exception {
+
+        EventBus b = getEventBusToTest(2);
+
+        EventCursor fast = b.subscribe("fast");
+        EventCursor slow = b.subscribe("slow");
+
+        MockEvent e = new MockEvent();
+        MockEvent e2 = new MockEvent();
+
+        assertTrue(b.publish(e));
+        assertTrue(b.publish(e2));
+
+        assertSame(e, fast.poll());
+
+        assertTrue(b.evictOldest());
+
+        //
+        // only the slowest cursor is affected
+        //
+
+        assertEquals(1L, fast.getLag());
+        assertEquals(1L, slow.getLag());
+        assertEquals(1, b.size());
+
+        assertTrue(b.publish(new MockEvent()));
+
+        assertSame(e2, slow.poll());
+        assertSame(e2, fast.poll());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    protected abstract EventBus getEventBusToTest(int capacity) throws Exception;
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static void assertNotNullEvent(Event e) {
+
+        if (e == null) {
+
+            fail("expected an event, got null");
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
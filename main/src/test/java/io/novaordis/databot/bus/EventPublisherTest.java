@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+import io.novaordis.databot.MockEvent;
+import io.novaordis.databot.bus.spill.SpillQueue;
+import io.novaordis.databot.event.MultiSourceReadingEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MockAddress;
+import io.novaordis.utilities.Files;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/14/18
+ */
+public class EventPublisherTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/spill");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NullPolicy() throws Exception {
+
+        try {
+
+            new EventPublisher(new BroadcastEventBus(1), null, 0L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null overflow policy"));
+        }
+    }
+
+    @Test
+    public void dropNewest() throws Exception {
+
+        EventBus b = new BroadcastEventBus(1);
+        EventCursor c = b.subscribe("c");
+
+        EventPublisher p = new EventPublisher(b, OverflowPolicy.DROP_NEWEST, 0L);
+
+        MockEvent e = new MockEvent();
+        MockEvent e2 = new MockEvent();
+
+        assertTrue(p.publish(e));
+        assertFalse(p.publish(e2));
+
+        assertEquals(1L, p.getPublishedCount());
+        assertEquals(1L, p.getDroppedCount());
+
+        assertSame(e, c.poll());
+        assertNull(c.poll());
+    }
+
+    @Test
+    public void dropOldest() throws Exception {
+
+        EventBus b = new RingBufferEventBus(2, WaitStrategy.PARK);
+        EventCursor c = b.subscribe("c");
+
+        EventPublisher p = new EventPublisher(b, OverflowPolicy.DROP_OLDEST, 0L);
+
+        MockEvent e = new MockEvent();
+        MockEvent e2 = new MockEvent();
+        MockEvent e3 = new MockEvent();
+
+        assertTrue(p.publish(e));
+        assertTrue(p.publish(e2));
+        assertTrue(p.publish(e3));
+
+        assertEquals(3L, p.getPublishedCount());
+        assertEquals(1L, p.getDroppedCount());
+
+        assertSame(e2, c.poll());
+        assertSame(e3, c.poll());
+        assertNull(c.poll());
+    }
+
+    @Test
+    public void dropOldest_OnlyTheSlowCursorLosesEvents() throws Exception {
+
+        EventBus b = new BroadcastEventBus(1);
+        EventCursor fast = b.subscribe("fast");
+        EventCursor slow = b.subscribe("slow");
+
+        EventPublisher p = new EventPublisher(b, OverflowPolicy.DROP_OLDEST, 0L);
+
+        MockEvent e = new MockEvent();
+        MockEvent e2 = new MockEvent();
+
+        assertTrue(p.publish(e));
+        assertSame(e, fast.poll());
+
+        assertTrue(p.publish(e2));
+
+        assertSame(e2, fast.poll());
+        assertSame(e2, slow.poll());
+        assertEquals(1L, p.getDroppedCount());
+    }
+
+    @Test
+    public void block_Timeout() throws Exception {
+
+        EventBus b = new BroadcastEventBus(1);
+        b.subscribe("c");
+
+        EventPublisher p = new EventPublisher(b, OverflowPolicy.BLOCK, 20L);
+
+        assertTrue(p.publish(new MockEvent()));
+
+        long t0 = System.currentTimeMillis();
+
+        assertFalse(p.publish(new MockEvent()));
+
+        assertTrue(System.currentTimeMillis() - t0 >= 20L);
+        assertEquals(1L, p.getDroppedCount());
+    }
+
+    @Test
+    public void block_WaitDoesNotHoldTheMonitor() throws Exception {
+
+        EventBus b = new BroadcastEventBus(1);
+        EventCursor c = b.subscribe("c");
+
+        final EventPublisher p = new EventPublisher(b, OverflowPolicy.BLOCK, 10000L);
+
+        assertTrue(p.publish(new MockEvent()));
+
+        final boolean[] published = new boolean[1];
+
+        Thread publisher = new Thread(() -> published[0] = p.publish(new MockEvent()));
+
+        publisher.start();
+
+        while(publisher.getState() != Thread.State.TIMED_WAITING) {
+
+            Thread.sleep(1L);
+        }
+
+        //
+        // the synchronized methods do not wait for the blocked publisher
+        //
+
+        long t0 = System.currentTimeMillis();
+
+        assertTrue(p.flush());
+        assertFalse(p.hasPending());
+        assertEquals(0, p.close());
+
+        assertTrue(System.currentTimeMillis() - t0 < 5000L);
+
+        assertNotNull(c.poll());
+
+        publisher.join();
+
+        assertTrue(published[0]);
+        assertEquals(2L, p.getPublishedCount());
+        assertEquals(0L, p.getDroppedCount());
+    }
+
+    @Test
+    public void coalesce_LatestReadingPerSource() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        MockAddress a = new MockAddress("A");
+        MockAddress a2 = new MockAddress("B");
+
+        EventBus b = new BroadcastEventBus(1);
+        EventCursor c = b.subscribe("c");
+
+        EventPublisher p = new EventPublisher(b, OverflowPolicy.COALESCE, 0L);
+
+        MockEvent first = new MockEvent();
+        assertTrue(p.publish(first));
+
+        //
+        // the bus is full, the first event goes aside
+        //
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent();
+        e.addSourceReading(a, reading(pf, "a", 1));
+        e.addSourceReading(a2, reading(pf, "b", 1));
+
+        assertTrue(p.publish(e));
+        assertTrue(p.hasPending());
+        assertEquals(0L, p.getCoalescedCount());
+
+        //
+        // the second event only has a reading for A, B is carried over from the first
+        //
+
+        MultiSourceReadingEvent e2 = new MultiSourceReadingEvent();
+        e2.addSourceReading(a, reading(pf, "a", 2));
+
+        assertTrue(p.publish(e2));
+        assertEquals(1L, p.getCoalescedCount());
+        assertEquals(0L, p.getDroppedCount());
+
+        assertSame(first, c.poll());
+
+        assertTrue(p.flush());
+        assertFalse(p.hasPending());
+
+        MultiSourceReadingEvent coalesced = (MultiSourceReadingEvent)c.poll();
+        assertSame(e2, coalesced);
+        assertEquals(2, coalesced.getSourceCount());
+        assertEquals(2, coalesced.getPropertiesForSource(a).get(0).getValue());
+        assertEquals(1, coalesced.getPropertiesForSource(a2).get(0).getValue());
+    }
+
+    @Test
+    public void constructor_Spill_NullSpillQueue() throws Exception {
+
+        try {
+
+            new EventPublisher(new BroadcastEventBus(1), OverflowPolicy.SPILL, 0L, null, 1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null spill queue"));
+        }
+    }
+
+    @Test
+    public void constructor_Spill_HighWaterMarkLargerThanCapacity() throws Exception {
+
+        SpillQueue q = new SpillQueue(scratchDirectory, 1024, 1);
+
+        try {
+
+            new EventPublisher(new BroadcastEventBus(2), OverflowPolicy.SPILL, 0L, q, 3);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid high-water mark 3, must be between 1 and 2"));
+        }
+    }
+
+    @Test
+    public void spill_ReplayedInOrder() throws Exception {
+
+        EventBus b = new BroadcastEventBus(4);
+        EventCursor c = b.subscribe("c");
+
+        SpillQueue q = new SpillQueue(scratchDirectory, 1024, 2);
+
+        EventPublisher p = new EventPublisher(b, OverflowPolicy.SPILL, 0L, q, 2);
+
+        //
+        // the first two events go on the bus, then the high-water mark is reached and the rest go to disk
+        //
+
+        for(int i = 0; i < 6; i ++) {
+
+            assertTrue(p.publish(event(i)));
+        }
+
+        assertEquals(2, b.size());
+        assertEquals(4, q.size());
+        assertEquals(4L, p.getSpilledCount());
+        assertEquals(0L, p.getDroppedCount());
+        assertTrue(p.hasPending());
+
+        assertEventNumber(0, c.poll());
+        assertEventNumber(1, c.poll());
+        assertNull(c.poll());
+
+        //
+        // the consumer caught up: the next publish replays up to the high-water mark, and the new event goes behind
+        // the spilled ones
+        //
+
+        assertTrue(p.publish(event(6)));
+
+        assertEquals(2, b.size());
+        assertEquals(3, q.size());
+
+        assertEventNumber(2, c.poll());
+        assertEventNumber(3, c.poll());
+        assertNull(c.poll());
+
+        assertTrue(p.flush());
+        assertFalse(p.hasPending());
+
+        assertEventNumber(4, c.poll());
+        assertEventNumber(5, c.poll());
+        assertEventNumber(6, c.poll());
+        assertNull(c.poll());
+
+        assertEquals(7L, p.getPublishedCount());
+        assertEquals(0, p.close());
+    }
+
+    @Test
+    public void spill_SegmentsExhausted_EventIsDropped() throws Exception {
+
+        EventBus b = new BroadcastEventBus(1);
+        b.subscribe("c");
+
+        SpillQueue q = new SpillQueue(scratchDirectory, 64, 1);
+
+        EventPublisher p = new EventPublisher(b, OverflowPolicy.SPILL, 0L, q, 1);
+
+        assertTrue(p.publish(event(0)));
+
+        int spilled = 0;
+
+        while(p.publish(event(spilled + 1))) {
+
+            spilled ++;
+        }
+
+        assertTrue(spilled > 0);
+        assertEquals(spilled, q.size());
+        assertEquals(1L, p.getDroppedCount());
+
+        //
+        // nobody consumes, the spilled events are discarded on close
+        //
+
+        assertFalse(p.flush());
+        assertEquals(spilled, p.close());
+        assertEquals(1L + spilled, p.getDroppedCount());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static GenericTimedEvent event(int n) {
+
+        GenericTimedEvent e = new GenericTimedEvent((long)n);
+        e.setLongProperty("n", (long)n);
+        return e;
+    }
+
+    private static void assertEventNumber(int n, Object o) {
+
+        assertTrue(o instanceof GenericTimedEvent);
+        assertEquals((long)n, ((GenericTimedEvent)o).getLongProperty("n").getValue());
+    }
+
+    private static List<Property> reading(PropertyFactory pf, String name, int value) throws Exception {
+
+        return Collections.singletonList(pf.createInstance(name, Integer.class, value, null));
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
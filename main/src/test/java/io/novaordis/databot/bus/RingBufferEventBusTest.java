@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.ShutdownEvent;
+import io.novaordis.events.api.event.TimedEvent;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/13/18
+ */
+public class RingBufferEventBusTest extends EventBusTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidCapacity() throws Exception {
+
+        try {
+
+            new RingBufferEventBus(0, WaitStrategy.PARK);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid event bus capacity"));
+        }
+    }
+
+    @Test
+    public void constructor_NullWaitStrategy() throws Exception {
+
+        try {
+
+            new RingBufferEventBus(1, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null wait strategy"));
+        }
+    }
+
+    @Test
+    public void wrapAround_EventsAreDeliveredInOrder() throws Exception {
+
+        RingBufferEventBus b = new RingBufferEventBus(3, WaitStrategy.BUSY_SPIN);
+
+        EventCursor c = b.subscribe("c");
+
+        for(long i = 0; i < 10; i ++) {
+
+            assertTrue(b.publish(new GenericTimedEvent(i)));
+
+            TimedEvent e = (TimedEvent)c.poll();
+            assertNotNull(e);
+            assertEquals(i, e.getTime().longValue());
+        }
+
+        assertEquals(10L, c.getReadCount());
+    }
+
+    @Test
+    public void concurrentProducerAndConsumers() throws Exception {
+
+        for(WaitStrategy s: WaitStrategy.values()) {
+
+            concurrentProducerAndConsumers(s);
+        }
+    }
+
+    @Test
+    public void park_ParkedConsumerIsUnparkedByPublish() throws Exception {
+
+        final RingBufferEventBus b = new RingBufferEventBus(4, WaitStrategy.PARK);
+        final EventCursor c = b.subscribe("c");
+
+        final int rounds = 5;
+        final long[] received = new long[rounds];
+        long[] latencies = new long[rounds];
+
+        Thread consumer = new Thread(() -> {
+
+            try {
+
+                for(int i = 0; i < rounds; i ++) {
+
+                    c.take();
+                    received[i] = System.nanoTime();
+                }
+            }
+            catch(InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        consumer.start();
+
+        for(int i = 0; i < rounds; i ++) {
+
+            //
+            // long enough for the consumer to back off to the longest park
+            //
+
+            Thread.sleep(50L);
+
+            long published = System.nanoTime();
+            assertTrue(b.publish(new GenericTimedEvent((long)i)));
+
+            while(c.getReadCount() <= i) {
+
+                Thread.sleep(1L);
+            }
+
+            latencies[i] = received[i] - published;
+        }
+
+        consumer.join();
+
+        //
+        // without a signal, the consumer would wake up on average half of a longest park after the publish
+        //
+
+        Arrays.sort(latencies);
+        assertTrue("median latency " + latencies[rounds / 2] + " ns", latencies[rounds / 2] < 2000000L);
+    }
+
+    @Test
+    public void park_ParkedConsumerIsUnparkedByClose() throws Exception {
+
+        final RingBufferEventBus b = new RingBufferEventBus(4, WaitStrategy.PARK);
+        final EventCursor c = b.subscribe("c");
+
+        final Event[] taken = new Event[1];
+
+        Thread consumer = new Thread(() -> {
+
+            try {
+
+                taken[0] = c.poll(10L, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        consumer.start();
+
+        Thread.sleep(50L);
+
+        c.close();
+
+        consumer.join(1000L);
+
+        assertTrue(!consumer.isAlive());
+        assertTrue(taken[0] instanceof ShutdownEvent);
+    }
+
+    @Test
+    public void isSignaled() throws Exception {
+
+        assertTrue(WaitStrategy.PARK.isSignaled());
+        assertTrue(!WaitStrategy.YIELD.isSignaled());
+        assertTrue(!WaitStrategy.BUSY_SPIN.isSignaled());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected RingBufferEventBus getEventBusToTest(int capacity) throws Exception {
+
+        return new RingBufferEventBus(capacity, WaitStrategy.PARK);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void concurrentProducerAndConsumers(WaitStrategy s) throws Exception {
+
+        final int eventCount = 1000;
+
+        final RingBufferEventBus b = new RingBufferEventBus(16, s);
+
+        final long[] lastSeen = new long[] { -1L, -1L };
+        final boolean[] outOfOrder = new boolean[2];
+
+        Thread[] consumers = new Thread[2];
+
+        for(int i = 0; i < consumers.length; i ++) {
+
+            final int index = i;
+            final EventCursor c = b.subscribe("consumer " + i);
+
+            consumers[i] = new Thread(() -> {
+
+                try {
+
+                    for(int j = 0; j < eventCount; j ++) {
+
+                        Event e = c.poll(5L, TimeUnit.SECONDS);
+
+                        if (e == null) {
+
+                            return;
+                        }
+
+                        long time = ((TimedEvent)e).getTime();
+
+                        if (time != lastSeen[index] + 1) {
+
+                            outOfOrder[index] = true;
+                        }
+
+                        lastSeen[index] = time;
+                    }
+                }
+                catch(InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            consumers[i].start();
+        }
+
+        for(long i = 0; i < eventCount; i ++) {
+
+            assertTrue(b.publish(new GenericTimedEvent(i), 5L, TimeUnit.SECONDS));
+        }
+
+        for(Thread t: consumers) {
+
+            t.join();
+        }
+
+        for(int i = 0; i < consumers.length; i ++) {
+
+            assertEquals(s + " consumer " + i, eventCount - 1, lastSeen[i]);
+            assertTrue(s + " consumer " + i + " saw events out of order", !outOfOrder[i]);
+        }
+
+        assertEquals(0, b.size());
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus.spill;
+
+import io.novaordis.databot.MockEvent;
+import io.novaordis.databot.event.MultiSourceReadingEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.api.metric.MockAddress;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/15/18
+ */
+public class EventCodecTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void encode_UnsupportedEvent() throws Exception {
+
+        EventCodec c = new EventCodec();
+
+        MockEvent e = new MockEvent();
+
+        assertFalse(c.canEncode(e));
+
+        try {
+
+            c.encode(e);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException iae) {
+
+            String msg = iae.getMessage();
+            assertTrue(msg.contains("cannot encode " + MockEvent.class.getName()));
+        }
+    }
+
+    @Test
+    public void roundTrip_MultiSourceReadingEvent() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        EventCodec c = new EventCodec();
+
+        MockAddress a = new MockAddress("A");
+        MockAddress a2 = new MockAddress("B");
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent(
+                1000L, 1010L, Arrays.asList(a, a2),
+                Arrays.asList(
+                        Arrays.asList(
+                                pf.createInstance("i", Integer.class, 1, null),
+                                pf.createInstance("l", Long.class, 2L, null, MemoryMeasureUnit.BYTE),
+                                pf.createInstance("d", Double.class, 3.5d, null)),
+                        Arrays.asList(
+                                pf.createInstance("f", Float.class, 4.5f, null),
+                                pf.createInstance("b", Boolean.class, true, null),
+                                pf.createInstance("s", String.class, "something", null))));
+
+        MultiSourceReadingEvent e2 = (MultiSourceReadingEvent)c.decode(c.encode(e));
+
+        assertEquals(1000L, e2.getCollectionStartTimestamp());
+        assertEquals(1010L, e2.getCollectionEndTimestamp().longValue());
+
+        //
+        // the addresses come from the dictionary
+        //
+
+        List<?> addresses = e2.getSourceAddresses();
+        assertEquals(2, addresses.size());
+        assertSame(a, addresses.get(0));
+        assertSame(a2, addresses.get(1));
+
+        List<Property> ps = e2.getPropertiesForSource(a);
+        assertEquals(3, ps.size());
+        assertEquals("i", ps.get(0).getName());
+        assertEquals(1, ps.get(0).getValue());
+        assertEquals(Integer.class, ps.get(0).getType());
+        assertNull(ps.get(0).getMeasureUnit());
+        assertEquals(2L, ps.get(1).getValue());
+        assertEquals(MemoryMeasureUnit.BYTE, ps.get(1).getMeasureUnit());
+        assertEquals(3.5d, (Double)ps.get(2).getValue(), 0.0001);
+
+        List<Property> ps2 = e2.getPropertiesForSource(a2);
+        assertEquals(3, ps2.size());
+        assertEquals(4.5f, (Float)ps2.get(0).getValue(), 0.0001);
+        assertEquals(true, ps2.get(1).getValue());
+        assertEquals("something", ps2.get(2).getValue());
+
+        assertNull(e2.getScheduledTimestamp());
+
+        //
+        // A, B, Integer, Long, BYTE, Double, Float, Boolean, String
+        //
+
+        assertEquals(9, c.getDictionarySize());
+    }
+
+    @Test
+    public void roundTrip_MultiSourceReadingEvent_ScheduledTimestamp() throws Exception {
+
+        EventCodec c = new EventCodec();
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent(
+                1001L, 1010L, Collections.singletonList(new MockAddress("A")),
+                Collections.singletonList(Collections.emptyList()));
+
+        e.setScheduledTimestamp(1000L);
+
+        MultiSourceReadingEvent e2 = (MultiSourceReadingEvent)c.decode(c.encode(e));
+
+        assertEquals(1000L, e2.getScheduledTimestamp().longValue());
+        assertEquals(1000L, e2.getTime().longValue());
+        assertEquals(1001L, e2.getCollectionStartTimestamp());
+    }
+
+    @Test
+    public void roundTrip_MultiSourceReadingEvent_MissingReading() throws Exception {
+
+        EventCodec c = new EventCodec();
+
+        MockAddress a = new MockAddress("A");
+        MockAddress a2 = new MockAddress("B");
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent();
+        PropertyFactory pf = new PropertyFactory();
+        e.addSourceReading(a, Collections.singletonList(pf.createInstance("i", Integer.class, 1, null)));
+        e.addMissingSourceReading(a2);
+
+        MultiSourceReadingEvent e2 = (MultiSourceReadingEvent)c.decode(c.encode(e));
+
+        assertEquals(2, e2.getSourceCount());
+        assertFalse(e2.isMissing(a));
+        assertTrue(e2.isMissing(a2));
+        assertTrue(e2.getPropertiesForSource(a2).isEmpty());
+    }
+
+    @Test
+    public void roundTrip_GenericTimedEvent() throws Exception {
+
+        EventCodec c = new EventCodec();
+
+        GenericTimedEvent e = new GenericTimedEvent(7L);
+        e.setStringProperty("s", "something");
+        e.setLongProperty("l", 8L);
+
+        Event e2 = c.decode(c.encode(e));
+
+        assertTrue(e2 instanceof GenericTimedEvent);
+
+        GenericTimedEvent te = (GenericTimedEvent)e2;
+
+        assertEquals(7L, te.getTime().longValue());
+        assertEquals("something", te.getStringProperty("s").getValue());
+        assertEquals(8L, te.getLongProperty("l").getValue());
+    }
+
+    @Test
+    public void encode_LargeEvent_BufferGrows() throws Exception {
+
+        EventCodec c = new EventCodec();
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < 10000; i ++) {
+
+            sb.append('x');
+        }
+
+        GenericTimedEvent e = new GenericTimedEvent(1L);
+        e.setStringProperty("s", sb.toString());
+
+        ByteBuffer b = c.encode(e);
+
+        assertTrue(b.remaining() > 10000);
+
+        GenericTimedEvent e2 = (GenericTimedEvent)c.decode(b);
+
+        assertEquals(sb.toString(), e2.getStringProperty("s").getValue());
+    }
+
+    @Test
+    public void encode_BufferIsReused() throws Exception {
+
+        EventCodec c = new EventCodec();
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent(
+                1L, 2L, Collections.singletonList(new MockAddress("A")),
+                Collections.singletonList(Collections.emptyList()));
+
+        ByteBuffer b = c.encode(e);
+        ByteBuffer b2 = c.encode(e);
+
+        assertSame(b, b2);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.bus.spill;
+
+import io.novaordis.databot.MockEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.utilities.Files;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/15/18
+ */
+public class SpillQueueTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/spill");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidSegmentSize() throws Exception {
+
+        try {
+
+            new SpillQueue(scratchDirectory, 0, 1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid spill segment size 0"));
+        }
+    }
+
+    @Test
+    public void constructor_InvalidMaxSegments() throws Exception {
+
+        try {
+
+            new SpillQueue(scratchDirectory, 1024, 0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid maximum number of spill segments 0"));
+        }
+    }
+
+    @Test
+    public void constructor_StaleSegmentsAreDeleted() throws Exception {
+
+        //
+        // left behind by a dead owner, nobody holds the lock
+        //
+
+        File d = new File(scratchDirectory, SpillQueue.QUEUE_DIRECTORY_PREFIX + "0");
+        assertTrue(d.mkdirs());
+
+        File stale = new File(d, SpillQueue.SEGMENT_FILE_PREFIX + "7" + SpillQueue.SEGMENT_FILE_SUFFIX);
+        assertTrue(Files.write(stale, "something"));
+
+        File other = new File(d, "other.txt");
+        assertTrue(Files.write(other, "something"));
+
+        SpillQueue q = new SpillQueue(scratchDirectory, 1024, 1);
+
+        assertEquals(scratchDirectory, q.getDirectory());
+        assertEquals(d, q.getSegmentDirectory());
+        assertFalse(stale.exists());
+        assertTrue(other.isFile());
+
+        q.close();
+    }
+
+    @Test
+    public void constructor_SegmentFilesInTheSharedDirectoryAreNotTouched() throws Exception {
+
+        assertTrue(scratchDirectory.mkdirs());
+
+        File f = new File(scratchDirectory, SpillQueue.SEGMENT_FILE_PREFIX + "0" + SpillQueue.SEGMENT_FILE_SUFFIX);
+        assertTrue(Files.write(f, "something"));
+
+        SpillQueue q = new SpillQueue(scratchDirectory, 1024, 1);
+
+        assertTrue(f.isFile());
+
+        q.close();
+    }
+
+    @Test
+    public void queuesSharingTheDirectory_DoNotInterfere() throws Exception {
+
+        SpillQueue q = new SpillQueue(scratchDirectory, twoRecordSegmentSize(), 1);
+        assertTrue(q.offer(event(0)));
+
+        SpillQueue q2 = new SpillQueue(scratchDirectory, twoRecordSegmentSize(), 1);
+
+        File d = q.getSegmentDirectory();
+        File d2 = q2.getSegmentDirectory();
+        assertEquals(new File(scratchDirectory, SpillQueue.QUEUE_DIRECTORY_PREFIX + "0"), d);
+        assertEquals(new File(scratchDirectory, SpillQueue.QUEUE_DIRECTORY_PREFIX + "1"), d2);
+
+        //
+        // the second queue did not delete the first queue's segment, and does not reuse its name
+        //
+
+        File f = new File(d, SpillQueue.SEGMENT_FILE_PREFIX + "0" + SpillQueue.SEGMENT_FILE_SUFFIX);
+        assertTrue(f.isFile());
+
+        assertTrue(q2.offer(event(1)));
+        File f2 = new File(d2, SpillQueue.SEGMENT_FILE_PREFIX + "0" + SpillQueue.SEGMENT_FILE_SUFFIX);
+        assertTrue(f2.isFile());
+
+        assertEquals(0, ((Long)((GenericTimedEvent)q.remove()).getLongProperty("n").getValue()).intValue());
+        assertEquals(1, ((Long)((GenericTimedEvent)q2.remove()).getLongProperty("n").getValue()).intValue());
+
+        //
+        // once released, the subdirectory is claimed again
+        //
+
+        assertEquals(0, q.close());
+        assertFalse(f.exists());
+
+        SpillQueue q3 = new SpillQueue(scratchDirectory, twoRecordSegmentSize(), 1);
+        assertEquals(d, q3.getSegmentDirectory());
+        assertTrue(f2.isFile());
+
+        q3.close();
+        q2.close();
+        assertFalse(f2.exists());
+    }
+
+    @Test
+    public void offer_UnsupportedEvent() throws Exception {
+
+        SpillQueue q = new SpillQueue(scratchDirectory, 1024, 1);
+
+        assertFalse(q.offer(new MockEvent()));
+        assertTrue(q.isEmpty());
+        assertEquals(0, q.getSegmentCount());
+
+        q.close();
+    }
+
+    @Test
+    public void offer_EventLargerThanSegment() throws Exception {
+
+        SpillQueue q = new SpillQueue(scratchDirectory, 16, 1);
+
+        assertFalse(q.offer(event(1)));
+        assertTrue(q.isEmpty());
+
+        //
+        // the segment is kept for reuse
+        //
+
+        assertEquals(1, q.getSegmentCount());
+        assertEquals(1, q.getFreeSegmentCount());
+
+        q.close();
+    }
+
+    @Test
+    public void inOrderReplayAcrossSegments() throws Exception {
+
+        SpillQueue q = new SpillQueue(scratchDirectory, twoRecordSegmentSize(), 3);
+
+        assertNull(q.peek());
+        assertNull(q.remove());
+
+        for(int i = 0; i < 6; i ++) {
+
+            assertTrue(q.offer(event(i)));
+        }
+
+        assertEquals(6, q.size());
+        assertEquals(3, q.getSegmentCount());
+        assertEquals(6L, q.getSpilledCount());
+
+        //
+        // all segments are in use
+        //
+
+        assertFalse(q.offer(event(6)));
+
+        for(int i = 0; i < 6; i ++) {
+
+            GenericTimedEvent e = (GenericTimedEvent)q.peek();
+            assertEquals(i, ((Long)e.getLongProperty("n").getValue()).intValue());
+            assertEquals((long)i, e.getTime().longValue());
+
+            GenericTimedEvent e2 = (GenericTimedEvent)q.remove();
+            assertEquals(i, ((Long)e2.getLongProperty("n").getValue()).intValue());
+        }
+
+        assertTrue(q.isEmpty());
+        assertEquals(6L, q.getReplayedCount());
+        assertEquals(3, q.getFreeSegmentCount());
+
+        q.close();
+    }
+
+    @Test
+    public void drainedSegmentsAreRecycled() throws Exception {
+
+        SpillQueue q = new SpillQueue(scratchDirectory, twoRecordSegmentSize(), 2);
+
+        //
+        // interleave writes and reads, many more events than the segments can hold at once
+        //
+
+        int next = 0;
+        int expected = 0;
+
+        for(int round = 0; round < 10; round ++) {
+
+            for(int i = 0; i < 3; i ++) {
+
+                assertTrue(q.offer(event(next ++)));
+            }
+
+            for(int i = 0; i < 3; i ++) {
+
+                GenericTimedEvent e = (GenericTimedEvent)q.remove();
+                assertEquals(expected ++, ((Long)e.getLongProperty("n").getValue()).intValue());
+            }
+        }
+
+        assertTrue(q.isEmpty());
+        assertEquals(2, q.getSegmentCount());
+        assertEquals(30L, q.getSpilledCount());
+        assertEquals(30L, q.getReplayedCount());
+
+        q.close();
+    }
+
+    @Test
+    public void close() throws Exception {
+
+        SpillQueue q = new SpillQueue(scratchDirectory, twoRecordSegmentSize(), 2);
+
+        assertTrue(q.offer(event(0)));
+        assertTrue(q.offer(event(1)));
+        assertTrue(q.offer(event(2)));
+
+        File d = q.getSegmentDirectory();
+        File f = new File(d, SpillQueue.SEGMENT_FILE_PREFIX + "0" + SpillQueue.SEGMENT_FILE_SUFFIX);
+        File f2 = new File(d, SpillQueue.SEGMENT_FILE_PREFIX + "1" + SpillQueue.SEGMENT_FILE_SUFFIX);
+        assertTrue(f.isFile());
+        assertTrue(f2.isFile());
+
+        assertEquals(3, q.close());
+
+        assertTrue(q.isEmpty());
+        assertFalse(f.exists());
+        assertFalse(f2.exists());
+
+        //
+        // idempotent, and the queue does not accept events anymore
+        //
+
+        assertEquals(0, q.close());
+        assertFalse(q.offer(event(3)));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static GenericTimedEvent event(int n) {
+
+        GenericTimedEvent e = new GenericTimedEvent((long)n);
+        e.setLongProperty("n", (long)n);
+        return e;
+    }
+
+    /**
+     * @return the size of a segment that fits exactly two events created by event().
+     */
+    private static int twoRecordSegmentSize() {
+
+        return 2 * (Segment.RECORD_HEADER_SIZE + new EventCodec().encode(event(0)).remaining());
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
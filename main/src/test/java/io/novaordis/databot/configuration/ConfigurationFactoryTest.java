@@ -106,7 +106,7 @@ public class ConfigurationFactoryTest {
         Configuration c = ConfigurationFactory.buildInstance(new String[] {
                 "-c", configFile.getAbsolutePath() });
 
-        assertEquals(20, c.getSamplingIntervalSec());
+        assertEquals(20000L, c.getSamplingIntervalMs());
         assertFalse(c.isForeground());
     }
 
@@ -122,7 +122,7 @@ public class ConfigurationFactoryTest {
 
         Configuration c = ConfigurationFactory.buildInstance(args);
 
-        assertEquals(20, c.getSamplingIntervalSec());
+        assertEquals(20000L, c.getSamplingIntervalMs());
         assertFalse(c.isForeground());
     }
 
@@ -178,7 +178,7 @@ public class ConfigurationFactoryTest {
 
         Configuration c = ConfigurationFactory.buildInstance(configFile.getAbsolutePath(), false);
 
-        assertEquals(20, c.getSamplingIntervalSec());
+        assertEquals(20000L, c.getSamplingIntervalMs());
     }
 
     @Test
@@ -25,6 +25,7 @@ import io.novaordis.databot.DataConsumer;
 import io.novaordis.databot.MockMetricDefinition;
 import io.novaordis.databot.consumer.AsynchronousCsvLineWriter;
 import io.novaordis.databot.consumer.MockDataConsumer;
+import io.novaordis.databot.derivation.Derivation;
 import io.novaordis.events.api.event.PropertyFactory;
 import io.novaordis.events.api.metric.MetricDefinition;
 import io.novaordis.events.api.metric.MetricSourceDefinition;
@@ -114,7 +115,7 @@ public abstract class ConfigurationTest {
 
         Configuration c = getConfigurationToTest(true, referenceFile);
 
-        assertEquals(20, c.getSamplingIntervalSec());
+        assertEquals(20000L, c.getSamplingIntervalMs());
         assertNotEquals(20, Configuration.DEFAULT_SAMPLING_INTERVAL_SEC);
 
         //
@@ -222,8 +223,23 @@ public abstract class ConfigurationTest {
 
         Configuration c = getConfigurationToTest(false, null);
 
-        assertEquals(Configuration.DEFAULT_SAMPLING_INTERVAL_SEC, c.getSamplingIntervalSec());
+        assertEquals(Configuration.DEFAULT_SAMPLING_INTERVAL_MS, c.getSamplingIntervalMs());
         assertEquals(Configuration.DEFAULT_EVENT_QUEUE_SIZE, c.getEventQueueSize());
+        assertEquals(Configuration.DEFAULT_EVENT_QUEUE_TYPE, c.getEventQueueType());
+        assertEquals(Configuration.DEFAULT_EVENT_QUEUE_WAIT_STRATEGY, c.getEventQueueWaitStrategy());
+        assertEquals(Configuration.DEFAULT_EVENT_QUEUE_OVERFLOW_POLICY, c.getEventQueueOverflowPolicy());
+        assertEquals(Configuration.DEFAULT_EVENT_QUEUE_BLOCK_TIMEOUT_MS, c.getEventQueueBlockTimeoutMs());
+        assertEquals(
+                Configuration.DEFAULT_EVENT_QUEUE_SIZE * Configuration.DEFAULT_EVENT_QUEUE_HIGH_WATER_MARK_PERCENT / 100,
+                c.getEventQueueHighWaterMark());
+        assertEquals(Configuration.DEFAULT_EVENT_QUEUE_SPILL_DIRECTORY, c.getEventQueueSpillDirectory());
+        assertEquals(Configuration.DEFAULT_EVENT_QUEUE_SPILL_SEGMENT_SIZE, c.getEventQueueSpillSegmentSize());
+        assertEquals(Configuration.DEFAULT_EVENT_QUEUE_SPILL_MAX_SEGMENTS, c.getEventQueueSpillMaxSegments());
+        assertEquals(Configuration.DEFAULT_LATE_READING_POLICY, c.getLateReadingPolicy());
+        assertEquals(Configuration.DEFAULT_SOURCE_EXECUTOR_TYPE, c.getSourceExecutorType());
+        assertEquals(Configuration.DEFAULT_SOURCE_EXECUTOR_MAX_THREADS, c.getSourceExecutorMaxThreads());
+        assertEquals(Configuration.DEFAULT_SOURCE_EXECUTOR_PER_HOST_LIMIT, c.getSourceExecutorPerHostLimit());
+        assertEquals(Configuration.DEFAULT_LOCAL_OS_ENGINE, c.getLocalOSEngine());
         assertEquals(0, c.getMetricSourceCount());
         assertTrue(c.getMetricSourceDefinitions().isEmpty());
         assertTrue(c.getMetricDefinitions().isEmpty());
@@ -271,6 +287,100 @@ public abstract class ConfigurationTest {
         assertTrue(sds.get(0).getAddress().equals(a));
     }
 
+    // getSamplingIntervalMs() ------------------------------------------------------------------------------------------
+
+    @Test
+    public void getSamplingIntervalMs_Fallback() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+
+        ConfigurationBase c = (ConfigurationBase)getConfigurationToTest(false, null);
+
+        c.setSamplingIntervalMs(30000L);
+
+        MockAddress a = new MockAddress("A");
+        MockAddress b = new MockAddress("B");
+        MockMetricDefinition md = new MockMetricDefinition(pf, a, "m");
+        MockMetricDefinition md2 = new MockMetricDefinition(pf, a, "m2");
+        MockMetricDefinition md3 = new MockMetricDefinition(pf, b, "m3");
+
+        c.addMetricDefinition(md);
+        c.addMetricDefinition(md2);
+        c.addMetricDefinition(md3);
+
+        c.setSamplingIntervalMs(a, 10000L);
+        c.setSamplingIntervalMs(md, 5000L);
+
+        //
+        // metric override, source override, global
+        //
+
+        assertEquals(5000L, c.getSamplingIntervalMs(md));
+        assertEquals(10000L, c.getSamplingIntervalMs(md2));
+        assertEquals(30000L, c.getSamplingIntervalMs(md3));
+
+        assertEquals(10000L, c.getSamplingIntervalMs(a));
+        assertEquals(30000L, c.getSamplingIntervalMs(b));
+    }
+
+    // getDerivation() -------------------------------------------------------------------------------------------------
+
+    @Test
+    public void getDerivation() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+
+        ConfigurationBase c = (ConfigurationBase)getConfigurationToTest(false, null);
+
+        MockAddress a = new MockAddress("A");
+        MockMetricDefinition md = new MockMetricDefinition(pf, a, "m");
+        MockMetricDefinition md2 = new MockMetricDefinition(pf, a, "m2");
+
+        c.addMetricDefinition(md);
+        c.addMetricDefinition(md2);
+
+        c.setDerivation(md, Derivation.RATE);
+        c.setCounterWidth(md, 32);
+
+        assertEquals(Derivation.RATE, c.getDerivation(md));
+        assertEquals(32, c.getCounterWidth(md));
+
+        assertNull(c.getDerivation(md2));
+        assertEquals(Configuration.DEFAULT_COUNTER_WIDTH, c.getCounterWidth(md2));
+    }
+
+    // getSourceDeadlineMs() -------------------------------------------------------------------------------------------
+
+    @Test
+    public void getSourceDeadlineMs_Fallback() throws Exception {
+
+        ConfigurationBase c = (ConfigurationBase)getConfigurationToTest(false, null);
+
+        c.setSamplingIntervalMs(30000L);
+
+        MockAddress a = new MockAddress("A");
+        MockAddress b = new MockAddress("B");
+
+        c.setSamplingIntervalMs(b, 10000L);
+
+        //
+        // no deadline configured, the source sampling interval
+        //
+
+        assertEquals(30000L, c.getSourceDeadlineMs(a));
+        assertEquals(10000L, c.getSourceDeadlineMs(b));
+
+        //
+        // global, then per-source
+        //
+
+        c.setSourceDeadlineMs(1000L);
+        c.setSourceDeadlineMs(b, 500L);
+
+        assertEquals(1000L, c.getSourceDeadlineMs(a));
+        assertEquals(500L, c.getSourceDeadlineMs(b));
+    }
+
     // getMetricDefinitions() ------------------------------------------------------------------------------------------
 
     @Test
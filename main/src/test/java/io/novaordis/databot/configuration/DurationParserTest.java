@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.configuration;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class DurationParserTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void toMilliseconds_Number_DefaultUnit() throws Exception {
+
+        assertEquals(7000L, DurationParser.toMilliseconds(7, 1000L));
+        assertEquals(7L, DurationParser.toMilliseconds(7L, 1L));
+        assertEquals(0L, DurationParser.toMilliseconds(0, 1000L));
+    }
+
+    @Test
+    public void toMilliseconds_String() throws Exception {
+
+        assertEquals(7000L, DurationParser.toMilliseconds("7", 1000L));
+        assertEquals(50L, DurationParser.toMilliseconds("50ms", 1000L));
+        assertEquals(50L, DurationParser.toMilliseconds(" 50 ms ", 1000L));
+        assertEquals(2000L, DurationParser.toMilliseconds("2s", 1L));
+        assertEquals(300000L, DurationParser.toMilliseconds("5m", 1L));
+        assertEquals(3600000L, DurationParser.toMilliseconds("1h", 1L));
+    }
+
+    @Test
+    public void toMilliseconds_Negative() throws Exception {
+
+        try {
+
+            DurationParser.toMilliseconds(-1, 1000L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("negative duration: -1"));
+        }
+
+        try {
+
+            DurationParser.toMilliseconds("-1s", 1000L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid duration: -1s"));
+        }
+    }
+
+    @Test
+    public void toMilliseconds_InvalidUnit() throws Exception {
+
+        try {
+
+            DurationParser.toMilliseconds("10 days", 1000L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid duration unit 'days'"));
+        }
+    }
+
+    @Test
+    public void toMilliseconds_NotADuration() throws Exception {
+
+        try {
+
+            DurationParser.toMilliseconds("blah", 1000L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid duration: blah"));
+        }
+
+        try {
+
+            DurationParser.toMilliseconds(1.5d, 1000L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid duration: 1.5"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
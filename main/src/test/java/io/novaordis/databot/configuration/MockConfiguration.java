@@ -17,6 +17,13 @@
 package io.novaordis.databot.configuration;
 
 import io.novaordis.databot.DataConsumer;
+import io.novaordis.databot.LateReadingPolicy;
+import io.novaordis.databot.bus.EventBusType;
+import io.novaordis.databot.bus.OverflowPolicy;
+import io.novaordis.databot.bus.WaitStrategy;
+import io.novaordis.databot.derivation.Derivation;
+import io.novaordis.databot.os.LocalOSEngine;
+import io.novaordis.databot.task.SourceExecutorType;
 import io.novaordis.events.api.metric.MetricDefinition;
 import io.novaordis.events.api.metric.MetricSourceFactory;
 import io.novaordis.utilities.UserErrorException;
@@ -67,9 +74,94 @@ public class MockConfiguration extends ConfigurationBase {
         super.setEventQueueSize(i);
     }
 
-    public void setSamplingIntervalSec(int s) {
+    public void setEventQueueType(EventBusType t) {
 
-        super.setSamplingIntervalSec(s);
+        super.setEventQueueType(t);
+    }
+
+    public void setEventQueueWaitStrategy(WaitStrategy s) {
+
+        super.setEventQueueWaitStrategy(s);
+    }
+
+    public void setEventQueueOverflowPolicy(OverflowPolicy p) {
+
+        super.setEventQueueOverflowPolicy(p);
+    }
+
+    public void setEventQueueBlockTimeoutMs(long ms) {
+
+        super.setEventQueueBlockTimeoutMs(ms);
+    }
+
+    public void setEventQueueHighWaterMark(int i) {
+
+        super.setEventQueueHighWaterMark(i);
+    }
+
+    public void setEventQueueSpillDirectory(File d) {
+
+        super.setEventQueueSpillDirectory(d);
+    }
+
+    public void setSamplingIntervalMs(long ms) {
+
+        super.setSamplingIntervalMs(ms);
+    }
+
+    public void setSamplingIntervalMs(Address source, long ms) {
+
+        super.setSamplingIntervalMs(source, ms);
+    }
+
+    public void setSamplingIntervalMs(MetricDefinition md, long ms) {
+
+        super.setSamplingIntervalMs(md, ms);
+    }
+
+    public void setDerivation(MetricDefinition md, Derivation d) {
+
+        super.setDerivation(md, d);
+    }
+
+    public void setCounterWidth(MetricDefinition md, int bits) {
+
+        super.setCounterWidth(md, bits);
+    }
+
+    public void setSourceDeadlineMs(long ms) {
+
+        super.setSourceDeadlineMs(ms);
+    }
+
+    public void setSourceDeadlineMs(Address source, long ms) {
+
+        super.setSourceDeadlineMs(source, ms);
+    }
+
+    public void setLateReadingPolicy(LateReadingPolicy p) {
+
+        super.setLateReadingPolicy(p);
+    }
+
+    public void setSourceExecutorType(SourceExecutorType t) {
+
+        super.setSourceExecutorType(t);
+    }
+
+    public void setSourceExecutorMaxThreads(int i) {
+
+        super.setSourceExecutorMaxThreads(i);
+    }
+
+    public void setSourceExecutorPerHostLimit(int i) {
+
+        super.setSourceExecutorPerHostLimit(i);
+    }
+
+    public void setLocalOSEngine(LocalOSEngine e) {
+
+        super.setLocalOSEngine(e);
     }
 
     /**
@@ -26,10 +26,33 @@ import java.util.Map;
 import org.junit.Test;
 
 import io.novaordis.databot.DataConsumer;
+import io.novaordis.databot.LateReadingPolicy;
+import io.novaordis.databot.bus.EventBusType;
+import io.novaordis.databot.bus.OverflowPolicy;
+import io.novaordis.databot.bus.WaitStrategy;
 import io.novaordis.databot.configuration.Configuration;
 import io.novaordis.databot.configuration.ConfigurationTest;
 import io.novaordis.databot.consumer.AsynchronousCsvLineWriter;
 import io.novaordis.databot.consumer.MockDataConsumer;
+import io.novaordis.databot.derivation.Derivation;
+import io.novaordis.databot.os.LocalOSEngine;
+import io.novaordis.databot.os.linux.CgroupMetric;
+import io.novaordis.databot.os.linux.CgroupMetricDefinition;
+import io.novaordis.databot.os.linux.CpuCoreMetric;
+import io.novaordis.databot.os.linux.CpuCoreMetricDefinition;
+import io.novaordis.databot.os.linux.DiskMetric;
+import io.novaordis.databot.os.linux.DiskMetricDefinition;
+import io.novaordis.databot.os.linux.JvmMetric;
+import io.novaordis.databot.os.linux.JvmMetricDefinition;
+import io.novaordis.databot.os.linux.NetworkMetric;
+import io.novaordis.databot.os.linux.NetworkMetricDefinition;
+import io.novaordis.databot.os.linux.PressureMetric;
+import io.novaordis.databot.os.linux.PressureMetricDefinition;
+import io.novaordis.databot.os.linux.ProcessMetric;
+import io.novaordis.databot.os.linux.ProcessMetricDefinition;
+import io.novaordis.databot.os.linux.TcpConnectionMetric;
+import io.novaordis.databot.os.linux.TcpConnectionMetricDefinition;
+import io.novaordis.databot.task.SourceExecutorType;
 import io.novaordis.events.api.event.PropertyFactory;
 import io.novaordis.events.api.metric.MetricDefinition;
 import io.novaordis.events.api.metric.MetricSourceDefinition;
@@ -112,6 +135,363 @@ public class YamlConfigurationFileTest extends ConfigurationTest {
         }
     }
 
+    @Test
+    public void load_SamplingInterval_Duration() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        c.load(new ByteArrayInputStream("sampling.interval: 50ms".getBytes()));
+
+        assertEquals(50L, c.getSamplingIntervalMs());
+    }
+
+    @Test
+    public void load_SamplingInterval_Seconds() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        c.load(new ByteArrayInputStream("sampling.interval: 3".getBytes()));
+
+        assertEquals(3000L, c.getSamplingIntervalMs());
+    }
+
+    @Test
+    public void load_SamplingInterval_Zero() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        c.load(new ByteArrayInputStream("sampling.interval: 0".getBytes()));
+
+        assertEquals(0L, c.getSamplingIntervalMs());
+    }
+
+    @Test
+    public void load_SamplingInterval_BelowMinimum() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        try {
+
+            c.load(new ByteArrayInputStream("sampling.interval: 5ms".getBytes()));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("the minimum sampling interval is 10 ms"));
+        }
+    }
+
+    @Test
+    public void load_SourceDeadline_LateReadingPolicy() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        c.load(new ByteArrayInputStream("source.deadline: 500ms\nlate.reading.policy: attach-to-next".getBytes()));
+
+        assertEquals(500L, c.getSourceDeadlineMs(new AddressImpl("A")));
+        assertEquals(LateReadingPolicy.ATTACH_TO_NEXT, c.getLateReadingPolicy());
+    }
+
+    @Test
+    public void load_SourceDeadline_Milliseconds() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        c.load(new ByteArrayInputStream("source.deadline: 250".getBytes()));
+
+        assertEquals(250L, c.getSourceDeadlineMs(new AddressImpl("A")));
+    }
+
+    @Test
+    public void load_InvalidLateReadingPolicy() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        try {
+
+            c.load(new ByteArrayInputStream("late.reading.policy: blah".getBytes()));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid late reading policy: \"blah\""));
+        }
+    }
+
+    @Test
+    public void load_EventQueue() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "event.queue:\n" +
+                "  size: 64\n" +
+                "  type: ring-buffer\n" +
+                "  wait.strategy: yield\n" +
+                "  overflow.policy: block\n" +
+                "  block.timeout: 250\n" +
+                "output: stdout\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        c.load(is);
+
+        assertEquals(64, c.getEventQueueSize());
+        assertEquals(EventBusType.RING_BUFFER, c.getEventQueueType());
+        assertEquals(WaitStrategy.YIELD, c.getEventQueueWaitStrategy());
+        assertEquals(OverflowPolicy.BLOCK, c.getEventQueueOverflowPolicy());
+        assertEquals(250L, c.getEventQueueBlockTimeoutMs());
+    }
+
+    @Test
+    public void load_EventQueueSpill() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "event.queue:\n" +
+                "  size: 100\n" +
+                "  overflow.policy: spill\n" +
+                "  high.water.mark: 50\n" +
+                "  spill:\n" +
+                "    directory: /tmp/something\n" +
+                "    segment.size: 1024\n" +
+                "    max.segments: 3\n" +
+                "output: stdout\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        c.load(is);
+
+        assertEquals(OverflowPolicy.SPILL, c.getEventQueueOverflowPolicy());
+        assertEquals(50, c.getEventQueueHighWaterMark());
+        assertEquals(new File("/tmp/something"), c.getEventQueueSpillDirectory());
+        assertEquals(1024, c.getEventQueueSpillSegmentSize());
+        assertEquals(3, c.getEventQueueSpillMaxSegments());
+    }
+
+    @Test
+    public void load_EventQueueHighWaterMarkLargerThanSize() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "event.queue:\n" +
+                "  size: 10\n" +
+                "  high.water.mark: 11\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        try {
+
+            c.load(is);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("invalid event queue high-water mark: \"11\""));
+        }
+    }
+
+    @Test
+    public void load_InvalidEventQueueOverflowPolicy() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "event.queue:\n" +
+                "  overflow.policy: blah\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        try {
+
+            c.load(is);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("unknown event queue overflow policy: \"blah\""));
+        }
+    }
+
+    @Test
+    public void load_InvalidEventQueueType() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "event.queue:\n" +
+                "  type: blah\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        try {
+
+            c.load(is);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("unknown event queue type: \"blah\""));
+        }
+    }
+
+    @Test
+    public void load_InvalidEventQueueWaitStrategy() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "event.queue:\n" +
+                "  wait.strategy: blah\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        try {
+
+            c.load(is);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("unknown event queue wait strategy: \"blah\""));
+        }
+    }
+
+    @Test
+    public void load_SourceExecutor() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "source.executor:\n" +
+                "  type: elastic\n" +
+                "  max.threads: 512\n" +
+                "  per.host.limit: 4\n" +
+                "output: stdout\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        c.load(is);
+
+        assertEquals(SourceExecutorType.ELASTIC, c.getSourceExecutorType());
+        assertEquals(512, c.getSourceExecutorMaxThreads());
+        assertEquals(4, c.getSourceExecutorPerHostLimit());
+    }
+
+    @Test
+    public void load_InvalidSourceExecutorType() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "source.executor:\n" +
+                "  type: blah\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        try {
+
+            c.load(is);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("unknown source executor type: \"blah\""));
+        }
+    }
+
+    @Test
+    public void load_InvalidSourceExecutorMaxThreads() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "source.executor:\n" +
+                "  max.threads: 0\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        try {
+
+            c.load(is);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("invalid source executor maximum number of threads: \"0\""));
+        }
+    }
+
+    @Test
+    public void load_InvalidSourceExecutorPerHostLimit() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "source.executor:\n" +
+                "  per.host.limit: -1\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        try {
+
+            c.load(is);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("invalid source executor per-host limit: \"-1\""));
+        }
+    }
+
+    @Test
+    public void load_LocalOSEngine() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s =
+                "local.os.engine: proc\n" +
+                "output: stdout\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        c.load(is);
+
+        assertEquals(LocalOSEngine.PROC, c.getLocalOSEngine());
+    }
+
+    @Test
+    public void load_InvalidLocalOSEngine() throws Exception {
+
+        YamlConfigurationFile c = new YamlConfigurationFile(true, null);
+
+        String s = "local.os.engine: blah\n";
+
+        InputStream is = new ByteArrayInputStream(s.getBytes());
+
+        try {
+
+            c.load(is);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("invalid local OS engine: \"blah\""));
+        }
+    }
+
     @Test
     public void load_MissingOutputFile() throws Exception {
 
@@ -331,53 +711,153 @@ public class YamlConfigurationFileTest extends ConfigurationTest {
         f.processSources(o, rootScope);
 
         //
-        // two metric source definitions and two variables
+        // two metric source definitions and two variables
+        //
+
+        List<MetricSourceDefinition> msDefs = f.getMetricSourceDefinitions();
+        assertEquals(2, msDefs.size());
+
+        for (MetricSourceDefinition d: msDefs) {
+
+            String name = d.getName();
+            Address a = d.getAddress();
+
+            Variable v = rootScope.getVariable(name);
+            assertNotNull(v);
+
+            assertEquals(a.getLiteral(), v.get());
+        }
+    }
+
+    @Test
+    public void processSources_DuplicateName_FirstValueIsDiscarded() throws Exception {
+
+        YamlConfigurationFile f = new YamlConfigurationFile(false, null);
+
+        Scope rootScope = new ScopeImpl();
+
+        String s =
+                "sources:\n" +
+                        "  something:\n" +
+                        "    type: jboss-controller\n" +
+                        "    host: host1\n" +
+                        "    port: 8888\n" +
+                        "  something:\n" +
+                        "    type: jboss-controller\n" +
+                        "    host: host2\n" +
+                        "    port: 9999\n";
+
+
+        Object o = ((Map)YamlConfigurationFile.fromYaml(
+                new ByteArrayInputStream(s.getBytes()))).get(YamlConfigurationFile.SOURCES_KEY);
+
+        f.processSources(o, rootScope);
+
+        List<MetricSourceDefinition> d = f.getMetricSourceDefinitions();
+        assertEquals(1, d.size());
+        MetricSourceDefinition msd = d.get(0);
+        assertEquals("something", msd.getName());
+        assertEquals("jbosscli://host2:9999", msd.getAddress().getLiteral());
+    }
+
+    @Test
+    public void processSources_SamplingInterval() throws Exception {
+
+        YamlConfigurationFile f = new YamlConfigurationFile(false, null);
+
+        Scope rootScope = new ScopeImpl();
+
+        String s =
+                "sources:\n" +
+                        "  fast-source:\n" +
+                        "    type: jboss-controller\n" +
+                        "    host: host1\n" +
+                        "    port: 8888\n" +
+                        "    sampling.interval: 5\n" +
+                        "  other-source:\n" +
+                        "    type: jboss-controller\n" +
+                        "    host: host2\n" +
+                        "    port: 9999\n";
+
+        Object o = ((Map)YamlConfigurationFile.fromYaml(
+                new ByteArrayInputStream(s.getBytes()))).get(YamlConfigurationFile.SOURCES_KEY);
+
+        f.processSources(o, rootScope);
+
+        List<MetricSourceDefinition> d = f.getMetricSourceDefinitions();
+        assertEquals(2, d.size());
+
+        assertEquals(5000L, f.getSamplingIntervalMs(d.get(0).getAddress()));
+
+        //
+        // falls back to the global sampling interval
         //
 
-        List<MetricSourceDefinition> msDefs = f.getMetricSourceDefinitions();
-        assertEquals(2, msDefs.size());
+        assertEquals(f.getSamplingIntervalMs(), f.getSamplingIntervalMs(d.get(1).getAddress()));
+    }
 
-        for (MetricSourceDefinition d: msDefs) {
+    @Test
+    public void processSources_Deadline() throws Exception {
 
-            String name = d.getName();
-            Address a = d.getAddress();
+        YamlConfigurationFile f = new YamlConfigurationFile(false, null);
 
-            Variable v = rootScope.getVariable(name);
-            assertNotNull(v);
+        String s =
+                "sources:\n" +
+                        "  slow-source:\n" +
+                        "    type: jboss-controller\n" +
+                        "    host: host1\n" +
+                        "    port: 8888\n" +
+                        "    sampling.interval: 5\n" +
+                        "    deadline: 2s\n" +
+                        "  other-source:\n" +
+                        "    type: jboss-controller\n" +
+                        "    host: host2\n" +
+                        "    port: 9999\n" +
+                        "    sampling.interval: 5\n";
 
-            assertEquals(a.getLiteral(), v.get());
-        }
+        Object o = ((Map)YamlConfigurationFile.fromYaml(
+                new ByteArrayInputStream(s.getBytes()))).get(YamlConfigurationFile.SOURCES_KEY);
+
+        f.processSources(o, new ScopeImpl());
+
+        List<MetricSourceDefinition> d = f.getMetricSourceDefinitions();
+        assertEquals(2, d.size());
+
+        assertEquals(2000L, f.getSourceDeadlineMs(d.get(0).getAddress()));
+
+        //
+        // falls back to the source sampling interval
+        //
+
+        assertEquals(5000L, f.getSourceDeadlineMs(d.get(1).getAddress()));
     }
 
     @Test
-    public void processSources_DuplicateName_FirstValueIsDiscarded() throws Exception {
+    public void processSources_InvalidSamplingInterval() throws Exception {
 
         YamlConfigurationFile f = new YamlConfigurationFile(false, null);
 
-        Scope rootScope = new ScopeImpl();
-
         String s =
                 "sources:\n" +
-                        "  something:\n" +
+                        "  some-source:\n" +
                         "    type: jboss-controller\n" +
                         "    host: host1\n" +
                         "    port: 8888\n" +
-                        "  something:\n" +
-                        "    type: jboss-controller\n" +
-                        "    host: host2\n" +
-                        "    port: 9999\n";
-
+                        "    sampling.interval: 0\n";
 
         Object o = ((Map)YamlConfigurationFile.fromYaml(
                 new ByteArrayInputStream(s.getBytes()))).get(YamlConfigurationFile.SOURCES_KEY);
 
-        f.processSources(o, rootScope);
+        try {
 
-        List<MetricSourceDefinition> d = f.getMetricSourceDefinitions();
-        assertEquals(1, d.size());
-        MetricSourceDefinition msd = d.get(0);
-        assertEquals("something", msd.getName());
-        assertEquals("jbosscli://host2:9999", msd.getAddress().getLiteral());
+            f.processSources(o, new ScopeImpl());
+            fail("should throw exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid 'some-source' sampling interval value: \"0\""));
+        }
     }
 
     // parseSources() --------------------------------------------------------------------------------------------------
@@ -564,6 +1044,129 @@ public class YamlConfigurationFileTest extends ConfigurationTest {
         assertEquals("PhysicalMemoryTotal", md.getId());
     }
 
+    @Test
+    public void toMetricDefinition_ProcessMetric() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        Scope scope = new ScopeImpl();
+        MetricDefinition md = YamlConfigurationFile.toMetricDefinition(
+                pf, scope, "process:pidfile:/var/run/jboss.pid/ResidentMemory");
+
+        ProcessMetricDefinition pmd = (ProcessMetricDefinition)md;
+        assertEquals("ResidentMemory", pmd.getId());
+        assertEquals(ProcessMetric.RESIDENT_MEMORY, pmd.getMetric());
+        assertEquals("process:pidfile:/var/run/jboss.pid", pmd.getMetricSourceAddress().getLiteral());
+    }
+
+    @Test
+    public void toMetricDefinition_InvalidProcessMetric() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        Scope scope = new ScopeImpl();
+
+        try {
+
+            YamlConfigurationFile.toMetricDefinition(pf, scope, "process:pid:1/NoSuchMetric");
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("unknown process metric \"NoSuchMetric\""));
+        }
+    }
+
+    @Test
+    public void toMetricDefinition_CpuCoreMetric() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        Scope scope = new ScopeImpl();
+        MetricDefinition md = YamlConfigurationFile.toMetricDefinition(pf, scope, "cores/MaxCoreCpuTime");
+
+        CpuCoreMetricDefinition cmd = (CpuCoreMetricDefinition)md;
+        assertEquals("MaxCoreCpuTime", cmd.getId());
+        assertEquals(CpuCoreMetric.MAX_CORE_CPU_TIME, cmd.getMetric());
+        assertEquals("cores", cmd.getMetricSourceAddress().getLiteral());
+    }
+
+    @Test
+    public void toMetricDefinition_DiskMetric() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        Scope scope = new ScopeImpl();
+        MetricDefinition md = YamlConfigurationFile.toMetricDefinition(pf, scope, "disks:no-partitions/Await");
+
+        DiskMetricDefinition dmd = (DiskMetricDefinition)md;
+        assertEquals("Await", dmd.getId());
+        assertEquals(DiskMetric.AWAIT, dmd.getMetric());
+        assertEquals("disks:no-partitions", dmd.getMetricSourceAddress().getLiteral());
+    }
+
+    @Test
+    public void toMetricDefinition_NetworkMetric() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        Scope scope = new ScopeImpl();
+        MetricDefinition md = YamlConfigurationFile.toMetricDefinition(pf, scope, "net:eth*,!eth9/RxBytesPerSecond");
+
+        NetworkMetricDefinition nmd = (NetworkMetricDefinition)md;
+        assertEquals("RxBytesPerSecond", nmd.getId());
+        assertEquals(NetworkMetric.RX_BYTES_PER_SECOND, nmd.getMetric());
+        assertEquals("net:eth*,!eth9", nmd.getMetricSourceAddress().getLiteral());
+    }
+
+    @Test
+    public void toMetricDefinition_TcpConnectionMetric() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        Scope scope = new ScopeImpl();
+        MetricDefinition md = YamlConfigurationFile.toMetricDefinition(pf, scope, "tcp:8080,8443/CloseWait");
+
+        TcpConnectionMetricDefinition tmd = (TcpConnectionMetricDefinition)md;
+        assertEquals("CloseWait", tmd.getId());
+        assertEquals(TcpConnectionMetric.CLOSE_WAIT, tmd.getMetric());
+        assertEquals("tcp:8080,8443", tmd.getMetricSourceAddress().getLiteral());
+    }
+
+    @Test
+    public void toMetricDefinition_CgroupMetric() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        Scope scope = new ScopeImpl();
+        MetricDefinition md = YamlConfigurationFile.toMetricDefinition(pf, scope, "cgroup:docker/*/MemoryUsed");
+
+        CgroupMetricDefinition cmd = (CgroupMetricDefinition)md;
+        assertEquals("MemoryUsed", cmd.getId());
+        assertEquals(CgroupMetric.MEMORY_USED, cmd.getMetric());
+        assertEquals("cgroup:docker/*", cmd.getMetricSourceAddress().getLiteral());
+    }
+
+    @Test
+    public void toMetricDefinition_PressureMetric() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        Scope scope = new ScopeImpl();
+        MetricDefinition md = YamlConfigurationFile.toMetricDefinition(pf, scope, "pressure/MemoryFullAvg10");
+
+        PressureMetricDefinition pmd = (PressureMetricDefinition)md;
+        assertEquals("MemoryFullAvg10", pmd.getId());
+        assertEquals(PressureMetric.MEMORY_FULL_AVG10, pmd.getMetric());
+        assertEquals("pressure", pmd.getMetricSourceAddress().getLiteral());
+    }
+
+    @Test
+    public void toMetricDefinition_JvmMetric() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        Scope scope = new ScopeImpl();
+        MetricDefinition md = YamlConfigurationFile.toMetricDefinition(pf, scope, "jvm:main:Main/OldGcTimePercentage");
+
+        JvmMetricDefinition jmd = (JvmMetricDefinition)md;
+        assertEquals("OldGcTimePercentage", jmd.getId());
+        assertEquals(JvmMetric.OLD_GC_TIME_PERCENTAGE, jmd.getMetric());
+        assertEquals("jvm:main:Main", jmd.getMetricSourceAddress().getLiteral());
+    }
+
     @Test
     public void toMetricDefinition_VariableDeclarationsAreCorrectlyResolved() throws Exception {
 
@@ -785,6 +1388,174 @@ public class YamlConfigurationFileTest extends ConfigurationTest {
         assertEquals("CpuUserTime", id);
     }
 
+    @Test
+    public void processMetrics_SamplingInterval() throws Exception {
+
+        YamlConfigurationFile f = new YamlConfigurationFile(false, null);
+
+        Scope rootScope = new ScopeImpl();
+
+        String s =
+
+                "metrics:\n" +
+                        "  - CpuUserTime\n" +
+                        "  - metric: PhysicalMemoryTotal\n" +
+                        "    sampling.interval: 60\n";
+
+        Object o = ((Map)YamlConfigurationFile.fromYaml(
+                new ByteArrayInputStream(s.getBytes()))).get(YamlConfigurationFile.METRICS_KEY);
+
+        f.processMetrics(o, rootScope);
+
+        List<MetricDefinition> mDefs = f.getMetricDefinitions();
+        assertEquals(2, mDefs.size());
+
+        MetricDefinition md = mDefs.get(0);
+        assertEquals("CpuUserTime", md.getId());
+        assertEquals(f.getSamplingIntervalMs(), f.getSamplingIntervalMs(md));
+
+        MetricDefinition md2 = mDefs.get(1);
+        assertEquals("PhysicalMemoryTotal", md2.getId());
+        assertEquals(60000L, f.getSamplingIntervalMs(md2));
+    }
+
+    @Test
+    public void processMetrics_Derivation() throws Exception {
+
+        YamlConfigurationFile f = new YamlConfigurationFile(false, null);
+
+        String s =
+
+                "metrics:\n" +
+                        "  - CpuUserTime\n" +
+                        "  - metric: PhysicalMemoryTotal\n" +
+                        "    derive: rate\n" +
+                        "  - metric: PhysicalMemoryFree\n" +
+                        "    derive: delta\n" +
+                        "    counter.width: 32\n";
+
+        Object o = ((Map)YamlConfigurationFile.fromYaml(
+                new ByteArrayInputStream(s.getBytes()))).get(YamlConfigurationFile.METRICS_KEY);
+
+        f.processMetrics(o, new ScopeImpl());
+
+        List<MetricDefinition> mDefs = f.getMetricDefinitions();
+        assertEquals(3, mDefs.size());
+
+        assertNull(f.getDerivation(mDefs.get(0)));
+        assertEquals(Configuration.DEFAULT_COUNTER_WIDTH, f.getCounterWidth(mDefs.get(0)));
+
+        assertEquals(Derivation.RATE, f.getDerivation(mDefs.get(1)));
+        assertEquals(Configuration.DEFAULT_COUNTER_WIDTH, f.getCounterWidth(mDefs.get(1)));
+
+        assertEquals(Derivation.DELTA, f.getDerivation(mDefs.get(2)));
+        assertEquals(32, f.getCounterWidth(mDefs.get(2)));
+    }
+
+    @Test
+    public void processMetrics_InvalidDerivation() throws Exception {
+
+        YamlConfigurationFile f = new YamlConfigurationFile(false, null);
+
+        String s =
+
+                "metrics:\n" +
+                        "  - metric: PhysicalMemoryTotal\n" +
+                        "    derive: integral\n";
+
+        Object o = ((Map)YamlConfigurationFile.fromYaml(
+                new ByteArrayInputStream(s.getBytes()))).get(YamlConfigurationFile.METRICS_KEY);
+
+        try {
+
+            f.processMetrics(o, new ScopeImpl());
+            fail("should throw exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid 'PhysicalMemoryTotal' derivation: \"integral\""));
+        }
+    }
+
+    @Test
+    public void processMetrics_InvalidCounterWidth() throws Exception {
+
+        YamlConfigurationFile f = new YamlConfigurationFile(false, null);
+
+        String s =
+
+                "metrics:\n" +
+                        "  - metric: PhysicalMemoryTotal\n" +
+                        "    derive: delta\n" +
+                        "    counter.width: 128\n";
+
+        Object o = ((Map)YamlConfigurationFile.fromYaml(
+                new ByteArrayInputStream(s.getBytes()))).get(YamlConfigurationFile.METRICS_KEY);
+
+        try {
+
+            f.processMetrics(o, new ScopeImpl());
+            fail("should throw exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("must be between 1 and 64 bits"));
+        }
+    }
+
+    @Test
+    public void processMetrics_CounterWidthWithoutDerivation() throws Exception {
+
+        YamlConfigurationFile f = new YamlConfigurationFile(false, null);
+
+        String s =
+
+                "metrics:\n" +
+                        "  - metric: PhysicalMemoryTotal\n" +
+                        "    counter.width: 32\n";
+
+        Object o = ((Map)YamlConfigurationFile.fromYaml(
+                new ByteArrayInputStream(s.getBytes()))).get(YamlConfigurationFile.METRICS_KEY);
+
+        try {
+
+            f.processMetrics(o, new ScopeImpl());
+            fail("should throw exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("declares a counter width, but it is not derived"));
+        }
+    }
+
+    @Test
+    public void processMetrics_MapWithoutMetric() throws Exception {
+
+        YamlConfigurationFile f = new YamlConfigurationFile(false, null);
+
+        String s =
+
+                "metrics:\n" +
+                        "  - sampling.interval: 60\n";
+
+        Object o = ((Map)YamlConfigurationFile.fromYaml(
+                new ByteArrayInputStream(s.getBytes()))).get(YamlConfigurationFile.METRICS_KEY);
+
+        try {
+
+            f.processMetrics(o, new ScopeImpl());
+            fail("should throw exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("has no 'metric' key"));
+        }
+    }
+
     // processOutput() -------------------------------------------------------------------------------------------------
 
     @Test
@@ -1024,8 +1795,8 @@ public class YamlConfigurationFileTest extends ConfigurationTest {
 
         YamlConfigurationFile c = new YamlConfigurationFile(true, f.getPath());
 
-        int si = c.getSamplingIntervalSec();
-        assertEquals(7, si);
+        long si = c.getSamplingIntervalMs();
+        assertEquals(7000L, si);
 
         fail("TODO continue with testing all other configuration elements");
     }
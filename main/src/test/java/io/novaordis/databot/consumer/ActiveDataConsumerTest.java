@@ -16,12 +16,11 @@
 
 package io.novaordis.databot.consumer;
 
-import io.novaordis.events.api.event.Event;
+import io.novaordis.databot.bus.BroadcastEventBus;
+import io.novaordis.databot.bus.EventBus;
+import io.novaordis.databot.bus.EventCursor;
 import org.junit.Test;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -47,35 +46,35 @@ public abstract class ActiveDataConsumerTest extends DataConsumerTest {
     // Tests -----------------------------------------------------------------------------------------------------------
 
     @Test
-    public void constructor_QueueAccessor() throws Exception {
+    public void constructor_CursorAccessor() throws Exception {
 
-        BlockingQueue<Event> queue = new ArrayBlockingQueue<>(1);
+        EventCursor cursor = new BroadcastEventBus(1).subscribe("test");
 
-        ActiveDataConsumerBase c = getActiveDataConsumerToTest(queue);
+        ActiveDataConsumerBase c = getActiveDataConsumerToTest(cursor);
 
-        assertEquals(queue, c.getEventQueue());
+        assertEquals(cursor, c.getEventCursor());
     }
 
     @Test
-    public void setEventQueue_getEventQueue() throws Exception {
+    public void setEventCursor_getEventCursor() throws Exception {
 
         ActiveDataConsumerBase c = getActiveDataConsumerToTest(null);
 
-        assertNull(c.getEventQueue());
+        assertNull(c.getEventCursor());
 
-        BlockingQueue<Event> queue = new ArrayBlockingQueue<>(1);
+        EventCursor cursor = new BroadcastEventBus(1).subscribe("test");
 
-        c.setEventQueue(queue);
+        c.setEventCursor(cursor);
 
-        assertEquals(queue, c.getEventQueue());
+        assertEquals(cursor, c.getEventCursor());
     }
 
     @Test
     public void lifecycle() throws Exception {
 
-        BlockingQueue<Event> events = new ArrayBlockingQueue<>(10);
+        EventBus bus = new BroadcastEventBus(10);
 
-        ActiveDataConsumerBase c = getActiveDataConsumerToTest(events);
+        ActiveDataConsumerBase c = getActiveDataConsumerToTest(bus.subscribe("test"));
 
         assertFalse(c.isStarted());
 
@@ -124,15 +123,15 @@ public abstract class ActiveDataConsumerTest extends DataConsumerTest {
     // Protected -------------------------------------------------------------------------------------------------------
 
     @Override
-    protected ActiveDataConsumerBase getDataConsumerToTest(BlockingQueue<Event> events) throws Exception {
+    protected ActiveDataConsumerBase getDataConsumerToTest(EventCursor cursor) throws Exception {
 
-        return getActiveDataConsumerToTest(events);
+        return getActiveDataConsumerToTest(cursor);
     }
 
     /**
-     * @param events null is acceptable, will return an instance with a null event queue.
+     * @param cursor null is acceptable, will return an instance with a null event cursor.
      */
-    protected abstract ActiveDataConsumerBase getActiveDataConsumerToTest(BlockingQueue<Event> events) throws Exception;
+    protected abstract ActiveDataConsumerBase getActiveDataConsumerToTest(EventCursor cursor) throws Exception;
 
     // Private ---------------------------------------------------------------------------------------------------------
 
@@ -22,8 +22,7 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.StringTokenizer;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Test;
@@ -36,6 +35,9 @@ import io.novaordis.databot.MockMetricDefinition;
 import io.novaordis.databot.MockPrintStream;
 import io.novaordis.databot.MockProperty;
 import io.novaordis.databot.MockTimedEvent;
+import io.novaordis.databot.bus.BroadcastEventBus;
+import io.novaordis.databot.bus.EventBus;
+import io.novaordis.databot.bus.EventCursor;
 import io.novaordis.databot.event.MultiSourceReadingEvent;
 import io.novaordis.events.api.event.Event;
 import io.novaordis.events.api.event.GenericTimedEvent;
@@ -104,8 +106,8 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
 
         AsynchronousCsvLineWriter w = new AsynchronousCsvLineWriter(file.getPath(), null, null);
 
-        BlockingQueue<Event> eventQueue = new ArrayBlockingQueue<>(1);
-        w.setEventQueue(eventQueue);
+        EventBus bus = new BroadcastEventBus(1);
+        w.setEventCursor(bus.subscribe("test"));
 
         w.start();
 
@@ -120,7 +122,7 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
         //
         assertEquals("", Files.read(file));
 
-        w.getEventQueue().put(new ShutdownEvent());
+        assertTrue(bus.publish(new ShutdownEvent(), 5L, TimeUnit.SECONDS));
 
         //
         // busy wait until the event gets processed
@@ -153,10 +155,10 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
         MockPrintStream pseudoOut = new MockPrintStream();
         System.setOut(pseudoOut);
 
-        BlockingQueue<Event> queue = new ArrayBlockingQueue<>(10);
+        EventBus bus = new BroadcastEventBus(10);
 
         AsynchronousCsvLineWriter w = new AsynchronousCsvLineWriter(null, null, false);
-        w.setEventQueue(queue);
+        w.setEventCursor(bus.subscribe("test"));
 
         assertFalse(w.isStarted());
         assertFalse(w.isHeaderOn());
@@ -166,14 +168,14 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
         assertTrue(w.isStarted());
 
         //
-        // send a timed event to the queue, this will make the writer to eventually write a line containing a timestamp
+        // send a timed event to the bus, this will make the writer to eventually write a line containing a timestamp
         //
 
         long time = 1L;
 
         GenericTimedEvent te = new GenericTimedEvent(time);
 
-        queue.put(te);
+        assertTrue(bus.publish(te, 5L, TimeUnit.SECONDS));
 
         //
         // busy wait until the event gets processed
@@ -201,7 +203,7 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
         //
 
         ShutdownEvent se = new ShutdownEvent();
-        queue.put(se);
+        assertTrue(bus.publish(se, 5L, TimeUnit.SECONDS));
 
         //
         // busy wait until the event gets processed
@@ -223,11 +225,11 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
     @Test
     public void lifecycle_InsureWeCloseThePrintStreamOnExit() throws Exception {
 
-        BlockingQueue<Event> queue = new ArrayBlockingQueue<>(1);
+        EventBus bus = new BroadcastEventBus(1);
 
         AsynchronousCsvLineWriter w = new AsynchronousCsvLineWriter(null, null, null);
 
-        w.setEventQueue(queue);
+        w.setEventCursor(bus.subscribe("test"));
 
         MockPrintStream mps = new MockPrintStream();
 
@@ -240,7 +242,7 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
         //
         // shutdown
         //
-        queue.put(new ShutdownEvent());
+        assertTrue(bus.publish(new ShutdownEvent(), 5L, TimeUnit.SECONDS));
 
         //
         // busy wait until the event gets processed
@@ -263,7 +265,7 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
     @Test
     public void lifecycle_AppendToFile() throws Exception {
 
-        BlockingQueue<Event> queue = new ArrayBlockingQueue<>(1);
+        EventBus bus = new BroadcastEventBus(1);
 
         File dir = new File(System.getProperty("basedir"), "target/test-scratch");
         assertTrue(dir.isDirectory());
@@ -285,7 +287,7 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
 
         AsynchronousCsvLineWriter w = new AsynchronousCsvLineWriter(file.getPath(), append, false);
 
-        w.setEventQueue(queue);
+        w.setEventCursor(bus.subscribe("test"));
 
         w.start();
 
@@ -299,13 +301,13 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
         // write an event
         //
 
-        w.getEventQueue().put(new MockTimedEvent());
+        assertTrue(bus.publish(new MockTimedEvent(), 5L, TimeUnit.SECONDS));
 
         //
         // shutdown
         //
 
-        w.getEventQueue().put(new ShutdownEvent());
+        assertTrue(bus.publish(new ShutdownEvent(), 5L, TimeUnit.SECONDS));
 
         //
         // busy wait until the event gets processed
@@ -348,7 +350,7 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
     @Test
     public void lifecycle_OverwriteFile() throws Exception {
 
-        BlockingQueue<Event> queue = new ArrayBlockingQueue<>(1);
+        EventBus bus = new BroadcastEventBus(1);
 
         File dir = new File(System.getProperty("basedir"), "target/test-scratch");
         assertTrue(dir.isDirectory());
@@ -370,7 +372,7 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
 
         AsynchronousCsvLineWriter w = new AsynchronousCsvLineWriter(file.getPath(), append, false);
 
-        w.setEventQueue(queue);
+        w.setEventCursor(bus.subscribe("test"));
 
         w.start();
 
@@ -384,13 +386,13 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
         // write an event
         //
 
-        w.getEventQueue().put(new MockTimedEvent());
+        assertTrue(bus.publish(new MockTimedEvent(), 5L, TimeUnit.SECONDS));
 
         //
         // shutdown
         //
 
-        w.getEventQueue().put(new ShutdownEvent());
+        assertTrue(bus.publish(new ShutdownEvent(), 5L, TimeUnit.SECONDS));
 
         //
         // busy wait until the event gets processed
@@ -425,10 +427,10 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
         MockPrintStream pseudoOut = new MockPrintStream();
         System.setOut(pseudoOut);
 
-        BlockingQueue<Event> queue = new ArrayBlockingQueue<>(10);
+        EventBus bus = new BroadcastEventBus(10);
 
         AsynchronousCsvLineWriter w = new AsynchronousCsvLineWriter(null, null, false);
-        w.setEventQueue(queue);
+        w.setEventCursor(bus.subscribe("test"));
 
         assertFalse(w.isStarted());
         assertFalse(w.isHeaderOn());
@@ -438,14 +440,14 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
         assertTrue(w.isStarted());
 
         //
-        // send a timed event to the queue, this will make the writer to eventually write a line containing a timestamp
+        // send a timed event to the bus, this will make the writer to eventually write a line containing a timestamp
         //
 
         long time = 1L;
 
         GenericTimedEvent te = new GenericTimedEvent(time);
 
-        queue.put(te);
+        assertTrue(bus.publish(te, 5L, TimeUnit.SECONDS));
 
         //
         // busy wait until the event gets processed
@@ -496,23 +498,23 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
     @Test
     public void run_notATimedEvent() throws Exception {
 
-        BlockingQueue<Event> queue = new ArrayBlockingQueue<>(2);
+        EventBus bus = new BroadcastEventBus(2);
 
         AsynchronousCsvLineWriter w = new AsynchronousCsvLineWriter(null, null, null);
 
-        w.setEventQueue(queue);
+        w.setEventCursor(bus.subscribe("test"));
 
         // add an un-timed event, run() must not fail. It'll warn and continue
 
         MockEvent e = new MockEvent();
 
-        queue.put(e);
+        assertTrue(bus.publish(e, 5L, TimeUnit.SECONDS));
 
         //
         // this will stop the test
         //
 
-        queue.put(new ShutdownEvent());
+        assertTrue(bus.publish(new ShutdownEvent(), 5L, TimeUnit.SECONDS));
 
         w.run();
 
@@ -582,13 +584,13 @@ public class AsynchronousCsvLineWriterTest extends DataConsumerTest {
     // Protected -------------------------------------------------------------------------------------------------------
 
     @Override
-    protected DataConsumer getDataConsumerToTest(BlockingQueue<Event> events) throws Exception {
+    protected DataConsumer getDataConsumerToTest(EventCursor cursor) throws Exception {
 
         AsynchronousCsvLineWriter w = new AsynchronousCsvLineWriter(null, null, null);
 
-        if (events != null) {
+        if (cursor != null) {
 
-            w.setEventQueue(events);
+            w.setEventCursor(cursor);
         }
         return w;
     }
@@ -18,11 +18,9 @@ package io.novaordis.databot.consumer;
 
 import io.novaordis.databot.DataConsumer;
 import io.novaordis.databot.DataConsumerException;
-import io.novaordis.events.api.event.Event;
+import io.novaordis.databot.bus.EventCursor;
 import org.junit.Test;
 
-import java.util.concurrent.BlockingQueue;
-
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -46,11 +44,11 @@ public abstract class DataConsumerTest {
     // Tests -----------------------------------------------------------------------------------------------------------
 
     @Test
-    public void start_NoEventQueue() throws Exception {
+    public void start_NoEventCursor() throws Exception {
 
         DataConsumer c = getDataConsumerToTest(null);
 
-        assertNull(c.getEventQueue());
+        assertNull(c.getEventCursor());
 
         try {
 
@@ -60,7 +58,7 @@ public abstract class DataConsumerTest {
         catch(DataConsumerException e) {
 
             String msg = e.getMessage();
-            assertTrue(msg.contains("null event queue"));
+            assertTrue(msg.contains("null event cursor"));
         }
     }
 
@@ -69,9 +67,9 @@ public abstract class DataConsumerTest {
     // Protected -------------------------------------------------------------------------------------------------------
 
     /**
-     * @param events null is acceptable, will return an instance with a null event queue.
+     * @param cursor null is acceptable, will return an instance with a null event cursor.
      */
-    protected abstract DataConsumer getDataConsumerToTest(BlockingQueue<Event> events) throws Exception;
+    protected abstract DataConsumer getDataConsumerToTest(EventCursor cursor) throws Exception;
 
     // Private ---------------------------------------------------------------------------------------------------------
 
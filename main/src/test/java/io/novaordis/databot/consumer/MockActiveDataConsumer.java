@@ -16,13 +16,13 @@
 
 package io.novaordis.databot.consumer;
 
+import io.novaordis.databot.bus.EventCursor;
 import io.novaordis.events.api.event.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -47,9 +47,9 @@ public class MockActiveDataConsumer extends ActiveDataConsumerBase {
         this(null);
     }
 
-    protected MockActiveDataConsumer(BlockingQueue<Event> eventQueue) {
+    protected MockActiveDataConsumer(EventCursor eventCursor) {
 
-        super(eventQueue);
+        super(eventCursor);
 
         this.receivedEvents = new ArrayList<>();
     }
@@ -78,7 +78,7 @@ public class MockActiveDataConsumer extends ActiveDataConsumerBase {
     // Public ----------------------------------------------------------------------------------------------------------
 
     /**
-     * Get and remove the event from the head of the queue of received events (not the main event queue), or return null
+     * Get and remove the event from the head of the queue of received events (not the event bus), or return null
      * if no events were not pushed into consumer.
      */
     public synchronized Event getEvent() {
@@ -16,10 +16,21 @@
 
 package io.novaordis.databot.consumer;
 
-import io.novaordis.events.api.event.Event;
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
+import org.junit.Test;
+
+import io.novaordis.databot.MockEvent;
+import io.novaordis.databot.bus.EventCursor;
+import io.novaordis.databot.bus.QueueEventCursor;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.ShutdownEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -39,17 +50,74 @@ public class MockActiveDataConsumerTest extends ActiveDataConsumerTest {
 
     // Tests -----------------------------------------------------------------------------------------------------------
 
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedQueueConstructor() throws Exception {
+
+        BlockingQueue<Event> queue = new ArrayBlockingQueue<>(10);
+
+        List<Event> received = new ArrayList<>();
+
+        //
+        // a consumer written against the event queue API
+        //
+
+        ActiveDataConsumerBase c = new ActiveDataConsumerBase(queue) {
+
+            @Override
+            protected String getName() {
+
+                return "Legacy Consumer";
+            }
+
+            @Override
+            protected void handleEvent(Event event) {
+
+                synchronized (received) {
+
+                    received.add(event);
+                }
+            }
+        };
+
+        assertTrue(c.getEventCursor() instanceof QueueEventCursor);
+
+        MockEvent e = new MockEvent();
+
+        queue.put(e);
+
+        c.start();
+
+        c.stop();
+
+        long deadline = System.currentTimeMillis() + 3000L;
+
+        while (c.isStarted() && System.currentTimeMillis() < deadline) {
+
+            Thread.sleep(10L);
+        }
+
+        synchronized (received) {
+
+            assertEquals(2, received.size());
+            assertEquals(e, received.get(0));
+            assertTrue(received.get(1) instanceof ShutdownEvent);
+        }
+
+        assertEquals(2L, c.getEventCursor().getReadCount());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
 
     /**
-     * @param events null is acceptable, will return an instance with a null event queue.
+     * @param cursor null is acceptable, will return an instance with a null event cursor.
      */
     @Override
-    protected MockActiveDataConsumer getActiveDataConsumerToTest(BlockingQueue<Event> events) throws Exception {
+    protected MockActiveDataConsumer getActiveDataConsumerToTest(EventCursor cursor) throws Exception {
 
-            return new MockActiveDataConsumer(events);
+            return new MockActiveDataConsumer(cursor);
     }
 
     // Private ---------------------------------------------------------------------------------------------------------
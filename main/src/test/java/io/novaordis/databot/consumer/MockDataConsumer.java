@@ -18,12 +18,11 @@ package io.novaordis.databot.consumer;
 
 import io.novaordis.databot.DataConsumer;
 import io.novaordis.databot.DataConsumerException;
+import io.novaordis.databot.bus.EventCursor;
 import io.novaordis.events.api.event.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.BlockingQueue;
-
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 6/11/17
@@ -38,7 +37,7 @@ public class MockDataConsumer implements DataConsumer {
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
-    private BlockingQueue<Event> eventQueue;
+    private EventCursor eventCursor;
 
     private boolean started;
 
@@ -47,17 +46,17 @@ public class MockDataConsumer implements DataConsumer {
     // DataConsumer implementation -------------------------------------------------------------------------------------
 
     @Override
-    public void setEventQueue(BlockingQueue<Event> q) {
+    public void setEventCursor(EventCursor c) {
 
-        this.eventQueue = q;
+        this.eventCursor = c;
 
-        log.info(this + " was configured with an event queue " + q);
+        log.info(this + " was configured with an event cursor " + c);
     }
 
     @Override
-    public BlockingQueue<Event> getEventQueue() {
+    public EventCursor getEventCursor() {
 
-        return eventQueue;
+        return eventCursor;
     }
 
     @Override
@@ -85,7 +84,7 @@ public class MockDataConsumer implements DataConsumer {
     // Public ----------------------------------------------------------------------------------------------------------
 
     /**
-     * Get and remove the event from the head of the queue of received events (not the main event queue), or return null
+     * Get and remove the event from the head of the queue of received events (not the event bus), or return null
      * if no events were not pushed into consumer.
      */
     public Event getEvent() {
@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.derivation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.databot.MockMetricDefinition;
+import io.novaordis.databot.configuration.MockConfiguration;
+import io.novaordis.databot.event.MultiSourceReadingEvent;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MockAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DerivationStageTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private PropertyFactory pf;
+
+    private MockAddress a;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        pf = new PropertyFactory();
+        a = new MockAddress("A");
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void counterDelta() throws Exception {
+
+        assertEquals(5L, DerivationStage.counterDelta(10L, 15L, 64));
+        assertEquals(0L, DerivationStage.counterDelta(10L, 10L, 64));
+
+        //
+        // reset
+        //
+
+        assertEquals(3L, DerivationStage.counterDelta(10L, 3L, 64));
+        assertEquals(3L, DerivationStage.counterDelta(10L, 3L, 32));
+
+        //
+        // wraparound
+        //
+
+        assertEquals(15L, DerivationStage.counterDelta(4294967290L, 9L, 32));
+        assertEquals(8L, DerivationStage.counterDelta(250L, 2L, 8));
+    }
+
+    @Test
+    public void build_NothingDerived() throws Exception {
+
+        MockConfiguration c = new MockConfiguration();
+
+        c.addMetricDefinition(new MockMetricDefinition(pf, a, "m"));
+
+        assertNull(DerivationStage.build(c));
+    }
+
+    @Test
+    public void build() throws Exception {
+
+        MockConfiguration c = new MockConfiguration();
+
+        MockMetricDefinition md = new MockMetricDefinition(pf, a, "m");
+
+        c.addMetricDefinition(md);
+        c.setDerivation(md, Derivation.DELTA);
+
+        DerivationStage s = DerivationStage.build(c);
+
+        assertNotNull(s);
+
+        s.apply(event(1000L, pf.createInstance("m", Long.class, 10L, null, null)));
+
+        MultiSourceReadingEvent e = event(2000L, pf.createInstance("m", Long.class, 25L, null, null));
+
+        s.apply(e);
+
+        assertEquals(15L, e.getPropertiesForSource(a).get(0).getValue());
+    }
+
+    @Test
+    public void apply_Delta() throws Exception {
+
+        DerivationStage s = stage(Derivation.DELTA, 64, "m");
+
+        MultiSourceReadingEvent e = event(
+                1000L,
+                pf.createInstance("m", Long.class, 100L, null, null),
+                pf.createInstance("n", Long.class, 7L, null, null));
+
+        s.apply(e);
+
+        //
+        // the first reading produces no value, the property that is not derived is passed through
+        //
+
+        List<Property> properties = e.getPropertiesForSource(a);
+        assertEquals(1, properties.size());
+        assertEquals("n", properties.get(0).getName());
+
+        e = event(
+                3000L,
+                pf.createInstance("m", Long.class, 160L, null, null),
+                pf.createInstance("n", Long.class, 8L, null, null));
+
+        s.apply(e);
+
+        properties = e.getPropertiesForSource(a);
+        assertEquals(2, properties.size());
+        assertEquals("m", properties.get(0).getName());
+        assertEquals(60L, properties.get(0).getValue());
+        assertEquals(8L, properties.get(1).getValue());
+    }
+
+    @Test
+    public void apply_Rate() throws Exception {
+
+        DerivationStage s = stage(Derivation.RATE, 64, "m");
+
+        s.apply(event(1000L, pf.createInstance("m", Integer.class, 100, null, null)));
+
+        MultiSourceReadingEvent e = event(3000L, pf.createInstance("m", Integer.class, 160, null, null));
+
+        s.apply(e);
+
+        Property p = e.getPropertiesForSource(a).get(0);
+        assertEquals(Double.class, p.getType());
+        assertEquals(30d, (Double)p.getValue(), 0.0000001);
+    }
+
+    @Test
+    public void apply_RateUsesTheCollectionTimestamps() throws Exception {
+
+        DerivationStage s = stage(Derivation.RATE, 64, "m");
+
+        MultiSourceReadingEvent e = event(1000L, pf.createInstance("m", Long.class, 0L, null, null));
+        e.setScheduledTimestamp(0L);
+        s.apply(e);
+
+        //
+        // the scheduled ticks are 1 second apart, but the collections were 4 seconds apart
+        //
+
+        e = event(5000L, pf.createInstance("m", Long.class, 40L, null, null));
+        e.setScheduledTimestamp(1000L);
+        s.apply(e);
+
+        assertEquals(10d, (Double)e.getPropertiesForSource(a).get(0).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void apply_Reset() throws Exception {
+
+        DerivationStage s = stage(Derivation.DELTA, 64, "m");
+
+        s.apply(event(1000L, pf.createInstance("m", Long.class, 1000L, null, null)));
+
+        MultiSourceReadingEvent e = event(2000L, pf.createInstance("m", Long.class, 12L, null, null));
+
+        s.apply(e);
+
+        assertEquals(12L, e.getPropertiesForSource(a).get(0).getValue());
+    }
+
+    @Test
+    public void apply_Wraparound() throws Exception {
+
+        DerivationStage s = stage(Derivation.DELTA, 32, "m");
+
+        s.apply(event(1000L, pf.createInstance("m", Long.class, 4294967000L, null, null)));
+
+        MultiSourceReadingEvent e = event(2000L, pf.createInstance("m", Long.class, 100L, null, null));
+
+        s.apply(e);
+
+        assertEquals(396L, e.getPropertiesForSource(a).get(0).getValue());
+    }
+
+    @Test
+    public void apply_Double() throws Exception {
+
+        DerivationStage s = stage(Derivation.DELTA, 64, "m");
+
+        s.apply(event(1000L, pf.createInstance("m", Double.class, 1.5d, null, null)));
+
+        MultiSourceReadingEvent e = event(2000L, pf.createInstance("m", Double.class, 4d, null, null));
+
+        s.apply(e);
+
+        assertEquals(2.5d, (Double)e.getPropertiesForSource(a).get(0).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void apply_IndexedProperties() throws Exception {
+
+        DerivationStage s = stage(Derivation.DELTA, 64, "m");
+
+        s.apply(event(
+                1000L,
+                pf.createInstance("m[0]", Long.class, 10L, null, null),
+                pf.createInstance("m[1]", Long.class, 20L, null, null),
+                pf.createInstance("m[1].pid", Integer.class, 1, null, null)));
+
+        MultiSourceReadingEvent e = event(
+                2000L,
+                pf.createInstance("m[0]", Long.class, 11L, null, null),
+                pf.createInstance("m[1]", Long.class, 25L, null, null),
+                pf.createInstance("m[1].pid", Integer.class, 1, null, null));
+
+        s.apply(e);
+
+        List<Property> properties = e.getPropertiesForSource(a);
+        assertEquals(3, properties.size());
+        assertEquals(1L, properties.get(0).getValue());
+        assertEquals(5L, properties.get(1).getValue());
+        assertEquals(1, properties.get(2).getValue());
+    }
+
+    @Test
+    public void apply_EventCollectedBeforeThePreviousOne() throws Exception {
+
+        DerivationStage s = stage(Derivation.DELTA, 64, "m");
+
+        s.apply(event(2000L, pf.createInstance("m", Long.class, 20L, null, null)));
+
+        MultiSourceReadingEvent e = event(1000L, pf.createInstance("m", Long.class, 10L, null, null));
+
+        s.apply(e);
+
+        assertTrue(e.getPropertiesForSource(a).isEmpty());
+
+        e = event(3000L, pf.createInstance("m", Long.class, 30L, null, null));
+
+        s.apply(e);
+
+        assertEquals(10L, e.getPropertiesForSource(a).get(0).getValue());
+    }
+
+    @Test
+    public void apply_MissingReadingIsSpanned() throws Exception {
+
+        DerivationStage s = stage(Derivation.DELTA, 64, "m");
+
+        s.apply(event(1000L, pf.createInstance("m", Long.class, 10L, null, null)));
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent();
+        e.addMissingSourceReading(a);
+        s.apply(e);
+
+        e = event(3000L, pf.createInstance("m", Long.class, 30L, null, null));
+
+        s.apply(e);
+
+        assertEquals(20L, e.getPropertiesForSource(a).get(0).getValue());
+    }
+
+    @Test
+    public void add_InvalidCounterWidth() throws Exception {
+
+        try {
+
+            new DerivationStage(pf).add(new MockMetricDefinition(pf, a, "m"), Derivation.RATE, 65);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid counter width"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private DerivationStage stage(Derivation d, int counterWidth, String... metricIds) {
+
+        DerivationStage s = new DerivationStage(pf);
+
+        for(String id: metricIds) {
+
+            s.add(new MockMetricDefinition(pf, a, id), d, counterWidth);
+        }
+
+        return s;
+    }
+
+    /**
+     * @return an event with a single source reading, collected at the given time.
+     */
+    private MultiSourceReadingEvent event(long collectionTime, Property... properties) {
+
+        return new MultiSourceReadingEvent(
+                collectionTime, collectionTime, Collections.singletonList(a),
+                Collections.singletonList(Arrays.asList(properties)));
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -33,7 +33,9 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -55,6 +57,46 @@ public class MultiSourceReadingEventTest {
 
     // Tests -----------------------------------------------------------------------------------------------------------
 
+    // constructor -----------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_Restore() throws Exception {
+
+        MockAddress a = new MockAddress("A");
+        MockAddress a2 = new MockAddress("B");
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent(
+                10L, 20L, Arrays.asList(a, a2),
+                Arrays.asList(
+                        Collections.singletonList(new IntegerProperty("x", 1)),
+                        Collections.singletonList(new StringProperty("y", "something"))));
+
+        assertEquals(10L, e.getCollectionStartTimestamp());
+        assertEquals(20L, e.getCollectionEndTimestamp().longValue());
+        assertEquals(15L, e.getTime().longValue());
+        assertEquals(Arrays.asList(a, a2), e.getSourceAddresses());
+        assertEquals(1, e.getPropertiesForSource(a).get(0).getValue());
+        assertEquals("something", e.getPropertiesForSource(a2).get(0).getValue());
+    }
+
+    @Test
+    public void constructor_Restore_AddressReadingMismatch() throws Exception {
+
+        try {
+
+            new MultiSourceReadingEvent(
+                    10L, 20L, Arrays.asList(new MockAddress("A"), new MockAddress("B")),
+                    Collections.singletonList(Collections.singletonList(new IntegerProperty("x", 1))));
+
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("2 source address(es) but 1 reading(s)"));
+        }
+    }
+
     // getCollectionStartTimestamp() -----------------------------------------------------------------------------------
 
     @Test
@@ -450,6 +492,163 @@ public class MultiSourceReadingEventTest {
         assertEquals(2, e.getAllPropertiesCount());
     }
 
+    // setScheduledTimestamp() -----------------------------------------------------------------------------------------
+
+    @Test
+    public void setScheduledTimestamp() throws Exception {
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent(
+                10L, 20L, Collections.emptyList(), Collections.emptyList());
+
+        assertNull(e.getScheduledTimestamp());
+        assertEquals(15L, e.getTime().longValue());
+
+        e.setScheduledTimestamp(5L);
+
+        assertEquals(5L, e.getScheduledTimestamp().longValue());
+        assertEquals(5L, e.getTime().longValue());
+        assertEquals(5L, e.getTimestamp().getTime());
+    }
+
+    // mergeMissingReadings() --------------------------------------------------------------------------------------------
+
+    @Test
+    public void mergeMissingReadings() throws Exception {
+
+        MockAddress a = new MockAddress("A");
+        MockAddress a2 = new MockAddress("B");
+
+        MultiSourceReadingEvent older = new MultiSourceReadingEvent();
+        older.addSourceReading(a, Collections.singletonList(new IntegerProperty("x", 1)));
+        older.addSourceReading(a2, Collections.singletonList(new IntegerProperty("y", 1)));
+
+        MultiSourceReadingEvent newer = new MultiSourceReadingEvent();
+        newer.addSourceReading(a, Collections.singletonList(new IntegerProperty("x", 2)));
+
+        long start = newer.getCollectionStartTimestamp();
+        long end = newer.getCollectionEndTimestamp();
+
+        assertEquals(1, newer.mergeMissingReadings(older));
+
+        assertEquals(2, newer.getSourceCount());
+        assertEquals(Arrays.asList(a, a2), newer.getSourceAddresses());
+        assertEquals(2, newer.getPropertiesForSource(a).get(0).getValue());
+        assertEquals(1, newer.getPropertiesForSource(a2).get(0).getValue());
+
+        //
+        // timestamps are not affected
+        //
+
+        assertEquals(start, newer.getCollectionStartTimestamp());
+        assertEquals(end, newer.getCollectionEndTimestamp().longValue());
+    }
+
+    @Test
+    public void mergeMissingReadings_OlderRealReadingReplacesNewerMissingReading() throws Exception {
+
+        MockAddress a = new MockAddress("A");
+        MockAddress a2 = new MockAddress("B");
+
+        MultiSourceReadingEvent older = new MultiSourceReadingEvent();
+        older.addSourceReading(a, Collections.singletonList(new IntegerProperty("x", 1)));
+        older.addMissingSourceReading(a2);
+
+        MultiSourceReadingEvent newer = new MultiSourceReadingEvent();
+        newer.addMissingSourceReading(a);
+
+        assertEquals(2, newer.mergeMissingReadings(older));
+
+        assertEquals(Arrays.asList(a, a2), newer.getSourceAddresses());
+        assertFalse(newer.isMissing(a));
+        assertEquals(1, newer.getPropertiesForSource(a).get(0).getValue());
+
+        //
+        // the missing flag is carried over
+        //
+
+        assertTrue(newer.isMissing(a2));
+        assertTrue(newer.getPropertiesForSource(a2).isEmpty());
+    }
+
+    // replaceSourceReading() ------------------------------------------------------------------------------------------
+
+    @Test
+    public void replaceSourceReading() throws Exception {
+
+        MockAddress a = new MockAddress("A");
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent(
+                10L, 20L, Collections.singletonList(a),
+                Collections.singletonList(Collections.singletonList(new IntegerProperty("x", 1))));
+
+        e.replaceSourceReading(a, Arrays.asList(new IntegerProperty("x", 2), new IntegerProperty("y", 3)));
+
+        List<Property> properties = e.getPropertiesForSource(a);
+        assertEquals(2, properties.size());
+        assertEquals(2, properties.get(0).getValue());
+        assertEquals(3, properties.get(1).getValue());
+
+        assertEquals(1, e.getSourceCount());
+        assertEquals(10L, e.getCollectionStartTimestamp());
+        assertEquals(20L, e.getCollectionEndTimestamp().longValue());
+    }
+
+    @Test
+    public void replaceSourceReading_NoSuchSource() throws Exception {
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent();
+
+        try {
+
+            e.replaceSourceReading(new MockAddress("A"), Collections.emptyList());
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("no such metric source"));
+        }
+    }
+
+    // missing source readings -----------------------------------------------------------------------------------------
+
+    @Test
+    public void addMissingSourceReading() throws Exception {
+
+        MockAddress a = new MockAddress("A");
+        MockAddress a2 = new MockAddress("B");
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent();
+
+        assertTrue(e.getMissingSourceAddresses().isEmpty());
+
+        e.addSourceReading(a, Collections.singletonList(new IntegerProperty("x", 1)));
+        e.addMissingSourceReading(a2);
+
+        assertEquals(2, e.getSourceCount());
+        assertFalse(e.isMissing(a));
+        assertTrue(e.isMissing(a2));
+        assertTrue(e.getPropertiesForSource(a2).isEmpty());
+        assertEquals(Collections.singletonList(a2), e.getMissingSourceAddresses());
+    }
+
+    @Test
+    public void markMissing_NoSuchSource() throws Exception {
+
+        MultiSourceReadingEvent e = new MultiSourceReadingEvent();
+
+        try {
+
+            e.markMissing(new MockAddress("A"));
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("no such metric source"));
+        }
+    }
+
     // toString() ------------------------------------------------------------------------------------------------------
 
     @Test
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.databot.MockMetricDefinition;
+import io.novaordis.databot.MockMetricSource;
+import io.novaordis.databot.os.linux.VmstatStreamParser;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.utilities.address.LocalOSAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CommandStreamMetricSourceTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // vmstat's headers, followed by the first value line, which reports the averages since boot
+    //
+    private static final String HEADERS =
+            "procs -----------memory---------- ---swap-- -----io---- -system-- ------cpu-----\\n" +
+            " r  b   swpd   free   buff  cache   si   so    bi    bo   in   cs us sy id wa st\\n" +
+            " 0 0 0 4000 0 0 0 0 0 0 1 1 1 1 98 0 0\\n";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private PropertyFactory pf;
+
+    private CommandStreamMetricSource source;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() {
+
+        assumeTrue(new File("/bin/sh").canExecute());
+
+        pf = new PropertyFactory();
+    }
+
+    @After
+    public void cleanUp() {
+
+        if (source != null) {
+
+            source.stop();
+        }
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_EmptyCommand() throws Exception {
+
+        try {
+
+            new CommandStreamMetricSource(
+                    new LocalOSAddress(), Collections.emptyList(), new VmstatStreamParser(), null, pf, 0L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null or empty command"));
+        }
+    }
+
+    @Test
+    public void collectMetrics_LatestReading() throws Exception {
+
+        source = source(
+                "printf '" + HEADERS + "'; " +
+                        "sleep 0.3; " +
+                        "printf ' 1 0 0 1000 0 0 0 0 0 0 10 20 13 2 85 0 0\\n'; " +
+                        "sleep 0.3; " +
+                        "printf ' 1 0 0 1000 0 0 0 0 0 0 10 20 40 5 55 0 0\\n'; " +
+                        "exec sleep 60",
+                null, 0L, 1000L);
+
+        List<MetricDefinition> mds = Collections.singletonList(definition("CpuUserTime"));
+
+        try {
+
+            source.collectMetrics(mds);
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("no reading available yet"));
+        }
+
+        source.start();
+        assertTrue(source.isStarted());
+
+        waitFor(() -> source.getReadingCount() >= 1);
+
+        List<Property> properties = source.collectMetrics(mds);
+        assertEquals(1, properties.size());
+
+        //
+        // the first or the second reading, depending on timing
+        //
+        double value = (Double)properties.get(0).getValue();
+        assertTrue(value == 13d || value == 40d);
+
+        waitFor(() -> source.getReadingCount() >= 2);
+
+        properties = source.collectMetrics(mds);
+        assertEquals(40d, (Double)properties.get(0).getValue(), 0.0000001);
+
+        //
+        // the command is still running, it was not restarted
+        //
+        assertEquals(0, source.getRestartCount());
+
+        source.stop();
+        assertFalse(source.isStarted());
+    }
+
+    @Test
+    public void commandExits_RestartedWithBackoff() throws Exception {
+
+        source = source(
+                "printf '" + HEADERS + " 1 0 0 1000 0 0 0 0 0 0 10 20 13 2 85 0 0\\n'; exit 1", null, 0L, 10L);
+
+        source.start();
+
+        waitFor(() -> source.getRestartCount() >= 3);
+
+        assertTrue(source.getReadingCount() >= 3);
+
+        List<Property> properties = source.collectMetrics(Collections.singletonList(definition("CpuIdleTime")));
+        assertEquals(85d, (Double)properties.get(0).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void commandRestarted_SinceBootLineIsNeverServed() throws Exception {
+
+        source = source(
+                "printf '" + HEADERS + "'; sleep 0.05; printf ' 1 0 0 1000 0 0 0 0 0 0 10 20 13 2 85 0 0\\n'; exit 1",
+                null, 0L, 10L);
+
+        source.start();
+
+        List<MetricDefinition> mds = Collections.singletonList(definition("CpuIdleTime"));
+
+        int served = 0;
+
+        long deadline = System.currentTimeMillis() + 10000L;
+
+        while(source.getRestartCount() < 5) {
+
+            assertTrue(System.currentTimeMillis() < deadline);
+
+            try {
+
+                List<Property> properties = source.collectMetrics(mds);
+                assertEquals(85d, (Double)properties.get(0).getValue(), 0.0000001);
+                served ++;
+            }
+            catch(MetricSourceException e) {
+
+                String msg = e.getMessage();
+                assertTrue(msg.startsWith("no reading available yet"));
+            }
+
+            Thread.sleep(1L);
+        }
+
+        assertTrue(served > 0);
+        assertTrue(source.getReadingCount() >= 4);
+    }
+
+    @Test
+    public void commandCannotBeStarted_Restarted() throws Exception {
+
+        source = new CommandStreamMetricSource(
+                new LocalOSAddress(), Collections.singletonList("no-such-command-9f3e1"), new VmstatStreamParser(),
+                null, pf, 0L, 10L, 20L);
+
+        source.start();
+
+        waitFor(() -> source.getRestartCount() >= 2);
+
+        assertEquals(0, source.getReadingCount());
+
+        try {
+
+            source.collectMetrics(Collections.singletonList(definition("CpuIdleTime")));
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("no reading available yet"));
+        }
+    }
+
+    @Test
+    public void collectMetrics_StaleReading() throws Exception {
+
+        source = source(
+                "printf '" + HEADERS + " 1 0 0 1000 0 0 0 0 0 0 10 20 13 2 85 0 0\\n'; exec sleep 60",
+                null, 100L, 1000L);
+
+        source.start();
+
+        waitFor(() -> source.getReadingCount() >= 1);
+
+        Thread.sleep(200L);
+
+        try {
+
+            source.collectMetrics(Collections.singletonList(definition("CpuIdleTime")));
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("is stale"));
+        }
+    }
+
+    @Test
+    public void collectMetrics_FallbackForUnsupportedMetrics() throws Exception {
+
+        MockMetricSource fallback = new MockMetricSource(pf, new LocalOSAddress());
+        fallback.addReadingForMetric("LoadAverageLastMinute", 0.5d);
+
+        source = source("exec sleep 60", fallback, 0L, 1000L);
+
+        List<Property> properties =
+                source.collectMetrics(Arrays.asList(definition("CpuIdleTime"), definition("LoadAverageLastMinute")));
+
+        assertTrue(fallback.isStarted());
+        assertEquals(1, fallback.getCollectionCount());
+        assertEquals(1, properties.size());
+        assertEquals(0.5d, properties.get(0).getValue());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private CommandStreamMetricSource source(
+            String script, MockMetricSource fallback, long maxReadingAgeMs, long restartDelayMs) {
+
+        return new CommandStreamMetricSource(
+                new LocalOSAddress(), Arrays.asList("/bin/sh", "-c", script), new VmstatStreamParser(), fallback, pf,
+                maxReadingAgeMs, restartDelayMs, restartDelayMs * 2);
+    }
+
+    private MockMetricDefinition definition(String id) {
+
+        return new MockMetricDefinition(pf, new LocalOSAddress(), id);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws Exception {
+
+        long deadline = System.currentTimeMillis() + 10000L;
+
+        while(!condition.getAsBoolean()) {
+
+            if (System.currentTimeMillis() > deadline) {
+
+                fail("condition not met in 10 seconds");
+            }
+
+            Thread.sleep(10L);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ByteCursorTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void numbers() throws Exception {
+
+        ByteCursor c = cursor("  123\t-45 0.52 7 -3.5\n");
+
+        assertEquals(123L, c.nextLong());
+        assertEquals(-45L, c.nextLong());
+        assertEquals(0.52d, c.nextDouble(), 0.0000001);
+        assertEquals(7d, c.nextDouble(), 0.0000001);
+        assertEquals(-3.5d, c.nextDouble(), 0.0000001);
+        assertTrue(c.atEndOfLine());
+        assertFalse(c.nextLine());
+        assertFalse(c.hasRemaining());
+    }
+
+    @Test
+    public void nextLong_NoNumber() throws Exception {
+
+        ByteCursor c = cursor("abc");
+
+        try {
+
+            c.nextLong();
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("expecting a number at offset 0"));
+        }
+    }
+
+    @Test
+    public void consumeToken_TokenMustBeComplete() throws Exception {
+
+        ByteCursor c = cursor("cpu0 1\ncpu 2\n");
+
+        assertFalse(c.consumeToken(ByteCursor.bytes("cpu")));
+        assertEquals(0, c.position());
+        assertTrue(c.startsWith(ByteCursor.bytes("cpu")));
+
+        assertTrue(c.nextLine());
+
+        assertTrue(c.consumeToken(ByteCursor.bytes("cpu")));
+        assertEquals(2L, c.nextLong());
+    }
+
+    @Test
+    public void consumeToken_AtEndOfContent() throws Exception {
+
+        ByteCursor c = cursor("ctxt");
+
+        assertTrue(c.consumeToken(ByteCursor.bytes("ctxt")));
+        assertFalse(c.hasRemaining());
+    }
+
+    @Test
+    public void skipToken() throws Exception {
+
+        ByteCursor c = cursor("sda 8 0 12\n");
+
+        c.skipToken();
+        assertEquals(8L, c.nextLong());
+        c.skipToken();
+        assertEquals(12L, c.nextLong());
+        assertTrue(c.atEndOfLine());
+    }
+
+    @Test
+    public void skipPastLast() throws Exception {
+
+        ByteCursor c = cursor("12 (a) (b)) S 1\n");
+
+        assertTrue(c.skipPastLast(')'));
+        c.skipToken();
+        assertEquals(1L, c.nextLong());
+
+        c = cursor("12 S 1\n");
+        assertFalse(c.skipPastLast(')'));
+        assertEquals(12L, c.nextLong());
+    }
+
+    @Test
+    public void reset_RespectsBufferPositionAndLimit() throws Exception {
+
+        ByteBuffer b = ByteBuffer.wrap("xx 17 yy".getBytes());
+        b.position(2);
+        b.limit(5);
+
+        ByteCursor c = new ByteCursor().reset(b);
+
+        assertEquals(17L, c.nextLong());
+        assertFalse(c.hasRemaining());
+
+        //
+        // the buffer is not modified
+        //
+        assertEquals(2, b.position());
+        assertEquals(5, b.limit());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    static ByteCursor cursor(String content) {
+
+        return new ByteCursor().reset(ByteBuffer.wrap(content.getBytes()));
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
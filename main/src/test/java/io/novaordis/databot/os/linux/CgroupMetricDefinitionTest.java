@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class CgroupMetricDefinitionTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isCgroupMetricDeclaration() throws Exception {
+
+        assertTrue(CgroupMetricDefinition.isCgroupMetricDeclaration("cgroup/Pids"));
+        assertTrue(CgroupMetricDefinition.isCgroupMetricDeclaration("cgroup:docker/*/MemoryUsed"));
+        assertFalse(CgroupMetricDefinition.isCgroupMetricDeclaration("cgroups/Pids"));
+        assertFalse(CgroupMetricDefinition.isCgroupMetricDeclaration(null));
+    }
+
+    @Test
+    public void parse() throws Exception {
+
+        CgroupMetricDefinition d = CgroupMetricDefinition.parse(new PropertyFactory(), "cgroup/CpuUsagePercentage");
+
+        assertEquals(CgroupMetric.CPU_USAGE_PERCENTAGE, d.getMetric());
+        assertEquals("CpuUsagePercentage", d.getId());
+        assertEquals(Double.class, d.getType());
+        assertNull(d.getBaseUnit());
+        assertEquals(new CgroupAddress(), d.getMetricSourceAddress());
+        assertEquals("cgroup/CpuUsagePercentage", d.toString());
+    }
+
+    @Test
+    public void parse_PathGlobs() throws Exception {
+
+        CgroupMetricDefinition d = CgroupMetricDefinition.parse(
+                new PropertyFactory(), "cgroup:system.slice/docker-*.scope, !system.slice/docker-1*.scope/MemoryUsed");
+
+        assertEquals(CgroupMetric.MEMORY_USED, d.getMetric());
+        assertEquals(Long.class, d.getType());
+        assertEquals(MemoryMeasureUnit.BYTE, d.getBaseUnit());
+
+        CgroupAddress a = (CgroupAddress)d.getMetricSourceAddress();
+        assertEquals(Arrays.asList("system.slice/docker-*.scope", "!system.slice/docker-1*.scope"), a.getGlobs());
+        assertEquals("cgroup:system.slice/docker-*.scope,!system.slice/docker-1*.scope", a.getLiteral());
+        assertEquals("cgroup:system.slice/docker-*.scope,!system.slice/docker-1*.scope/MemoryUsed", d.toString());
+    }
+
+    @Test
+    public void parse_Root() throws Exception {
+
+        CgroupMetricDefinition d = CgroupMetricDefinition.parse(new PropertyFactory(), "cgroup://Pids");
+
+        CgroupAddress a = (CgroupAddress)d.getMetricSourceAddress();
+        assertEquals(Arrays.asList("/"), a.getGlobs());
+        assertEquals(0, a.getIncludes().get(0).length);
+    }
+
+    @Test
+    public void parse_InvalidGlob() throws Exception {
+
+        try {
+
+            CgroupMetricDefinition.parse(new PropertyFactory(), "cgroup:docker//a/Pids");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("invalid cgroup glob \"docker//a\""));
+        }
+    }
+
+    @Test
+    public void parse_UnknownMetric() throws Exception {
+
+        try {
+
+            CgroupMetricDefinition.parse(new PropertyFactory(), "cgroup:docker/*");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertEquals("unknown cgroup metric \"*\"", msg);
+        }
+    }
+
+    @Test
+    public void excludes() throws Exception {
+
+        CgroupAddress all = new CgroupAddress();
+        assertFalse(all.excludes("docker"));
+        assertEquals(1, all.getIncludes().size());
+
+        CgroupAddress a = CgroupAddress.parse("docker/*,!docker/a?,!/");
+        assertTrue(a.excludes("docker/a1"));
+        assertFalse(a.excludes("docker/a10"));
+        assertFalse(a.excludes("docker"));
+        assertTrue(a.excludes("/"));
+
+        //
+        // "*" does not cross path segments
+        //
+
+        CgroupAddress b = CgroupAddress.parse("!kubepods*");
+        assertTrue(b.excludes("kubepods.slice"));
+        assertFalse(b.excludes("kubepods.slice/pod1"));
+    }
+
+    @Test
+    public void equalsAndHashCode() throws Exception {
+
+        assertEquals(CgroupAddress.parse("docker/*"), CgroupAddress.parse("docker/*"));
+        assertEquals(CgroupAddress.parse("docker/*").hashCode(), CgroupAddress.parse("docker/*").hashCode());
+        assertFalse(CgroupAddress.parse("docker/*").equals(CgroupAddress.parse("docker/a*")));
+        assertEquals(new CgroupAddress(), CgroupAddress.parse(null));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
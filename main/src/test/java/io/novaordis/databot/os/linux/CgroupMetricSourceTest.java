@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class CgroupMetricSourceTest extends LinuxMetricSourceBaseTest<CgroupMetricSource> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File cgroup;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void collectMetrics_FirstReadingOnlyReportsCurrentValues() throws Exception {
+
+        CgroupMetricSource s = source(CgroupAddress.parse("docker/*"));
+
+        List<Property> properties = s.collectMetrics(definitions(
+                "CpuUsagePercentage", "ThrottledPeriodsPercentage", "MemoryUsed", "MemoryUsedPercentage", "Pids"));
+
+        assertEquals(3, properties.size());
+
+        assertEquals("MemoryUsed[docker/a1]", properties.get(0).getName());
+        assertEquals(209715200L, properties.get(0).getValue());
+
+        assertEquals("MemoryUsedPercentage[docker/a1]", properties.get(1).getName());
+        assertEquals(50d, (Double)properties.get(1).getValue(), 0.0000001);
+
+        assertEquals("Pids[docker/a1]", properties.get(2).getName());
+        assertEquals(42L, properties.get(2).getValue());
+    }
+
+    @Test
+    public void collectMetrics_RatesAreComputedBetweenSamples() throws Exception {
+
+        CgroupMetricSource s = source(CgroupAddress.parse("docker/*"));
+
+        List<MetricDefinition> mds = definitions(
+                "CpuUsagePercentage", "ThrottledPeriodsPercentage", "IoWriteBytesPerSecond");
+
+        s.collectMetrics(mds);
+
+        //
+        // 100 more periods, 25 of which throttled, and no writes
+        //
+
+        CgroupReaderTest.write(cgroup, "cpu.stat", CgroupReaderTest.V2_CPU_STAT.
+                replace("usage_usec 1000000", "usage_usec 2000000").
+                replace("nr_periods 100", "nr_periods 200").
+                replace("nr_throttled 10", "nr_throttled 35"));
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(3, properties.size());
+
+        assertEquals("CpuUsagePercentage[docker/a1]", properties.get(0).getName());
+        assertTrue((Double)properties.get(0).getValue() > 0);
+
+        assertEquals("ThrottledPeriodsPercentage[docker/a1]", properties.get(1).getName());
+        assertEquals(25d, (Double)properties.get(1).getValue(), 0.0000001);
+
+        assertEquals("IoWriteBytesPerSecond[docker/a1]", properties.get(2).getName());
+        assertEquals(0d, (Double)properties.get(2).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void collectMetrics_NoMemoryLimit() throws Exception {
+
+        CgroupReaderTest.write(cgroup, "memory.max", "max\n");
+
+        CgroupMetricSource s = source(CgroupAddress.parse("docker/*"));
+
+        List<Property> properties = s.collectMetrics(definitions("MemoryLimit", "MemoryUsedPercentage", "MemoryUsed"));
+
+        assertEquals(1, properties.size());
+        assertEquals("MemoryUsed[docker/a1]", properties.get(0).getName());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected String getScratchDirectoryName() {
+
+        return "cgroup-source";
+    }
+
+    @Override
+    protected CgroupAddress getAddressToTest() {
+
+        return CgroupAddress.parse("docker/*");
+    }
+
+    @Override
+    protected CgroupMetricSource getMetricSourceToTest() {
+
+        return source(getAddressToTest());
+    }
+
+    @Override
+    protected MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate) {
+
+        return new CgroupMetricSourceFactory(delegate, scratchDirectory);
+    }
+
+    @Override
+    protected String getMetricIdToTest() {
+
+        return "Pids";
+    }
+
+    @Override
+    protected String getForeignMetricMessage() {
+
+        return "are cgroup metrics";
+    }
+
+    @Override
+    protected void populate() throws Exception {
+
+        cgroup = CgroupReaderTest.writeV2(scratchDirectory, "docker/a1");
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private CgroupMetricSource source(CgroupAddress address) {
+
+        return new CgroupMetricSource(address, new CgroupReader(scratchDirectory, address), pf);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class CgroupReaderTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String V2_CPU_STAT =
+            "usage_usec 1000000\n" +
+            "user_usec 600000\n" +
+            "system_usec 400000\n" +
+            "nr_periods 100\n" +
+            "nr_throttled 10\n" +
+            "throttled_usec 50000\n";
+
+    public static final String V2_MEMORY_STAT =
+            "anon 104857600\n" +
+            "file 52428800\n" +
+            "kernel_stack 16384\n" +
+            "file_mapped 1024\n" +
+            "pgfault 1000\n" +
+            "pgmajfault 12\n";
+
+    public static final String V2_MEMORY_EVENTS =
+            "low 0\n" +
+            "high 0\n" +
+            "max 3\n" +
+            "oom 1\n" +
+            "oom_kill 1\n";
+
+    public static final String V2_IO_STAT =
+            "8:0 rbytes=1048576 wbytes=2097152 rios=100 wios=200 dbytes=0 dios=0\n" +
+            "8:16 rbytes=1048576 wbytes=0 rios=10 wios=0 dbytes=0 dios=0\n";
+
+    public static final String V1_CPU_STAT =
+            "nr_periods 100\n" +
+            "nr_throttled 10\n" +
+            "throttled_time 50000000\n";
+
+    public static final String V1_MEMORY_STAT =
+            "cache 1\n" +
+            "rss 2\n" +
+            "total_cache 52428800\n" +
+            "total_rss 104857600\n" +
+            "total_pgmajfault 12\n";
+
+    public static final String V1_OOM_CONTROL =
+            "oom_kill_disable 0\n" +
+            "under_oom 0\n" +
+            "oom_kill 1\n";
+
+    public static final String V1_IO_SERVICE_BYTES =
+            "8:0 Read 1048576\n" +
+            "8:0 Write 2097152\n" +
+            "8:0 Sync 0\n" +
+            "8:0 Async 3145728\n" +
+            "8:0 Total 3145728\n" +
+            "8:16 Read 1048576\n" +
+            "8:16 Total 1048576\n" +
+            "Total 4194304\n";
+
+    public static final String V1_IO_SERVICED =
+            "8:0 Read 100\n" +
+            "8:0 Write 200\n" +
+            "8:0 Total 300\n" +
+            "8:16 Read 10\n" +
+            "8:16 Total 10\n" +
+            "Total 310\n";
+
+    private static final int ALL = CgroupReader.CPU | CgroupReader.MEMORY | CgroupReader.MEMORY_STAT |
+            CgroupReader.MEMORY_EVENTS | CgroupReader.IO | CgroupReader.PIDS;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes a cgroup v2 root, if not already there, and a cgroup with all the files the reader uses.
+     *
+     * @return the cgroup directory.
+     */
+    public static File writeV2(File root, String path) throws Exception {
+
+        write(root, "cgroup.controllers", "cpuset cpu io memory pids\n");
+
+        File dir = new File(root, path);
+
+        write(dir, "cpu.stat", V2_CPU_STAT);
+        write(dir, "memory.current", "209715200\n");
+        write(dir, "memory.max", "419430400\n");
+        write(dir, "memory.stat", V2_MEMORY_STAT);
+        write(dir, "memory.events", V2_MEMORY_EVENTS);
+        write(dir, "io.stat", V2_IO_STAT);
+        write(dir, "pids.current", "42\n");
+        write(dir, "cpu.pressure", PressureReaderTest.CPU);
+        write(dir, "memory.pressure", PressureReaderTest.MEMORY);
+        write(dir, "io.pressure", PressureReaderTest.IO);
+
+        return dir;
+    }
+
+    /**
+     * Writes a cgroup with all the files the reader uses in the cgroup v1 controller hierarchies.
+     */
+    public static void writeV1(File root, String path) throws Exception {
+
+        write(new File(new File(root, "cpu"), path), "cpu.stat", V1_CPU_STAT);
+        write(new File(new File(root, "cpuacct"), path), "cpuacct.usage", "1000000000\n");
+
+        File memory = new File(new File(root, "memory"), path);
+
+        write(memory, "memory.usage_in_bytes", "209715200\n");
+        write(memory, "memory.limit_in_bytes", "9223372036854771712\n");
+        write(memory, "memory.stat", V1_MEMORY_STAT);
+        write(memory, "memory.oom_control", V1_OOM_CONTROL);
+
+        File blkio = new File(new File(root, "blkio"), path);
+
+        write(blkio, "blkio.throttle.io_service_bytes_recursive", V1_IO_SERVICE_BYTES);
+        write(blkio, "blkio.throttle.io_serviced_recursive", V1_IO_SERVICED);
+
+        write(new File(new File(root, "pids"), path), "pids.current", "42\n");
+    }
+
+    public static void write(File dir, String name, String content) throws Exception {
+
+        assertTrue(dir.isDirectory() || dir.mkdirs());
+        assertTrue(Files.write(new File(dir, name), content));
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/cgroup-reader");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void read_V2() throws Exception {
+
+        writeV2(scratchDirectory, "docker/a1");
+
+        CgroupReader r = new CgroupReader(scratchDirectory, CgroupAddress.parse("docker/*"));
+        assertTrue(r.isV2());
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, ALL);
+
+        assertEquals(1, s.getCgroupCount());
+        assertEquals("docker/a1", r.getCgroupPath(s.getCgroup(0)));
+        assertTrue(s.isAdded(0));
+
+        assertEquals(1000000L, s.getValue(0, CgroupSnapshot.CPU_USAGE_USEC));
+        assertEquals(100L, s.getValue(0, CgroupSnapshot.NR_PERIODS));
+        assertEquals(10L, s.getValue(0, CgroupSnapshot.NR_THROTTLED));
+        assertEquals(50000L, s.getValue(0, CgroupSnapshot.THROTTLED_USEC));
+        assertEquals(209715200L, s.getValue(0, CgroupSnapshot.MEMORY_USED));
+        assertEquals(419430400L, s.getValue(0, CgroupSnapshot.MEMORY_LIMIT));
+        assertEquals(104857600L, s.getValue(0, CgroupSnapshot.MEMORY_ANON));
+        assertEquals(52428800L, s.getValue(0, CgroupSnapshot.MEMORY_FILE));
+        assertEquals(12L, s.getValue(0, CgroupSnapshot.PGMAJFAULT));
+        assertEquals(1L, s.getValue(0, CgroupSnapshot.OOM_KILLS));
+        assertEquals(2097152L, s.getValue(0, CgroupSnapshot.IO_READ_BYTES));
+        assertEquals(2097152L, s.getValue(0, CgroupSnapshot.IO_WRITE_BYTES));
+        assertEquals(110L, s.getValue(0, CgroupSnapshot.IO_READS));
+        assertEquals(200L, s.getValue(0, CgroupSnapshot.IO_WRITES));
+        assertEquals(42L, s.getValue(0, CgroupSnapshot.PIDS));
+
+        r.read(s, ALL);
+
+        assertEquals(1, s.getCgroupCount());
+        assertFalse(s.isAdded(0));
+
+        r.close();
+    }
+
+    @Test
+    public void read_V2_NoMemoryLimit() throws Exception {
+
+        File dir = writeV2(scratchDirectory, "docker/a1");
+        write(dir, "memory.max", "max\n");
+
+        CgroupReader r = new CgroupReader(scratchDirectory, CgroupAddress.parse("docker/*"));
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, CgroupReader.MEMORY);
+
+        assertEquals(209715200L, s.getValue(0, CgroupSnapshot.MEMORY_USED));
+        assertEquals(-1L, s.getValue(0, CgroupSnapshot.MEMORY_LIMIT));
+
+        r.close();
+    }
+
+    @Test
+    public void read_V1() throws Exception {
+
+        writeV1(scratchDirectory, "docker/a1");
+
+        CgroupReader r = new CgroupReader(scratchDirectory, CgroupAddress.parse("docker/*"));
+        assertFalse(r.isV2());
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, ALL);
+
+        assertEquals(1, s.getCgroupCount());
+        assertEquals("docker/a1", r.getCgroupPath(s.getCgroup(0)));
+
+        assertEquals(1000000L, s.getValue(0, CgroupSnapshot.CPU_USAGE_USEC));
+        assertEquals(100L, s.getValue(0, CgroupSnapshot.NR_PERIODS));
+        assertEquals(10L, s.getValue(0, CgroupSnapshot.NR_THROTTLED));
+        assertEquals(50000L, s.getValue(0, CgroupSnapshot.THROTTLED_USEC));
+        assertEquals(209715200L, s.getValue(0, CgroupSnapshot.MEMORY_USED));
+        assertEquals(-1L, s.getValue(0, CgroupSnapshot.MEMORY_LIMIT));
+        assertEquals(104857600L, s.getValue(0, CgroupSnapshot.MEMORY_ANON));
+        assertEquals(52428800L, s.getValue(0, CgroupSnapshot.MEMORY_FILE));
+        assertEquals(12L, s.getValue(0, CgroupSnapshot.PGMAJFAULT));
+        assertEquals(1L, s.getValue(0, CgroupSnapshot.OOM_KILLS));
+        assertEquals(2097152L, s.getValue(0, CgroupSnapshot.IO_READ_BYTES));
+        assertEquals(2097152L, s.getValue(0, CgroupSnapshot.IO_WRITE_BYTES));
+        assertEquals(110L, s.getValue(0, CgroupSnapshot.IO_READS));
+        assertEquals(200L, s.getValue(0, CgroupSnapshot.IO_WRITES));
+        assertEquals(42L, s.getValue(0, CgroupSnapshot.PIDS));
+
+        r.close();
+    }
+
+    @Test
+    public void read_V2_Pressure() throws Exception {
+
+        writeV2(scratchDirectory, "docker/a1");
+
+        CgroupReader r = new CgroupReader(scratchDirectory, CgroupAddress.parse("docker/*"));
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, CgroupReader.PRESSURE);
+
+        int cpu = CgroupSnapshot.PRESSURE + PressureSnapshot.CPU;
+        int io = CgroupSnapshot.PRESSURE + PressureSnapshot.IO;
+
+        assertEquals(3140L, s.getValue(0, cpu + PressureSnapshot.SOME_AVG10));
+        assertEquals(2186L, s.getValue(0, cpu + PressureSnapshot.SOME_AVG60));
+        assertEquals(131636571L, s.getValue(0, cpu + PressureSnapshot.SOME_TOTAL_USEC));
+        assertEquals(0L, s.getValue(0, cpu + PressureSnapshot.FULL_TOTAL_USEC));
+        assertEquals(995266L, s.getValue(0, io + PressureSnapshot.FULL_TOTAL_USEC));
+        assertEquals(-1L, s.getValue(0, CgroupSnapshot.PIDS));
+
+        r.close();
+    }
+
+    @Test
+    public void read_V1_NoPressure() throws Exception {
+
+        writeV1(scratchDirectory, "docker/a1");
+
+        CgroupReader r = new CgroupReader(scratchDirectory, CgroupAddress.parse("docker/*"));
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, CgroupReader.PRESSURE | CgroupReader.PIDS);
+
+        assertEquals(1, s.getCgroupCount());
+        assertEquals(42L, s.getValue(0, CgroupSnapshot.PIDS));
+        assertEquals(-1L, s.getValue(0, CgroupSnapshot.PRESSURE + PressureSnapshot.CPU + PressureSnapshot.SOME_AVG10));
+
+        r.close();
+    }
+
+    @Test
+    public void read_OnlyTheRequestedFiles() throws Exception {
+
+        writeV2(scratchDirectory, "docker/a1");
+
+        CgroupReader r = new CgroupReader(scratchDirectory, CgroupAddress.parse("docker/*"));
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, CgroupReader.PIDS);
+
+        assertEquals(42L, s.getValue(0, CgroupSnapshot.PIDS));
+        assertEquals(-1L, s.getValue(0, CgroupSnapshot.CPU_USAGE_USEC));
+        assertEquals(-1L, s.getValue(0, CgroupSnapshot.MEMORY_USED));
+        assertEquals(-1L, s.getValue(0, CgroupSnapshot.IO_READ_BYTES));
+
+        r.close();
+    }
+
+    @Test
+    public void read_ControllerNotEnabled() throws Exception {
+
+        File dir = writeV2(scratchDirectory, "docker/a1");
+
+        assertTrue(new File(dir, "memory.current").delete());
+        assertTrue(new File(dir, "memory.max").delete());
+
+        CgroupReader r = new CgroupReader(scratchDirectory, CgroupAddress.parse("docker/*"), 0L);
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, ALL);
+
+        assertEquals(1, s.getCgroupCount());
+        assertEquals(-1L, s.getValue(0, CgroupSnapshot.MEMORY_USED));
+        assertEquals(42L, s.getValue(0, CgroupSnapshot.PIDS));
+
+        //
+        // the controller is enabled, and picked up at the next discovery
+        //
+
+        write(dir, "memory.current", "1024\n");
+
+        r.read(s, ALL);
+
+        assertEquals(1024L, s.getValue(0, CgroupSnapshot.MEMORY_USED));
+
+        r.close();
+    }
+
+    @Test
+    public void discovery_NotOnEveryRead() throws Exception {
+
+        writeV2(scratchDirectory, "docker/a1");
+
+        CgroupReader r = new CgroupReader(scratchDirectory, CgroupAddress.parse("docker/*"), 3600000L);
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, CgroupReader.PIDS);
+
+        assertEquals(1, s.getCgroupCount());
+
+        writeV2(scratchDirectory, "docker/b2");
+
+        r.read(s, CgroupReader.PIDS);
+
+        assertEquals(1, s.getCgroupCount());
+
+        r.discover();
+
+        r.read(s, CgroupReader.PIDS);
+
+        assertEquals(2, s.getCgroupCount());
+        assertEquals("docker/a1", r.getCgroupPath(s.getCgroup(0)));
+        assertFalse(s.isAdded(0));
+        assertEquals("docker/b2", r.getCgroupPath(s.getCgroup(1)));
+        assertTrue(s.isAdded(1));
+
+        r.close();
+    }
+
+    @Test
+    public void read_CgroupRemovedBetweenDiscoveries() throws Exception {
+
+        writeV2(scratchDirectory, "docker/a1");
+        writeV2(scratchDirectory, "docker/b2");
+
+        CgroupReader r = new CgroupReader(scratchDirectory, CgroupAddress.parse("docker/*"), 3600000L);
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, CgroupReader.PIDS);
+
+        assertEquals(2, s.getCgroupCount());
+
+        int index = s.getCgroup(0);
+
+        assertTrue(Files.rmdir(new File(scratchDirectory, "docker/a1"), false));
+
+        //
+        // the files of a removed cgroup fail, like the memory files, which were never opened, do here
+        //
+
+        r.read(s, CgroupReader.MEMORY);
+
+        assertEquals(1, s.getCgroupCount());
+        assertEquals("docker/b2", r.getCgroupPath(s.getCgroup(0)));
+        assertEquals(209715200L, s.getValue(0, CgroupSnapshot.MEMORY_USED));
+
+        //
+        // a new cgroup reuses the free index, and is marked as added
+        //
+
+        writeV2(scratchDirectory, "docker/c3");
+
+        r.discover();
+        r.read(s, CgroupReader.PIDS);
+
+        assertEquals(2, s.getCgroupCount());
+        assertEquals(2, r.getRegistrySize());
+        assertEquals("docker/c3", r.getCgroupPath(s.getCgroup(1)));
+        assertEquals(index, s.getCgroup(1));
+        assertTrue(s.isAdded(1));
+
+        r.close();
+    }
+
+    @Test
+    public void read_Root() throws Exception {
+
+        writeV2(scratchDirectory, ".");
+        writeV2(scratchDirectory, "docker/a1");
+
+        CgroupReader r = new CgroupReader(scratchDirectory, CgroupAddress.parse("/"));
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, CgroupReader.PIDS);
+
+        assertEquals(1, s.getCgroupCount());
+        assertEquals("/", r.getCgroupPath(s.getCgroup(0)));
+        assertEquals(42L, s.getValue(0, CgroupSnapshot.PIDS));
+
+        r.close();
+    }
+
+    @Test
+    public void read_Excludes() throws Exception {
+
+        writeV2(scratchDirectory, "system.slice/docker-a1.scope");
+        writeV2(scratchDirectory, "system.slice/docker-b2.scope");
+        writeV2(scratchDirectory, "system.slice/sshd.service");
+
+        CgroupReader r = new CgroupReader(
+                scratchDirectory, CgroupAddress.parse("system.slice/*,!system.slice/docker-b2.scope"));
+
+        CgroupSnapshot s = new CgroupSnapshot();
+
+        r.read(s, CgroupReader.PIDS);
+
+        assertEquals(2, s.getCgroupCount());
+        assertEquals("system.slice/docker-a1.scope", r.getCgroupPath(s.getCgroup(0)));
+        assertEquals("system.slice/sshd.service", r.getCgroupPath(s.getCgroup(1)));
+
+        r.close();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CpuCoreMetricDefinitionTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isCpuCoreMetricDeclaration() throws Exception {
+
+        assertTrue(CpuCoreMetricDefinition.isCpuCoreMetricDeclaration("cores/CpuTime"));
+        assertFalse(CpuCoreMetricDefinition.isCpuCoreMetricDeclaration("CpuUserTime"));
+        assertFalse(CpuCoreMetricDefinition.isCpuCoreMetricDeclaration(null));
+    }
+
+    @Test
+    public void parse() throws Exception {
+
+        CpuCoreMetricDefinition d = CpuCoreMetricDefinition.parse(new PropertyFactory(), "cores/CpuStolenTime");
+
+        assertEquals(CpuCoreMetric.CPU_STOLEN_TIME, d.getMetric());
+        assertEquals("CpuStolenTime", d.getId());
+        assertEquals(Double.class, d.getType());
+        assertNull(d.getBaseUnit());
+        assertEquals(new CpuCoresAddress(), d.getMetricSourceAddress());
+        assertEquals("cores/CpuStolenTime", d.toString());
+    }
+
+    @Test
+    public void parse_Summary() throws Exception {
+
+        CpuCoreMetricDefinition d = CpuCoreMetricDefinition.parse(new PropertyFactory(), "cores/BusiestCore");
+
+        assertEquals(CpuCoreMetric.Kind.SUMMARY, d.getMetric().getKind());
+        assertEquals(Long.class, d.getType());
+    }
+
+    @Test
+    public void parse_UnknownMetric() throws Exception {
+
+        try {
+
+            CpuCoreMetricDefinition.parse(new PropertyFactory(), "cores/NoSuchMetric");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertEquals("unknown per-CPU metric \"NoSuchMetric\"", msg);
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CpuCoresMetricSourceTest extends LinuxMetricSourceBaseTest<CpuCoresMetricSource> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void collectMetrics_FirstReadingReportsAveragesSinceBoot() throws Exception {
+
+        CpuCoresMetricSource s = getMetricSourceToTest();
+
+        List<Property> properties = s.collectMetrics(definitions("CpuUserTime", "CpuIoWaitTime"));
+
+        assertEquals(4, properties.size());
+
+        Property p = properties.get(0);
+        assertEquals("CpuUserTime[0]", p.getName());
+        assertEquals(100d * 100 / 640, (Double)p.getValue(), 0.0000001);
+
+        p = properties.get(1);
+        assertEquals("CpuUserTime[2]", p.getName());
+        assertEquals(100d * 200 / 760, (Double)p.getValue(), 0.0000001);
+
+        p = properties.get(2);
+        assertEquals("CpuIoWaitTime[0]", p.getName());
+        assertEquals(100d * 20 / 640, (Double)p.getValue(), 0.0000001);
+
+        assertEquals("CpuIoWaitTime[2]", properties.get(3).getName());
+    }
+
+    @Test
+    public void collectMetrics_PercentagesAreComputedBetweenSamples() throws Exception {
+
+        CpuCoresMetricSource s = getMetricSourceToTest();
+
+        List<MetricDefinition> mds = definitions(
+                "CpuTime", "MaxCoreCpuTime", "MinCoreCpuTime", "CoreCpuTimeSpread", "BusiestCore", "CoreCount");
+
+        s.collectMetrics(mds);
+
+        //
+        // cpu0 spent the interval in user mode, cpu2 was idle
+        //
+
+        CpuCoresReaderTest.writeStat(scratchDirectory,
+                "cpu  400 0 60 1100 40 0 0 0 0 0\n" +
+                "cpu0 200 0 20 500 20 0 0 0 0 0\n" +
+                "cpu2 200 0 40 600 20 0 0 0 0 0\n" +
+                "intr 1\n");
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(7, properties.size());
+
+        assertEquals("CpuTime[0]", properties.get(0).getName());
+        assertEquals(100d, (Double)properties.get(0).getValue(), 0.0000001);
+        assertEquals("CpuTime[2]", properties.get(1).getName());
+        assertEquals(0d, (Double)properties.get(1).getValue(), 0.0000001);
+
+        assertEquals("MaxCoreCpuTime", properties.get(2).getName());
+        assertEquals(100d, (Double)properties.get(2).getValue(), 0.0000001);
+        assertEquals(0d, (Double)properties.get(3).getValue(), 0.0000001);
+        assertEquals(100d, (Double)properties.get(4).getValue(), 0.0000001);
+
+        assertEquals("BusiestCore", properties.get(5).getName());
+        assertEquals(0L, properties.get(5).getValue());
+        assertEquals(2L, properties.get(6).getValue());
+    }
+
+    @Test
+    public void collectMetrics_CoreWithoutNewTicksReportsLastKnownValues() throws Exception {
+
+        CpuCoresMetricSource s = getMetricSourceToTest();
+
+        List<MetricDefinition> mds = definitions("CpuTime");
+
+        s.collectMetrics(mds);
+
+        CpuCoresReaderTest.writeStat(scratchDirectory,
+                "cpu  400 0 60 1100 40 0 0 0 0 0\n" +
+                "cpu0 200 0 20 500 20 0 0 0 0 0\n" +
+                "cpu2 200 0 40 600 20 0 0 0 0 0\n");
+
+        s.collectMetrics(mds);
+
+        //
+        // only cpu2 advanced, and it was busy
+        //
+
+        CpuCoresReaderTest.writeStat(scratchDirectory,
+                "cpu  500 0 60 1100 40 0 0 0 0 0\n" +
+                "cpu0 200 0 20 500 20 0 0 0 0 0\n" +
+                "cpu2 300 0 40 600 20 0 0 0 0 0\n");
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(100d, (Double)properties.get(0).getValue(), 0.0000001);
+        assertEquals(100d, (Double)properties.get(1).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void collectMetrics_CoreGoesOnline() throws Exception {
+
+        CpuCoresMetricSource s = getMetricSourceToTest();
+
+        List<MetricDefinition> mds = definitions("CoreCount", "CpuUserTime");
+
+        s.collectMetrics(mds);
+
+        CpuCoresReaderTest.writeStat(scratchDirectory,
+                "cpu  300 0 60 1000 40 0 0 0 0 0\n" +
+                "cpu0 100 0 20 500 20 0 0 0 0 0\n" +
+                "cpu1 10 0 0 90 0 0 0 0 0 0\n" +
+                "cpu2 200 0 40 500 20 0 0 0 0 0\n");
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(4, properties.size());
+        assertEquals(3L, properties.get(0).getValue());
+        assertEquals("CpuUserTime[1]", properties.get(2).getName());
+        assertEquals(10d, (Double)properties.get(2).getValue(), 0.0000001);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected String getScratchDirectoryName() {
+
+        return "cores-source";
+    }
+
+    @Override
+    protected CpuCoresAddress getAddressToTest() {
+
+        return new CpuCoresAddress();
+    }
+
+    @Override
+    protected CpuCoresMetricSource getMetricSourceToTest() {
+
+        return new CpuCoresMetricSource(getAddressToTest(), new CpuCoresReader(scratchDirectory), pf);
+    }
+
+    @Override
+    protected MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate) {
+
+        return new CpuCoresMetricSourceFactory(delegate, scratchDirectory);
+    }
+
+    @Override
+    protected String getMetricIdToTest() {
+
+        return "CpuUserTime";
+    }
+
+    @Override
+    protected String getForeignMetricMessage() {
+
+        return "are per-CPU metrics";
+    }
+
+    @Override
+    protected void populate() throws Exception {
+
+        CpuCoresReaderTest.writeStat(scratchDirectory, CpuCoresReaderTest.STAT);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
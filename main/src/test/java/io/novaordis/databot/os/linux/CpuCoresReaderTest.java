@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CpuCoresReaderTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // cpu1 is offline
+    //
+    public static final String STAT =
+            "cpu  300 0 60 1000 40 0 0 0 0 0\n" +
+            "cpu0 100 0 20 500 20 0 0 0 0 0\n" +
+            "cpu2 200 0 40 500 20 0 0 0 0 0\n" +
+            "intr 114930548 113199788 3 0 5 263 0 4 [... 242 more numbers ...]\n" +
+            "ctxt 1990473\n" +
+            "btime 1062191376\n" +
+            "processes 2915\n" +
+            "procs_running 1\n" +
+            "procs_blocked 0\n";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void writeStat(File procRoot, String content) throws Exception {
+
+        assertTrue(Files.write(new File(procRoot, "stat"), content));
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/proc-cores");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parseStat() throws Exception {
+
+        CpuCoresSnapshot s = new CpuCoresSnapshot();
+
+        CpuCoresReader.parseStat(ByteCursorTest.cursor(STAT), s);
+
+        assertEquals(2, s.getCoreCount());
+
+        assertEquals(0, s.getCoreId(0));
+        assertEquals(100L, s.getTicks(0, LocalOSSnapshot.CPU_USER));
+        assertEquals(20L, s.getTicks(0, LocalOSSnapshot.CPU_SYSTEM));
+        assertEquals(640L, s.getTotalTicks(0));
+
+        assertEquals(2, s.getCoreId(1));
+        assertEquals(200L, s.getTicks(1, LocalOSSnapshot.CPU_USER));
+        assertEquals(20L, s.getTicks(1, LocalOSSnapshot.CPU_IOWAIT));
+        assertEquals(760L, s.getTotalTicks(1));
+    }
+
+    @Test
+    public void parseStat_OlderKernelFewerFields() throws Exception {
+
+        CpuCoresSnapshot s = new CpuCoresSnapshot();
+
+        CpuCoresReader.parseStat(ByteCursorTest.cursor("cpu  1 2 3 4\ncpu0 1 2 3 4\nintr 1\n"), s);
+
+        assertEquals(1, s.getCoreCount());
+        assertEquals(4L, s.getTicks(0, LocalOSSnapshot.CPU_IDLE));
+        assertEquals(0L, s.getTicks(0, LocalOSSnapshot.CPU_IOWAIT));
+        assertEquals(0L, s.getTicks(0, LocalOSSnapshot.CPU_STEAL));
+    }
+
+    @Test
+    public void parseStat_NoPerCpuLines() throws Exception {
+
+        try {
+
+            CpuCoresReader.parseStat(ByteCursorTest.cursor("cpu  1 2 3 4\nintr 1\n"), new CpuCoresSnapshot());
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertEquals("no per-CPU lines in /proc/stat", msg);
+        }
+    }
+
+    @Test
+    public void parseStat_MoreCoresThanTheInitialCapacity() throws Exception {
+
+        StringBuilder sb = new StringBuilder("cpu  0 0 0 0 0 0 0 0 0 0\n");
+
+        int cores = CpuCoresSnapshot.INITIAL_CORE_CAPACITY * 2 + 1;
+
+        for(int i = 0; i < cores; i ++) {
+
+            sb.append("cpu").append(i).append(" ").append(i).append(" 0 0 100 0 0 0 0 0 0\n");
+        }
+
+        CpuCoresSnapshot s = new CpuCoresSnapshot();
+
+        CpuCoresReader.parseStat(ByteCursorTest.cursor(sb.toString()), s);
+
+        assertEquals(cores, s.getCoreCount());
+
+        for(int i = 0; i < cores; i ++) {
+
+            assertEquals(i, s.getCoreId(i));
+            assertEquals((long)i, s.getTicks(i, LocalOSSnapshot.CPU_USER));
+        }
+    }
+
+    @Test
+    public void read() throws Exception {
+
+        writeStat(scratchDirectory, STAT);
+
+        CpuCoresReader r = new CpuCoresReader(scratchDirectory);
+
+        CpuCoresSnapshot s = new CpuCoresSnapshot();
+
+        r.read(s);
+
+        assertEquals(2, s.getCoreCount());
+        assertTrue(s.getTimestampNanos() != 0L);
+
+        r.close();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DiskMetricDefinitionTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isDiskMetricDeclaration() throws Exception {
+
+        assertTrue(DiskMetricDefinition.isDiskMetricDeclaration("disks/Await"));
+        assertTrue(DiskMetricDefinition.isDiskMetricDeclaration("disks:no-loop/Await"));
+        assertFalse(DiskMetricDefinition.isDiskMetricDeclaration("disksAwait"));
+        assertFalse(DiskMetricDefinition.isDiskMetricDeclaration(null));
+    }
+
+    @Test
+    public void parse() throws Exception {
+
+        DiskMetricDefinition d = DiskMetricDefinition.parse(new PropertyFactory(), "disks/Utilization");
+
+        assertEquals(DiskMetric.UTILIZATION, d.getMetric());
+        assertEquals("Utilization", d.getId());
+        assertEquals(Double.class, d.getType());
+        assertNull(d.getBaseUnit());
+        assertEquals(new DisksAddress(), d.getMetricSourceAddress());
+        assertEquals("disks/Utilization", d.toString());
+    }
+
+    @Test
+    public void parse_Filters() throws Exception {
+
+        DiskMetricDefinition d = DiskMetricDefinition.parse(
+                new PropertyFactory(), "disks:no-loop,no-partitions/MountUsedSpace");
+
+        assertEquals(DiskMetric.MOUNT_USED_SPACE, d.getMetric());
+        assertEquals(Long.class, d.getType());
+        assertEquals(MemoryMeasureUnit.BYTE, d.getBaseUnit());
+
+        DisksAddress a = (DisksAddress)d.getMetricSourceAddress();
+        assertTrue(a.isNoPartitions());
+        assertTrue(a.isNoLoop());
+
+        //
+        // the literal is normalized, so the filter order does not matter
+        //
+
+        assertEquals("disks:no-partitions,no-loop", a.getLiteral());
+        assertEquals(new DisksAddress(true, true), a);
+        assertNotEquals(new DisksAddress(true, false), a);
+    }
+
+    @Test
+    public void parse_UnknownFilter() throws Exception {
+
+        try {
+
+            DiskMetricDefinition.parse(new PropertyFactory(), "disks:no-ssd/Await");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("unknown device filter \"no-ssd\""));
+        }
+    }
+
+    @Test
+    public void parse_UnknownMetric() throws Exception {
+
+        try {
+
+            DiskMetricDefinition.parse(new PropertyFactory(), "disks/NoSuchMetric");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertEquals("unknown block device metric \"NoSuchMetric\"", msg);
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DiskStatsReaderTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // sda has the 4.18+ discard and flush fields, the old-style sdb only has the first four counters
+    //
+    public static final String DISKSTATS =
+            "   8       0 sda 4217 1011 389354 2112 10372 7861 483218 12830 0 7248 14943 0 0 0 0 0 0\n" +
+            "   8       1 sda1 4000 1000 380000 2000 10000 7800 480000 12800 0 7200 14800 0 0 0 0 0 0\n" +
+            "   7       0 loop0 60 0 2000 10 0 0 0 0 0 20 10 0 0 0 0\n" +
+            "   8      16 sdb 100 0 200 300\n";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void writeDiskStats(File procRoot, String content) throws Exception {
+
+        assertTrue(Files.write(new File(procRoot, "diskstats"), content));
+    }
+
+    private static ByteBuffer buffer(String content) {
+
+        return ByteBuffer.wrap(content.getBytes());
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/proc-disks");
+
+    private File sysBlock;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+
+        //
+        // whole disks have a /sys/block entry
+        //
+
+        sysBlock = new File(scratchDirectory, "sys-block");
+
+        for(String disk: new String[] { "sda", "sdb", "loop0" }) {
+
+            assertTrue(new File(sysBlock, disk).mkdirs());
+        }
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parseDiskStats() throws Exception {
+
+        DiskStatsReader r = new DiskStatsReader(scratchDirectory, sysBlock, false, false);
+
+        DiskStatsSnapshot s = new DiskStatsSnapshot();
+
+        r.parseDiskStats(buffer(DISKSTATS), s);
+
+        assertEquals(4, s.getDeviceCount());
+
+        assertEquals("sda", r.getDeviceName(s.getDevice(0)));
+        assertEquals(4217L, s.getCounter(0, DiskStatsSnapshot.READS));
+        assertEquals(389354L, s.getCounter(0, DiskStatsSnapshot.SECTORS_READ));
+        assertEquals(12830L, s.getCounter(0, DiskStatsSnapshot.WRITE_MS));
+        assertEquals(0L, s.getCounter(0, DiskStatsSnapshot.IN_FLIGHT));
+        assertEquals(14943L, s.getCounter(0, DiskStatsSnapshot.WEIGHTED_IO_MS));
+
+        assertEquals("sda1", r.getDeviceName(s.getDevice(1)));
+        assertEquals("loop0", r.getDeviceName(s.getDevice(2)));
+
+        assertEquals("sdb", r.getDeviceName(s.getDevice(3)));
+        assertEquals(300L, s.getCounter(3, DiskStatsSnapshot.READ_MS));
+        assertEquals(0L, s.getCounter(3, DiskStatsSnapshot.WRITES));
+        assertEquals(0L, s.getCounter(3, DiskStatsSnapshot.WEIGHTED_IO_MS));
+    }
+
+    @Test
+    public void parseDiskStats_DevicesAreRegisteredOnce() throws Exception {
+
+        DiskStatsReader r = new DiskStatsReader(scratchDirectory, sysBlock, false, false);
+
+        DiskStatsSnapshot s = new DiskStatsSnapshot();
+
+        r.parseDiskStats(buffer(DISKSTATS), s);
+
+        int sdb = s.getDevice(3);
+
+        assertEquals(4, r.getDeviceRegistrySize());
+
+        //
+        // a new device shows up, sda1 is gone, the order changes
+        //
+
+        r.parseDiskStats(buffer(
+                "8 16 sdb 1 0 2 3\n" +
+                "8 0 sda 1 0 2 3 4 0 5 6 0 7 8\n" +
+                "8 32 sdc 1 0 2 3 4 0 5 6 0 7 8\n"), s);
+
+        assertEquals(3, s.getDeviceCount());
+        assertEquals(5, r.getDeviceRegistrySize());
+        assertEquals(sdb, s.getDevice(0));
+        assertEquals("sda", r.getDeviceName(s.getDevice(1)));
+        assertEquals("sdc", r.getDeviceName(s.getDevice(2)));
+        assertEquals(4, s.getDevice(2));
+    }
+
+    @Test
+    public void parseDiskStats_NoPartitionsNoLoop() throws Exception {
+
+        DiskStatsReader r = new DiskStatsReader(scratchDirectory, sysBlock, true, true);
+
+        DiskStatsSnapshot s = new DiskStatsSnapshot();
+
+        r.parseDiskStats(buffer(DISKSTATS), s);
+
+        assertEquals(2, s.getDeviceCount());
+        assertEquals("sda", r.getDeviceName(s.getDevice(0)));
+        assertEquals("sdb", r.getDeviceName(s.getDevice(1)));
+        assertEquals(4217L, s.getCounter(0, DiskStatsSnapshot.READS));
+        assertEquals(100L, s.getCounter(1, DiskStatsSnapshot.READS));
+    }
+
+    @Test
+    public void parseDiskStats_NoSysBlock_NothingIsAPartition() throws Exception {
+
+        DiskStatsReader r = new DiskStatsReader(
+                scratchDirectory, new File(scratchDirectory, "no-such-dir"), true, false);
+
+        DiskStatsSnapshot s = new DiskStatsSnapshot();
+
+        r.parseDiskStats(buffer(DISKSTATS), s);
+
+        assertEquals(4, s.getDeviceCount());
+    }
+
+    @Test
+    public void parseDiskStats_ManyDevices() throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < 300; i ++) {
+
+            sb.append("253 ").append(i).append(" dm-").append(i).append(" ").append(i).append(" 0 0 0 0 0 0 0 0 0 0\n");
+        }
+
+        DiskStatsReader r = new DiskStatsReader(scratchDirectory, sysBlock, false, false);
+
+        DiskStatsSnapshot s = new DiskStatsSnapshot();
+
+        r.parseDiskStats(buffer(sb.toString()), s);
+
+        assertEquals(300, s.getDeviceCount());
+        assertEquals("dm-299", r.getDeviceName(s.getDevice(299)));
+        assertEquals(299L, s.getCounter(299, DiskStatsSnapshot.READS));
+    }
+
+    @Test
+    public void parseDiskStats_MissingDeviceName() throws Exception {
+
+        DiskStatsReader r = new DiskStatsReader(scratchDirectory, sysBlock, false, false);
+
+        try {
+
+            r.parseDiskStats(buffer("8 0\n"), new DiskStatsSnapshot());
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("missing device name"));
+        }
+    }
+
+    @Test
+    public void readMounts() throws Exception {
+
+        File data = new File(scratchDirectory, "data dir");
+        assertTrue(data.mkdirs());
+
+        String mounts =
+                "sysfs /sys sysfs rw,nosuid,nodev,noexec,relatime 0 0\n" +
+                "/dev/sda1 " + scratchDirectory.getAbsolutePath() + " ext4 rw,relatime 0 0\n" +
+                "/dev/sdb1 " + data.getAbsolutePath().replace(" ", "\\040") + " xfs rw,relatime 0 0\n" +
+                "/dev/loop0 " + sysBlock.getAbsolutePath() + " squashfs ro 0 0\n" +
+                "/dev/sdc1 /no/such/mount/point ext4 rw 0 0\n";
+
+        DiskStatsReader r = new DiskStatsReader(scratchDirectory, sysBlock, false, true);
+
+        DiskStatsSnapshot s = new DiskStatsSnapshot();
+
+        r.readMounts(buffer(mounts), s);
+
+        assertEquals(2, s.getMountCount());
+        assertEquals(1, s.getMountGeneration());
+
+        assertEquals(scratchDirectory.getAbsolutePath(), r.getMountPoint(s.getMount(0)));
+        assertEquals(data.getAbsolutePath(), r.getMountPoint(s.getMount(1)));
+
+        long total = s.getSpace(0, DiskStatsSnapshot.TOTAL_SPACE);
+        assertTrue(total > 0);
+        assertTrue(s.getSpace(0, DiskStatsSnapshot.USED_SPACE) <= total);
+        assertTrue(s.getSpace(0, DiskStatsSnapshot.AVAILABLE_SPACE) <= total);
+
+        //
+        // same content, not parsed again
+        //
+
+        r.readMounts(buffer(mounts), s);
+        assertEquals(1, s.getMountGeneration());
+
+        r.readMounts(buffer("/dev/sda1 " + scratchDirectory.getAbsolutePath() + " ext4 rw 0 0\n"), s);
+        assertEquals(2, s.getMountGeneration());
+        assertEquals(1, s.getMountCount());
+        assertEquals(1, r.getMountTableSize());
+    }
+
+    @Test
+    public void decodeMountPoint() throws Exception {
+
+        assertEquals("/mnt/a b", DiskStatsReader.decodeMountPoint("/mnt/a\\040b"));
+        assertEquals("/mnt/a\\b", DiskStatsReader.decodeMountPoint("/mnt/a\\134b"));
+        assertEquals("/mnt/plain", DiskStatsReader.decodeMountPoint("/mnt/plain"));
+        assertEquals("/mnt/x\\9", DiskStatsReader.decodeMountPoint("/mnt/x\\9"));
+    }
+
+    @Test
+    public void read() throws Exception {
+
+        writeDiskStats(scratchDirectory, DISKSTATS);
+
+        assertTrue(DiskStatsReader.isAvailable(scratchDirectory));
+
+        DiskStatsReader r = new DiskStatsReader(scratchDirectory, sysBlock, true, false);
+
+        DiskStatsSnapshot s = new DiskStatsSnapshot();
+
+        //
+        // no mounts file under the scratch root
+        //
+
+        r.read(s);
+
+        assertEquals(3, s.getDeviceCount());
+        assertEquals(0, s.getMountCount());
+        assertTrue(s.getTimestampNanos() > 0);
+
+        r.close();
+    }
+
+    @Test
+    public void isAvailable() throws Exception {
+
+        assertFalse(DiskStatsReader.isAvailable(new File(scratchDirectory, "no-such-dir")));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
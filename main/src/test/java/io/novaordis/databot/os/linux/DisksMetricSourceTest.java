@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.databot.MockMetricSourceFactory;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.events.api.metric.MetricSourceException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class DisksMetricSourceTest extends LinuxMetricSourceBaseTest<DisksMetricSource> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void intervalValue() throws Exception {
+
+        long[] d = new long[DiskStatsSnapshot.FIELD_COUNT];
+
+        d[DiskStatsSnapshot.READS] = 200;
+        d[DiskStatsSnapshot.SECTORS_READ] = 4000;
+        d[DiskStatsSnapshot.READ_MS] = 1000;
+        d[DiskStatsSnapshot.WRITES] = 50;
+        d[DiskStatsSnapshot.SECTORS_WRITTEN] = 800;
+        d[DiskStatsSnapshot.WRITE_MS] = 1500;
+        d[DiskStatsSnapshot.IO_MS] = 1500;
+        d[DiskStatsSnapshot.WEIGHTED_IO_MS] = 5000;
+
+        assertEquals(100d, DisksMetricSource.intervalValue(DiskMetric.READS_PER_SECOND, d, 0, 2d), 0.0000001);
+        assertEquals(25d, DisksMetricSource.intervalValue(DiskMetric.WRITES_PER_SECOND, d, 0, 2d), 0.0000001);
+        assertEquals(1024000d, DisksMetricSource.intervalValue(DiskMetric.READ_BYTES_PER_SECOND, d, 0, 2d), 0.0000001);
+        assertEquals(204800d, DisksMetricSource.intervalValue(DiskMetric.WRITE_BYTES_PER_SECOND, d, 0, 2d), 0.0000001);
+        assertEquals(5d, DisksMetricSource.intervalValue(DiskMetric.READ_AWAIT, d, 0, 2d), 0.0000001);
+        assertEquals(30d, DisksMetricSource.intervalValue(DiskMetric.WRITE_AWAIT, d, 0, 2d), 0.0000001);
+        assertEquals(10d, DisksMetricSource.intervalValue(DiskMetric.AWAIT, d, 0, 2d), 0.0000001);
+        assertEquals(2.5d, DisksMetricSource.intervalValue(DiskMetric.QUEUE_DEPTH, d, 0, 2d), 0.0000001);
+        assertEquals(75d, DisksMetricSource.intervalValue(DiskMetric.UTILIZATION, d, 0, 2d), 0.0000001);
+
+        //
+        // utilization is capped, an idle device has no await
+        //
+
+        assertEquals(100d, DisksMetricSource.intervalValue(DiskMetric.UTILIZATION, d, 0, 1d), 0.0000001);
+        assertEquals(0d, DisksMetricSource.intervalValue(
+                DiskMetric.READ_AWAIT, new long[DiskStatsSnapshot.FIELD_COUNT], 0, 1d), 0.0000001);
+    }
+
+    @Test
+    public void collectMetrics_FirstReadingOnlyReportsGauges() throws Exception {
+
+        DisksMetricSource s = getMetricSourceToTest();
+
+        List<Property> properties = s.collectMetrics(definitions("ReadsPerSecond", "Await", "InFlight"));
+
+        assertEquals(2, properties.size());
+
+        assertEquals("InFlight[sda]", properties.get(0).getName());
+        assertEquals(2L, properties.get(0).getValue());
+        assertEquals("InFlight[sdb]", properties.get(1).getName());
+        assertEquals(0L, properties.get(1).getValue());
+    }
+
+    @Test
+    public void collectMetrics_AwaitIsComputedBetweenSamples() throws Exception {
+
+        DisksMetricSource s = getMetricSourceToTest();
+
+        List<MetricDefinition> mds = definitions("ReadAwait", "WriteAwait", "Await", "ReadsPerSecond");
+
+        s.collectMetrics(mds);
+
+        //
+        // sda: 100 reads that took 600 ms, 50 writes that took 900 ms; sdb: idle; sdc: new
+        //
+
+        DiskStatsReaderTest.writeDiskStats(scratchDirectory,
+                "8 0 sda 200 0 2000 800 100 0 1600 1200 0 900 2000\n" +
+                "8 16 sdb 10 0 100 20 0 0 0 0 0 10 20\n" +
+                "8 32 sdc 5 0 10 5 0 0 0 0 0 5 5\n");
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(8, properties.size());
+
+        assertEquals("ReadAwait[sda]", properties.get(0).getName());
+        assertEquals(6d, (Double)properties.get(0).getValue(), 0.0000001);
+        assertEquals("ReadAwait[sdb]", properties.get(1).getName());
+        assertEquals(0d, (Double)properties.get(1).getValue(), 0.0000001);
+
+        assertEquals("WriteAwait[sda]", properties.get(2).getName());
+        assertEquals(18d, (Double)properties.get(2).getValue(), 0.0000001);
+
+        assertEquals("Await[sda]", properties.get(4).getName());
+        assertEquals(10d, (Double)properties.get(4).getValue(), 0.0000001);
+
+        assertEquals("ReadsPerSecond[sda]", properties.get(6).getName());
+        assertTrue((Double)properties.get(6).getValue() > 0);
+        assertEquals("ReadsPerSecond[sdb]", properties.get(7).getName());
+        assertEquals(0d, (Double)properties.get(7).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void collectMetrics_CounterGoesBack() throws Exception {
+
+        DisksMetricSource s = getMetricSourceToTest();
+
+        List<MetricDefinition> mds = definitions("ReadAwait");
+
+        s.collectMetrics(mds);
+
+        DiskStatsReaderTest.writeDiskStats(scratchDirectory,
+                "8 0 sda 10 0 100 20 0 0 0 0 0 10 20\n");
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(1, properties.size());
+        assertEquals(0d, (Double)properties.get(0).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void factory_DiskStatsNotAvailable() throws Exception {
+
+        DisksMetricSourceFactory f = new DisksMetricSourceFactory(
+                new MockMetricSourceFactory(pf), new File(scratchDirectory, "no-such-dir"));
+
+        try {
+
+            f.buildMetricSource(new DisksAddress());
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("diskstats not available"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected String getScratchDirectoryName() {
+
+        return "disks-source";
+    }
+
+    @Override
+    protected DisksAddress getAddressToTest() {
+
+        return new DisksAddress();
+    }
+
+    @Override
+    protected DisksMetricSource getMetricSourceToTest() {
+
+        return new DisksMetricSource(getAddressToTest(),
+                new DiskStatsReader(scratchDirectory, new File(scratchDirectory, "sys-block"), false, false), pf);
+    }
+
+    @Override
+    protected MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate) {
+
+        return new DisksMetricSourceFactory(delegate, scratchDirectory);
+    }
+
+    @Override
+    protected String getMetricIdToTest() {
+
+        return "InFlight";
+    }
+
+    @Override
+    protected String getForeignMetricMessage() {
+
+        return "are block device metrics";
+    }
+
+    @Override
+    protected void populate() throws Exception {
+
+        DiskStatsReaderTest.writeDiskStats(scratchDirectory,
+                "8 0 sda 100 0 1000 200 50 0 800 300 2 400 500\n" +
+                "8 16 sdb 10 0 100 20 0 0 0 0 0 10 20\n");
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
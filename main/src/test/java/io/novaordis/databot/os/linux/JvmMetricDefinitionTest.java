@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmMetricDefinitionTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isJvmMetricDeclaration() throws Exception {
+
+        assertTrue(JvmMetricDefinition.isJvmMetricDeclaration("jvm:main:Main/HeapUsed"));
+        assertFalse(JvmMetricDefinition.isJvmMetricDeclaration("jmx://localhost:9999/java.lang:type=Memory"));
+        assertFalse(JvmMetricDefinition.isJvmMetricDeclaration(null));
+    }
+
+    @Test
+    public void parse_MainClass() throws Exception {
+
+        JvmMetricDefinition d =
+                JvmMetricDefinition.parse(new PropertyFactory(), "jvm:main:org.jboss.modules.Main/HeapUsed");
+
+        assertEquals(JvmMetric.HEAP_USED, d.getMetric());
+        assertEquals("HeapUsed", d.getId());
+        assertEquals(Long.class, d.getType());
+        assertEquals(MemoryMeasureUnit.BYTE, d.getBaseUnit());
+
+        JvmAddress a = (JvmAddress)d.getMetricSourceAddress();
+        assertEquals("org.jboss.modules.Main", a.getTarget().getMainClass());
+        assertEquals("jvm:main:org.jboss.modules.Main", a.getLiteral());
+        assertEquals("jvm", a.getProtocol());
+        assertNull(a.getHost());
+        assertEquals("jvm:main:org.jboss.modules.Main/HeapUsed", d.toString());
+    }
+
+    @Test
+    public void parse_PidFileTargetContainsSlashes() throws Exception {
+
+        JvmMetricDefinition d =
+                JvmMetricDefinition.parse(new PropertyFactory(), "jvm:pidfile:/var/run/jboss.pid/OldGcTimePercentage");
+
+        assertEquals(JvmMetric.OLD_GC_TIME_PERCENTAGE, d.getMetric());
+        assertEquals(Double.class, d.getType());
+        assertNull(d.getBaseUnit());
+
+        JvmAddress a = (JvmAddress)d.getMetricSourceAddress();
+        assertEquals("/var/run/jboss.pid", a.getTarget().getProcessTarget().getPidFile().getPath());
+    }
+
+    @Test
+    public void parse_SameTargetSameAddress() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+
+        JvmMetricDefinition d = JvmMetricDefinition.parse(pf, "jvm:main:Main/YoungGcCount");
+        JvmMetricDefinition d2 = JvmMetricDefinition.parse(pf, "jvm:main:Main/LiveThreads");
+
+        assertEquals(d.getMetricSourceAddress(), d2.getMetricSourceAddress());
+    }
+
+    @Test
+    public void parse_UnknownMetric() throws Exception {
+
+        try {
+
+            JvmMetricDefinition.parse(new PropertyFactory(), "jvm:main:Main/GcCount");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertEquals("unknown JVM metric \"GcCount\"", msg);
+        }
+    }
+
+    @Test
+    public void parse_InvalidTarget() throws Exception {
+
+        try {
+
+            JvmMetricDefinition.parse(new PropertyFactory(), "jvm:class:Main/HeapUsed");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("invalid JVM target \"class:Main\", expecting main:, pid:"));
+        }
+    }
+
+    @Test
+    public void parse_TopTarget() throws Exception {
+
+        try {
+
+            JvmMetricDefinition.parse(new PropertyFactory(), "jvm:top:3/HeapUsed");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertEquals("\"top:3\" does not identify one JVM", msg);
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.novaordis.databot.MockMetricDefinition;
+import io.novaordis.databot.task.PreparedQuery;
+import io.novaordis.databot.task.StalePreparedQueryException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmMetricSourceTest extends LinuxMetricSourceBaseTest<JvmMetricSource> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File procRoot;
+
+    private File tmpRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void collectMetrics_FirstReadingReportsFractionsSinceStart() throws Exception {
+
+        //
+        // running for 10 seconds, 500 ms of which were spent in young GCs
+        //
+
+        Map<String, Object> counters = JvmReaderTest.counters("org.jboss.modules.Main -mp modules", 1000L);
+        counters.put("sun.gc.collector.0.invocations", 25L);
+        counters.put("sun.gc.collector.0.time", 500L);
+        counters.put("sun.gc.generation.0.space.0.used", 1024L * 1024);
+        counters.put("sun.gc.generation.1.space.0.used", 3L * 1024 * 1024);
+        counters.put("sun.gc.generation.0.space.1.used", 0L);
+        counters.put("sun.gc.generation.0.space.2.used", 0L);
+        counters.put("sun.gc.generation.0.maxCapacity", 4L * 1024 * 1024);
+        counters.put("sun.gc.generation.1.maxCapacity", 12L * 1024 * 1024);
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters);
+
+        JvmMetricSource s = source("main:Main");
+
+        List<Property> properties = s.collectMetrics(definitions(
+                "YoungGcCount", "YoungGcTime", "YoungGcTimePercentage", "HeapUsed", "HeapUsedPercentage"));
+
+        assertEquals(5, properties.size());
+
+        assertEquals("YoungGcCount", properties.get(0).getName());
+        assertEquals(25L, properties.get(0).getValue());
+        assertEquals(500d, (Double)properties.get(1).getValue(), 0.0000001);
+        assertEquals(5d, (Double)properties.get(2).getValue(), 0.0000001);
+
+        Property p = properties.get(3);
+        assertEquals("HeapUsed", p.getName());
+        assertEquals(4L * 1024 * 1024, p.getValue());
+        assertEquals(MemoryMeasureUnit.BYTE, p.getMeasureUnit());
+
+        assertEquals(25d, (Double)properties.get(4).getValue(), 0.0000001);
+
+        assertEquals(100, s.getPid());
+    }
+
+    @Test
+    public void collectMetrics_FractionsAreComputedBetweenSamples() throws Exception {
+
+        Map<String, Object> counters = JvmReaderTest.counters("Main", 1000L);
+        counters.put("sun.gc.collector.1.time", 500L);
+        counters.put("sun.rt.safepointTime", 1000L);
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters);
+
+        JvmMetricSource s = source("pid:100");
+
+        List<MetricDefinition> mds = definitions("OldGcTimePercentage", "SafepointTimePercentage");
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(5d, (Double)properties.get(0).getValue(), 0.0000001);
+        assertEquals(10d, (Double)properties.get(1).getValue(), 0.0000001);
+
+        //
+        // two more seconds, one of which was spent in an old GC
+        //
+
+        counters.put("sun.os.hrt.ticks", 12000L);
+        counters.put("sun.gc.collector.1.time", 1500L);
+        counters.put("sun.rt.safepointTime", 2100L);
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters);
+
+        properties = s.collectMetrics(mds);
+
+        assertEquals(50d, (Double)properties.get(0).getValue(), 0.0000001);
+        assertEquals(55d, (Double)properties.get(1).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void collectMetrics_MissingCountersAreNotReported() throws Exception {
+
+        Map<String, Object> counters = JvmReaderTest.counters("Main", 1000L);
+        counters.remove("sun.gc.collector.1.invocations");
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters);
+
+        List<Property> properties = source("pid:100").collectMetrics(definitions("OldGcCount", "LiveThreads"));
+
+        assertEquals(1, properties.size());
+        assertEquals("LiveThreads", properties.get(0).getName());
+    }
+
+    @Test
+    public void collectMetrics_TargetIsResolvedOnce() throws Exception {
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, JvmReaderTest.counters("Main", 1000L));
+
+        JvmMetricSource s = source("main:Main");
+
+        assertEquals(-1, s.getPid());
+
+        for(int i = 0; i < 5; i ++) {
+
+            s.collectMetrics(definitions("LiveThreads"));
+        }
+
+        assertEquals(100, s.getPid());
+        assertEquals(1, s.getResolutionCount());
+    }
+
+    @Test
+    public void collectMetrics_RestartedJvmIsRediscovered() throws Exception {
+
+        Map<String, Object> counters = JvmReaderTest.counters("Main", 1000L);
+        counters.put("sun.gc.collector.0.time", 500L);
+
+        File f = PerfDataFileTest.writePerfData(tmpRoot, 100, counters);
+
+        JvmMetricSource s = source("main:Main");
+
+        List<MetricDefinition> mds = definitions("YoungGcTimePercentage");
+
+        assertEquals(5d, (Double)s.collectMetrics(mds).get(0).getValue(), 0.0000001);
+
+        //
+        // the JVM restarts, with a different pid; it has been running for one second, 200 ms of which were spent in
+        // young GCs
+        //
+
+        assertTrue(new File(procRoot, "100").delete());
+        assertTrue(f.delete());
+
+        counters = JvmReaderTest.counters("Main", 2000L);
+        counters.put("sun.os.hrt.ticks", 1000L);
+        counters.put("sun.gc.collector.0.time", 200L);
+
+        assertTrue(new File(procRoot, "200").mkdir());
+        PerfDataFileTest.writePerfData(tmpRoot, 200, counters);
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(200, s.getPid());
+        assertEquals(2, s.getResolutionCount());
+        assertEquals(20d, (Double)properties.get(0).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void prepare_QueryGoesStaleWhenTheJvmIsRediscovered() throws Exception {
+
+        File f = PerfDataFileTest.writePerfData(tmpRoot, 100, JvmReaderTest.counters("Main", 1000L));
+
+        JvmMetricSource s = source("main:Main");
+
+        PreparedQuery q = s.prepare(definitions("LiveThreads"));
+
+        q.execute();
+
+        assertTrue(new File(procRoot, "100").delete());
+        assertTrue(f.delete());
+        assertTrue(new File(procRoot, "200").mkdir());
+        PerfDataFileTest.writePerfData(tmpRoot, 200, JvmReaderTest.counters("Main", 2000L));
+
+        //
+        // the execution that rediscovers the JVM still reports, the next one must be prepared again
+        //
+
+        assertEquals(1, q.execute().size());
+        assertEquals(200, s.getPid());
+
+        try {
+
+            q.execute();
+            fail("should have thrown exception");
+        }
+        catch(StalePreparedQueryException e) {
+
+            // expected
+        }
+
+        assertEquals(1, s.prepare(definitions("LiveThreads")).execute().size());
+    }
+
+    @Test
+    public void collectMetrics_NoJvm() throws Exception {
+
+        JvmMetricSource s = source("main:Main");
+
+        try {
+
+            s.collectMetrics(definitions("LiveThreads"));
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertEquals("no JVM found for main:Main", msg);
+        }
+
+        assertEquals(-1, s.getPid());
+    }
+
+    @Test
+    public void prepare_BaseUnit() throws Exception {
+
+        Map<String, Object> counters = JvmReaderTest.counters("Main", 1000L);
+        counters.put("sun.gc.metaspace.used", 3L * 1024 * 1024);
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters);
+
+        JvmMetricSource s = source("pid:100");
+
+        MockMetricDefinition metaspace = definition("MetaspaceUsed");
+        metaspace.setBaseUnit(MemoryMeasureUnit.MEGABYTE);
+
+        PreparedQuery q = s.prepare(Collections.singletonList(metaspace));
+
+        assertNotNull(q);
+
+        Property p = q.execute().get(0);
+        assertEquals(3L, p.getValue());
+        assertEquals(MemoryMeasureUnit.MEGABYTE, p.getMeasureUnit());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected String getScratchDirectoryName() {
+
+        return "jvm-source";
+    }
+
+    @Override
+    protected JvmAddress getAddressToTest() {
+
+        return new JvmAddress(JvmTarget.parse("pid:100"));
+    }
+
+    @Override
+    protected JvmMetricSource getMetricSourceToTest() throws Exception {
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, JvmReaderTest.counters("Main", 1000L));
+
+        return source("pid:100");
+    }
+
+    @Override
+    protected MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate) {
+
+        return new JvmMetricSourceFactory(delegate, procRoot, tmpRoot);
+    }
+
+    @Override
+    protected String getMetricIdToTest() {
+
+        return "LiveThreads";
+    }
+
+    @Override
+    protected String getForeignMetricMessage() {
+
+        return "are JVM metrics";
+    }
+
+    @Override
+    protected void populate() throws Exception {
+
+        procRoot = new File(scratchDirectory, "proc");
+        tmpRoot = new File(scratchDirectory, "tmp");
+
+        assertTrue(new File(procRoot, "100").mkdirs());
+        assertTrue(tmpRoot.mkdirs());
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private JvmMetricSource source(String target) {
+
+        return new JvmMetricSource(new JvmAddress(JvmTarget.parse(target)), new JvmReader(procRoot, tmpRoot), pf);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
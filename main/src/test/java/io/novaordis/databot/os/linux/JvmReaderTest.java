@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmReaderTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the counters of a JVM with a 1000 Hz timer that has been running for 10 seconds, so all times are in
+     * milliseconds. Each counter a JvmSnapshot field is summed from is set to 1, except the ticks.
+     */
+    public static Map<String, Object> counters(String javaCommand, long startTime) {
+
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        result.put(JvmReader.FREQUENCY, 1000L);
+        result.put(JvmReader.START_TIME, startTime);
+        result.put(JvmTarget.JAVA_COMMAND, javaCommand);
+        result.put(JvmReader.GC_POLICY, "Copy:MSC");
+
+        for(String[] names: JvmReader.COUNTERS) {
+
+            for(String name: names) {
+
+                result.put(name, 1L);
+            }
+        }
+
+        result.put(JvmReader.COUNTERS[JvmSnapshot.TICKS][0], 10000L);
+
+        return result;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/jvm-reader");
+
+    private File procRoot;
+
+    private File tmpRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() {
+
+        procRoot = new File(scratchDirectory, "proc");
+        tmpRoot = new File(scratchDirectory, "tmp");
+
+        assertTrue(new File(procRoot, "100").mkdirs());
+        assertTrue(tmpRoot.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void read() throws Exception {
+
+        Map<String, Object> counters = counters("Main", 1000L);
+        counters.put("sun.gc.generation.0.space.0.used", 100L);
+        counters.put("sun.gc.generation.0.space.1.used", 20L);
+        counters.put("sun.gc.generation.0.space.2.used", 0L);
+        counters.put("sun.gc.generation.1.space.0.used", 300L);
+        counters.put("sun.gc.generation.0.maxCapacity", 1000L);
+        counters.put("sun.gc.generation.1.maxCapacity", 3000L);
+        counters.put("java.cls.loadedClasses", 50L);
+        counters.put("java.cls.sharedLoadedClasses", 400L);
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters);
+
+        JvmReader r = new JvmReader(procRoot, tmpRoot);
+
+        r.open(100);
+
+        assertNull(r.getPerfDataFile());
+
+        JvmSnapshot s = new JvmSnapshot();
+
+        r.read(s);
+
+        assertEquals(100, s.getPid());
+        assertEquals(1000L, s.getStartTime());
+        assertEquals(1000L, s.getFrequency());
+        assertTrue(s.getTimestampNanos() > 0);
+
+        assertEquals(10000L, s.getValue(JvmSnapshot.TICKS));
+        assertEquals(1L, s.getValue(JvmSnapshot.YOUNG_GC_COUNT));
+        assertEquals(100L, s.getValue(JvmSnapshot.EDEN_USED));
+        assertEquals(20L, s.getValue(JvmSnapshot.SURVIVOR_USED));
+        assertEquals(300L, s.getValue(JvmSnapshot.OLD_USED));
+        assertEquals(420L, s.getValue(JvmSnapshot.HEAP_USED));
+        assertEquals(2L, s.getValue(JvmSnapshot.HEAP_COMMITTED));
+        assertEquals(4000L, s.getValue(JvmSnapshot.HEAP_MAX));
+        assertEquals(450L, s.getValue(JvmSnapshot.LOADED_CLASSES));
+
+        assertEquals(new File(tmpRoot, "hsperfdata_test/100"), r.getPerfDataFile());
+    }
+
+    @Test
+    public void read_G1HeapMax() throws Exception {
+
+        Map<String, Object> counters = counters("Main", 1000L);
+        counters.put(JvmReader.GC_POLICY, JvmReader.G1_GC_POLICY);
+        counters.put("sun.gc.generation.0.maxCapacity", 4000L);
+        counters.put("sun.gc.generation.1.maxCapacity", 4000L);
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters);
+
+        JvmReader r = new JvmReader(procRoot, tmpRoot);
+        r.open(100);
+
+        JvmSnapshot s = new JvmSnapshot();
+
+        r.read(s);
+
+        assertEquals(4000L, s.getValue(JvmSnapshot.HEAP_MAX));
+    }
+
+    @Test
+    public void read_MissingCounters() throws Exception {
+
+        Map<String, Object> counters = counters("Main", 1000L);
+        counters.remove("sun.gc.generation.0.space.2.used");
+        counters.remove("sun.rt.safepoints");
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters);
+
+        JvmReader r = new JvmReader(procRoot, tmpRoot);
+        r.open(100);
+
+        JvmSnapshot s = new JvmSnapshot();
+
+        r.read(s);
+
+        assertEquals(-1L, s.getValue(JvmSnapshot.SURVIVOR_USED));
+        assertEquals(-1L, s.getValue(JvmSnapshot.HEAP_USED));
+        assertEquals(-1L, s.getValue(JvmSnapshot.SAFEPOINTS));
+        assertEquals(1L, s.getValue(JvmSnapshot.EDEN_USED));
+
+        //
+        // counters added after the file was mapped are picked up
+        //
+
+        counters.put("sun.rt.safepoints", 7L);
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters);
+
+        r.read(s);
+
+        assertEquals(7L, s.getValue(JvmSnapshot.SAFEPOINTS));
+    }
+
+    @Test
+    public void read_NoPerfData() throws Exception {
+
+        JvmReader r = new JvmReader(procRoot, tmpRoot);
+        r.open(100);
+
+        try {
+
+            r.read(new JvmSnapshot());
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            String msg = e.getMessage();
+            assertEquals("process 100 does not publish performance data", msg);
+        }
+
+        //
+        // the process is alive, the next read tries again
+        //
+
+        assertEquals(100, r.getPid());
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters("Main", 1000L));
+
+        JvmSnapshot s = new JvmSnapshot();
+
+        r.read(s);
+
+        assertEquals(100, s.getPid());
+    }
+
+    @Test
+    public void read_ProcessIsGone() throws Exception {
+
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters("Main", 1000L));
+
+        JvmReader r = new JvmReader(procRoot, tmpRoot);
+        r.open(100);
+
+        JvmSnapshot s = new JvmSnapshot();
+
+        r.read(s);
+
+        //
+        // killed, the file is left behind
+        //
+
+        assertTrue(new File(procRoot, "100").delete());
+
+        try {
+
+            r.read(s);
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            String msg = e.getMessage();
+            assertEquals("process 100 is gone", msg);
+        }
+
+        assertEquals(-1, r.getPid());
+        assertNull(r.getPerfDataFile());
+    }
+
+    @Test
+    public void read_PerfDataFileDeleted() throws Exception {
+
+        File f = PerfDataFileTest.writePerfData(tmpRoot, 100, counters("Main", 1000L));
+
+        JvmReader r = new JvmReader(procRoot, tmpRoot);
+        r.open(100);
+
+        JvmSnapshot s = new JvmSnapshot();
+
+        r.read(s);
+
+        //
+        // exiting
+        //
+
+        assertTrue(f.delete());
+
+        try {
+
+            r.read(s);
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            // expected
+        }
+
+        assertEquals(-1, r.getPid());
+    }
+
+    @Test
+    public void read_PidReusedByAnotherJvm() throws Exception {
+
+        File f = PerfDataFileTest.writePerfData(tmpRoot, 100, counters("Main", 1000L));
+
+        JvmReader r = new JvmReader(procRoot, tmpRoot);
+        r.open(100);
+
+        JvmSnapshot s = new JvmSnapshot();
+
+        r.read(s);
+
+        assertEquals(1000L, s.getStartTime());
+
+        assertTrue(f.delete());
+        PerfDataFileTest.writePerfData(tmpRoot, 100, counters("Main", 2000L));
+
+        r.read(s);
+
+        assertEquals(100, r.getPid());
+        assertEquals(2000L, s.getStartTime());
+    }
+
+    @Test
+    public void read_NotOpen() throws Exception {
+
+        try {
+
+            new JvmReader(procRoot, tmpRoot).read(new JvmSnapshot());
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("not open"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class JvmTargetTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/jvm-target");
+
+    private File procRoot;
+
+    private File tmpRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() {
+
+        procRoot = new File(scratchDirectory, "proc");
+        tmpRoot = new File(scratchDirectory, "tmp");
+
+        assertTrue(procRoot.mkdirs());
+        assertTrue(tmpRoot.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parse_MainClass() throws Exception {
+
+        JvmTarget t = JvmTarget.parse("main:org.jboss.modules.Main");
+
+        assertEquals("org.jboss.modules.Main", t.getMainClass());
+        assertNull(t.getProcessTarget());
+        assertEquals("main:org.jboss.modules.Main", t.getLiteral());
+    }
+
+    @Test
+    public void parse_InvalidMainClass() throws Exception {
+
+        try {
+
+            JvmTarget.parse("main:");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertEquals("invalid main class \"\"", msg);
+        }
+    }
+
+    @Test
+    public void parse_ProcessTarget() throws Exception {
+
+        JvmTarget t = JvmTarget.parse("pid:1234");
+
+        assertNull(t.getMainClass());
+        assertEquals(1234, t.getProcessTarget().getPid());
+        assertEquals(1234, t.resolve(procRoot, tmpRoot, -1));
+    }
+
+    @Test
+    public void parse_Top() throws Exception {
+
+        try {
+
+            JvmTarget.parse("top:5");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertEquals("\"top:5\" does not identify one JVM", msg);
+        }
+    }
+
+    @Test
+    public void parse_UnknownPrefix() throws Exception {
+
+        assertNull(JvmTarget.parse("class:Main"));
+    }
+
+    @Test
+    public void matches() throws Exception {
+
+        assertTrue(JvmTarget.matches("org.jboss.modules.Main -mp /opt/jboss/modules", "org.jboss.modules.Main"));
+        assertTrue(JvmTarget.matches("org.jboss.modules.Main -mp /opt/jboss/modules", "Main"));
+        assertTrue(JvmTarget.matches("/opt/app/app.jar --port 8080", "app.jar"));
+        assertTrue(JvmTarget.matches("Main", "Main"));
+        assertFalse(JvmTarget.matches("org.jboss.modules.DomainMain", "Main"));
+        assertFalse(JvmTarget.matches("Other Main", "Main"));
+        assertFalse(JvmTarget.matches(null, "Main"));
+    }
+
+    @Test
+    public void resolve_MainClass_LowestLivePid() throws Exception {
+
+        PerfDataFileTest.writePerfData(tmpRoot, 300, JvmReaderTest.counters("com.example.Server", 1000L));
+        PerfDataFileTest.writePerfData(tmpRoot, 200, JvmReaderTest.counters("com.example.Server", 1000L));
+        PerfDataFileTest.writePerfData(tmpRoot, 100, JvmReaderTest.counters("com.example.Server", 1000L));
+        PerfDataFileTest.writePerfData(tmpRoot, 50, JvmReaderTest.counters("com.example.Client", 1000L));
+
+        assertTrue(new File(procRoot, "300").mkdir());
+        assertTrue(new File(procRoot, "200").mkdir());
+        assertTrue(new File(procRoot, "50").mkdir());
+
+        //
+        // 100 was killed and left its file behind
+        //
+
+        JvmTarget t = JvmTarget.parse("main:Server");
+
+        assertEquals(200, t.resolve(procRoot, tmpRoot, -1));
+        assertEquals(300, t.resolve(procRoot, tmpRoot, 200));
+        assertEquals(-1, JvmTarget.parse("main:Agent").resolve(procRoot, tmpRoot, -1));
+    }
+
+    @Test
+    public void resolve_MainClass_UnreadableFilesAreSkipped() throws Exception {
+
+        File d = new File(tmpRoot, "hsperfdata_other");
+        assertTrue(d.mkdirs());
+        java.nio.file.Files.write(new File(d, "10").toPath(), new byte[] { 1, 2, 3 });
+        assertTrue(new File(procRoot, "10").mkdir());
+
+        PerfDataFileTest.writePerfData(tmpRoot, 20, JvmReaderTest.counters("Main", 1000L));
+        assertTrue(new File(procRoot, "20").mkdir());
+
+        assertEquals(20, JvmTarget.parse("main:Main").resolve(procRoot, tmpRoot, -1));
+    }
+
+    @Test
+    public void findPerfDataFile() throws Exception {
+
+        assertNull(JvmTarget.findPerfDataFile(tmpRoot, 100));
+
+        File f = PerfDataFileTest.writePerfData(tmpRoot, 100, JvmReaderTest.counters("Main", 1000L));
+
+        assertEquals(f, JvmTarget.findPerfDataFile(tmpRoot, 100));
+        assertNull(JvmTarget.findPerfDataFile(new File(scratchDirectory, "no-such-directory"), 100));
+    }
+
+    @Test
+    public void equality() throws Exception {
+
+        assertEquals(JvmTarget.parse("main:Main"), JvmTarget.parse("main:Main"));
+        assertEquals(JvmTarget.parse("main:Main").hashCode(), JvmTarget.parse("main:Main").hashCode());
+        assertFalse(JvmTarget.parse("main:Main").equals(JvmTarget.parse("pid:1")));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
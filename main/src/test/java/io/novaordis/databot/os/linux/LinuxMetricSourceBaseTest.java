@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.databot.MockMetricDefinition;
+import io.novaordis.databot.MockMetricSource;
+import io.novaordis.databot.MockMetricSourceFactory;
+import io.novaordis.databot.task.PreparedQuery;
+import io.novaordis.databot.task.StalePreparedQueryException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.events.api.metric.MockAddress;
+import io.novaordis.utilities.Files;
+import io.novaordis.utilities.address.Address;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The behavior all /proc-backed sources inherit from LinuxMetricSourceBase, and the scratch directory the fixtures are
+ * written into. Subclasses only test what is specific to their source.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public abstract class LinuxMetricSourceBaseTest<S extends LinuxMetricSourceBase<?, ?>> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    protected File scratchDirectory;
+
+    protected PropertyFactory pf;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        pf = new PropertyFactory();
+
+        scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/" + getScratchDirectoryName());
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+
+        populate();
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void collectMetrics_ForeignMetric() throws Exception {
+
+        S s = getMetricSourceToTest();
+
+        try {
+
+            s.collectMetrics(definitions(getMetricIdToTest(), getForeignMetricIdToTest()));
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg, msg.contains(getForeignMetricMessage()));
+        }
+    }
+
+    @Test
+    public void prepare() throws Exception {
+
+        S s = getMetricSourceToTest();
+
+        assertNull(s.prepare(definitions(getMetricIdToTest(), getForeignMetricIdToTest())));
+
+        PreparedQuery q = s.prepare(definitions(getMetricIdToTest()));
+
+        assertNotNull(q);
+
+        List<Property> properties = q.execute();
+
+        assertFalse(properties.isEmpty());
+        assertTrue(properties.get(0).getName().startsWith(getMetricIdToTest()));
+    }
+
+    @Test
+    public void prepare_QueryGoesStaleOnStop() throws Exception {
+
+        S s = getMetricSourceToTest();
+
+        PreparedQuery q = s.prepare(definitions(getMetricIdToTest()));
+
+        assertFalse(q.execute().isEmpty());
+
+        s.stop();
+
+        try {
+
+            q.execute();
+            fail("should have thrown exception");
+        }
+        catch(StalePreparedQueryException e) {
+
+            // expected
+        }
+
+        assertFalse(s.prepare(definitions(getMetricIdToTest())).execute().isEmpty());
+    }
+
+    @Test
+    public void stop_RestartedSourceReadsAgain() throws Exception {
+
+        S s = getMetricSourceToTest();
+
+        List<MetricDefinition> mds = definitions(getMetricIdToTest());
+
+        s.start();
+        assertTrue(s.isStarted());
+
+        int first = s.collectMetrics(mds).size();
+
+        s.stop();
+        assertFalse(s.isStarted());
+
+        s.start();
+
+        assertEquals(first, s.collectMetrics(mds).size());
+
+        s.stop();
+    }
+
+    @Test
+    public void equalsAndHashCode() throws Exception {
+
+        S s = getMetricSourceToTest();
+        S s2 = getMetricSourceToTest();
+
+        assertEquals(s, s2);
+        assertEquals(s.hashCode(), s2.hashCode());
+        assertEquals(getAddressToTest(), s.getAddress());
+    }
+
+    @Test
+    public void factory() throws Exception {
+
+        MetricSourceFactory f = getMetricSourceFactoryToTest(new MockMetricSourceFactory(pf));
+
+        MetricSource s = f.buildMetricSource(getAddressToTest());
+
+        assertEquals(getMetricSourceToTest().getClass(), s.getClass());
+    }
+
+    @Test
+    public void factory_ForeignAddressIsDelegated() throws Exception {
+
+        MetricSourceFactory f = getMetricSourceFactoryToTest(new MockMetricSourceFactory(pf));
+
+        assertTrue(f.buildMetricSource(new MockAddress("A")) instanceof MockMetricSource);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the name of the directory, under target/test-scratch, the fixtures are written into.
+     */
+    protected abstract String getScratchDirectoryName();
+
+    /**
+     * Writes the fixtures every test of the subclass starts from into the (existing) scratch directory.
+     */
+    protected abstract void populate() throws Exception;
+
+    /**
+     * @return the address of the source under test, also used by the metric definitions built with definitions().
+     */
+    protected abstract Address getAddressToTest();
+
+    /**
+     * @return a new source for getAddressToTest(), reading from the scratch directory.
+     */
+    protected abstract S getMetricSourceToTest() throws Exception;
+
+    protected abstract MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate);
+
+    /**
+     * @return the ID of a metric the fixtures produce a value for on the first reading.
+     */
+    protected abstract String getMetricIdToTest();
+
+    /**
+     * @return a fragment of the message the source throws when asked for getForeignMetricIdToTest().
+     */
+    protected abstract String getForeignMetricMessage();
+
+    /**
+     * @return the ID of a metric the source does not serve.
+     */
+    protected String getForeignMetricIdToTest() {
+
+        return "PhysicalMemoryTotal";
+    }
+
+    protected MockMetricDefinition definition(String id) {
+
+        return new MockMetricDefinition(pf, getAddressToTest(), id);
+    }
+
+    protected List<MetricDefinition> definitions(String... ids) {
+
+        MetricDefinition[] result = new MetricDefinition[ids.length];
+
+        for(int i = 0; i < ids.length; i ++) {
+
+            result[i] = definition(ids[i]);
+        }
+
+        return Arrays.asList(result);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
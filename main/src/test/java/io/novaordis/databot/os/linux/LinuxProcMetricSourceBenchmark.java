@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.novaordis.databot.MockMetricDefinition;
+import io.novaordis.databot.task.PreparedQuery;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.utilities.address.LocalOSAddress;
+
+/**
+ * Measures one sample of a typical local OS metric set served by LinuxProcMetricSource from the captured /proc/stat,
+ * /proc/meminfo, /proc/vmstat and /proc/loadavg under src/test/resources/data/os/proc: the four files read and parsed,
+ * and the properties built. Sampling at 20 Hz leaves 50 ms per tick to the whole collection run, a sample must take a
+ * small fraction of that. The "gc" profiler reports the allocation rate per operation, which should only be the
+ * published properties.
+ *
+ * Not a test. Run it from the module directory, so the captured files are found, with:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.novaordis.databot.os.linux.LinuxProcMetricSourceBenchmark
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinuxProcMetricSourceBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String[] METRICS = {
+
+            "CpuUserTime", "CpuNiceTime", "CpuKernelTime", "CpuIdleTime", "CpuIoWaitTime",
+            "CpuHardwareInterruptTime", "CpuSoftwareInterruptTime", "CpuStolenTime", "LoadAverageLastMinute",
+            "LoadAverageLastFiveMinutes",
+            "PhysicalMemoryFree", "PhysicalMemoryUsed", "SwapFree", "SwapUsed"
+    };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+
+        Options options = new OptionsBuilder().
+                include(LinuxProcMetricSourceBenchmark.class.getSimpleName()).
+                addProfiler(GCProfiler.class).
+                build();
+
+        new Runner(options).run();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private LinuxProcMetricSource source;
+
+    private List<MetricDefinition> metricDefinitions;
+
+    private PreparedQuery query;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup
+    public void setUp() throws Exception {
+
+        if (!LinuxProcReader.isAvailable(LinuxProcReaderTest.PROC_FIXTURES)) {
+
+            throw new IllegalStateException(
+                    "captured /proc files not found in " + LinuxProcReaderTest.PROC_FIXTURES.getAbsolutePath());
+        }
+
+        PropertyFactory pf = new PropertyFactory();
+
+        LocalOSAddress a = new LocalOSAddress();
+
+        source = new LinuxProcMetricSource(a, new LinuxProcReader(LinuxProcReaderTest.PROC_FIXTURES), null, pf);
+
+        metricDefinitions = new ArrayList<>();
+
+        for(String m: METRICS) {
+
+            metricDefinitions.add(new MockMetricDefinition(pf, a, m));
+        }
+
+        query = source.prepare(metricDefinitions);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+
+        source.stop();
+    }
+
+    /**
+     * The path of a collection run: the query is prepared once, when the schedule is built, and executed on every
+     * tick.
+     */
+    @Benchmark
+    public List<Property> preparedQuery() throws Exception {
+
+        return query.execute();
+    }
+
+    /**
+     * The metric definitions resolved on every sample.
+     */
+    @Benchmark
+    public List<Property> collectMetrics() throws Exception {
+
+        return source.collectMetrics(metricDefinitions);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
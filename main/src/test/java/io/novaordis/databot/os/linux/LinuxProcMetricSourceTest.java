@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.databot.MockMetricDefinition;
+import io.novaordis.databot.MockMetricSource;
+import io.novaordis.databot.task.PreparedQuery;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.Files;
+import io.novaordis.utilities.address.LocalOSAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class LinuxProcMetricSourceTest extends LinuxMetricSourceBaseTest<LinuxProcMetricSource> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private LocalOSAddress address = new LocalOSAddress();
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void prepare_AllMetricsServedFromProc() throws Exception {
+
+        LinuxProcMetricSource s = source(null);
+
+        MockMetricDefinition total = definition("PhysicalMemoryTotal");
+        MockMetricDefinition used = definition("PhysicalMemoryUsed");
+        used.setBaseUnit(MemoryMeasureUnit.MEGABYTE);
+        MockMetricDefinition load = definition("LoadAverageLastMinute");
+
+        PreparedQuery q = s.prepare(Arrays.asList(total, used, load));
+
+        assertNotNull(q);
+
+        List<Property> properties = q.execute();
+
+        assertEquals(3, properties.size());
+
+        Property p = properties.get(0);
+        assertEquals("PhysicalMemoryTotal", p.getName());
+        assertEquals(8000000L * 1024, p.getValue());
+
+        //
+        // total - free - buffers - cached - reclaimable slab
+        //
+        p = properties.get(1);
+        assertEquals("PhysicalMemoryUsed", p.getName());
+        assertEquals(3125L, p.getValue());
+        assertEquals(MemoryMeasureUnit.MEGABYTE, p.getMeasureUnit());
+
+        p = properties.get(2);
+        assertEquals("LoadAverageLastMinute", p.getName());
+        assertEquals(0.52d, (Double)p.getValue(), 0.0000001);
+    }
+
+    @Test
+    public void collectMetrics_CpuPercentagesAreComputedBetweenSamples() throws Exception {
+
+        LinuxProcMetricSource s = source(null);
+
+        List<MetricDefinition> mds = Arrays.asList(definition("CpuUserTime"), definition("CpuIdleTime"));
+
+        //
+        // the first sample reports the averages since boot
+        //
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(100d * 1000 / 9500, (Double)properties.get(0).getValue(), 0.0000001);
+        assertEquals(100d * 8000 / 9500, (Double)properties.get(1).getValue(), 0.0000001);
+
+        //
+        // 100 user ticks and 800 idle ticks later
+        //
+
+        assertTrue(Files.write(new File(scratchDirectory, "stat"), "cpu  1100 20 300 8800 100 10 50 20 0 0\n"));
+
+        properties = s.collectMetrics(mds);
+
+        assertEquals(100d * 100 / 900, (Double)properties.get(0).getValue(), 0.0000001);
+        assertEquals(100d * 800 / 900, (Double)properties.get(1).getValue(), 0.0000001);
+
+        //
+        // no ticks elapsed, the last known values are reported
+        //
+
+        properties = s.collectMetrics(mds);
+
+        assertEquals(100d * 100 / 900, (Double)properties.get(0).getValue(), 0.0000001);
+        assertEquals(100d * 800 / 900, (Double)properties.get(1).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void collectMetrics_FallbackForMetricsNotServedFromProc() throws Exception {
+
+        MockMetricSource fallback = new MockMetricSource(pf, new LocalOSAddress());
+        fallback.addReadingForMetric("NoSuchMetric", 7);
+
+        LinuxProcMetricSource s = source(fallback);
+
+        assertFalse(fallback.isStarted());
+
+        List<Property> properties = s.collectMetrics(Collections.singletonList(definition("NoSuchMetric")));
+
+        assertTrue(fallback.isStarted());
+        assertEquals(1, fallback.getCollectionCount());
+        assertEquals(1, properties.size());
+        assertEquals(7, properties.get(0).getValue());
+
+        //
+        // metrics served from /proc do not touch the fallback
+        //
+
+        s.collectMetrics(Collections.singletonList(definition("SwapUsed")));
+        assertEquals(1, fallback.getCollectionCount());
+
+        s.stop();
+        assertFalse(fallback.isStarted());
+    }
+
+    @Test
+    public void collectMetrics_ProcFileMissing() throws Exception {
+
+        LinuxProcMetricSource s = source(null);
+
+        assertTrue(new File(scratchDirectory, "loadavg").delete());
+
+        try {
+
+            s.collectMetrics(Collections.singletonList(definition("LoadAverageLastMinute")));
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("failed to read"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected String getScratchDirectoryName() {
+
+        return "proc";
+    }
+
+    @Override
+    protected LocalOSAddress getAddressToTest() {
+
+        return address;
+    }
+
+    @Override
+    protected LinuxProcMetricSource getMetricSourceToTest() {
+
+        return source(null);
+    }
+
+    @Override
+    protected MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate) {
+
+        return new LinuxProcMetricSourceFactory(delegate, scratchDirectory);
+    }
+
+    @Override
+    protected String getMetricIdToTest() {
+
+        return "PhysicalMemoryTotal";
+    }
+
+    @Override
+    protected String getForeignMetricMessage() {
+
+        return "can be read from /proc";
+    }
+
+    @Override
+    protected String getForeignMetricIdToTest() {
+
+        return "NoSuchMetric";
+    }
+
+    @Override
+    protected void populate() throws Exception {
+
+        for(String name: new String[] {"stat", "meminfo", "vmstat", "loadavg"}) {
+
+            File f = new File(LinuxProcReaderTest.PROC_FIXTURES, name);
+            assertTrue(Files.write(new File(scratchDirectory, name), Files.read(f)));
+        }
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private LinuxProcMetricSource source(MockMetricSource fallback) {
+
+        return new LinuxProcMetricSource(address, new LinuxProcReader(scratchDirectory), fallback, pf);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
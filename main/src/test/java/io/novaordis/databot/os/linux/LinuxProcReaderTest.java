@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class LinuxProcReaderTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    static final File PROC_FIXTURES = new File(System.getProperty("basedir"), "src/test/resources/data/os/proc");
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isAvailable() throws Exception {
+
+        assertTrue(LinuxProcReader.isAvailable(PROC_FIXTURES));
+        assertFalse(LinuxProcReader.isAvailable(new File(PROC_FIXTURES, "no-such-directory")));
+    }
+
+    @Test
+    public void read_Fixtures() throws Exception {
+
+        LinuxProcReader r = new LinuxProcReader(PROC_FIXTURES);
+
+        LocalOSSnapshot s = new LocalOSSnapshot();
+
+        r.read(s);
+
+        assertTrue(s.getTimestampMs() > 0);
+
+        //
+        // /proc/stat, the aggregate line only
+        //
+
+        assertEquals(1000L, s.getCpuTicks(LocalOSSnapshot.CPU_USER));
+        assertEquals(20L, s.getCpuTicks(LocalOSSnapshot.CPU_NICE));
+        assertEquals(300L, s.getCpuTicks(LocalOSSnapshot.CPU_SYSTEM));
+        assertEquals(8000L, s.getCpuTicks(LocalOSSnapshot.CPU_IDLE));
+        assertEquals(100L, s.getCpuTicks(LocalOSSnapshot.CPU_IOWAIT));
+        assertEquals(10L, s.getCpuTicks(LocalOSSnapshot.CPU_IRQ));
+        assertEquals(50L, s.getCpuTicks(LocalOSSnapshot.CPU_SOFTIRQ));
+        assertEquals(20L, s.getCpuTicks(LocalOSSnapshot.CPU_STEAL));
+        assertEquals(9500L, s.getCpuTotalTicks());
+        assertEquals(987654L, s.getContextSwitches());
+        assertEquals(123456L, s.getInterrupts());
+        assertEquals(1516200000L, s.getBootTimeSec());
+        assertEquals(4321L, s.getProcessesCreated());
+        assertEquals(3L, s.getProcessesRunning());
+        assertEquals(1L, s.getProcessesBlocked());
+
+        //
+        // /proc/meminfo, in bytes
+        //
+
+        assertEquals(8000000L * 1024, s.getMemory(LocalOSSnapshot.MEM_TOTAL));
+        assertEquals(2000000L * 1024, s.getMemory(LocalOSSnapshot.MEM_FREE));
+        assertEquals(5000000L * 1024, s.getMemory(LocalOSSnapshot.MEM_AVAILABLE));
+        assertEquals(100000L * 1024, s.getMemory(LocalOSSnapshot.MEM_BUFFERS));
+        assertEquals(2500000L * 1024, s.getMemory(LocalOSSnapshot.MEM_CACHED));
+        assertEquals(200000L * 1024, s.getMemory(LocalOSSnapshot.MEM_SRECLAIMABLE));
+        assertEquals(50000L * 1024, s.getMemory(LocalOSSnapshot.MEM_SHMEM));
+        assertEquals(1000000L * 1024, s.getMemory(LocalOSSnapshot.MEM_SWAP_TOTAL));
+        assertEquals(750000L * 1024, s.getMemory(LocalOSSnapshot.MEM_SWAP_FREE));
+
+        //
+        // /proc/vmstat
+        //
+
+        assertEquals(11111L, s.getVm(LocalOSSnapshot.VM_PGPGIN));
+        assertEquals(22222L, s.getVm(LocalOSSnapshot.VM_PGPGOUT));
+        assertEquals(33L, s.getVm(LocalOSSnapshot.VM_PSWPIN));
+        assertEquals(44L, s.getVm(LocalOSSnapshot.VM_PSWPOUT));
+        assertEquals(5555555L, s.getVm(LocalOSSnapshot.VM_PGFAULT));
+        assertEquals(666L, s.getVm(LocalOSSnapshot.VM_PGMAJFAULT));
+
+        //
+        // /proc/loadavg
+        //
+
+        assertEquals(0.52d, s.getLoadAverageOneMinute(), 0.0000001);
+        assertEquals(0.58d, s.getLoadAverageFiveMinutes(), 0.0000001);
+        assertEquals(0.59d, s.getLoadAverageFifteenMinutes(), 0.0000001);
+        assertEquals(2L, s.getSchedulingEntitiesRunnable());
+        assertEquals(1234L, s.getSchedulingEntitiesTotal());
+        assertEquals(56789L, s.getLastPid());
+
+        r.close();
+    }
+
+    @Test
+    public void read_RealProc() throws Exception {
+
+        File proc = new File(LinuxProcReader.DEFAULT_PROC_ROOT);
+
+        assumeTrue(LinuxProcReader.isAvailable(proc));
+
+        LinuxProcReader r = new LinuxProcReader();
+
+        LocalOSSnapshot s = new LocalOSSnapshot();
+
+        r.read(s);
+
+        assertTrue(s.getCpuTotalTicks() > 0);
+        assertTrue(s.getMemory(LocalOSSnapshot.MEM_TOTAL) > 0);
+        assertTrue(s.getLastPid() > 0);
+
+        //
+        // the files stay open, the subsequent reads reuse the channels
+        //
+
+        r.read(s);
+
+        assertTrue(s.getCpuTotalTicks() > 0);
+
+        r.close();
+    }
+
+    @Test
+    public void parseStat_NoAggregateCpuLine() throws Exception {
+
+        try {
+
+            LinuxProcReader.parseStat(ByteCursorTest.cursor("cpu0 1 2 3 4\nctxt 10\n"), new LocalOSSnapshot());
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("no aggregate cpu line"));
+        }
+    }
+
+    @Test
+    public void parseStat_OlderKernelFewerCpuFields() throws Exception {
+
+        LocalOSSnapshot s = new LocalOSSnapshot();
+
+        LinuxProcReader.parseStat(ByteCursorTest.cursor("cpu  1 2 3 4\n"), s);
+
+        assertEquals(4L, s.getCpuTicks(LocalOSSnapshot.CPU_IDLE));
+        assertEquals(0L, s.getCpuTicks(LocalOSSnapshot.CPU_IOWAIT));
+        assertEquals(10L, s.getCpuTotalTicks());
+    }
+
+    @Test
+    public void parseLoadavg_InvalidFormat() throws Exception {
+
+        try {
+
+            LinuxProcReader.parseLoadavg(ByteCursorTest.cursor("0.1 0.2 0.3 1 1234 5\n"), new LocalOSSnapshot());
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("unexpected /proc/loadavg format"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
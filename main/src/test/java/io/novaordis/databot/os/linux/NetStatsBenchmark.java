@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.novaordis.databot.MockMetricDefinition;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.utilities.Files;
+
+/**
+ * Measures the /proc/net parsers on typical content, from direct buffers like the ones ProcFile fills, and the whole
+ * network source on files. The "gc" profiler reports the allocation rate per operation, which must be ~0 B/op for the
+ * parse benchmarks: the source runs on every tick on every host. The source benchmark only allocates the properties it
+ * publishes.
+ *
+ * Not a test. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.novaordis.databot.os.linux.NetStatsBenchmark
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetStatsBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+
+        Options options = new OptionsBuilder().
+                include(NetStatsBenchmark.class.getSimpleName()).
+                addProfiler(GCProfiler.class).
+                build();
+
+        new Runner(options).run();
+    }
+
+    private static ByteBuffer direct(String content) {
+
+        byte[] bytes = content.getBytes();
+        ByteBuffer b = ByteBuffer.allocateDirect(bytes.length);
+        b.put(bytes);
+        b.flip();
+        return b;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File procRoot;
+
+    private ByteBuffer dev;
+
+    private ByteBuffer snmp;
+
+    private ByteBuffer netstat;
+
+    private NetStatsReader reader;
+
+    private NetStatsSnapshot snapshot;
+
+    private NetworkMetricSource source;
+
+    private List<MetricDefinition> metricDefinitions;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup
+    public void setUp() throws Exception {
+
+        //
+        // a host with a few dozen container interfaces
+        //
+
+        StringBuilder sb = new StringBuilder(NetStatsReaderTest.DEV);
+
+        for(int i = 0; i < 40; i ++) {
+
+            sb.append("veth").append(i).append(": 123456789 98765 0 0 0 0 0 0 987654321 56789 0 0 0 0 0 0\n");
+        }
+
+        dev = direct(sb.toString());
+        snmp = direct(NetStatsReaderTest.SNMP);
+        netstat = direct(NetStatsReaderTest.NETSTAT);
+
+        reader = new NetStatsReader(new File("."), NetworkAddress.parse("!lo"));
+        snapshot = new NetStatsSnapshot();
+
+        procRoot = java.nio.file.Files.createTempDirectory("net-benchmark").toFile();
+        NetStatsReaderTest.writeNet(procRoot, sb.toString(), NetStatsReaderTest.SNMP, NetStatsReaderTest.NETSTAT);
+
+        PropertyFactory pf = new PropertyFactory();
+
+        NetworkAddress a = NetworkAddress.parse("eth*");
+
+        source = new NetworkMetricSource(a, new NetStatsReader(procRoot, a), pf);
+
+        metricDefinitions = Arrays.asList(
+                new MockMetricDefinition(pf, a, "RxBytesPerSecond"),
+                new MockMetricDefinition(pf, a, "TcpRetransSegsPerSecond"),
+                new MockMetricDefinition(pf, a, "TcpListenOverflowsPerSecond"));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+
+        source.stop();
+
+        Files.rmdir(procRoot, false);
+    }
+
+    @Benchmark
+    public void parseDev(Blackhole bh) throws Exception {
+
+        reader.parseDev(dev, snapshot);
+
+        bh.consume(snapshot.getCounter(0, NetStatsSnapshot.RX_BYTES));
+    }
+
+    @Benchmark
+    public void parseSnmp(Blackhole bh) throws Exception {
+
+        reader.parseProtocol(snmp, NetStatsReader.SNMP, snapshot);
+
+        bh.consume(snapshot.getProtocolCounter(NetStatsSnapshot.TCP_RETRANS_SEGS));
+    }
+
+    @Benchmark
+    public void parseNetstat(Blackhole bh) throws Exception {
+
+        reader.parseProtocol(netstat, NetStatsReader.NETSTAT, snapshot);
+
+        bh.consume(snapshot.getProtocolCounter(NetStatsSnapshot.TCP_LISTEN_OVERFLOWS));
+    }
+
+    /**
+     * The three files read from disk, and the properties built, which is what runs on every tick.
+     */
+    @Benchmark
+    public List<Property> collectMetrics() throws Exception {
+
+        return source.collectMetrics(metricDefinitions);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class NetStatsReaderTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String DEV =
+            "Inter-|   Receive                                                |  Transmit\n" +
+            " face |bytes    packets errs drop fifo frame compressed multicast|bytes    packets errs drop fifo colls " +
+            "carrier compressed\n" +
+            "    lo: 8000 100 0 0 0 0 0 0 8000 100 0 0 0 0 0 0\n" +
+            "  eth0: 1048576 2000 3 4 0 0 0 12 524288 1000 5 6 0 0 0 0\n" +
+            "veth1a2b:10 1 0 0 0 0 0 0 20 2 0 0 0 0 0 0\n";
+
+    public static final String SNMP =
+            "Ip: Forwarding DefaultTTL InReceives InHdrErrors InAddrErrors ForwDatagrams InUnknownProtos " +
+            "InDiscards InDelivers OutRequests\n" +
+            "Ip: 1 64 5000 1 0 0 0 2 4990 4800\n" +
+            "Icmp: InMsgs InErrors\n" +
+            "Icmp: 10 0\n" +
+            "Tcp: RtoAlgorithm RtoMin RtoMax MaxConn ActiveOpens PassiveOpens AttemptFails EstabResets CurrEstab " +
+            "InSegs OutSegs RetransSegs InErrs OutRsts InCsumErrors\n" +
+            "Tcp: 1 200 120000 -1 300 400 5 6 42 10000 9000 90 1 7 0\n" +
+            "Udp: InDatagrams NoPorts InErrors OutDatagrams RcvbufErrors SndbufErrors InCsumErrors IgnoredMulti\n" +
+            "Udp: 700 8 2 600 1 0 0 0\n" +
+            "UdpLite: InDatagrams NoPorts InErrors OutDatagrams RcvbufErrors SndbufErrors InCsumErrors IgnoredMulti\n" +
+            "UdpLite: 99 99 99 99 99 99 99 99\n";
+
+    public static final String NETSTAT =
+            "TcpExt: SyncookiesSent SyncookiesRecv ListenOverflows ListenDrops TCPTimeouts TCPSynRetrans\n" +
+            "TcpExt: 0 0 11 12 13 14\n" +
+            "IpExt: InNoRoutes InTruncatedPkts\n" +
+            "IpExt: 0 0\n";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void writeNet(File procRoot, String dev, String snmp, String netstat) throws Exception {
+
+        File net = new File(procRoot, "net");
+
+        assertTrue(net.isDirectory() || net.mkdirs());
+
+        if (dev != null) {
+
+            assertTrue(Files.write(new File(net, "dev"), dev));
+        }
+
+        if (snmp != null) {
+
+            assertTrue(Files.write(new File(net, "snmp"), snmp));
+        }
+
+        if (netstat != null) {
+
+            assertTrue(Files.write(new File(net, "netstat"), netstat));
+        }
+    }
+
+    private static ByteBuffer buffer(String content) {
+
+        return ByteBuffer.wrap(content.getBytes());
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/proc-net");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parseDev() throws Exception {
+
+        NetStatsReader r = new NetStatsReader(scratchDirectory, new NetworkAddress());
+
+        NetStatsSnapshot s = new NetStatsSnapshot();
+
+        r.parseDev(buffer(DEV), s);
+
+        assertEquals(3, s.getInterfaceCount());
+
+        assertEquals("lo", r.getInterfaceName(s.getInterface(0)));
+
+        assertEquals("eth0", r.getInterfaceName(s.getInterface(1)));
+        assertEquals(1048576L, s.getCounter(1, NetStatsSnapshot.RX_BYTES));
+        assertEquals(2000L, s.getCounter(1, NetStatsSnapshot.RX_PACKETS));
+        assertEquals(3L, s.getCounter(1, NetStatsSnapshot.RX_ERRORS));
+        assertEquals(4L, s.getCounter(1, NetStatsSnapshot.RX_DROPPED));
+        assertEquals(524288L, s.getCounter(1, NetStatsSnapshot.TX_BYTES));
+        assertEquals(1000L, s.getCounter(1, NetStatsSnapshot.TX_PACKETS));
+        assertEquals(5L, s.getCounter(1, NetStatsSnapshot.TX_ERRORS));
+        assertEquals(6L, s.getCounter(1, NetStatsSnapshot.TX_DROPPED));
+
+        //
+        // no space after the colon
+        //
+
+        assertEquals("veth1a2b", r.getInterfaceName(s.getInterface(2)));
+        assertEquals(10L, s.getCounter(2, NetStatsSnapshot.RX_BYTES));
+        assertEquals(20L, s.getCounter(2, NetStatsSnapshot.TX_BYTES));
+    }
+
+    @Test
+    public void parseDev_Globs() throws Exception {
+
+        NetStatsReader r = new NetStatsReader(scratchDirectory, NetworkAddress.parse("!lo,!veth*"));
+
+        NetStatsSnapshot s = new NetStatsSnapshot();
+
+        r.parseDev(buffer(DEV), s);
+
+        assertEquals(1, s.getInterfaceCount());
+        assertEquals("eth0", r.getInterfaceName(s.getInterface(0)));
+
+        //
+        // the excluded interfaces are registered, so they are not evaluated again
+        //
+
+        assertEquals(3, r.getInterfaceRegistrySize());
+
+        r.parseDev(buffer(DEV), s);
+
+        assertEquals(1, s.getInterfaceCount());
+        assertEquals(3, r.getInterfaceRegistrySize());
+    }
+
+    @Test
+    public void parseProtocol_Snmp() throws Exception {
+
+        NetStatsReader r = new NetStatsReader(scratchDirectory, new NetworkAddress());
+
+        NetStatsSnapshot s = new NetStatsSnapshot();
+
+        r.parseProtocol(buffer(SNMP), NetStatsReader.SNMP, s);
+
+        assertEquals(5000L, s.getProtocolCounter(NetStatsSnapshot.IP_IN_RECEIVES));
+        assertEquals(1L, s.getProtocolCounter(NetStatsSnapshot.IP_IN_HDR_ERRORS));
+        assertEquals(2L, s.getProtocolCounter(NetStatsSnapshot.IP_IN_DISCARDS));
+        assertEquals(4800L, s.getProtocolCounter(NetStatsSnapshot.IP_OUT_REQUESTS));
+
+        assertEquals(300L, s.getProtocolCounter(NetStatsSnapshot.TCP_ACTIVE_OPENS));
+        assertEquals(400L, s.getProtocolCounter(NetStatsSnapshot.TCP_PASSIVE_OPENS));
+        assertEquals(5L, s.getProtocolCounter(NetStatsSnapshot.TCP_ATTEMPT_FAILS));
+        assertEquals(6L, s.getProtocolCounter(NetStatsSnapshot.TCP_ESTAB_RESETS));
+        assertEquals(42L, s.getProtocolCounter(NetStatsSnapshot.TCP_CURR_ESTAB));
+        assertEquals(10000L, s.getProtocolCounter(NetStatsSnapshot.TCP_IN_SEGS));
+        assertEquals(9000L, s.getProtocolCounter(NetStatsSnapshot.TCP_OUT_SEGS));
+        assertEquals(90L, s.getProtocolCounter(NetStatsSnapshot.TCP_RETRANS_SEGS));
+        assertEquals(1L, s.getProtocolCounter(NetStatsSnapshot.TCP_IN_ERRS));
+        assertEquals(7L, s.getProtocolCounter(NetStatsSnapshot.TCP_OUT_RSTS));
+
+        //
+        // the UdpLite group does not overwrite the Udp counters
+        //
+
+        assertEquals(700L, s.getProtocolCounter(NetStatsSnapshot.UDP_IN_DATAGRAMS));
+        assertEquals(8L, s.getProtocolCounter(NetStatsSnapshot.UDP_NO_PORTS));
+        assertEquals(2L, s.getProtocolCounter(NetStatsSnapshot.UDP_IN_ERRORS));
+        assertEquals(600L, s.getProtocolCounter(NetStatsSnapshot.UDP_OUT_DATAGRAMS));
+        assertEquals(1L, s.getProtocolCounter(NetStatsSnapshot.UDP_RCVBUF_ERRORS));
+        assertEquals(0L, s.getProtocolCounter(NetStatsSnapshot.UDP_SNDBUF_ERRORS));
+
+        assertTrue(s.isPresent(NetStatsSnapshot.TCP_RETRANS_SEGS));
+        assertFalse(s.isPresent(NetStatsSnapshot.TCP_LISTEN_OVERFLOWS));
+    }
+
+    @Test
+    public void parseProtocol_Netstat() throws Exception {
+
+        NetStatsReader r = new NetStatsReader(scratchDirectory, new NetworkAddress());
+
+        NetStatsSnapshot s = new NetStatsSnapshot();
+
+        r.parseProtocol(buffer(NETSTAT), NetStatsReader.NETSTAT, s);
+
+        assertEquals(11L, s.getProtocolCounter(NetStatsSnapshot.TCP_LISTEN_OVERFLOWS));
+        assertEquals(12L, s.getProtocolCounter(NetStatsSnapshot.TCP_LISTEN_DROPS));
+        assertEquals(13L, s.getProtocolCounter(NetStatsSnapshot.TCP_TIMEOUTS));
+        assertEquals(14L, s.getProtocolCounter(NetStatsSnapshot.TCP_SYN_RETRANS));
+        assertFalse(s.isPresent(NetStatsSnapshot.TCP_CURR_ESTAB));
+    }
+
+    @Test
+    public void parseProtocol_CounterNotExposedByTheKernel() throws Exception {
+
+        NetStatsReader r = new NetStatsReader(scratchDirectory, new NetworkAddress());
+
+        NetStatsSnapshot s = new NetStatsSnapshot();
+
+        r.parseProtocol(buffer(NETSTAT), NetStatsReader.NETSTAT, s);
+
+        assertTrue(s.isPresent(NetStatsSnapshot.TCP_SYN_RETRANS));
+
+        r.parseProtocol(buffer("TcpExt: ListenOverflows ListenDrops\nTcpExt: 1 2\n"), NetStatsReader.NETSTAT, s);
+
+        assertTrue(s.isPresent(NetStatsSnapshot.TCP_LISTEN_DROPS));
+        assertFalse(s.isPresent(NetStatsSnapshot.TCP_SYN_RETRANS));
+    }
+
+    @Test
+    public void read() throws Exception {
+
+        writeNet(scratchDirectory, DEV, SNMP, null);
+
+        assertTrue(NetStatsReader.isAvailable(scratchDirectory));
+
+        NetStatsReader r = new NetStatsReader(scratchDirectory, new NetworkAddress());
+
+        NetStatsSnapshot s = new NetStatsSnapshot();
+
+        r.read(s, NetStatsReader.DEV | NetStatsReader.SNMP | NetStatsReader.NETSTAT);
+
+        assertEquals(3, s.getInterfaceCount());
+        assertTrue(s.isPresent(NetStatsSnapshot.TCP_CURR_ESTAB));
+
+        //
+        // no netstat file
+        //
+
+        assertFalse(s.isPresent(NetStatsSnapshot.TCP_LISTEN_OVERFLOWS));
+
+        //
+        // only the requested files are read
+        //
+
+        r.read(s, NetStatsReader.DEV);
+
+        assertFalse(s.isPresent(NetStatsSnapshot.TCP_CURR_ESTAB));
+
+        r.close();
+    }
+
+    @Test
+    public void isAvailable() throws Exception {
+
+        assertFalse(NetStatsReader.isAvailable(new File(scratchDirectory, "no-such-dir")));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class NetworkMetricDefinitionTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isNetworkMetricDeclaration() throws Exception {
+
+        assertTrue(NetworkMetricDefinition.isNetworkMetricDeclaration("net/TcpCurrEstab"));
+        assertTrue(NetworkMetricDefinition.isNetworkMetricDeclaration("net:eth0/RxBytesPerSecond"));
+        assertFalse(NetworkMetricDefinition.isNetworkMetricDeclaration("network/TcpCurrEstab"));
+        assertFalse(NetworkMetricDefinition.isNetworkMetricDeclaration(null));
+    }
+
+    @Test
+    public void parse() throws Exception {
+
+        NetworkMetricDefinition d = NetworkMetricDefinition.parse(new PropertyFactory(), "net/TcpCurrEstab");
+
+        assertEquals(NetworkMetric.TCP_CURR_ESTAB, d.getMetric());
+        assertEquals("TcpCurrEstab", d.getId());
+        assertEquals(Long.class, d.getType());
+        assertNull(d.getBaseUnit());
+        assertEquals(new NetworkAddress(), d.getMetricSourceAddress());
+        assertEquals("net/TcpCurrEstab", d.toString());
+    }
+
+    @Test
+    public void parse_Globs() throws Exception {
+
+        NetworkMetricDefinition d = NetworkMetricDefinition.parse(
+                new PropertyFactory(), "net:eth*, bond?,!eth9/TxBytesPerSecond");
+
+        assertEquals(NetworkMetric.TX_BYTES_PER_SECOND, d.getMetric());
+        assertEquals(Double.class, d.getType());
+
+        NetworkAddress a = (NetworkAddress)d.getMetricSourceAddress();
+        assertEquals(Arrays.asList("eth*", "bond?", "!eth9"), a.getGlobs());
+        assertEquals("net:eth*,bond?,!eth9", a.getLiteral());
+    }
+
+    @Test
+    public void parse_EmptyGlob() throws Exception {
+
+        try {
+
+            NetworkMetricDefinition.parse(new PropertyFactory(), "net:eth0,,eth1/RxBytesPerSecond");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("empty interface glob"));
+        }
+    }
+
+    @Test
+    public void parse_UnknownMetric() throws Exception {
+
+        try {
+
+            NetworkMetricDefinition.parse(new PropertyFactory(), "net/NoSuchMetric");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertEquals("unknown network metric \"NoSuchMetric\"", msg);
+        }
+    }
+
+    @Test
+    public void accepts() throws Exception {
+
+        NetworkAddress all = new NetworkAddress();
+        assertTrue(all.accepts("lo"));
+        assertTrue(all.accepts("eth0"));
+
+        NetworkAddress a = NetworkAddress.parse("eth*,bond?,!eth9");
+        assertTrue(a.accepts("eth0"));
+        assertTrue(a.accepts("eth10"));
+        assertFalse(a.accepts("eth9"));
+        assertTrue(a.accepts("bond0"));
+        assertFalse(a.accepts("bond10"));
+        assertFalse(a.accepts("lo"));
+
+        NetworkAddress excludesOnly = NetworkAddress.parse("!lo,!veth*");
+        assertTrue(excludesOnly.accepts("eth0"));
+        assertFalse(excludesOnly.accepts("lo"));
+        assertFalse(excludesOnly.accepts("veth1a2b"));
+
+        //
+        // regular expression characters in globs are literal
+        //
+
+        NetworkAddress dotted = NetworkAddress.parse("eth0.1*");
+        assertTrue(dotted.accepts("eth0.100"));
+        assertFalse(dotted.accepts("eth0x100"));
+    }
+
+    @Test
+    public void equalsAndHashCode() throws Exception {
+
+        assertEquals(NetworkAddress.parse("eth*"), NetworkAddress.parse("eth*"));
+        assertEquals(NetworkAddress.parse("eth*").hashCode(), NetworkAddress.parse("eth*").hashCode());
+        assertFalse(NetworkAddress.parse("eth*").equals(NetworkAddress.parse("en*")));
+        assertEquals(new NetworkAddress(), NetworkAddress.parse(null));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class NetworkMetricSourceTest extends LinuxMetricSourceBaseTest<NetworkMetricSource> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void collectMetrics_FirstReadingOnlyReportsGauges() throws Exception {
+
+        NetworkMetricSource s = source(new NetworkAddress());
+
+        List<Property> properties = s.collectMetrics(
+                definitions("RxBytesPerSecond", "TcpRetransSegsPerSecond", "TcpRetransPercentage", "TcpCurrEstab"));
+
+        assertEquals(1, properties.size());
+        assertEquals("TcpCurrEstab", properties.get(0).getName());
+        assertEquals(42L, properties.get(0).getValue());
+    }
+
+    @Test
+    public void collectMetrics_RatesAreComputedBetweenSamples() throws Exception {
+
+        NetworkMetricSource s = source(NetworkAddress.parse("eth*"));
+
+        List<MetricDefinition> mds = definitions(
+                "RxBytesPerSecond", "TxErrorsPerSecond", "TcpRetransPercentage", "TcpListenOverflowsPerSecond");
+
+        s.collectMetrics(mds);
+
+        //
+        // eth0 did not transmit, 1000 segments were sent, of which 50 were retransmissions
+        //
+
+        NetStatsReaderTest.writeNet(scratchDirectory,
+                NetStatsReaderTest.DEV.replace("1048576 2000", "2097152 3000"),
+                NetStatsReaderTest.SNMP.replace("10000 9000 90", "10000 10000 140"),
+                NetStatsReaderTest.NETSTAT.replace("0 0 11 12", "0 0 15 16"));
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(4, properties.size());
+
+        assertEquals("RxBytesPerSecond[eth0]", properties.get(0).getName());
+        assertTrue((Double)properties.get(0).getValue() > 0);
+
+        assertEquals("TxErrorsPerSecond[eth0]", properties.get(1).getName());
+        assertEquals(0d, (Double)properties.get(1).getValue(), 0.0000001);
+
+        assertEquals("TcpRetransPercentage", properties.get(2).getName());
+        assertEquals(5d, (Double)properties.get(2).getValue(), 0.0000001);
+
+        assertEquals("TcpListenOverflowsPerSecond", properties.get(3).getName());
+        assertTrue((Double)properties.get(3).getValue() > 0);
+    }
+
+    @Test
+    public void collectMetrics_ProtocolCountersNotAvailable() throws Exception {
+
+        assertTrue(new File(scratchDirectory, "net/netstat").delete());
+
+        NetworkMetricSource s = source(new NetworkAddress());
+
+        List<MetricDefinition> mds = definitions("TcpListenDropsPerSecond", "TcpInSegsPerSecond");
+
+        s.collectMetrics(mds);
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(1, properties.size());
+        assertEquals("TcpInSegsPerSecond", properties.get(0).getName());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected String getScratchDirectoryName() {
+
+        return "net-source";
+    }
+
+    @Override
+    protected NetworkAddress getAddressToTest() {
+
+        return new NetworkAddress();
+    }
+
+    @Override
+    protected NetworkMetricSource getMetricSourceToTest() {
+
+        return source(getAddressToTest());
+    }
+
+    @Override
+    protected MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate) {
+
+        return new NetworkMetricSourceFactory(delegate, scratchDirectory);
+    }
+
+    @Override
+    protected String getMetricIdToTest() {
+
+        return "TcpCurrEstab";
+    }
+
+    @Override
+    protected String getForeignMetricMessage() {
+
+        return "are network metrics";
+    }
+
+    @Override
+    protected void populate() throws Exception {
+
+        NetStatsReaderTest.writeNet(
+                scratchDirectory, NetStatsReaderTest.DEV, NetStatsReaderTest.SNMP, NetStatsReaderTest.NETSTAT);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private NetworkMetricSource source(NetworkAddress address) {
+
+        return new NetworkMetricSource(address, new NetStatsReader(scratchDirectory, address), pf);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
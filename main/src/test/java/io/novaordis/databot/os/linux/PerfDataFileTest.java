@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PerfDataFileTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String USER = "test";
+
+    public static final int SIZE = 4096;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes the performance data file of the given JVM under tmpRoot/hsperfdata_test, little endian, as HotSpot
+     * does on x86.
+     *
+     * @param entries Long or String values, by name.
+     */
+    public static File writePerfData(File tmpRoot, int pid, Map<String, Object> entries) throws Exception {
+
+        File d = new File(tmpRoot, JvmTarget.PERF_DATA_DIRECTORY_PREFIX + USER);
+
+        assertTrue(d.isDirectory() || d.mkdirs());
+
+        File f = new File(d, Integer.toString(pid));
+
+        //
+        // rewrites in place, so an existing mapping sees the new content
+        //
+
+        java.nio.file.Files.write(f.toPath(), toPerfData(entries, ByteOrder.LITTLE_ENDIAN));
+
+        return f;
+    }
+
+    public static byte[] toPerfData(Map<String, Object> entries, ByteOrder order) {
+
+        ByteBuffer b = ByteBuffer.allocate(SIZE).order(order);
+
+        b.order(ByteOrder.BIG_ENDIAN).putInt(PerfDataFile.MAGIC).order(order);
+        b.put((byte)(ByteOrder.BIG_ENDIAN.equals(order) ? 0 : 1));
+        b.put((byte)PerfDataFile.SUPPORTED_MAJOR_VERSION);
+        b.put((byte)0);
+        b.put((byte)1);
+
+        b.position(PerfDataFile.PROLOGUE_SIZE);
+
+        for(Map.Entry<String, Object> e: entries.entrySet()) {
+
+            byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+
+            int dataOffset = align(20 + name.length + 1);
+
+            byte[] data;
+            byte type;
+
+            if (e.getValue() instanceof String) {
+
+                byte[] s = ((String)e.getValue()).getBytes(StandardCharsets.UTF_8);
+
+                data = new byte[s.length + 1];
+                System.arraycopy(s, 0, data, 0, s.length);
+                type = PerfDataFile.TYPE_BYTE_ARRAY;
+            }
+            else {
+
+                data = ByteBuffer.allocate(8).order(order).putLong((Long)e.getValue()).array();
+                type = PerfDataFile.TYPE_LONG;
+            }
+
+            int start = b.position();
+            int length = align(dataOffset + data.length);
+
+            b.putInt(length);
+            b.putInt(20);
+            b.putInt(type == PerfDataFile.TYPE_LONG ? 0 : data.length);
+            b.put(type);
+            b.put((byte)0);
+            b.put((byte)0);
+            b.put((byte)0);
+            b.putInt(dataOffset);
+            b.put(name);
+            b.position(start + dataOffset);
+            b.put(data);
+            b.position(start + length);
+        }
+
+        b.putInt(8, b.position());
+        b.putInt(24, PerfDataFile.PROLOGUE_SIZE);
+        b.putInt(28, entries.size());
+
+        return b.array();
+    }
+
+    private static int align(int n) {
+
+        return (n + 7) & ~7;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/perf-data-file");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void map() throws Exception {
+
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("sun.os.hrt.frequency", 1000000000L);
+        entries.put("sun.rt.javaCommand", "org.jboss.modules.Main -mp /opt/jboss/modules");
+        entries.put("sun.gc.collector.0.invocations", 17L);
+
+        File f = writePerfData(scratchDirectory, 100, entries);
+
+        PerfDataFile pd = PerfDataFile.map(f);
+
+        assertTrue(pd.isAccessible());
+        assertEquals(3, pd.getEntryCount());
+        assertEquals(f, pd.getFile());
+
+        assertEquals(1000000000L, pd.getLong("sun.os.hrt.frequency"));
+        assertEquals(17L, pd.getLong(pd.getLongOffset("sun.gc.collector.0.invocations")));
+        assertEquals("org.jboss.modules.Main -mp /opt/jboss/modules", pd.getString("sun.rt.javaCommand"));
+
+        assertEquals(-1, pd.getLongOffset("no.such.counter"));
+        assertEquals(-1L, pd.getLong("no.such.counter"));
+        assertNull(pd.getString("no.such.string"));
+
+        //
+        // type mismatch
+        //
+
+        assertEquals(-1, pd.getLongOffset("sun.rt.javaCommand"));
+        assertNull(pd.getString("sun.os.hrt.frequency"));
+    }
+
+    @Test
+    public void map_BigEndian() throws Exception {
+
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("java.threads.live", 12L);
+
+        File f = new File(scratchDirectory, "big-endian");
+
+        java.nio.file.Files.write(f.toPath(), toPerfData(entries, ByteOrder.BIG_ENDIAN));
+
+        assertEquals(12L, PerfDataFile.map(f).getLong("java.threads.live"));
+    }
+
+    @Test
+    public void map_CountersAreReadInPlace() throws Exception {
+
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("java.threads.live", 12L);
+
+        File f = writePerfData(scratchDirectory, 100, entries);
+
+        PerfDataFile pd = PerfDataFile.map(f);
+
+        int offset = pd.getLongOffset("java.threads.live");
+
+        entries.put("java.threads.live", 13L);
+        writePerfData(scratchDirectory, 100, entries);
+
+        assertEquals(13L, pd.getLong(offset));
+        assertFalse(pd.reindexIfNeeded());
+    }
+
+    @Test
+    public void reindexIfNeeded() throws Exception {
+
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("java.threads.live", 12L);
+
+        File f = writePerfData(scratchDirectory, 100, entries);
+
+        PerfDataFile pd = PerfDataFile.map(f);
+
+        assertEquals(-1L, pd.getLong("java.threads.daemon"));
+
+        entries.put("java.threads.daemon", 5L);
+        writePerfData(scratchDirectory, 100, entries);
+
+        assertTrue(pd.reindexIfNeeded());
+        assertEquals(5L, pd.getLong("java.threads.daemon"));
+        assertEquals(12L, pd.getLong("java.threads.live"));
+    }
+
+    @Test
+    public void map_NotAPerfDataFile() throws Exception {
+
+        File f = new File(scratchDirectory, "not-perf-data");
+
+        java.nio.file.Files.write(f.toPath(), new byte[SIZE]);
+
+        try {
+
+            PerfDataFile.map(f);
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("is not a performance data file, magic 0x0"));
+        }
+    }
+
+    @Test
+    public void map_UnsupportedVersion() throws Exception {
+
+        byte[] content = toPerfData(new LinkedHashMap<>(), ByteOrder.LITTLE_ENDIAN);
+        content[5] = 1;
+
+        File f = new File(scratchDirectory, "version-1");
+
+        java.nio.file.Files.write(f.toPath(), content);
+
+        try {
+
+            PerfDataFile.map(f);
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("unsupported performance data version 1"));
+        }
+    }
+
+    @Test
+    public void map_InvalidEntry() throws Exception {
+
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("java.threads.live", 12L);
+
+        byte[] content = toPerfData(entries, ByteOrder.LITTLE_ENDIAN);
+
+        //
+        // the entry length points past the used part of the file
+        //
+
+        ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).putInt(PerfDataFile.PROLOGUE_SIZE, SIZE);
+
+        File f = new File(scratchDirectory, "invalid-entry");
+
+        java.nio.file.Files.write(f.toPath(), content);
+
+        try {
+
+            PerfDataFile.map(f);
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid entry 0 at offset 32"));
+        }
+    }
+
+    @Test
+    public void readString() throws Exception {
+
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("sun.os.hrt.frequency", 1000000000L);
+        entries.put("sun.rt.javaCommand", "org.jboss.modules.Main -mp /opt/jboss/modules");
+        entries.put("sun.gc.collector.0.invocations", 17L);
+
+        File f = writePerfData(scratchDirectory, 100, entries);
+
+        assertEquals("org.jboss.modules.Main -mp /opt/jboss/modules", PerfDataFile.readString(f, "sun.rt.javaCommand"));
+
+        assertNull(PerfDataFile.readString(f, "no.such.string"));
+        assertNull(PerfDataFile.readString(f, "sun.rt"));
+
+        //
+        // type mismatch
+        //
+
+        assertNull(PerfDataFile.readString(f, "sun.os.hrt.frequency"));
+    }
+
+    @Test
+    public void readString_EntriesSpanReads() throws Exception {
+
+        Map<String, Object> entries = new LinkedHashMap<>();
+
+        for(int i = 0; i < 20; i ++) {
+
+            entries.put("java.property." + i, (long)i);
+        }
+
+        entries.put("sun.rt.javaCommand", "app.jar --config /etc/app/application-configuration.yml --verbose");
+
+        File f = writePerfData(scratchDirectory, 100, entries);
+
+        //
+        // smaller than most entries, the buffer must grow
+        //
+
+        assertEquals("app.jar --config /etc/app/application-configuration.yml --verbose",
+                PerfDataFile.readString(f, "sun.rt.javaCommand", 40));
+
+        assertEquals("app.jar --config /etc/app/application-configuration.yml --verbose",
+                PerfDataFile.readString(f, "sun.rt.javaCommand", 100));
+    }
+
+    @Test
+    public void readString_BigEndian() throws Exception {
+
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("java.threads.live", 12L);
+        entries.put("sun.rt.javaCommand", "app.jar");
+
+        File f = new File(scratchDirectory, "big-endian");
+
+        java.nio.file.Files.write(f.toPath(), toPerfData(entries, ByteOrder.BIG_ENDIAN));
+
+        assertEquals("app.jar", PerfDataFile.readString(f, "sun.rt.javaCommand"));
+    }
+
+    @Test
+    public void readString_NotAPerfDataFile() throws Exception {
+
+        File f = new File(scratchDirectory, "not-perf-data");
+
+        java.nio.file.Files.write(f.toPath(), new byte[SIZE]);
+
+        try {
+
+            PerfDataFile.readString(f, "sun.rt.javaCommand");
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("is not a performance data file, magic 0x0"));
+        }
+    }
+
+    @Test
+    public void readString_InvalidEntry() throws Exception {
+
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("java.threads.live", 12L);
+
+        byte[] content = toPerfData(entries, ByteOrder.LITTLE_ENDIAN);
+
+        ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).putInt(PerfDataFile.PROLOGUE_SIZE, SIZE);
+
+        File f = new File(scratchDirectory, "invalid-entry");
+
+        java.nio.file.Files.write(f.toPath(), content);
+
+        try {
+
+            PerfDataFile.readString(f, "sun.rt.javaCommand");
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid entry 0 at offset 32"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class PidTableTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_CapacityIsRoundedUpToAPowerOfTwo() throws Exception {
+
+        assertEquals(16, new PidTable(10).capacity());
+        assertEquals(16, new PidTable(16).capacity());
+        assertEquals(PidTable.DEFAULT_CAPACITY, new PidTable().capacity());
+    }
+
+    @Test
+    public void constructor_InvalidCapacity() throws Exception {
+
+        try {
+
+            new PidTable(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertEquals("invalid capacity 0", msg);
+        }
+    }
+
+    @Test
+    public void insertAndFind() throws Exception {
+
+        PidTable t = new PidTable(8);
+
+        int slot = t.insert(1234);
+        t.ticks[slot] = 77L;
+        t.startTimes[slot] = 88L;
+
+        assertEquals(slot, t.find(1234));
+        assertEquals(1234, t.getPid(slot));
+        assertEquals(77L, t.getTicks(slot));
+        assertEquals(88L, t.getStartTime(slot));
+        assertEquals(-1, t.find(1235));
+        assertEquals(1, t.size());
+    }
+
+    @Test
+    public void insert_InvalidPid() throws Exception {
+
+        try {
+
+            new PidTable().insert(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertEquals("invalid pid 0", msg);
+        }
+    }
+
+    @Test
+    public void insert_TableGrowsAndKeepsTheState() throws Exception {
+
+        PidTable t = new PidTable(4);
+
+        for(int pid = 1; pid <= 1000; pid ++) {
+
+            int slot = t.insert(pid);
+            t.ticks[slot] = pid * 10L;
+            t.startTimes[slot] = pid * 100L;
+            t.commands[slot * PidTable.COMMAND_LENGTH] = (byte)('a' + pid % 26);
+            t.commandLengths[slot] = 1;
+        }
+
+        assertEquals(1000, t.size());
+        assertTrue(t.capacity() >= 2000);
+
+        for(int pid = 1; pid <= 1000; pid ++) {
+
+            int slot = t.find(pid);
+
+            assertEquals(pid, t.getPid(slot));
+            assertEquals(pid * 10L, t.getTicks(slot));
+            assertEquals(pid * 100L, t.getStartTime(slot));
+            assertEquals(String.valueOf((char)('a' + pid % 26)), t.getCommand(slot));
+        }
+
+        assertEquals(-1, t.find(1001));
+    }
+
+    @Test
+    public void clear() throws Exception {
+
+        PidTable t = new PidTable(4);
+
+        t.insert(1);
+        t.insert(2);
+        t.insert(3);
+
+        int capacity = t.capacity();
+
+        t.clear();
+
+        assertEquals(0, t.size());
+        assertEquals(capacity, t.capacity());
+        assertEquals(-1, t.find(1));
+    }
+
+    @Test
+    public void ensureCapacity() throws Exception {
+
+        PidTable t = new PidTable(4);
+
+        t.ensureCapacity(100);
+
+        int capacity = t.capacity();
+
+        assertTrue(capacity >= 200);
+
+        for(int pid = 1; pid <= 100; pid ++) {
+
+            t.insert(pid);
+        }
+
+        assertEquals(capacity, t.capacity());
+
+        try {
+
+            t.ensureCapacity(1000);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("not empty"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PressureMetricDefinitionTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isPressureMetricDeclaration() throws Exception {
+
+        assertTrue(PressureMetricDefinition.isPressureMetricDeclaration("pressure/CpuSomeAvg10"));
+        assertTrue(PressureMetricDefinition.isPressureMetricDeclaration("pressure:docker/*/CpuSomeAvg10"));
+        assertFalse(PressureMetricDefinition.isPressureMetricDeclaration("pressures/CpuSomeAvg10"));
+        assertFalse(PressureMetricDefinition.isPressureMetricDeclaration(null));
+    }
+
+    @Test
+    public void parse_System() throws Exception {
+
+        PressureMetricDefinition d =
+                PressureMetricDefinition.parse(new PropertyFactory(), "pressure/MemoryFullStallPercentage");
+
+        assertEquals(PressureMetric.MEMORY_FULL_STALL_PERCENTAGE, d.getMetric());
+        assertEquals(PressureMetric.Kind.STALL, d.getMetric().getKind());
+        assertEquals(PressureSnapshot.MEMORY + PressureSnapshot.FULL_TOTAL_USEC, d.getMetric().getField());
+        assertEquals("MemoryFullStallPercentage", d.getId());
+        assertEquals(Double.class, d.getType());
+        assertNull(d.getBaseUnit());
+
+        PressureAddress a = (PressureAddress)d.getMetricSourceAddress();
+        assertTrue(a.isSystem());
+        assertNull(a.getCgroups());
+        assertEquals(new PressureAddress(), a);
+        assertEquals("pressure/MemoryFullStallPercentage", d.toString());
+    }
+
+    @Test
+    public void parse_Cgroups() throws Exception {
+
+        PressureMetricDefinition d = PressureMetricDefinition.parse(
+                new PropertyFactory(), "pressure:system.slice/docker-*.scope,!system.slice/docker-1*/IoSomeAvg60");
+
+        assertEquals(PressureMetric.IO_SOME_AVG60, d.getMetric());
+        assertEquals(PressureMetric.Kind.AVERAGE, d.getMetric().getKind());
+
+        PressureAddress a = (PressureAddress)d.getMetricSourceAddress();
+        assertFalse(a.isSystem());
+        assertEquals(
+                Arrays.asList("system.slice/docker-*.scope", "!system.slice/docker-1*"), a.getCgroups().getGlobs());
+        assertEquals("pressure:system.slice/docker-*.scope,!system.slice/docker-1*", a.getLiteral());
+    }
+
+    @Test
+    public void parse_Root() throws Exception {
+
+        PressureMetricDefinition d = PressureMetricDefinition.parse(new PropertyFactory(), "pressure://CpuSomeAvg10");
+
+        PressureAddress a = (PressureAddress)d.getMetricSourceAddress();
+        assertEquals(Arrays.asList("/"), a.getCgroups().getGlobs());
+    }
+
+    @Test
+    public void parse_InvalidGlob() throws Exception {
+
+        try {
+
+            PressureMetricDefinition.parse(new PropertyFactory(), "pressure:docker//a/CpuSomeAvg10");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("invalid cgroup glob \"docker//a\""));
+        }
+    }
+
+    @Test
+    public void parse_UnknownMetric() throws Exception {
+
+        try {
+
+            PressureMetricDefinition.parse(new PropertyFactory(), "pressure/CpuSomeAvg300");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertEquals("unknown pressure metric \"CpuSomeAvg300\"", msg);
+        }
+    }
+
+    @Test
+    public void equalsAndHashCode() throws Exception {
+
+        assertEquals(new PressureAddress(), PressureAddress.parse(null));
+        assertEquals(new PressureAddress().hashCode(), PressureAddress.parse(null).hashCode());
+        assertEquals(PressureAddress.parse("docker/*"), PressureAddress.parse("docker/*"));
+        assertEquals(PressureAddress.parse("docker/*").hashCode(), PressureAddress.parse("docker/*").hashCode());
+        assertFalse(PressureAddress.parse("docker/*").equals(new PressureAddress()));
+        assertFalse(new PressureAddress().equals(PressureAddress.parse("docker/*")));
+        assertFalse(PressureAddress.parse("docker/*").equals(CgroupAddress.parse("docker/*")));
+        assertEquals("pressure:*", new PressureAddress(new CgroupAddress()).getLiteral());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
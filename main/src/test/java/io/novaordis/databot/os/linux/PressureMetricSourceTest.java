@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.databot.MockMetricSourceFactory;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PressureMetricSourceTest extends LinuxMetricSourceBaseTest<PressureMetricSource> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File procRoot;
+
+    private File cgroupRoot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void collectMetrics_System_FirstReadingOnlyReportsAverages() throws Exception {
+
+        PressureMetricSource s = getMetricSourceToTest();
+
+        List<Property> properties =
+                s.collectMetrics(definitions("CpuSomeAvg10", "CpuSomeStallPercentage", "MemoryFullAvg60"));
+
+        assertEquals(2, properties.size());
+
+        assertEquals("CpuSomeAvg10", properties.get(0).getName());
+        assertEquals(31.4d, (Double)properties.get(0).getValue(), 0.0000001);
+
+        assertEquals("MemoryFullAvg60", properties.get(1).getName());
+        assertEquals(0.75d, (Double)properties.get(1).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void collectMetrics_System_StallPercentage() throws Exception {
+
+        PressureMetricSource s = getMetricSourceToTest();
+
+        List<MetricDefinition> mds = definitions("MemorySomeStallPercentage", "IoFullStallPercentage");
+
+        assertTrue(s.collectMetrics(mds).isEmpty());
+
+        //
+        // memory stalls accumulate, I/O does not
+        //
+
+        PressureReaderTest.writePressure(procRoot, PressureReaderTest.CPU,
+                PressureReaderTest.MEMORY.replace("total=2000000", "total=2500000"), PressureReaderTest.IO);
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(2, properties.size());
+
+        assertEquals("MemorySomeStallPercentage", properties.get(0).getName());
+        assertTrue((Double)properties.get(0).getValue() > 0);
+
+        assertEquals("IoFullStallPercentage", properties.get(1).getName());
+        assertEquals(0d, (Double)properties.get(1).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void collectMetrics_Cgroups() throws Exception {
+
+        PressureMetricSource s = cgroupSource(PressureAddress.parse("docker/*"));
+
+        List<MetricDefinition> mds = definitions("CpuSomeAvg10", "IoFullStallPercentage");
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        assertEquals(1, properties.size());
+        assertEquals("CpuSomeAvg10[docker/a1]", properties.get(0).getName());
+        assertEquals(31.4d, (Double)properties.get(0).getValue(), 0.0000001);
+
+        properties = s.collectMetrics(mds);
+
+        assertEquals(2, properties.size());
+        assertEquals("IoFullStallPercentage[docker/a1]", properties.get(1).getName());
+        assertEquals(0d, (Double)properties.get(1).getValue(), 0.0000001);
+    }
+
+    @Test
+    public void factory_CgroupAddress() throws Exception {
+
+        PressureMetricSourceFactory f =
+                new PressureMetricSourceFactory(new MockMetricSourceFactory(pf), procRoot, cgroupRoot);
+
+        assertTrue(f.buildMetricSource(PressureAddress.parse("docker/*")) instanceof PressureMetricSource);
+    }
+
+    @Test
+    public void factory_NoPressureStallInformation() throws Exception {
+
+        PressureMetricSourceFactory f =
+                new PressureMetricSourceFactory(new MockMetricSourceFactory(pf), cgroupRoot, cgroupRoot);
+
+        try {
+
+            f.buildMetricSource(new PressureAddress());
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("cannot read pressure metrics"));
+        }
+    }
+
+    @Test
+    public void factory_CgroupV1() throws Exception {
+
+        File v1 = new File(scratchDirectory, "cgroup-v1");
+        CgroupReaderTest.writeV1(v1, "docker/a1");
+
+        PressureMetricSourceFactory f = new PressureMetricSourceFactory(new MockMetricSourceFactory(pf), procRoot, v1);
+
+        try {
+
+            f.buildMetricSource(PressureAddress.parse("docker/*"));
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("is not a cgroup v2 hierarchy"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected String getScratchDirectoryName() {
+
+        return "pressure-source";
+    }
+
+    @Override
+    protected PressureAddress getAddressToTest() {
+
+        return new PressureAddress();
+    }
+
+    @Override
+    protected PressureMetricSource getMetricSourceToTest() {
+
+        return new PressureMetricSource(getAddressToTest(), new PressureReader(procRoot), pf);
+    }
+
+    @Override
+    protected MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate) {
+
+        return new PressureMetricSourceFactory(delegate, procRoot, cgroupRoot);
+    }
+
+    @Override
+    protected String getMetricIdToTest() {
+
+        return "MemoryFullAvg10";
+    }
+
+    @Override
+    protected String getForeignMetricMessage() {
+
+        return "are pressure metrics";
+    }
+
+    @Override
+    protected void populate() throws Exception {
+
+        procRoot = new File(scratchDirectory, "proc");
+        cgroupRoot = new File(scratchDirectory, "cgroup");
+
+        PressureReaderTest.writePressure(
+                procRoot, PressureReaderTest.CPU, PressureReaderTest.MEMORY, PressureReaderTest.IO);
+
+        CgroupReaderTest.writeV2(cgroupRoot, "docker/a1");
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private PressureMetricSource cgroupSource(PressureAddress address) {
+
+        return new PressureMetricSource(address, new CgroupReader(cgroupRoot, address.getCgroups()), pf);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class PressureReaderTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String CPU =
+            "some avg10=31.40 avg60=21.86 avg300=10.75 total=131636571\n" +
+            "full avg10=0.00 avg60=0.00 avg300=0.00 total=0\n";
+
+    public static final String MEMORY =
+            "some avg10=2.05 avg60=1.10 avg300=0.30 total=2000000\n" +
+            "full avg10=1.50 avg60=0.75 avg300=0.20 total=1000000\n";
+
+    public static final String IO =
+            "some avg10=0.00 avg60=0.00 avg300=0.00 total=1263092\n" +
+            "full avg10=0.00 avg60=0.00 avg300=0.00 total=995266\n";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes /proc/pressure under the given root.
+     */
+    public static void writePressure(File procRoot, String cpu, String memory, String io) throws Exception {
+
+        File pressure = new File(procRoot, "pressure");
+
+        CgroupReaderTest.write(pressure, "cpu", cpu);
+        CgroupReaderTest.write(pressure, "memory", memory);
+        CgroupReaderTest.write(pressure, "io", io);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/pressure-reader");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isAvailable() throws Exception {
+
+        assertFalse(PressureReader.isAvailable(scratchDirectory));
+
+        writePressure(scratchDirectory, CPU, MEMORY, IO);
+
+        assertTrue(PressureReader.isAvailable(scratchDirectory));
+    }
+
+    @Test
+    public void read() throws Exception {
+
+        writePressure(scratchDirectory, CPU, MEMORY, IO);
+
+        PressureReader r = new PressureReader(scratchDirectory);
+
+        PressureSnapshot s = new PressureSnapshot();
+
+        r.read(s);
+
+        assertTrue(s.getTimestampNanos() > 0);
+
+        assertEquals(3140L, s.getValue(PressureSnapshot.CPU + PressureSnapshot.SOME_AVG10));
+        assertEquals(2186L, s.getValue(PressureSnapshot.CPU + PressureSnapshot.SOME_AVG60));
+        assertEquals(131636571L, s.getValue(PressureSnapshot.CPU + PressureSnapshot.SOME_TOTAL_USEC));
+        assertEquals(0L, s.getValue(PressureSnapshot.CPU + PressureSnapshot.FULL_AVG10));
+        assertEquals(0L, s.getValue(PressureSnapshot.CPU + PressureSnapshot.FULL_TOTAL_USEC));
+
+        assertEquals(205L, s.getValue(PressureSnapshot.MEMORY + PressureSnapshot.SOME_AVG10));
+        assertEquals(110L, s.getValue(PressureSnapshot.MEMORY + PressureSnapshot.SOME_AVG60));
+        assertEquals(2000000L, s.getValue(PressureSnapshot.MEMORY + PressureSnapshot.SOME_TOTAL_USEC));
+        assertEquals(150L, s.getValue(PressureSnapshot.MEMORY + PressureSnapshot.FULL_AVG10));
+        assertEquals(75L, s.getValue(PressureSnapshot.MEMORY + PressureSnapshot.FULL_AVG60));
+        assertEquals(1000000L, s.getValue(PressureSnapshot.MEMORY + PressureSnapshot.FULL_TOTAL_USEC));
+
+        assertEquals(1263092L, s.getValue(PressureSnapshot.IO + PressureSnapshot.SOME_TOTAL_USEC));
+        assertEquals(995266L, s.getValue(PressureSnapshot.IO + PressureSnapshot.FULL_TOTAL_USEC));
+
+        r.close();
+    }
+
+    @Test
+    public void read_NoCpuFullLine() throws Exception {
+
+        //
+        // kernels older than 5.13 do not report "full" for the CPU
+        //
+
+        writePressure(scratchDirectory, CPU.substring(0, CPU.indexOf("full")), MEMORY, IO);
+
+        PressureReader r = new PressureReader(scratchDirectory);
+
+        PressureSnapshot s = new PressureSnapshot();
+
+        r.read(s);
+
+        assertEquals(3140L, s.getValue(PressureSnapshot.CPU + PressureSnapshot.SOME_AVG10));
+        assertEquals(-1L, s.getValue(PressureSnapshot.CPU + PressureSnapshot.FULL_AVG10));
+        assertEquals(-1L, s.getValue(PressureSnapshot.CPU + PressureSnapshot.FULL_TOTAL_USEC));
+        assertEquals(150L, s.getValue(PressureSnapshot.MEMORY + PressureSnapshot.FULL_AVG10));
+
+        r.close();
+    }
+
+    @Test
+    public void read_FileCannotBeRead() throws Exception {
+
+        writePressure(scratchDirectory, CPU, MEMORY, IO);
+        assertTrue(new File(scratchDirectory, "pressure/io").delete());
+
+        PressureReader r = new PressureReader(scratchDirectory);
+
+        PressureSnapshot s = new PressureSnapshot();
+
+        r.read(s);
+
+        assertEquals(3140L, s.getValue(PressureSnapshot.CPU + PressureSnapshot.SOME_AVG10));
+        assertEquals(-1L, s.getValue(PressureSnapshot.IO + PressureSnapshot.SOME_AVG10));
+
+        //
+        // not tried again
+        //
+
+        CgroupReaderTest.write(new File(scratchDirectory, "pressure"), "io", IO);
+
+        r.read(s);
+
+        assertEquals(-1L, s.getValue(PressureSnapshot.IO + PressureSnapshot.SOME_AVG10));
+
+        r.close();
+    }
+
+    @Test
+    public void parse_UnknownKeysAndLines() throws Exception {
+
+        String content = "some avg10=1.00 avg60=2.00 avg300=3.00 total=4 extra=5\nother avg10=9.00\n";
+
+        ByteBuffer b = ByteBuffer.allocateDirect(content.length());
+        b.put(content.getBytes());
+        b.flip();
+
+        long[] values = new long[PressureSnapshot.FIELD_COUNT];
+
+        PressureReader.parse(new ByteCursor().reset(b), values, PressureSnapshot.MEMORY);
+
+        assertEquals(100L, values[PressureSnapshot.MEMORY + PressureSnapshot.SOME_AVG10]);
+        assertEquals(200L, values[PressureSnapshot.MEMORY + PressureSnapshot.SOME_AVG60]);
+        assertEquals(4L, values[PressureSnapshot.MEMORY + PressureSnapshot.SOME_TOTAL_USEC]);
+        assertEquals(0L, values[PressureSnapshot.MEMORY + PressureSnapshot.FULL_AVG10]);
+        assertEquals(0L, values[PressureSnapshot.CPU + PressureSnapshot.SOME_AVG10]);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
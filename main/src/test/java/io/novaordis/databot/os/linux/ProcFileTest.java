@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcFileTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/proc-file");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void read_RereadsFromTheBeginning() throws Exception {
+
+        File f = new File(scratchDirectory, "loadavg");
+        assertTrue(Files.write(f, "0.10 0.20 0.30 1/10 100\n"));
+
+        ProcFile pf = new ProcFile(f);
+        assertFalse(pf.isOpen());
+
+        ByteBuffer b = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+
+        assertSame(b, pf.read(b));
+        assertEquals("0.10 0.20 0.30 1/10 100\n", content(b));
+        assertTrue(pf.isOpen());
+
+        //
+        // the channel stays open and picks up the new content
+        //
+
+        assertTrue(Files.write(f, "1.10 1.20 1.30 2/20 200\n"));
+
+        assertSame(b, pf.read(b));
+        assertEquals("1.10 1.20 1.30 2/20 200\n", content(b));
+        assertTrue(pf.isOpen());
+
+        pf.close();
+        assertFalse(pf.isOpen());
+    }
+
+    @Test
+    public void read_ContentLargerThanTheInitialBuffer() throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        while(sb.length() < 3 * ProcFile.INITIAL_BUFFER_SIZE) {
+
+            sb.append("line ").append(sb.length()).append('\n');
+        }
+
+        File f = new File(scratchDirectory, "large");
+        assertTrue(Files.write(f, sb.toString()));
+
+        ProcFile pf = new ProcFile(f);
+
+        ByteBuffer b = ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE);
+
+        ByteBuffer b2 = pf.read(b);
+        assertNotSame(b, b2);
+        assertTrue(b2.capacity() >= sb.length());
+        assertEquals(sb.toString(), content(b2));
+
+        //
+        // the grown buffer is kept by the caller, and reused
+        //
+
+        assertSame(b2, pf.read(b2));
+        assertEquals(sb.toString(), content(b2));
+
+        pf.close();
+    }
+
+    @Test
+    public void read_Chunks() throws Exception {
+
+        File f = new File(scratchDirectory, "chunks");
+        assertTrue(Files.write(f, "0123456789"));
+
+        ProcFile pf = new ProcFile(f);
+
+        ByteBuffer b = ByteBuffer.allocateDirect(4);
+
+        assertEquals(4, pf.read(b, 0));
+        b.flip();
+        assertEquals("0123", content(b));
+
+        b.clear();
+        assertEquals(4, pf.read(b, 4));
+        b.flip();
+        assertEquals("4567", content(b));
+
+        b.clear();
+        assertEquals(2, pf.read(b, 8));
+        b.flip();
+        assertEquals("89", content(b));
+
+        b.clear();
+        assertEquals(-1, pf.read(b, 10));
+        assertTrue(pf.isOpen());
+
+        pf.close();
+    }
+
+    @Test
+    public void read_NoSuchFile() throws Exception {
+
+        ProcFile pf = new ProcFile(new File(scratchDirectory, "no-such-file"));
+
+        try {
+
+            pf.read(ByteBuffer.allocateDirect(ProcFile.INITIAL_BUFFER_SIZE));
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            assertFalse(pf.isOpen());
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static String content(ByteBuffer b) {
+
+        byte[] bytes = new byte[b.remaining()];
+        b.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
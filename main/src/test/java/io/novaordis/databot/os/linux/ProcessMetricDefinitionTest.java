@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcessMetricDefinitionTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isProcessMetricDeclaration() throws Exception {
+
+        assertTrue(ProcessMetricDefinition.isProcessMetricDeclaration("process:pid:1/CpuTime"));
+        assertFalse(ProcessMetricDefinition.isProcessMetricDeclaration("PhysicalMemoryTotal"));
+        assertFalse(ProcessMetricDefinition.isProcessMetricDeclaration(null));
+    }
+
+    @Test
+    public void parse_PidFileTargetContainsSlashes() throws Exception {
+
+        ProcessMetricDefinition d = ProcessMetricDefinition.parse(
+                new PropertyFactory(), "process:pidfile:/var/run/jboss.pid/ResidentMemory");
+
+        assertEquals("ResidentMemory", d.getId());
+        assertEquals(Long.class, d.getType());
+        assertEquals(MemoryMeasureUnit.BYTE, d.getBaseUnit());
+
+        ProcessAddress a = (ProcessAddress)d.getMetricSourceAddress();
+        assertEquals("/var/run/jboss.pid", a.getTarget().getPidFile().getPath());
+        assertEquals("process:pidfile:/var/run/jboss.pid", a.getLiteral());
+        assertEquals("process", a.getProtocol());
+        assertNull(a.getHost());
+    }
+
+    @Test
+    public void parse_Rate() throws Exception {
+
+        ProcessMetricDefinition d =
+                ProcessMetricDefinition.parse(new PropertyFactory(), "process:cmdline:java/ReadBytesPerSecond");
+
+        assertEquals(ProcessMetric.READ_BYTE_RATE, d.getMetric());
+        assertEquals(Double.class, d.getType());
+        assertNull(d.getBaseUnit());
+    }
+
+    @Test
+    public void parse_SameTargetSameAddress() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+
+        ProcessMetricDefinition d = ProcessMetricDefinition.parse(pf, "process:pid:7/CpuTime");
+        ProcessMetricDefinition d2 = ProcessMetricDefinition.parse(pf, "process:pid:7/ThreadCount");
+
+        assertEquals(d.getMetricSourceAddress(), d2.getMetricSourceAddress());
+    }
+
+    @Test
+    public void parse_MissingMetric() throws Exception {
+
+        try {
+
+            ProcessMetricDefinition.parse(new PropertyFactory(), "process:pid:7");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("missing process metric"));
+        }
+    }
+
+    @Test
+    public void parse_InvalidTarget() throws Exception {
+
+        try {
+
+            ProcessMetricDefinition.parse(new PropertyFactory(), "process:name:java/CpuTime");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid process target \"name:java\""));
+        }
+    }
+
+    @Test
+    public void parse_Top() throws Exception {
+
+        ProcessMetricDefinition d = ProcessMetricDefinition.parse(new PropertyFactory(), "process:top:5/CpuTime");
+
+        assertEquals(ProcessMetric.CPU_TIME, d.getMetric());
+
+        ProcessAddress a = (ProcessAddress)d.getMetricSourceAddress();
+        assertEquals(5, a.getTarget().getTopCount());
+        assertEquals("process:top:5", a.getLiteral());
+    }
+
+    @Test
+    public void parse_TopByMetricThatCannotBeRanked() throws Exception {
+
+        try {
+
+            ProcessMetricDefinition.parse(new PropertyFactory(), "process:top:5/ThreadCount");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("processes cannot be ranked by ThreadCount"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
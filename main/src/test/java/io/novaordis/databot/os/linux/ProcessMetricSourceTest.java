@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.databot.MockMetricDefinition;
+import io.novaordis.databot.task.PreparedQuery;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcessMetricSourceTest extends LinuxMetricSourceBaseTest<ProcessMetricSource> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File pidFile;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void collectMetrics_FirstReadingReportsAveragesSinceStart() throws Exception {
+
+        //
+        // started 10 seconds after boot (1000 ticks), so it has been running for 100 seconds, during which it used
+        // 30 seconds of user time and 10 seconds of kernel time, and read 1 MB
+        //
+
+        ProcessReaderTest.writeProcess(
+                scratchDirectory, 100, "java", 1000, new long[] {3000, 1000, 0, 0, 0, 0, 1024000, 0}, 2048, 45, 7);
+
+        ProcessMetricSource s = source("pid:100");
+
+        List<Property> properties = s.collectMetrics(definitions(
+                "CpuTime", "CpuUserTime", "ReadBytesPerSecond", "ResidentMemory", "ThreadCount", "FileDescriptorCount"));
+
+        assertEquals(6, properties.size());
+
+        assertEquals("CpuTime", properties.get(0).getName());
+        assertEquals(40d, (Double)properties.get(0).getValue(), 0.0000001);
+        assertEquals(30d, (Double)properties.get(1).getValue(), 0.0000001);
+        assertEquals(10240d, (Double)properties.get(2).getValue(), 0.0000001);
+
+        Property p = properties.get(3);
+        assertEquals("ResidentMemory", p.getName());
+        assertEquals(2048L * 1024, p.getValue());
+        assertEquals(MemoryMeasureUnit.BYTE, p.getMeasureUnit());
+
+        assertEquals(45L, properties.get(4).getValue());
+        assertEquals(7L, properties.get(5).getValue());
+
+        assertEquals(100, s.getPid());
+    }
+
+    @Test
+    public void collectMetrics_RatesAreComputedBetweenSamples() throws Exception {
+
+        long[] counters = new long[] {0, 0, 0, 0, 0, 0, 0, 0};
+
+        ProcessReaderTest.writeProcess(scratchDirectory, 100, "java", 1000, counters, 2048, 45, 7);
+
+        ProcessMetricSource s = source("pid:100");
+
+        List<MetricDefinition> mds = definitions("CpuTime", "ReadBytesPerSecond", "WriteBytesPerSecond");
+
+        long t0 = System.nanoTime();
+
+        s.collectMetrics(mds);
+
+        counters[ProcessSnapshot.UTIME] = 5;
+        counters[ProcessSnapshot.READ_BYTES] = 1000;
+        counters[ProcessSnapshot.WRITE_BYTES] = 2000;
+
+        ProcessReaderTest.writeProcess(scratchDirectory, 100, "java", 1000, counters, 2048, 45, 7);
+
+        Thread.sleep(100L);
+
+        List<Property> properties = s.collectMetrics(mds);
+
+        double maxElapsedSec = (System.nanoTime() - t0) / 1000000000d;
+
+        //
+        // 5 ticks are 50 ms of CPU time, over at least 100 ms
+        //
+
+        double cpu = (Double)properties.get(0).getValue();
+        assertTrue(cpu > 0d);
+        assertTrue(cpu <= 50d);
+        assertTrue(cpu >= 5d / maxElapsedSec);
+
+        double read = (Double)properties.get(1).getValue();
+        double write = (Double)properties.get(2).getValue();
+        assertTrue(read <= 10000d);
+        assertEquals(2d, write / read, 0.0000001);
+    }
+
+    @Test
+    public void collectMetrics_TargetIsResolvedOnce() throws Exception {
+
+        ProcessReaderTest.writeProcess(scratchDirectory, 100, "java -jar app.jar", 1000, new long[8], 2048, 45, 7);
+
+        ProcessMetricSource s = source("cmdline:app\\.jar");
+
+        assertEquals(-1, s.getPid());
+
+        for(int i = 0; i < 5; i ++) {
+
+            s.collectMetrics(definitions("ThreadCount"));
+        }
+
+        assertEquals(100, s.getPid());
+        assertEquals(1, s.getResolutionCount());
+    }
+
+    @Test
+    public void collectMetrics_RestartedProcessIsRediscovered() throws Exception {
+
+        File proc = new File(LinuxProcReader.DEFAULT_PROC_ROOT);
+
+        if (ProcessMetricSource.getSelfPid(proc) == -1) {
+
+            //
+            // not on Linux
+            //
+            return;
+        }
+
+        Process p = startProcess();
+
+        int pid = waitForPidFile();
+
+        ProcessMetricSource s = new ProcessMetricSource(
+                new ProcessAddress(ProcessTarget.parse("pidfile:" + pidFile.getPath())), new ProcessReader(proc), pf);
+
+        List<MetricDefinition> mds = definitions("ThreadCount", "CpuTime");
+
+        List<Property> properties = s.collectMetrics(mds);
+        assertEquals(1L, properties.get(0).getValue());
+        assertEquals(pid, s.getPid());
+        assertEquals(1, s.getResolutionCount());
+
+        //
+        // the process restarts, with a different pid
+        //
+
+        p.destroy();
+        p.waitFor();
+
+        assertTrue(pidFile.delete());
+
+        Process p2 = startProcess();
+
+        try {
+
+            int pid2 = waitForPidFile();
+
+            properties = s.collectMetrics(mds);
+
+            assertEquals(pid2, s.getPid());
+            assertEquals(2, s.getResolutionCount());
+            assertEquals(1L, properties.get(0).getValue());
+        }
+        finally {
+
+            p2.destroy();
+            p2.waitFor();
+        }
+    }
+
+    @Test
+    public void collectMetrics_NoProcess() throws Exception {
+
+        ProcessMetricSource s = source("pidfile:" + pidFile.getPath());
+
+        try {
+
+            s.collectMetrics(definitions("ThreadCount"));
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("no process found for pidfile:"));
+        }
+
+        assertEquals(-1, s.getPid());
+    }
+
+    @Test
+    public void prepare_BaseUnit() throws Exception {
+
+        ProcessReaderTest.writeProcess(scratchDirectory, 100, "java", 1000, new long[8], 2048, 45, 7);
+
+        ProcessMetricSource s = source("pid:100");
+
+        MockMetricDefinition rss = definition("ResidentMemory");
+        rss.setBaseUnit(MemoryMeasureUnit.MEGABYTE);
+
+        PreparedQuery q = s.prepare(Collections.singletonList(rss));
+
+        assertNotNull(q);
+
+        Property p = q.execute().get(0);
+        assertEquals(2L, p.getValue());
+        assertEquals(MemoryMeasureUnit.MEGABYTE, p.getMeasureUnit());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected String getScratchDirectoryName() {
+
+        return "process-source";
+    }
+
+    @Override
+    protected ProcessAddress getAddressToTest() {
+
+        return new ProcessAddress(ProcessTarget.parse("pid:100"));
+    }
+
+    @Override
+    protected ProcessMetricSource getMetricSourceToTest() throws Exception {
+
+        ProcessReaderTest.writeProcess(scratchDirectory, 100, "java", 1000, new long[8], 2048, 45, 7);
+
+        return source("pid:100");
+    }
+
+    @Override
+    protected MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate) {
+
+        return new ProcessMetricSourceFactory(delegate, scratchDirectory);
+    }
+
+    @Override
+    protected String getMetricIdToTest() {
+
+        return "ResidentMemory";
+    }
+
+    @Override
+    protected String getForeignMetricMessage() {
+
+        return "are process metrics";
+    }
+
+    @Override
+    protected void populate() throws Exception {
+
+        pidFile = new File(scratchDirectory, "app.pid");
+
+        //
+        // 110 seconds since boot
+        //
+        ProcessReaderTest.writeUptime(scratchDirectory, "110.00");
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts a single-threaded process that writes its pid into the pid file.
+     */
+    private Process startProcess() throws Exception {
+
+        return new ProcessBuilder("/bin/sh", "-c", "echo $$ > " + pidFile.getPath() + "; exec sleep 30").start();
+    }
+
+    private int waitForPidFile() throws Exception {
+
+        long deadline = System.currentTimeMillis() + 5000L;
+
+        while(System.currentTimeMillis() < deadline) {
+
+            String s = pidFile.isFile() ? Files.read(pidFile).trim() : "";
+
+            if (!s.isEmpty()) {
+
+                return Integer.parseInt(s);
+            }
+
+            Thread.sleep(10L);
+        }
+
+        fail("no pid file after 5 seconds");
+        return -1;
+    }
+
+    private ProcessMetricSource source(String target) {
+
+        return new ProcessMetricSource(
+                new ProcessAddress(ProcessTarget.parse(target)), new ProcessReader(scratchDirectory), pf);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
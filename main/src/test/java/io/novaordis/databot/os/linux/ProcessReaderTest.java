@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcessReaderTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String STATUS =
+            "Name:\tjava\n" +
+            "State:\tS (sleeping)\n" +
+            "Tgid:\t%1$d\n" +
+            "Pid:\t%d\n" +
+            "VmSize:\t 4194304 kB\n" +
+            "VmRSS:\t  %d kB\n" +
+            "Threads:\t%d\n" +
+            "voluntary_ctxt_switches:\t%d\n" +
+            "nonvoluntary_ctxt_switches:\t%d\n";
+
+    public static final String IO =
+            "rchar: 1000\n" +
+            "wchar: 2000\n" +
+            "syscr: 10\n" +
+            "syscw: 20\n" +
+            "read_bytes: %d\n" +
+            "write_bytes: %d\n" +
+            "cancelled_write_bytes: 0\n";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes a /proc/[pid] directory with stat, status, io, cmdline and fd entries under the given root.
+     *
+     * @param counters utime, stime, minflt, majflt, voluntary and nonvoluntary context switches, read and write bytes,
+     *                 in this order.
+     */
+    public static void writeProcess(File procRoot, int pid, String commandLine, long startTime, long[] counters,
+                                    long rssKb, int threads, int fds) throws Exception {
+
+        File d = new File(procRoot, Integer.toString(pid));
+
+        assertTrue(d.isDirectory() || d.mkdirs());
+
+        String stat = pid + " (java (main)) S 1 " + pid + " " + pid + " 0 -1 4194560 " + counters[2] + " 0 " +
+                counters[3] + " 0 " + counters[0] + " " + counters[1] + " 0 0 20 0 " + threads + " 0 " + startTime +
+                " 4294967296 " + rssKb / 4 + " 18446744073709551615 1 1 0 0 0 0 0 0 2 0 0 0 17 0 0 0 0 0 0\n";
+
+        assertTrue(Files.write(new File(d, "stat"), stat));
+        assertTrue(Files.write(new File(d, "status"),
+                String.format(STATUS, pid, rssKb, threads, counters[4], counters[5])));
+        assertTrue(Files.write(new File(d, "io"), String.format(IO, counters[6], counters[7])));
+        assertTrue(Files.write(new File(d, "cmdline"), commandLine.replace(' ', '\0') + "\0"));
+
+        File fd = new File(d, "fd");
+
+        assertTrue(Files.rmdir(fd, false) || !fd.exists());
+        assertTrue(fd.mkdirs());
+
+        for(int i = 0; i < fds; i ++) {
+
+            assertTrue(Files.write(new File(fd, Integer.toString(i)), ""));
+        }
+    }
+
+    public static void writeUptime(File procRoot, String uptime) throws Exception {
+
+        assertTrue(Files.write(new File(procRoot, "uptime"), uptime + " 12345.67\n"));
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/proc-pid");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parseStat_CommandNameWithSpacesAndParentheses() throws Exception {
+
+        ProcessSnapshot s = new ProcessSnapshot();
+
+        ProcessReader.parseStat(ByteCursorTest.cursor(
+                "77 (a) b (c)) R 1 77 77 0 -1 4194304 11 0 12 0 13 14 0 0 20 0 15 0 16 17 18 0 0\n"), s);
+
+        assertEquals(11L, s.getCounter(ProcessSnapshot.MINOR_FAULTS));
+        assertEquals(12L, s.getCounter(ProcessSnapshot.MAJOR_FAULTS));
+        assertEquals(13L, s.getCounter(ProcessSnapshot.UTIME));
+        assertEquals(14L, s.getCounter(ProcessSnapshot.STIME));
+        assertEquals(15L, s.getGauge(ProcessSnapshot.THREADS));
+        assertEquals(16L, s.getStartTime());
+        assertEquals(17L, s.getGauge(ProcessSnapshot.VIRTUAL_MEMORY));
+    }
+
+    @Test
+    public void parseStat_NoCommandName() throws Exception {
+
+        try {
+
+            ProcessReader.parseStat(ByteCursorTest.cursor("77 R 1\n"), new ProcessSnapshot());
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("no command name"));
+        }
+    }
+
+    @Test
+    public void parseStatus() throws Exception {
+
+        ProcessSnapshot s = new ProcessSnapshot();
+
+        ProcessReader.parseStatus(ByteCursorTest.cursor(String.format(STATUS, 77, 2048, 45, 100, 7)), s);
+
+        assertEquals(2048L * 1024, s.getGauge(ProcessSnapshot.RESIDENT_MEMORY));
+        assertEquals(100L, s.getCounter(ProcessSnapshot.VOLUNTARY_CONTEXT_SWITCHES));
+        assertEquals(7L, s.getCounter(ProcessSnapshot.NONVOLUNTARY_CONTEXT_SWITCHES));
+    }
+
+    @Test
+    public void parseIo() throws Exception {
+
+        ProcessSnapshot s = new ProcessSnapshot();
+
+        ProcessReader.parseIo(ByteCursorTest.cursor(String.format(IO, 4096, 8192)), s);
+
+        assertEquals(4096L, s.getCounter(ProcessSnapshot.READ_BYTES));
+        assertEquals(8192L, s.getCounter(ProcessSnapshot.WRITE_BYTES));
+    }
+
+    @Test
+    public void read_NotOpen() throws Exception {
+
+        ProcessReader r = new ProcessReader(scratchDirectory);
+
+        try {
+
+            r.read(new ProcessSnapshot(), ProcessReader.STAT);
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("not open"));
+        }
+    }
+
+    @Test
+    public void read() throws Exception {
+
+        writeProcess(scratchDirectory, 77, "java -jar app.jar", 500, new long[] {1, 2, 3, 4, 5, 6, 7, 8}, 1024, 9, 3);
+
+        ProcessReader r = new ProcessReader(scratchDirectory);
+        r.open(77);
+        assertEquals(77, r.getPid());
+
+        ProcessSnapshot s = new ProcessSnapshot();
+
+        r.read(s, ProcessReader.STAT | ProcessReader.STATUS | ProcessReader.IO | ProcessReader.FD);
+
+        assertEquals(77, s.getPid());
+        assertEquals(500L, s.getStartTime());
+        assertEquals(1L, s.getCounter(ProcessSnapshot.UTIME));
+        assertEquals(2L, s.getCounter(ProcessSnapshot.STIME));
+        assertEquals(3L, s.getCounter(ProcessSnapshot.MINOR_FAULTS));
+        assertEquals(4L, s.getCounter(ProcessSnapshot.MAJOR_FAULTS));
+        assertEquals(5L, s.getCounter(ProcessSnapshot.VOLUNTARY_CONTEXT_SWITCHES));
+        assertEquals(6L, s.getCounter(ProcessSnapshot.NONVOLUNTARY_CONTEXT_SWITCHES));
+        assertEquals(7L, s.getCounter(ProcessSnapshot.READ_BYTES));
+        assertEquals(8L, s.getCounter(ProcessSnapshot.WRITE_BYTES));
+        assertEquals(1024L * 1024, s.getGauge(ProcessSnapshot.RESIDENT_MEMORY));
+        assertEquals(4294967296L, s.getGauge(ProcessSnapshot.VIRTUAL_MEMORY));
+        assertEquals(9L, s.getGauge(ProcessSnapshot.THREADS));
+        assertEquals(3L, s.getGauge(ProcessSnapshot.FILE_DESCRIPTORS));
+
+        //
+        // the size of a regular directory is not the number of entries
+        //
+        assertFalse(r.isFdSizeCount());
+
+        r.close();
+        assertEquals(-1, r.getPid());
+    }
+
+    @Test
+    public void read_OnlyTheSelectedFiles() throws Exception {
+
+        writeProcess(scratchDirectory, 77, "java", 500, new long[] {1, 2, 3, 4, 5, 6, 7, 8}, 1024, 9, 3);
+
+        ProcessReader r = new ProcessReader(scratchDirectory);
+        r.open(77);
+
+        ProcessSnapshot s = new ProcessSnapshot();
+
+        r.read(s, ProcessReader.STAT);
+
+        assertEquals(1L, s.getCounter(ProcessSnapshot.UTIME));
+        assertEquals(0L, s.getCounter(ProcessSnapshot.READ_BYTES));
+        assertEquals(0L, s.getGauge(ProcessSnapshot.RESIDENT_MEMORY));
+        assertNull(r.isFdSizeCount());
+
+        r.close();
+    }
+
+    @Test
+    public void read_ProcessGone() throws Exception {
+
+        writeProcess(scratchDirectory, 77, "java", 500, new long[8], 1024, 9, 3);
+
+        ProcessReader r = new ProcessReader(scratchDirectory);
+        r.open(77);
+
+        assertTrue(Files.rmdir(new File(scratchDirectory, "77"), false));
+
+        try {
+
+            r.read(new ProcessSnapshot(), ProcessReader.STAT);
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            // expected
+        }
+
+        assertEquals(-1, r.getPid());
+    }
+
+    @Test
+    public void read_LiveProcess() throws Exception {
+
+        File proc = new File(LinuxProcReader.DEFAULT_PROC_ROOT);
+
+        int pid = ProcessMetricSource.getSelfPid(proc);
+
+        if (pid == -1) {
+
+            //
+            // not on Linux
+            //
+            return;
+        }
+
+        ProcessReader r = new ProcessReader(proc);
+        r.open(pid);
+
+        ProcessSnapshot s = new ProcessSnapshot();
+
+        r.read(s, ProcessReader.STAT | ProcessReader.STATUS | ProcessReader.IO | ProcessReader.FD);
+
+        assertTrue(s.getGauge(ProcessSnapshot.THREADS) > 1);
+        assertTrue(s.getGauge(ProcessSnapshot.RESIDENT_MEMORY) > 0);
+        assertTrue(s.getGauge(ProcessSnapshot.FILE_DESCRIPTORS) > 0);
+        assertTrue(s.getCounter(ProcessSnapshot.UTIME) > 0);
+        assertTrue(r.readUptimeSeconds() > 0);
+
+        r.close();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class ProcessTargetTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/process-target");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void parse_Pid() throws Exception {
+
+        ProcessTarget t = ProcessTarget.parse("pid:1234");
+
+        assertEquals(1234, t.getPid());
+        assertNull(t.getPidFile());
+        assertNull(t.getCommandLinePattern());
+        assertEquals("pid:1234", t.getLiteral());
+        assertEquals(1234, t.resolve(scratchDirectory, -1));
+    }
+
+    @Test
+    public void parse_InvalidPid() throws Exception {
+
+        try {
+
+            ProcessTarget.parse("pid:blah");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertEquals("invalid pid \"blah\"", msg);
+        }
+    }
+
+    @Test
+    public void parse_PidFile() throws Exception {
+
+        ProcessTarget t = ProcessTarget.parse("pidfile:/var/run/jboss.pid");
+
+        assertEquals(-1, t.getPid());
+        assertEquals(new File("/var/run/jboss.pid"), t.getPidFile());
+        assertNull(t.getCommandLinePattern());
+    }
+
+    @Test
+    public void parse_CommandLine() throws Exception {
+
+        ProcessTarget t = ProcessTarget.parse("cmdline:jboss-modules\\.jar");
+
+        assertEquals(-1, t.getPid());
+        assertNull(t.getPidFile());
+        assertEquals("jboss-modules\\.jar", t.getCommandLinePattern().pattern());
+    }
+
+    @Test
+    public void parse_InvalidCommandLinePattern() throws Exception {
+
+        try {
+
+            ProcessTarget.parse("cmdline:[");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertEquals("invalid command line pattern \"[\"", msg);
+        }
+    }
+
+    @Test
+    public void parse_Top() throws Exception {
+
+        ProcessTarget t = ProcessTarget.parse("top:5");
+
+        assertTrue(t.isTop());
+        assertEquals(5, t.getTopCount());
+        assertEquals(-1, t.getPid());
+        assertNull(t.getPidFile());
+        assertNull(t.getCommandLinePattern());
+        assertEquals(-1, t.resolve(scratchDirectory, -1));
+
+        assertFalse(ProcessTarget.parse("pid:5").isTop());
+    }
+
+    @Test
+    public void parse_InvalidTopCount() throws Exception {
+
+        try {
+
+            ProcessTarget.parse("top:blah");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertEquals("invalid process count \"blah\"", msg);
+        }
+
+        try {
+
+            ProcessTarget.parse("top:0");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("invalid process count 0"));
+        }
+    }
+
+    @Test
+    public void parse_UnknownPrefix() throws Exception {
+
+        assertNull(ProcessTarget.parse("something:1234"));
+    }
+
+    @Test
+    public void equality() throws Exception {
+
+        assertEquals(ProcessTarget.parse("cmdline:java"), ProcessTarget.parse("cmdline:java"));
+        assertEquals(ProcessTarget.parse("cmdline:java").hashCode(), ProcessTarget.parse("cmdline:java").hashCode());
+    }
+
+    @Test
+    public void resolve_PidFile() throws Exception {
+
+        File pidFile = new File(scratchDirectory, "app.pid");
+
+        ProcessTarget t = ProcessTarget.parse("pidfile:" + pidFile.getPath());
+
+        assertEquals(-1, t.resolve(scratchDirectory, -1));
+
+        assertTrue(Files.write(pidFile, "4567\n"));
+
+        assertEquals(4567, t.resolve(scratchDirectory, -1));
+
+        assertTrue(Files.write(pidFile, "not a pid\n"));
+
+        assertEquals(-1, t.resolve(scratchDirectory, -1));
+    }
+
+    @Test
+    public void resolve_CommandLine_LowestMatchingPid() throws Exception {
+
+        ProcessReaderTest.writeProcess(
+                scratchDirectory, 300, "java -Dapp=b -jar jboss-modules.jar", 1, new long[8], 1024, 1, 1);
+        ProcessReaderTest.writeProcess(
+                scratchDirectory, 20, "/bin/bash", 1, new long[8], 1024, 1, 1);
+        ProcessReaderTest.writeProcess(
+                scratchDirectory, 100, "java -Dapp=a -jar jboss-modules.jar", 1, new long[8], 1024, 1, 1);
+
+        assertTrue(Files.write(new File(scratchDirectory, "uptime"), "1.0 1.0\n"));
+
+        ProcessTarget t = ProcessTarget.parse("cmdline:-jar jboss-modules\\.jar");
+
+        assertEquals(100, t.resolve(scratchDirectory, -1));
+        assertEquals(300, t.resolve(scratchDirectory, 100));
+        assertEquals(300, ProcessTarget.parse("cmdline:app=b").resolve(scratchDirectory, -1));
+        assertEquals(-1, ProcessTarget.parse("cmdline:no-such-process").resolve(scratchDirectory, -1));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2017 Nova Ordis LLC
+ * Copyright (c) 2018 Nova Ordis LLC
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -14,30 +14,47 @@
  * limitations under the License.
  */
 
-package io.novaordis.databot.failure;
+package io.novaordis.databot.os.linux;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
- * @since 6/13/17
+ * @since 1/18/18
  */
-public class EventQueueFullException extends DataBotException {
+public class RatesTest {
 
     // Constants -------------------------------------------------------------------------------------------------------
 
-    public static final String MESSAGE = "event queue full";
-
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
-    public EventQueueFullException() {
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void perSecond() throws Exception {
 
-        super(MESSAGE);
+        assertEquals(50d, Rates.perSecond(200, 100, 2d), 0.0000001);
     }
 
-    // Public ----------------------------------------------------------------------------------------------------------
+    @Test
+    public void perSecond_CounterWentBack() throws Exception {
+
+        assertEquals(0d, Rates.perSecond(100, 200, 2d), 0.0000001);
+    }
+
+    @Test
+    public void seconds() throws Exception {
+
+        assertEquals(1.5d, Rates.seconds(1000000000L, 2500000000L), 0.0000001);
+    }
 
     // Package protected -----------------------------------------------------------------------------------------------
 
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinitionException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class TcpConnectionMetricDefinitionTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void isTcpConnectionMetricDeclaration() throws Exception {
+
+        assertTrue(TcpConnectionMetricDefinition.isTcpConnectionMetricDeclaration("tcp/CloseWait"));
+        assertTrue(TcpConnectionMetricDefinition.isTcpConnectionMetricDeclaration("tcp:8080/Established"));
+        assertFalse(TcpConnectionMetricDefinition.isTcpConnectionMetricDeclaration("tcp6/CloseWait"));
+        assertFalse(TcpConnectionMetricDefinition.isTcpConnectionMetricDeclaration(null));
+    }
+
+    @Test
+    public void parse() throws Exception {
+
+        TcpConnectionMetricDefinition d = TcpConnectionMetricDefinition.parse(new PropertyFactory(), "tcp/CloseWait");
+
+        assertEquals(TcpConnectionMetric.CLOSE_WAIT, d.getMetric());
+        assertEquals("CloseWait", d.getId());
+        assertEquals(Long.class, d.getType());
+        assertNull(d.getBaseUnit());
+        assertEquals(new TcpConnectionsAddress(), d.getMetricSourceAddress());
+        assertEquals("tcp/CloseWait", d.toString());
+
+        TcpConnectionsAddress a = (TcpConnectionsAddress)d.getMetricSourceAddress();
+        assertNull(a.getPorts());
+        assertEquals(TcpConnectionsAddress.DEFAULT_MAX_PORTS, a.getMaxPorts());
+    }
+
+    @Test
+    public void parse_Ports() throws Exception {
+
+        TcpConnectionMetricDefinition d = TcpConnectionMetricDefinition.parse(
+                new PropertyFactory(), "tcp:8080, 8443,8080/Established");
+
+        TcpConnectionsAddress a = (TcpConnectionsAddress)d.getMetricSourceAddress();
+        assertArrayEquals(new int[] { 8080, 8443 }, a.getPorts());
+        assertEquals(2, a.getMaxPorts());
+        assertEquals("tcp:8080,8443", a.getLiteral());
+    }
+
+    @Test
+    public void parse_MaxPorts() throws Exception {
+
+        TcpConnectionMetricDefinition d = TcpConnectionMetricDefinition.parse(
+                new PropertyFactory(), "tcp:max-ports=256/Connections");
+
+        assertEquals(TcpConnectionMetric.CONNECTIONS, d.getMetric());
+
+        TcpConnectionsAddress a = (TcpConnectionsAddress)d.getMetricSourceAddress();
+        assertNull(a.getPorts());
+        assertEquals(256, a.getMaxPorts());
+        assertEquals("tcp:max-ports=256", a.getLiteral());
+    }
+
+    @Test
+    public void parse_InvalidPort() throws Exception {
+
+        try {
+
+            TcpConnectionMetricDefinition.parse(new PropertyFactory(), "tcp:8080,65536/Established");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertEquals("invalid port \"65536\"", msg);
+        }
+    }
+
+    @Test
+    public void parse_InvalidMaxPorts() throws Exception {
+
+        try {
+
+            TcpConnectionMetricDefinition.parse(new PropertyFactory(), "tcp:max-ports=0/Established");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertEquals("invalid maximum number of ports \"0\"", msg);
+        }
+    }
+
+    @Test
+    public void parse_UnknownMetric() throws Exception {
+
+        try {
+
+            TcpConnectionMetricDefinition.parse(new PropertyFactory(), "tcp/NoSuchMetric");
+            fail("should have thrown exception");
+        }
+        catch(MetricDefinitionException e) {
+
+            String msg = e.getMessage();
+            assertEquals("unknown TCP connection metric \"NoSuchMetric\"", msg);
+        }
+    }
+
+    @Test
+    public void equalsAndHashCode() throws Exception {
+
+        assertEquals(TcpConnectionsAddress.parse("80,443"), TcpConnectionsAddress.parse("80, 443"));
+        assertEquals(
+                TcpConnectionsAddress.parse("80,443").hashCode(), TcpConnectionsAddress.parse("80,443").hashCode());
+        assertFalse(TcpConnectionsAddress.parse("80,443").equals(TcpConnectionsAddress.parse("443,80")));
+        assertFalse(TcpConnectionsAddress.parse("80").equals(new TcpConnectionsAddress(1)));
+        assertEquals(new TcpConnectionsAddress(), TcpConnectionsAddress.parse(null));
+        assertEquals(new TcpConnectionsAddress(), TcpConnectionsAddress.parse("max-ports=64"));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
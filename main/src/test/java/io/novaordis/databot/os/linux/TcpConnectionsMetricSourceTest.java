@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class TcpConnectionsMetricSourceTest extends LinuxMetricSourceBaseTest<TcpConnectionsMetricSource> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void collectMetrics() throws Exception {
+
+        TcpConnectionsMetricSource s = source(TcpConnectionsAddress.parse("8080,8443"));
+
+        List<Property> properties = s.collectMetrics(definitions("CloseWait", "Listen", "Connections"));
+
+        assertEquals(9, properties.size());
+
+        assertEquals("CloseWait[8080]", properties.get(0).getName());
+        assertEquals(1L, properties.get(0).getValue());
+        assertEquals("CloseWait[8443]", properties.get(1).getName());
+        assertEquals(0L, properties.get(1).getValue());
+        assertEquals("CloseWait[other]", properties.get(2).getName());
+        assertEquals(0L, properties.get(2).getValue());
+
+        assertEquals("Listen[8080]", properties.get(3).getName());
+        assertEquals(2L, properties.get(3).getValue());
+        assertEquals("Listen[8443]", properties.get(4).getName());
+        assertEquals(1L, properties.get(4).getValue());
+        assertEquals("Listen[other]", properties.get(5).getName());
+        assertEquals(0L, properties.get(5).getValue());
+
+        //
+        // all states but LISTEN
+        //
+
+        assertEquals("Connections[8080]", properties.get(6).getName());
+        assertEquals(3L, properties.get(6).getValue());
+        assertEquals("Connections[8443]", properties.get(7).getName());
+        assertEquals(0L, properties.get(7).getValue());
+        assertEquals("Connections[other]", properties.get(8).getName());
+        assertEquals(2L, properties.get(8).getValue());
+    }
+
+    @Test
+    public void collectMetrics_NoUntrackedPorts() throws Exception {
+
+        TcpConnectionsMetricSource s = source(new TcpConnectionsAddress());
+
+        List<Property> properties = s.collectMetrics(definitions("TimeWait"));
+
+        assertEquals(4, properties.size());
+        assertEquals("TimeWait[8080]", properties.get(0).getName());
+        assertEquals("TimeWait[8443]", properties.get(1).getName());
+        assertEquals("TimeWait[50000]", properties.get(2).getName());
+        assertEquals("TimeWait[50001]", properties.get(3).getName());
+        assertEquals(1L, properties.get(3).getValue());
+    }
+
+    @Test
+    public void collectMetrics_PortsChangeSlots() throws Exception {
+
+        TcpConnectionsMetricSource s = source(new TcpConnectionsAddress());
+
+        s.collectMetrics(definitions("Established"));
+
+        //
+        // 8443 no longer listens, so 50000 takes its slot
+        //
+
+        TcpTableReaderTest.writeTcp(scratchDirectory,
+                TcpTableReaderTest.TCP.replace("00000000:20FB 00000000:0000 0A", "00000000:1F90 00000000:0000 0A"),
+                TcpTableReaderTest.TCP6);
+
+        List<Property> properties = s.collectMetrics(definitions("Established"));
+
+        assertEquals(3, properties.size());
+        assertEquals("Established[8080]", properties.get(0).getName());
+        assertEquals(2L, properties.get(0).getValue());
+        assertEquals("Established[50000]", properties.get(1).getName());
+        assertEquals(1L, properties.get(1).getValue());
+        assertEquals("Established[50001]", properties.get(2).getName());
+        assertEquals(0L, properties.get(2).getValue());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected String getScratchDirectoryName() {
+
+        return "tcp-source";
+    }
+
+    @Override
+    protected TcpConnectionsAddress getAddressToTest() {
+
+        return TcpConnectionsAddress.parse("8443");
+    }
+
+    @Override
+    protected TcpConnectionsMetricSource getMetricSourceToTest() {
+
+        return source(getAddressToTest());
+    }
+
+    @Override
+    protected MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate) {
+
+        return new TcpConnectionsMetricSourceFactory(delegate, scratchDirectory);
+    }
+
+    @Override
+    protected String getMetricIdToTest() {
+
+        return "Listen";
+    }
+
+    @Override
+    protected String getForeignMetricMessage() {
+
+        return "are TCP connection metrics";
+    }
+
+    @Override
+    protected void populate() throws Exception {
+
+        TcpTableReaderTest.writeTcp(scratchDirectory, TcpTableReaderTest.TCP, TcpTableReaderTest.TCP6);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private TcpConnectionsMetricSource source(TcpConnectionsAddress address) {
+
+        return new TcpConnectionsMetricSource(address, new TcpTableReader(scratchDirectory), pf);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.novaordis.utilities.Files;
+
+/**
+ * Measures the TCP table parser on the table of a busy proxy (200,000 connections), from a direct buffer, and the
+ * whole reader, streaming the table from a file. The "gc" profiler reports the allocation rate per operation, which
+ * must be ~0 B/op for both: the table is read on every tick, and its size must not translate into garbage.
+ *
+ * Not a test. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.novaordis.databot.os.linux.TcpTableBenchmark
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TcpTableBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int CONNECTIONS = 200000;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+
+        Options options = new OptionsBuilder().
+                include(TcpTableBenchmark.class.getSimpleName()).
+                addProfiler(GCProfiler.class).
+                build();
+
+        new Runner(options).run();
+    }
+
+    /**
+     * Half of the connections are accepted on 8080, the other half are opened from ephemeral ports to the backends.
+     */
+    static String table(int connections) {
+
+        StringBuilder sb = new StringBuilder(connections * 160);
+
+        sb.append(TcpTableReaderTest.TCP, 0, TcpTableReaderTest.TCP.indexOf("   1:"));
+
+        for(int i = 1; i <= connections; i ++) {
+
+            int port = 32768 + (i % 28000);
+
+            String local = i % 2 == 0 ? "0A00000B:1F90" : String.format("0A00000B:%04X", port);
+            String remote = i % 2 == 0 ? String.format("0A0000C8:%04X", port) : "0A00001E:1F90";
+            String state = i % 50 == 0 ? "08" : i % 10 == 0 ? "06" : "01";
+
+            sb.append(String.format("%6d: ", i)).append(local).append(' ').append(remote).append(' ').append(state).
+                    append(" 00000000:00000000 00:00000000 00000000  1000        0 ").append(100000 + i).
+                    append(" 1 0000000000000000 20 4 30 10 -1\n");
+        }
+
+        return sb.toString();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File procRoot;
+
+    private ByteBuffer table;
+
+    private TcpTableReader reader;
+
+    private TcpTableReader fileReader;
+
+    private TcpTableSnapshot snapshot;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup
+    public void setUp() throws Exception {
+
+        String content = table(CONNECTIONS);
+
+        byte[] bytes = content.getBytes();
+        table = ByteBuffer.allocateDirect(bytes.length);
+        table.put(bytes);
+        table.flip();
+
+        reader = new TcpTableReader(new File("."));
+        snapshot = new TcpTableSnapshot(TcpConnectionsAddress.DEFAULT_MAX_PORTS);
+
+        procRoot = java.nio.file.Files.createTempDirectory("tcp-benchmark").toFile();
+        TcpTableReaderTest.writeTcp(procRoot, content, null);
+
+        fileReader = new TcpTableReader(procRoot);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+
+        fileReader.close();
+
+        Files.rmdir(procRoot, false);
+    }
+
+    @Benchmark
+    public void parseLines(Blackhole bh) throws Exception {
+
+        snapshot.clear();
+
+        table.position(0);
+
+        reader.parseLines(table, snapshot);
+
+        bh.consume(snapshot.getCount(0, TcpTableSnapshot.ESTABLISHED));
+    }
+
+    /**
+     * The table streamed from disk, which is what runs on every tick.
+     */
+    @Benchmark
+    public void read(Blackhole bh) throws Exception {
+
+        fileReader.read(snapshot);
+
+        bh.consume(snapshot.getOtherSocketCount());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
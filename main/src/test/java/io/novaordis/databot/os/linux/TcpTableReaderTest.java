@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+public class TcpTableReaderTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    //
+    // 8080 and 8443 listen, 8080 has an established connection and one in CLOSE_WAIT, from 50000 and 50001, which are
+    // the ephemeral ports of the client side
+    //
+    public static final String TCP =
+            "  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode\n" +
+            "   0: 00000000:1F90 00000000:0000 0A 00000000:00000000 00:00000000 00000000  1000        0 18301 1 " +
+                    "0000000000000000 100 0 0 10 0\n" +
+            "   1: 00000000:20FB 00000000:0000 0A 00000000:00000000 00:00000000 00000000  1000        0 18302 1 " +
+                    "0000000000000000 100 0 0 10 0\n" +
+            "   2: 0100007F:1F90 0100007F:C350 01 00000000:00000000 00:00000000 00000000  1000        0 19331 1 " +
+                    "0000000000000000 20 4 4 10 -1\n" +
+            "   3: 0100007F:1F90 0100007F:C351 08 00000000:00000000 00:00000000 00000000  1000        0 19334 1 " +
+                    "0000000000000000 20 4 0 10 -1\n" +
+            "   4: 0100007F:C350 0100007F:1F90 01 00000000:00000000 02:00000CDD 00000000  1000        0 17776 3 " +
+                    "0000000000000000 20 4 8 20 8\n" +
+            "   5: 0100007F:C351 0100007F:1F90 06 00000000:00000000 03:00001770 00000000     0        0 0 3 " +
+                    "0000000000000000\n";
+
+    //
+    // 8080 listens on IPv6 too, and has an established IPv4-mapped connection
+    //
+    public static final String TCP6 =
+            "  sl  local_address                         remote_address                        st tx_queue rx_queue " +
+                    "tr tm->when retrnsmt   uid  timeout inode\n" +
+            "   0: 00000000000000000000000000000000:1F90 00000000000000000000000000000000:0000 0A " +
+                    "00000000:00000000 00:00000000 00000000  1000        0 18303 1 0000000000000000 100 0 0 10 0\n" +
+            "   1: 0000000000000000FFFF00000100007F:1F90 0000000000000000FFFF00000100007F:D431 01 " +
+                    "00000000:00000000 00:00000000 00000000  1000        0 18304 1 0000000000000000 20 4 0 10 -1\n";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes net/tcp and net/tcp6 under the given root. A null content does not write the file.
+     */
+    public static void writeTcp(File procRoot, String tcp, String tcp6) throws Exception {
+
+        File net = new File(procRoot, "net");
+
+        assertTrue(net.isDirectory() || net.mkdirs());
+
+        if (tcp != null) {
+
+            assertTrue(Files.write(new File(net, "tcp"), tcp));
+        }
+
+        if (tcp6 != null) {
+
+            assertTrue(Files.write(new File(net, "tcp6"), tcp6));
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/tcp-table-reader");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void hex() throws Exception {
+
+        assertEquals(0, TcpTableReader.hex((byte)'0'));
+        assertEquals(9, TcpTableReader.hex((byte)'9'));
+        assertEquals(10, TcpTableReader.hex((byte)'A'));
+        assertEquals(15, TcpTableReader.hex((byte)'f'));
+        assertEquals(-1, TcpTableReader.hex((byte)'g'));
+        assertEquals(-1, TcpTableReader.hex((byte)' '));
+    }
+
+    @Test
+    public void read() throws Exception {
+
+        writeTcp(scratchDirectory, TCP, TCP6);
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory);
+
+        TcpTableSnapshot s = new TcpTableSnapshot(64);
+
+        r.read(s);
+
+        assertCounts(s);
+        assertEquals(0, s.getOtherSocketCount());
+
+        r.close();
+    }
+
+    @Test
+    public void read_ChunksSplitLines() throws Exception {
+
+        writeTcp(scratchDirectory, TCP, TCP6);
+
+        //
+        // shorter than two lines, so every chunk ends in the middle of a line
+        //
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory, 256);
+
+        TcpTableSnapshot s = new TcpTableSnapshot(64);
+
+        r.read(s);
+
+        assertCounts(s);
+
+        r.close();
+    }
+
+    @Test
+    public void read_CountsAreNotAccumulatedAcrossReadings() throws Exception {
+
+        writeTcp(scratchDirectory, TCP, TCP6);
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory);
+
+        TcpTableSnapshot s = new TcpTableSnapshot(64);
+
+        r.read(s);
+        r.read(s);
+
+        assertCounts(s);
+
+        //
+        // the client side connections are gone
+        //
+
+        writeTcp(scratchDirectory, TCP.substring(0, TCP.indexOf("   4:")), TCP6);
+
+        r.read(s);
+
+        assertEquals(6, s.getSocketCount());
+        assertEquals(2, s.getPortCount());
+        assertEquals(-1, s.getSlot(50000));
+
+        r.close();
+    }
+
+    @Test
+    public void read_MaxPorts() throws Exception {
+
+        writeTcp(scratchDirectory, TCP, TCP6);
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory);
+
+        TcpTableSnapshot s = new TcpTableSnapshot(2);
+
+        r.read(s);
+
+        //
+        // the listening ports come first and are tracked
+        //
+
+        assertEquals(2, s.getPortCount());
+        assertEquals(8080, s.getPort(0));
+        assertEquals(8443, s.getPort(1));
+
+        assertEquals(8, s.getSocketCount());
+        assertEquals(2, s.getOtherSocketCount());
+        assertEquals(1, s.getOtherCount(TcpTableSnapshot.ESTABLISHED));
+        assertEquals(1, s.getOtherCount(TcpTableSnapshot.TIME_WAIT));
+
+        r.close();
+    }
+
+    @Test
+    public void read_FixedPorts() throws Exception {
+
+        writeTcp(scratchDirectory, TCP, TCP6);
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory);
+
+        TcpTableSnapshot s = new TcpTableSnapshot(new int[] { 8443, 9999 });
+
+        r.read(s);
+
+        assertEquals(2, s.getPortCount());
+        assertEquals(8443, s.getPort(0));
+        assertEquals(9999, s.getPort(1));
+        assertEquals(1, s.getCount(0, TcpTableSnapshot.LISTEN));
+        assertEquals(0, s.getCount(1, TcpTableSnapshot.LISTEN));
+        assertEquals(-1, s.getSlot(8080));
+
+        assertEquals(7, s.getOtherSocketCount());
+        assertEquals(2, s.getOtherCount(TcpTableSnapshot.LISTEN));
+        assertEquals(1, s.getOtherCount(TcpTableSnapshot.CLOSE_WAIT));
+
+        r.read(s);
+
+        assertEquals(2, s.getPortCount());
+        assertEquals(1, s.getCount(0, TcpTableSnapshot.LISTEN));
+        assertEquals(7, s.getOtherSocketCount());
+
+        r.close();
+    }
+
+    @Test
+    public void read_NoTcp6() throws Exception {
+
+        writeTcp(scratchDirectory, TCP, null);
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory);
+
+        TcpTableSnapshot s = new TcpTableSnapshot(64);
+
+        r.read(s);
+
+        assertEquals(6, s.getSocketCount());
+        assertEquals(1, s.getCount(s.getSlot(8080), TcpTableSnapshot.LISTEN));
+
+        r.close();
+    }
+
+    @Test
+    public void read_LastLineWithoutTerminator() throws Exception {
+
+        writeTcp(scratchDirectory, TCP.substring(0, TCP.length() - 1), TCP6.substring(0, TCP6.length() - 1));
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory, 256);
+
+        TcpTableSnapshot s = new TcpTableSnapshot(64);
+
+        r.read(s);
+
+        assertCounts(s);
+
+        r.close();
+    }
+
+    @Test
+    public void read_LineLongerThanTheBuffer() throws Exception {
+
+        writeTcp(scratchDirectory, TCP, TCP6);
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory, 64);
+
+        try {
+
+            r.read(new TcpTableSnapshot(64));
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("longer than 64 bytes"));
+        }
+
+        r.close();
+    }
+
+    @Test
+    public void parseLine_InvalidPort() throws Exception {
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory);
+
+        String line = "   0: 00000000:1F90A 00000000:0000 0A 00000000:00000000";
+
+        try {
+
+            r.parseLine(ByteBuffer.wrap(line.getBytes()), 0, line.length(), new TcpTableSnapshot(64));
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("invalid local port"));
+        }
+    }
+
+    @Test
+    public void parseLine_MissingState() throws Exception {
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory);
+
+        String line = "   0: 00000000:1F90 00000000:0000";
+
+        try {
+
+            r.parseLine(ByteBuffer.wrap(line.getBytes()), 0, line.length(), new TcpTableSnapshot(64));
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("invalid state"));
+        }
+    }
+
+    @Test
+    public void parseLines_LeavesThePartialLine() throws Exception {
+
+        TcpTableReader r = new TcpTableReader(scratchDirectory);
+
+        TcpTableSnapshot s = new TcpTableSnapshot(64);
+
+        String content = TCP.substring(0, TCP.indexOf("   3:") + 10);
+
+        ByteBuffer b = ByteBuffer.wrap(content.getBytes());
+
+        r.parseLines(b, s);
+
+        assertEquals(3, s.getSocketCount());
+        assertEquals(TCP.indexOf("   3:"), b.position());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * The counts of TCP and TCP6, with all ports tracked.
+     */
+    private static void assertCounts(TcpTableSnapshot s) {
+
+        assertEquals(8, s.getSocketCount());
+        assertEquals(4, s.getPortCount());
+
+        assertEquals(8080, s.getPort(0));
+        assertEquals(8443, s.getPort(1));
+        assertEquals(50000, s.getPort(2));
+        assertEquals(50001, s.getPort(3));
+
+        assertEquals(2, s.getCount(0, TcpTableSnapshot.LISTEN));
+        assertEquals(2, s.getCount(0, TcpTableSnapshot.ESTABLISHED));
+        assertEquals(1, s.getCount(0, TcpTableSnapshot.CLOSE_WAIT));
+        assertEquals(0, s.getCount(0, TcpTableSnapshot.TIME_WAIT));
+        assertEquals(1, s.getCount(1, TcpTableSnapshot.LISTEN));
+        assertEquals(1, s.getCount(2, TcpTableSnapshot.ESTABLISHED));
+        assertEquals(1, s.getCount(3, TcpTableSnapshot.TIME_WAIT));
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
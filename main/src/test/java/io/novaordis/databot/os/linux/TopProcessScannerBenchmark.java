@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.novaordis.utilities.Files;
+
+/**
+ * Measures a top processes scan over a synthetic /proc with 10,000 processes, with no open stat file, with the default
+ * cap, and with all the stat files open. No process is created between scans, so /proc is not listed, and the "gc"
+ * profiler must report ~0 B/op when all the stat files are kept open.
+ *
+ * Not a test. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.novaordis.databot.os.linux.TopProcessScannerBenchmark
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/18/18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopProcessScannerBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int PROCESSES = 10000;
+
+    private static final int K = 10;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+
+        Options options = new OptionsBuilder().
+                include(TopProcessScannerBenchmark.class.getSimpleName()).
+                addProfiler(GCProfiler.class).
+                build();
+
+        new Runner(options).run();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    @Param({"0", "1024", "10000"})
+    public int maxOpenStatFiles;
+
+    private File procRoot;
+
+    private TopProcessScanner scanner;
+
+    private int[] result;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup
+    public void setUp() throws Exception {
+
+        procRoot = java.nio.file.Files.createTempDirectory("top-processes-benchmark").toFile();
+
+        ProcessReaderTest.writeUptime(procRoot, "100000.00");
+        TopProcessScannerTest.writeLastPid(procRoot, PROCESSES);
+
+        for(int pid = 1; pid <= PROCESSES; pid ++) {
+
+            Files.write(new File(procRoot, pid + "/stat"), pid + " (p" + pid + ") S 1 1 1 0 -1 0 0 0 0 0 " +
+                    (pid * 7 % 1000) + " " + (pid % 13) + " 0 0 20 0 1 0 1000 0 " + (pid % 5000) + " 0\n");
+        }
+
+        scanner = new TopProcessScanner(procRoot, TopProcessScanner.DEFAULT_PAGE_SIZE, maxOpenStatFiles);
+
+        result = new int[K];
+
+        //
+        // the first scan lists /proc
+        //
+
+        scanner.scan();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+
+        scanner.close();
+
+        Files.rmdir(procRoot, false);
+    }
+
+    @Benchmark
+    public void scan(Blackhole bh) throws Exception {
+
+        bh.consume(scanner.scan());
+    }
+
+    /**
+     * A scan followed by the selection of the top K, which is what runs on every tick.
+     */
+    @Benchmark
+    public void scanAndSelectByCpu(Blackhole bh) throws Exception {
+
+        scanner.scan();
+
+        int n = scanner.selectByCpu(K, result);
+
+        bh.consume(scanner.getPid(result[n - 1]));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class TopProcessScannerTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes a process that started 10 seconds after boot, with the given user time and resident memory.
+     */
+    public static void writeProcess(File procRoot, int pid, long utime, long rssKb) throws Exception {
+
+        ProcessReaderTest.writeProcess(
+                procRoot, pid, "java", 1000, new long[] {utime, 0, 0, 0, 0, 0, 0, 0}, rssKb, 1, 0);
+    }
+
+    /**
+     * The stat file of a process that exited cannot be read anymore, even if it is open, while a deleted regular file
+     * can, so the stat file is emptied before the process directory is removed.
+     */
+    public static void exitProcess(File procRoot, int pid) throws Exception {
+
+        File d = new File(procRoot, Integer.toString(pid));
+
+        assertTrue(Files.write(new File(d, "stat"), ""));
+        assertTrue(Files.rmdir(d, false));
+    }
+
+    public static void writeLastPid(File procRoot, int lastPid) throws Exception {
+
+        assertTrue(Files.write(new File(procRoot, "loadavg"), "0.20 0.18 0.12 1/80 " + lastPid + "\n"));
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private File scratchDirectory = new File(System.getProperty("basedir"), "target/test-scratch/top-processes");
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception {
+
+        assertTrue(scratchDirectory.isDirectory() || scratchDirectory.mkdirs());
+
+        //
+        // 110 seconds since boot, so the processes have been running for 100 seconds
+        //
+        ProcessReaderTest.writeUptime(scratchDirectory, "110.00");
+    }
+
+    @After
+    public void cleanUp() {
+
+        assertTrue(Files.rmdir(scratchDirectory, false));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidPageSize() throws Exception {
+
+        try {
+
+            new TopProcessScanner(scratchDirectory, 0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertEquals("invalid page size 0", msg);
+        }
+    }
+
+    @Test
+    public void constructor_InvalidMaxOpenStatFiles() throws Exception {
+
+        try {
+
+            new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE, -1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertEquals("invalid maximum number of open stat files -1", msg);
+        }
+    }
+
+    @Test
+    public void scan_FirstScanRanksByAverageSinceStart() throws Exception {
+
+        //
+        // 4000, 1000 and 8000 ticks over 100 seconds
+        //
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+        writeProcess(scratchDirectory, 200, 1000, 8192);
+        writeProcess(scratchDirectory, 300, 8000, 1024);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        assertEquals(3, s.scan());
+        assertEquals(3, s.getProcessCount());
+
+        int[] result = new int[2];
+
+        assertEquals(2, s.selectByCpu(2, result));
+
+        assertEquals(300, s.getPid(result[0]));
+        assertEquals(80d, s.getCpuPercentage(result[0]), 0.0000001);
+        assertEquals("java (main)", s.getCommand(result[0]));
+        assertEquals(100, s.getPid(result[1]));
+        assertEquals(40d, s.getCpuPercentage(result[1]), 0.0000001);
+
+        assertEquals(2, s.selectByResidentMemory(2, result));
+
+        assertEquals(200, s.getPid(result[0]));
+        assertEquals(8192L * 1024, s.getResidentMemory(result[0]));
+        assertEquals(100, s.getPid(result[1]));
+        assertEquals(2048L * 1024, s.getResidentMemory(result[1]));
+    }
+
+    @Test
+    public void select_FewerProcessesThanRequested() throws Exception {
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        s.scan();
+
+        int[] result = new int[5];
+
+        assertEquals(1, s.selectByCpu(5, result));
+        assertEquals(100, s.getPid(result[0]));
+    }
+
+    @Test
+    public void select_TiesAreBrokenByPid() throws Exception {
+
+        writeProcess(scratchDirectory, 300, 1000, 1024);
+        writeProcess(scratchDirectory, 100, 1000, 1024);
+        writeProcess(scratchDirectory, 200, 1000, 1024);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        s.scan();
+
+        int[] result = new int[3];
+
+        assertEquals(3, s.selectByResidentMemory(3, result));
+        assertEquals(100, s.getPid(result[0]));
+        assertEquals(200, s.getPid(result[1]));
+        assertEquals(300, s.getPid(result[2]));
+    }
+
+    @Test
+    public void scan_CpuUsageIsComputedBetweenScans() throws Exception {
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+        writeProcess(scratchDirectory, 200, 1000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        long t0 = System.nanoTime();
+
+        s.scan();
+
+        //
+        // the process with the lower average is the busy one now
+        //
+
+        writeProcess(scratchDirectory, 200, 1005, 2048);
+
+        Thread.sleep(100L);
+
+        s.scan();
+
+        double maxElapsedSec = (System.nanoTime() - t0) / 1000000000d;
+
+        int[] result = new int[2];
+
+        s.selectByCpu(2, result);
+
+        assertEquals(200, s.getPid(result[0]));
+
+        //
+        // 5 ticks are 50 ms of CPU time, over at least 100 ms
+        //
+
+        double cpu = s.getCpuPercentage(result[0]);
+        assertTrue(cpu > 0d);
+        assertTrue(cpu <= 50d);
+        assertTrue(cpu >= 5d / maxElapsedSec);
+
+        assertEquals(100, s.getPid(result[1]));
+        assertEquals(0d, s.getCpuPercentage(result[1]), 0.0000001);
+    }
+
+    @Test
+    public void scan_ExitedProcessesAreDropped() throws Exception {
+
+        writeLastPid(scratchDirectory, 300);
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+        writeProcess(scratchDirectory, 200, 1000, 2048);
+        writeProcess(scratchDirectory, 300, 1000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        assertEquals(3, s.scan());
+
+        exitProcess(scratchDirectory, 200);
+
+        assertEquals(2, s.scan());
+        assertEquals(2, s.scan());
+
+        int[] result = new int[3];
+
+        assertEquals(2, s.selectByCpu(3, result));
+        assertEquals(100, s.getPid(result[0]));
+        assertEquals(300, s.getPid(result[1]));
+
+        assertEquals(1, s.getListingCount());
+    }
+
+    @Test
+    public void scan_ProcIsListedOnlyWhenProcessesWereCreated() throws Exception {
+
+        writeLastPid(scratchDirectory, 100);
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        assertEquals(1, s.scan());
+        assertEquals(1, s.scan());
+        assertEquals(1, s.getListingCount());
+
+        writeProcess(scratchDirectory, 200, 1000, 2048);
+        writeLastPid(scratchDirectory, 200);
+
+        assertEquals(2, s.scan());
+        assertEquals(2, s.getListingCount());
+    }
+
+    @Test
+    public void scan_FewProcessesCreated_NewPidsAreProbed() throws Exception {
+
+        writeLastPid(scratchDirectory, 100);
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        assertEquals(1, s.scan());
+
+        //
+        // 101 is a thread of 100, it has its own directory, but it is not a process
+        //
+
+        writeProcess(scratchDirectory, 101, 1000, 2048);
+        assertTrue(Files.write(new File(scratchDirectory, "101/status"), "Name:\tjava\nTgid:\t100\nPid:\t101\n"));
+        writeProcess(scratchDirectory, 103, 1000, 2048);
+        writeLastPid(scratchDirectory, 103);
+
+        assertEquals(2, s.scan());
+        assertEquals(1, s.getListingCount());
+        assertEquals(1, s.getProbeCount());
+
+        int[] result = new int[3];
+
+        assertEquals(2, s.selectByResidentMemory(3, result));
+        assertEquals(100, s.getPid(result[0]));
+        assertEquals(103, s.getPid(result[1]));
+
+        //
+        // nothing new
+        //
+
+        assertEquals(2, s.scan());
+        assertEquals(1, s.getListingCount());
+        assertEquals(1, s.getProbeCount());
+    }
+
+    @Test
+    public void scan_PidsWrappedAround_ProcIsListed() throws Exception {
+
+        writeLastPid(scratchDirectory, 32000);
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        assertEquals(1, s.scan());
+
+        writeProcess(scratchDirectory, 5, 1000, 2048);
+        writeLastPid(scratchDirectory, 5);
+
+        assertEquals(2, s.scan());
+        assertEquals(2, s.getListingCount());
+        assertEquals(0, s.getProbeCount());
+    }
+
+    @Test
+    public void scan_StatFilesAreKeptOpen() throws Exception {
+
+        writeLastPid(scratchDirectory, 100);
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        s.scan();
+
+        assertEquals(1, s.getOpenStatFileCount());
+
+        //
+        // the open file is read again
+        //
+
+        writeProcess(scratchDirectory, 100, 5000, 4096);
+
+        s.scan();
+
+        int[] result = new int[1];
+
+        assertEquals(1, s.selectByResidentMemory(1, result));
+        assertEquals(4096L * 1024, s.getResidentMemory(result[0]));
+
+        s.close();
+
+        assertEquals(0, s.getOpenStatFileCount());
+    }
+
+    @Test
+    public void scan_PidReused() throws Exception {
+
+        writeLastPid(scratchDirectory, 100);
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        assertEquals(1, s.scan());
+
+        //
+        // the kept stat file belongs to the process that exited, the new one must be opened by pid
+        //
+
+        exitProcess(scratchDirectory, 100);
+        writeProcess(scratchDirectory, 100, 1000, 8192);
+
+        assertEquals(1, s.scan());
+
+        int[] result = new int[1];
+
+        assertEquals(1, s.selectByResidentMemory(1, result));
+        assertEquals(100, s.getPid(result[0]));
+        assertEquals(8192L * 1024, s.getResidentMemory(result[0]));
+        assertEquals(1, s.getOpenStatFileCount());
+    }
+
+    @Test
+    public void scan_OpenStatFilesAreCapped() throws Exception {
+
+        writeLastPid(scratchDirectory, 300);
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+        writeProcess(scratchDirectory, 200, 1000, 2048);
+        writeProcess(scratchDirectory, 300, 1000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE, 2);
+
+        assertEquals(2, s.getMaxOpenStatFiles());
+
+        assertEquals(3, s.scan());
+        assertEquals(2, s.getOpenStatFileCount());
+
+        exitProcess(scratchDirectory, 100);
+
+        //
+        // the file that did not fit is opened again, and takes the freed place
+        //
+
+        writeProcess(scratchDirectory, 300, 2000, 2048);
+
+        assertEquals(2, s.scan());
+        assertEquals(2, s.getOpenStatFileCount());
+
+        assertEquals(2, s.scan());
+        assertEquals(1, s.getListingCount());
+    }
+
+    @Test
+    public void scan_NoOpenStatFiles() throws Exception {
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+        writeProcess(scratchDirectory, 200, 1000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE, 0);
+
+        assertEquals(2, s.scan());
+        assertEquals(2, s.scan());
+        assertEquals(0, s.getOpenStatFileCount());
+    }
+
+    @Test
+    public void scan_NoLoadavg_ProcIsListedOnEveryScan() throws Exception {
+
+        writeProcess(scratchDirectory, 100, 4000, 2048);
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        s.scan();
+        s.scan();
+
+        assertEquals(2, s.getListingCount());
+    }
+
+    @Test
+    public void scan_ManyProcesses() throws Exception {
+
+        for(int pid = 1; pid <= 2000; pid ++) {
+
+            File d = new File(scratchDirectory, Integer.toString(pid));
+            assertTrue(d.mkdirs());
+            assertTrue(Files.write(new File(d, "stat"), pid + " (p" + pid + ") S 1 1 1 0 -1 0 0 0 0 0 " + pid +
+                    " 0 0 0 20 0 1 0 1000 0 " + (2001 - pid) + " 0\n"));
+        }
+
+        TopProcessScanner s = new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE);
+
+        assertEquals(2000, s.scan());
+
+        int[] result = new int[10];
+
+        assertEquals(10, s.selectByCpu(10, result));
+
+        for(int i = 0; i < 10; i ++) {
+
+            assertEquals(2000 - i, s.getPid(result[i]));
+            assertEquals("p" + (2000 - i), s.getCommand(result[i]));
+        }
+
+        assertEquals(10, s.selectByResidentMemory(10, result));
+
+        for(int i = 0; i < 10; i ++) {
+
+            assertEquals(i + 1, s.getPid(result[i]));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.databot.MockMetricSourceFactory;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.events.api.metric.MetricSourceException;
+import io.novaordis.events.api.metric.MetricSourceFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class TopProcessesMetricSourceTest extends LinuxMetricSourceBaseTest<TopProcessesMetricSource> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NotATopAddress() throws Exception {
+
+        try {
+
+            new TopProcessesMetricSource(new ProcessAddress(ProcessTarget.parse("pid:100")),
+                    new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE), pf);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("is not a top process address"));
+        }
+    }
+
+    @Test
+    public void collectMetrics_IndexedProperties() throws Exception {
+
+        TopProcessesMetricSource s = source("top:2");
+
+        List<Property> properties = s.collectMetrics(definitions("CpuTime", "ResidentMemory"));
+
+        assertEquals(12, properties.size());
+
+        Property p = properties.get(0);
+        assertEquals("CpuTime[1]", p.getName());
+        assertEquals(80d, (Double)p.getValue(), 0.0000001);
+        p = properties.get(1);
+        assertEquals("CpuTime[1].pid", p.getName());
+        assertEquals(300, p.getValue());
+        p = properties.get(2);
+        assertEquals("CpuTime[1].command", p.getName());
+        assertEquals("java (main)", p.getValue());
+
+        assertEquals("CpuTime[2]", properties.get(3).getName());
+        assertEquals(40d, (Double)properties.get(3).getValue(), 0.0000001);
+        assertEquals(100, properties.get(4).getValue());
+
+        p = properties.get(6);
+        assertEquals("ResidentMemory[1]", p.getName());
+        assertEquals(8192L * 1024, p.getValue());
+        assertEquals(MemoryMeasureUnit.BYTE, p.getMeasureUnit());
+        assertEquals(200, properties.get(7).getValue());
+
+        assertEquals("ResidentMemory[2]", properties.get(9).getName());
+        assertEquals(2048L * 1024, properties.get(9).getValue());
+        assertEquals(100, properties.get(10).getValue());
+    }
+
+    @Test
+    public void collectMetrics_MetricThatCannotBeRanked() throws Exception {
+
+        TopProcessesMetricSource s = source("top:2");
+
+        try {
+
+            s.collectMetrics(definitions("ThreadCount"));
+            fail("should have thrown exception");
+        }
+        catch(MetricSourceException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("processes can only be ranked by"));
+        }
+    }
+
+    @Test
+    public void prepare_MetricThatCannotBeRanked() throws Exception {
+
+        assertNull(source("top:1").prepare(definitions("CpuTime", "ThreadCount")));
+    }
+
+    @Test
+    public void factory_TopAddress() throws Exception {
+
+        ProcessMetricSourceFactory f =
+                new ProcessMetricSourceFactory(new MockMetricSourceFactory(pf), scratchDirectory);
+
+        assertTrue(f.buildMetricSource(
+                new ProcessAddress(ProcessTarget.parse("top:3"))) instanceof TopProcessesMetricSource);
+        assertTrue(f.buildMetricSource(
+                new ProcessAddress(ProcessTarget.parse("pid:100"))) instanceof ProcessMetricSource);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected String getScratchDirectoryName() {
+
+        return "top-source";
+    }
+
+    @Override
+    protected ProcessAddress getAddressToTest() {
+
+        return new ProcessAddress(ProcessTarget.parse("top:1"));
+    }
+
+    @Override
+    protected TopProcessesMetricSource getMetricSourceToTest() {
+
+        return source("top:1");
+    }
+
+    @Override
+    protected MetricSourceFactory getMetricSourceFactoryToTest(MetricSourceFactory delegate) {
+
+        return new ProcessMetricSourceFactory(delegate, scratchDirectory);
+    }
+
+    @Override
+    protected String getMetricIdToTest() {
+
+        return "CpuTime";
+    }
+
+    @Override
+    protected String getForeignMetricMessage() {
+
+        return "processes can only be ranked by";
+    }
+
+    @Override
+    protected void populate() throws Exception {
+
+        ProcessReaderTest.writeUptime(scratchDirectory, "110.00");
+
+        TopProcessScannerTest.writeProcess(scratchDirectory, 100, 4000, 2048);
+        TopProcessScannerTest.writeProcess(scratchDirectory, 200, 1000, 8192);
+        TopProcessScannerTest.writeProcess(scratchDirectory, 300, 8000, 1024);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private TopProcessesMetricSource source(String target) {
+
+        return new TopProcessesMetricSource(new ProcessAddress(ProcessTarget.parse(target)),
+                new TopProcessScanner(scratchDirectory, TopProcessScanner.DEFAULT_PAGE_SIZE), pf);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
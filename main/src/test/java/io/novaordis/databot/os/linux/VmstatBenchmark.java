@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+
+/**
+ * Compares the String-based Vmstat parser with the allocation-free VmstatParser, on the same output. The "gc"
+ * profiler reports the allocation rate per operation.
+ *
+ * Not a test. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.novaordis.databot.os.linux.VmstatBenchmark
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VmstatBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String OUTPUT =
+            "procs -----------memory---------- ---swap-- -----io---- -system-- ------cpu-----\n" +
+            " r  b   swpd   free   buff  cache   si   so    bi    bo   in   cs us sy id wa st\n" +
+            " 1  2      3 778480    700 156424    0    0   122     4   29   64  0  0 98  0  1\n";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+
+        Options options = new OptionsBuilder().
+                include(VmstatBenchmark.class.getSimpleName()).
+                addProfiler(GCProfiler.class).
+                build();
+
+        new Runner(options).run();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private PropertyFactory propertyFactory;
+
+    private VmstatParser parser;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup
+    public void setUp() throws Exception {
+
+        propertyFactory = new PropertyFactory();
+        parser = VmstatParser.forLocalOS();
+    }
+
+    /**
+     * The current parser, which only covers r, b and swpd.
+     */
+    @Benchmark
+    public List<Property> vmstat() throws Exception {
+
+        return Vmstat.parseCommandOutput(propertyFactory, OUTPUT);
+    }
+
+    /**
+     * All columns, into primitive slots.
+     */
+    @Benchmark
+    public void vmstatParser(Blackhole bh) throws Exception {
+
+        parser.parse(OUTPUT);
+
+        bh.consume(parser.getValue(VmstatParser.SWPD));
+        bh.consume(parser.getValue(VmstatParser.CS));
+    }
+
+    /**
+     * All columns, converted to properties, which is what a metric source publishes.
+     */
+    @Benchmark
+    public List<Property> vmstatParserToProperties() throws Exception {
+
+        parser.parse(OUTPUT);
+
+        return parser.toProperties(propertyFactory);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import java.io.File;
+import java.nio.CharBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.databot.os.InvalidExecutionOutputException;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.utilities.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class VmstatParserTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidMemoryMultiplier() throws Exception {
+
+        try {
+
+            new VmstatParser(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid memory multiplier 0"));
+        }
+    }
+
+    @Test
+    public void parse_AllColumns() throws Exception {
+
+        File f = new File(System.getProperty("basedir"), "src/test/resources/data/os/vmstat.out");
+        assertTrue(f.isFile());
+        String content = Files.read(f);
+
+        VmstatParser p = new VmstatParser(4096);
+
+        p.parse(content);
+
+        assertEquals(1L, p.getValue(VmstatParser.R));
+        assertEquals(2L, p.getValue(VmstatParser.B));
+        assertEquals(3L * 4096, p.getValue(VmstatParser.SWPD));
+        assertEquals(778480L * 4096, p.getValue(VmstatParser.FREE));
+        assertEquals(700L * 4096, p.getValue(VmstatParser.BUFF));
+        assertEquals(156424L * 4096, p.getValue(VmstatParser.CACHE));
+        assertEquals(0L, p.getValue(VmstatParser.SI));
+        assertEquals(0L, p.getValue(VmstatParser.SO));
+        assertEquals(122L, p.getValue(VmstatParser.BI));
+        assertEquals(4L, p.getValue(VmstatParser.BO));
+        assertEquals(29L, p.getValue(VmstatParser.IN));
+        assertEquals(64L, p.getValue(VmstatParser.CS));
+        assertEquals(0L, p.getValue(VmstatParser.US));
+        assertEquals(0L, p.getValue(VmstatParser.SY));
+        assertEquals(98L, p.getValue(VmstatParser.ID));
+        assertEquals(0L, p.getValue(VmstatParser.WA));
+        assertEquals(1L, p.getValue(VmstatParser.ST));
+
+        assertTrue(p.isPresent(VmstatParser.ST));
+        assertFalse(p.isPresent(VmstatParser.GU));
+    }
+
+    @Test
+    public void parse_ReusedWithReusableBuffer() throws Exception {
+
+        VmstatParser p = new VmstatParser(1024);
+
+        CharBuffer b = CharBuffer.allocate(1024);
+
+        b.put(output(" 1  2      3 778480    700 156424    0    0   122     4   29   64  0  0 98  0  1 0\n")).flip();
+
+        p.parse(b);
+
+        assertEquals(64L, p.getValue(VmstatParser.CS));
+        assertEquals(0L, p.getValue(VmstatParser.GU));
+
+        b.clear();
+        b.put(output(" 5  0      0 100       10     20    1    2     3     4    5  999 10 20 60  7  1 2\n")).flip();
+
+        p.parse(b);
+
+        assertEquals(5L, p.getValue(VmstatParser.R));
+        assertEquals(100L * 1024, p.getValue(VmstatParser.FREE));
+        assertEquals(1024L, p.getValue(VmstatParser.SI));
+        assertEquals(999L, p.getValue(VmstatParser.CS));
+        assertEquals(60L, p.getValue(VmstatParser.ID));
+        assertEquals(2L, p.getValue(VmstatParser.GU));
+        assertTrue(p.isPresent(VmstatParser.GU));
+    }
+
+    @Test
+    public void parse_UnknownColumnsAreSkipped() throws Exception {
+
+        String s =
+                "procs -----------memory---------- ---swap-- -----io---- -system-- -------cpu------- -extra-\n" +
+                " r  b   swpd   free   buff  cache   si   so    bi    bo   in   cs us sy id wa st xyz\n" +
+                " 1  2      3      4      5      6    7    8     9    10   11   12 13 14 15 16 17 18\n";
+
+        VmstatParser p = new VmstatParser(1);
+
+        p.parse(s);
+
+        assertEquals(17L, p.getValue(VmstatParser.ST));
+        assertFalse(p.isPresent(VmstatParser.GU));
+    }
+
+    @Test
+    public void parse_MissingRequiredColumn() throws Exception {
+
+        String s =
+                "procs -----------memory----------\n" +
+                " r  b   swpd   free   buff  cache\n" +
+                " 1  2      3      4      5      6\n";
+
+        try {
+
+            new VmstatParser(1).parse(s);
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertEquals("missing vmstat column 'si'", msg);
+        }
+    }
+
+    @Test
+    public void parse_NotMultiLine() throws Exception {
+
+        try {
+
+            new VmstatParser(1).parse("procs\n");
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertEquals("not a multi-line output", msg);
+        }
+    }
+
+    @Test
+    public void parse_MissingValue() throws Exception {
+
+        VmstatParser p = new VmstatParser(1);
+
+        try {
+
+            p.parse(output(" 1  2      3 778480    700 156424    0    0   122     4   29   64  0  0 98\n"));
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.startsWith("expecting a number for vmstat column 'wa'"));
+        }
+    }
+
+    @Test
+    public void parseLine_Stream() throws Exception {
+
+        VmstatParser p = new VmstatParser(1024);
+
+        assertFalse(p.parseLine("procs -----------memory---------- ---swap-- -----io---- -system-- ------cpu-----"));
+        assertFalse(p.parseLine(" r  b   swpd   free   buff  cache   si   so    bi    bo   in   cs us sy id wa st"));
+        assertTrue(p.parseLine(" 1  2      3 778480    700 156424    0    0   122     4   29   64  0  0 98  0  1"));
+
+        assertEquals(64L, p.getValue(VmstatParser.CS));
+
+        assertTrue(p.parseLine(" 0  0      3 778000    700 156424    0    0     0     8   31   70  1  2 97  0  0\n"));
+
+        assertEquals(70L, p.getValue(VmstatParser.CS));
+        assertEquals(778000L * 1024, p.getValue(VmstatParser.FREE));
+
+        //
+        // the headers repeated by a vmstat without -n are ignored
+        //
+
+        assertFalse(p.parseLine("procs -----------memory---------- ---swap-- -----io---- -system-- ------cpu-----"));
+        assertFalse(p.parseLine(" r  b   swpd   free   buff  cache   si   so    bi    bo   in   cs us sy id wa st"));
+        assertFalse(p.parseLine(""));
+
+        long[] values = new long[VmstatParser.COLUMN_COUNT];
+        p.copyValues(values);
+        assertEquals(97L, values[VmstatParser.ID]);
+    }
+
+    @Test
+    public void parseLine_ValuesBeforeHeaders() throws Exception {
+
+        try {
+
+            new VmstatParser(1).parseLine(" 1  2  3\n");
+            fail("should have thrown exception");
+        }
+        catch(InvalidExecutionOutputException e) {
+
+            String msg = e.getMessage();
+            assertEquals("vmstat values before headers", msg);
+        }
+    }
+
+    @Test
+    public void toProperties_ConsistentWithVmstat() throws Exception {
+
+        File f = new File(System.getProperty("basedir"), "src/test/resources/data/os/vmstat.out");
+        String content = Files.read(f);
+
+        PropertyFactory pf = new PropertyFactory();
+
+        VmstatParser p = VmstatParser.forLocalOS();
+        p.parse(content);
+
+        List<Property> properties = p.toProperties(pf);
+
+        //
+        // all columns but "gu"
+        //
+        assertEquals(VmstatParser.COLUMN_COUNT - 1, properties.size());
+
+        //
+        // the columns covered by Vmstat have the same names, types and values
+        //
+
+        List<Property> legacy = Vmstat.parseCommandOutput(pf, content);
+
+        for(int i = 0; i < legacy.size(); i ++) {
+
+            assertEquals(legacy.get(i).getName(), properties.get(i).getName());
+            assertEquals(legacy.get(i).getValue(), properties.get(i).getValue());
+            assertEquals(legacy.get(i).getMeasureUnit(), properties.get(i).getMeasureUnit());
+        }
+
+        Property cs = properties.get(VmstatParser.CS);
+        assertEquals("Context Switches per Second", cs.getName());
+        assertEquals(64L, cs.getValue());
+        assertNull(cs.getMeasureUnit());
+
+        Property free = properties.get(VmstatParser.FREE);
+        assertEquals(MemoryMeasureUnit.BYTE, free.getMeasureUnit());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static String output(String values) {
+
+        return "procs -----------memory---------- ---swap-- -----io---- -system-- -------cpu-------\n" +
+                " r  b   swpd   free   buff  cache   si   so    bi    bo   in   cs us sy id wa st gu\n" +
+                values;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
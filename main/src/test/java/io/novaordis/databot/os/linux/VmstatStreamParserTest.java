@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.os.linux;
+
+import org.junit.Test;
+
+import io.novaordis.databot.MockMetricDefinition;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.measure.MemoryMeasureUnit;
+import io.novaordis.utilities.address.LocalOSAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class VmstatStreamParserTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void command() throws Exception {
+
+        assertEquals("[vmstat, -n, -S, K, 5]", VmstatStreamParser.command(5).toString());
+
+        try {
+
+            VmstatStreamParser.command(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid vmstat interval 0"));
+        }
+    }
+
+    @Test
+    public void parseAndConvert() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        LocalOSAddress a = new LocalOSAddress();
+
+        VmstatStreamParser p = new VmstatStreamParser();
+
+        assertFalse(p.parseLine("procs -----------memory---------- ---swap-- -----io---- -system-- ------cpu-----"));
+        assertFalse(p.parseLine(" r  b   swpd   free   buff  cache   si   so    bi    bo   in   cs us sy id wa st"));
+        assertFalse(p.parseLine(" 0  0      3   4096    700 156424    0    0     1     1    9   14  1  1 98  0  0"));
+        assertTrue(p.parseLine(" 1  2      3   2048    700 156424    0    0   122     4   29   64 12  3 84  1  0"));
+
+        long[] values = new long[p.getValueCount()];
+        p.copyValues(values);
+
+        MockMetricDefinition user = new MockMetricDefinition(pf, a, "CpuUserTime");
+        assertTrue(p.supports(user));
+
+        Property up = p.toProperty(pf, user, values);
+        assertEquals("CpuUserTime", up.getName());
+        assertEquals(12d, (Double)up.getValue(), 0.0000001);
+
+        MockMetricDefinition free = new MockMetricDefinition(pf, a, "PhysicalMemoryFree");
+        free.setBaseUnit(MemoryMeasureUnit.MEGABYTE);
+
+        Property fp = p.toProperty(pf, free, values);
+        assertEquals(2L, fp.getValue());
+        assertEquals(MemoryMeasureUnit.MEGABYTE, fp.getMeasureUnit());
+
+        assertFalse(p.supports(new MockMetricDefinition(pf, a, "LoadAverageLastMinute")));
+    }
+
+    @Test
+    public void parseLine_FirstValueLineOfEachRunIsSinceBoot() throws Exception {
+
+        VmstatStreamParser p = new VmstatStreamParser();
+
+        long[] values = new long[p.getValueCount()];
+
+        assertFalse(p.parseLine("procs -----------memory---------- ---swap-- -----io---- -system-- ------cpu-----"));
+        assertFalse(p.parseLine(" r  b   swpd   free   buff  cache   si   so    bi    bo   in   cs us sy id wa st"));
+        assertFalse(p.parseLine(" 0  0      0   4096    700 156424    0    0     1     1    9   14  1  1 98  0  0"));
+        assertTrue(p.parseLine(" 1  2      0   2048    700 156424    0    0   122     4   29   64 12  3 84  1  0"));
+        assertTrue(p.parseLine(" 1  2      0   2048    700 156424    0    0   122     4   29   64 30  5 65  0  0"));
+
+        p.copyValues(values);
+        assertEquals(65L, values[VmstatParser.ID]);
+
+        //
+        // the command was restarted
+        //
+
+        p.reset();
+
+        assertFalse(p.parseLine("procs -----------memory---------- ---swap-- -----io---- -system-- ------cpu-----"));
+        assertFalse(p.parseLine(" r  b   swpd   free   buff  cache   si   so    bi    bo   in   cs us sy id wa st"));
+        assertFalse(p.parseLine(" 0  0      0   4096    700 156424    0    0     1     1    9   14  1  1 98  0  0"));
+
+        p.copyValues(values);
+        assertEquals(98L, values[VmstatParser.ID]);
+
+        assertTrue(p.parseLine(" 1  2      0   2048    700 156424    0    0   122     4   29   64 40  5 55  0  0"));
+
+        p.copyValues(values);
+        assertEquals(55L, values[VmstatParser.ID]);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
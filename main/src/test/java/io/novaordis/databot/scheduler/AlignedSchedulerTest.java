@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.scheduler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/16/18
+ */
+public class AlignedSchedulerTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void nextTick() throws Exception {
+
+        assertEquals(10L, AlignedScheduler.nextTick(0L, 10L));
+        assertEquals(10L, AlignedScheduler.nextTick(9L, 10L));
+        assertEquals(20L, AlignedScheduler.nextTick(10L, 10L));
+        assertEquals(1516060810000L, AlignedScheduler.nextTick(1516060801234L, 10000L));
+    }
+
+    @Test
+    public void constructor_InvalidInterval() throws Exception {
+
+        try {
+
+            new AlignedScheduler("test", -1L, t -> {});
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid interval -1"));
+        }
+    }
+
+    @Test
+    public void start_Twice() throws Exception {
+
+        AlignedScheduler s = new AlignedScheduler("test", 1000L, t -> {});
+
+        s.start();
+
+        try {
+
+            s.start();
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("already started"));
+        }
+        finally {
+
+            s.stop();
+        }
+    }
+
+    @Test
+    public void zeroInterval_RunsOnceImmediately() throws Exception {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        AlignedScheduler s = new AlignedScheduler("test", 0L, t -> latch.countDown());
+
+        long t0 = System.currentTimeMillis();
+
+        s.start();
+
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - t0 < 1000L);
+
+        Thread.sleep(50L);
+
+        assertEquals(1L, s.getTickCount());
+        assertFalse(s.isStarted());
+    }
+
+    @Test
+    public void ticksAreAlignedOnIntervalMultiples() throws Exception {
+
+        final List<long[]> ticks = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        AlignedScheduler s = new AlignedScheduler("test", 100L, t -> {
+
+            ticks.add(new long[] { t, System.currentTimeMillis() });
+            latch.countDown();
+        });
+
+        s.start();
+
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+
+        s.stop();
+
+        assertFalse(s.isStarted());
+
+        for(long[] tick: ticks) {
+
+            assertEquals(0L, tick[0] % 100L);
+
+            //
+            // never early
+            //
+
+            assertTrue(tick[1] >= tick[0]);
+        }
+
+        assertTrue(s.getTickCount() >= 3L);
+        assertTrue(s.getMaxTickLatenessMs() >= s.getLastTickLatenessMs());
+    }
+
+    @Test
+    public void slowRun_MissedTicksAreCountedNotBurst() throws Exception {
+
+        final List<Long> ticks = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        AlignedScheduler s = new AlignedScheduler("test", 100L, t -> {
+
+            ticks.add(t);
+
+            if (ticks.size() == 1) {
+
+                //
+                // overrun the next two ticks
+                //
+
+                try {
+
+                    Thread.sleep(250L);
+                }
+                catch(InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            latch.countDown();
+        });
+
+        s.start();
+
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+
+        s.stop();
+
+        assertTrue(s.getMissedTickCount() >= 2L);
+
+        //
+        // the ticks that fell into the long run were not executed later
+        //
+
+        assertTrue(ticks.get(1) - ticks.get(0) >= 300L);
+        assertTrue(ticks.get(2) - ticks.get(1) >= 100L);
+    }
+
+    @Test
+    public void taskFailureDoesNotStopTheScheduler() throws Exception {
+
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        AlignedScheduler s = new AlignedScheduler("test", 50L, t -> {
+
+            latch.countDown();
+            throw new RuntimeException("SYNTHETIC");
+        });
+
+        s.start();
+
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+
+        s.stop();
+    }
+
+    @Test
+    public void stop_FromTask() throws Exception {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AlignedScheduler[] holder = new AlignedScheduler[1];
+
+        AlignedScheduler s = new AlignedScheduler("test", 50L, t -> {
+
+            holder[0].stop();
+            latch.countDown();
+        });
+
+        holder[0] = s;
+
+        s.start();
+
+        assertTrue(latch.await(5L, TimeUnit.SECONDS));
+
+        Thread.sleep(200L);
+
+        assertEquals(1L, s.getTickCount());
+        assertFalse(s.isStarted());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
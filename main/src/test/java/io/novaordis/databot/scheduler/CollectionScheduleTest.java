@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.scheduler;
+
+import io.novaordis.databot.MockMetricDefinition;
+import io.novaordis.databot.MockMetricSource;
+import io.novaordis.databot.configuration.MockConfiguration;
+import io.novaordis.events.api.event.PropertyFactory;
+import io.novaordis.events.api.metric.MetricDefinition;
+import io.novaordis.events.api.metric.MetricSource;
+import io.novaordis.events.api.metric.MockAddress;
+import io.novaordis.utilities.UserErrorException;
+import io.novaordis.utilities.address.Address;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class CollectionScheduleTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static final Function<Address, MetricSource> SOURCES = a -> new MockMetricSource(new PropertyFactory(), a);
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void gcd() throws Exception {
+
+        assertEquals(10L, CollectionSchedule.gcd(0L, 10L));
+        assertEquals(10L, CollectionSchedule.gcd(10L, 0L));
+        assertEquals(10L, CollectionSchedule.gcd(20L, 30L));
+        assertEquals(1L, CollectionSchedule.gcd(7L, 3L));
+    }
+
+    @Test
+    public void noSources_GlobalInterval() throws Exception {
+
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSamplingIntervalMs(5000L);
+
+        CollectionSchedule s = new CollectionSchedule(mc, SOURCES);
+
+        assertEquals(5000L, s.getBaseIntervalMs());
+        assertTrue(s.getDue(5000L).isEmpty());
+    }
+
+    @Test
+    public void singleRate_EverythingIsDueOnEveryTick() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSamplingIntervalMs(10000L);
+
+        MockAddress a = new MockAddress("A");
+        mc.addMetricDefinition(new MockMetricDefinition(pf, a, "m1"));
+        mc.addMetricDefinition(new MockMetricDefinition(pf, a, "m2"));
+
+        CollectionSchedule s = new CollectionSchedule(mc, SOURCES);
+
+        assertEquals(10000L, s.getBaseIntervalMs());
+        assertEquals(1, s.getIntervalsMs().length);
+
+        CollectionPlan due = s.getDue(10000L);
+        assertEquals(1, due.size());
+        assertEquals(2, due.getMetricDefinitions(a).size());
+    }
+
+    @Test
+    public void multiRate() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSamplingIntervalMs(10000L);
+
+        MockAddress a = new MockAddress("A");
+        MockAddress b = new MockAddress("B");
+
+        MockMetricDefinition fast = new MockMetricDefinition(pf, a, "fast");
+        MockMetricDefinition slow = new MockMetricDefinition(pf, a, "slow");
+        MockMetricDefinition other = new MockMetricDefinition(pf, b, "other");
+
+        mc.addMetricDefinition(fast);
+        mc.addMetricDefinition(slow);
+        mc.addMetricDefinition(other);
+
+        mc.setSamplingIntervalMs(slow, 60000L);
+        mc.setSamplingIntervalMs(b, 30000L);
+
+        CollectionSchedule s = new CollectionSchedule(mc, SOURCES);
+
+        assertEquals(10000L, s.getBaseIntervalMs());
+        assertEquals(3, s.getIntervalsMs().length);
+
+        //
+        // only the fast metric
+        //
+
+        CollectionPlan due = s.getDue(10000L);
+        assertEquals(1, due.size());
+        assertEquals(Collections.singletonList(fast), due.getMetricDefinitions(a));
+
+        //
+        // fast and other
+        //
+
+        due = s.getDue(30000L);
+        assertEquals(2, due.size());
+        Iterator<Address> i = due.getSources().iterator();
+        assertEquals(a, i.next());
+        assertEquals(b, i.next());
+        assertEquals(Collections.singletonList(fast), due.getMetricDefinitions(a));
+        assertEquals(Collections.singletonList(other), due.getMetricDefinitions(b));
+
+        //
+        // everything, in configuration order
+        //
+
+        due = s.getDue(60000L);
+        assertEquals(2, due.size());
+        List<MetricDefinition> mds = due.getMetricDefinitions(a);
+        assertEquals(2, mds.size());
+        assertSame(fast, mds.get(0));
+        assertSame(slow, mds.get(1));
+        assertEquals(Collections.singletonList(other), due.getMetricDefinitions(b));
+    }
+
+    @Test
+    public void baseIntervalIsTheGreatestCommonDivisor_NothingDueOnSomeTicks() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSamplingIntervalMs(20000L);
+
+        MockAddress a = new MockAddress("A");
+        MockAddress b = new MockAddress("B");
+
+        mc.addMetricDefinition(new MockMetricDefinition(pf, a, "m"));
+        mc.addMetricDefinition(new MockMetricDefinition(pf, b, "m"));
+        mc.setSamplingIntervalMs(b, 30000L);
+
+        CollectionSchedule s = new CollectionSchedule(mc, SOURCES);
+
+        assertEquals(10000L, s.getBaseIntervalMs());
+        assertTrue(s.getDue(10000L).isEmpty());
+        assertEquals(1, s.getDue(20000L).size());
+        assertEquals(1, s.getDue(30000L).size());
+        assertEquals(2, s.getDue(60000L).size());
+    }
+
+    @Test
+    public void sourceIntervalDoesNotLowerTheBaseIntervalIfAllMetricsOverrideIt() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSamplingIntervalMs(60000L);
+
+        MockAddress a = new MockAddress("A");
+        MockMetricDefinition md = new MockMetricDefinition(pf, a, "m");
+        mc.addMetricDefinition(md);
+        mc.setSamplingIntervalMs(a, 7000L);
+        mc.setSamplingIntervalMs(md, 20000L);
+
+        CollectionSchedule s = new CollectionSchedule(mc, SOURCES);
+
+        assertEquals(20000L, s.getBaseIntervalMs());
+    }
+
+    @Test
+    public void baseIntervalBelowMinimum() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSamplingIntervalMs(60000L);
+
+        MockAddress a = new MockAddress("A");
+        MockAddress b = new MockAddress("B");
+        MockAddress c = new MockAddress("C");
+
+        mc.addMetricDefinition(new MockMetricDefinition(pf, a, "m"));
+        mc.addMetricDefinition(new MockMetricDefinition(pf, b, "m"));
+        mc.addMetricDefinition(new MockMetricDefinition(pf, c, "m"));
+
+        //
+        // each interval is valid, but together they would need a 5 ms tick
+        //
+
+        mc.setSamplingIntervalMs(b, 15L);
+        mc.setSamplingIntervalMs(c, 20L);
+
+        try {
+
+            new CollectionSchedule(mc, SOURCES);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("the sampling intervals 15 and 20 ms can only be scheduled every 5 ms"));
+            assertTrue(msg.contains("minimum sampling interval of 10 ms"));
+
+            //
+            // the 60 second interval does not contribute
+            //
+
+            assertFalse(msg.contains("60000"));
+        }
+    }
+
+    @Test
+    public void baseIntervalAtMinimum() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSamplingIntervalMs(30L);
+
+        MockAddress a = new MockAddress("A");
+        MockAddress b = new MockAddress("B");
+
+        mc.addMetricDefinition(new MockMetricDefinition(pf, a, "m"));
+        mc.addMetricDefinition(new MockMetricDefinition(pf, b, "m"));
+        mc.setSamplingIntervalMs(b, 20L);
+
+        CollectionSchedule s = new CollectionSchedule(mc, SOURCES);
+
+        assertEquals(10L, s.getBaseIntervalMs());
+    }
+
+    @Test
+    public void zeroInterval_OneShot_EverythingIsDue() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSamplingIntervalMs(0L);
+
+        MockAddress a = new MockAddress("A");
+        MockAddress b = new MockAddress("B");
+
+        mc.addMetricDefinition(new MockMetricDefinition(pf, a, "m"));
+        mc.addMetricDefinition(new MockMetricDefinition(pf, b, "m"));
+        mc.setSamplingIntervalMs(b, 30000L);
+
+        CollectionSchedule s = new CollectionSchedule(mc, SOURCES);
+
+        assertEquals(0L, s.getBaseIntervalMs());
+        assertEquals(2, s.getDue(1234L).size());
+    }
+
+    @Test
+    public void plan_OrdinalsDeadlinesAndQueriesArePrecompiled() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSamplingIntervalMs(10000L);
+        mc.setSourceDeadlineMs(500L);
+
+        MockAddress a = new MockAddress("A");
+        MockAddress b = new MockAddress("B");
+
+        MockMetricDefinition fast = new MockMetricDefinition(pf, a, "fast");
+        MockMetricDefinition slow = new MockMetricDefinition(pf, a, "slow");
+        MockMetricDefinition other = new MockMetricDefinition(pf, b, "other");
+
+        mc.addMetricDefinition(fast);
+        mc.addMetricDefinition(slow);
+        mc.addMetricDefinition(other);
+
+        mc.setSamplingIntervalMs(slow, 20000L);
+        mc.setSourceDeadlineMs(b, 200L);
+
+        CollectionSchedule s = new CollectionSchedule(mc, SOURCES);
+
+        assertEquals(2, s.getSourceCount());
+        assertEquals(0, s.getOrdinal(a));
+        assertEquals(1, s.getOrdinal(b));
+        assertEquals(-1, s.getOrdinal(new MockAddress("C")));
+
+        CollectionPlan all = s.getAll();
+
+        assertEquals(2, all.size());
+        assertEquals(a, all.getSource(0));
+        assertEquals(0, all.getOrdinal(0));
+        assertEquals(500L, all.getDeadlineMs(0));
+        assertEquals(b, all.getSource(1));
+        assertEquals(1, all.getOrdinal(1));
+        assertEquals(200L, all.getDeadlineMs(1));
+        assertEquals(a, all.getQuery(0).getSourceAddress());
+        assertEquals(2, all.getQuery(0).getMetricDefinitions().size());
+
+        //
+        // the plans are computed once per combination of due intervals, and the full source queries are shared
+        //
+
+        CollectionPlan p = s.getDue(10000L);
+
+        assertSame(p, s.getDue(30000L));
+        assertSame(all, s.getDue(20000L));
+        assertEquals(Collections.singletonList(fast), p.getQuery(0).getMetricDefinitions());
+        assertSame(all.getQuery(1), p.getQuery(1));
+        assertEquals(1, p.getOrdinal(1));
+    }
+
+    @Test
+    public void plan_SourceThatIsNotDueKeepsItsOrdinal() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+        MockConfiguration mc = new MockConfiguration();
+        mc.setSamplingIntervalMs(10000L);
+
+        MockAddress a = new MockAddress("A");
+        MockAddress b = new MockAddress("B");
+
+        mc.addMetricDefinition(new MockMetricDefinition(pf, a, "m"));
+        mc.addMetricDefinition(new MockMetricDefinition(pf, b, "m"));
+        mc.setSamplingIntervalMs(a, 20000L);
+
+        CollectionSchedule s = new CollectionSchedule(mc, SOURCES);
+
+        CollectionPlan p = s.getDue(10000L);
+
+        assertEquals(1, p.size());
+        assertEquals(b, p.getSource(0));
+        assertEquals(1, p.getOrdinal(0));
+        assertNull(p.getMetricDefinitions(a));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
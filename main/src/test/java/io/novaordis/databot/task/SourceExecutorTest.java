@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2018 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.databot.task;
+
+import io.novaordis.databot.MetricSourceThreadFactory;
+import io.novaordis.events.api.metric.MockAddress;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 1/17/18
+ */
+public class SourceExecutorTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidThreadCount() throws Exception {
+
+        try {
+
+            new SourceExecutor(SourceExecutorType.FIXED, 0, 0, new MetricSourceThreadFactory("test"), "test");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid thread count 0"));
+        }
+    }
+
+    @Test
+    public void constructor_InvalidPerHostLimit() throws Exception {
+
+        try {
+
+            new SourceExecutor(SourceExecutorType.FIXED, 1, -1, new MetricSourceThreadFactory("test"), "test");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid per-host limit -1"));
+        }
+    }
+
+    @Test
+    public void fixed() throws Exception {
+
+        SourceExecutor se =
+                new SourceExecutor(SourceExecutorType.FIXED, 3, 0, new MetricSourceThreadFactory("test"), "test");
+
+        assertEquals(SourceExecutorType.FIXED, se.getType());
+
+        ThreadPoolExecutor tpe = (ThreadPoolExecutor)se.getExecutorService();
+        assertEquals(3, tpe.getCorePoolSize());
+        assertEquals(3, tpe.getMaximumPoolSize());
+
+        se.shutdown();
+        assertTrue(se.isShutdown());
+    }
+
+    @Test
+    public void elastic() throws Exception {
+
+        SourceExecutor se =
+                new SourceExecutor(SourceExecutorType.ELASTIC, 7, 0, new MetricSourceThreadFactory("test"), "test");
+
+        assertEquals(SourceExecutorType.ELASTIC, se.getType());
+
+        ThreadPoolExecutor tpe = (ThreadPoolExecutor)se.getExecutorService();
+        assertEquals(7, tpe.getMaximumPoolSize());
+        assertTrue(tpe.allowsCoreThreadTimeOut());
+
+        //
+        // no threads until there is work
+        //
+
+        assertEquals(0, tpe.getPoolSize());
+
+        se.shutdown();
+    }
+
+    @Test
+    public void virtual() throws Exception {
+
+        SourceExecutor se =
+                new SourceExecutor(SourceExecutorType.VIRTUAL, 7, 0, new MetricSourceThreadFactory("test"), "test");
+
+        ExecutorService virtual = SourceExecutor.newVirtualThreadPerTaskExecutor("test");
+
+        if (virtual == null) {
+
+            //
+            // pre-JDK 21 runtime, falls back to elastic
+            //
+
+            assertEquals(SourceExecutorType.ELASTIC, se.getType());
+            assertEquals(7, ((ThreadPoolExecutor)se.getExecutorService()).getMaximumPoolSize());
+        }
+        else {
+
+            virtual.shutdown();
+
+            assertEquals(SourceExecutorType.VIRTUAL, se.getType());
+
+            CountDownLatch done = new CountDownLatch(1);
+            AtomicInteger virtualThreads = new AtomicInteger();
+
+            se.execute(new MockAddress("A"), () -> {
+
+                if (Thread.currentThread().getName().startsWith("test #")) {
+
+                    virtualThreads.incrementAndGet();
+                }
+
+                done.countDown();
+            });
+
+            assertTrue(done.await(5L, TimeUnit.SECONDS));
+            assertEquals(1, virtualThreads.get());
+        }
+
+        se.shutdown();
+    }
+
+    @Test
+    public void perHostLimit() throws Exception {
+
+        SourceExecutor se =
+                new SourceExecutor(SourceExecutorType.ELASTIC, 10, 2, new MetricSourceThreadFactory("test"), "test");
+
+        MockAddress a = new MockAddress("A");
+        MockAddress b = new MockAddress("B");
+
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(6);
+        AtomicInteger concurrentOnA = new AtomicInteger();
+        AtomicInteger maxConcurrentOnA = new AtomicInteger();
+
+        for(int i = 0; i < 5; i ++) {
+
+            se.execute(a, () -> {
+
+                int c = concurrentOnA.incrementAndGet();
+                maxConcurrentOnA.accumulateAndGet(c, Math::max);
+
+                try {
+
+                    gate.await();
+                }
+                catch(InterruptedException e) {
+
+                    // ignore
+                }
+
+                concurrentOnA.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        //
+        // other hosts are not affected by the queries waiting on A
+        //
+
+        se.execute(b, done::countDown);
+
+        long timeout = System.currentTimeMillis() + 5000L;
+
+        while(done.getCount() > 5 && System.currentTimeMillis() < timeout) {
+
+            Thread.sleep(10L);
+        }
+
+        assertEquals(5, done.getCount());
+        assertEquals(3, se.getWaitingCount(SourceExecutor.hostOf(a)));
+
+        gate.countDown();
+
+        assertTrue(done.await(5L, TimeUnit.SECONDS));
+        assertEquals(2, maxConcurrentOnA.get());
+        assertEquals(0, se.getWaitingCount(SourceExecutor.hostOf(a)));
+
+        se.shutdown();
+    }
+
+    @Test
+    public void execute_AfterShutdown() throws Exception {
+
+        SourceExecutor se =
+                new SourceExecutor(SourceExecutorType.FIXED, 1, 1, new MetricSourceThreadFactory("test"), "test");
+
+        se.shutdown();
+
+        try {
+
+            se.execute(new MockAddress("A"), () -> {});
+            fail("should have thrown exception");
+        }
+        catch(RejectedExecutionException e) {
+
+            // expected
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
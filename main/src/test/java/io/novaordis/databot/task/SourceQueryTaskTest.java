@@ -18,6 +18,7 @@ package io.novaordis.databot.task;
 
 import io.novaordis.databot.MockMetricDefinition;
 import io.novaordis.databot.MockMetricSource;
+import io.novaordis.databot.MockPreparableMetricSource;
 import io.novaordis.events.api.event.Property;
 import io.novaordis.events.api.event.PropertyFactory;
 import io.novaordis.events.api.event.StringProperty;
@@ -31,6 +32,7 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -265,6 +267,151 @@ public class SourceQueryTaskTest {
         }
     }
 
+    // prepared queries ------------------------------------------------------------------------------------------------
+
+    @Test
+    public void call_PreparedQuery_PreparedOnceExecutedOnEveryCall() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+
+        MockAddress ma = new MockAddress("mock-source");
+        MockMetricDefinition md = new MockMetricDefinition(pf, ma, "mock-definition-1");
+
+        MockPreparableMetricSource ms = new MockPreparableMetricSource(pf, ma);
+        ms.addReadingForMetric("mock-definition-1", "mock-value-1");
+
+        SourceQueryTask q = new SourceQueryTask(ms, Collections.singletonList(md));
+
+        assertTrue(q.isPrepared());
+        assertEquals(1, ms.getPrepareCount());
+
+        for(int i = 0; i < 3; i ++) {
+
+            List<Property> result = q.call();
+
+            assertEquals(1, result.size());
+            assertEquals("mock-value-1", result.get(0).getValue());
+        }
+
+        assertEquals(1, ms.getPrepareCount());
+        assertEquals(3, ms.getPreparedExecutionCount());
+        assertEquals(0, ms.getUnpreparedCollectionCount());
+    }
+
+    @Test
+    public void call_StalePreparedQuery_IsPreparedAgain() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+
+        MockAddress ma = new MockAddress("mock-source");
+        MockMetricDefinition md = new MockMetricDefinition(pf, ma, "mock-definition-1");
+
+        MockPreparableMetricSource ms = new MockPreparableMetricSource(pf, ma);
+        ms.addReadingForMetric("mock-definition-1", "mock-value-1");
+
+        SourceQueryTask q = new SourceQueryTask(ms, Collections.singletonList(md));
+
+        q.call();
+
+        //
+        // the source restarts
+        //
+
+        ms.invalidatePreparedQueries();
+
+        List<Property> result = q.call();
+
+        assertEquals("mock-value-1", result.get(0).getValue());
+        assertTrue(q.isPrepared());
+        assertEquals(2, ms.getPrepareCount());
+        assertEquals(2, ms.getPreparedExecutionCount());
+
+        q.call();
+
+        assertEquals(2, ms.getPrepareCount());
+        assertEquals(0, ms.getUnpreparedCollectionCount());
+    }
+
+    @Test
+    public void call_StalePreparedQuery_SourceCannotPrepareAnymore() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+
+        MockAddress ma = new MockAddress("mock-source");
+        MockMetricDefinition md = new MockMetricDefinition(pf, ma, "mock-definition-1");
+
+        MockPreparableMetricSource ms = new MockPreparableMetricSource(pf, ma);
+        ms.addReadingForMetric("mock-definition-1", "mock-value-1");
+
+        SourceQueryTask q = new SourceQueryTask(ms, Collections.singletonList(md));
+
+        ms.invalidatePreparedQueries();
+        ms.cannotPrepare();
+
+        List<Property> result = q.call();
+
+        assertEquals("mock-value-1", result.get(0).getValue());
+        assertFalse(q.isPrepared());
+        assertEquals(1, ms.getUnpreparedCollectionCount());
+    }
+
+    @Test
+    public void call_PreparationFails_FallsBackToCollectMetrics() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+
+        MockAddress ma = new MockAddress("mock-source");
+        MockMetricDefinition md = new MockMetricDefinition(pf, ma, "mock-definition-1");
+
+        MockPreparableMetricSource ms = new MockPreparableMetricSource(pf, ma);
+        ms.addReadingForMetric("mock-definition-1", "mock-value-1");
+        ms.breakOnPrepare();
+
+        SourceQueryTask q = new SourceQueryTask(ms, Collections.singletonList(md));
+
+        assertFalse(q.isPrepared());
+
+        List<Property> result = q.call();
+
+        assertEquals("mock-value-1", result.get(0).getValue());
+        assertEquals(1, ms.getUnpreparedCollectionCount());
+        assertEquals(0, ms.getPreparedExecutionCount());
+    }
+
+    @Test
+    public void call_SourceCannotPrepare_FallsBackToCollectMetrics() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+
+        MockAddress ma = new MockAddress("mock-source");
+        MockMetricDefinition md = new MockMetricDefinition(pf, ma, "mock-definition-1");
+
+        MockPreparableMetricSource ms = new MockPreparableMetricSource(pf, ma);
+        ms.addReadingForMetric("mock-definition-1", "mock-value-1");
+        ms.cannotPrepare();
+
+        SourceQueryTask q = new SourceQueryTask(ms, Collections.singletonList(md));
+
+        assertFalse(q.isPrepared());
+
+        List<Property> result = q.call();
+
+        assertEquals("mock-value-1", result.get(0).getValue());
+        assertEquals(1, ms.getUnpreparedCollectionCount());
+    }
+
+    @Test
+    public void call_SourceThatDoesNotSupportPreparation() throws Exception {
+
+        PropertyFactory pf = new PropertyFactory();
+
+        MockAddress ma = new MockAddress("mock-source");
+
+        SourceQueryTask q = new SourceQueryTask(new MockMetricSource(pf, ma), Collections.emptyList());
+
+        assertFalse(q.isPrepared());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------